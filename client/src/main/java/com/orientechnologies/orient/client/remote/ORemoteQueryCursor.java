@@ -0,0 +1,161 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.client.remote;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+
+import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OStorageException;
+import com.orientechnologies.orient.core.query.OQueryCursor;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.enterprise.channel.binary.OChannelBinaryClient;
+import com.orientechnologies.orient.enterprise.channel.binary.OChannelBinaryProtocol;
+import com.orientechnologies.orient.enterprise.channel.binary.ONetworkProtocolException;
+
+/**
+ * Cursor on the result of query sent in cursor mode. Read and write locks of the channel are held by the cursor until the end of
+ * the result is reached or the cursor is closed. As soon as a chunk of records is received the next one is requested, so the
+ * server prepares it while the current chunk is consumed, but no more than one chunk is kept in memory.
+ *
+ * @since 17.10.13
+ * @see OStorageRemote#openQueryCursor(com.orientechnologies.orient.core.sql.query.OSQLStreamQuery)
+ */
+@SuppressWarnings("unchecked")
+public class ORemoteQueryCursor<T> implements OQueryCursor<T> {
+  private final OStorageRemote       storage;
+  private final OChannelBinaryClient network;
+  private final ODatabaseRecord      database;
+  private final LinkedList<T>        chunk = new LinkedList<T>();
+  private boolean                    open  = true;
+  private boolean                    stopRequested;
+
+  public ORemoteQueryCursor(final OStorageRemote iStorage, final OChannelBinaryClient iNetwork, final ODatabaseRecord iDatabase) {
+    storage = iStorage;
+    network = iNetwork;
+    database = iDatabase;
+  }
+
+  public boolean hasNext() {
+    while (chunk.isEmpty() && open)
+      readChunk();
+
+    return !chunk.isEmpty();
+  }
+
+  public T next() {
+    if (!hasNext())
+      throw new NoSuchElementException();
+
+    return chunk.removeFirst();
+  }
+
+  public void remove() {
+    throw new UnsupportedOperationException("remove");
+  }
+
+  public Iterator<T> iterator() {
+    return this;
+  }
+
+  public void close() {
+    chunk.clear();
+
+    if (!open)
+      return;
+
+    // ASK THE SERVER TO STOP AND SKIP THE RECORDS ALREADY SENT
+    stopRequested = true;
+    while (open)
+      readChunk();
+  }
+
+  /**
+   * Reads the response till the end of the current chunk, then asks for the next chunk or to stop.
+   */
+  private void readChunk() {
+    try {
+      while (true) {
+        final byte status = network.readByte();
+
+        switch (status) {
+        case 0:
+          // NO MORE RECORDS
+          release();
+          return;
+
+        case 1:
+          // PART OF THE RESULT SET
+          final OIdentifiable record = OChannelBinaryProtocol.readIdentifiable(network);
+          if (record != null && !stopRequested)
+            chunk.add((T) record);
+          break;
+
+        case 2:
+          // PUT IN THE CLIENT LOCAL CACHE
+          final OIdentifiable cached = OChannelBinaryProtocol.readIdentifiable(network);
+          if (cached instanceof ORecordInternal<?>)
+            database.getLevel1Cache().updateRecord((ORecordInternal<?>) cached);
+          break;
+
+        case OChannelBinaryProtocol.QUERY_CURSOR_CHUNK_END:
+          network.writeByte((byte) (stopRequested ? 0 : 1));
+          network.flush();
+          return;
+
+        case OChannelBinaryProtocol.QUERY_CURSOR_ERROR:
+          try {
+            network.readAndThrowException();
+          } finally {
+            release();
+          }
+          return;
+
+        default:
+          throw new ONetworkProtocolException("Unexpected status " + status + " in the result of query cursor");
+        }
+      }
+    } catch (IOException e) {
+      abort();
+      throw new OStorageException("Error on reading the result of query cursor", e);
+    } catch (ONetworkProtocolException e) {
+      abort();
+      throw e;
+    }
+  }
+
+  /**
+   * Closes the channel without reading the rest of the result, as if the connection was lost.
+   */
+  void abort() {
+    // THE STATE OF THE CHANNEL IS UNKNOWN: DON'T REUSE IT
+    storage.closeChannel(network);
+    release();
+  }
+
+  private void release() {
+    open = false;
+    storage.endResponse(network);
+    try {
+      storage.endRequest(network);
+    } catch (IOException e) {
+      // CHANNEL ALREADY REMOVED FROM THE POOL
+    }
+  }
+}
@@ -43,6 +43,7 @@ import com.orientechnologies.common.concur.lock.OModificationOperationProhibited
 import com.orientechnologies.common.exception.OException;
 import com.orientechnologies.common.io.OIOException;
 import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.client.remote.OStorageRemoteThreadLocal.OStorageRemoteSession;
 import com.orientechnologies.orient.core.OConstants;
 import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.command.OCommandRequestAsynch;
@@ -62,12 +63,14 @@ import com.orientechnologies.orient.core.exception.OTransactionException;
 import com.orientechnologies.orient.core.id.OClusterPosition;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.query.OQueryCursor;
 import com.orientechnologies.orient.core.record.ORecord;
 import com.orientechnologies.orient.core.record.ORecordInternal;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.serialization.OSerializableStream;
 import com.orientechnologies.orient.core.serialization.serializer.record.string.ORecordSerializerStringAbstract;
 import com.orientechnologies.orient.core.serialization.serializer.stream.OStreamSerializerAnyStreamable;
+import com.orientechnologies.orient.core.sql.query.OSQLStreamQuery;
 import com.orientechnologies.orient.core.storage.OCluster;
 import com.orientechnologies.orient.core.storage.ODataSegment;
 import com.orientechnologies.orient.core.storage.OPhysicalPosition;
@@ -351,12 +354,14 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
           // ASYNCHRONOUS
           if (iCallback != null) {
             final int sessionId = getSessionId();
+            final int requestId = OStorageRemoteThreadLocal.INSTANCE.get().requestId;
             Callable<Object> response = new Callable<Object>() {
               public Object call() throws Exception {
                 final OClusterPosition result;
 
                 try {
                   OStorageRemoteThreadLocal.INSTANCE.get().sessionId = sessionId;
+                  OStorageRemoteThreadLocal.INSTANCE.get().requestId = requestId;
                   System.out.println("BEGIN ASYNCH READ " + OStorageRemoteThreadLocal.INSTANCE.get().sessionId);
                   beginResponse(network);
                   result = network.readClusterPosition();
@@ -439,47 +444,179 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
         OChannelBinaryClient network = null;
         try {
           network = beginRequest(OChannelBinaryProtocol.REQUEST_RECORD_LOAD);
-          network.writeRID(iRid);
-          network.writeString(iFetchPlan != null ? iFetchPlan : "");
-          if (network.getSrvProtocolVersion() >= 9)
-            network.writeByte((byte) (iIgnoreCache ? 1 : 0));
-
-          if (network.getSrvProtocolVersion() >= 13)
-            network.writeByte(loadTombstones ? (byte) 1 : (byte) 0);
+          writeReadRecordRequest(network, iRid, iFetchPlan, iIgnoreCache, loadTombstones);
         } finally {
           endRequest(network);
         }
 
         try {
           beginResponse(network);
+          return new OStorageOperationResult<ORawBuffer>(readReadRecordResponse(network));
+        } finally {
+          endResponse(network);
+        }
 
-          if (network.readByte() == 0)
-            return new OStorageOperationResult<ORawBuffer>(null);
+      } catch (Exception e) {
+        handleException("Error on read record " + iRid, e);
 
-          final ORawBuffer buffer = new ORawBuffer(network.readBytes(), network.readVersion(), network.readByte());
+      }
+    } while (true);
+  }
 
-          final ODatabaseRecord database = ODatabaseRecordThreadLocal.INSTANCE.getIfDefined();
-          ORecordInternal<?> record;
-          while (network.readByte() == 2) {
-            record = (ORecordInternal<?>) OChannelBinaryProtocol.readIdentifiable(network);
+  /**
+   * Reads many records at once. Servers which support {@link OChannelBinaryProtocol#REQUEST_RECORD_LOAD_BATCH} receive all the
+   * ids by one request and stream back the records. Otherwise, if server supports request ids, all the load requests are sent on
+   * the same channel before the first response is read. In both cases the whole batch costs about one network round trip instead
+   * of one per record. Older servers are asked record by record.
+   * 
+   * @return Buffers in the same order of requested ids, null for records that were not found
+   */
+  public List<ORawBuffer> readRecords(final List<ORecordId> iRids, final String iFetchPlan, final boolean iIgnoreCache) {
+    checkConnection();
 
-            if (database != null)
-              // PUT IN THE CLIENT LOCAL CACHE
-              database.getLevel1Cache().updateRecord(record);
-          }
-          return new OStorageOperationResult<ORawBuffer>(buffer);
+    if (iRids.isEmpty() || OStorageRemoteThreadLocal.INSTANCE.get().commandExecuting) {
+      // PENDING NETWORK OPERATION, CAN'T EXECUTE IT NOW
+      final List<ORawBuffer> buffers = new ArrayList<ORawBuffer>(iRids.size());
+      for (int i = 0; i < iRids.size(); ++i)
+        buffers.add(null);
+      return buffers;
+    }
 
-        } finally {
-          endResponse(network);
-        }
+    do {
+      try {
+        final OChannelBinaryClient network = acquireNetwork();
+        if (network.getSrvProtocolVersion() >= OChannelBinaryProtocol.PROTOCOL_VERSION_RECORD_LOAD_BATCH)
+          return readRecordsByBatch(network, iRids, iFetchPlan, iIgnoreCache);
+        else
+          return readRecordsPipelined(network, iRids, iFetchPlan, iIgnoreCache);
 
       } catch (Exception e) {
-        handleException("Error on read record " + iRid, e);
+        handleException("Error on read records " + iRids, e);
 
       }
     } while (true);
   }
 
+  private List<ORawBuffer> readRecordsByBatch(final OChannelBinaryClient network, final List<ORecordId> iRids,
+      final String iFetchPlan, final boolean iIgnoreCache) throws IOException {
+    try {
+      writeRequestHeader(network, OChannelBinaryProtocol.REQUEST_RECORD_LOAD_BATCH);
+      network.writeInt(iRids.size());
+      for (ORecordId rid : iRids)
+        network.writeRID(rid);
+      network.writeString(iFetchPlan != null ? iFetchPlan : "");
+      network.writeByte((byte) (iIgnoreCache ? 1 : 0));
+    } finally {
+      endRequest(network);
+    }
+
+    final List<ORawBuffer> buffers = new ArrayList<ORawBuffer>(iRids.size());
+    try {
+      beginResponse(network);
+
+      // RECORDS ARE STREAMED IN THE SAME ORDER OF REQUESTED IDS
+      for (int i = 0; i < iRids.size(); ++i) {
+        final byte found = network.readByte();
+        if (found == OChannelBinaryProtocol.RECORD_LOAD_BATCH_ERROR)
+          network.readAndThrowException();
+
+        if (found == 1)
+          buffers.add(new ORawBuffer(network.readBytes(), network.readVersion(), network.readByte()));
+        else
+          buffers.add(null);
+      }
+
+      readFetchedRecords(network);
+    } finally {
+      endResponse(network);
+    }
+    return buffers;
+  }
+
+  private List<ORawBuffer> readRecordsPipelined(final OChannelBinaryClient network, final List<ORecordId> iRids,
+      final String iFetchPlan, final boolean iIgnoreCache) throws Exception {
+    final OStorageRemoteSession session = OStorageRemoteThreadLocal.INSTANCE.get();
+
+    int sent = 0;
+    final int[] requestIds = new int[iRids.size()];
+    try {
+      requestIds[sent] = writeRequestHeader(network, OChannelBinaryProtocol.REQUEST_RECORD_LOAD);
+      writeReadRecordRequest(network, iRids.get(sent++), iFetchPlan, iIgnoreCache, false);
+
+      if (network.getSrvProtocolVersion() >= OChannelBinaryProtocol.PROTOCOL_VERSION_REQUEST_ID)
+        // PIPELINE ALL THE OTHER REQUESTS
+        while (sent < iRids.size()) {
+          requestIds[sent] = writeRequestHeader(network, OChannelBinaryProtocol.REQUEST_RECORD_LOAD);
+          writeReadRecordRequest(network, iRids.get(sent++), iFetchPlan, iIgnoreCache, false);
+        }
+    } finally {
+      endRequest(network);
+    }
+
+    // READ ALL THE SENT RESPONSES EVEN IN CASE OF ERROR TO LEAVE THE CHANNEL CLEAN
+    final List<ORawBuffer> buffers = new ArrayList<ORawBuffer>(iRids.size());
+    Exception error = null;
+    for (int i = 0; i < sent; ++i) {
+      session.requestId = requestIds[i];
+      try {
+        beginResponse(network);
+        buffers.add(readReadRecordResponse(network));
+      } catch (IOException e) {
+        throw e;
+      } catch (Exception e) {
+        if (error == null)
+          error = e;
+        buffers.add(null);
+      } finally {
+        endResponse(network);
+      }
+    }
+
+    if (error != null)
+      throw error;
+
+    // NOT PIPELINED REQUESTS
+    for (int i = sent; i < iRids.size(); ++i)
+      buffers.add(readRecord(iRids.get(i), iFetchPlan, iIgnoreCache, null, false).getResult());
+
+    return buffers;
+  }
+
+  private void writeReadRecordRequest(final OChannelBinaryClient network, final ORecordId iRid, final String iFetchPlan,
+      final boolean iIgnoreCache, final boolean loadTombstones) throws IOException {
+    network.writeRID(iRid);
+    network.writeString(iFetchPlan != null ? iFetchPlan : "");
+    if (network.getSrvProtocolVersion() >= 9)
+      network.writeByte((byte) (iIgnoreCache ? 1 : 0));
+
+    if (network.getSrvProtocolVersion() >= 13)
+      network.writeByte(loadTombstones ? (byte) 1 : (byte) 0);
+  }
+
+  private ORawBuffer readReadRecordResponse(final OChannelBinaryClient network) throws IOException {
+    if (network.readByte() == 0)
+      return null;
+
+    final ORawBuffer buffer = new ORawBuffer(network.readBytes(), network.readVersion(), network.readByte());
+    readFetchedRecords(network);
+    return buffer;
+  }
+
+  /**
+   * Reads records sent by the server because of fetch plan till the end marker.
+   */
+  private void readFetchedRecords(final OChannelBinaryClient network) throws IOException {
+    final ODatabaseRecord database = ODatabaseRecordThreadLocal.INSTANCE.getIfDefined();
+    ORecordInternal<?> record;
+    while (network.readByte() == 2) {
+      record = (ORecordInternal<?>) OChannelBinaryProtocol.readIdentifiable(network);
+
+      if (database != null)
+        // PUT IN THE CLIENT LOCAL CACHE
+        database.getLevel1Cache().updateRecord(record);
+    }
+  }
+
   public OStorageOperationResult<ORecordVersion> updateRecord(final ORecordId iRid, final byte[] iContent,
       final ORecordVersion iVersion, final byte iRecordType, int iMode, final ORecordCallback<ORecordVersion> iCallback) {
     checkConnection();
@@ -516,12 +653,14 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
           // ASYNCHRONOUS
           if (iCallback != null) {
             final int sessionId = getSessionId();
+            final int requestId = OStorageRemoteThreadLocal.INSTANCE.get().requestId;
             Callable<Object> response = new Callable<Object>() {
               public Object call() throws Exception {
                 ORecordVersion result;
 
                 try {
                   OStorageRemoteThreadLocal.INSTANCE.get().sessionId = sessionId;
+                  OStorageRemoteThreadLocal.INSTANCE.get().requestId = requestId;
                   beginResponse(network);
                   result = network.readVersion();
                 } finally {
@@ -616,12 +755,14 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
       // ASYNCHRONOUS
       if (iCallback != null) {
         final int sessionId = getSessionId();
+        final int requestId = OStorageRemoteThreadLocal.INSTANCE.get().requestId;
         Callable<Object> response = new Callable<Object>() {
           public Object call() throws Exception {
             Boolean result;
 
             try {
               OStorageRemoteThreadLocal.INSTANCE.get().sessionId = sessionId;
+              OStorageRemoteThreadLocal.INSTANCE.get().requestId = requestId;
               beginResponse(network);
               result = network.readByte() == 1;
             } finally {
@@ -1010,6 +1151,13 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
     if (!(iCommand instanceof OSerializableStream))
       throw new OCommandExecutionException("Cannot serialize the command to be executed to the server side.");
 
+    if (iCommand instanceof OSQLStreamQuery<?>) {
+      final OQueryCursor<?> cursor = openQueryCursor((OSQLStreamQuery<?>) iCommand);
+      if (cursor != null)
+        return cursor;
+      // THE SERVER DOESN'T SUPPORT CURSORS: EXECUTE IT AS ASYNCH QUERY
+    }
+
     OSerializableStream command = iCommand;
     Object result = null;
 
@@ -1120,6 +1268,51 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
     return result;
   }
 
+  /**
+   * Sends the query in cursor mode. The channel stays locked by the returned cursor until the whole result is read or the cursor is
+   * closed.
+   * 
+   * @return Cursor on the query result or null if the server doesn't support cursors
+   */
+  protected OQueryCursor<?> openQueryCursor(final OSQLStreamQuery<?> iQuery) {
+    do {
+      try {
+        final OChannelBinaryClient network = acquireNetwork();
+        if (network.getSrvProtocolVersion() < OChannelBinaryProtocol.PROTOCOL_VERSION_QUERY_CURSOR) {
+          endRequest(network);
+          return null;
+        }
+
+        boolean opened = false;
+        try {
+          writeRequestHeader(network, OChannelBinaryProtocol.REQUEST_COMMAND);
+          network.writeByte((byte) 'c');
+          network.writeBytes(OStreamSerializerAnyStreamable.INSTANCE.toStream(iQuery));
+          network.writeInt(iQuery.getChunkSize());
+          network.flush();
+
+          beginResponse(network);
+
+          final ORemoteQueryCursor<Object> cursor = new ORemoteQueryCursor<Object>(this, network,
+              ODatabaseRecordThreadLocal.INSTANCE.get());
+          opened = true;
+          return cursor;
+        } finally {
+          if (!opened) {
+            if (network.getLockRead().isHeldByCurrentThread())
+              endResponse(network);
+            endRequest(network);
+          }
+        }
+
+      } catch (OModificationOperationProhibitedException mope) {
+        handleDBFreeze();
+      } catch (Exception e) {
+        handleException("Error on executing command: " + iQuery, e);
+      }
+    } while (true);
+  }
+
   public void commit(final OTransaction iTx) {
     checkConnection();
 
@@ -1761,6 +1954,16 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
    * @throws IOException
    */
   protected OChannelBinaryClient beginRequest(final byte iCommand) throws IOException {
+    final OChannelBinaryClient network = acquireNetwork();
+    writeRequestHeader(network, iCommand);
+    return network;
+  }
+
+  /**
+   * Acquires a free network channel from the pool and locks its write stream. Caller must write the request header and release
+   * the channel by {@link #endRequest(OChannelBinaryClient)}.
+   */
+  protected OChannelBinaryClient acquireNetwork() throws IOException {
     OChannelBinaryClient network = null;
 
     if (debug)
@@ -1784,8 +1987,13 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
         network = networkPool.get(networkPoolCursor);
 
         networkPoolCursor++;
-        if (network.getLockWrite().tryLock())
-          break;
+        if (network.getLockWrite().tryLock()) {
+          if (network.getLockWrite().getHoldCount() == 1)
+            break;
+
+          // THE CHANNEL IS HELD BY AN OPEN QUERY CURSOR OF THIS THREAD
+          network.getLockWrite().unlock();
+        }
 
         network = null;
 
@@ -1826,12 +2034,32 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
       }
     }
 
-    network.writeByte(iCommand);
-    network.writeInt(getSessionId());
-
     return network;
   }
 
+  /**
+   * Writes command and session id of request. If server supports request ids new id is sent too and it is remembered in the
+   * session to match the response.
+   * 
+   * @return Id of request or {@link OChannelBinaryProtocol#NO_REQUEST_ID}
+   */
+  protected int writeRequestHeader(final OChannelBinaryClient iNetwork, final byte iCommand) throws IOException {
+    final OStorageRemoteSession session = OStorageRemoteThreadLocal.INSTANCE.get();
+
+    if (iNetwork.getSrvProtocolVersion() >= OChannelBinaryProtocol.PROTOCOL_VERSION_REQUEST_ID) {
+      session.requestId = iNetwork.nextRequestId();
+      iNetwork.writeByte((byte) (iCommand | OChannelBinaryProtocol.REQUEST_ID_FLAG));
+      iNetwork.writeInt(session.sessionId);
+      iNetwork.writeInt(session.requestId);
+    } else {
+      session.requestId = OChannelBinaryProtocol.NO_REQUEST_ID;
+      iNetwork.writeByte(iCommand);
+      iNetwork.writeInt(session.sessionId);
+    }
+
+    return session.requestId;
+  }
+
   /**
    * Ends the request and unlock the write lock
    */
@@ -1881,7 +2109,7 @@ public class OStorageRemote extends OStorageAbstract implements OStorageProxy {
    * Starts listening the response.
    */
   protected void beginResponse(final OChannelBinaryClient iNetwork) throws IOException {
-    iNetwork.beginResponse(getSessionId());
+    iNetwork.beginResponse(getSessionId(), OStorageRemoteThreadLocal.INSTANCE.get().requestId, iNetwork.getTimeout());
 
     if (iNetwork.getLockRead().getQueueLength() + 1 >= maxReadQueue)
       synchronized (networkPool) {
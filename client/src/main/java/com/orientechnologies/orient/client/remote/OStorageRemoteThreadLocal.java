@@ -16,6 +16,7 @@
 package com.orientechnologies.orient.client.remote;
 
 import com.orientechnologies.orient.client.remote.OStorageRemoteThreadLocal.OStorageRemoteSession;
+import com.orientechnologies.orient.enterprise.channel.binary.OChannelBinaryProtocol;
 
 public class OStorageRemoteThreadLocal extends ThreadLocal<OStorageRemoteSession> {
 	public static OStorageRemoteThreadLocal	INSTANCE	= new OStorageRemoteThreadLocal();
@@ -23,6 +24,7 @@ public class OStorageRemoteThreadLocal extends ThreadLocal<OStorageRemoteSession
 	public class OStorageRemoteSession {
 		public boolean	commandExecuting	= false;
 		public Integer	sessionId					= -1;
+		public int			requestId					= OChannelBinaryProtocol.NO_REQUEST_ID;
 	}
 
 	@Override
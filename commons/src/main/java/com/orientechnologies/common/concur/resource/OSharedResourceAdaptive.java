@@ -94,6 +94,24 @@ public class OSharedResourceAdaptive {
     return concurrent || lock.writeLock().tryLock();
   }
 
+  /**
+   * Waits for the exclusive lock at most the passed timeout.
+   * 
+   * @return <code>false</code> if the timeout expired
+   */
+  protected boolean tryAcquireExclusiveLock(final long iTimeout) {
+    if (!concurrent)
+      return true;
+
+    try {
+      return lock.writeLock().tryLock(iTimeout, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OLockException("Thread interrupted while waiting for resource of class '" + getClass() + "' with timeout="
+          + iTimeout);
+    }
+  }
+
   protected void acquireSharedLock() {
     if (concurrent)
       if (timeout > 0) {
@@ -35,6 +35,10 @@ public abstract class OSharedResourceTimeout {
     this.timeout = timeout;
   }
 
+  public int getTimeout() {
+    return timeout;
+  }
+
   protected void acquireSharedLock() throws OTimeoutException {
     try {
       if (timeout == 0) {
@@ -16,6 +16,9 @@
 
 package com.orientechnologies.common.directmemory.collections;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.orientechnologies.common.directmemory.ODirectMemory;
 import com.orientechnologies.common.hash.OMurmurHash3;
 import com.orientechnologies.common.serialization.types.OBinarySerializer;
@@ -47,6 +50,7 @@ public class ODirectMemoryHashMap<K, V> {
   private int                                size;
   private int                                capacity;
   private int                                nextThreshold;
+  private int                                evictionIndex;
 
   private ODirectMemoryHashMapBucket<K, V>[] entries;
 
@@ -124,6 +128,52 @@ public class ODirectMemoryHashMap<K, V> {
     return true;
   }
 
+  /**
+   * Removes one of the entries of the map. Entries are chosen by visiting hash buckets in round-robin order, so subsequent calls
+   * remove entries which are spread over the whole map. Because position of entry is defined by hash code of key, this approximates
+   * random eviction and does not require to keep any access metadata for entries.
+   * 
+   * @return value of removed entry or <code>null</code> if map is empty.
+   */
+  public V removeNext() {
+    if (size == 0)
+      return null;
+
+    for (int i = 0; i < capacity; i++) {
+      final int index = (int) index(evictionIndex + i);
+
+      final ODirectMemoryHashMapBucket<K, V> bucket = entries[index];
+      if (bucket == null)
+        continue;
+
+      final V removedValue = bucket.removeFirst();
+      if (removedValue != null) {
+        size--;
+        evictionIndex = (int) index(index + 1);
+        return removedValue;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * @return keys of all entries, they are deserialized from direct memory so changes of returned list do not affect map.
+   */
+  public List<K> keys() {
+    final List<K> keys = new ArrayList<K>(size);
+
+    for (ODirectMemoryHashMapBucket<K, V> bucket : entries) {
+      if (bucket == null)
+        continue;
+
+      for (ODirectMemoryHashMapBucket.Entry entry : bucket)
+        keys.add(keySerializer.deserialize(entry.key, 0));
+    }
+
+    return keys;
+  }
+
   private void rehash() {
     final ODirectMemoryHashMapBucket<K, V>[] oldEntries = entries;
     final int oldCapacity = capacity;
@@ -186,24 +186,8 @@ public class ODirectMemoryHashMapBucket<K, V> implements Iterable<ODirectMemoryH
         if (currentBucket.hashCodes[i] == hashCode) {
           final long keyPointer = currentBucket.keyValuePairs[i * 2];
           final byte[] storedKey = directMemory.get(keyPointer, OBinaryTypeSerializer.INSTANCE);
-          if (Arrays.equals(serializedKey, storedKey)) {
-            final long valuePointer = currentBucket.keyValuePairs[i * 2 + 1];
-            final V removedValue = directMemory.get(valuePointer, valueSerializer);
-
-            directMemory.free(keyPointer);
-            directMemory.free(valuePointer);
-
-            System.arraycopy(currentBucket.hashCodes, i + 1, currentBucket.hashCodes, i, currentBucket.size - (i + 1));
-            System.arraycopy(currentBucket.keyValuePairs, (i + 1) * 2, currentBucket.keyValuePairs, i * 2,
-                2 * (currentBucket.size - (i + 1)));
-
-            currentBucket.size--;
-
-            if (currentBucket.size == 0 && prevBucket != null)
-              prevBucket.nextBucket = currentBucket.nextBucket;
-
-            return removedValue;
-          }
+          if (Arrays.equals(serializedKey, storedKey))
+            return removeEntry(prevBucket, currentBucket, i);
         }
       }
 
@@ -214,6 +198,46 @@ public class ODirectMemoryHashMapBucket<K, V> implements Iterable<ODirectMemoryH
     return null;
   }
 
+  /**
+   * Removes first entry which is contained in this bucket or in one of the buckets chained to it.
+   * 
+   * @return value of removed entry or <code>null</code> if all buckets are empty.
+   */
+  public V removeFirst() {
+    ODirectMemoryHashMapBucket<K, V> currentBucket = this;
+    ODirectMemoryHashMapBucket<K, V> prevBucket = null;
+
+    while (currentBucket != null && currentBucket.size == 0) {
+      prevBucket = currentBucket;
+      currentBucket = currentBucket.nextBucket;
+    }
+
+    if (currentBucket == null)
+      return null;
+
+    return removeEntry(prevBucket, currentBucket, 0);
+  }
+
+  private V removeEntry(ODirectMemoryHashMapBucket<K, V> prevBucket, ODirectMemoryHashMapBucket<K, V> currentBucket, int i) {
+    final long keyPointer = currentBucket.keyValuePairs[i * 2];
+    final long valuePointer = currentBucket.keyValuePairs[i * 2 + 1];
+    final V removedValue = directMemory.get(valuePointer, valueSerializer);
+
+    directMemory.free(keyPointer);
+    directMemory.free(valuePointer);
+
+    System.arraycopy(currentBucket.hashCodes, i + 1, currentBucket.hashCodes, i, currentBucket.size - (i + 1));
+    System.arraycopy(currentBucket.keyValuePairs, (i + 1) * 2, currentBucket.keyValuePairs, i * 2,
+        2 * (currentBucket.size - (i + 1)));
+
+    currentBucket.size--;
+
+    if (currentBucket.size == 0 && prevBucket != null)
+      prevBucket.nextBucket = currentBucket.nextBucket;
+
+    return removedValue;
+  }
+
   public void clear() {
     ODirectMemoryHashMapBucket<K, V> currentBucket = this;
 
@@ -248,12 +272,12 @@ public class ODirectMemoryHashMapBucket<K, V> implements Iterable<ODirectMemoryH
   }
 
   private class EntreeIterator implements Iterator<Entry> {
-    private ODirectMemoryHashMapBucket<K, V> currentBucket = ODirectMemoryHashMapBucket.this;
+    private ODirectMemoryHashMapBucket<K, V> currentBucket = skipEmptyBuckets(ODirectMemoryHashMapBucket.this);
     private int                              currentIndex  = 0;
 
     @Override
     public boolean hasNext() {
-      return currentBucket != null && (currentBucket.nextBucket != null || currentIndex < currentBucket.size);
+      return currentBucket != null;
     }
 
     @Override
@@ -268,7 +292,7 @@ public class ODirectMemoryHashMapBucket<K, V> implements Iterable<ODirectMemoryH
 
       currentIndex++;
       if (currentIndex >= currentBucket.size) {
-        currentBucket = currentBucket.nextBucket;
+        currentBucket = skipEmptyBuckets(currentBucket.nextBucket);
         currentIndex = 0;
       }
 
@@ -280,6 +304,14 @@ public class ODirectMemoryHashMapBucket<K, V> implements Iterable<ODirectMemoryH
     public void remove() {
       throw new UnsupportedOperationException("Remove operation is unsupported.");
     }
+
+    private ODirectMemoryHashMapBucket<K, V> skipEmptyBuckets(ODirectMemoryHashMapBucket<K, V> bucket) {
+      // FIRST BUCKET IN CHAIN IS NEVER UNLINKED SO IT CAN BE EMPTY WHILE NEXT ONES ARE NOT
+      while (bucket != null && bucket.size == 0)
+        bucket = bucket.nextBucket;
+
+      return bucket;
+    }
   }
 
   private static final class FindResult<K, V> {
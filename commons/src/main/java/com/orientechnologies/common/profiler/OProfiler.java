@@ -38,6 +38,9 @@ import com.orientechnologies.common.util.OPair;
  * 
  * To start the recording use call startRecording(). By default record is turned off to avoid a run-time execution cost.
  * 
+ * Metrics are updated without locks: every metric is accumulated by striped cells of its {@link OProfilerMetric} handle. Handles
+ * obtained by registerCounter(), registerChrono() and registerStat() avoid even the lookup by name and should be used on hot paths.
+ * 
  * @author Luca Garulli
  * @copyrights Orient Technologies.com
  */
@@ -46,14 +49,16 @@ public class OProfiler extends OSharedResourceAbstract implements OProfilerMBean
     CHRONO, COUNTER, STAT, SIZE, ENABLED, TEXT
   }
 
-  protected long                                   recordingFrom           = -1;
+  protected volatile long                          recordingFrom           = -1;
   protected Map<String, OProfilerHookValue>        hooks                   = new ConcurrentHashMap<String, OProfilerHookValue>();
   protected Date                                   lastReset               = new Date();
 
   protected ConcurrentHashMap<String, String>      dictionary              = new ConcurrentHashMap<String, String>();
   protected ConcurrentHashMap<String, METRIC_TYPE> types                   = new ConcurrentHashMap<String, METRIC_TYPE>();
-  protected OProfilerData                          realTime                = new OProfilerData();
-  protected OProfilerData                          lastSnapshot;
+  protected final ConcurrentHashMap<String, OProfilerCounter> counters = new ConcurrentHashMap<String, OProfilerCounter>();
+  protected final ConcurrentHashMap<String, OProfilerChrono>  chronos  = new ConcurrentHashMap<String, OProfilerChrono>();
+  protected final ConcurrentHashMap<String, OProfilerChrono>  stats    = new ConcurrentHashMap<String, OProfilerChrono>();
+  protected volatile OProfilerData                 lastSnapshot;
   protected List<OProfilerData>                    snapshots               = new ArrayList<OProfilerData>();
   protected List<OProfilerData>                    summaries               = new ArrayList<OProfilerData>();
 
@@ -155,10 +160,13 @@ public class OProfiler extends OSharedResourceAbstract implements OProfilerMBean
       OLogManager.instance().config(this, "Profiler has stopped recording metrics");
 
       lastSnapshot = null;
-      realTime.clear();
       dictionary.clear();
       types.clear();
 
+      resetMetrics(counters);
+      resetMetrics(chronos);
+      resetMetrics(stats);
+
       if (archiverTask != null)
         archiverTask.cancel();
 
@@ -173,6 +181,13 @@ public class OProfiler extends OSharedResourceAbstract implements OProfilerMBean
     return recordingFrom > -1;
   }
 
+  /**
+   * @return <code>true</code> if metrics are periodically archived in snapshots.
+   */
+  public boolean isSnapshotEnabled() {
+    return lastSnapshot != null;
+  }
+
   public void createSnapshot() {
     if (lastSnapshot == null)
       return;
@@ -184,6 +199,7 @@ public class OProfiler extends OSharedResourceAbstract implements OProfilerMBean
 
       synchronized (snapshots) {
         // ARCHIVE IT
+        collectMetrics(lastSnapshot, true, true);
         lastSnapshot.setHookValues(hookValuesSnapshots);
         lastSnapshot.endRecording();
         snapshots.add(lastSnapshot);
@@ -223,28 +239,40 @@ public class OProfiler extends OSharedResourceAbstract implements OProfilerMBean
     if (iName == null || recordingFrom < 0)
       return;
 
-    updateMetadata(iMetadata, iDescription, METRIC_TYPE.COUNTER);
+    OProfilerCounter counter = counters.get(iName);
+    if (counter == null)
+      counter = addMetric(counters, new OProfilerCounter(this, iName, iDescription, iMetadata));
 
-    acquireSharedLock();
-    try {
-      if (lastSnapshot != null)
-        lastSnapshot.updateCounter(iName, iPlus);
-      realTime.updateCounter(iName, iPlus);
-    } finally {
-      releaseSharedLock();
-    }
+    counter.update(iPlus);
   }
 
   public long getCounter(final String iStatName) {
     if (iStatName == null || recordingFrom < 0)
       return -1;
 
-    acquireSharedLock();
-    try {
-      return realTime.getCounter(iStatName);
-    } finally {
-      releaseSharedLock();
-    }
+    final OProfilerCounter counter = counters.get(iStatName);
+    return counter != null ? counter.get() : -1;
+  }
+
+  /**
+   * Returns handle of the counter with passed in name, counter is created if absent.
+   */
+  public OProfilerCounter registerCounter(final String iName, final String iDescription, final String iMetadataName) {
+    return registerMetric(counters, new OProfilerCounter(this, iName, iDescription, iMetadataName));
+  }
+
+  /**
+   * Returns handle of the chrono with passed in name, chrono is created if absent.
+   */
+  public OProfilerChrono registerChrono(final String iName, final String iDescription, final String iMetadataName) {
+    return registerMetric(chronos, new OProfilerChrono(this, iName, iDescription, iMetadataName, METRIC_TYPE.CHRONO));
+  }
+
+  /**
+   * Returns handle of the statistic with passed in name, statistic is created if absent.
+   */
+  public OProfilerChrono registerStat(final String iName, final String iDescription, final String iMetadataName) {
+    return registerMetric(stats, new OProfilerChrono(this, iName, iDescription, iMetadataName, METRIC_TYPE.STAT));
   }
 
   public String toJSON(final String iQuery, final String iPar1, final String iPar2) {
@@ -259,7 +287,7 @@ public class OProfiler extends OSharedResourceAbstract implements OProfilerMBean
         return "Profiler restarted";
       } else {
         if (iPar1.equals("realtime")) {
-          realTime.clear(iPar2);
+          resetRealTimeMetrics(iPar2);
           return "Profiler realtime reset";
         }
       }
@@ -274,12 +302,16 @@ public class OProfiler extends OSharedResourceAbstract implements OProfilerMBean
     acquireSharedLock();
     try {
       if (iQuery.equals("realtime")) {
+        final OProfilerData realTime = getRealTimeData();
         realTime.setHookValues(hookValuesSnapshots);
         realTime.toJSON(buffer, iPar1);
 
       } else if (iQuery.equals("last")) {
-        if (lastSnapshot != null)
-          lastSnapshot.toJSON(buffer, iPar1);
+        if (lastSnapshot != null) {
+          final OProfilerData last = new OProfilerData();
+          collectMetrics(last, true, false);
+          last.toJSON(buffer, iPar1);
+        }
 
       } else {
         // GET THE RANGES
@@ -419,18 +451,14 @@ public class OProfiler extends OSharedResourceAbstract implements OProfilerMBean
     if (recordingFrom < 0)
       return -1;
 
-    updateMetadata(iDictionaryName, iDescription, METRIC_TYPE.CHRONO);
+    OProfilerChrono chrono = chronos.get(iName);
+    if (chrono == null)
+      chrono = addMetric(chronos, new OProfilerChrono(this, iName, iDescription, iDictionaryName, METRIC_TYPE.CHRONO));
 
-    acquireSharedLock();
-    try {
+    if (iPayload != null)
+      chrono.payload = iPayload;
 
-      if (lastSnapshot != null)
-        lastSnapshot.stopChrono(iName, iStartTime, iPayload);
-      return realTime.stopChrono(iName, iStartTime, iPayload);
-
-    } finally {
-      releaseSharedLock();
-    }
+    return chrono.stop(iStartTime);
   }
 
   public long updateStat(final String iName, final String iDescription, final long iValue) {
@@ -438,18 +466,11 @@ public class OProfiler extends OSharedResourceAbstract implements OProfilerMBean
     if (recordingFrom < 0)
       return -1;
 
-    updateMetadata(iName, iDescription, METRIC_TYPE.STAT);
-
-    acquireSharedLock();
-    try {
+    OProfilerChrono stat = stats.get(iName);
+    if (stat == null)
+      stat = addMetric(stats, new OProfilerChrono(this, iName, iDescription, iName, METRIC_TYPE.STAT));
 
-      if (lastSnapshot != null)
-        lastSnapshot.updateStat(iName, iValue);
-      return realTime.updateStat(iName, iValue);
-
-    } finally {
-      releaseSharedLock();
-    }
+    return stat.update(iValue);
   }
 
   public String dumpCounters() {
@@ -457,30 +478,15 @@ public class OProfiler extends OSharedResourceAbstract implements OProfilerMBean
     if (recordingFrom < 0)
       return "Counters: <no recording>";
 
-    acquireSharedLock();
-    try {
-      return realTime.dumpCounters();
-    } finally {
-      releaseSharedLock();
-    }
+    return getRealTimeData().dumpCounters();
   }
 
   public String dumpChronos() {
-    acquireSharedLock();
-    try {
-      return realTime.dumpChronos();
-    } finally {
-      releaseSharedLock();
-    }
+    return getRealTimeData().dumpChronos();
   }
 
   public String dumpStats() {
-    acquireSharedLock();
-    try {
-      return realTime.dumpStats();
-    } finally {
-      releaseSharedLock();
-    }
+    return getRealTimeData().dumpStats();
   }
 
   public String dumpHookValues() {
@@ -526,30 +532,15 @@ public class OProfiler extends OSharedResourceAbstract implements OProfilerMBean
   }
 
   public String[] getCountersAsString() {
-    acquireSharedLock();
-    try {
-      return realTime.getCountersAsString();
-    } finally {
-      releaseSharedLock();
-    }
+    return getRealTimeData().getCountersAsString();
   }
 
   public String[] getChronosAsString() {
-    acquireSharedLock();
-    try {
-      return realTime.getChronosAsString();
-    } finally {
-      releaseSharedLock();
-    }
+    return getRealTimeData().getChronosAsString();
   }
 
   public String[] getStatsAsString() {
-    acquireSharedLock();
-    try {
-      return realTime.getStatsAsString();
-    } finally {
-      releaseSharedLock();
-    }
+    return getRealTimeData().getStatsAsString();
   }
 
   public Date getLastReset() {
@@ -557,30 +548,27 @@ public class OProfiler extends OSharedResourceAbstract implements OProfilerMBean
   }
 
   public List<String> getCounters() {
-    acquireSharedLock();
-    try {
-      return realTime.getCounters();
-    } finally {
-      releaseSharedLock();
-    }
+    final List<String> names = new ArrayList<String>(counters.keySet());
+    Collections.sort(names);
+    return names;
   }
 
   public OProfilerEntry getStat(final String iStatName) {
-    acquireSharedLock();
-    try {
-      return realTime.getStat(iStatName);
-    } finally {
-      releaseSharedLock();
-    }
+    final OProfilerChrono stat = iStatName != null ? stats.get(iStatName) : null;
+    return stat != null ? stat.get() : null;
   }
 
   public OProfilerEntry getChrono(final String iChronoName) {
-    acquireSharedLock();
-    try {
-      return realTime.getChrono(iChronoName);
-    } finally {
-      releaseSharedLock();
-    }
+    final OProfilerChrono chrono = iChronoName != null ? chronos.get(iChronoName) : null;
+    return chrono != null ? chrono.get() : null;
+  }
+
+  public long[] getChronoPercentiles(final String iChronoName) {
+    final OProfilerEntry chrono = getChrono(iChronoName);
+    if (chrono == null)
+      return null;
+
+    return new long[] { chrono.p50, chrono.p99, chrono.p999 };
   }
 
   public void registerHookValue(final String iName, final String iDescription, final METRIC_TYPE iType,
@@ -631,6 +619,70 @@ public class OProfiler extends OSharedResourceAbstract implements OProfilerMBean
     return result;
   }
 
+  /**
+   * Returns real time values of all metrics.
+   */
+  protected OProfilerData getRealTimeData() {
+    final OProfilerData data = new OProfilerData();
+    collectMetrics(data, false, false);
+    return data;
+  }
+
+  protected void collectMetrics(final OProfilerData iData, final boolean iPeriod, final boolean iReset) {
+    for (OProfilerCounter counter : counters.values())
+      counter.collect(iData, iPeriod, iReset);
+    for (OProfilerChrono chrono : chronos.values())
+      chrono.collect(iData, iPeriod, iReset);
+    for (OProfilerChrono stat : stats.values())
+      stat.collect(iData, iPeriod, iReset);
+  }
+
+  protected void resetRealTimeMetrics(final String iFilter) {
+    for (OProfilerCounter counter : counters.values())
+      if (iFilter == null || counter.getName().startsWith(iFilter))
+        counter.resetRealTime();
+    for (OProfilerChrono chrono : chronos.values())
+      if (iFilter == null || chrono.getName().startsWith(iFilter))
+        chrono.resetRealTime();
+    for (OProfilerChrono stat : stats.values())
+      if (iFilter == null || stat.getName().startsWith(iFilter))
+        stat.resetRealTime();
+  }
+
+  /**
+   * Removes metrics created implicitly by name and resets values of registered ones because their handles are still in use.
+   */
+  protected <T extends OProfilerMetric> void resetMetrics(final ConcurrentHashMap<String, T> iMetrics) {
+    for (T metric : iMetrics.values()) {
+      if (!metric.registered) {
+        iMetrics.remove(metric.getName(), metric);
+        continue;
+      }
+
+      if (metric instanceof OProfilerCounter)
+        ((OProfilerCounter) metric).reset();
+      else
+        ((OProfilerChrono) metric).reset();
+
+      updateMetadata(metric.metadataName, metric.getDescription(), metric.getType());
+    }
+  }
+
+  protected <T extends OProfilerMetric> T registerMetric(final ConcurrentHashMap<String, T> iMetrics, final T iMetric) {
+    final T metric = addMetric(iMetrics, iMetric);
+    metric.registered = true;
+    return metric;
+  }
+
+  protected <T extends OProfilerMetric> T addMetric(final ConcurrentHashMap<String, T> iMetrics, final T iMetric) {
+    final T metric = iMetrics.putIfAbsent(iMetric.getName(), iMetric);
+    if (metric != null)
+      return metric;
+
+    updateMetadata(iMetric.metadataName, iMetric.getDescription(), iMetric.getType());
+    return iMetric;
+  }
+
   /**
    * Updates the metric metadata.
    */
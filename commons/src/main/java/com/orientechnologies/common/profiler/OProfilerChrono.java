@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.common.profiler;
+
+import com.orientechnologies.common.profiler.OProfiler.METRIC_TYPE;
+import com.orientechnologies.common.profiler.OProfilerData.OProfilerEntry;
+
+/**
+ * Chrono or statistic metric. Besides total, average, min and max it keeps histogram of values, so 50th, 99th and 99.9th
+ * percentiles are reported too.
+ *
+ * @since 17.10.13
+ * @see OProfiler#registerChrono(String, String, String)
+ * @see OProfiler#registerStat(String, String, String)
+ */
+public class OProfilerChrono extends OProfilerMetric {
+  private final OStripedHistogram realTime = new OStripedHistogram();
+  private final OStripedHistogram period   = new OStripedHistogram();
+  volatile String                 payload;
+
+  OProfilerChrono(final OProfiler iProfiler, final String iName, final String iDescription, final String iMetadataName,
+      final METRIC_TYPE iType) {
+    super(iProfiler, iName, iDescription, iMetadataName, iType);
+  }
+
+  /**
+   * Stops chrono started by {@link OProfiler#startChrono()}.
+   *
+   * @return Elapsed time in ms or <code>-1</code> if profiler is not recording.
+   */
+  public long stop(final long iStartTime) {
+    if (!profiler.isRecording() || iStartTime < 0)
+      return -1;
+
+    return update(System.currentTimeMillis() - iStartTime);
+  }
+
+  public long update(final long iValue) {
+    if (!profiler.isRecording())
+      return -1;
+
+    realTime.record(iValue);
+    if (profiler.isSnapshotEnabled())
+      period.record(iValue);
+
+    return iValue;
+  }
+
+  /**
+   * @return Real time values of metric or <code>null</code> if nothing was recorded.
+   */
+  public OProfilerEntry get() {
+    final OProfilerData data = new OProfilerData();
+    collect(data, false, false);
+    return type == METRIC_TYPE.CHRONO ? data.getChrono(name) : data.getStat(name);
+  }
+
+  void reset() {
+    realTime.fill(new OProfilerData().new OProfilerEntry(), true);
+    period.fill(new OProfilerData().new OProfilerEntry(), true);
+  }
+
+  void resetRealTime() {
+    realTime.fill(new OProfilerData().new OProfilerEntry(), true);
+  }
+
+  @Override
+  void collect(final OProfilerData iData, final boolean iPeriod, final boolean iReset) {
+    final OProfilerEntry entry = iData.new OProfilerEntry();
+    entry.name = name;
+    entry.payLoad = payload;
+
+    if ((iPeriod ? period : realTime).fill(entry, iReset)) {
+      if (type == METRIC_TYPE.CHRONO)
+        iData.addChrono(entry);
+      else
+        iData.addStat(entry);
+    }
+  }
+}
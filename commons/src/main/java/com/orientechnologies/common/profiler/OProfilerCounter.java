@@ -0,0 +1,70 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.common.profiler;
+
+import com.orientechnologies.common.profiler.OProfiler.METRIC_TYPE;
+
+/**
+ * Counter metric. Concurrent updates are spread across striped cells, so they do not contend on the same memory location.
+ *
+ * @since 17.10.13
+ * @see OProfiler#registerCounter(String, String, String)
+ */
+public class OProfilerCounter extends OProfilerMetric {
+  private final OStripedCounter realTime = new OStripedCounter();
+  private final OStripedCounter period   = new OStripedCounter();
+
+  OProfilerCounter(final OProfiler iProfiler, final String iName, final String iDescription, final String iMetadataName) {
+    super(iProfiler, iName, iDescription, iMetadataName, METRIC_TYPE.COUNTER);
+  }
+
+  public void increment() {
+    update(1);
+  }
+
+  public void update(final long iPlus) {
+    if (!profiler.isRecording())
+      return;
+
+    realTime.add(iPlus);
+    if (profiler.isSnapshotEnabled())
+      period.add(iPlus);
+  }
+
+  /**
+   * @return Real time value of counter.
+   */
+  public long get() {
+    return realTime.sum();
+  }
+
+  void reset() {
+    realTime.sumThenReset();
+    period.sumThenReset();
+  }
+
+  void resetRealTime() {
+    realTime.sumThenReset();
+  }
+
+  @Override
+  void collect(final OProfilerData iData, final boolean iPeriod, final boolean iReset) {
+    final OStripedCounter counter = iPeriod ? period : realTime;
+    final long value = iReset ? counter.sumThenReset() : counter.sum();
+    if (value != 0)
+      iData.updateCounter(name, value);
+  }
+}
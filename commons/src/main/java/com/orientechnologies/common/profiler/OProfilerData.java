@@ -38,6 +38,9 @@ import com.orientechnologies.common.log.OLogManager;
  * @copyrights Orient Technologies.com
  */
 public class OProfilerData {
+  private static final String               ENTRIES_BORDER = "------------------------------------------------------------"
+                                                               + "----------------------------------------";
+
   private long                              recordingFrom = 0;
   private long                              recordingTo   = Long.MAX_VALUE;
   private final Map<String, Long>           counters;
@@ -53,9 +56,17 @@ public class OProfilerData {
     public long   max     = 0;
     public long   average = 0;
     public long   total   = 0;
+    public long   p50     = 0;
+    public long   p99     = 0;
+    public long   p999    = 0;
     public String payLoad;
     public String description;
 
+    /**
+     * Counts of values per bucket used to calculate percentiles, layout of buckets is defined by {@link OStripedHistogram}.
+     */
+    public long[] histogram;
+
     public void toJSON(final StringBuilder buffer) {
       buffer.append(String.format("\"%s\":{", OIOUtils.encode(name)));
       buffer.append(String.format("\"%s\":%d,", "entries", entries));
@@ -63,7 +74,10 @@ public class OProfilerData {
       buffer.append(String.format("\"%s\":%d,", "min", min));
       buffer.append(String.format("\"%s\":%d,", "max", max));
       buffer.append(String.format("\"%s\":%d,", "average", average));
-      buffer.append(String.format("\"%s\":%d", "total", total));
+      buffer.append(String.format("\"%s\":%d,", "total", total));
+      buffer.append(String.format("\"%s\":%d,", "p50", p50));
+      buffer.append(String.format("\"%s\":%d,", "p99", p99));
+      buffer.append(String.format("\"%s\":%d", "p999", p999));
       if (payLoad != null)
         buffer.append(String.format("\"%s\":%d", "payload", payLoad));
       buffer.append("}");
@@ -71,8 +85,9 @@ public class OProfilerData {
 
     @Override
     public String toString() {
-      return String.format("Profiler entry [%s]: total=%d, average=%d, items=%d, last=%d, max=%d, min=%d", total, name, average,
-          entries, last, max, min);
+      return String.format(
+          "Profiler entry [%s]: total=%d, average=%d, items=%d, last=%d, max=%d, min=%d, p50=%d, p99=%d, p999=%d", name, total,
+          average, entries, last, max, min, p50, p99, p999);
     }
   }
 
@@ -307,6 +322,18 @@ public class OProfilerData {
     }
   }
 
+  void addChrono(final OProfilerEntry iEntry) {
+    synchronized (chronos) {
+      chronos.put(iEntry.name, iEntry);
+    }
+  }
+
+  void addStat(final OProfilerEntry iEntry) {
+    synchronized (stats) {
+      stats.put(iEntry.name, iEntry);
+    }
+  }
+
   public long getCounter(final String iStatName) {
     if (iStatName == null)
       return -1;
@@ -519,20 +546,20 @@ public class OProfilerData {
 
       OProfilerEntry c;
 
-      iBuffer.append(String.format("\n%50s +-------------------------------------------------------------------+", ""));
-      iBuffer.append(String.format("\n%50s | %10s %10s %10s %10s %10s %10s |", "Name", "last", "total", "min", "max", "average",
-          "items"));
-      iBuffer.append(String.format("\n%50s +-------------------------------------------------------------------+", ""));
+      iBuffer.append(String.format("\n%50s +%s+", "", ENTRIES_BORDER));
+      iBuffer.append(String.format("\n%50s | %10s %10s %10s %10s %10s %10s %10s %10s %10s |", "Name", "last", "total", "min", "max",
+          "average", "items", "p50", "p99", "p999"));
+      iBuffer.append(String.format("\n%50s +%s+", "", ENTRIES_BORDER));
 
       final List<String> keys = new ArrayList<String>(iValues.keySet());
       Collections.sort(keys);
 
       for (String k : keys) {
         c = iValues.get(k);
-        iBuffer.append(String.format("\n%-50s | %10d %10d %10d %10d %10d %10d |", k, c.last, c.total, c.min, c.max, c.average,
-            c.entries));
+        iBuffer.append(String.format("\n%-50s | %10d %10d %10d %10d %10d %10d %10d %10d %10d |", k, c.last, c.total, c.min, c.max,
+            c.average, c.entries, c.p50, c.p99, c.p999));
       }
-      iBuffer.append(String.format("\n%50s +-------------------------------------------------------------------+", ""));
+      iBuffer.append(String.format("\n%50s +%s+", "", ENTRIES_BORDER));
       return iBuffer.toString();
     }
   }
@@ -551,6 +578,17 @@ public class OProfilerData {
         currentValue.max = Math.max(currentValue.max, entry.getValue().max);
         currentValue.average = (currentValue.total + entry.getValue().total) / currentValue.entries;
         currentValue.total += entry.getValue().total;
+
+        final long[] otherHistogram = entry.getValue().histogram;
+        if (otherHistogram != null) {
+          // NEW ARRAY IS CREATED BECAUSE FIRST MERGED ENTRY IS SHARED WITH THE SNAPSHOT IT COMES FROM
+          final long[] histogram = new long[otherHistogram.length];
+          for (int i = 0; i < histogram.length; i++)
+            histogram[i] = otherHistogram[i] + (currentValue.histogram != null ? currentValue.histogram[i] : 0);
+
+          currentValue.histogram = histogram;
+          OStripedHistogram.updatePercentiles(currentValue);
+        }
       }
     }
   }
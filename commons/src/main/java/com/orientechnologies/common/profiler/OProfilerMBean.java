@@ -33,6 +33,11 @@ public interface OProfilerMBean {
 
   public String dumpChronos();
 
+  /**
+   * @return 50th, 99th and 99.9th percentiles of chrono or <code>null</code> if chrono is absent.
+   */
+  public long[] getChronoPercentiles(String iChronoName);
+
   public String[] getCountersAsString();
 
   public String[] getChronosAsString();
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.common.profiler;
+
+import com.orientechnologies.common.profiler.OProfiler.METRIC_TYPE;
+
+/**
+ * Metric handle returned by {@link OProfiler}. Handle is obtained once and then updated without lookup by name and without locks,
+ * so it should be used in place of methods which accept metric name on frequently executed paths.
+ *
+ * Every metric keeps two accumulators: real time values and values of the current snapshot period which are reset when snapshot is
+ * archived.
+ *
+ * @since 17.10.13
+ */
+public abstract class OProfilerMetric {
+  protected final OProfiler   profiler;
+  protected final String      name;
+  protected final String      description;
+  protected final String      metadataName;
+  protected final METRIC_TYPE type;
+
+  /**
+   * Metrics created implicitly by methods which accept metric name are removed when recording is stopped, metrics requested by
+   * their users are kept because their handles are still referenced.
+   */
+  volatile boolean            registered;
+
+  protected OProfilerMetric(final OProfiler iProfiler, final String iName, final String iDescription, final String iMetadataName,
+      final METRIC_TYPE iType) {
+    profiler = iProfiler;
+    name = iName;
+    description = iDescription;
+    metadataName = iMetadataName;
+    type = iType;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public METRIC_TYPE getType() {
+    return type;
+  }
+
+  /**
+   * Adds accumulated values to profiler data.
+   *
+   * @param iPeriod
+   *          If <code>true</code> values of current snapshot period are used, otherwise real time values.
+   * @param iReset
+   *          If <code>true</code> used values are reset.
+   */
+  abstract void collect(OProfilerData iData, boolean iPeriod, boolean iReset);
+}
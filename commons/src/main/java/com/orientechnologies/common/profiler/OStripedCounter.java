@@ -0,0 +1,73 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.common.profiler;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Long value which is spread across several cells to avoid contention of concurrent writers. Cell is chosen by id of the writer
+ * thread and cells are padded to be placed on different cache lines. Value is the sum of all cells.
+ *
+ * @since 17.10.13
+ */
+final class OStripedCounter {
+  static final int              STRIPES = stripes(16);
+
+  // 8 LONGS ARE 64 BYTES, SIZE OF CACHE LINE
+  private static final int      PADDING = 8;
+
+  private final AtomicLongArray cells   = new AtomicLongArray(STRIPES * PADDING);
+
+  void add(final long iValue) {
+    cells.addAndGet(stripe(STRIPES) * PADDING, iValue);
+  }
+
+  long sum() {
+    long sum = 0;
+    for (int i = 0; i < STRIPES; i++)
+      sum += cells.get(i * PADDING);
+
+    return sum;
+  }
+
+  long sumThenReset() {
+    long sum = 0;
+    for (int i = 0; i < STRIPES; i++)
+      sum += cells.getAndSet(i * PADDING, 0);
+
+    return sum;
+  }
+
+  /**
+   * @return Index of the cell used by current thread. Amount of stripes should be power of 2.
+   */
+  static int stripe(final int iStripes) {
+    return (int) Thread.currentThread().getId() & (iStripes - 1);
+  }
+
+  /**
+   * @return The least power of 2 which is not less than amount of processors, but not bigger than passed in limit.
+   */
+  static int stripes(final int iLimit) {
+    final int processors = Runtime.getRuntime().availableProcessors();
+
+    int stripes = 1;
+    while (stripes < processors && stripes < iLimit)
+      stripes <<= 1;
+
+    return stripes;
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.common.profiler;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.orientechnologies.common.profiler.OProfilerData.OProfilerEntry;
+
+/**
+ * Accumulates values of chrono or statistic together with the histogram of their distribution which is used to calculate
+ * percentiles.
+ *
+ * Histogram has log-linear buckets: values less than 8 have own bucket, bigger values are split by power of 2 and every range is
+ * divided in 8 buckets, so error of calculated percentile does not exceed 12.5%. Counters and buckets are striped by writer thread,
+ * stripes are allocated on first use, so metric updated by single thread does not pay for other stripes.
+ *
+ * @since 17.10.13
+ */
+final class OStripedHistogram {
+  private static final int                          SUB_BUCKET_BITS = 3;
+  private static final int                          SUB_BUCKETS     = 1 << SUB_BUCKET_BITS;
+  private static final int                          MAX_EXPONENT    = 40;
+
+  static final int                                  BUCKETS         = (MAX_EXPONENT - 1) * SUB_BUCKETS;
+
+  private static final int                          COUNT           = 0;
+  private static final int                          TOTAL           = 1;
+  private static final int                          FIRST_BUCKET    = 2;
+
+  private static final int                          STRIPES         = OStripedCounter.stripes(4);
+
+  private final AtomicReferenceArray<AtomicLongArray> stripes         = new AtomicReferenceArray<AtomicLongArray>(STRIPES);
+  private final AtomicLong                          min             = new AtomicLong(Long.MAX_VALUE);
+  private final AtomicLong                          max             = new AtomicLong(Long.MIN_VALUE);
+  private volatile long                             last;
+
+  void record(final long iValue) {
+    final int stripeIndex = OStripedCounter.stripe(STRIPES);
+    AtomicLongArray stripe = stripes.get(stripeIndex);
+    if (stripe == null) {
+      stripes.compareAndSet(stripeIndex, null, new AtomicLongArray(FIRST_BUCKET + BUCKETS));
+      stripe = stripes.get(stripeIndex);
+    }
+
+    stripe.incrementAndGet(COUNT);
+    stripe.addAndGet(TOTAL, iValue);
+    stripe.incrementAndGet(FIRST_BUCKET + bucketIndex(iValue));
+
+    long current;
+    while (iValue < (current = min.get()) && !min.compareAndSet(current, iValue))
+      ;
+    while (iValue > (current = max.get()) && !max.compareAndSet(current, iValue))
+      ;
+
+    last = iValue;
+  }
+
+  /**
+   * Fills profiler entry with accumulated values.
+   *
+   * @param iReset
+   *          If <code>true</code> accumulated values are reset, so next call will return only values recorded after this one.
+   * @return <code>false</code> if nothing was recorded.
+   */
+  boolean fill(final OProfilerEntry iEntry, final boolean iReset) {
+    final long[] histogram = new long[BUCKETS];
+    long count = 0;
+    long total = 0;
+
+    for (int i = 0; i < STRIPES; i++) {
+      final AtomicLongArray stripe = stripes.get(i);
+      if (stripe == null)
+        continue;
+
+      count += iReset ? stripe.getAndSet(COUNT, 0) : stripe.get(COUNT);
+      total += iReset ? stripe.getAndSet(TOTAL, 0) : stripe.get(TOTAL);
+      for (int n = 0; n < BUCKETS; n++)
+        histogram[n] += iReset ? stripe.getAndSet(FIRST_BUCKET + n, 0) : stripe.get(FIRST_BUCKET + n);
+    }
+
+    final long minValue = iReset ? min.getAndSet(Long.MAX_VALUE) : min.get();
+    final long maxValue = iReset ? max.getAndSet(Long.MIN_VALUE) : max.get();
+
+    if (count == 0)
+      return false;
+
+    iEntry.entries = count;
+    iEntry.total = total;
+    iEntry.average = total / count;
+    iEntry.last = last;
+    iEntry.min = minValue;
+    iEntry.max = maxValue;
+    iEntry.histogram = histogram;
+    updatePercentiles(iEntry);
+    return true;
+  }
+
+  static void updatePercentiles(final OProfilerEntry iEntry) {
+    iEntry.p50 = percentile(iEntry.histogram, iEntry.entries, 0.5, iEntry.max);
+    iEntry.p99 = percentile(iEntry.histogram, iEntry.entries, 0.99, iEntry.max);
+    iEntry.p999 = percentile(iEntry.histogram, iEntry.entries, 0.999, iEntry.max);
+  }
+
+  /**
+   * @return Upper bound of the bucket which contains requested percentile, but not bigger than maximum recorded value.
+   */
+  static long percentile(final long[] iHistogram, final long iCount, final double iPercentile, final long iMax) {
+    if (iHistogram == null || iCount == 0)
+      return 0;
+
+    final long rank = Math.max(1, (long) Math.ceil(iPercentile * iCount));
+
+    long passed = 0;
+    for (int i = 0; i < iHistogram.length; i++) {
+      passed += iHistogram[i];
+      if (passed >= rank)
+        return Math.min(bucketUpperBound(i), iMax);
+    }
+
+    return iMax;
+  }
+
+  static int bucketIndex(final long iValue) {
+    if (iValue < SUB_BUCKETS)
+      return iValue < 0 ? 0 : (int) iValue;
+
+    final int exponent = 63 - Long.numberOfLeadingZeros(iValue);
+    if (exponent > MAX_EXPONENT)
+      return BUCKETS - 1;
+
+    final int subBucket = (int) (iValue >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long bucketUpperBound(final int iIndex) {
+    if (iIndex < SUB_BUCKETS)
+      return iIndex;
+
+    if (iIndex == BUCKETS - 1)
+      return Long.MAX_VALUE;
+
+    final int exponent = iIndex / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    final long subBucket = iIndex & (SUB_BUCKETS - 1);
+    final int shift = exponent - SUB_BUCKET_BITS;
+
+    return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+  }
+}
@@ -16,9 +16,12 @@
 
 package com.orientechnologies.common.directmemory.collections;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 
 import com.orientechnologies.common.directmemory.ODirectMemory;
 import com.orientechnologies.common.directmemory.ODirectMemoryFactory;
@@ -229,4 +232,49 @@ public class DirectMemoryHashMapRemoveTest {
 
     Assert.assertEquals(addedItems.size(), hashMap.size());
   }
+
+  public void testRemoveNextRemovesAllItems() {
+    if (memory == null)
+      return;
+
+    final Map<Integer, Integer> addedItems = new HashMap<Integer, Integer>();
+    final Random random = new Random();
+
+    for (int i = 0; i < 1000; i++) {
+      int clusterId = random.nextInt();
+      while (addedItems.containsKey(clusterId))
+        clusterId = random.nextInt();
+
+      hashMap.put(clusterId, i);
+      addedItems.put(clusterId, i);
+    }
+
+    final Set<Integer> removedValues = new HashSet<Integer>();
+    for (int i = 0; i < 1000; i++)
+      Assert.assertTrue(removedValues.add(hashMap.removeNext()));
+
+    Assert.assertNull(hashMap.removeNext());
+    Assert.assertEquals(new HashSet<Integer>(addedItems.values()), removedValues);
+    Assert.assertEquals(0, hashMap.size());
+  }
+
+  public void testKeysWhenFirstBucketInChainIsEmpty() {
+    if (memory == null)
+      return;
+
+    final int clusterIdOne = 0;
+    final int clusterIdTwo = 1;
+    final int clusterIdThree = 4;
+    final int clusterIdFour = 2;
+
+    hashMap.put(clusterIdOne, 10);
+    hashMap.put(clusterIdTwo, 20);
+    hashMap.put(clusterIdThree, 30);
+    hashMap.put(clusterIdFour, 40);
+
+    hashMap.remove(clusterIdOne);
+    hashMap.remove(clusterIdTwo);
+
+    Assert.assertEquals(new HashSet<Integer>(hashMap.keys()), new HashSet<Integer>(Arrays.asList(clusterIdThree, clusterIdFour)));
+  }
 }
@@ -0,0 +1,136 @@
+package com.orientechnologies.common.profiler;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.common.profiler.OProfilerData.OProfilerEntry;
+
+@Test
+public class OProfilerTest {
+  private OProfiler profiler;
+
+  @BeforeMethod
+  public void beforeMethod() {
+    profiler = new OProfiler();
+    profiler.startRecording();
+  }
+
+  @AfterMethod
+  public void afterMethod() {
+    profiler.shutdown();
+  }
+
+  public void countsConcurrentUpdates() throws Exception {
+    final OProfilerCounter counter = profiler.registerCounter("test.counter", "Test counter", "test.counter");
+    final int threads = 8;
+    final int updates = 100000;
+
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+    for (int i = 0; i < threads; i++)
+      futures.add(executor.submit(new Callable<Void>() {
+        public Void call() {
+          for (int n = 0; n < updates; n++) {
+            counter.increment();
+            profiler.updateCounter("test.named", "Counter updated by name", 2);
+          }
+          return null;
+        }
+      }));
+
+    for (Future<Void> future : futures)
+      future.get();
+    executor.shutdown();
+
+    assertEquals(counter.get(), threads * updates);
+    assertEquals(profiler.getCounter("test.counter"), threads * updates);
+    assertEquals(profiler.getCounter("test.named"), threads * updates * 2);
+    assertTrue(profiler.dumpCounters().contains("test.named"));
+  }
+
+  public void calculatesPercentiles() {
+    final OProfilerChrono stat = profiler.registerStat("test.stat", "Test statistic", "test.stat");
+    for (int i = 1; i <= 1000; i++)
+      stat.update(i);
+
+    final OProfilerEntry entry = profiler.getStat("test.stat");
+    assertEquals(entry.entries, 1000);
+    assertEquals(entry.min, 1);
+    assertEquals(entry.max, 1000);
+    assertEquals(entry.total, 500500);
+    assertEquals(entry.average, 500);
+
+    // ERROR OF PERCENTILE DOES NOT EXCEED SIZE OF HISTOGRAM BUCKET
+    assertTrue(entry.p50 >= 500 && entry.p50 <= 500 * 1.125, "p50=" + entry.p50);
+    assertTrue(entry.p99 >= 990 && entry.p99 <= 1000, "p99=" + entry.p99);
+    assertEquals(entry.p999, 1000);
+
+    final String json = profiler.toJSON("realtime", null, null);
+    assertTrue(json.contains("\"p99\":" + entry.p99), json);
+  }
+
+  public void mapsValuesToBuckets() {
+    for (long value : new long[] { 0, 1, 7, 8, 9, 15, 16, 17, 1000, 123456789, 1L << 40, Long.MAX_VALUE }) {
+      final int bucket = OStripedHistogram.bucketIndex(value);
+      assertTrue(bucket >= 0 && bucket < OStripedHistogram.BUCKETS);
+      assertTrue(OStripedHistogram.bucketUpperBound(bucket) >= value, "value " + value);
+      if (bucket > 0)
+        assertTrue(OStripedHistogram.bucketUpperBound(bucket - 1) < value, "value " + value);
+    }
+  }
+
+  public void keepsRegisteredMetricsAfterStop() {
+    final OProfilerChrono chrono = profiler.registerChrono("test.chrono", "Test chrono", "test.chrono");
+    chrono.update(10);
+    profiler.stopChrono("test.named", "Chrono updated by name", profiler.startChrono());
+
+    profiler.stopRecording();
+    assertEquals(chrono.update(10), -1);
+
+    profiler.startRecording();
+    assertNull(profiler.getChrono("test.chrono"));
+    assertNull(profiler.getChrono("test.named"));
+
+    chrono.update(20);
+    assertEquals(profiler.getChrono("test.chrono").entries, 1);
+    assertEquals(profiler.getChrono("test.chrono").last, 20);
+    assertTrue(profiler.getMetadata().containsKey("test.chrono"));
+  }
+
+  public void archivesSnapshotPeriods() {
+    profiler.configure("3600,2,10");
+    final OProfilerCounter counter = profiler.registerCounter("test.counter", "Test counter", "test.counter");
+    final OProfilerChrono stat = profiler.registerStat("test.stat", "Test statistic", "test.stat");
+
+    counter.update(5);
+    stat.update(100);
+    profiler.createSnapshot();
+
+    counter.update(3);
+    stat.update(1);
+    profiler.createSnapshot();
+
+    assertEquals(profiler.snapshots.size(), 0);
+    assertEquals(profiler.summaries.size(), 1);
+
+    final OProfilerData summary = profiler.summaries.get(0);
+    assertEquals(summary.getCounter("test.counter"), 8);
+    assertEquals(summary.getStat("test.stat").entries, 2);
+    assertEquals(summary.getStat("test.stat").min, 1);
+    assertEquals(summary.getStat("test.stat").p99, 100);
+
+    assertEquals(counter.get(), 8);
+  }
+}
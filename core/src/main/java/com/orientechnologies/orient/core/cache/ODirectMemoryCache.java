@@ -0,0 +1,451 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.orientechnologies.common.directmemory.ODirectMemory;
+import com.orientechnologies.common.directmemory.ODirectMemoryFactory;
+import com.orientechnologies.common.directmemory.collections.ODirectMemoryHashMap;
+import com.orientechnologies.common.profiler.OProfiler.METRIC_TYPE;
+import com.orientechnologies.common.profiler.OProfiler.OProfilerHookValue;
+import com.orientechnologies.common.serialization.types.OBinaryTypeSerializer;
+import com.orientechnologies.common.serialization.types.OIntegerSerializer;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OConfigurationException;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.serialization.serializer.binary.impl.OLinkSerializer;
+import com.orientechnologies.orient.core.version.ORecordVersion;
+import com.orientechnologies.orient.core.version.OVersionFactory;
+
+/**
+ * Cache which keeps records outside of java heap, so its size does not affect duration of GC pauses. Only serialized content of
+ * record together with its type and version is stored in direct memory. Record instance is created and filled by this content
+ * each time when it is requested from cache, content itself is deserialized lazily by record serializer on first access to the
+ * record fields.
+ *
+ * Cache is split on independently locked segments like {@link OSegmentedCache}. Amount of direct memory which is used by each
+ * segment is limited, when limit is reached entries are evicted in round-robin order of hash buckets (see
+ * {@link ODirectMemoryHashMap#removeNext()}), so no per entry access metadata is kept in heap.
+ *
+ * Because cached records are not kept in memory they can not be dirty or pinned, so cache does not react on low heap memory
+ * events.
+ *
+ * @since 17.10.13
+ */
+public class ODirectMemoryCache implements OCache {
+  private static final int    ENTRY_OVERHEAD = 2 * OIntegerSerializer.INT_SIZE + OLinkSerializer.RID_SIZE;
+
+  private final String        name;
+  private final int           limit;
+  private final long          maxMemory;
+  private final ODirectMemory directMemory;
+  private final Segment[]     segments;
+  private final int           segmentMask;
+  private final AtomicBoolean enabled        = new AtomicBoolean(false);
+
+  private final String        profilerPrefix;
+  private final String        profilerMetadataPrefix;
+
+  public ODirectMemoryCache(final String iName, final int initialLimit) {
+    this(iName, initialLimit, OGlobalConfiguration.CACHE_LEVEL2_CONCURRENCY_LEVEL.getValueAsInteger(),
+        OGlobalConfiguration.CACHE_LEVEL2_DIRECT_MEMORY_SIZE.getValueAsLong() * 1024 * 1024, ODirectMemoryFactory.INSTANCE
+            .directMemory());
+  }
+
+  /**
+   * @param iName
+   *          Name of storage which records are cached, used as prefix of profiler metrics, if {@code null} metrics are not
+   *          exported.
+   * @param initialLimit
+   *          Maximum amount of records in cache, not positive value means that amount of records is limited only by memory.
+   * @param concurrencyLevel
+   *          Expected amount of concurrent threads, it is rounded up to the power of 2.
+   * @param maxMemory
+   *          Maximum amount of direct memory in bytes which can be used to keep records.
+   * @param directMemory
+   *          Direct memory implementation to use.
+   */
+  public ODirectMemoryCache(final String iName, final int initialLimit, final int concurrencyLevel, final long maxMemory,
+      final ODirectMemory directMemory) {
+    if (directMemory == null)
+      throw new OConfigurationException("Direct memory implementation is not available, direct memory cache can not be used");
+
+    name = iName;
+    limit = initialLimit;
+    this.maxMemory = maxMemory;
+    this.directMemory = directMemory;
+
+    int segmentsCount = 1;
+    while (segmentsCount < concurrencyLevel)
+      segmentsCount <<= 1;
+
+    segments = new Segment[segmentsCount];
+    segmentMask = segmentsCount - 1;
+
+    for (int i = 0; i < segmentsCount; i++) {
+      final int segmentLimit;
+      if (limit > 0)
+        segmentLimit = Math.max(limit / segmentsCount + (i < limit % segmentsCount ? 1 : 0), 1);
+      else
+        segmentLimit = 0;
+
+      segments[i] = new Segment(segmentLimit, maxMemory / segmentsCount);
+    }
+
+    profilerPrefix = "db." + name + ".cache.level2.";
+    profilerMetadataPrefix = "db.*.cache.level2.";
+  }
+
+  public void startup() {
+    enable();
+
+    if (name != null)
+      registerProfilerHooks();
+  }
+
+  public void shutdown() {
+    disable();
+
+    if (name != null) {
+      Orient.instance().getProfiler().unregisterHookValue(profilerPrefix + "hits");
+      Orient.instance().getProfiler().unregisterHookValue(profilerPrefix + "misses");
+      Orient.instance().getProfiler().unregisterHookValue(profilerPrefix + "evictions");
+      Orient.instance().getProfiler().unregisterHookValue(profilerPrefix + "directMemory");
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled.get();
+  }
+
+  public boolean enable() {
+    return enabled.compareAndSet(false, true);
+  }
+
+  public boolean disable() {
+    clear();
+    return enabled.compareAndSet(true, false);
+  }
+
+  public ORecordInternal<?> get(final ORID id) {
+    if (!isEnabled())
+      return null;
+
+    final Segment segment = segment(id);
+    segment.lock();
+    try {
+      final byte[] stream = segment.entries.get(id);
+      if (stream == null) {
+        segment.misses++;
+        return null;
+      }
+
+      segment.hits++;
+      return fromStream(id, stream);
+    } finally {
+      segment.unlock();
+    }
+  }
+
+  public ORecordInternal<?> put(final ORecordInternal<?> record) {
+    if (!isEnabled())
+      return null;
+
+    final ORID id = record.getIdentity();
+    final byte[] stream = toStream(record);
+
+    final Segment segment = segment(id);
+    segment.lock();
+    try {
+      final byte[] previous = segment.remove(id);
+
+      if (stream != null && segment.reserve(stream.length + ENTRY_OVERHEAD))
+        segment.entries.put(id, stream);
+
+      return previous != null ? fromStream(id, previous) : null;
+    } finally {
+      segment.unlock();
+    }
+  }
+
+  public ORecordInternal<?> remove(final ORID id) {
+    if (!isEnabled())
+      return null;
+
+    final Segment segment = segment(id);
+    segment.lock();
+    try {
+      final byte[] previous = segment.remove(id);
+      return previous != null ? fromStream(id, previous) : null;
+    } finally {
+      segment.unlock();
+    }
+  }
+
+  public void clear() {
+    if (!isEnabled())
+      return;
+
+    for (Segment segment : segments) {
+      segment.lock();
+      try {
+        segment.entries.clear();
+        segment.usedMemory = 0;
+      } finally {
+        segment.unlock();
+      }
+    }
+  }
+
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      segment.lock();
+      try {
+        size += segment.entries.size();
+      } finally {
+        segment.unlock();
+      }
+    }
+
+    return size;
+  }
+
+  public int limit() {
+    return limit;
+  }
+
+  public Collection<ORID> keys() {
+    final List<ORID> keys = new ArrayList<ORID>();
+    for (Segment segment : segments) {
+      segment.lock();
+      try {
+        for (OIdentifiable key : segment.entries.keys())
+          keys.add(key.getIdentity());
+      } finally {
+        segment.unlock();
+      }
+    }
+
+    return keys;
+  }
+
+  public void lock(final ORID id) {
+    segment(id).lock();
+  }
+
+  public void unlock(final ORID id) {
+    segment(id).unlock();
+  }
+
+  public long getMaxMemory() {
+    return maxMemory;
+  }
+
+  public long getUsedMemory() {
+    long usedMemory = 0;
+    for (Segment segment : segments) {
+      segment.lock();
+      try {
+        usedMemory += segment.usedMemory;
+      } finally {
+        segment.unlock();
+      }
+    }
+
+    return usedMemory;
+  }
+
+  public long getHits() {
+    long hits = 0;
+    for (Segment segment : segments) {
+      segment.lock();
+      try {
+        hits += segment.hits;
+      } finally {
+        segment.unlock();
+      }
+    }
+
+    return hits;
+  }
+
+  public long getMisses() {
+    long misses = 0;
+    for (Segment segment : segments) {
+      segment.lock();
+      try {
+        misses += segment.misses;
+      } finally {
+        segment.unlock();
+      }
+    }
+
+    return misses;
+  }
+
+  public long getEvictions() {
+    long evictions = 0;
+    for (Segment segment : segments) {
+      segment.lock();
+      try {
+        evictions += segment.evictions;
+      } finally {
+        segment.unlock();
+      }
+    }
+
+    return evictions;
+  }
+
+  int getSegmentsCount() {
+    return segments.length;
+  }
+
+  /**
+   * Stream layout is: record type, record version, record content.
+   */
+  private static byte[] toStream(final ORecordInternal<?> record) {
+    final byte[] content = record.toStream();
+    if (content == null)
+      return null;
+
+    final int versionSize = OVersionFactory.instance().getVersionSize();
+    final byte[] stream = new byte[1 + versionSize + content.length];
+
+    stream[0] = record.getRecordType();
+    record.getRecordVersion().getSerializer().writeTo(stream, 1, record.getRecordVersion());
+    System.arraycopy(content, 0, stream, 1 + versionSize, content.length);
+
+    return stream;
+  }
+
+  private static ORecordInternal<?> fromStream(final ORID id, final byte[] stream) {
+    final ORecordInternal<?> record = Orient.instance().getRecordFactoryManager().newInstance(stream[0]);
+
+    final ORecordVersion version = OVersionFactory.instance().createVersion();
+    final int versionSize = version.getSerializer().readFrom(stream, 1, version);
+
+    final byte[] content = new byte[stream.length - 1 - versionSize];
+    System.arraycopy(stream, 1 + versionSize, content, 0, content.length);
+
+    // CONTENT IS UNMARSHALLED BY RECORD ITSELF ONLY WHEN IT IS ACCESSED
+    record.fill(id.copy(), version, content, false);
+    return record;
+  }
+
+  private Segment segment(final ORID id) {
+    int hash = id.hashCode();
+    hash ^= (hash >>> 20) ^ (hash >>> 12);
+    hash ^= (hash >>> 7) ^ (hash >>> 4);
+
+    return segments[hash & segmentMask];
+  }
+
+  private void registerProfilerHooks() {
+    Orient.instance().getProfiler()
+        .registerHookValue(profilerPrefix + "hits", "Number of records found in cache", METRIC_TYPE.COUNTER, new OProfilerHookValue() {
+          public Object getValue() {
+            return getHits();
+          }
+        }, profilerMetadataPrefix + "hits");
+
+    Orient.instance().getProfiler()
+        .registerHookValue(profilerPrefix + "misses", "Number of records not found in cache", METRIC_TYPE.COUNTER,
+            new OProfilerHookValue() {
+              public Object getValue() {
+                return getMisses();
+              }
+            }, profilerMetadataPrefix + "misses");
+
+    Orient.instance().getProfiler()
+        .registerHookValue(profilerPrefix + "evictions", "Number of records evicted from cache", METRIC_TYPE.COUNTER,
+            new OProfilerHookValue() {
+              public Object getValue() {
+                return getEvictions();
+              }
+            }, profilerMetadataPrefix + "evictions");
+
+    Orient.instance().getProfiler()
+        .registerHookValue(profilerPrefix + "directMemory", "Amount of direct memory used by cached records", METRIC_TYPE.SIZE,
+            new OProfilerHookValue() {
+              public Object getValue() {
+                return getUsedMemory();
+              }
+            }, profilerMetadataPrefix + "directMemory");
+  }
+
+  /**
+   * State of segment is guarded by segment lock itself.
+   */
+  @SuppressWarnings("serial")
+  private final class Segment extends ReentrantLock {
+    private final int                                         limit;
+    private final long                                        maxMemory;
+    private final ODirectMemoryHashMap<OIdentifiable, byte[]> entries;
+
+    private long                                              usedMemory;
+
+    private long                                              hits;
+    private long                                              misses;
+    private long                                              evictions;
+
+    private Segment(int limit, long maxMemory) {
+      this.limit = limit;
+      this.maxMemory = maxMemory;
+      entries = new ODirectMemoryHashMap<OIdentifiable, byte[]>(directMemory, OBinaryTypeSerializer.INSTANCE,
+          OLinkSerializer.INSTANCE);
+    }
+
+    private byte[] remove(final ORID id) {
+      final byte[] stream = entries.remove(id);
+      if (stream != null)
+        usedMemory -= stream.length + ENTRY_OVERHEAD;
+
+      return stream;
+    }
+
+    /**
+     * Evicts entries till there is enough space for entry of given size.
+     *
+     * @return {@code false} if entry is bigger than whole segment and should not be cached.
+     */
+    private boolean reserve(final int entrySize) {
+      if (entrySize > maxMemory)
+        return false;
+
+      while ((limit > 0 && entries.size() >= limit) || usedMemory + entrySize > maxMemory) {
+        final byte[] evicted = entries.removeNext();
+        if (evicted == null)
+          break;
+
+        usedMemory -= evicted.length + ENTRY_OVERHEAD;
+        evictions++;
+      }
+
+      usedMemory += entrySize;
+      return true;
+    }
+  }
+}
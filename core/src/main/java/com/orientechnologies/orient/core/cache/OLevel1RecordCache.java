@@ -17,6 +17,7 @@ package com.orientechnologies.orient.core.cache;
 
 import static com.orientechnologies.orient.core.metadata.OMetadata.CLUSTER_INDEX_NAME;
 
+import com.orientechnologies.common.profiler.OProfilerCounter;
 import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
@@ -31,8 +32,8 @@ import com.orientechnologies.orient.core.record.ORecordInternal;
  */
 public class OLevel1RecordCache extends OAbstractRecordCache {
   private OLevel2RecordCache secondary = null;
-  private String             CACHE_HIT;
-  private String             CACHE_MISS;
+  private OProfilerCounter   CACHE_HIT;
+  private OProfilerCounter   CACHE_MISS;
 
   public OLevel1RecordCache() {
     super(new OCacheLocator().primaryCache());
@@ -46,8 +47,10 @@ public class OLevel1RecordCache extends OAbstractRecordCache {
     profilerPrefix = "db." + db.getName() + ".cache.level1.";
     profilerMetadataPrefix = "db.*.cache.level1.";
 
-    CACHE_HIT = profilerPrefix + "cache.found";
-    CACHE_MISS = profilerPrefix + "cache.notFound";
+    CACHE_HIT = Orient.instance().getProfiler()
+        .registerCounter(profilerPrefix + "cache.found", "Record found in Level1 Cache", "db.*.cache.level1.cache.found");
+    CACHE_MISS = Orient.instance().getProfiler()
+        .registerCounter(profilerPrefix + "cache.notFound", "Record not found in Level1 Cache", "db.*.cache.level1.cache.notFound");
 
     excludedCluster = db.getClusterIdByName(CLUSTER_INDEX_NAME);
 
@@ -111,10 +114,9 @@ public class OLevel1RecordCache extends OAbstractRecordCache {
     }
 
     if (record != null)
-      Orient.instance().getProfiler().updateCounter(CACHE_HIT, "Record found in Level1 Cache", 1L, "db.*.cache.level1.cache.found");
+      CACHE_HIT.increment();
     else
-      Orient.instance().getProfiler()
-          .updateCounter(CACHE_MISS, "Record not found in Level1 Cache", 1L, "db.*.cache.level1.cache.notFound");
+      CACHE_MISS.increment();
 
     return record;
   }
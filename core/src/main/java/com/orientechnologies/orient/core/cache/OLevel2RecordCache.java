@@ -17,6 +17,7 @@ package com.orientechnologies.orient.core.cache;
 
 import static com.orientechnologies.orient.core.config.OGlobalConfiguration.CACHE_LEVEL2_STRATEGY;
 
+import com.orientechnologies.common.profiler.OProfilerCounter;
 import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
@@ -31,9 +32,9 @@ import com.orientechnologies.orient.core.storage.OStorage;
  * @author Sylvain Spinelli
  */
 public class OLevel2RecordCache extends OAbstractRecordCache {
-  private final String CACHE_HIT;
-  private final String CACHE_MISS;
-  private STRATEGY     strategy;
+  private final OProfilerCounter CACHE_HIT;
+  private final OProfilerCounter CACHE_MISS;
+  private STRATEGY               strategy;
 
   public enum STRATEGY {
     POP_RECORD, COPY_RECORD
@@ -45,8 +46,10 @@ public class OLevel2RecordCache extends OAbstractRecordCache {
     profilerPrefix = "db." + iStorage.getName() + ".cache.level2.";
     profilerMetadataPrefix = "db.*.cache.level2.";
 
-    CACHE_HIT = profilerPrefix + "cache.found";
-    CACHE_MISS = profilerPrefix + "cache.notFound";
+    CACHE_HIT = Orient.instance().getProfiler()
+        .registerCounter(profilerPrefix + "cache.found", "Record found in Level2 Cache", "db.*.cache.level2.cache.found");
+    CACHE_MISS = Orient.instance().getProfiler()
+        .registerCounter(profilerPrefix + "cache.notFound", "Record not found in Level2 Cache", "db.*.cache.level2.cache.notFound");
 
     strategy = STRATEGY.values()[(CACHE_LEVEL2_STRATEGY.getValueAsInteger())];
   }
@@ -110,8 +113,7 @@ public class OLevel2RecordCache extends OAbstractRecordCache {
       record = underlying.remove(iRID);
 
       if (record == null || record.isDirty()) {
-        Orient.instance().getProfiler()
-            .updateCounter(CACHE_MISS, "Record not found in Level2 Cache", +1, "db.*.cache.level2.cache.notFound");
+        CACHE_MISS.increment();
         return null;
       }
 
@@ -126,7 +128,7 @@ public class OLevel2RecordCache extends OAbstractRecordCache {
       underlying.unlock(iRID);
     }
 
-    Orient.instance().getProfiler().updateCounter(CACHE_HIT, "Record found in Level2 Cache", +1, "db.*.cache.level2.cache.found");
+    CACHE_HIT.increment();
     return record;
   }
 
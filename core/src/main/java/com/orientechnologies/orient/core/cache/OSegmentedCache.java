@@ -0,0 +1,415 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.common.profiler.OProfiler.METRIC_TYPE;
+import com.orientechnologies.common.profiler.OProfiler.OProfilerHookValue;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.memory.OMemoryWatchDog;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+
+/**
+ * Cache which is split on independently locked segments, so threads which work with records of different segments do not
+ * contend with each other. Segment of record is chosen by hash code of its identity.
+ * 
+ * Each segment uses CLOCK (second chance) eviction policy: cache hit only marks entry as referenced and does not change order of
+ * entries, when segment is full entries are checked from the eldest one, referenced entries lose their mark and are moved to the
+ * end of queue, first not referenced entry is evicted.
+ * 
+ * Amount of hits, misses and evictions is exported through {@link com.orientechnologies.common.profiler.OProfiler}.
+ * 
+ * @since 17.10.13
+ */
+public class OSegmentedCache implements OCache {
+  private static final int            MIN_SEGMENT_SIZE = 64;
+
+  private final String                name;
+  private final int                   limit;
+  private final Segment[]             segments;
+  private final int                   segmentMask;
+  private final AtomicBoolean         enabled          = new AtomicBoolean(false);
+
+  private final String                profilerPrefix;
+  private final String                profilerMetadataPrefix;
+
+  protected OMemoryWatchDog.Listener lowMemoryListener;
+
+  public OSegmentedCache(final String iName, final int initialLimit) {
+    this(iName, initialLimit, OGlobalConfiguration.CACHE_LEVEL2_CONCURRENCY_LEVEL.getValueAsInteger());
+  }
+
+  /**
+   * @param iName
+   *          Name of storage which records are cached, used as prefix of profiler metrics, if {@code null} metrics are not
+   *          exported.
+   * @param initialLimit
+   *          Maximum amount of records in cache, not positive value means that cache is not limited.
+   * @param concurrencyLevel
+   *          Expected amount of concurrent threads, it is rounded up to the power of 2 and is limited so each segment can keep at
+   *          least {@value #MIN_SEGMENT_SIZE} records.
+   */
+  public OSegmentedCache(final String iName, final int initialLimit, final int concurrencyLevel) {
+    name = iName;
+    limit = initialLimit;
+
+    int segmentsCount = 1;
+    while (segmentsCount < concurrencyLevel && (limit <= 0 || limit / (segmentsCount << 1) >= MIN_SEGMENT_SIZE))
+      segmentsCount <<= 1;
+
+    segments = new Segment[segmentsCount];
+    segmentMask = segmentsCount - 1;
+
+    for (int i = 0; i < segmentsCount; i++) {
+      final int segmentLimit;
+      if (limit > 0)
+        segmentLimit = limit / segmentsCount + (i < limit % segmentsCount ? 1 : 0);
+      else
+        segmentLimit = 0;
+
+      segments[i] = new Segment(segmentLimit);
+    }
+
+    profilerPrefix = "db." + name + ".cache.level2.";
+    profilerMetadataPrefix = "db.*.cache.level2.";
+  }
+
+  public void startup() {
+    lowMemoryListener = Orient.instance().getMemoryWatchDog().addListener(new OLowMemoryListener());
+    enable();
+
+    if (name != null)
+      registerProfilerHooks();
+  }
+
+  public void shutdown() {
+    Orient.instance().getMemoryWatchDog().removeListener(lowMemoryListener);
+    disable();
+
+    if (name != null) {
+      Orient.instance().getProfiler().unregisterHookValue(profilerPrefix + "hits");
+      Orient.instance().getProfiler().unregisterHookValue(profilerPrefix + "misses");
+      Orient.instance().getProfiler().unregisterHookValue(profilerPrefix + "evictions");
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled.get();
+  }
+
+  public boolean enable() {
+    return enabled.compareAndSet(false, true);
+  }
+
+  public boolean disable() {
+    clear();
+    return enabled.compareAndSet(true, false);
+  }
+
+  public ORecordInternal<?> get(final ORID id) {
+    if (!isEnabled())
+      return null;
+
+    final Segment segment = segment(id);
+    segment.lock();
+    try {
+      final Entry entry = segment.entries.get(id);
+      if (entry == null) {
+        segment.misses++;
+        return null;
+      }
+
+      segment.hits++;
+      entry.referenced = true;
+      return entry.record;
+    } finally {
+      segment.unlock();
+    }
+  }
+
+  public ORecordInternal<?> put(final ORecordInternal<?> record) {
+    if (!isEnabled())
+      return null;
+
+    final ORID id = record.getIdentity();
+    final Segment segment = segment(id);
+    segment.lock();
+    try {
+      final Entry entry = segment.entries.get(id);
+      if (entry != null) {
+        final ORecordInternal<?> previous = entry.record;
+        entry.record = record;
+        entry.referenced = true;
+        return previous;
+      }
+
+      if (segment.limit > 0 && segment.entries.size() >= segment.limit)
+        segment.evict();
+
+      segment.entries.put(id, new Entry(record));
+      return null;
+    } finally {
+      segment.unlock();
+    }
+  }
+
+  public ORecordInternal<?> remove(final ORID id) {
+    if (!isEnabled())
+      return null;
+
+    final Segment segment = segment(id);
+    segment.lock();
+    try {
+      final Entry entry = segment.entries.remove(id);
+      return entry != null ? entry.record : null;
+    } finally {
+      segment.unlock();
+    }
+  }
+
+  public void clear() {
+    if (!isEnabled())
+      return;
+
+    for (Segment segment : segments) {
+      segment.lock();
+      try {
+        segment.entries.clear();
+      } finally {
+        segment.unlock();
+      }
+    }
+  }
+
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      segment.lock();
+      try {
+        size += segment.entries.size();
+      } finally {
+        segment.unlock();
+      }
+    }
+
+    return size;
+  }
+
+  public int limit() {
+    return limit;
+  }
+
+  public Collection<ORID> keys() {
+    final List<ORID> keys = new ArrayList<ORID>();
+    for (Segment segment : segments) {
+      segment.lock();
+      try {
+        keys.addAll(segment.entries.keySet());
+      } finally {
+        segment.unlock();
+      }
+    }
+
+    return keys;
+  }
+
+  public void lock(final ORID id) {
+    segment(id).lock();
+  }
+
+  public void unlock(final ORID id) {
+    segment(id).unlock();
+  }
+
+  public long getHits() {
+    long hits = 0;
+    for (Segment segment : segments) {
+      segment.lock();
+      try {
+        hits += segment.hits;
+      } finally {
+        segment.unlock();
+      }
+    }
+
+    return hits;
+  }
+
+  public long getMisses() {
+    long misses = 0;
+    for (Segment segment : segments) {
+      segment.lock();
+      try {
+        misses += segment.misses;
+      } finally {
+        segment.unlock();
+      }
+    }
+
+    return misses;
+  }
+
+  public long getEvictions() {
+    long evictions = 0;
+    for (Segment segment : segments) {
+      segment.lock();
+      try {
+        evictions += segment.evictions;
+      } finally {
+        segment.unlock();
+      }
+    }
+
+    return evictions;
+  }
+
+  int getSegmentsCount() {
+    return segments.length;
+  }
+
+  private Segment segment(final ORID id) {
+    int hash = id.hashCode();
+    hash ^= (hash >>> 20) ^ (hash >>> 12);
+    hash ^= (hash >>> 7) ^ (hash >>> 4);
+
+    return segments[hash & segmentMask];
+  }
+
+  private void registerProfilerHooks() {
+    Orient.instance().getProfiler()
+        .registerHookValue(profilerPrefix + "hits", "Number of records found in cache", METRIC_TYPE.COUNTER, new OProfilerHookValue() {
+          public Object getValue() {
+            return getHits();
+          }
+        }, profilerMetadataPrefix + "hits");
+
+    Orient.instance().getProfiler()
+        .registerHookValue(profilerPrefix + "misses", "Number of records not found in cache", METRIC_TYPE.COUNTER,
+            new OProfilerHookValue() {
+              public Object getValue() {
+                return getMisses();
+              }
+            }, profilerMetadataPrefix + "misses");
+
+    Orient.instance().getProfiler()
+        .registerHookValue(profilerPrefix + "evictions", "Number of records evicted from cache", METRIC_TYPE.COUNTER,
+            new OProfilerHookValue() {
+              public Object getValue() {
+                return getEvictions();
+              }
+            }, profilerMetadataPrefix + "evictions");
+  }
+
+  private void removeEldest(final float ratio) {
+    for (Segment segment : segments) {
+      segment.lock();
+      try {
+        segment.removeEldest((int) Math.ceil(segment.entries.size() * ratio));
+      } finally {
+        segment.unlock();
+      }
+    }
+  }
+
+  private static final class Entry {
+    private ORecordInternal<?> record;
+    private boolean            referenced;
+
+    private Entry(ORecordInternal<?> record) {
+      this.record = record;
+    }
+  }
+
+  /**
+   * State of segment is guarded by segment lock itself.
+   */
+  @SuppressWarnings("serial")
+  private static final class Segment extends ReentrantLock {
+    private final int                      limit;
+    private final LinkedHashMap<ORID, Entry> entries = new LinkedHashMap<ORID, Entry>();
+
+    private long                           hits;
+    private long                           misses;
+    private long                           evictions;
+
+    private Segment(int limit) {
+      this.limit = limit;
+    }
+
+    private void evict() {
+      while (true) {
+        final Iterator<Map.Entry<ORID, Entry>> iterator = entries.entrySet().iterator();
+        final Map.Entry<ORID, Entry> eldest = iterator.next();
+        iterator.remove();
+
+        final Entry entry = eldest.getValue();
+        if (!entry.referenced) {
+          evictions++;
+          return;
+        }
+
+        // SECOND CHANCE: MOVE TO THE END OF QUEUE
+        entry.referenced = false;
+        entries.put(eldest.getKey(), entry);
+      }
+    }
+
+    private void removeEldest(final int amount) {
+      int removed = 0;
+      final Iterator<Entry> iterator = entries.values().iterator();
+      while (removed < amount && iterator.hasNext()) {
+        final ORecordInternal<?> record = iterator.next().record;
+        if (record.isDirty() || record.isPinned() == Boolean.TRUE)
+          continue;
+
+        iterator.remove();
+        removed++;
+      }
+    }
+  }
+
+  class OLowMemoryListener implements OMemoryWatchDog.Listener {
+    public void memoryUsageLow(final long freeMemory, final long freeMemoryPercentage) {
+      try {
+        final int oldSize = size();
+        if (oldSize == 0)
+          return;
+
+        if (freeMemoryPercentage < 10) {
+          OLogManager.instance().debug(this, "Low memory (%d%%): clearing %d cached records", freeMemoryPercentage, oldSize);
+          removeEldest(1.0f);
+        } else {
+          OLogManager.instance().debug(this, "Low memory (%d%%): reducing cached records number from %d to %d",
+              freeMemoryPercentage, oldSize, (int) (oldSize * 0.9f));
+          removeEldest(0.1f);
+        }
+      } catch (Exception e) {
+        OLogManager.instance().error(this, "Error occurred during segmented cache cleanup", e);
+      }
+    }
+  }
+}
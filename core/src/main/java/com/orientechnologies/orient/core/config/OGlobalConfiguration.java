@@ -27,7 +27,7 @@ import com.orientechnologies.common.io.OFileUtils;
 import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.orient.core.OConstants;
 import com.orientechnologies.orient.core.Orient;
-import com.orientechnologies.orient.core.cache.ODefaultCache;
+import com.orientechnologies.orient.core.cache.OSegmentedCache;
 import com.orientechnologies.orient.core.storage.fs.OMMapManagerOld;
 
 /**
@@ -71,6 +71,15 @@ public enum OGlobalConfiguration {
 
   WAL_COMMIT_TIMEOUT("storage.wal.commitTimeout", "Maximum interval between WAL commits (in ms.)", Integer.class, 1000),
 
+  WAL_DURABILITY_MODE("storage.wal.durabilityMode",
+      "Defines when operation is reported as committed. Possible values : ASYNC (WAL is flushed by background task), "
+          + "FLUSH (WAL is written to the file before operation returns), FSYNC (WAL is forced to the device before operation returns).",
+      String.class, "ASYNC"),
+
+  WAL_RESTORE_THREADS("storage.wal.restoreThreads",
+      "Amount of threads which apply page changes during data restore from WAL, 1 means that changes are applied by thread which reads WAL.",
+      Integer.class, Runtime.getRuntime().availableProcessors()),
+
   WAL_FUZZY_CHECKPOINT_INTERVAL("storage.wal.fuzzyCheckpointInterval", "Interval between fuzzy checkpoints (in seconds)",
       Integer.class, 36000),
 
@@ -92,6 +101,14 @@ public enum OGlobalConfiguration {
       + "this queue is used to accumulate all pages that "
       + "should be written to the disk and then flush them in batch mode to minimize random IO overhead.", Integer.class, 15000),
 
+  DISK_CACHE_CONCURRENCY_LEVEL("storage.diskCache.concurrencyLevel",
+      "Amount of independently locked segments of disk cache, higher values decrease contention between threads which read pages.",
+      Integer.class, 16),
+
+  DISK_CACHE_WRITE_BACK_INTERVAL("storage.diskCache.writeBackInterval",
+      "Interval (in ms.) between background writes of pages evicted from disk cache, 0 switches background writes off.",
+      Integer.class, 1000),
+
   DISK_PAGE_CACHE_LOCK_TIMEOUT("storage.diskPageCache.lockTimeOut",
       "Timeout till page lock will wait in case of multi threading operations", Integer.class, 1000),
 
@@ -123,9 +140,16 @@ public enum OGlobalConfiguration {
 
   CACHE_LEVEL2_SIZE("cache.level2.size", "Size of the cache that keeps the record in memory", Integer.class, -1),
 
-  CACHE_LEVEL2_IMPL("cache.level2.impl", "Actual implementation of secondary cache", String.class, ODefaultCache.class
+  CACHE_LEVEL2_IMPL("cache.level2.impl", "Actual implementation of secondary cache", String.class, OSegmentedCache.class
       .getCanonicalName()),
 
+  CACHE_LEVEL2_CONCURRENCY_LEVEL("cache.level2.concurrencyLevel",
+      "Amount of independently locked segments of level-2 cache, used only by segmented cache implementation", Integer.class, 16),
+
+  CACHE_LEVEL2_DIRECT_MEMORY_SIZE("cache.level2.directMemorySize",
+      "Maximum amount of direct (off-heap) memory in megabytes which is used to keep serialized records, used only by direct memory cache implementation",
+      Integer.class, 512),
+
   CACHE_LEVEL2_STRATEGY("cache.level2.strategy",
       "Strategy to use when a database requests a record: 0 = pop the record, 1 = copy the record", Integer.class, 0,
       new OConfigurationChangeCallback() {
@@ -154,6 +178,10 @@ public enum OGlobalConfiguration {
 
   DB_VALIDATION("db.validation", "Enables or disables validation of records", Boolean.class, true),
 
+  DB_DOCUMENT_SERIALIZER("db.document.serializer",
+      "Serializer of documents for new databases: 'ORecordDocument2csv' or 'ORecordDocument2binaryV1'", String.class,
+      "ORecordDocument2csv"),
+
   DB_USE_DISTRIBUTED_VERSION("db.use.distributedVersion", "Use extended version that is safe in distributed environment",
       Boolean.class, Boolean.FALSE),
 
@@ -179,11 +207,24 @@ public enum OGlobalConfiguration {
 
   TX_COMMIT_SYNCH("tx.commit.synch", "Synchronizes the storage after transaction commit", Boolean.class, false),
 
+  TX_CLUSTER_LOCK_TIMEOUT(
+      "tx.clusterLockTimeout",
+      "Maximum timeout in milliseconds a commit on paginated storage waits for a cluster that can't be locked in order of id, because one of its records was added during the commit. When expired the commit fails",
+      Integer.class, 5000),
+
   // GRAPH
   @Deprecated
   BLUEPRINTS_TX_MODE("blueprints.graph.txMode",
       "Transaction mode used in TinkerPop Blueprints implementation. 0 = Automatic (default), 1 = Manual", Integer.class, 0),
 
+  GRAPH_PATH_MAX_DEPTH("graph.path.maxDepth",
+      "Maximum number of edges of the paths searched by shortestPath() when not passed to the function. 0 = unlimited",
+      Integer.class, 0),
+
+  GRAPH_PATH_MAX_VISITED("graph.path.maxVisited",
+      "Maximum number of vertices visited by shortestPath() and dijkstra() before giving up the search. 0 = unlimited",
+      Integer.class, 0),
+
   // INDEX
   HASH_TABLE_SPLIT_BUCKETS_BUFFER_LENGTH("hashTable.slitBucketsBuffer.length", "Length of buffer (in pages) where buckets "
       + "that were splited but not flushed to the disk are kept. This buffer is used to minimize random IO overhead.",
@@ -201,6 +242,10 @@ public enum OGlobalConfiguration {
       "Configure the TreeMaps for manual indexes as buffered or not. -1 means buffered until tx.commit() or db.close() are called",
       Integer.class, 1),
 
+  INDEX_TX_KEY_LOCK_TIMEOUT("index.tx.keyLockTimeout",
+      "Maximum timeout in milliseconds to lock index keys changed by transaction during commit. 0 means wait forever",
+      Integer.class, 0),
+
   // TREEMAP
   MVRBTREE_TIMEOUT("mvrbtree.timeout", "Maximum timeout to get lock against the OMVRB-Tree", Integer.class, 5000),
 
@@ -340,11 +385,43 @@ public enum OGlobalConfiguration {
 
   NETWORK_BINARY_DEBUG("network.binary.debug", "Debug mode: print all data incoming on the binary channel", Boolean.class, false),
 
+  NETWORK_BINARY_CURSOR_TIMEOUT("network.binary.cursorTimeout",
+      "Maximum time in ms the server waits for the client to request the next chunk of a query cursor. Then the query is released and the connection is closed",
+      Integer.class, 300000),
+
+  NETWORK_BINARY_NIO_ENABLED("network.binary.nio.enabled",
+      "Serves binary connections by a selector and a bounded pool of worker threads instead of a thread per connection",
+      Boolean.class, false),
+
+  NETWORK_BINARY_NIO_WORKERS("network.binary.nio.workers",
+      "Number of worker threads which execute requests of binary connections if NIO is enabled", Integer.class, Runtime
+          .getRuntime().availableProcessors() * 4),
+
+  NETWORK_BINARY_NIO_QUEUE_SIZE("network.binary.nio.queueSize",
+      "Maximum number of connections with received requests which wait for a free worker thread if NIO is enabled",
+      Integer.class, 1024),
+
   NETWORK_HTTP_MAX_CONTENT_LENGTH("network.http.maxLength", "TCP/IP max content length in bytes for HTTP requests", Integer.class,
       1000000),
 
   NETWORK_HTTP_CONTENT_CHARSET("network.http.charset", "Http response charset", String.class, "utf-8"),
 
+  NETWORK_HTTP_STREAMING("network.http.streaming",
+      "Send the records returned by HTTP/1.1 requests with chunked transfer encoding while they are serialized, instead of buffering "
+          + "the whole response", Boolean.class, true),
+
+  NETWORK_HTTP_NIO_ENABLED("network.http.nio.enabled",
+      "Serves HTTP connections by a selector and a bounded pool of worker threads instead of a thread per connection, so idle "
+          + "keep-alive connections do not hold a thread", Boolean.class, false),
+
+  NETWORK_HTTP_NIO_WORKERS("network.http.nio.workers",
+      "Number of worker threads which execute requests of HTTP connections if NIO is enabled", Integer.class, Runtime.getRuntime()
+          .availableProcessors() * 4),
+
+  NETWORK_HTTP_NIO_QUEUE_SIZE("network.http.nio.queueSize",
+      "Maximum number of HTTP connections with received requests which wait for a free worker thread if NIO is enabled",
+      Integer.class, 1024),
+
   NETWORK_HTTP_SESSION_EXPIRE_TIMEOUT("network.http.sessionExpireTimeout",
       "Timeout after which an http session is considered tp have expired (seconds)", Integer.class, 300),
 
@@ -393,6 +470,33 @@ public enum OGlobalConfiguration {
   // COMMAND
   COMMAND_TIMEOUT("command.timeout", "Default timeout for commands expressed in milliseconds", Long.class, 0),
 
+  QUERY_SORT_MEMORY("query.sort.memory",
+      "Estimated memory in bytes ORDER BY without LIMIT can use to keep records. When exceeded, sorted records are written to temporary files and merged at the end. 0 = unlimited",
+      Long.class, 67108864),
+
+  QUERY_PARALLEL_SCAN_THREADS("query.parallelScan.threads",
+      "Maximum number of threads used to scan clusters of queries which can not use indexes. 0 or 1 = disabled", Integer.class,
+      Runtime.getRuntime().availableProcessors()),
+
+  QUERY_PARALLEL_SCAN_MIN_RECORDS("query.parallelScan.minRecords",
+      "Minimum number of records in the target clusters to scan them in parallel", Long.class, 100000),
+
+  QUERY_GROUPBY_MEMORY("query.groupBy.memory",
+      "Estimated memory in bytes GROUP BY can use to keep groups. When exceeded and all the aggregate functions can merge partial results, groups are written to temporary files and merged at the end. 0 = unlimited",
+      Long.class, 67108864),
+
+  QUERY_INDEX_STATISTICS("query.indexStatistics",
+      "Collects statistics of the indexes to choose between index lookups, index intersections and full scans by estimated cost",
+      Boolean.class, true),
+
+  QUERY_INDEX_STATISTICS_MIN_RECORDS("query.indexStatistics.minRecords",
+      "Minimum number of records of the target class to choose indexes by estimated cost. On smaller classes the first usable index is taken",
+      Long.class, 10000),
+
+  QUERY_INDEX_STATISTICS_CHECK_INTERVAL("query.indexStatistics.checkInterval",
+      "Minimum time in milliseconds between two checks of the statistics of an index. Checks are executed in background and analyze the index again when the number of its entries changed more than 10%",
+      Long.class, 60000),
+
   // CLIENT
   CLIENT_CHANNEL_MIN_POOL("client.channel.minPool", "Minimum pool size", Integer.class, 1),
 
@@ -404,6 +508,14 @@ public enum OGlobalConfiguration {
   CLIENT_DB_RELEASE_WAIT_TIMEOUT("client.channel.dbReleaseWaitTimeout",
       "Delay in ms. after which data modification command will be resent if DB was frozen", Integer.class, 10000),
 
+  CLIENT_LOAD_BATCH_SIZE("client.loadBatchSize",
+      "Maximum number of linked records loaded by one request when collections of links are resolved against remote server. 0 = disabled",
+      Integer.class, 100),
+
+  CLIENT_QUERY_CHUNK_SIZE("client.queryChunkSize",
+      "Number of records the server sends at once to the cursor of streaming query. Next chunk is sent only when the previous one is being consumed",
+      Integer.class, 1000),
+
   // SERVER
   SERVER_CHANNEL_CLEAN_DELAY("server.channel.cleanDelay", "Time in ms of delay to check pending closed connections", Integer.class,
       5000),
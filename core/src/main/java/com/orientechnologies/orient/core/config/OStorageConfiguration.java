@@ -31,6 +31,7 @@ import com.orientechnologies.orient.core.id.OImmutableRecordId;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.impl.ORecordBytes;
 import com.orientechnologies.orient.core.serialization.OSerializableStream;
+import com.orientechnologies.orient.core.serialization.serializer.record.string.ORecordSerializerSchemaAware2CSV;
 import com.orientechnologies.orient.core.storage.OStorage;
 import com.orientechnologies.orient.core.storage.impl.local.OStorageLocalAbstract;
 import com.orientechnologies.orient.core.version.OVersionFactory;
@@ -51,7 +52,7 @@ public class OStorageConfiguration implements OSerializableStream {
 
   public static final String                DEFAULT_CHARSET = "UTF-8";
 
-  public static final int                   CURRENT_VERSION = 5;
+  public static final int                   CURRENT_VERSION = 6;
 
   public int                                version         = -1;
   public String                             name;
@@ -65,6 +66,7 @@ public class OStorageConfiguration implements OSerializableStream {
   public String                             dateTimeFormat  = "yyyy-MM-dd HH:mm:ss";
   private TimeZone                          timeZone        = TimeZone.getDefault();
   private String                            charset         = DEFAULT_CHARSET;
+  private String                            recordSerializer = OGlobalConfiguration.DB_DOCUMENT_SERIALIZER.getValueAsString();
 
   public OStorageSegmentConfiguration       fileTemplate;
 
@@ -258,6 +260,12 @@ public class OStorageConfiguration implements OSerializableStream {
       properties.add(new OStorageEntryConfiguration(read(values[index++]), read(values[index++])));
     }
 
+    // @COMPATIBILTY 1.4.0
+    if (version > 5)
+      recordSerializer = read(values[index++]);
+    else
+      recordSerializer = ORecordSerializerSchemaAware2CSV.NAME;
+
     return this;
   }
 
@@ -336,6 +344,8 @@ public class OStorageConfiguration implements OSerializableStream {
     for (OStorageEntryConfiguration e : properties)
       entryToStream(buffer, e);
 
+    write(buffer, recordSerializer);
+
     // PLAIN: ALLOCATE ENOUGHT SPACE TO REUSE IT EVERY TIME
     buffer.append("|");
 
@@ -459,6 +469,14 @@ public class OStorageConfiguration implements OSerializableStream {
     return localeCountry;
   }
 
+  public String getRecordSerializer() {
+    return recordSerializer;
+  }
+
+  public void setRecordSerializer(final String iRecordSerializer) {
+    recordSerializer = iRecordSerializer;
+  }
+
   public String getCharset() {
     return charset;
   }
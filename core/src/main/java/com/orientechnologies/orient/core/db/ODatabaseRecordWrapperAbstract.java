@@ -18,8 +18,10 @@ package com.orientechnologies.orient.core.db;
 import java.util.List;
 import java.util.Set;
 
+import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.command.OCommandRequest;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecordAbstract;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.dictionary.ODictionary;
 import com.orientechnologies.orient.core.exception.OSchemaException;
@@ -36,6 +38,7 @@ import com.orientechnologies.orient.core.metadata.security.ORole;
 import com.orientechnologies.orient.core.metadata.security.OUser;
 import com.orientechnologies.orient.core.query.OQuery;
 import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.serialization.serializer.record.ORecordSerializer;
 import com.orientechnologies.orient.core.storage.ORecordCallback;
 import com.orientechnologies.orient.core.storage.OStorage;
 import com.orientechnologies.orient.core.storage.OStorage.CLUSTER_TYPE;
@@ -52,6 +55,17 @@ public abstract class ODatabaseRecordWrapperAbstract<DB extends ODatabaseRecord>
     iDatabase.setDatabaseOwner(this);
   }
 
+  /**
+   * Opens the database with the user of another open instance of the same database.
+   * 
+   * @see ODatabaseRecordAbstract#open(ODatabaseRecord)
+   */
+  public <THISDB extends ODatabase> THISDB open(final ODatabaseRecord iAuthenticated) {
+    ((ODatabaseRecordAbstract) underlying).open(iAuthenticated);
+    Orient.instance().getDatabaseFactory().register(databaseOwner);
+    return (THISDB) this;
+  }
+
   @Override
   public <THISDB extends ODatabase> THISDB create() {
     checkSecurity(ODatabaseSecurityResources.DATABASE, ORole.PERMISSION_CREATE);
@@ -167,6 +181,10 @@ public abstract class ODatabaseRecordWrapperAbstract<DB extends ODatabaseRecord>
     return underlying.getRecordType();
   }
 
+  public ORecordSerializer getSerializer() {
+    return underlying.getSerializer();
+  }
+
   public <REC extends ORecordInternal<?>> ORecordIteratorCluster<REC> browseCluster(final String iClusterName) {
     return underlying.browseCluster(iClusterName);
   }
@@ -21,6 +21,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import com.orientechnologies.common.exception.OException;
 import com.orientechnologies.common.log.OLogManager;
@@ -30,6 +31,7 @@ import com.orientechnologies.orient.core.db.ODatabaseRecordWrapperAbstract;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecordTx;
 import com.orientechnologies.orient.core.exception.OConcurrentModificationException;
 import com.orientechnologies.orient.core.exception.ODatabaseException;
+import com.orientechnologies.orient.core.exception.OStorageException;
 import com.orientechnologies.orient.core.exception.OValidationException;
 import com.orientechnologies.orient.core.id.OClusterPosition;
 import com.orientechnologies.orient.core.index.OIndex;
@@ -43,6 +45,8 @@ import com.orientechnologies.orient.core.record.ORecordInternal;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.storage.ORecordCallback;
 import com.orientechnologies.orient.core.storage.impl.local.OStorageLocalAbstract;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPaginatedStorage;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPaginatedStorageBackup;
 import com.orientechnologies.orient.core.version.ORecordVersion;
 
 @SuppressWarnings("unchecked")
@@ -74,7 +78,9 @@ public class ODatabaseDocumentTx extends ODatabaseRecordWrapperAbstract<ODatabas
     if (indexes != null && !indexes.isEmpty()) {
       indexesToFreeze = new ArrayList<OIndexMVRBTreeAbstract<?>>(indexes.size());
       for (OIndex<?> index : indexes) {
-        indexesToFreeze.add((OIndexMVRBTreeAbstract<?>) index.getInternal());
+        // OTHER INDEXES KEEP THEIR CHANGES IN THE STORAGE
+        if (index.getInternal() instanceof OIndexMVRBTreeAbstract<?>)
+          indexesToFreeze.add((OIndexMVRBTreeAbstract<?>) index.getInternal());
       }
 
       Collections.sort(indexesToFreeze, new Comparator<OIndex<?>>() {
@@ -143,6 +149,40 @@ public class ODatabaseDocumentTx extends ODatabaseRecordWrapperAbstract<ODatabas
         .stopChrono("db." + getName() + ".freeze", "Time to freeze the database", startTime, "db.*.freeze");
   }
 
+  /**
+   * Executes a hot backup of a plocal database, the database remains writable during the backup. Changes of the indexes kept in
+   * memory are flushed and suspended only while the last part of the write ahead log is copied.
+   * 
+   * @param iBackupDirectory
+   *          empty directory which will contain the backup
+   * @param iPreviousBackupDirectory
+   *          directory of the previous backup to store only the pages changed after it, or <code>null</code> for a full backup
+   * @see OLocalPaginatedStorage#backup(String, String)
+   * @see OLocalPaginatedStorageBackup#restore(String, String...)
+   */
+  public void backup(final String iBackupDirectory, final String iPreviousBackupDirectory) {
+    if (!(getStorage() instanceof OLocalPaginatedStorage))
+      throw new OStorageException("Hot backup is supported only by plocal databases, cannot backup database " + getName());
+
+    final Collection<? extends OIndex<?>> indexes = getMetadata().getIndexManager().getIndexes();
+    final List<OIndexMVRBTreeAbstract<?>> indexesToLock = prepareIndexesToFreeze(indexes);
+
+    try {
+      ((OLocalPaginatedStorage) getStorage()).backup(iBackupDirectory, iPreviousBackupDirectory, new Callable<Void>() {
+        public Void call() {
+          if (indexesToLock != null) {
+            freezeIndexes(indexesToLock, false);
+            flushIndexes(indexesToLock);
+          }
+          return null;
+        }
+      });
+    } finally {
+      if (indexesToLock != null)
+        releaseIndexes(indexesToLock);
+    }
+  }
+
   @Override
   public void release() {
     if (!(getStorage() instanceof OStorageLocalAbstract)) {
@@ -47,6 +47,7 @@ import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.intent.OIntent;
 import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
+import com.orientechnologies.orient.core.serialization.serializer.record.ORecordSerializerFactory;
 import com.orientechnologies.orient.core.storage.OPhysicalPosition;
 import com.orientechnologies.orient.core.storage.ORawBuffer;
 import com.orientechnologies.orient.core.storage.ORecordCallback;
@@ -593,6 +594,9 @@ public class ODatabaseRaw implements ODatabase {
 
     case CUSTOM:
       return storage.getConfiguration().properties;
+
+    case RECORDSERIALIZER:
+      return storage.getConfiguration().getRecordSerializer();
     }
 
     return null;
@@ -672,6 +676,14 @@ public class ODatabaseRaw implements ODatabase {
       }
       break;
 
+    case RECORDSERIALIZER:
+      if (ORecordSerializerFactory.instance().getFormat(stringValue) == null)
+        throw new IllegalArgumentException("Record serializer '" + stringValue + "' is not registered");
+
+      storage.getConfiguration().setRecordSerializer(stringValue);
+      storage.getConfiguration().update();
+      break;
+
     default:
       throw new IllegalArgumentException("Option '" + iAttribute + "' not supported on alter database");
 
@@ -20,6 +20,7 @@ import com.orientechnologies.orient.core.db.ODatabaseComplex;
 import com.orientechnologies.orient.core.id.OClusterPosition;
 import com.orientechnologies.orient.core.iterator.ORecordIteratorCluster;
 import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.serialization.serializer.record.ORecordSerializer;
 
 /**
  * Generic interface for record based Database implementations.
@@ -68,6 +69,12 @@ public interface ODatabaseRecord extends ODatabaseComplex<ORecordInternal<?>> {
    */
   public byte getRecordType();
 
+  /**
+   * Returns the serializer used to write documents of this database. It's selected per database with the RECORDSERIALIZER
+   * attribute.
+   */
+  public ORecordSerializer getSerializer();
+
   /**
    * Returns true if current configuration retains objects, otherwise false
    * 
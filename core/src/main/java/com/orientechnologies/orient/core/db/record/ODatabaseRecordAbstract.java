@@ -65,10 +65,12 @@ import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.schedule.OSchedulerTrigger;
 import com.orientechnologies.orient.core.serialization.serializer.record.ORecordSerializer;
 import com.orientechnologies.orient.core.serialization.serializer.record.ORecordSerializerFactory;
+import com.orientechnologies.orient.core.serialization.serializer.record.string.ORecordSerializerSchemaAware2CSV;
 import com.orientechnologies.orient.core.sql.OCommandSQL;
 import com.orientechnologies.orient.core.storage.ORawBuffer;
 import com.orientechnologies.orient.core.storage.ORecordCallback;
 import com.orientechnologies.orient.core.storage.ORecordMetadata;
+import com.orientechnologies.orient.core.storage.OStorage;
 import com.orientechnologies.orient.core.storage.OStorageOperationResult;
 import com.orientechnologies.orient.core.storage.OStorageProxy;
 import com.orientechnologies.orient.core.tx.OTransactionRealAbstract;
@@ -111,6 +113,24 @@ public abstract class ODatabaseRecordAbstract extends ODatabaseWrapperAbstract<O
 
   @Override
   public <DB extends ODatabase> DB open(final String iUserName, final String iUserPassword) {
+    return (DB) open(iUserName, iUserPassword, null);
+  }
+
+  /**
+   * Opens the database with the user of another open instance of the same database. The password is not checked again because the
+   * user has been already authenticated by that instance. Used by the threads that share the work of that instance, each one with
+   * its own instance, to keep the same user and permissions. Remote databases are not supported.
+   */
+  public <DB extends ODatabase> DB open(final ODatabaseRecord iAuthenticated) {
+    final OUser authenticated = iAuthenticated.getUser();
+    if (authenticated == null)
+      // THE OTHER INSTANCE HAS BEEN OPENED WITHOUT SECURITY
+      setProperty(ODatabase.OPTIONS.SECURITY.toString(), Boolean.FALSE);
+
+    return (DB) open(authenticated != null ? authenticated.getName() : null, null, authenticated);
+  }
+
+  private ODatabaseRecordAbstract open(final String iUserName, final String iUserPassword, final OUser iAuthenticated) {
     setCurrentDatabaseinThreadLocal();
 
     try {
@@ -123,7 +143,14 @@ public abstract class ODatabaseRecordAbstract extends ODatabaseWrapperAbstract<O
       recordFormat = DEF_RECORD_FORMAT;
 
       if (!(getStorage() instanceof OStorageProxy)) {
-        user = getMetadata().getSecurity().authenticate(iUserName, iUserPassword);
+        if (iAuthenticated != null) {
+          // ALREADY AUTHENTICATED: LOAD THE SAME USER WITH ITS ROLES
+          user = getMetadata().getSecurity().getUser(iAuthenticated.getName());
+          if (user == null)
+            throw new OSecurityAccessException(getName(), "User '" + iAuthenticated.getName() + "' not found in database '"
+                + getName() + "'");
+        } else
+          user = getMetadata().getSecurity().authenticate(iUserName, iUserPassword);
         if (user != null) {
           final Set<ORole> roles = user.getRoles();
           if (roles == null || roles.isEmpty() || roles.iterator().next() == null) {
@@ -145,7 +172,9 @@ public abstract class ODatabaseRecordAbstract extends ODatabaseWrapperAbstract<O
         registerHook(new OFunctionTrigger(), ORecordHook.HOOK_POSITION.REGULAR);
         registerHook(new OClassIndexManager(), ORecordHook.HOOK_POSITION.LAST);
         registerHook(new OSchedulerTrigger(), ORecordHook.HOOK_POSITION.LAST);
-      } else
+      } else if (iAuthenticated != null)
+        throw new ODatabaseException("Remote database '" + getName() + "' can not be opened with the user of another instance");
+      else
         // REMOTE CREATE DUMMY USER
         user = new OUser(iUserName, OUser.encryptPassword(iUserPassword)).addRole(new ORole("passthrough", null,
             ORole.ALLOW_MODES.ALLOW_ALL_BUT));
@@ -162,7 +191,7 @@ public abstract class ODatabaseRecordAbstract extends ODatabaseWrapperAbstract<O
       close();
       throw new ODatabaseException("Cannot open database", e);
     }
-    return (DB) this;
+    return this;
   }
 
   @Override
@@ -468,6 +497,14 @@ public abstract class ODatabaseRecordAbstract extends ODatabaseWrapperAbstract<O
     return recordType;
   }
 
+  public ORecordSerializer getSerializer() {
+    final OStorage storage = getStorage();
+    final ORecordSerializer serializer = storage != null && storage.getConfiguration() != null ? ORecordSerializerFactory
+        .instance().getFormat(storage.getConfiguration().getRecordSerializer()) : null;
+
+    return serializer != null ? serializer : ORecordSerializerFactory.instance().getFormat(ORecordSerializerSchemaAware2CSV.NAME);
+  }
+
   public <RET extends Object> RET newInstance() {
     return (RET) Orient.instance().getRecordFactoryManager().newInstance(recordType);
   }
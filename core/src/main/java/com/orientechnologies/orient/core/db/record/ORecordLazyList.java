@@ -15,6 +15,7 @@
  */
 package com.orientechnologies.orient.core.db.record;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -22,14 +23,20 @@ import java.util.ListIterator;
 
 import com.orientechnologies.common.collection.OLazyIterator;
 import com.orientechnologies.common.collection.OLazyIteratorListWrapper;
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
 import com.orientechnologies.orient.core.db.record.ORecordMultiValueHelper.MULTIVALUE_CONTENT_TYPE;
 import com.orientechnologies.orient.core.exception.ORecordNotFoundException;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.ORecord;
+import com.orientechnologies.orient.core.record.ORecordInternal;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
+import com.orientechnologies.orient.core.storage.ORawBuffer;
+import com.orientechnologies.orient.core.storage.OStorageProxy;
 
 /**
  * Lazy implementation of ArrayList. It's bound to a source ORecord object to keep track of changes. This avoid to call the
@@ -127,8 +134,14 @@ public class ORecordLazyList extends ORecordTrackedList implements ORecordLazyMu
   @Override
   public OLazyIterator<OIdentifiable> iterator() {
     lazyLoad(false);
-    return new OLazyRecordIterator(sourceRecord, new OLazyIteratorListWrapper<OIdentifiable>(super.listIterator()),
-        autoConvertToRecord);
+    final ListIterator<OIdentifiable> underlying = super.listIterator();
+    return new OLazyRecordIterator(sourceRecord, new OLazyIteratorListWrapper<OIdentifiable>(underlying) {
+      @Override
+      public OIdentifiable next() {
+        prefetchRecords(underlying.nextIndex());
+        return super.next();
+      }
+    }, autoConvertToRecord);
   }
 
   @Override
@@ -198,8 +211,10 @@ public class ORecordLazyList extends ORecordTrackedList implements ORecordLazyMu
   @Override
   public OIdentifiable get(final int index) {
     lazyLoad(false);
-    if (autoConvertToRecord)
+    if (autoConvertToRecord) {
+      prefetchRecords(index);
       convertLink2Record(index);
+    }
     return super.get(index);
   }
 
@@ -302,6 +317,7 @@ public class ORecordLazyList extends ORecordTrackedList implements ORecordLazyMu
 
     for (int i = 0; i < size(); ++i) {
       try {
+        prefetchRecords(i);
         convertLink2Record(i);
       } catch (ORecordNotFoundException e) {
         // LEAVE THE RID DIRTY
@@ -364,6 +380,65 @@ public class ORecordLazyList extends ORecordTrackedList implements ORecordLazyMu
     }
   }
 
+  /**
+   * Against remote database loads by one request the not loaded records linked by the next items, starting from the requested
+   * position, and keeps them in level-1 cache. So following conversions of links to records don't cost a network round trip
+   * each. The amount of items is limited by {@link OGlobalConfiguration#CLIENT_LOAD_BATCH_SIZE}.
+   * 
+   * @param iIndex
+   *          Position of the first item to load
+   */
+  private void prefetchRecords(final int iIndex) {
+    if (ridOnly || !autoConvertToRecord || contentType == MULTIVALUE_CONTENT_TYPE.ALL_RECORDS || iIndex >= super.size()
+        || !(super.get(iIndex) instanceof ORecordId))
+      // PRECONDITIONS
+      return;
+
+    final int batchSize = OGlobalConfiguration.CLIENT_LOAD_BATCH_SIZE.getValueAsInteger();
+    if (batchSize < 2)
+      return;
+
+    final ODatabaseRecord database = ODatabaseRecordThreadLocal.INSTANCE.getIfDefined();
+    if (database == null || !(database.getStorage() instanceof OStorageProxy) || !database.getLevel1Cache().isEnabled())
+      return;
+
+    if (!isToLoad(database, (ORecordId) super.get(iIndex)))
+      // ALREADY AVAILABLE: NEXT ITEMS HAVE BEEN PROBABLY LOADED WITH IT
+      return;
+
+    final List<ORecordId> rids = new ArrayList<ORecordId>();
+    for (int i = iIndex; i < super.size() && i < iIndex + batchSize; ++i) {
+      final OIdentifiable o = super.get(i);
+      if (o instanceof ORecordId && isToLoad(database, (ORecordId) o))
+        rids.add((ORecordId) o);
+    }
+
+    if (rids.size() < 2)
+      // NOTHING TO SAVE
+      return;
+
+    try {
+      final List<ORawBuffer> buffers = ((OStorageProxy) database.getStorage()).readRecords(rids, null, false);
+      for (int i = 0; i < rids.size(); ++i) {
+        final ORawBuffer buffer = buffers.get(i);
+        if (buffer == null)
+          continue;
+
+        final ORecordInternal<?> record = Orient.instance().getRecordFactoryManager().newInstance(buffer.recordType);
+        record.fill(rids.get(i), buffer.version, buffer.buffer, false);
+        database.getLevel1Cache().updateRecord(record);
+      }
+    } catch (Exception e) {
+      // RECORDS WILL BE LOADED ONE BY ONE
+      OLogManager.instance().debug(this, "Error on loading linked records in batch", e);
+    }
+  }
+
+  private static boolean isToLoad(final ODatabaseRecord iDatabase, final ORecordId iRid) {
+    return iRid.isPersistent() && iDatabase.getTransaction().getRecord(iRid) == null
+        && iDatabase.getLevel1Cache().findRecord(iRid) == null;
+  }
+
   /**
    * Convert the item requested from record to link.
    * 
@@ -16,7 +16,9 @@
 package com.orientechnologies.orient.core.db.tool;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
@@ -24,6 +26,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.GZIPOutputStream;
 
 import com.orientechnologies.common.io.OIOException;
@@ -32,6 +39,8 @@ import com.orientechnologies.common.serialization.types.OBinarySerializer;
 import com.orientechnologies.orient.core.OConstants;
 import com.orientechnologies.orient.core.command.OCommandOutputListener;
 import com.orientechnologies.orient.core.config.OStorageConfiguration;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
 import com.orientechnologies.orient.core.index.OIndex;
 import com.orientechnologies.orient.core.index.OIndexDefinition;
@@ -48,17 +57,27 @@ import com.orientechnologies.orient.core.record.ORecordInternal;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.serialization.serializer.OJSONWriter;
 import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+import com.orientechnologies.orient.core.storage.OStorageEmbedded;
 import com.orientechnologies.orient.core.type.tree.provider.OMVRBTreeMapProvider;
 
 /**
  * Export data from a database to a file.
  * 
+ * Clusters of embedded databases are exported by parallel workers (see the <code>-parallel</code> option), each one writing the
+ * records of a cluster to an own temporary part, compressed as a separate GZIP member. Parts are appended to the output in the
+ * order of the clusters, so the exported file is the same as the one written by a sequential export.
+ * 
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  */
 public class ODatabaseExport extends ODatabaseImpExpAbstract {
-  private OJSONWriter     writer;
-  private long            recordExported;
-  public static final int VERSION = 6;
+  public static final int   VERSION          = 6;
+  private static final int  COPY_BUFFER_SIZE = 64 * 1024;
+
+  private OJSONWriter       writer;
+  private OPartOutput       output;
+  private OutputStream      fileOutput;
+  private long              recordExported;
+  private volatile boolean  cancelled;
 
   public ODatabaseExport(final ODatabaseRecord iDatabase, final String iFileName, final OCommandOutputListener iListener)
       throws IOException {
@@ -72,7 +91,9 @@ public class ODatabaseExport extends ODatabaseImpExpAbstract {
     if (f.exists())
       f.delete();
 
-    writer = new OJSONWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(fileName))));
+    fileOutput = new FileOutputStream(fileName);
+    output = new OPartOutput(new GZIPOutputStream(fileOutput));
+    writer = new OJSONWriter(new OutputStreamWriter(output));
     writer.beginObject();
     iDatabase.getLevel1Cache().setEnable(false);
     iDatabase.getLevel2Cache().setEnable(false);
@@ -82,7 +103,8 @@ public class ODatabaseExport extends ODatabaseImpExpAbstract {
       throws IOException {
     super(iDatabase, "streaming", iListener);
 
-    writer = new OJSONWriter(new OutputStreamWriter(iOutputStream));
+    output = new OPartOutput(iOutputStream);
+    writer = new OJSONWriter(new OutputStreamWriter(output));
     writer.beginObject();
     iDatabase.getLevel1Cache().setEnable(false);
     iDatabase.getLevel2Cache().setEnable(false);
@@ -136,15 +158,12 @@ public class ODatabaseExport extends ODatabaseImpExpAbstract {
     listener.onMessage("\nExporting records...");
 
     writer.beginCollection(level, true, "records");
-    int exportedClusters = 0;
+
+    final List<OClusterPart> parts = new ArrayList<OClusterPart>();
     int maxClusterId = getMaxClusterId();
-    for (int i = 0; exportedClusters <= maxClusterId; ++i) {
+    for (int i = 0; i <= maxClusterId; ++i) {
       String clusterName = database.getClusterNameById(i);
 
-      exportedClusters++;
-
-      long clusterExportedRecordsTot = 0;
-
       if (clusterName != null) {
         // CHECK IF THE CLUSTER IS INCLUDED
         if (includeClusters != null) {
@@ -157,63 +176,31 @@ public class ODatabaseExport extends ODatabaseImpExpAbstract {
 
         if (excludeClusters != null && excludeClusters.contains(clusterName.toUpperCase()))
           continue;
-
-        clusterExportedRecordsTot = database.countClusterElements(clusterName);
       } else if (includeClusters != null && !includeClusters.isEmpty())
         continue;
 
-      listener.onMessage("\n- Cluster " + (clusterName != null ? "'" + clusterName + "'" : "NULL") + " (id=" + i + ")...");
-
-      long clusterExportedRecordsCurrent = 0;
-      if (clusterName != null) {
-        ORecordInternal<?> rec = null;
-        try {
-          for (ORecordIteratorCluster<ORecordInternal<?>> it = database.browseCluster(clusterName); it.hasNext();) {
-
-            rec = it.next();
-            if (rec instanceof ODocument) {
-              // CHECK IF THE CLASS OF THE DOCUMENT IS INCLUDED
-              ODocument doc = (ODocument) rec;
-              final String className = doc.getClassName() != null ? doc.getClassName().toUpperCase() : null;
-              if (includeClasses != null) {
-                if (!includeClasses.contains(className))
-                  continue;
-              } else if (excludeClasses != null) {
-                if (excludeClasses.contains(className))
-                  continue;
-              }
-            } else if (includeClasses != null && !includeClasses.isEmpty())
-              continue;
+      parts.add(new OClusterPart(i, clusterName));
+    }
 
-            if (exportRecord(clusterExportedRecordsTot, clusterExportedRecordsCurrent, rec))
-              clusterExportedRecordsCurrent++;
-          }
-        } catch (IOException e) {
-          OLogManager.instance().error(this, "\nError on exporting record %s because of I/O problems", e, rec.getIdentity());
-          // RE-THROW THE EXCEPTION UP
-          throw e;
-        } catch (OIOException e) {
-          OLogManager.instance().error(this, "\nError on exporting record %s because of I/O problems", e, rec.getIdentity());
-          // RE-THROW THE EXCEPTION UP
-          throw e;
-        } catch (Throwable t) {
-          if (rec != null) {
-            final byte[] buffer = rec.toStream();
-
-            OLogManager
-                .instance()
-                .error(
-                    this,
-                    "\nError on exporting record %s. It seems corrupted; size: %d bytes, raw content (as string):\n==========\n%s\n==========",
-                    t, rec.getIdentity(), buffer.length, new String(buffer));
-          }
+    if (parallel > 1 && parts.size() > 1 && database.getStorage() instanceof OStorageEmbedded)
+      exportClustersInParallel(parts);
+    else
+      for (OClusterPart part : parts) {
+        listener.onMessage("\n- Cluster " + (part.clusterName != null ? "'" + part.clusterName + "'" : "NULL") + " (id="
+            + part.clusterId + ")...");
+
+        if (part.clusterName != null) {
+          part.total = database.countClusterElements(part.clusterName);
+          part.exported = exportCluster(database, part.clusterName, part.total, writer, recordExported > 0, true);
+          recordExported += part.exported;
         }
-      }
 
-      listener.onMessage("OK (records=" + clusterExportedRecordsCurrent + "/" + clusterExportedRecordsTot + ")");
+        listener.onMessage("OK (records=" + part.exported + "/" + part.total + ")");
+      }
 
-      totalExportedRecords += clusterExportedRecordsCurrent;
-      totalFoundRecords += clusterExportedRecordsTot;
+    for (OClusterPart part : parts) {
+      totalExportedRecords += part.exported;
+      totalFoundRecords += part.total;
     }
     writer.endCollection(level, true);
 
@@ -478,18 +465,183 @@ public class ODatabaseExport extends ODatabaseImpExpAbstract {
     listener.onMessage("OK (" + s.getClasses().size() + " classes)");
   }
 
-  private boolean exportRecord(long recordTot, long recordNum, ORecordInternal<?> rec) throws IOException {
+  private void exportClustersInParallel(final List<OClusterPart> iParts) throws IOException {
+    // PARTS OF A FILE EXPORT ARE WRITTEN BESIDE IT, THE OTHERS IN THE TEMPORARY DIRECTORY
+    final File directory = fileOutput != null ? new File(fileName).getAbsoluteFile().getParentFile() : null;
+
+    final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallel, iParts.size()));
+    final List<Future<OClusterPart>> futures = new ArrayList<Future<OClusterPart>>(iParts.size());
+    try {
+      for (final OClusterPart part : iParts)
+        futures.add(executor.submit(new Callable<OClusterPart>() {
+          public OClusterPart call() throws Exception {
+            exportPart(part, directory);
+            return part;
+          }
+        }));
+
+      for (int i = 0; i < iParts.size(); ++i) {
+        final OClusterPart part = iParts.get(i);
+        listener.onMessage("\n- Cluster " + (part.clusterName != null ? "'" + part.clusterName + "'" : "NULL") + " (id="
+            + part.clusterId + ")...");
+
+        try {
+          futures.get(i).get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new ODatabaseExportException("Export of cluster '" + part.clusterName + "' has been interrupted", e);
+        } catch (ExecutionException e) {
+          throw new ODatabaseExportException("Error on exporting cluster '" + part.clusterName + "'", e.getCause());
+        }
+
+        appendPart(part);
+
+        listener.onMessage("OK (records=" + part.exported + "/" + part.total + ")");
+      }
+    } finally {
+      // WORKERS ARE NOT INTERRUPTED TO AVOID CLOSING THE FILE CHANNELS OF THE STORAGE: THEY STOP AT THE NEXT RECORD
+      cancelled = true;
+      executor.shutdown();
+      for (Future<OClusterPart> future : futures)
+        try {
+          future.get();
+        } catch (Exception e) {
+          // ALREADY REPORTED
+        }
+
+      for (OClusterPart part : iParts)
+        if (part.file != null)
+          part.file.delete();
+      cancelled = false;
+    }
+  }
+
+  /**
+   * Exports the records of a cluster to a temporary part using an own database instance. Executed by the worker threads.
+   */
+  private void exportPart(final OClusterPart iPart, final File iDirectory) throws IOException {
+    if (iPart.clusterName == null || cancelled)
+      return;
+
+    // THE WORKER HAS THE SAME USER AND PERMISSIONS OF THE EXPORTED DATABASE
+    final ODatabaseDocumentTx db = new ODatabaseDocumentTx(database.getURL()).open(database);
+    try {
+      db.getLevel1Cache().setEnable(false);
+
+      iPart.total = db.countClusterElements(iPart.clusterName);
+      iPart.file = File.createTempFile("export-" + iPart.clusterId + "-", ".part", iDirectory);
+
+      final OutputStream partOutput = fileOutput != null ? new GZIPOutputStream(new FileOutputStream(iPart.file))
+          : new FileOutputStream(iPart.file);
+      final OJSONWriter partWriter = new OJSONWriter(new OutputStreamWriter(partOutput));
+      try {
+        iPart.exported = exportCluster(db, iPart.clusterName, iPart.total, partWriter, false, false);
+      } finally {
+        partWriter.close();
+      }
+    } finally {
+      db.close();
+      ODatabaseRecordThreadLocal.INSTANCE.remove();
+    }
+  }
+
+  /**
+   * Appends an exported part to the output. A part of a compressed export is a complete GZIP member, so the current member is
+   * finished, the part is copied as is and a new member is started.
+   */
+  private void appendPart(final OClusterPart iPart) throws IOException {
+    if (iPart.exported == 0)
+      return;
+
+    if (recordExported > 0)
+      writer.append(",");
+    writer.flush();
+
+    if (fileOutput != null) {
+      ((GZIPOutputStream) output.getTarget()).finish();
+      copyFile(iPart.file, fileOutput);
+      output.setTarget(new GZIPOutputStream(fileOutput));
+    } else
+      copyFile(iPart.file, output.getTarget());
+
+    recordExported += iPart.exported;
+  }
+
+  private static void copyFile(final File iSource, final OutputStream iTarget) throws IOException {
+    final FileInputStream in = new FileInputStream(iSource);
+    try {
+      final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+      int read;
+      while ((read = in.read(buffer)) > -1)
+        iTarget.write(buffer, 0, read);
+    } finally {
+      in.close();
+    }
+  }
+
+  private long exportCluster(final ODatabaseRecord iDatabase, final String iClusterName, final long iClusterTotal,
+      final OJSONWriter iWriter, final boolean iSeparator, final boolean iProgress) throws IOException {
+    long clusterExportedRecordsCurrent = 0;
+
+    ORecordInternal<?> rec = null;
+    try {
+      for (ORecordIteratorCluster<ORecordInternal<?>> it = iDatabase.browseCluster(iClusterName); it.hasNext() && !cancelled;) {
+
+        rec = it.next();
+        if (rec instanceof ODocument) {
+          // CHECK IF THE CLASS OF THE DOCUMENT IS INCLUDED
+          ODocument doc = (ODocument) rec;
+          final String className = doc.getClassName() != null ? doc.getClassName().toUpperCase() : null;
+          if (includeClasses != null) {
+            if (!includeClasses.contains(className))
+              continue;
+          } else if (excludeClasses != null) {
+            if (excludeClasses.contains(className))
+              continue;
+          }
+        } else if (includeClasses != null && !includeClasses.isEmpty())
+          continue;
+
+        if (exportRecord(iWriter, iSeparator || clusterExportedRecordsCurrent > 0, iProgress ? iClusterTotal : 0,
+            clusterExportedRecordsCurrent, rec))
+          clusterExportedRecordsCurrent++;
+      }
+    } catch (IOException e) {
+      OLogManager.instance().error(this, "\nError on exporting record %s because of I/O problems", e, rec.getIdentity());
+      // RE-THROW THE EXCEPTION UP
+      throw e;
+    } catch (OIOException e) {
+      OLogManager.instance().error(this, "\nError on exporting record %s because of I/O problems", e, rec.getIdentity());
+      // RE-THROW THE EXCEPTION UP
+      throw e;
+    } catch (Throwable t) {
+      if (rec != null) {
+        final byte[] buffer = rec.toStream();
+
+        OLogManager
+            .instance()
+            .error(
+                this,
+                "\nError on exporting record %s. It seems corrupted; size: %d bytes, raw content (as string):\n==========\n%s\n==========",
+                t, rec.getIdentity(), buffer.length, new String(buffer));
+      }
+    }
+
+    return clusterExportedRecordsCurrent;
+  }
+
+  private boolean exportRecord(final OJSONWriter iWriter, final boolean iSeparator, long recordTot, long recordNum,
+      ORecordInternal<?> rec) throws IOException {
     if (rec != null)
       try {
         if (rec.getIdentity().isValid())
           rec.reload();
 
-        if (recordExported > 0)
-          writer.append(",");
+        if (iSeparator)
+          iWriter.append(",");
 
-        writer.append(rec.toJSON("rid,type,version,class,attribSameRow,keepTypes"));
+        iWriter.append(rec.toJSON("rid,type,version,class,attribSameRow,keepTypes"));
 
-        recordExported++;
         recordNum++;
 
         if (recordTot > 10 && (recordNum + 1) % (recordTot / 10) == 0)
@@ -511,4 +663,39 @@ public class ODatabaseExport extends ODatabaseImpExpAbstract {
 
     return false;
   }
+
+  private static class OClusterPart {
+    private final int    clusterId;
+    private final String clusterName;
+    private long         total;
+    private long         exported;
+    private File         file;
+
+    private OClusterPart(final int iClusterId, final String iClusterName) {
+      clusterId = iClusterId;
+      clusterName = iClusterName;
+    }
+  }
+
+  /**
+   * Output of the writer which can be redirected to a new GZIP member after a part has been appended.
+   */
+  private static class OPartOutput extends FilterOutputStream {
+    private OPartOutput(final OutputStream iOut) {
+      super(iOut);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    private OutputStream getTarget() {
+      return out;
+    }
+
+    private void setTarget(final OutputStream iTarget) {
+      out = iTarget;
+    }
+  }
 }
@@ -46,6 +46,7 @@ public abstract class ODatabaseImpExpAbstract {
   protected boolean                includeRecords            = true;
   protected boolean                includeIndexDefinitions   = true;
   protected boolean                includeManualIndexes      = true;
+  protected int                    parallel                  = Runtime.getRuntime().availableProcessors();
 
   protected OCommandOutputListener listener;
 
@@ -118,6 +119,9 @@ public abstract class ODatabaseImpExpAbstract {
         } else if (option.equalsIgnoreCase("-includeManualIndexes")) {
           includeManualIndexes = Boolean.parseBoolean(items.get(0));
 
+        } else if (option.equalsIgnoreCase("-parallel")) {
+          parallel = Math.max(1, Integer.parseInt(items.get(0)));
+
         }
       }
     }
@@ -204,6 +208,17 @@ public abstract class ODatabaseImpExpAbstract {
     this.includeManualIndexes = includeManualIndexes;
   }
 
+  /**
+   * Returns the number of threads used to export the clusters or to parse the imported records. 1 means sequential.
+   */
+  public int getParallel() {
+    return parallel;
+  }
+
+  public void setParallel(final int parallel) {
+    this.parallel = Math.max(1, parallel);
+  }
+
   public boolean isIncludeClusterDefinitions() {
     return includeClusterDefinitions;
   }
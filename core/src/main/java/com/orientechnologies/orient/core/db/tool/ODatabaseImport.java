@@ -17,23 +17,39 @@ package com.orientechnologies.orient.core.db.tool;
 
 import java.io.BufferedInputStream;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.reflect.InvocationTargetException;
 import java.text.ParseException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 
 import com.orientechnologies.common.serialization.types.OBinarySerializer;
 import com.orientechnologies.orient.core.command.OCommandOutputListener;
+import com.orientechnologies.orient.core.db.ODatabase;
 import com.orientechnologies.orient.core.db.ODatabase.STATUS;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.db.record.OClassTrigger;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
@@ -43,6 +59,7 @@ import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.index.OIndex;
 import com.orientechnologies.orient.core.index.OIndexDefinition;
+import com.orientechnologies.orient.core.index.OIndexInternal;
 import com.orientechnologies.orient.core.index.OIndexManagerProxy;
 import com.orientechnologies.orient.core.index.ORuntimeKeyIndexDefinition;
 import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
@@ -56,30 +73,39 @@ import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.metadata.security.ORole;
 import com.orientechnologies.orient.core.metadata.security.OSecurityShared;
 import com.orientechnologies.orient.core.metadata.security.OUser;
+import com.orientechnologies.orient.core.record.ORecord;
 import com.orientechnologies.orient.core.record.ORecordInternal;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.serialization.serializer.OJSONReader;
 import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
 import com.orientechnologies.orient.core.serialization.serializer.record.string.ORecordSerializerJSON;
 import com.orientechnologies.orient.core.storage.OStorage;
+import com.orientechnologies.orient.core.storage.OStorageEmbedded;
 import com.orientechnologies.orient.core.type.tree.provider.OMVRBTreeRIDProvider;
 
 /**
  * Import data from a file into a database.
  * 
+ * Records of embedded databases are parsed by parallel threads (see the <code>-parallel</code> option), each one with its own
+ * database instance, and stored in the order of the file to keep the same record ids. Automatic indexes are built at the end reading every cluster once for all its indexes.
+ * 
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  */
 public class ODatabaseImport extends ODatabaseImpExpAbstract {
-  private Map<OPropertyImpl, String> linkedClasses       = new HashMap<OPropertyImpl, String>();
-  private Map<OClass, String>        superClasses        = new HashMap<OClass, String>();
-  private OJSONReader                jsonReader;
-  private ORecordInternal<?>         record;
-  private List<String>               recordToDelete      = new ArrayList<String>();
-  private boolean                    schemaImported      = false;
-  private int                        exporterVersion     = -1;
-  private boolean                    hashClustersAreUsed = false;
-  private ORID                       schemaRecordId;
-  private ORID                       indexMgrRecordId;
+  private static final int                 PARSING_RECORDS_PER_THREAD = 64;
+
+  private Map<OPropertyImpl, String>       linkedClasses       = new HashMap<OPropertyImpl, String>();
+  private Map<OClass, String>              superClasses        = new HashMap<OClass, String>();
+  private OJSONReader                      jsonReader;
+  private ORecordInternal<?>               record;
+  private List<String>                     recordToDelete      = new ArrayList<String>();
+  private boolean                          schemaImported      = false;
+  private int                              exporterVersion     = -1;
+  private boolean                          hashClustersAreUsed = false;
+  private ORID                             schemaRecordId;
+  private ORID                             indexMgrRecordId;
+  private List<ODatabaseDocumentTx>        parserDatabases     = Collections.synchronizedList(new ArrayList<ODatabaseDocumentTx>());
+  private ThreadLocal<ODatabaseDocumentTx> parserDatabase      = new ThreadLocal<ODatabaseDocumentTx>();
 
   public ODatabaseImport(final ODatabaseDocument database, final String iFileName, final OCommandOutputListener iListener)
       throws IOException {
@@ -89,7 +115,7 @@ public class ODatabaseImport extends ODatabaseImpExpAbstract {
     final BufferedInputStream bf = new BufferedInputStream(new FileInputStream(fileName));
     bf.mark(1024);
     try {
-      inStream = new GZIPInputStream(bf);
+      inStream = new OGZIPMembersInputStream(new GZIPInputStream(bf));
     } catch (Exception e) {
       bf.reset();
       inStream = bf;
@@ -622,29 +648,50 @@ public class ODatabaseImport extends ODatabaseImpExpAbstract {
 
     System.out.print("\nImporting records...");
 
+    // RECORDS ARE PARSED BY THE POOL THREADS AND STORED BY THIS THREAD IN THE ORIGINAL ORDER TO KEEP THE SAME RIDS
+    final ExecutorService executor = parallel > 1 && database.getStorage() instanceof OStorageEmbedded ? Executors
+        .newFixedThreadPool(parallel) : null;
+    final Deque<ORecordParser> parsing = new ArrayDeque<ORecordParser>();
+
     ORID rid;
     int lastClusterId = -1;
     long clusterRecords = 0;
-    while (jsonReader.lastChar() != ']') {
-      rid = importRecord();
-
-      if (rid != null) {
-        ++clusterRecords;
-
-        if (lastClusterId == -1)
-          lastClusterId = rid.getClusterId();
-        else if (rid.getClusterId() != lastClusterId || jsonReader.lastChar() == ']') {
-          // CHANGED CLUSTERID: DUMP STATISTICS
-          System.out.print("\n- Imported records into cluster '" + database.getClusterNameById(lastClusterId) + "' (id="
-              + lastClusterId + "): " + clusterRecords + " records");
-          clusterRecords = 0;
-          lastClusterId = rid.getClusterId();
+    try {
+      while (jsonReader.lastChar() != ']' || !parsing.isEmpty()) {
+        if (jsonReader.lastChar() != ']') {
+          final ORecordParser parser = readRecord();
+          if (executor != null)
+            parser.future = executor.submit(parser);
+          parsing.add(parser);
+
+          if (executor != null && parsing.size() < parallel * PARSING_RECORDS_PER_THREAD && jsonReader.lastChar() != ']')
+            // KEEP THE THREADS BUSY
+            continue;
         }
 
-        ++totalRecords;
-      } else
-        lastClusterId = 0;
-      record = null;
+        rid = importRecord(parsing.removeFirst());
+
+        if (rid != null) {
+          ++clusterRecords;
+
+          if (lastClusterId == -1)
+            lastClusterId = rid.getClusterId();
+          else if (rid.getClusterId() != lastClusterId || (jsonReader.lastChar() == ']' && parsing.isEmpty())) {
+            // CHANGED CLUSTERID: DUMP STATISTICS
+            System.out.print("\n- Imported records into cluster '" + database.getClusterNameById(lastClusterId) + "' (id="
+                + lastClusterId + "): " + clusterRecords + " records");
+            clusterRecords = 0;
+            lastClusterId = rid.getClusterId();
+          }
+
+          ++totalRecords;
+        } else
+          lastClusterId = 0;
+        record = null;
+      }
+    } finally {
+      if (executor != null)
+        closeParserDatabases(executor);
     }
 
     listener.onMessage("\n\nDone. Imported " + totalRecords + " records\n");
@@ -654,7 +701,27 @@ public class ODatabaseImport extends ODatabaseImpExpAbstract {
     return total;
   }
 
-  private ORID importRecord() throws Exception {
+  /**
+   * Waits for the parsing still in progress, on errors, and closes the database instances of the pool threads.
+   */
+  private void closeParserDatabases(final ExecutorService iExecutor) throws InterruptedException {
+    iExecutor.shutdown();
+    try {
+      while (!iExecutor.awaitTermination(1, TimeUnit.SECONDS))
+        ;
+    } finally {
+      for (ODatabaseDocumentTx db : parserDatabases)
+        db.close();
+      parserDatabases.clear();
+
+      ODatabaseRecordThreadLocal.INSTANCE.set(database);
+    }
+  }
+
+  private ORecordParser readRecord() throws IOException, ParseException {
+    final int line = jsonReader.getLineNumber();
+    final int column = jsonReader.getColumnNumber();
+
     String value = jsonReader.readString(OJSONReader.END_OBJECT, true);
 
     // JUMP EMPTY RECORDS
@@ -662,9 +729,15 @@ public class ODatabaseImport extends ODatabaseImpExpAbstract {
       value = value.substring(1);
     }
 
+    jsonReader.readNext(OJSONReader.NEXT_IN_ARRAY);
+
+    return new ORecordParser(value, line, column);
+  }
+
+  private ORID importRecord(final ORecordParser iParser) throws Exception {
     record = null;
     try {
-      record = ORecordSerializerJSON.INSTANCE.fromString(value, record, null);
+      record = iParser.getRecord();
 
       if (schemaImported && record.getIdentity().equals(schemaRecordId)) {
         // JUMP THE SCHEMA
@@ -673,10 +746,8 @@ public class ODatabaseImport extends ODatabaseImpExpAbstract {
 
       // CHECK IF THE CLUSTER IS INCLUDED
       if (includeClusters != null) {
-        if (!includeClusters.contains(database.getClusterNameById(record.getIdentity().getClusterId()))) {
-          jsonReader.readNext(OJSONReader.NEXT_IN_ARRAY);
+        if (!includeClusters.contains(database.getClusterNameById(record.getIdentity().getClusterId())))
           return null;
-        }
       } else if (excludeClusters != null) {
         if (excludeClusters.contains(database.getClusterNameById(record.getIdentity().getClusterId())))
           return null;
@@ -717,15 +788,12 @@ public class ODatabaseImport extends ODatabaseImpExpAbstract {
         throw new OSchemaException("Imported record '" + record.getIdentity() + "' has rid different from the original: " + rid);
     } catch (Exception t) {
       if (record != null)
-        System.err.println("Error importing record " + record.getIdentity() + ". Source line " + jsonReader.getLineNumber()
-            + ", column " + jsonReader.getColumnNumber());
+        System.err.println("Error importing record " + record.getIdentity() + ". Source line " + iParser.line + ", column "
+            + iParser.column);
       else
-        System.err.println("Error importing record. Source line " + jsonReader.getLineNumber() + ", column "
-            + jsonReader.getColumnNumber());
+        System.err.println("Error importing record. Source line " + iParser.line + ", column " + iParser.column);
 
       throw t;
-    } finally {
-      jsonReader.readNext(OJSONReader.NEXT_IN_ARRAY);
     }
 
     return record.getIdentity();
@@ -785,6 +853,9 @@ public class ODatabaseImport extends ODatabaseImpExpAbstract {
 
     jsonReader.readNext(OJSONReader.BEGIN_COLLECTION);
 
+    // AUTOMATIC INDEXES ARE CREATED EMPTY AND FILLED AT THE END, READING EVERY CLUSTER ONLY ONCE FOR ALL ITS INDEXES
+    final Map<String, List<OIndexInternal<?>>> clusterIndexes = new LinkedHashMap<String, List<OIndexInternal<?>>>();
+
     int n = 0;
     while (jsonReader.lastChar() != ']') {
       jsonReader.readNext(OJSONReader.BEGIN_OBJECT);
@@ -812,23 +883,91 @@ public class ODatabaseImport extends ODatabaseImpExpAbstract {
       // drop automatically created indexes
       indexManager.dropIndex(indexName);
 
-      int[] clusterIdsToIndex = new int[clustersToIndex.size()];
+      final boolean deferred = indexDefinition != null && indexDefinition.getClassName() != null && !clustersToIndex.isEmpty();
+
+      int[] clusterIdsToIndex = new int[deferred ? 0 : clustersToIndex.size()];
 
-      int i = 0;
-      for (final String clusterName : clustersToIndex) {
-        clusterIdsToIndex[i] = database.getClusterIdByName(clusterName);
-        i++;
+      if (!deferred) {
+        int i = 0;
+        for (final String clusterName : clustersToIndex) {
+          clusterIdsToIndex[i] = database.getClusterIdByName(clusterName);
+          i++;
+        }
       }
 
-      indexManager.createIndex(indexName, indexType, indexDefinition, clusterIdsToIndex, null);
+      final OIndex<?> index = indexManager.createIndex(indexName, indexType, indexDefinition, clusterIdsToIndex, null);
+
+      if (deferred)
+        for (final String clusterName : clustersToIndex) {
+          List<OIndexInternal<?>> indexes = clusterIndexes.get(clusterName);
+          if (indexes == null) {
+            indexes = new ArrayList<OIndexInternal<?>>();
+            clusterIndexes.put(clusterName, indexes);
+          }
+          indexes.add(index.getInternal());
+        }
+
       n++;
       listener.onMessage("OK");
     }
 
+    if (!clusterIndexes.isEmpty())
+      buildIndexes(clusterIndexes);
+
     listener.onMessage("\nDone. Created " + n + " indexes.");
     jsonReader.readNext(OJSONReader.NEXT_IN_OBJECT);
   }
 
+  /**
+   * Fills the automatic indexes browsing every cluster once and adds the cluster to the indexes at the end.
+   */
+  private void buildIndexes(final Map<String, List<OIndexInternal<?>>> iClusterIndexes) {
+    final Set<OIndexInternal<?>> built = new LinkedHashSet<OIndexInternal<?>>();
+
+    for (Map.Entry<String, List<OIndexInternal<?>>> entry : iClusterIndexes.entrySet()) {
+      final String clusterName = entry.getKey();
+      final List<OIndexInternal<?>> indexes = entry.getValue();
+
+      listener.onMessage("\n- Indexing cluster '" + clusterName + "' (" + indexes.size() + " indexes)...");
+
+      long indexed = 0;
+      if (database.getClusterIdByName(clusterName) > -1)
+        for (final ORecord<?> rec : database.browseCluster(clusterName)) {
+          if (!(rec instanceof ODocument))
+            continue;
+
+          final ODocument doc = (ODocument) rec;
+          for (OIndexInternal<?> index : indexes) {
+            final Object fieldValue = index.getDefinition().getDocumentValueToIndex(doc);
+
+            if (fieldValue != null) {
+              if (fieldValue instanceof Collection) {
+                for (final Object fieldValueItem : (Collection<?>) fieldValue)
+                  index.put(fieldValueItem, doc);
+              } else
+                index.put(fieldValue, doc);
+            }
+          }
+          indexed++;
+        }
+
+      for (OIndexInternal<?> index : indexes) {
+        index.addCluster(clusterName);
+        built.add(index);
+      }
+
+      listener.onMessage("OK (" + indexed + " records)");
+    }
+
+    for (OIndexInternal<?> index : built)
+      index.flush();
+
+    // THE CLUSTERS HAVE BEEN ADDED TO THE CONFIGURATIONS OF THE INDEXES AFTER THEIR CREATION: STORE THEM
+    final ODocument configuration = database.getMetadata().getIndexManager().getConfiguration();
+    configuration.setDirty();
+    configuration.save();
+  }
+
   private Set<String> importClustersToIndex() throws IOException, ParseException {
     final Set<String> clustersToIndex = new HashSet<String>();
 
@@ -879,4 +1018,82 @@ public class ODatabaseImport extends ODatabaseImpExpAbstract {
   public void close() {
     database.declareIntent(null);
   }
+
+  /**
+   * Parses a record read from the file, in a pool thread if the import is parallel.
+   */
+  private class ORecordParser implements Callable<ORecordInternal<?>> {
+    private final String                value;
+    private final int                   line;
+    private final int                   column;
+    private Future<ORecordInternal<?>> future;
+
+    private ORecordParser(final String iValue, final int iLine, final int iColumn) {
+      value = iValue;
+      line = iLine;
+      column = iColumn;
+    }
+
+    public ORecordInternal<?> call() {
+      // RECORDS ARE PARSED WITH THE SCHEMA OF AN OWN DATABASE INSTANCE: THE INSTANCE OF THE IMPORT IS NOT THREAD SAFE
+      final ODatabaseDocumentTx db = parserDatabase.get();
+      if (db == null) {
+        final ODatabaseDocumentTx newDb = new ODatabaseDocumentTx(database.getURL());
+        // THE PARSER ONLY READS THE SCHEMA, NO RECORD IS ACCESSED: THE USERS CAN'T BE LOADED WHILE THEIR RECORDS ARE IMPORTED
+        newDb.setProperty(ODatabase.OPTIONS.SECURITY.toString(), Boolean.FALSE);
+        newDb.open(database.getUser() != null ? database.getUser().getName() : null, null);
+        parserDatabase.set(newDb);
+        parserDatabases.add(newDb);
+      } else
+        ODatabaseRecordThreadLocal.INSTANCE.set(db);
+
+      return ORecordSerializerJSON.INSTANCE.fromString(value, null, null);
+    }
+
+    private ORecordInternal<?> getRecord() throws Exception {
+      if (future == null)
+        return ORecordSerializerJSON.INSTANCE.fromString(value, null, null);
+
+      try {
+        return future.get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof Exception)
+          throw (Exception) e.getCause();
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * GZIPInputStream returns 0 from available() once the first GZIP member is finished, so the reader would stop reading files
+   * written as multiple members by the parallel export. Reports the end only when it has been reached.
+   */
+  private static class OGZIPMembersInputStream extends FilterInputStream {
+    private boolean endReached;
+
+    private OGZIPMembersInputStream(final InputStream iIn) {
+      super(iIn);
+    }
+
+    @Override
+    public int read() throws IOException {
+      final int b = in.read();
+      if (b == -1)
+        endReached = true;
+      return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      final int read = in.read(b, off, len);
+      if (read == -1)
+        endReached = true;
+      return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return endReached ? 0 : Math.max(1, in.available());
+    }
+  }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+import com.orientechnologies.common.collection.OCompositeKey;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OTransactionException;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
+import com.orientechnologies.orient.core.serialization.serializer.stream.OStreamSerializerAnyStreamable;
+import com.orientechnologies.orient.core.tx.OTransactionIndexChanges.OPERATION;
+
+/**
+ * Applies index changes collected by transaction to the index at commit time. Changes are passed in the form produced by
+ * {@link com.orientechnologies.orient.core.tx.OTransactionRealAbstract#getIndexChanges()}.
+ * 
+ * @since 17.10.13
+ */
+public class OIndexCommitHelper {
+  private OIndexCommitHelper() {
+  }
+
+  public static void applyChanges(final OIndex<?> index, final ODocument iDocument) {
+    final Boolean clearAll = (Boolean) iDocument.field("clear");
+    if (clearAll != null && clearAll)
+      index.clear();
+
+    final Collection<ODocument> entries = iDocument.field("entries");
+
+    for (final ODocument entry : entries) {
+      final Object key = deserializeKey((String) entry.field("k"));
+
+      final List<ODocument> operations = entry.field("ops");
+      if (operations != null) {
+        for (final ODocument op : operations) {
+          final int operation = (Integer) op.rawField("o");
+          final OIdentifiable value = op.field("v", OType.LINK);
+
+          if (operation == OPERATION.PUT.ordinal())
+            index.put(key, value);
+          else if (operation == OPERATION.REMOVE.ordinal()) {
+            if (key.equals("*"))
+              index.remove(value);
+            else if (value == null)
+              index.remove(key);
+            else
+              index.remove(key, value);
+          }
+        }
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Object deserializeKey(final String encodedKey) {
+    final String serializedKey = OStringSerializerHelper.decode(encodedKey);
+
+    try {
+      if (serializedKey.equals("*"))
+        return "*";
+
+      final ODocument keyContainer = new ODocument();
+      keyContainer.setLazyLoad(false);
+
+      keyContainer.fromString(serializedKey);
+
+      final Object storedKey = keyContainer.field("key");
+      if (storedKey instanceof List)
+        return new OCompositeKey((List<? extends Comparable<?>>) storedKey);
+      else if (Boolean.TRUE.equals(keyContainer.field("binary")))
+        return OStreamSerializerAnyStreamable.INSTANCE.fromStream((byte[]) storedKey);
+      else
+        return storedKey;
+    } catch (IOException ioe) {
+      throw new OTransactionException("Error during index changes deserialization. ", ioe);
+    }
+  }
+}
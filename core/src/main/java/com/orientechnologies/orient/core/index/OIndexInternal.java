@@ -15,6 +15,7 @@
  */
 package com.orientechnologies.orient.core.index;
 
+import java.util.Collection;
 import java.util.Map.Entry;
 
 import com.orientechnologies.orient.core.command.OCommandContext;
@@ -89,6 +90,15 @@ public interface OIndexInternal<T> extends OIndex<T>, Iterable<Entry<Object, T>>
    */
   public boolean canBeUsedInEqualityOperators();
 
+  /**
+   * Indicates whether given index keeps keys ordered, so it can be used to calculate result of range operators such as
+   * {@link com.orientechnologies.orient.core.sql.operator.OQueryOperatorBetween} or
+   * {@link com.orientechnologies.orient.core.sql.operator.OQueryOperatorMajor}.
+   * 
+   * @return {@code true} if given index can be used to calculate result of range operators.
+   */
+  public boolean canBeUsedInRangeOperators();
+
   /**
    * Prohibit index modifications. Only index read commands are allowed after this call.
    * 
@@ -113,4 +123,23 @@ public interface OIndexInternal<T> extends OIndex<T>, Iterable<Entry<Object, T>>
    * Is used to indicate that several index changes are going to be seen as single unit from users point of view were completed.
    */
   public void releaseModificationLock();
+
+  /**
+   * Locks keys changed by transaction till the end of its commit, so transactions which change different keys are committed in
+   * parallel. Keys should be passed in ascending order.
+   * 
+   * @param iKeys
+   *          Keys changed by transaction.
+   * @see OIndexTxLockManager
+   */
+  public void acquireKeyLocks(Collection<?> iKeys);
+
+  public void releaseKeyLocks(Collection<?> iKeys);
+
+  /**
+   * Locks the whole index till the end of transaction commit. Is used when transaction changes are not bound to particular keys.
+   */
+  public void acquireTxExclusiveLock();
+
+  public void releaseTxExclusiveLock();
 }
@@ -15,13 +15,11 @@
  */
 package com.orientechnologies.orient.core.index;
 
-import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
-import java.util.List;
 import java.util.Locale;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
@@ -46,7 +44,6 @@ import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.db.record.ORecordElement;
 import com.orientechnologies.orient.core.exception.OCommandExecutionException;
 import com.orientechnologies.orient.core.exception.OConfigurationException;
-import com.orientechnologies.orient.core.exception.OTransactionException;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
 import com.orientechnologies.orient.core.memory.OMemoryWatchDog.Listener;
@@ -54,14 +51,11 @@ import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.profiler.OJVMProfiler;
 import com.orientechnologies.orient.core.record.ORecord;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
 import com.orientechnologies.orient.core.serialization.serializer.binary.OBinarySerializerFactory;
 import com.orientechnologies.orient.core.serialization.serializer.binary.impl.index.OCompositeKeySerializer;
 import com.orientechnologies.orient.core.serialization.serializer.binary.impl.index.OSimpleKeySerializer;
 import com.orientechnologies.orient.core.serialization.serializer.stream.OStreamSerializer;
-import com.orientechnologies.orient.core.serialization.serializer.stream.OStreamSerializerAnyStreamable;
 import com.orientechnologies.orient.core.storage.OStorageEmbedded;
-import com.orientechnologies.orient.core.tx.OTransactionIndexChanges.OPERATION;
 import com.orientechnologies.orient.core.type.tree.OMVRBTreeDatabaseLazySave;
 import com.orientechnologies.orient.core.type.tree.provider.OMVRBTreeProviderAbstract;
 
@@ -73,6 +67,7 @@ import com.orientechnologies.orient.core.type.tree.provider.OMVRBTreeProviderAbs
  */
 public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveExternal implements OIndexInternal<T> {
   protected final OModificationLock              modificationLock = new OModificationLock();
+  protected final OIndexTxLockManager            txLockManager    = new OIndexTxLockManager();
 
   protected static final String                  CONFIG_MAP_RID   = "mapRid";
   protected static final String                  CONFIG_CLUSTERS  = "clusters";
@@ -675,7 +670,6 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
     return configuration;
   }
 
-  @SuppressWarnings("unchecked")
   public void commit(final ODocument iDocument) {
     if (iDocument == null)
       return;
@@ -684,58 +678,7 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
     try {
       map.setRunningTransaction(true);
 
-      final Boolean clearAll = (Boolean) iDocument.field("clear");
-      if (clearAll != null && clearAll)
-        clear();
-
-      final Collection<ODocument> entries = iDocument.field("entries");
-
-      for (final ODocument entry : entries) {
-        final String serializedKey = OStringSerializerHelper.decode((String) entry.field("k"));
-
-        final Object key;
-
-        try {
-          if (serializedKey.equals("*"))
-            key = "*";
-          else {
-            final ODocument keyContainer = new ODocument();
-            keyContainer.setLazyLoad(false);
-
-            keyContainer.fromString(serializedKey);
-
-            final Object storedKey = keyContainer.field("key");
-            if (storedKey instanceof List)
-              key = new OCompositeKey((List<? extends Comparable<?>>) storedKey);
-            else if (Boolean.TRUE.equals(keyContainer.field("binary"))) {
-              key = OStreamSerializerAnyStreamable.INSTANCE.fromStream((byte[]) storedKey);
-            } else
-              key = storedKey;
-          }
-        } catch (IOException ioe) {
-          throw new OTransactionException("Error during index changes deserialization. ", ioe);
-        }
-
-        final List<ODocument> operations = (List<ODocument>) entry.field("ops");
-        if (operations != null) {
-          for (final ODocument op : operations) {
-            final int operation = (Integer) op.rawField("o");
-            final OIdentifiable value = op.field("v", OType.LINK);
-
-            if (operation == OPERATION.PUT.ordinal())
-              put(key, value);
-            else if (operation == OPERATION.REMOVE.ordinal()) {
-              if (key.equals("*"))
-                remove(value);
-              else if (value == null)
-                remove(key);
-              else
-                remove(key, value);
-            }
-          }
-        }
-      }
-
+      OIndexCommitHelper.applyChanges(this, iDocument);
     } finally {
       releaseExclusiveLock();
       map.setRunningTransaction(false);
@@ -934,6 +877,29 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
     modificationLock.releaseModificationLock();
   }
 
+  public void acquireKeyLocks(final Collection<?> iKeys) {
+    txLockManager.acquireKeyLocks(iKeys);
+  }
+
+  public void releaseKeyLocks(final Collection<?> iKeys) {
+    txLockManager.releaseKeyLocks(iKeys);
+  }
+
+  public void acquireTxExclusiveLock() {
+    txLockManager.acquireIndexLock();
+    try {
+      acquireExclusiveLock();
+    } catch (RuntimeException e) {
+      txLockManager.releaseIndexLock();
+      throw e;
+    }
+  }
+
+  public void releaseTxExclusiveLock() {
+    releaseExclusiveLock();
+    txLockManager.releaseIndexLock();
+  }
+
   @Override
   public boolean equals(final Object o) {
     if (this == o)
@@ -966,4 +932,8 @@ public abstract class OIndexMVRBTreeAbstract<T> extends OSharedResourceAdaptiveE
   public boolean isRebuiding() {
     return rebuilding;
   }
+
+  public boolean canBeUsedInRangeOperators() {
+    return canBeUsedInEqualityOperators();
+  }
 }
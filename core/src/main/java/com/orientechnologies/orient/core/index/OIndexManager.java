@@ -117,4 +117,23 @@ public interface OIndexManager {
   public Set<OIndex<?>> getClassIndexes(String className);
 
   public OIndex<?> getClassIndex(String className, String indexName);
+
+  /**
+   * Returns the statistics of the content of an index used to estimate the cost of queries. Statistics are never collected by the
+   * calling thread: the index is analyzed in background the first time and every time its statistics become stale.
+   * 
+   * @param iIndex
+   *          Index
+   * @return statistics of the index or <code>null</code> if not available yet
+   */
+  public OIndexStatistics getIndexStatistics(OIndex<?> iIndex);
+
+  /**
+   * Collects the statistics of an index browsing all its entries.
+   * 
+   * @param iIndex
+   *          Index to analyze
+   * @return statistics of the index or <code>null</code> if not available
+   */
+  public OIndexStatistics analyzeIndex(OIndex<?> iIndex);
 }
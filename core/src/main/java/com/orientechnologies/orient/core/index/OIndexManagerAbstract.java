@@ -36,6 +36,9 @@ import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.dictionary.ODictionary;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.index.hashindex.local.ODictionaryHashIndex;
+import com.orientechnologies.orient.core.index.hashindex.local.ONotUniqueHashIndex;
+import com.orientechnologies.orient.core.index.hashindex.local.OUniqueHashIndex;
 import com.orientechnologies.orient.core.metadata.OMetadata;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.metadata.schema.OType;
@@ -389,6 +392,12 @@ public abstract class OIndexManagerAbstract extends ODocumentWrapperNoClass impl
         return new OIndexTxAwareDictionary(getDatabase(), (OIndex<OIdentifiable>) getIndexInstance(index));
       else if (index instanceof OIndexOneValue)
         return new OIndexTxAwareOneValue(getDatabase(), (OIndex<OIdentifiable>) getIndexInstance(index));
+      else if (index instanceof ONotUniqueHashIndex)
+        return new OIndexTxAwareMultiValue(getDatabase(), (OIndex<Collection<OIdentifiable>>) getIndexInstance(index));
+      else if (index instanceof ODictionaryHashIndex)
+        return new OIndexTxAwareDictionary(getDatabase(), (OIndex<OIdentifiable>) getIndexInstance(index));
+      else if (index instanceof OUniqueHashIndex)
+        return new OIndexTxAwareOneValue(getDatabase(), (OIndex<OIdentifiable>) getIndexInstance(index));
     }
     return index;
   }
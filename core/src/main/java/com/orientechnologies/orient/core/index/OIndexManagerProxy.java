@@ -125,4 +125,12 @@ public class OIndexManagerProxy extends OProxedResource<OIndexManager> implement
   public void rebuildIndexes() {
     delegate.rebuildIndexes();
   }
+
+  public OIndexStatistics getIndexStatistics(final OIndex<?> iIndex) {
+    return delegate.getIndexStatistics(iIndex);
+  }
+
+  public OIndexStatistics analyzeIndex(final OIndex<?> iIndex) {
+    return delegate.analyzeIndex(iIndex);
+  }
 }
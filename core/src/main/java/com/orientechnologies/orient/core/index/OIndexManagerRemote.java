@@ -120,4 +120,14 @@ public class OIndexManagerRemote extends OIndexManagerAbstract {
   public void rebuildIndexes() {
     throw new UnsupportedOperationException("rebuildIndexes()");
   }
+
+  public OIndexStatistics getIndexStatistics(final OIndex<?> iIndex) {
+    // STATISTICS ARE KEPT ONLY BY THE SERVER
+    return null;
+  }
+
+  public OIndexStatistics analyzeIndex(final OIndex<?> iIndex) {
+    // STATISTICS ARE KEPT ONLY BY THE SERVER
+    return null;
+  }
 }
@@ -18,13 +18,21 @@ package com.orientechnologies.orient.core.index;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import com.orientechnologies.common.listener.OProgressListener;
 import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.common.util.OMultiKey;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.ODatabase;
 import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
@@ -37,6 +45,7 @@ import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.storage.OCluster;
 import com.orientechnologies.orient.core.storage.OCluster.ATTRIBUTES;
+import com.orientechnologies.orient.core.storage.OStorage;
 import com.orientechnologies.orient.core.storage.impl.local.OClusterLocal;
 
 /**
@@ -47,9 +56,25 @@ import com.orientechnologies.orient.core.storage.impl.local.OClusterLocal;
  * 
  */
 public class OIndexManagerShared extends OIndexManagerAbstract implements OIndexManager {
-  private static final long   serialVersionUID     = 1L;
-
-  protected volatile Runnable rebuildIndexesThread = null;
+  private static final long                     serialVersionUID     = 1L;
+  public static final String                    CONFIG_STATISTICS    = "statistics";
+
+  // ONE THREAD FOR ALL THE DATABASES: CHECKS AND ANALYSES OF THE INDEXES ARE EXECUTED ONE AT A TIME
+  private static final ExecutorService          STATISTICS_EXECUTOR  = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                                                                       @Override
+                                                                       public Thread newThread(Runnable r) {
+                                                                         final Thread thread = new Thread(r,
+                                                                             "OrientDB Index Statistics");
+                                                                         thread.setDaemon(true);
+                                                                         return thread;
+                                                                       }
+                                                                     });
+
+  protected volatile Runnable                   rebuildIndexesThread = null;
+  protected final Map<String, OIndexStatistics> statistics           = new ConcurrentHashMap<String, OIndexStatistics>();
+  protected final Map<String, Long>             statisticsChecks     = new ConcurrentHashMap<String, Long>();
+  protected final Set<String>                   pendingChecks        = Collections
+                                                                         .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
   public OIndexManagerShared(final ODatabaseRecord iDatabase) {
     super(iDatabase);
@@ -116,6 +141,8 @@ public class OIndexManagerShared extends OIndexManagerAbstract implements OIndex
       final OIndex<?> idx = indexes.remove(iIndexName.toLowerCase());
       if (idx != null) {
         removeClassPropertyIndex(idx);
+        statistics.remove(iIndexName.toLowerCase());
+        statisticsChecks.remove(iIndexName.toLowerCase());
 
         idx.delete();
         setDirty();
@@ -181,6 +208,24 @@ public class OIndexManagerShared extends OIndexManagerAbstract implements OIndex
         if (configUpdated)
           save();
       }
+
+      statistics.clear();
+      statisticsChecks.clear();
+      final Map<String, ODocument> stats = document.field(CONFIG_STATISTICS);
+      if (stats != null) {
+        final long now = System.currentTimeMillis();
+        for (Entry<String, ODocument> entry : stats.entrySet()) {
+          if (!indexes.containsKey(entry.getKey()) || entry.getValue() == null)
+            continue;
+
+          final OIndexStatistics indexStatistics = OIndexStatistics.fromDocument(entry.getValue());
+          if (indexStatistics != null) {
+            // LOADED STATISTICS ARE CHECKED AFTER THE INTERVAL, AS THE ONES JUST ANALYZED
+            statistics.put(entry.getKey(), indexStatistics);
+            statisticsChecks.put(entry.getKey(), now);
+          }
+        }
+      }
     } finally {
       releaseExclusiveLock();
     }
@@ -203,6 +248,12 @@ public class OIndexManagerShared extends OIndexManagerAbstract implements OIndex
         }
         document.field(CONFIG_INDEXES, idxs, OType.EMBEDDEDSET);
 
+        final Map<String, ODocument> stats = new HashMap<String, ODocument>();
+        for (Entry<String, OIndexStatistics> entry : statistics.entrySet())
+          if (indexes.containsKey(entry.getKey()))
+            stats.put(entry.getKey(), entry.getValue().toDocument());
+        document.field(CONFIG_STATISTICS, stats, OType.EMBEDDEDMAP);
+
       } finally {
         document.setInternalStatus(ORecordElement.STATUS.LOADED);
       }
@@ -219,6 +270,97 @@ public class OIndexManagerShared extends OIndexManagerAbstract implements OIndex
     return iIndex;
   }
 
+  /**
+   * Returns the statistics of the index as they are, without browsing or counting its entries. When they are missing or their last
+   * check is older than the configured interval, the index is checked in background and analyzed again if stale.
+   */
+  public OIndexStatistics getIndexStatistics(final OIndex<?> iIndex) {
+    final String indexName = iIndex.getName().toLowerCase();
+    if (!indexes.containsKey(indexName) || iIndex.isRebuiding())
+      return null;
+
+    final OIndexStatistics indexStatistics = statistics.get(indexName);
+    final Long lastCheck = statisticsChecks.get(indexName);
+    if (indexStatistics == null || lastCheck == null
+        || System.currentTimeMillis() - lastCheck >= OGlobalConfiguration.QUERY_INDEX_STATISTICS_CHECK_INTERVAL.getValueAsLong())
+      scheduleStatisticsCheck(indexName);
+
+    return indexStatistics;
+  }
+
+  /**
+   * Collects the statistics of the index browsing all its entries. New statistics are saved with the index configuration when no
+   * transaction is active, otherwise they are kept in memory until the next save.
+   */
+  public OIndexStatistics analyzeIndex(final OIndex<?> iIndex) {
+    final String indexName = iIndex.getName().toLowerCase();
+    if (!indexes.containsKey(indexName) || iIndex.isRebuiding())
+      return null;
+
+    final OIndexStatistics indexStatistics = OIndexStatistics.analyze(iIndex);
+    statistics.put(indexName, indexStatistics);
+    statisticsChecks.put(indexName, indexStatistics.getAnalyzed());
+
+    OLogManager.instance().debug(this, "Collected statistics of index '%s': %s", indexName, indexStatistics);
+
+    if (!getDatabase().getTransaction().isActive())
+      try {
+        save();
+      } catch (Exception e) {
+        // STATISTICS CAN ALWAYS BE COLLECTED AGAIN
+        OLogManager.instance().debug(this, "Cannot save the statistics of index '%s'", e, indexName);
+      }
+
+    return indexStatistics;
+  }
+
+  /**
+   * Checks the statistics of the index in background using a new database instance. The number of entries of some indexes is
+   * computed browsing them, so it's never done by the threads executing the queries.
+   */
+  protected void scheduleStatisticsCheck(final String iIndexName) {
+    if (!pendingChecks.add(iIndexName))
+      // CHECK ALREADY SCHEDULED
+      return;
+
+    final ODatabaseRecord db = getDatabase();
+    final OStorage storage = db.getStorage();
+    final String url = db.getURL();
+
+    STATISTICS_EXECUTOR.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          if (storage.isClosed())
+            // DATABASE CLOSED OR DROPPED IN THE MEANTIME
+            return;
+
+          final ODatabaseDocumentTx newDb = new ODatabaseDocumentTx(url);
+          newDb.setProperty(ODatabase.OPTIONS.SECURITY.toString(), Boolean.FALSE);
+          newDb.open("admin", "nopass");
+          try {
+            final OIndex<?> index = getIndexInternal(iIndexName);
+            if (index == null || index.isRebuiding())
+              return;
+
+            final OIndexStatistics indexStatistics = statistics.get(iIndexName);
+            if (indexStatistics == null || indexStatistics.isStale(index.getSize()))
+              analyzeIndex(index);
+          } finally {
+            newDb.close();
+          }
+        } catch (Throwable t) {
+          // STATISTICS WILL BE CHECKED AGAIN AFTER THE INTERVAL
+          OLogManager.instance().debug(this, "Cannot check the statistics of index '%s'", t, iIndexName);
+        } finally {
+          statisticsChecks.put(iIndexName, System.currentTimeMillis());
+          pendingChecks.remove(iIndexName);
+          ODatabaseRecordThreadLocal.INSTANCE.remove();
+        }
+      }
+    });
+  }
+
   @Override
   public synchronized void rebuildIndexes() {
     if (rebuildIndexesThread != null)
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+
+import com.orientechnologies.common.comparator.ODefaultComparator;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * Statistics of the content of an index used to estimate how many entries a lookup returns: number of entries, number of distinct
+ * keys and, for ordered indexes with a single key of a simple type, an equi-depth histogram of the keys. Every bucket of the
+ * histogram contains about the same number of entries and keeps the number of distinct keys they belong to, while keys with more
+ * entries than a bucket have a bucket on their own. In this way both the selectivity of ranges and skewed distributions of
+ * duplicates are captured.
+ *
+ * Statistics are collected by a full browse of the index and are used as they are until the next analysis. They are considered
+ * stale when the number of entries of the index differs more than 10% from the analyzed one.
+ *
+ * @since 17.10.13
+ */
+public class OIndexStatistics {
+  public static final int     HISTOGRAM_BUCKETS  = 32;
+
+  // DEFAULT SELECTIVITY OF RANGES WHEN THE INDEX HAS NO HISTOGRAM
+  public static final double  RANGE_SELECTIVITY  = 1d / 3;
+
+  private static final double STALE_RATIO        = 0.1;
+  private static final long   STALE_MIN_CHANGES  = 100;
+
+  private static final String ENTRIES            = "entries";
+  private static final String KEYS               = "keys";
+  private static final String ANALYZED           = "analyzed";
+  private static final String MIN_KEY            = "minKey";
+  private static final String BOUNDARIES         = "boundaries";
+  private static final String BUCKET_ENTRIES     = "bucketEntries";
+  private static final String BUCKET_KEYS        = "bucketKeys";
+
+  private final long          entries;
+  private final long          keys;
+  private final long          analyzed;
+
+  private final Object        minKey;
+  private final List<Object>  boundaries;
+  private final List<Long>    bucketEntries;
+  private final List<Long>    bucketKeys;
+
+  protected OIndexStatistics(final long iEntries, final long iKeys, final long iAnalyzed, final Object iMinKey,
+      final List<Object> iBoundaries, final List<Long> iBucketEntries, final List<Long> iBucketKeys) {
+    entries = iEntries;
+    keys = iKeys;
+    analyzed = iAnalyzed;
+    minKey = iMinKey;
+    boundaries = iBoundaries;
+    bucketEntries = iBucketEntries;
+    bucketKeys = iBucketKeys;
+  }
+
+  /**
+   * Collects the statistics of an index browsing all its entries. Indexes that can't be browsed in order are only counted.
+   */
+  public static OIndexStatistics analyze(final OIndex<?> iIndex) {
+    if (!supportsHistogram(iIndex))
+      return new OIndexStatistics(iIndex.getSize(), iIndex.getKeySize(), System.currentTimeMillis(), null, null, null, null);
+
+    // BUCKETS OF THE SAME NUMBER OF ENTRIES: KEYS WITH MORE ENTRIES THAN A BUCKET HAVE A BUCKET ON THEIR OWN
+    final long entriesPerBucket = Math.max(1, (iIndex.getSize() + HISTOGRAM_BUCKETS - 1) / HISTOGRAM_BUCKETS);
+
+    final List<Object> boundaries = new ArrayList<Object>();
+    final List<Long> bucketEntries = new ArrayList<Long>();
+    final List<Long> bucketKeys = new ArrayList<Long>();
+
+    long totalEntries = 0;
+    long totalKeys = 0;
+    Object minKey = null;
+
+    Object lastKey = null;
+    long currentEntries = 0;
+    long currentKeys = 0;
+
+    for (final Iterator<? extends Entry<Object, ?>> it = iIndex.iterator(); it.hasNext();) {
+      final Entry<Object, ?> entry = it.next();
+      final Object key = entry.getKey();
+      if (key == null)
+        continue;
+
+      final Object value = entry.getValue();
+      final long size = value instanceof Collection<?> ? ((Collection<?>) value).size() : 1;
+      if (size == 0)
+        continue;
+
+      if (minKey == null)
+        minKey = key;
+
+      totalEntries += size;
+      totalKeys++;
+
+      if (size >= entriesPerBucket && currentKeys > 0) {
+        boundaries.add(lastKey);
+        bucketEntries.add(currentEntries);
+        bucketKeys.add(currentKeys);
+        currentEntries = 0;
+        currentKeys = 0;
+      }
+
+      currentEntries += size;
+      currentKeys++;
+      lastKey = key;
+
+      if (currentEntries >= entriesPerBucket) {
+        boundaries.add(key);
+        bucketEntries.add(currentEntries);
+        bucketKeys.add(currentKeys);
+        currentEntries = 0;
+        currentKeys = 0;
+      }
+    }
+
+    if (currentKeys > 0) {
+      boundaries.add(lastKey);
+      bucketEntries.add(currentEntries);
+      bucketKeys.add(currentKeys);
+    }
+
+    return new OIndexStatistics(totalEntries, totalKeys, System.currentTimeMillis(), minKey, boundaries, bucketEntries, bucketKeys);
+  }
+
+  /**
+   * Histograms are collected only for ordered indexes with a single key of a type that can be compared and persisted as is.
+   */
+  public static boolean supportsHistogram(final OIndex<?> iIndex) {
+    if (!iIndex.supportsOrderedIterations())
+      return false;
+
+    final OIndexDefinition definition = iIndex.getDefinition();
+    if (definition == null || definition.getParamCount() != 1)
+      return false;
+
+    final OType[] types = definition.getTypes();
+    if (types == null || types.length != 1 || types[0] == null)
+      return false;
+
+    switch (types[0]) {
+    case BYTE:
+    case SHORT:
+    case INTEGER:
+    case LONG:
+    case FLOAT:
+    case DOUBLE:
+    case DECIMAL:
+    case STRING:
+    case DATE:
+    case DATETIME:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  public static OIndexStatistics fromDocument(final ODocument iDocument) {
+    final Number entries = iDocument.field(ENTRIES);
+    final Number keys = iDocument.field(KEYS);
+    final Number analyzed = iDocument.field(ANALYZED);
+    if (entries == null || keys == null)
+      return null;
+
+    final List<Object> boundaries = iDocument.field(BOUNDARIES);
+    final List<Number> bucketEntries = iDocument.field(BUCKET_ENTRIES);
+    final List<Number> bucketKeys = iDocument.field(BUCKET_KEYS);
+
+    if (boundaries == null || bucketEntries == null || bucketKeys == null || boundaries.size() != bucketEntries.size()
+        || boundaries.size() != bucketKeys.size())
+      return new OIndexStatistics(entries.longValue(), keys.longValue(), analyzed != null ? analyzed.longValue() : 0, null, null,
+          null, null);
+
+    return new OIndexStatistics(entries.longValue(), keys.longValue(), analyzed != null ? analyzed.longValue() : 0,
+        iDocument.field(MIN_KEY), new ArrayList<Object>(boundaries), toLongs(bucketEntries), toLongs(bucketKeys));
+  }
+
+  public ODocument toDocument() {
+    final ODocument doc = new ODocument();
+    doc.field(ENTRIES, entries);
+    doc.field(KEYS, keys);
+    doc.field(ANALYZED, analyzed);
+    if (boundaries != null) {
+      doc.field(MIN_KEY, minKey);
+      doc.field(BOUNDARIES, boundaries, OType.EMBEDDEDLIST);
+      doc.field(BUCKET_ENTRIES, bucketEntries, OType.EMBEDDEDLIST);
+      doc.field(BUCKET_KEYS, bucketKeys, OType.EMBEDDEDLIST);
+    }
+    return doc;
+  }
+
+  /**
+   * Tells if the statistics don't reflect anymore the content of an index with the passed number of entries.
+   */
+  public boolean isStale(final long iCurrentEntries) {
+    return Math.abs(iCurrentEntries - entries) > Math.max(STALE_MIN_CHANGES, (long) (entries * STALE_RATIO));
+  }
+
+  /**
+   * Returns the average number of entries for a key.
+   */
+  public double getEntriesPerKey() {
+    if (keys == 0)
+      return 1;
+    return Math.max(1d, (double) entries / keys);
+  }
+
+  /**
+   * Estimates the entries returned by a lookup of a single key.
+   */
+  public double estimateEquals(final Object iKey) {
+    if (boundaries == null || boundaries.isEmpty() || iKey == null)
+      return getEntriesPerKey();
+
+    try {
+      if (compare(minKey, iKey) > 0)
+        return 0;
+
+      for (int i = 0; i < boundaries.size(); ++i)
+        if (compare(boundaries.get(i), iKey) >= 0)
+          return Math.max(1d, (double) bucketEntries.get(i) / bucketKeys.get(i));
+
+      return 0;
+    } catch (RuntimeException e) {
+      // KEY NOT COMPARABLE WITH THE HISTOGRAM
+      return getEntriesPerKey();
+    }
+  }
+
+  /**
+   * Estimates the entries returned by a lookup of the first fields of a composite key.
+   */
+  public double estimatePrefix(final int iFields, final int iIndexFields) {
+    if (iFields >= iIndexFields)
+      return getEntriesPerKey();
+
+    // EVERY FIELD OF THE KEY IS SUPPOSED TO BE EQUALLY SELECTIVE
+    final double prefixKeys = Math.pow(Math.max(1, keys), (double) iFields / iIndexFields);
+    return entries / prefixKeys;
+  }
+
+  /**
+   * Estimates the entries returned by a range lookup. Null bounds mean open ranges.
+   */
+  public double estimateRange(final Object iFrom, final boolean iFromInclusive, final Object iTo, final boolean iToInclusive) {
+    if (boundaries == null || boundaries.isEmpty())
+      return entries * RANGE_SELECTIVITY;
+
+    try {
+      double result = 0;
+      for (int i = 0; i < boundaries.size(); ++i) {
+        // BUCKET i CONTAINS THE KEYS BETWEEN THE PREVIOUS BOUNDARY (EXCLUSIVE) AND ITS BOUNDARY (INCLUSIVE)
+        final Object lower = i == 0 ? minKey : boundaries.get(i - 1);
+        final boolean lowerInclusive = i == 0;
+        final Object upper = boundaries.get(i);
+
+        if (iTo != null) {
+          final int c = compare(lower, iTo);
+          if (c > 0 || c == 0 && (!lowerInclusive || !iToInclusive))
+            continue;
+        }
+        if (iFrom != null) {
+          final int c = compare(upper, iFrom);
+          if (c < 0 || c == 0 && !iFromInclusive)
+            continue;
+        }
+
+        boolean covered = true;
+        if (iFrom != null) {
+          final int c = compare(lower, iFrom);
+          covered = c > 0 || c == 0 && (!lowerInclusive || iFromInclusive);
+        }
+        if (covered && iTo != null) {
+          final int c = compare(upper, iTo);
+          covered = c < 0 || c == 0 && iToInclusive;
+        }
+
+        result += covered ? bucketEntries.get(i) : bucketEntries.get(i) / 2d;
+      }
+
+      return result;
+    } catch (RuntimeException e) {
+      // KEYS NOT COMPARABLE WITH THE HISTOGRAM
+      return entries * RANGE_SELECTIVITY;
+    }
+  }
+
+  public long getEntries() {
+    return entries;
+  }
+
+  public long getKeys() {
+    return keys;
+  }
+
+  public long getAnalyzed() {
+    return analyzed;
+  }
+
+  public boolean hasHistogram() {
+    return boundaries != null;
+  }
+
+  public int getHistogramBuckets() {
+    return boundaries != null ? boundaries.size() : 0;
+  }
+
+  @Override
+  public String toString() {
+    return "entries=" + entries + ", keys=" + keys + ", buckets=" + getHistogramBuckets() + ", analyzed=" + new Date(analyzed);
+  }
+
+  private static int compare(final Object iHistogramKey, final Object iKey) {
+    Object key = iHistogramKey;
+    if (key != null && iKey != null && key.getClass() != iKey.getClass())
+      // PERSISTED KEYS COULD BE LOADED WITH ANOTHER TYPE
+      key = OType.convert(key, iKey.getClass());
+    return ODefaultComparator.INSTANCE.compare(key, iKey);
+  }
+
+  private static List<Long> toLongs(final List<Number> iValues) {
+    final List<Long> result = new ArrayList<Long>(iValues.size());
+    for (Number n : iValues)
+      result.add(n != null ? n.longValue() : 0l);
+    return result;
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.orientechnologies.common.collection.OCompositeKey;
+import com.orientechnologies.common.concur.lock.OLockManager;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.ORID;
+
+/**
+ * Locks which are held on index during transaction commit. Transaction which changes only particular keys locks these keys, so
+ * transactions which change different keys of the same index are committed in parallel. Transaction which changes the whole index
+ * (clears it or removes value from all keys) locks the index itself and waits till all key locks are released.
+ * 
+ * @since 17.10.13
+ */
+public class OIndexTxLockManager {
+  private final OLockManager<Object, Runnable> keyLockManager = new OLockManager<Object, Runnable>(
+                                                                  OGlobalConfiguration.ENVIRONMENT_CONCURRENT.getValueAsBoolean(),
+                                                                  OGlobalConfiguration.INDEX_TX_KEY_LOCK_TIMEOUT
+                                                                      .getValueAsInteger());
+  private final ReadWriteLock                  indexLock      = new ReentrantReadWriteLock();
+
+  /**
+   * Keys should be passed in ascending order to avoid deadlocks between transactions. If one of the keys can not be locked, keys
+   * locked so far are released.
+   */
+  public void acquireKeyLocks(final Collection<?> iKeys) {
+    final Runnable requester = Thread.currentThread();
+
+    indexLock.readLock().lock();
+    int locked = 0;
+    try {
+      for (Object key : iKeys) {
+        keyLockManager.acquireLock(requester, key, OLockManager.LOCK.EXCLUSIVE);
+        locked++;
+      }
+    } catch (RuntimeException e) {
+      final Iterator<?> keyIterator = iKeys.iterator();
+      for (int i = 0; i < locked; i++)
+        keyLockManager.releaseLock(requester, keyIterator.next(), OLockManager.LOCK.EXCLUSIVE);
+
+      indexLock.readLock().unlock();
+      throw e;
+    }
+  }
+
+  /**
+   * Releases all the keys even if some of them can not be released, the first error is thrown at the end.
+   */
+  public void releaseKeyLocks(final Collection<?> iKeys) {
+    final Runnable requester = Thread.currentThread();
+
+    RuntimeException error = null;
+    try {
+      for (Object key : iKeys)
+        try {
+          keyLockManager.releaseLock(requester, key, OLockManager.LOCK.EXCLUSIVE);
+        } catch (RuntimeException e) {
+          if (error == null)
+            error = e;
+        }
+    } finally {
+      indexLock.readLock().unlock();
+    }
+
+    if (error != null)
+      throw error;
+  }
+
+  /**
+   * Returns copies of the keys which are not changed by the commit. Links to records created in the transaction are keys as well
+   * and their identity is assigned by the storage commit while they are locked, so locks must be held on copies of them.
+   */
+  public static List<Object> copyKeys(final Collection<?> iKeys) {
+    final List<Object> copies = new ArrayList<Object>(iKeys.size());
+    for (Object key : iKeys)
+      copies.add(copyKey(key));
+    return copies;
+  }
+
+  private static Object copyKey(final Object iKey) {
+    if (iKey instanceof ORID)
+      return ((ORID) iKey).copy();
+
+    if (iKey instanceof OIdentifiable)
+      return ((OIdentifiable) iKey).getIdentity().copy();
+
+    if (iKey instanceof Date)
+      return new Date(((Date) iKey).getTime());
+
+    if (iKey instanceof OCompositeKey) {
+      final OCompositeKey copy = new OCompositeKey();
+      for (Object key : ((OCompositeKey) iKey).getKeys())
+        copy.addKey(copyKey(key));
+      return copy;
+    }
+
+    return iKey;
+  }
+
+  public void acquireIndexLock() {
+    indexLock.writeLock().lock();
+  }
+
+  public void releaseIndexLock() {
+    indexLock.writeLock().unlock();
+  }
+}
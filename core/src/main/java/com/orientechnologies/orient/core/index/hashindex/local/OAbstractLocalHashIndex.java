@@ -16,14 +16,18 @@
 package com.orientechnologies.orient.core.index.hashindex.local;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
+import com.orientechnologies.common.concur.lock.OModificationLock;
 import com.orientechnologies.common.concur.resource.OCloseable;
 import com.orientechnologies.common.concur.resource.OSharedResourceAdaptive;
 import com.orientechnologies.common.listener.OProgressListener;
@@ -36,11 +40,14 @@ import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.db.record.ORecordElement;
 import com.orientechnologies.orient.core.exception.OConfigurationException;
 import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.index.ODocumentFieldsHashSet;
 import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.index.OIndexCommitHelper;
 import com.orientechnologies.orient.core.index.OIndexDefinition;
 import com.orientechnologies.orient.core.index.OIndexException;
 import com.orientechnologies.orient.core.index.OIndexInternal;
 import com.orientechnologies.orient.core.index.OIndexRebuildOutputListener;
+import com.orientechnologies.orient.core.index.OIndexTxLockManager;
 import com.orientechnologies.orient.core.index.ORuntimeKeyIndexDefinition;
 import com.orientechnologies.orient.core.index.OSimpleKeyIndexDefinition;
 import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
@@ -58,33 +65,51 @@ import com.orientechnologies.orient.core.storage.impl.local.OStorageLocalAbstrac
  * @since 2/17/13
  */
 public abstract class OAbstractLocalHashIndex<T> extends OSharedResourceAdaptive implements OIndexInternal<T>, OCloseable {
-  private static final String              CONFIG_CLUSTERS                       = "clusters";
-  private static final String              CONFIG_MAP_RID                        = "mapRid";
-  public static final String               BUCKET_FILE_EXTENSION                 = ".obf";
-  public static final String               METADATA_CONFIGURATION_FILE_EXTENSION = ".imc";
-  public static final String               TREE_STATE_FILE_EXTENSION             = ".tsc";
+  private static final String                CONFIG_CLUSTERS                       = "clusters";
+  private static final String                CONFIG_MAP_RID                        = "mapRid";
+  public static final String                 BUCKET_FILE_EXTENSION                 = ".obf";
+  public static final String                 METADATA_CONFIGURATION_FILE_EXTENSION = ".imc";
+  public static final String                 TREE_STATE_FILE_EXTENSION             = ".tsc";
 
-  private final OLocalHashTable<Object, T> localHashTable;
-  private OStorageLocalAbstract            storage;
+  protected final OLocalHashTable<Object, T> localHashTable;
+  protected final OModificationLock          modificationLock                      = new OModificationLock();
+  private final OIndexTxLockManager          txLockManager                         = new OIndexTxLockManager();
+  private OStorageLocalAbstract              storage;
 
-  private String                           name;
-  private String                           type;
+  private String                             name;
+  private String                             type;
 
-  private OIndexDefinition                 indexDefinition;
-  private Set<String>                      clustersToIndex                       = new LinkedHashSet<String>();
+  private OIndexDefinition                   indexDefinition;
+  private Set<String>                        clustersToIndex                       = new LinkedHashSet<String>();
 
-  private ODocument                        configuration;
-  private ORID                             identity;
-  private OMurmurHash3HashFunction<Object> keyHashFunction;
-  private boolean                          rebuiding                             = false;
+  private ODocument                          configuration;
+  private ORID                               identity;
+  private OMurmurHash3HashFunction<Object>   keyHashFunction;
+  private boolean                            rebuiding                             = false;
 
   public OAbstractLocalHashIndex(String type) {
+    this(type, new OMurmurHash3HashFunction<Object>());
+  }
+
+  private OAbstractLocalHashIndex(String type, OMurmurHash3HashFunction<Object> keyHashFunction) {
+    this(type, keyHashFunction, keyHashFunction);
+  }
+
+  /**
+   * @param keyHashFunction
+   *          Hash function of index keys, its serializer is updated together with index definition.
+   * @param tableHashFunction
+   *          Hash function of keys which are stored in hash table, may differ from index keys if several records are stored
+   *          for the same key.
+   */
+  protected OAbstractLocalHashIndex(String type, OMurmurHash3HashFunction<Object> keyHashFunction,
+      OHashFunction<Object> tableHashFunction) {
     super(OGlobalConfiguration.ENVIRONMENT_CONCURRENT.getValueAsBoolean());
 
     this.type = type;
-    this.keyHashFunction = new OMurmurHash3HashFunction<Object>();
+    this.keyHashFunction = keyHashFunction;
     this.localHashTable = new OLocalHashTable<Object, T>(METADATA_CONFIGURATION_FILE_EXTENSION, TREE_STATE_FILE_EXTENSION,
-        BUCKET_FILE_EXTENSION, keyHashFunction);
+        BUCKET_FILE_EXTENSION, tableHashFunction);
   }
 
   public OIndex<T> create(String name, OIndexDefinition indexDefinition, ODatabaseRecord database, String clusterIndexName,
@@ -107,7 +132,7 @@ public abstract class OAbstractLocalHashIndex<T> extends OSharedResourceAdaptive
           clustersToIndex.add(database.getClusterNameById(id));
 
       keyHashFunction.setValueSerializer(keySerializer);
-      localHashTable.create(name, keySerializer, valueSerializer, storage);
+      localHashTable.create(name, getTableKeySerializer(keySerializer), valueSerializer, storage);
 
       updateConfiguration();
       rebuild(progressListener);
@@ -180,22 +205,32 @@ public abstract class OAbstractLocalHashIndex<T> extends OSharedResourceAdaptive
 
   @Override
   public OIndex<T> put(Object key, OIdentifiable value) {
-    acquireExclusiveLock();
+    modificationLock.requestModificationLock();
     try {
-      localHashTable.put(key, (T) value);
-      return this;
+      acquireExclusiveLock();
+      try {
+        localHashTable.put(key, (T) value);
+        return this;
+      } finally {
+        releaseExclusiveLock();
+      }
     } finally {
-      releaseExclusiveLock();
+      modificationLock.releaseModificationLock();
     }
   }
 
   @Override
   public boolean remove(Object key) {
-    acquireExclusiveLock();
+    modificationLock.requestModificationLock();
     try {
-      return localHashTable.remove(key) != null;
+      acquireExclusiveLock();
+      try {
+        return localHashTable.remove(key) != null;
+      } finally {
+        releaseExclusiveLock();
+      }
     } finally {
-      releaseExclusiveLock();
+      modificationLock.releaseModificationLock();
     }
   }
 
@@ -205,19 +240,54 @@ public abstract class OAbstractLocalHashIndex<T> extends OSharedResourceAdaptive
   }
 
   @Override
-  public int remove(OIdentifiable iRID) {
-    throw new UnsupportedOperationException("remove(rid)");
+  public int remove(final OIdentifiable iRID) {
+    modificationLock.requestModificationLock();
+    try {
+      acquireExclusiveLock();
+      try {
+        // KEYS ARE COLLECTED BEFORE REMOVAL, TABLE CAN NOT BE CHANGED DURING ITERATION
+        final List<Object> keys = new ArrayList<Object>();
+        localHashTable.visitEntries(new OLocalHashTable.EntryVisitor<Object, T>() {
+          @Override
+          public boolean visit(OHashIndexBucket.Entry<Object, T> entry) {
+            if (entry.value != null && getRecords(entry.value).contains(iRID))
+              keys.add(entry.key);
+
+            return true;
+          }
+        });
+
+        for (Object key : keys)
+          remove(key, iRID);
+
+        return keys.size();
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
   }
 
+  /**
+   * @return Records which are stored in given index value.
+   */
+  protected abstract Collection<OIdentifiable> getRecords(T value);
+
   @Override
   public OIndex<T> clear() {
-    acquireExclusiveLock();
+    modificationLock.requestModificationLock();
     try {
-      localHashTable.clear();
+      acquireExclusiveLock();
+      try {
+        localHashTable.clear();
 
-      return this;
+        return this;
+      } finally {
+        releaseExclusiveLock();
+      }
     } finally {
-      releaseExclusiveLock();
+      modificationLock.releaseModificationLock();
     }
   }
 
@@ -445,7 +515,15 @@ public abstract class OAbstractLocalHashIndex<T> extends OSharedResourceAdaptive
 
   @Override
   public void commit(ODocument iDocument) {
-    throw new UnsupportedOperationException("commit");
+    if (iDocument == null)
+      return;
+
+    acquireExclusiveLock();
+    try {
+      OIndexCommitHelper.applyChanges(this, iDocument);
+    } finally {
+      releaseExclusiveLock();
+    }
   }
 
   @Override
@@ -466,29 +544,81 @@ public abstract class OAbstractLocalHashIndex<T> extends OSharedResourceAdaptive
       final OBinarySerializer<Object> keySerializer = (OBinarySerializer<Object>) detectKeySerializer(indexDefinition);
       keyHashFunction.setValueSerializer(keySerializer);
 
-      localHashTable.setKeySerializer(keySerializer);
+      localHashTable.setKeySerializer(getTableKeySerializer(keySerializer));
       updateConfiguration();
     }
   }
 
+  /**
+   * @return Serializer of keys which are stored in hash table for given serializer of index keys.
+   */
+  protected OBinarySerializer<Object> getTableKeySerializer(OBinarySerializer<Object> keySerializer) {
+    return keySerializer;
+  }
+
   @Override
   public Collection<OIdentifiable> getValues(Collection<?> iKeys) {
-    throw new UnsupportedOperationException("getValues()");
+    return getValues(iKeys, -1);
   }
 
   @Override
   public Collection<OIdentifiable> getValues(Collection<?> iKeys, int maxValuesToFetch) {
-    throw new UnsupportedOperationException("getValues()");
+    acquireSharedLock();
+    try {
+      final Set<OIdentifiable> result = new HashSet<OIdentifiable>();
+
+      for (final Object key : iKeys) {
+        final T value = localHashTable.get(key);
+        if (value == null)
+          continue;
+
+        for (final OIdentifiable record : getRecords(value)) {
+          if (maxValuesToFetch > -1 && maxValuesToFetch == result.size())
+            return result;
+
+          result.add(record);
+        }
+      }
+
+      return result;
+    } finally {
+      releaseSharedLock();
+    }
   }
 
   @Override
   public Collection<ODocument> getEntries(Collection<?> iKeys) {
-    throw new UnsupportedOperationException("getEntries()");
+    return getEntries(iKeys, -1);
   }
 
   @Override
   public Collection<ODocument> getEntries(Collection<?> iKeys, int maxEntriesToFetch) {
-    throw new UnsupportedOperationException("getEntries()");
+    acquireSharedLock();
+    try {
+      final Set<ODocument> result = new ODocumentFieldsHashSet();
+
+      for (final Object key : iKeys) {
+        final T value = localHashTable.get(key);
+        if (value == null)
+          continue;
+
+        for (final OIdentifiable record : getRecords(value)) {
+          if (maxEntriesToFetch > -1 && maxEntriesToFetch == result.size())
+            return result;
+
+          final ODocument document = new ODocument();
+          document.field("key", key);
+          document.field("rid", record.getIdentity());
+          document.unsetDirty();
+
+          result.add(document);
+        }
+      }
+
+      return result;
+    } finally {
+      releaseSharedLock();
+    }
   }
 
   @Override
@@ -649,24 +779,56 @@ public abstract class OAbstractLocalHashIndex<T> extends OSharedResourceAdaptive
     return true;
   }
 
+  @Override
+  public boolean canBeUsedInRangeOperators() {
+    return false;
+  }
+
   @Override
   public void freeze(boolean throwException) {
-    throw new UnsupportedOperationException("freeze");
+    modificationLock.prohibitModifications(throwException);
   }
 
   @Override
   public void release() {
-    throw new UnsupportedOperationException("release");
+    modificationLock.allowModifications();
   }
 
   @Override
   public void acquireModificationLock() {
-    throw new UnsupportedOperationException("acquireModificationLock");
+    modificationLock.requestModificationLock();
   }
 
   @Override
   public void releaseModificationLock() {
-    throw new UnsupportedOperationException("releaseModificationLock");
+    modificationLock.releaseModificationLock();
+  }
+
+  @Override
+  public void acquireKeyLocks(Collection<?> iKeys) {
+    txLockManager.acquireKeyLocks(iKeys);
+  }
+
+  @Override
+  public void releaseKeyLocks(Collection<?> iKeys) {
+    txLockManager.releaseKeyLocks(iKeys);
+  }
+
+  @Override
+  public void acquireTxExclusiveLock() {
+    txLockManager.acquireIndexLock();
+    try {
+      acquireExclusiveLock();
+    } catch (RuntimeException e) {
+      txLockManager.releaseIndexLock();
+      throw e;
+    }
+  }
+
+  @Override
+  public void releaseTxExclusiveLock() {
+    releaseExclusiveLock();
+    txLockManager.releaseIndexLock();
   }
 
   @Override
@@ -683,27 +845,22 @@ public abstract class OAbstractLocalHashIndex<T> extends OSharedResourceAdaptive
 
   @Override
   public void onBeforeTxBegin(ODatabase iDatabase) {
-    throw new UnsupportedOperationException("onBeforeTxBegin");
   }
 
   @Override
   public void onBeforeTxRollback(ODatabase iDatabase) {
-    throw new UnsupportedOperationException("onBeforeTxRollback");
   }
 
   @Override
   public void onAfterTxRollback(ODatabase iDatabase) {
-    throw new UnsupportedOperationException("onAfterTxRollback");
   }
 
   @Override
   public void onBeforeTxCommit(ODatabase iDatabase) {
-    throw new UnsupportedOperationException("onBeforeTxCommit");
   }
 
   @Override
   public void onAfterTxCommit(ODatabase iDatabase) {
-    throw new UnsupportedOperationException("onAfterTxCommit");
   }
 
   @Override
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index.hashindex.local;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import com.orientechnologies.common.listener.OProgressListener;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.index.OIndexDefinition;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.record.ORecord;
+import com.orientechnologies.orient.core.serialization.serializer.binary.impl.OLinkSerializer;
+
+/**
+ * Hash based dictionary, new value put by already existing key replaces the previous one.
+ * 
+ * @since 17.10.13
+ */
+public class ODictionaryHashIndex extends OAbstractLocalHashIndex<OIdentifiable> {
+  public static final String TYPE_ID = OClass.INDEX_TYPE.DICTIONARY_HASH.toString();
+
+  public ODictionaryHashIndex() {
+    super(TYPE_ID);
+  }
+
+  @Override
+  public OIndex<OIdentifiable> create(String iName, OIndexDefinition iIndexDefinition, ODatabaseRecord iDatabase,
+      String iClusterIndexName, int[] iClusterIdsToIndex, OProgressListener iProgressListener) {
+    create(iName, iIndexDefinition, iDatabase, iClusterIndexName, iClusterIdsToIndex, iProgressListener, OLinkSerializer.INSTANCE);
+    return this;
+  }
+
+  @Override
+  public long count(Object iKey) {
+    if (get(iKey) != null)
+      return 1;
+
+    return 0;
+  }
+
+  @Override
+  public boolean contains(Object iKey) {
+    return get(iKey) != null;
+  }
+
+  @Override
+  public OIndex<OIdentifiable> put(Object key, OIdentifiable value) {
+    modificationLock.requestModificationLock();
+    try {
+      acquireExclusiveLock();
+      try {
+        checkForKeyType(key);
+
+        final OIdentifiable currentValue = super.get(key);
+        if (currentValue != null && currentValue.equals(value))
+          return this;
+
+        if (!value.getIdentity().isPersistent())
+          ((ORecord<?>) value.getRecord()).save();
+
+        super.put(key, value.getIdentity());
+        return this;
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  @Override
+  protected Collection<OIdentifiable> getRecords(OIdentifiable value) {
+    return Collections.singleton(value);
+  }
+
+  /**
+   * Disables check of entries.
+   */
+  @Override
+  public void checkEntry(OIdentifiable iRecord, Object iKey) {
+  }
+}
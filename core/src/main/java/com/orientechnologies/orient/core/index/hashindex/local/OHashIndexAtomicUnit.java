@@ -0,0 +1,189 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index.hashindex.local;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.orientechnologies.common.directmemory.ODirectMemory;
+import com.orientechnologies.common.serialization.types.OIntegerSerializer;
+import com.orientechnologies.common.serialization.types.OLongSerializer;
+import com.orientechnologies.orient.core.index.hashindex.local.cache.ODiskCache;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPage;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OAtomicUnitEndRecord;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OAtomicUnitStartRecord;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OLogSequenceNumber;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OWriteAheadLog;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OBinaryFullPageDiff;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OPageDiff;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OUpdateFilePageRecord;
+
+/**
+ * Logs pages changed by single operation of {@link OLocalHashTable} in WAL as single atomic unit.
+ * 
+ * Buckets and directory pages write their content directly in memory of disk cache, so instead of tracking every write, content
+ * of page is copied when page is loaded for the first time during operation. At the end of operation the copy is compared with
+ * current content of page and changed regions are logged as page diffs which contain both new and old data, so operation which
+ * was not finished because of crash is rolled back during storage restore.
+ * 
+ * Pages are kept in disk cache till the end of operation, so they can not be flushed before their changes are logged.
+ * 
+ * @since 17.10.13
+ */
+public class OHashIndexAtomicUnit {
+  private static final int          PAGE_PADDING = OLongSerializer.LONG_SIZE + 2 * OIntegerSerializer.INT_SIZE
+                                                     + OLongSerializer.LONG_SIZE;
+
+  /**
+   * Changed regions which are separated by less amount of unchanged bytes are logged as single diff, every diff costs about
+   * twelve bytes of WAL record overhead.
+   */
+  private static final int          MIN_GAP      = 16;
+
+  private final OWriteAheadLog      writeAheadLog;
+  private final ODiskCache          diskCache;
+  private final ODirectMemory       directMemory;
+
+  private final Map<PageKey, byte[]> pages        = new LinkedHashMap<PageKey, byte[]>();
+
+  public OHashIndexAtomicUnit(OWriteAheadLog writeAheadLog, ODiskCache diskCache, ODirectMemory directMemory) {
+    this.writeAheadLog = writeAheadLog;
+    this.diskCache = diskCache;
+    this.directMemory = directMemory;
+  }
+
+  /**
+   * Remembers content of page if it was not loaded before during this operation.
+   */
+  public void pageLoaded(long fileId, String fileName, long pageIndex, long pagePointer) throws IOException {
+    final PageKey pageKey = new PageKey(fileId, fileName, pageIndex);
+    if (pages.containsKey(pageKey))
+      return;
+
+    diskCache.load(fileId, pageIndex);
+    pages.put(pageKey, directMemory.get(pagePointer, OHashIndexBucket.MAX_BUCKET_SIZE_BYTES));
+  }
+
+  /**
+   * Logs changes of all loaded pages and releases them. Nothing is logged if pages were not changed.
+   */
+  public void commit() throws IOException {
+    try {
+      OLogSequenceNumber lastLsn = null;
+
+      for (Map.Entry<PageKey, byte[]> entry : pages.entrySet()) {
+        final PageKey pageKey = entry.getKey();
+
+        final long pagePointer = diskCache.load(pageKey.fileId, pageKey.pageIndex);
+        try {
+          final List<OPageDiff<?>> diffs = diff(entry.getValue(),
+              directMemory.get(pagePointer, OHashIndexBucket.MAX_BUCKET_SIZE_BYTES));
+          if (diffs.isEmpty())
+            continue;
+
+          if (lastLsn == null)
+            lastLsn = writeAheadLog.log(new OAtomicUnitStartRecord(true, -1));
+
+          lastLsn = writeAheadLog.log(new OUpdateFilePageRecord(pageKey.pageIndex, pageKey.fileName, lastLsn, diffs));
+
+          new OLocalPage(pagePointer, false, OLocalPage.TrackMode.NONE).setLsn(lastLsn);
+          diskCache.markDirty(pageKey.fileId, pageKey.pageIndex);
+        } finally {
+          diskCache.release(pageKey.fileId, pageKey.pageIndex);
+        }
+      }
+
+      if (lastLsn != null)
+        writeAheadLog.log(new OAtomicUnitEndRecord(lastLsn));
+    } finally {
+      for (PageKey pageKey : pages.keySet())
+        diskCache.release(pageKey.fileId, pageKey.pageIndex);
+
+      pages.clear();
+    }
+  }
+
+  private static List<OPageDiff<?>> diff(byte[] oldContent, byte[] newContent) {
+    final List<OPageDiff<?>> diffs = new ArrayList<OPageDiff<?>>();
+
+    int position = PAGE_PADDING;
+    while (position < newContent.length) {
+      if (oldContent[position] == newContent[position]) {
+        position++;
+        continue;
+      }
+
+      final int start = position;
+      int end = position + 1;
+      int gap = 0;
+
+      position++;
+      while (position < newContent.length && gap < MIN_GAP) {
+        if (oldContent[position] == newContent[position])
+          gap++;
+        else {
+          gap = 0;
+          end = position + 1;
+        }
+
+        position++;
+      }
+
+      final byte[] newValue = new byte[end - start];
+      final byte[] oldValue = new byte[end - start];
+      System.arraycopy(newContent, start, newValue, 0, newValue.length);
+      System.arraycopy(oldContent, start, oldValue, 0, oldValue.length);
+
+      diffs.add(new OBinaryFullPageDiff(newValue, start, oldValue));
+    }
+
+    return diffs;
+  }
+
+  private static final class PageKey {
+    private final long   fileId;
+    private final String fileName;
+    private final long   pageIndex;
+
+    private PageKey(long fileId, String fileName, long pageIndex) {
+      this.fileId = fileId;
+      this.fileName = fileName;
+      this.pageIndex = pageIndex;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+
+      PageKey pageKey = (PageKey) o;
+
+      return fileId == pageKey.fileId && pageIndex == pageKey.pageIndex;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = (int) (fileId ^ (fileId >>> 32));
+      result = 31 * result + (int) (pageIndex ^ (pageIndex >>> 32));
+      return result;
+    }
+  }
+}
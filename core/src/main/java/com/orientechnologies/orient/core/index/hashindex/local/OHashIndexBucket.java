@@ -46,6 +46,8 @@ public class OHashIndexBucket<K, V> implements Iterable<OHashIndexBucket.Entry<K
   private static final int            POSITIONS_ARRAY_OFFSET     = NEXT_REMOVED_BUCKET_OFFSET + OLongSerializer.LONG_SIZE;
 
   public static final int             MAX_BUCKET_SIZE_BYTES      = OGlobalConfiguration.DISK_CACHE_PAGE_SIZE.getValueAsInteger() * 1024;
+  public static final int             MAX_ENTRY_SIZE             = MAX_BUCKET_SIZE_BYTES - POSITIONS_ARRAY_OFFSET
+                                                                     - OIntegerSerializer.INT_SIZE;
 
   private final long                  bufferPointer;
   private final ODirectMemory         directMemory;
@@ -64,6 +66,8 @@ public class OHashIndexBucket<K, V> implements Iterable<OHashIndexBucket.Entry<K
 
     directMemory.setByte(bufferPointer + DEPTH_OFFSET, (byte) depth);
     OIntegerSerializer.INSTANCE.serializeInDirectMemory(MAX_BUCKET_SIZE_BYTES, directMemory, bufferPointer + FREE_POINTER_OFFSET);
+    // PAGE MAY BE REUSED AFTER MERGE OF BUCKETS, SO ENTRIES WHICH WERE STORED IN IT BEFORE SHOULD BE DISCARDED
+    OIntegerSerializer.INSTANCE.serializeInDirectMemory(0, directMemory, bufferPointer + SIZE_OFFSET);
   }
 
   public OHashIndexBucket(long bufferPointer, ODirectMemory directMemory, OBinarySerializer<K> keySerializer,
@@ -269,20 +273,35 @@ public class OHashIndexBucket<K, V> implements Iterable<OHashIndexBucket.Entry<K
         + NEXT_REMOVED_BUCKET_OFFSET);
   }
 
-  public void updateEntry(int index, V value) {
+  /**
+   * Replaces value of entry with given index.
+   * 
+   * @return <code>false</code> if new value is bigger than old one and there is no free space in bucket for it, bucket is not
+   *         changed in such case.
+   */
+  public boolean updateEntry(int index, V value) {
     int entryPosition = OIntegerSerializer.INSTANCE.deserializeFromDirectMemory(directMemory, bufferPointer
         + POSITIONS_ARRAY_OFFSET + index * OIntegerSerializer.INT_SIZE);
     entryPosition += keySerializer.getObjectSizeInDirectMemory(directMemory, bufferPointer + entryPosition);
 
-    if (valueSerializer.getObjectSize(value) == valueSerializer.getObjectSizeInDirectMemory(directMemory, bufferPointer
-        + entryPosition))
+    final int newValueSize = valueSerializer.getObjectSize(value);
+    final int oldValueSize = valueSerializer.getObjectSizeInDirectMemory(directMemory, bufferPointer + entryPosition);
+
+    if (newValueSize == oldValueSize)
       valueSerializer.serializeInDirectMemory(value, directMemory, bufferPointer + entryPosition);
     else {
+      final int freePointer = OIntegerSerializer.INSTANCE.deserializeFromDirectMemory(directMemory, bufferPointer
+          + FREE_POINTER_OFFSET);
+      if (freePointer - (newValueSize - oldValueSize) < POSITIONS_ARRAY_OFFSET + size() * OIntegerSerializer.INT_SIZE)
+        return false;
+
       K key = getKey(index);
 
       deleteEntry(index);
       insertEntry(key, value, index);
     }
+
+    return true;
   }
 
   public long getSplitHistory(int level) {
@@ -16,6 +16,7 @@
 package com.orientechnologies.orient.core.index.hashindex.local;
 
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Set;
 
 import com.orientechnologies.common.directmemory.ODirectMemory;
@@ -32,7 +33,15 @@ import com.orientechnologies.orient.core.storage.impl.local.OStorageLocalAbstrac
  * @author <a href="mailto:enisher@gmail.com">Artem Orobets</a>
  */
 public class OHashIndexFactory implements OIndexFactory {
-  public static final Set<String> SUPPORTED_TYPES = Collections.singleton(OUniqueHashIndex.TYPE_ID);
+  public static final Set<String> SUPPORTED_TYPES;
+
+  static {
+    final Set<String> types = new HashSet<String>();
+    types.add(OUniqueHashIndex.TYPE_ID);
+    types.add(ONotUniqueHashIndex.TYPE_ID);
+    types.add(ODictionaryHashIndex.TYPE_ID);
+    SUPPORTED_TYPES = Collections.unmodifiableSet(types);
+  }
 
   @Override
   public Set<String> getTypes() {
@@ -52,6 +61,10 @@ public class OHashIndexFactory implements OIndexFactory {
 
     if (OUniqueHashIndex.TYPE_ID.equals(iIndexType))
       return new OUniqueHashIndex();
+    if (ONotUniqueHashIndex.TYPE_ID.equals(iIndexType))
+      return new ONotUniqueHashIndex();
+    if (ODictionaryHashIndex.TYPE_ID.equals(iIndexType))
+      return new ODictionaryHashIndex();
 
     throw new OConfigurationException("Unsupported type : " + iIndexType);
   }
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index.hashindex.local;
+
+import com.orientechnologies.common.directmemory.ODirectMemory;
+import com.orientechnologies.common.serialization.types.OByteSerializer;
+import com.orientechnologies.common.serialization.types.OIntegerSerializer;
+import com.orientechnologies.common.serialization.types.OLongSerializer;
+
+/**
+ * Page of file which contains state of extendible hashing directory of {@link OLocalHashTable}. Directory is kept in disk cache
+ * like buckets are, so its changes are logged in WAL together with changes of buckets.
+ * 
+ * The first page of file contains amount of records, state of directory tombstones and metadata of bucket files, the rest pages
+ * contain nodes of directory, node with index <code>n</code> is placed on page {@link #getNodePageIndex(int)}.
+ * 
+ * @since 17.10.13
+ */
+public class OHashTreeStatePage {
+  private static final int    MAGIC_NUMBER_OFFSET             = 0;
+  private static final int    CRC32_OFFSET                    = MAGIC_NUMBER_OFFSET + OLongSerializer.LONG_SIZE;
+  private static final int    WAL_SEGMENT_OFFSET              = CRC32_OFFSET + OIntegerSerializer.INT_SIZE;
+  private static final int    WAL_POSITION_OFFSET             = WAL_SEGMENT_OFFSET + OIntegerSerializer.INT_SIZE;
+
+  private static final int    RECORDS_COUNT_OFFSET            = WAL_POSITION_OFFSET + OLongSerializer.LONG_SIZE;
+  private static final int    HASH_TREE_SIZE_OFFSET           = RECORDS_COUNT_OFFSET + OLongSerializer.LONG_SIZE;
+  private static final int    HASH_TREE_TOMBSTONE_OFFSET      = HASH_TREE_SIZE_OFFSET + OIntegerSerializer.INT_SIZE;
+  private static final int    BUCKET_TOMBSTONE_POINTER_OFFSET = HASH_TREE_TOMBSTONE_OFFSET + OIntegerSerializer.INT_SIZE;
+  private static final int    FILES_METADATA_OFFSET           = BUCKET_TOMBSTONE_POINTER_OFFSET + OLongSerializer.LONG_SIZE;
+
+  private static final int    FILE_METADATA_SIZE              = OByteSerializer.BYTE_SIZE + 2 * OLongSerializer.LONG_SIZE;
+
+  private static final int    NODES_OFFSET                    = WAL_POSITION_OFFSET + OLongSerializer.LONG_SIZE;
+  private static final int    NODE_SIZE                       = 4 * OByteSerializer.BYTE_SIZE + OLocalHashTable.MAX_LEVEL_SIZE
+                                                                  * OLongSerializer.LONG_SIZE;
+
+  public static final int     NODES_PER_PAGE                  = (OHashIndexBucket.MAX_BUCKET_SIZE_BYTES - NODES_OFFSET) / NODE_SIZE;
+
+  private static final byte   ABSENT_NODE                     = 0;
+  private static final byte   PRESENT_NODE                    = 1;
+  private static final byte   TOMBSTONE_NODE                  = 2;
+
+  private final long          pagePointer;
+  private final ODirectMemory directMemory;
+
+  public OHashTreeStatePage(long pagePointer, ODirectMemory directMemory) {
+    this.pagePointer = pagePointer;
+    this.directMemory = directMemory;
+  }
+
+  public static long getNodePageIndex(int nodeIndex) {
+    return nodeIndex / NODES_PER_PAGE + 1;
+  }
+
+  public long getRecordsCount() {
+    return OLongSerializer.INSTANCE.deserializeFromDirectMemory(directMemory, pagePointer + RECORDS_COUNT_OFFSET);
+  }
+
+  public void setRecordsCount(long recordsCount) {
+    OLongSerializer.INSTANCE.serializeInDirectMemory(recordsCount, directMemory, pagePointer + RECORDS_COUNT_OFFSET);
+  }
+
+  public int getHashTreeSize() {
+    return OIntegerSerializer.INSTANCE.deserializeFromDirectMemory(directMemory, pagePointer + HASH_TREE_SIZE_OFFSET);
+  }
+
+  public void setHashTreeSize(int hashTreeSize) {
+    OIntegerSerializer.INSTANCE.serializeInDirectMemory(hashTreeSize, directMemory, pagePointer + HASH_TREE_SIZE_OFFSET);
+  }
+
+  public int getHashTreeTombstone() {
+    return OIntegerSerializer.INSTANCE.deserializeFromDirectMemory(directMemory, pagePointer + HASH_TREE_TOMBSTONE_OFFSET);
+  }
+
+  public void setHashTreeTombstone(int hashTreeTombstone) {
+    OIntegerSerializer.INSTANCE.serializeInDirectMemory(hashTreeTombstone, directMemory, pagePointer + HASH_TREE_TOMBSTONE_OFFSET);
+  }
+
+  public long getBucketTombstonePointer() {
+    return OLongSerializer.INSTANCE.deserializeFromDirectMemory(directMemory, pagePointer + BUCKET_TOMBSTONE_POINTER_OFFSET);
+  }
+
+  public void setBucketTombstonePointer(long bucketTombstonePointer) {
+    OLongSerializer.INSTANCE.serializeInDirectMemory(bucketTombstonePointer, directMemory, pagePointer
+        + BUCKET_TOMBSTONE_POINTER_OFFSET);
+  }
+
+  /**
+   * @return Metadata of bucket file of given level or <code>null</code> if such file was not created yet.
+   */
+  public OHashIndexFileLevelMetadata getFileMetadata(int level, String fileName) {
+    final long metadataPointer = pagePointer + FILES_METADATA_OFFSET + level * FILE_METADATA_SIZE;
+    if (directMemory.getByte(metadataPointer) == ABSENT_NODE)
+      return null;
+
+    final long bucketsCount = OLongSerializer.INSTANCE.deserializeFromDirectMemory(directMemory, metadataPointer
+        + OByteSerializer.BYTE_SIZE);
+    final long tombstoneIndex = OLongSerializer.INSTANCE.deserializeFromDirectMemory(directMemory, metadataPointer
+        + OByteSerializer.BYTE_SIZE + OLongSerializer.LONG_SIZE);
+
+    return new OHashIndexFileLevelMetadata(fileName, bucketsCount, tombstoneIndex);
+  }
+
+  public void setFileMetadata(int level, OHashIndexFileLevelMetadata fileMetadata) {
+    final long metadataPointer = pagePointer + FILES_METADATA_OFFSET + level * FILE_METADATA_SIZE;
+    if (fileMetadata == null) {
+      directMemory.setByte(metadataPointer, ABSENT_NODE);
+      return;
+    }
+
+    directMemory.setByte(metadataPointer, PRESENT_NODE);
+    OLongSerializer.INSTANCE.serializeInDirectMemory(fileMetadata.getBucketsCount(), directMemory, metadataPointer
+        + OByteSerializer.BYTE_SIZE);
+    OLongSerializer.INSTANCE.serializeInDirectMemory(fileMetadata.getTombstoneIndex(), directMemory, metadataPointer
+        + OByteSerializer.BYTE_SIZE + OLongSerializer.LONG_SIZE);
+  }
+
+  /**
+   * Stores node of directory. Tombstone of removed node is stored as array which contains only index of next tombstone.
+   */
+  public void setNode(int nodeIndex, long[] node, OHashTreeNodeMetadata nodeMetadata) {
+    final byte[] content = new byte[NODE_SIZE];
+
+    if (node == null)
+      content[0] = ABSENT_NODE;
+    else if (node.length < OLocalHashTable.MAX_LEVEL_SIZE) {
+      content[0] = TOMBSTONE_NODE;
+      OLongSerializer.INSTANCE.serializeNative(node[0], content, 4 * OByteSerializer.BYTE_SIZE);
+    } else {
+      content[0] = PRESENT_NODE;
+      content[1] = (byte) nodeMetadata.getMaxLeftChildDepth();
+      content[2] = (byte) nodeMetadata.getMaxRightChildDepth();
+      content[3] = (byte) nodeMetadata.getNodeLocalDepth();
+
+      int offset = 4 * OByteSerializer.BYTE_SIZE;
+      for (long position : node) {
+        OLongSerializer.INSTANCE.serializeNative(position, content, offset);
+        offset += OLongSerializer.LONG_SIZE;
+      }
+    }
+
+    directMemory.set(nodePointer(nodeIndex), content, 0, content.length);
+  }
+
+  public long[] getNode(int nodeIndex) {
+    final byte[] content = directMemory.get(nodePointer(nodeIndex), NODE_SIZE);
+
+    if (content[0] == ABSENT_NODE)
+      return null;
+
+    if (content[0] == TOMBSTONE_NODE)
+      return new long[] { OLongSerializer.INSTANCE.deserializeNative(content, 4 * OByteSerializer.BYTE_SIZE) };
+
+    final long[] node = new long[OLocalHashTable.MAX_LEVEL_SIZE];
+    int offset = 4 * OByteSerializer.BYTE_SIZE;
+    for (int i = 0; i < node.length; i++) {
+      node[i] = OLongSerializer.INSTANCE.deserializeNative(content, offset);
+      offset += OLongSerializer.LONG_SIZE;
+    }
+
+    return node;
+  }
+
+  public OHashTreeNodeMetadata getNodeMetadata(int nodeIndex) {
+    final long nodePointer = nodePointer(nodeIndex);
+    if (directMemory.getByte(nodePointer) != PRESENT_NODE)
+      return null;
+
+    return new OHashTreeNodeMetadata(directMemory.getByte(nodePointer + 1), directMemory.getByte(nodePointer + 2),
+        directMemory.getByte(nodePointer + 3));
+  }
+
+  private long nodePointer(int nodeIndex) {
+    return pagePointer + NODES_OFFSET + (nodeIndex % NODES_PER_PAGE) * NODE_SIZE;
+  }
+}
@@ -16,6 +16,7 @@
 package com.orientechnologies.orient.core.index.hashindex.local;
 
 import java.io.IOException;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.Iterator;
 
@@ -33,8 +34,14 @@ import com.orientechnologies.orient.core.serialization.serializer.binary.OBinary
 import com.orientechnologies.orient.core.storage.fs.OFileFactory;
 import com.orientechnologies.orient.core.storage.impl.local.OStorageLocalAbstract;
 import com.orientechnologies.orient.core.storage.impl.local.OStorageVariableParser;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPaginatedStorage;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OWriteAheadLog;
 
 /**
+ * Extendible hashing table which keeps its buckets and directory in pages of disk cache. If table is created in storage with
+ * write ahead log every modification is logged in WAL as single atomic unit, so table is restored together with storage data
+ * after crash.
+ * 
  * @author Andrey Lomakin
  * @since 12.03.13
  */
@@ -69,7 +76,11 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
   private String                        name;
 
   private OHashIndexBufferStore         metadataStore;
-  private OHashIndexTreeStateStore      treeStateStore;
+  private long                          treeStateFileId;
+  private final BitSet                  changedNodes           = new BitSet();
+
+  private OWriteAheadLog                writeAheadLog;
+  private OHashIndexAtomicUnit          atomicUnit;
 
   private final ODirectMemory           directMemory           = ODirectMemoryFactory.INSTANCE.directMemory();
 
@@ -84,6 +95,18 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
 
   private final Comparator<? super K>   comparator             = ODefaultComparator.INSTANCE;
 
+  /**
+   * Callback which is used to iterate over all entries of the table.
+   * 
+   * @see #visitEntries(EntryVisitor)
+   */
+  public interface EntryVisitor<K, V> {
+    /**
+     * @return <code>false</code> if iteration should be stopped.
+     */
+    boolean visit(OHashIndexBucket.Entry<K, V> entry);
+  }
+
   public OLocalHashTable(String metadataConfigurationFileExtension, String treeStateFileExtension, String bucketFileExtension,
       OHashFunction<K> keyHashFunction) {
     super(OGlobalConfiguration.ENVIRONMENT_CONCURRENT.getValueAsBoolean());
@@ -93,15 +116,20 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     this.keyHashFunction = keyHashFunction;
   }
 
-  private void initStores(String metadataConfigurationFileExtension, String treeStateFileExtension) throws IOException {
+  private void initStores(String metadataConfigurationFileExtension) throws IOException {
     final OStorageFileConfiguration metadataConfiguration = new OStorageFileConfiguration(null,
         OStorageVariableParser.DB_PATH_VARIABLE + '/' + name + metadataConfigurationFileExtension, OFileFactory.CLASSIC, "0", "50%");
 
-    final OStorageFileConfiguration treeStateConfiguration = new OStorageFileConfiguration(null,
-        OStorageVariableParser.DB_PATH_VARIABLE + '/' + name + treeStateFileExtension, OFileFactory.CLASSIC, "0", "50%");
-
     metadataStore = new OHashIndexBufferStore(storage, metadataConfiguration);
-    treeStateStore = new OHashIndexTreeStateStore(storage, treeStateConfiguration);
+  }
+
+  private void initWAL() {
+    if (storage instanceof OLocalPaginatedStorage) {
+      writeAheadLog = ((OLocalPaginatedStorage) storage).getWALInstance();
+      if (writeAheadLog != null)
+        ((OLocalPaginatedStorage) storage).registerHashTable(this);
+    } else
+      writeAheadLog = null;
   }
 
   public void create(String name, OBinarySerializer<K> keySerializer, OBinarySerializer<V> valueSerializer,
@@ -118,20 +146,25 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
       this.keySerializer = keySerializer;
       this.valueSerializer = valueSerializer;
 
-      initStores(metadataConfigurationFileExtension, treeStateFileExtension);
+      initStores(metadataConfigurationFileExtension);
 
       metadataStore.create(-1);
-      treeStateStore.create(-1);
 
       metadataStore.setRecordsCount(size);
+      metadataStore.setKeySerializerId(keySerializer.getId());
+      metadataStore.setValueSerializerId(valueSerializer.getId());
 
-      treeStateStore.setHashTreeSize(hashTreeSize);
-      treeStateStore.setHashTreeTombstone(hashTreeTombstone);
-      treeStateStore.setBucketTombstonePointer(bucketTombstonePointer);
-
+      treeStateFileId = buffer.openFile(name + treeStateFileExtension);
       filesMetadata[0] = createFileMetadata(0);
 
-      initHashTreeState();
+      initWAL();
+
+      startAtomicOperation();
+      try {
+        initHashTreeState();
+      } finally {
+        endAtomicOperation();
+      }
     } catch (IOException e) {
       throw new OIndexException("Error during local hash table creation.", e);
     } finally {
@@ -157,12 +190,16 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
   }
 
   private OHashIndexFileLevelMetadata createFileMetadata(int i) throws IOException {
-    String fileName = name + i + bucketFileExtension;
+    String fileName = getFileLevelName(i);
     fileLevelIds[i] = buffer.openFile(fileName);
 
     return new OHashIndexFileLevelMetadata(fileName, 0, -1);
   }
 
+  private String getFileLevelName(int i) {
+    return name + i + bucketFileExtension;
+  }
+
   public V get(K key) {
     acquireSharedLock();
     try {
@@ -197,74 +234,107 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
   }
 
   public void put(K key, V value) {
-    doPut(key, value);
+    acquireExclusiveLock();
+    try {
+      startAtomicOperation();
+      try {
+        doPut(key, value);
+      } finally {
+        endAtomicOperation();
+      }
+    } catch (IOException e) {
+      throw new OIndexException("Error during index update", e);
+    } finally {
+      releaseExclusiveLock();
+    }
   }
 
   public V remove(K key) {
     acquireExclusiveLock();
     try {
-      final long hashCode = keyHashFunction.hashCode(key);
+      startAtomicOperation();
+      try {
+        return doRemove(key);
+      } finally {
+        endAtomicOperation();
+      }
+    } catch (IOException e) {
+      throw new OIndexException("Error during index removal", e);
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
 
-      final BucketPath nodePath = getBucket(hashCode);
-      final long bucketPointer = hashTree[nodePath.nodeIndex][nodePath.itemIndex + nodePath.hashMapOffset];
+  private V doRemove(K key) throws IOException {
+    final long hashCode = keyHashFunction.hashCode(key);
 
-      final long pageIndex = getPageIndex(bucketPointer);
-      final int fileLevel = getFileLevel(bucketPointer);
-      final V removed;
+    final BucketPath nodePath = getBucket(hashCode);
+    final long bucketPointer = hashTree[nodePath.nodeIndex][nodePath.itemIndex + nodePath.hashMapOffset];
 
-      long dataPointer = loadPage(pageIndex, fileLevel);
-      try {
-        final OHashIndexBucket<K, V> bucket = new OHashIndexBucket<K, V>(dataPointer, directMemory, keySerializer, valueSerializer);
-        final int positionIndex = bucket.getIndex(key);
-        if (positionIndex < 0)
-          return null;
+    final long pageIndex = getPageIndex(bucketPointer);
+    final int fileLevel = getFileLevel(bucketPointer);
+    final V removed;
 
-        removed = bucket.deleteEntry(positionIndex).value;
-        size--;
+    long dataPointer = loadPage(pageIndex, fileLevel);
+    try {
+      final OHashIndexBucket<K, V> bucket = new OHashIndexBucket<K, V>(dataPointer, directMemory, keySerializer, valueSerializer);
+      final int positionIndex = bucket.getIndex(key);
+      if (positionIndex < 0)
+        return null;
 
-        if (!mergeBucketsAfterDeletion(nodePath, bucket))
-          markPageAsDirty(pageIndex, fileLevel);
+      removed = bucket.deleteEntry(positionIndex).value;
+      size--;
 
-      } finally {
-        releasePage(pageIndex, fileLevel);
-      }
+      if (!mergeBucketsAfterDeletion(nodePath, bucket))
+        markPageAsDirty(pageIndex, fileLevel);
 
-      if (nodePath.parent != null) {
-        final int hashMapSize = 1 << nodePath.nodeLocalDepth;
+    } finally {
+      releasePage(pageIndex, fileLevel);
+    }
 
-        final long[] node = hashTree[nodePath.nodeIndex];
-        final boolean allMapsContainSameBucket = checkAllMapsContainSameBucket(node, hashMapSize);
-        if (allMapsContainSameBucket)
-          mergeNodeToParent(node, nodePath);
-      }
+    if (nodePath.parent != null) {
+      final int hashMapSize = 1 << nodePath.nodeLocalDepth;
 
-      return removed;
-    } catch (IOException e) {
-      throw new OIndexException("Error during index removal", e);
-    } finally {
-      releaseExclusiveLock();
+      final long[] node = hashTree[nodePath.nodeIndex];
+      final boolean allMapsContainSameBucket = checkAllMapsContainSameBucket(node, hashMapSize);
+      if (allMapsContainSameBucket)
+        mergeNodeToParent(node, nodePath);
     }
+
+    return removed;
   }
 
   public void clear() {
     acquireExclusiveLock();
     try {
       for (int i = 0; i < filesMetadata.length; i++) {
-        if (filesMetadata[i] != null)
+        if (filesMetadata[i] != null) {
           buffer.truncateFile(fileLevelIds[i]);
+          filesMetadata[i] = new OHashIndexFileLevelMetadata(getFileLevelName(i), 0, -1);
+        }
       }
 
+      buffer.truncateFile(treeStateFileId);
+
       bucketTombstonePointer = -1;
+      hashTreeTombstone = -1;
 
       metadataStore.truncate();
-      treeStateStore.truncate();
 
-      initHashTreeState();
+      startAtomicOperation();
+      try {
+        initHashTreeState();
+      } finally {
+        endAtomicOperation();
+      }
     } catch (IOException e) {
       throw new OIndexException("Error during hash table clear", e);
     } finally {
       releaseExclusiveLock();
     }
+
+    // TRUNCATION OF FILES IS NOT LOGGED, SO CHANGES LOGGED BEFORE IT SHOULD NOT BE APPLIED DURING RESTORE
+    makeFullCheckpoint();
   }
 
   public OHashIndexBucket.Entry<K, V>[] higherEntries(K key) {
@@ -326,11 +396,6 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
   }
 
   private void saveState() throws IOException {
-    treeStateStore.setHashTreeSize(hashTreeSize);
-    treeStateStore.setBucketTombstonePointer(bucketTombstonePointer);
-    treeStateStore.setHashTreeTombstone(hashTreeTombstone);
-    treeStateStore.storeTreeState(hashTree, nodesMetadata);
-
     metadataStore.setRecordsCount(size);
     metadataStore.setKeySerializerId(keySerializer.getId());
     metadataStore.setValueSerializerId(valueSerializer.getId());
@@ -346,16 +411,35 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
       buffer = storage.getDiskCache();
 
       this.name = name;
-      initStores(metadataConfigurationFileExtension, treeStateFileExtension);
+      initStores(metadataConfigurationFileExtension);
 
       metadataStore.open();
-      treeStateStore.open();
 
-      size = metadataStore.getRecordsCount();
+      keySerializer = (OBinarySerializer<K>) OBinarySerializerFactory.INSTANCE.getObjectSerializer(metadataStore
+          .getKeySerializerId());
+      valueSerializer = (OBinarySerializer<V>) OBinarySerializerFactory.INSTANCE.getObjectSerializer(metadataStore
+          .getValuerSerializerId());
+
+      treeStateFileId = buffer.openFile(name + treeStateFileExtension);
+
+      final long headerPointer = buffer.load(treeStateFileId, 0);
+      try {
+        final OHashTreeStatePage headerPage = new OHashTreeStatePage(headerPointer, directMemory);
+
+        size = headerPage.getRecordsCount();
 
-      hashTreeSize = (int) treeStateStore.getHashTreeSize();
-      hashTreeTombstone = (int) treeStateStore.getHashTreeTombstone();
-      bucketTombstonePointer = treeStateStore.getBucketTombstonePointer();
+        hashTreeSize = headerPage.getHashTreeSize();
+        hashTreeTombstone = headerPage.getHashTreeTombstone();
+        bucketTombstonePointer = headerPage.getBucketTombstonePointer();
+
+        for (int i = 0; i < filesMetadata.length; i++) {
+          filesMetadata[i] = headerPage.getFileMetadata(i, getFileLevelName(i));
+          if (filesMetadata[i] != null)
+            fileLevelIds[i] = buffer.openFile(filesMetadata[i].getFileName());
+        }
+      } finally {
+        buffer.release(treeStateFileId, 0);
+      }
 
       final int arraySize;
       int bitsCount = Integer.bitCount(hashTreeSize);
@@ -364,24 +448,12 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
       else
         arraySize = Integer.highestOneBit(hashTreeSize) << 1;
 
-      OHashIndexTreeStateStore.TreeState treeState = treeStateStore.loadTreeState(arraySize);
-
-      hashTree = treeState.getHashTree();
-      nodesMetadata = treeState.getHashTreeNodeMetadata();
+      hashTree = new long[arraySize][];
+      nodesMetadata = new OHashTreeNodeMetadata[arraySize];
 
-      size = metadataStore.getRecordsCount();
-      keySerializer = (OBinarySerializer<K>) OBinarySerializerFactory.INSTANCE.getObjectSerializer(metadataStore
-          .getKeySerializerId());
-      valueSerializer = (OBinarySerializer<V>) OBinarySerializerFactory.INSTANCE.getObjectSerializer(metadataStore
-          .getValuerSerializerId());
-
-      filesMetadata = metadataStore.loadMetadata();
-      for (int i = 0; i < filesMetadata.length; i++) {
-        OHashIndexFileLevelMetadata fileLevelMetadata = filesMetadata[i];
-        if (fileLevelMetadata != null)
-          fileLevelIds[i] = buffer.openFile(fileLevelMetadata.getFileName());
+      loadTreeState();
 
-      }
+      initWAL();
     } catch (IOException e) {
       throw new OIndexException("Exception during hash table loading", e);
     } finally {
@@ -586,6 +658,96 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     }
   }
 
+  /**
+   * Passes all entries of the table to the visitor bucket by bucket. Unlike {@link #ceilingEntries(Object)} and
+   * {@link #higherEntries(Object)} it does not require hash function to preserve order of keys. Table should not be modified by
+   * visitor.
+   */
+  public void visitEntries(EntryVisitor<K, V> visitor) {
+    acquireSharedLock();
+    try {
+      BucketPath bucketPath = getBucket(HASH_CODE_MIN_VALUE);
+      while (bucketPath != null) {
+        final long bucketPointer = hashTree[bucketPath.nodeIndex][bucketPath.itemIndex + bucketPath.hashMapOffset];
+
+        final int fileLevel = getFileLevel(bucketPointer);
+        final long pageIndex = getPageIndex(bucketPointer);
+        final long pagePointer = loadPage(pageIndex, fileLevel);
+        try {
+          final OHashIndexBucket<K, V> bucket = new OHashIndexBucket<K, V>(pagePointer, directMemory, keySerializer,
+              valueSerializer);
+
+          final Iterator<OHashIndexBucket.Entry<K, V>> iterator = bucket.iterator(0);
+          while (iterator.hasNext())
+            if (!visitor.visit(iterator.next()))
+              return;
+
+          bucketPath = nextBucketToFind(bucketPath, bucket.getDepth());
+        } finally {
+          releasePage(pageIndex, fileLevel);
+        }
+      }
+    } catch (IOException ioe) {
+      throw new OIndexException("Exception during data read", ioe);
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  /**
+   * Passes to the visitor entries of all buckets which may contain keys whose hash codes start with the first
+   * <code>prefixSize</code> bits of <code>hashPrefix</code>. Buckets are visited in hash code order, so only the part of the table
+   * which covers given hash code interval is read. Visitor should filter entries itself because buckets which are not deep
+   * enough may contain keys with other hash codes too. Table should not be modified by visitor.
+   */
+  public void visitEntries(long hashPrefix, int prefixSize, EntryVisitor<K, V> visitor) {
+    acquireSharedLock();
+    try {
+      final long prefixMask = prefixSize == 0 ? 0 : -1L << (HASH_CODE_SIZE - prefixSize);
+      hashPrefix &= prefixMask;
+
+      long hashCode = hashPrefix;
+      while (true) {
+        final BucketPath bucketPath = getBucket(hashCode);
+        final long bucketPointer = hashTree[bucketPath.nodeIndex][bucketPath.itemIndex + bucketPath.hashMapOffset];
+
+        final int bucketDepth;
+        if (bucketPointer == 0)
+          bucketDepth = bucketPath.nodeGlobalDepth;
+        else {
+          final int fileLevel = getFileLevel(bucketPointer);
+          final long pageIndex = getPageIndex(bucketPointer);
+          final long pagePointer = loadPage(pageIndex, fileLevel);
+          try {
+            final OHashIndexBucket<K, V> bucket = new OHashIndexBucket<K, V>(pagePointer, directMemory, keySerializer,
+                valueSerializer);
+
+            final Iterator<OHashIndexBucket.Entry<K, V>> iterator = bucket.iterator(0);
+            while (iterator.hasNext())
+              if (!visitor.visit(iterator.next()))
+                return;
+
+            bucketDepth = bucket.getDepth();
+          } finally {
+            releasePage(pageIndex, fileLevel);
+          }
+        }
+
+        // BUCKET COVERS THE WHOLE INTERVAL
+        if (bucketDepth <= prefixSize)
+          return;
+
+        hashCode += 1L << (HASH_CODE_SIZE - bucketDepth);
+        if (hashCode == 0 || (hashCode & prefixMask) != hashPrefix)
+          return;
+      }
+    } catch (IOException ioe) {
+      throw new OIndexException("Exception during data read", ioe);
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
   public OHashIndexBucket.Entry<K, V> lastEntry() {
     acquireSharedLock();
     try {
@@ -829,17 +991,27 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
   public void rename(String newName) {
     acquireExclusiveLock();
     try {
+      flush();
+
       metadataStore.rename(name, newName);
-      treeStateStore.rename(name, newName);
+      buffer.renameFile(treeStateFileId, name, newName);
+
+      for (int i = 0; i < filesMetadata.length; i++)
+        if (filesMetadata[i] != null)
+          buffer.renameFile(fileLevelIds[i], name, newName);
 
-      for (long fileId : fileLevelIds)
-        if (fileId > 0)
-          buffer.renameFile(fileId, newName, name);
+      name = newName;
+      for (int i = 0; i < filesMetadata.length; i++)
+        if (filesMetadata[i] != null)
+          filesMetadata[i].setFileName(getFileLevelName(i));
     } catch (IOException ioe) {
       throw new OIndexException("Attempt of rename of hash table was failed", ioe);
     } finally {
       releaseExclusiveLock();
     }
+
+    // WAL REFERS TO FILES BY NAMES WHICH ARE NOT VALID ANY MORE
+    makeFullCheckpoint();
   }
 
   public void close() {
@@ -847,8 +1019,11 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     try {
       flush();
 
+      if (writeAheadLog != null)
+        ((OLocalPaginatedStorage) storage).unregisterHashTable(this);
+
       metadataStore.close();
-      treeStateStore.close();
+      buffer.closeFile(treeStateFileId);
 
       for (int i = 0; i < filesMetadata.length; i++)
         if (filesMetadata[i] != null)
@@ -864,18 +1039,24 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
   public void delete() {
     acquireExclusiveLock();
     try {
+      if (writeAheadLog != null)
+        ((OLocalPaginatedStorage) storage).unregisterHashTable(this);
+
       for (int i = 0; i < filesMetadata.length; i++) {
         if (filesMetadata[i] != null)
           buffer.deleteFile(fileLevelIds[i]);
       }
 
+      buffer.deleteFile(treeStateFileId);
       metadataStore.delete();
-      treeStateStore.delete();
     } catch (IOException e) {
       throw new OIndexException("Exception during index deletion", e);
     } finally {
       releaseExclusiveLock();
     }
+
+    // FILES WITH THE SAME NAMES MAY BE CREATED LATER, CHANGES OF DELETED FILES SHOULD NOT BE APPLIED TO THEM DURING RESTORE
+    makeFullCheckpoint();
   }
 
   private void mergeNodeToParent(long[] node, BucketPath nodePath) {
@@ -887,6 +1068,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     for (int i = 0, k = startIndex; i < node.length; i += hashMapSize, k++) {
       parentNode[k] = node[i];
     }
+    changedNodes.set(nodePath.parent.nodeIndex);
 
     deleteNode(nodePath.nodeIndex);
 
@@ -983,7 +1165,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
       int newBuddyLevel = buddyLevel - 1;
       long newBuddyIndex = buddyBucket.getSplitHistory(newBuddyLevel);
 
-      filesMetadata[buddyLevel].setBucketsCount(filesMetadata[buddyLevel].getBucketsCount() + 1);
+      filesMetadata[newBuddyLevel].setBucketsCount(filesMetadata[newBuddyLevel].getBucketsCount() + 1);
 
       final long newBuddyPagePointer = loadPage(newBuddyIndex, newBuddyLevel);
       try {
@@ -1004,7 +1186,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
       final long bucketIndex = getPageIndex(bucketPointer);
       final int bucketLevel = getFileLevel(bucketPointer);
 
-      final long newBuddyPointer = createBucketPointer(buddyIndex, buddyLevel);
+      final long newBuddyPointer = createBucketPointer(newBuddyIndex, newBuddyLevel);
 
       for (int i = firstStartIndex; i < secondEndIndex; i++)
         updateBucket(currentNode.nodeIndex, i, currentNode.hashMapOffset, newBuddyPointer);
@@ -1040,7 +1222,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
       saveState();
 
       metadataStore.synch();
-      treeStateStore.synch();
+      buffer.flushFile(treeStateFileId);
 
       for (int i = 0; i < filesMetadata.length; i++)
         if (filesMetadata[i] != null)
@@ -1059,7 +1241,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
       if (!metadataStore.wasSoftlyClosedAtPreviousTime())
         return false;
 
-      if (!treeStateStore.wasSoftlyClosedAtPreviousTime())
+      if (!buffer.wasSoftlyClosed(treeStateFileId))
         return false;
 
       for (int i = 0; i < filesMetadata.length; i++) {
@@ -1079,7 +1261,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     acquireSharedLock();
     try {
       metadataStore.setSoftlyClosed(softlyClosed);
-      treeStateStore.setSoftlyClosed(softlyClosed);
+      buffer.setSoftlyClosed(treeStateFileId, softlyClosed);
 
       for (int i = 0; i < filesMetadata.length; i++) {
         if (filesMetadata[i] != null)
@@ -1095,6 +1277,11 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
   private void doPut(K key, V value) {
     acquireExclusiveLock();
     try {
+      final int entrySize = keySerializer.getObjectSize(key) + valueSerializer.getObjectSize(value);
+      if (entrySize > OHashIndexBucket.MAX_ENTRY_SIZE)
+        throw new OIndexMaximumLimitReachedException("Entry size " + entrySize + " is bigger than maximum allowed size "
+            + OHashIndexBucket.MAX_ENTRY_SIZE);
+
       final long hashCode = keyHashFunction.hashCode(key);
 
       final BucketPath bucketPath = getBucket(hashCode);
@@ -1113,12 +1300,20 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
         final OHashIndexBucket<K, V> bucket = new OHashIndexBucket<K, V>(pagePointer, directMemory, keySerializer, valueSerializer);
         final int index = bucket.getIndex(key);
         if (index > -1) {
-          bucket.updateEntry(index, value);
-          return;
+          if (bucket.updateEntry(index, value)) {
+            markPageAsDirty(pageIndex, fileLevel);
+            return;
+          }
+
+          // NEW VALUE DOES NOT FIT IN BUCKET, ENTRY IS ADDED AGAIN AFTER BUCKET SPLIT
+          bucket.deleteEntry(index);
+          markPageAsDirty(pageIndex, fileLevel);
+          size--;
         }
 
         if (bucket.addEntry(key, value)) {
-          assert bucket.getEntry(bucket.getIndex(key)).value.equals(value);
+          assert value == null ? bucket.getEntry(bucket.getIndex(key)).value == null : bucket.getEntry(bucket.getIndex(key)).value
+              .equals(value);
           markPageAsDirty(pageIndex, fileLevel);
 
           size++;
@@ -1201,6 +1396,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
 
     final long[] parentNode = hashTree[bucketPath.parent.nodeIndex];
     assert assertParentNodeStartIndex(bucketPath, parentNode, startIndex);
+    changedNodes.set(bucketPath.parent.nodeIndex);
 
     final int pointersSize = 1 << (MAX_LEVEL_DEPTH - nodeLocalDepth);
     if (allLeftHashMapEquals) {
@@ -1230,6 +1426,8 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     if (parentPath == null)
       return;
 
+    changedNodes.set(parentPath.nodeIndex);
+
     final OHashTreeNodeMetadata metadata = nodesMetadata[parentPath.nodeIndex];
     if (parentPath.itemIndex < MAX_LEVEL_SIZE / 2) {
       final int maxChildDepth = metadata.getMaxLeftChildDepth();
@@ -1311,6 +1509,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
 
       node[nodeOffset] = (newNodeIndex << 8) | (i * mapSize) | Long.MIN_VALUE;
     }
+    changedNodes.set(bucketPath.nodeIndex);
 
     updateMaxChildDepth(bucketPath, newNodeDepth);
   }
@@ -1372,6 +1571,8 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
       nodesMetadata[hashTreeTombstone] = new OHashTreeNodeMetadata((byte) 0, (byte) 0, (byte) nodeLocalDepth);
 
       final int nodeIndex = hashTreeTombstone;
+      changedNodes.set(nodeIndex);
+
       if (tombstone != null)
         hashTreeTombstone = (int) tombstone[0];
       else
@@ -1395,6 +1596,7 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     hashTree[hashTreeSize] = newNode;
     nodesMetadata[hashTreeSize] = new OHashTreeNodeMetadata((byte) 0, (byte) 0, (byte) nodeLocalDepth);
 
+    changedNodes.set(hashTreeSize);
     hashTreeSize++;
 
     return hashTreeSize - 1;
@@ -1494,11 +1696,14 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
 
     nodesMetadata[bucketPath.nodeIndex].incrementLocalNodeDepth();
     hashTree[bucketPath.nodeIndex] = updatedNode;
+    changedNodes.set(bucketPath.nodeIndex);
 
     return new NodeSplitResult(newNode, allLeftItemsAreEqual, allRightItemsAreEqual);
   }
 
   private void deleteNode(int nodeIndex) {
+    changedNodes.set(nodeIndex);
+
     if (nodeIndex == hashTreeSize - 1) {
       hashTree[nodeIndex] = null;
       nodesMetadata[nodeIndex] = null;
@@ -1627,9 +1832,10 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
     final long node[] = hashTree[nodeIndex];
 
     final long position = node[itemIndex + offset];
-    if (position >= 0)
+    if (position >= 0) {
       node[itemIndex + offset] = newBucketPointer;
-    else {
+      changedNodes.set(nodeIndex);
+    } else {
       final int childNodeIndex = (int) ((position & Long.MAX_VALUE) >>> 8);
       final int childOffset = (int) (position & 0xFF);
       final int childNodeDepth = nodesMetadata[childNodeIndex].getNodeLocalDepth();
@@ -1666,6 +1872,9 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
 
     size = 0;
     hashTreeSize = 1;
+
+    changedNodes.clear();
+    changedNodes.set(0);
   }
 
   private long createBucketPointer(long pageIndex, int fileLevel) {
@@ -1689,7 +1898,99 @@ public class OLocalHashTable<K, V> extends OSharedResourceAdaptive {
   }
 
   private long loadPage(long pageIndex, int fileLevel) throws IOException {
-    return buffer.load(fileLevelIds[fileLevel], pageIndex);
+    final long pagePointer = buffer.load(fileLevelIds[fileLevel], pageIndex);
+    if (atomicUnit != null)
+      atomicUnit.pageLoaded(fileLevelIds[fileLevel], filesMetadata[fileLevel].getFileName(), pageIndex, pagePointer);
+
+    return pagePointer;
+  }
+
+  private long loadTreeStatePage(long pageIndex) throws IOException {
+    final long pagePointer = buffer.load(treeStateFileId, pageIndex);
+    if (atomicUnit != null)
+      atomicUnit.pageLoaded(treeStateFileId, name + treeStateFileExtension, pageIndex, pagePointer);
+
+    return pagePointer;
+  }
+
+  private void startAtomicOperation() {
+    if (writeAheadLog != null && atomicUnit == null)
+      atomicUnit = new OHashIndexAtomicUnit(writeAheadLog, buffer, directMemory);
+  }
+
+  /**
+   * Stores state of directory in its pages and logs all pages changed by operation in WAL.
+   */
+  private void endAtomicOperation() throws IOException {
+    final OHashIndexAtomicUnit unit = atomicUnit;
+    try {
+      saveTreeState();
+    } finally {
+      atomicUnit = null;
+      if (unit != null)
+        unit.commit();
+    }
+  }
+
+  private void saveTreeState() throws IOException {
+    final long headerPointer = loadTreeStatePage(0);
+    try {
+      final OHashTreeStatePage headerPage = new OHashTreeStatePage(headerPointer, directMemory);
+
+      headerPage.setRecordsCount(size);
+      headerPage.setHashTreeSize(hashTreeSize);
+      headerPage.setHashTreeTombstone(hashTreeTombstone);
+      headerPage.setBucketTombstonePointer(bucketTombstonePointer);
+
+      for (int i = 0; i < filesMetadata.length; i++)
+        headerPage.setFileMetadata(i, filesMetadata[i]);
+    } finally {
+      buffer.markDirty(treeStateFileId, 0);
+      buffer.release(treeStateFileId, 0);
+    }
+
+    // NODES ARE CHANGED ONLY WHEN BUCKETS ARE SPLIT OR MERGED, ONLY CHANGED ONES ARE WRITTEN
+    int nodeIndex = changedNodes.nextSetBit(0);
+    while (nodeIndex >= 0 && nodeIndex < hashTreeSize) {
+      final long pageIndex = OHashTreeStatePage.getNodePageIndex(nodeIndex);
+      final long pagePointer = loadTreeStatePage(pageIndex);
+      try {
+        final OHashTreeStatePage page = new OHashTreeStatePage(pagePointer, directMemory);
+
+        do {
+          page.setNode(nodeIndex, hashTree[nodeIndex], nodesMetadata[nodeIndex]);
+          nodeIndex = changedNodes.nextSetBit(nodeIndex + 1);
+        } while (nodeIndex >= 0 && nodeIndex < hashTreeSize && OHashTreeStatePage.getNodePageIndex(nodeIndex) == pageIndex);
+      } finally {
+        buffer.markDirty(treeStateFileId, pageIndex);
+        buffer.release(treeStateFileId, pageIndex);
+      }
+    }
+
+    changedNodes.clear();
+  }
+
+  private void loadTreeState() throws IOException {
+    for (int firstNodeIndex = 0; firstNodeIndex < hashTreeSize; firstNodeIndex += OHashTreeStatePage.NODES_PER_PAGE) {
+      final long pageIndex = OHashTreeStatePage.getNodePageIndex(firstNodeIndex);
+      final long pagePointer = buffer.load(treeStateFileId, pageIndex);
+      try {
+        final OHashTreeStatePage page = new OHashTreeStatePage(pagePointer, directMemory);
+
+        final int lastNodeIndex = Math.min(hashTreeSize, firstNodeIndex + OHashTreeStatePage.NODES_PER_PAGE);
+        for (int nodeIndex = firstNodeIndex; nodeIndex < lastNodeIndex; nodeIndex++) {
+          hashTree[nodeIndex] = page.getNode(nodeIndex);
+          nodesMetadata[nodeIndex] = page.getNodeMetadata(nodeIndex);
+        }
+      } finally {
+        buffer.release(treeStateFileId, pageIndex);
+      }
+    }
+  }
+
+  private void makeFullCheckpoint() {
+    if (writeAheadLog != null)
+      ((OLocalPaginatedStorage) storage).makeFullCheckpoint();
   }
 
   private BucketPath getBucket(final long hashCode) {
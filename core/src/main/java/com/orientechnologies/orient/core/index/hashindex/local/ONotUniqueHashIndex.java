@@ -0,0 +1,358 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.index.hashindex.local;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.orientechnologies.common.collection.OCompositeKey;
+import com.orientechnologies.common.hash.OMurmurHash3;
+import com.orientechnologies.common.listener.OProgressListener;
+import com.orientechnologies.common.serialization.types.OBinarySerializer;
+import com.orientechnologies.common.serialization.types.ONullSerializer;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.index.ODocumentFieldsHashSet;
+import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.index.OIndexDefinition;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.record.ORecord;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.serialization.serializer.binary.impl.OLinkSerializer;
+import com.orientechnologies.orient.core.serialization.serializer.binary.impl.index.OCompositeKeySerializer;
+
+/**
+ * Hash based index which allows several records per key. Every record is stored in its own hash table entry, the key of the
+ * entry is composite key which consists of index key and record id, the entry has no value. Upper half of the entry hash code is
+ * taken from the index key and lower half from the record id, so all records of the key are placed in the same interval of hash
+ * codes and are read without scan of the whole table, and amount of records per key is not limited by bucket size.
+ * 
+ * @since 17.10.13
+ */
+public class ONotUniqueHashIndex extends OAbstractLocalHashIndex<Set<OIdentifiable>> {
+  public static final String           TYPE_ID = OClass.INDEX_TYPE.NOTUNIQUE_HASH.toString();
+
+  private final ORecordKeyHashFunction recordKeyHashFunction;
+
+  public ONotUniqueHashIndex() {
+    this(new ORecordKeyHashFunction(new OMurmurHash3HashFunction<Object>()));
+  }
+
+  private ONotUniqueHashIndex(ORecordKeyHashFunction recordKeyHashFunction) {
+    super(TYPE_ID, recordKeyHashFunction.keyHashFunction, recordKeyHashFunction);
+    this.recordKeyHashFunction = recordKeyHashFunction;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public OIndex<Set<OIdentifiable>> create(String iName, OIndexDefinition iIndexDefinition, ODatabaseRecord iDatabase,
+      String iClusterIndexName, int[] iClusterIdsToIndex, OProgressListener iProgressListener) {
+    // RECORD ID IS THE LAST PART OF THE ENTRY KEY, SO NOTHING IS STORED AS VALUE
+    create(iName, iIndexDefinition, iDatabase, iClusterIndexName, iClusterIdsToIndex, iProgressListener,
+        (OBinarySerializer) ONullSerializer.INSTANCE);
+    return this;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  protected OBinarySerializer<Object> getTableKeySerializer(OBinarySerializer<Object> keySerializer) {
+    return (OBinarySerializer) OCompositeKeySerializer.INSTANCE;
+  }
+
+  @Override
+  public Set<OIdentifiable> get(Object key) {
+    acquireSharedLock();
+    try {
+      final Set<OIdentifiable> values = new LinkedHashSet<OIdentifiable>();
+      visitKeyEntries(key, new OLocalHashTable.EntryVisitor<Object, Set<OIdentifiable>>() {
+        @Override
+        public boolean visit(OHashIndexBucket.Entry<Object, Set<OIdentifiable>> entry) {
+          values.add(recordKeyHashFunction.getRecord(entry.key));
+          return true;
+        }
+      });
+
+      return values;
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  @Override
+  public long count(Object iKey) {
+    return get(iKey).size();
+  }
+
+  @Override
+  public boolean contains(Object iKey) {
+    acquireSharedLock();
+    try {
+      final boolean[] found = new boolean[1];
+      visitKeyEntries(iKey, new OLocalHashTable.EntryVisitor<Object, Set<OIdentifiable>>() {
+        @Override
+        public boolean visit(OHashIndexBucket.Entry<Object, Set<OIdentifiable>> entry) {
+          found[0] = true;
+          return false;
+        }
+      });
+
+      return found[0];
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  @Override
+  public OIndex<Set<OIdentifiable>> put(Object key, OIdentifiable value) {
+    modificationLock.requestModificationLock();
+    try {
+      acquireExclusiveLock();
+      try {
+        checkForKeyType(key);
+
+        if (!value.getIdentity().isPersistent())
+          ((ORecord<?>) value.getRecord()).save();
+
+        final ORID rid = value.getIdentity();
+        localHashTable.put(new OCompositeKey(key, rid), null);
+        return this;
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  @Override
+  public boolean remove(Object iKey) {
+    modificationLock.requestModificationLock();
+    try {
+      acquireExclusiveLock();
+      try {
+        // ENTRIES ARE COLLECTED BEFORE REMOVAL, TABLE CAN NOT BE CHANGED DURING ITERATION
+        final List<Object> entryKeys = new ArrayList<Object>();
+        visitKeyEntries(iKey, new OLocalHashTable.EntryVisitor<Object, Set<OIdentifiable>>() {
+          @Override
+          public boolean visit(OHashIndexBucket.Entry<Object, Set<OIdentifiable>> entry) {
+            entryKeys.add(entry.key);
+            return true;
+          }
+        });
+
+        for (Object entryKey : entryKeys)
+          localHashTable.remove(entryKey);
+
+        return !entryKeys.isEmpty();
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  @Override
+  public boolean remove(Object iKey, OIdentifiable iRID) {
+    if (iRID == null)
+      return remove(iKey);
+
+    modificationLock.requestModificationLock();
+    try {
+      acquireExclusiveLock();
+      try {
+        // ENTRIES HAVE NO VALUE, SO REMOVAL IS DETECTED BY CHANGE OF THE TABLE SIZE
+        final long size = localHashTable.size();
+        localHashTable.remove(new OCompositeKey(iKey, iRID.getIdentity()));
+        return localHashTable.size() < size;
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  @Override
+  public int remove(final OIdentifiable iRID) {
+    modificationLock.requestModificationLock();
+    try {
+      acquireExclusiveLock();
+      try {
+        // ENTRIES ARE COLLECTED BEFORE REMOVAL, TABLE CAN NOT BE CHANGED DURING ITERATION
+        final ORID rid = iRID.getIdentity();
+        final List<Object> entryKeys = new ArrayList<Object>();
+        localHashTable.visitEntries(new OLocalHashTable.EntryVisitor<Object, Set<OIdentifiable>>() {
+          @Override
+          public boolean visit(OHashIndexBucket.Entry<Object, Set<OIdentifiable>> entry) {
+            if (rid.equals(recordKeyHashFunction.getRecord(entry.key)))
+              entryKeys.add(entry.key);
+
+            return true;
+          }
+        });
+
+        for (Object entryKey : entryKeys)
+          localHashTable.remove(entryKey);
+
+        return entryKeys.size();
+      } finally {
+        releaseExclusiveLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+    }
+  }
+
+  @Override
+  public long getKeySize() {
+    acquireSharedLock();
+    try {
+      final Set<Object> keys = new HashSet<Object>();
+      localHashTable.visitEntries(new OLocalHashTable.EntryVisitor<Object, Set<OIdentifiable>>() {
+        @Override
+        public boolean visit(OHashIndexBucket.Entry<Object, Set<OIdentifiable>> entry) {
+          keys.add(recordKeyHashFunction.getKey(entry.key));
+          return true;
+        }
+      });
+
+      return keys.size();
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  @Override
+  public Collection<OIdentifiable> getValues(Collection<?> iKeys, int maxValuesToFetch) {
+    acquireSharedLock();
+    try {
+      final Set<OIdentifiable> result = new HashSet<OIdentifiable>();
+
+      for (final Object key : iKeys)
+        for (final OIdentifiable record : get(key)) {
+          if (maxValuesToFetch > -1 && maxValuesToFetch == result.size())
+            return result;
+
+          result.add(record);
+        }
+
+      return result;
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  @Override
+  public Collection<ODocument> getEntries(Collection<?> iKeys, int maxEntriesToFetch) {
+    acquireSharedLock();
+    try {
+      final Set<ODocument> result = new ODocumentFieldsHashSet();
+
+      for (final Object key : iKeys)
+        for (final OIdentifiable record : get(key)) {
+          if (maxEntriesToFetch > -1 && maxEntriesToFetch == result.size())
+            return result;
+
+          final ODocument document = new ODocument();
+          document.field("key", key);
+          document.field("rid", record.getIdentity());
+          document.unsetDirty();
+
+          result.add(document);
+        }
+
+      return result;
+    } finally {
+      releaseSharedLock();
+    }
+  }
+
+  @Override
+  protected Collection<OIdentifiable> getRecords(Set<OIdentifiable> value) {
+    return value;
+  }
+
+  /**
+   * Disables check of entries.
+   */
+  @Override
+  public void checkEntry(OIdentifiable iRecord, Object iKey) {
+  }
+
+  /**
+   * Passes to the visitor entries of all records which are indexed by given key.
+   */
+  private void visitKeyEntries(Object key, final OLocalHashTable.EntryVisitor<Object, Set<OIdentifiable>> visitor) {
+    // SHORTER COMPOSITE KEY IS EQUAL TO ALL ENTRY KEYS WHICH START FROM IT
+    final OCompositeKey keyPrefix = new OCompositeKey(key);
+
+    localHashTable.visitEntries(recordKeyHashFunction.keyHashFunction.hashCode(key), ORecordKeyHashFunction.KEY_HASH_SIZE,
+        new OLocalHashTable.EntryVisitor<Object, Set<OIdentifiable>>() {
+          @Override
+          public boolean visit(OHashIndexBucket.Entry<Object, Set<OIdentifiable>> entry) {
+            if (keyPrefix.compareTo((OCompositeKey) entry.key) != 0)
+              return true;
+
+            return visitor.visit(entry);
+          }
+        });
+  }
+
+  /**
+   * Hash function of entry keys which are composed from index key and record id.
+   */
+  private static final class ORecordKeyHashFunction implements OHashFunction<Object> {
+    private static final int                       KEY_HASH_SIZE = 32;
+    private static final long                      KEY_HASH_MASK = -1L << (OLocalHashTable.HASH_CODE_SIZE - KEY_HASH_SIZE);
+    private static final int                       SEED          = 362498820;
+
+    private final OMurmurHash3HashFunction<Object> keyHashFunction;
+
+    private ORecordKeyHashFunction(OMurmurHash3HashFunction<Object> keyHashFunction) {
+      this.keyHashFunction = keyHashFunction;
+    }
+
+    @Override
+    public long hashCode(Object value) {
+      final ORID rid = getRecord(value);
+
+      final byte[] serializedRid = new byte[OLinkSerializer.RID_SIZE];
+      OLinkSerializer.INSTANCE.serializeNative(rid, serializedRid, 0);
+
+      return (keyHashFunction.hashCode(getKey(value)) & KEY_HASH_MASK)
+          | (OMurmurHash3.murmurHash3_x64_64(serializedRid, SEED) & ~KEY_HASH_MASK);
+    }
+
+    private Object getKey(Object entryKey) {
+      final List<Object> keys = ((OCompositeKey) entryKey).getKeys();
+      if (keyHashFunction.getValueSerializer().getId() == OCompositeKeySerializer.ID)
+        return new OCompositeKey(keys.subList(0, keys.size() - 1));
+
+      return keys.get(0);
+    }
+
+    private ORID getRecord(Object entryKey) {
+      final List<Object> keys = ((OCompositeKey) entryKey).getKeys();
+      return (ORID) keys.get(keys.size() - 1);
+    }
+  }
+}
@@ -15,6 +15,9 @@
  */
 package com.orientechnologies.orient.core.index.hashindex.local;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import com.orientechnologies.common.listener.OProgressListener;
 import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
@@ -41,6 +44,10 @@ public class OUniqueHashIndex extends OAbstractLocalHashIndex<OIdentifiable> {
     super(TYPE_ID);
   }
 
+  protected OUniqueHashIndex(String type) {
+    super(type);
+  }
+
   @Override
   public OIndex<OIdentifiable> create(String iName, OIndexDefinition iIndexDefinition, ODatabaseRecord iDatabase,
       String iClusterIndexName, int[] iClusterIdsToIndex, OProgressListener iProgressListener) {
@@ -63,33 +70,43 @@ public class OUniqueHashIndex extends OAbstractLocalHashIndex<OIdentifiable> {
 
   @Override
   public OIndex<OIdentifiable> put(Object key, OIdentifiable value) {
-    acquireExclusiveLock();
+    modificationLock.requestModificationLock();
     try {
-      checkForKeyType(key);
-
-      final OIdentifiable currentValue = super.get(key);
-
-      if (currentValue != null) {
-        // CHECK IF THE ID IS THE SAME OF CURRENT: THIS IS THE UPDATE CASE
-        if (!currentValue.equals(value))
-          throw new ORecordDuplicatedException("Found duplicated key '" + key + "' on unique index '" + getName() + "' for record "
-              + value.getIdentity() + ". The record already present in the index is " + currentValue.getIdentity(),
-              currentValue.getIdentity());
-        else
-          return this;
-      }
+      acquireExclusiveLock();
+      try {
+        checkForKeyType(key);
+
+        final OIdentifiable currentValue = super.get(key);
 
-      if (!value.getIdentity().isPersistent())
-        ((ORecord<?>) value.getRecord()).save();
+        if (currentValue != null) {
+          // CHECK IF THE ID IS THE SAME OF CURRENT: THIS IS THE UPDATE CASE
+          if (!currentValue.equals(value))
+            throw new ORecordDuplicatedException("Found duplicated key '" + key + "' on unique index '" + getName()
+                + "' for record " + value.getIdentity() + ". The record already present in the index is "
+                + currentValue.getIdentity(), currentValue.getIdentity());
+          else
+            return this;
+        }
 
-      super.put(key, value.getIdentity());
-      return this;
+        if (!value.getIdentity().isPersistent())
+          ((ORecord<?>) value.getRecord()).save();
 
+        super.put(key, value.getIdentity());
+        return this;
+
+      } finally {
+        releaseExclusiveLock();
+      }
     } finally {
-      releaseExclusiveLock();
+      modificationLock.releaseModificationLock();
     }
   }
 
+  @Override
+  protected Collection<OIdentifiable> getRecords(OIdentifiable value) {
+    return Collections.singleton(value);
+  }
+
   @Override
   public void checkEntry(OIdentifiable iRecord, Object iKey) {
     final OIdentifiable indexedRID = get(iKey);
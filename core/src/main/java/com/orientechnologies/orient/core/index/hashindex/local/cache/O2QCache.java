@@ -29,6 +29,14 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.zip.CRC32;
 
 import com.orientechnologies.common.directmemory.ODirectMemory;
@@ -46,54 +54,59 @@ import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OLogSe
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OWriteAheadLog;
 
 /**
+ * 2Q disk cache. Pages are partitioned by (fileId, pageIndex) hash between independent segments, each of them has its own
+ * A1in/A1out/Am queues, write queue and lock, so operations on pages from different segments do not contend with each other.
+ * Dirty pages evicted from the cache are written to the disk by background write back thread without holding segment lock.
+ * 
  * @author Artem Loginov
  * @since 14.03.13
  */
 public class O2QCache implements ODiskCache {
-  public static final long                                     MAGIC_NUMBER = 0xFACB03FEL;
+  public static final long                        MAGIC_NUMBER     = 0xFACB03FEL;
 
-  public final int                                             writeQueueLength;
+  /**
+   * Minimal amount of pages which is kept by single segment, amount of segments is decreased if cache is too small.
+   */
+  private static final int                        MIN_SEGMENT_SIZE = 64;
 
-  private int                                                  maxSize;
-  private int                                                  K_IN;
-  private int                                                  K_OUT;
+  public final int                                writeQueueLength;
 
-  private final int                                            pageSize;
+  private final int                               pageSize;
 
-  private LRUList                                              am;
-  private LRUList                                              a1out;
-  private LRUList                                              a1in;
+  private final ODirectMemory                     directMemory;
 
-  private final ODirectMemory                                  directMemory;
+  private final ConcurrentMap<Long, OFileClassic> files;
 
-  private final Map<Long, OFileClassic>                        files;
+  private final Segment[]                         segments;
+  private final int                               segmentMask;
 
   /**
-   * List of pages which were flushed out of the buffer but were not written to the disk.
+   * Guards registration, removal and renaming of files.
    */
-  private final Map<FileLockKey, Long>                         evictedPages;
+  private final Object                            syncObject;
+  private final OStorageLocalAbstract             storageLocal;
 
-  /**
-   * Contains all pages in cache for given file, not only dirty onces.
-   */
-  private final Map<Long, Set<Long>>                           filePages;
-
-  /**
-   * Keys is a file id. Values is a sorted set of dirty pages.
-   */
-  private final Map<Long, SortedMap<Long, OLogSequenceNumber>> dirtyPages;
+  private final OWriteAheadLog                    writeAheadLog;
 
-  private final Object                                         syncObject;
-  private final OStorageLocalAbstract                          storageLocal;
-
-  private final OWriteAheadLog                                 writeAheadLog;
-
-  private final boolean                                        syncOnPageFlush;
-  private long                                                 fileCounter  = 1;
-  private int                                                  crcOffset;
+  private final boolean                           syncOnPageFlush;
+  private final ScheduledExecutorService          writeBackExecutor;
+  private long                                    fileCounter      = 1;
 
   public O2QCache(long maxMemory, int writeQueueLength, ODirectMemory directMemory, OWriteAheadLog writeAheadLog, int pageSize,
       OStorageLocalAbstract storageLocal, boolean syncOnPageFlush) {
+    this(maxMemory, writeQueueLength, directMemory, writeAheadLog, pageSize, storageLocal, syncOnPageFlush, 1, 0);
+  }
+
+  /**
+   * @param concurrencyLevel
+   *          Desired amount of independently locked segments, it is rounded up to the power of 2 and decreased if cache can not
+   *          hold at least {@link #MIN_SEGMENT_SIZE} pages in each segment.
+   * @param writeBackInterval
+   *          Interval in ms. between background flushes of evicted dirty pages, 0 means that evicted pages are written only by
+   *          threads which load pages in cache.
+   */
+  public O2QCache(long maxMemory, int writeQueueLength, ODirectMemory directMemory, OWriteAheadLog writeAheadLog, int pageSize,
+      OStorageLocalAbstract storageLocal, boolean syncOnPageFlush, int concurrencyLevel, long writeBackInterval) {
 
     this.writeQueueLength = writeQueueLength;
     this.writeAheadLog = writeAheadLog;
@@ -101,12 +114,9 @@ public class O2QCache implements ODiskCache {
     this.pageSize = pageSize;
     this.storageLocal = storageLocal;
     this.syncOnPageFlush = syncOnPageFlush;
-    this.files = new HashMap<Long, OFileClassic>();
-    this.filePages = new HashMap<Long, Set<Long>>();
-    this.dirtyPages = new HashMap<Long, SortedMap<Long, OLogSequenceNumber>>();
-
-    this.evictedPages = new HashMap<FileLockKey, Long>();
+    this.files = new ConcurrentHashMap<Long, OFileClassic>();
 
+    final int maxSize;
     long tmpMaxSize = maxMemory / pageSize;
     if (tmpMaxSize >= Integer.MAX_VALUE) {
       maxSize = Integer.MAX_VALUE;
@@ -114,26 +124,54 @@ public class O2QCache implements ODiskCache {
       maxSize = (int) tmpMaxSize;
     }
 
-    K_IN = maxSize >> 2;
-    K_OUT = maxSize >> 1;
+    int segmentsCount = 1;
+    while (segmentsCount < concurrencyLevel && maxSize / (segmentsCount << 1) >= MIN_SEGMENT_SIZE)
+      segmentsCount <<= 1;
 
-    am = new LRUList();
-    a1out = new LRUList();
-    a1in = new LRUList();
+    segmentMask = segmentsCount - 1;
+    segments = new Segment[segmentsCount];
+
+    final int segmentWriteQueueLength = Math.max(1, writeQueueLength / segmentsCount);
+    for (int i = 0; i < segmentsCount; i++) {
+      int segmentSize = maxSize / segmentsCount;
+      if (i < maxSize % segmentsCount)
+        segmentSize++;
+
+      segments[i] = new Segment(segmentSize, segmentWriteQueueLength);
+    }
 
     syncObject = new Object();
+
+    if (writeBackInterval > 0) {
+      writeBackExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          final Thread thread = new Thread(r);
+          thread.setDaemon(true);
+          thread.setName("Disk cache write back thread");
+          return thread;
+        }
+      });
+
+      writeBackExecutor.scheduleWithFixedDelay(new WriteBackTask(), writeBackInterval, writeBackInterval, TimeUnit.MILLISECONDS);
+    } else
+      writeBackExecutor = null;
   }
 
   LRUList getAm() {
-    return am;
+    return segments[0].am;
   }
 
   LRUList getA1out() {
-    return a1out;
+    return segments[0].a1out;
   }
 
   LRUList getA1in() {
-    return a1in;
+    return segments[0].a1in;
+  }
+
+  int getSegmentsCount() {
+    return segments.length;
   }
 
   @Override
@@ -152,40 +190,30 @@ public class O2QCache implements ODiskCache {
 
       files.put(fileId, fileClassic);
 
-      filePages.put(fileId, new HashSet<Long>());
-      dirtyPages.put(fileId, new TreeMap<Long, OLogSequenceNumber>());
-
       return fileId;
     }
   }
 
   @Override
   public void markDirty(long fileId, long pageIndex) {
-    synchronized (syncObject) {
-      LRUEntry lruEntry = a1in.get(fileId, pageIndex);
+    final Segment segment = segment(fileId, pageIndex);
+    synchronized (segment) {
+      LRUEntry lruEntry = segment.a1in.get(fileId, pageIndex);
 
       if (lruEntry != null) {
-        doMarkDirty(fileId, pageIndex, lruEntry);
+        segment.doMarkDirty(fileId, pageIndex, lruEntry);
         return;
       }
 
-      lruEntry = am.get(fileId, pageIndex);
+      lruEntry = segment.am.get(fileId, pageIndex);
       if (lruEntry != null) {
-        doMarkDirty(fileId, pageIndex, lruEntry);
+        segment.doMarkDirty(fileId, pageIndex, lruEntry);
       } else
         throw new IllegalStateException("Requested page number " + pageIndex + " for file " + files.get(fileId).getName()
             + " is not in cache");
     }
   }
 
-  private void doMarkDirty(long fileId, long pageIndex, LRUEntry lruEntry) {
-    if (lruEntry.isDirty)
-      return;
-
-    dirtyPages.get(fileId).put(pageIndex, lruEntry.loadedLSN);
-    lruEntry.isDirty = true;
-  }
-
   private OLogSequenceNumber getLogSequenceNumberFromPage(long dataPointer) {
     final long position = OLongSerializer.INSTANCE.deserializeFromDirectMemory(directMemory, dataPointer
         + OLongSerializer.LONG_SIZE + (2 * OIntegerSerializer.INT_SIZE));
@@ -197,8 +225,9 @@ public class O2QCache implements ODiskCache {
 
   @Override
   public long load(long fileId, long pageIndex) throws IOException {
-    synchronized (syncObject) {
-      final LRUEntry lruEntry = updateCache(fileId, pageIndex);
+    final Segment segment = segment(fileId, pageIndex);
+    synchronized (segment) {
+      final LRUEntry lruEntry = segment.updateCache(fileId, pageIndex);
       lruEntry.usageCounter++;
       return lruEntry.dataPointer;
     }
@@ -206,8 +235,9 @@ public class O2QCache implements ODiskCache {
 
   @Override
   public void release(long fileId, long pageIndex) {
-    synchronized (syncObject) {
-      LRUEntry lruEntry = get(fileId, pageIndex);
+    final Segment segment = segment(fileId, pageIndex);
+    synchronized (segment) {
+      LRUEntry lruEntry = segment.get(fileId, pageIndex);
       if (lruEntry != null)
         lruEntry.usageCounter--;
       else
@@ -217,82 +247,47 @@ public class O2QCache implements ODiskCache {
 
   @Override
   public long getFilledUpTo(long fileId) throws IOException {
-    synchronized (syncObject) {
-      return files.get(fileId).getFilledUpTo() / pageSize;
-    }
+    return files.get(fileId).getFilledUpTo() / pageSize;
   }
 
   @Override
   public void flushFile(long fileId) throws IOException {
-    synchronized (syncObject) {
-      final OFileClassic fileClassic = files.get(fileId);
-      if (fileClassic == null || !fileClassic.isOpen())
-        return;
-
-      final SortedMap<Long, OLogSequenceNumber> dirtyPages = this.dirtyPages.get(fileId);
-
-      for (Iterator<Long> iterator = dirtyPages.keySet().iterator(); iterator.hasNext();) {
-        Long pageIndex = iterator.next();
-        LRUEntry lruEntry = get(fileId, pageIndex);
+    final OFileClassic fileClassic = files.get(fileId);
+    if (fileClassic == null || !fileClassic.isOpen())
+      return;
 
-        if (lruEntry == null) {
-          final Long dataPointer = evictedPages.remove(new FileLockKey(fileId, pageIndex));
-          if (dataPointer != null) {
-            flushData(fileId, pageIndex, dataPointer);
-            iterator.remove();
-          }
-        } else {
-          if (lruEntry.usageCounter == 0) {
-            flushData(fileId, lruEntry.pageIndex, lruEntry.dataPointer);
-            iterator.remove();
-            lruEntry.isDirty = false;
-          } else {
-            throw new OBlockedPageException("Unable to perform flush file because some pages is in use.");
-          }
+    for (Segment segment : segments) {
+      segment.flushLock.lock();
+      try {
+        synchronized (segment) {
+          segment.flushFile(fileId);
         }
+      } finally {
+        segment.flushLock.unlock();
       }
-
-      fileClassic.synch();
     }
+
+    fileClassic.synch();
   }
 
   @Override
   public void closeFile(final long fileId) throws IOException {
-    synchronized (syncObject) {
-      OFileClassic fileClassic = files.get(fileId);
-      if (fileClassic == null || !fileClassic.isOpen())
-        return;
-
-      final Set<Long> pageIndexes = filePages.get(fileId);
-      Long[] sortedPageIndexes = new Long[pageIndexes.size()];
-      sortedPageIndexes = pageIndexes.toArray(sortedPageIndexes);
-      Arrays.sort(sortedPageIndexes);
-
-      final SortedMap<Long, OLogSequenceNumber> fileDirtyPages = dirtyPages.get(fileId);
-
-      for (Long pageIndex : sortedPageIndexes) {
-        LRUEntry lruEntry = get(fileId, pageIndex);
-        if (lruEntry != null) {
-          if (lruEntry.usageCounter == 0) {
-            lruEntry = remove(fileId, pageIndex);
-
-            flushData(fileId, pageIndex, lruEntry.dataPointer);
-            fileDirtyPages.remove(pageIndex);
+    final OFileClassic fileClassic = files.get(fileId);
+    if (fileClassic == null || !fileClassic.isOpen())
+      return;
 
-            directMemory.free(lruEntry.dataPointer);
-          }
-        } else {
-          Long dataPointer = evictedPages.remove(new FileLockKey(fileId, pageIndex));
-          if (dataPointer != null) {
-            flushData(fileId, pageIndex, dataPointer);
-            fileDirtyPages.remove(pageIndex);
-          }
+    for (Segment segment : segments) {
+      segment.flushLock.lock();
+      try {
+        synchronized (segment) {
+          segment.closeFile(fileId);
         }
+      } finally {
+        segment.flushLock.unlock();
       }
-
-      pageIndexes.clear();
-      fileClassic.close();
     }
+
+    fileClassic.close();
   }
 
   @Override
@@ -307,35 +302,28 @@ public class O2QCache implements ODiskCache {
       files.get(fileId).delete();
 
       files.remove(fileId);
-      filePages.remove(fileId);
-      dirtyPages.remove(fileId);
+      for (Segment segment : segments) {
+        synchronized (segment) {
+          segment.removeFile(fileId);
+        }
+      }
     }
   }
 
   @Override
   public void truncateFile(long fileId) throws IOException {
-    synchronized (syncObject) {
-      final Set<Long> pageEntries = filePages.get(fileId);
-      for (Long pageIndex : pageEntries) {
-        LRUEntry lruEntry = get(fileId, pageIndex);
-        if (lruEntry != null) {
-          if (lruEntry.usageCounter == 0) {
-            lruEntry = remove(fileId, pageIndex);
-            if (lruEntry.dataPointer != ODirectMemory.NULL_POINTER)
-              directMemory.free(lruEntry.dataPointer);
-          }
-        } else {
-          Long dataPointer = evictedPages.remove(new FileLockKey(fileId, pageIndex));
-          if (dataPointer != null)
-            directMemory.free(dataPointer);
+    for (Segment segment : segments) {
+      segment.flushLock.lock();
+      try {
+        synchronized (segment) {
+          segment.truncateFile(fileId);
         }
+      } finally {
+        segment.flushLock.unlock();
       }
-
-      dirtyPages.get(fileId).clear();
-
-      pageEntries.clear();
-      files.get(fileId).shrink(0);
     }
+
+    files.get(fileId).shrink(0);
   }
 
   @Override
@@ -360,29 +348,33 @@ public class O2QCache implements ODiskCache {
 
   @Override
   public void flushBuffer() throws IOException {
-    synchronized (syncObject) {
-      for (long fileId : files.keySet())
-        flushFile(fileId);
-    }
+    for (long fileId : files.keySet())
+      flushFile(fileId);
   }
 
   @Override
   public void clear() throws IOException {
-    synchronized (syncObject) {
-      flushBuffer();
+    flushBuffer();
 
-      am.clear();
-      a1in.clear();
-      a1out.clear();
-      for (Set<Long> fileEntries : filePages.values())
-        fileEntries.clear();
-      for (SortedMap<Long, OLogSequenceNumber> fileDirtyPages : dirtyPages.values())
-        fileDirtyPages.clear();
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        segment.clear();
+      }
     }
   }
 
   @Override
   public void close() throws IOException {
+    if (writeBackExecutor != null) {
+      writeBackExecutor.shutdown();
+      try {
+        if (!writeBackExecutor.awaitTermination(5, TimeUnit.MINUTES))
+          OLogManager.instance().warn(this, "Background write back of disk cache was not finished in time.");
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
     synchronized (syncObject) {
       clear();
       for (OFileClassic fileClassic : files.values()) {
@@ -392,175 +384,85 @@ public class O2QCache implements ODiskCache {
         }
       }
     }
-
   }
 
   @Override
   public boolean wasSoftlyClosed(long fileId) throws IOException {
-    synchronized (syncObject) {
-      OFileClassic fileClassic = files.get(fileId);
-      if (fileClassic == null)
-        return false;
-
-      return fileClassic.wasSoftlyClosed();
-    }
+    OFileClassic fileClassic = files.get(fileId);
+    if (fileClassic == null)
+      return false;
 
+    return fileClassic.wasSoftlyClosed();
   }
 
   @Override
   public void setSoftlyClosed(long fileId, boolean softlyClosed) throws IOException {
-    synchronized (syncObject) {
-      OFileClassic fileClassic = files.get(fileId);
-      if (fileClassic != null)
-        fileClassic.setSoftlyClosed(softlyClosed);
-    }
+    OFileClassic fileClassic = files.get(fileId);
+    if (fileClassic != null)
+      fileClassic.setSoftlyClosed(softlyClosed);
   }
 
   @Override
   public boolean isOpen(long fileId) {
-    synchronized (syncObject) {
-      OFileClassic fileClassic = files.get(fileId);
-      if (fileClassic != null)
-        return fileClassic.isOpen();
-    }
+    OFileClassic fileClassic = files.get(fileId);
+    if (fileClassic != null)
+      return fileClassic.isOpen();
 
     return false;
   }
 
-  private LRUEntry updateCache(long fileId, long pageIndex) throws IOException {
-    LRUEntry lruEntry = am.get(fileId, pageIndex);
-    if (lruEntry != null) {
-      lruEntry = am.putToMRU(fileId, pageIndex, lruEntry.dataPointer, lruEntry.isDirty, lruEntry.loadedLSN);
-
-      return lruEntry;
-    }
-
-    lruEntry = a1out.remove(fileId, pageIndex);
-    if (lruEntry != null) {
-      removeColdestPageIfNeeded();
-
-      CacheResult cacheResult = cacheFileContent(fileId, pageIndex);
-      lruEntry.dataPointer = cacheResult.dataPointer;
-      lruEntry.isDirty = cacheResult.isDirty;
-
-      OLogSequenceNumber lsn;
-      if (cacheResult.isDirty)
-        lsn = dirtyPages.get(fileId).get(pageIndex);
-      else
-        lsn = getLogSequenceNumberFromPage(cacheResult.dataPointer);
-
-      lruEntry = am.putToMRU(fileId, pageIndex, lruEntry.dataPointer, lruEntry.isDirty, lsn);
-      return lruEntry;
-    }
-
-    lruEntry = a1in.get(fileId, pageIndex);
-    if (lruEntry != null)
-      return lruEntry;
-
-    removeColdestPageIfNeeded();
-
-    CacheResult cacheResult = cacheFileContent(fileId, pageIndex);
-    OLogSequenceNumber lsn;
-    if (cacheResult.isDirty)
-      lsn = dirtyPages.get(fileId).get(pageIndex);
-    else
-      lsn = getLogSequenceNumberFromPage(cacheResult.dataPointer);
-
-    lruEntry = a1in.putToMRU(fileId, pageIndex, cacheResult.dataPointer, cacheResult.isDirty, lsn);
-
-    filePages.get(fileId).add(pageIndex);
-
-    return lruEntry;
-  }
-
-  private void removeColdestPageIfNeeded() throws IOException {
-    if (am.size() + a1in.size() >= maxSize) {
-      if (a1in.size() > K_IN) {
-        LRUEntry removedFromAInEntry = a1in.removeLRU();
-        if (removedFromAInEntry == null) {
-          increaseCacheSize();
-        } else {
-          assert removedFromAInEntry.usageCounter == 0;
-          evictFileContent(removedFromAInEntry.fileId, removedFromAInEntry.pageIndex, removedFromAInEntry.dataPointer,
-              removedFromAInEntry.isDirty);
+  private Segment segment(long fileId, long pageIndex) {
+    long hash = fileId * 0x9E3779B97F4A7C15L + pageIndex;
+    hash ^= hash >>> 33;
+    hash *= 0xFF51AFD7ED558CCDL;
+    hash ^= hash >>> 33;
 
-          a1out.putToMRU(removedFromAInEntry.fileId, removedFromAInEntry.pageIndex, ODirectMemory.NULL_POINTER, false, null);
-        }
-        if (a1out.size() > K_OUT) {
-          LRUEntry removedEntry = a1out.removeLRU();
-          assert removedEntry.usageCounter == 0;
-          Set<Long> pageEntries = filePages.get(removedEntry.fileId);
-          pageEntries.remove(removedEntry.pageIndex);
-        }
-      } else {
-        LRUEntry removedEntry = am.removeLRU();
-        if (removedEntry == null) {
-          increaseCacheSize();
-        } else {
-          assert removedEntry.usageCounter == 0;
-          evictFileContent(removedEntry.fileId, removedEntry.pageIndex, removedEntry.dataPointer, removedEntry.isDirty);
-          Set<Long> pageEntries = filePages.get(removedEntry.fileId);
-          pageEntries.remove(removedEntry.pageIndex);
-        }
-      }
-    }
-  }
-
-  private void increaseCacheSize() {
-    String message = "All records in aIn queue in 2q cache are used!";
-    OLogManager.instance().warn(this, message);
-    if (OGlobalConfiguration.SERVER_CACHE_2Q_INCREASE_ON_DEMAND.getValueAsBoolean()) {
-      OLogManager.instance().warn(this, "Cache size will be increased.");
-      maxSize = (int) Math.ceil(maxSize * (1 + OGlobalConfiguration.SERVER_CACHE_2Q_INCREASE_STEP.getValueAsFloat()));
-      K_IN = maxSize >> 2;
-      K_OUT = maxSize >> 1;
-    } else {
-      throw new OAllLRUListEntriesAreUsedException(message);
-    }
+    return segments[(int) (hash & segmentMask)];
   }
 
-  private CacheResult cacheFileContent(long fileId, long pageIndex) throws IOException {
+  private CacheResult cacheFileContent(Segment segment, long fileId, long pageIndex) throws IOException {
     FileLockKey key = new FileLockKey(fileId, pageIndex);
-    if (evictedPages.containsKey(key))
-      return new CacheResult(true, evictedPages.remove(key));
+    final Long evictedDataPointer = segment.evictedPages.remove(key);
+    if (evictedDataPointer != null) {
+      segment.writeBackPages.remove(key);
+      return new CacheResult(true, evictedDataPointer);
+    }
 
     final OFileClassic fileClassic = files.get(fileId);
     final long startPosition = pageIndex * pageSize;
     final long endPosition = startPosition + pageSize;
 
     byte[] content = new byte[pageSize];
-    long dataPointer;
-    if (fileClassic.getFilledUpTo() >= endPosition) {
-      fileClassic.read(startPosition, content, content.length);
-      dataPointer = directMemory.allocate(content);
-    } else {
-      fileClassic.allocateSpace((int) (endPosition - fileClassic.getFilledUpTo()));
-      dataPointer = directMemory.allocate(content);
+    boolean allocated = false;
+
+    // PAGES OF THE SAME FILE ARE SPREAD BETWEEN SEGMENTS SO FILE GROWTH SHOULD BE SERIALIZED
+    synchronized (fileClassic) {
+      if (fileClassic.getFilledUpTo() < endPosition) {
+        fileClassic.allocateSpace((int) (endPosition - fileClassic.getFilledUpTo()));
+        allocated = true;
+      }
     }
 
+    if (!allocated)
+      fileClassic.read(startPosition, content, content.length);
+
+    final long dataPointer = directMemory.allocate(content);
     return new CacheResult(false, dataPointer);
   }
 
-  private void evictFileContent(long fileId, long pageIndex, long dataPointer, boolean isDirty) throws IOException {
-    if (isDirty) {
-      if (evictedPages.size() >= writeQueueLength)
-        flushEvictedPages();
-
-      evictedPages.put(new FileLockKey(fileId, pageIndex), dataPointer);
-    } else {
-      directMemory.free(dataPointer);
-    }
+  private void flushData(final long fileId, final long pageIndex, final long dataPointer) throws IOException {
+    final OLogSequenceNumber lsn = writeAheadLog != null ? getLogSequenceNumberFromPage(dataPointer) : null;
+    writePage(fileId, pageIndex, directMemory.get(dataPointer, pageSize), lsn);
   }
 
-  private void flushData(final long fileId, final long pageIndex, final long dataPointer) throws IOException {
+  private void writePage(final long fileId, final long pageIndex, final byte[] content, final OLogSequenceNumber lsn)
+      throws IOException {
     if (writeAheadLog != null) {
-      OLogSequenceNumber lsn = getLogSequenceNumberFromPage(dataPointer);
       OLogSequenceNumber flushedLSN = writeAheadLog.getFlushedLSN();
       if (flushedLSN == null || flushedLSN.compareTo(lsn) < 0)
         writeAheadLog.flush();
     }
 
-    final byte[] content = directMemory.get(dataPointer, pageSize);
     OLongSerializer.INSTANCE.serializeNative(MAGIC_NUMBER, content, 0);
 
     final int crc32 = calculatePageCrc(content);
@@ -661,35 +563,68 @@ public class O2QCache implements ODiskCache {
 
   @Override
   public Set<ODirtyPage> logDirtyPagesTable() throws IOException {
-    synchronized (syncObject) {
-      if (writeAheadLog == null)
-        return Collections.emptySet();
-
-      Set<ODirtyPage> logDirtyPages = new HashSet<ODirtyPage>(dirtyPages.size());
-      for (long fileId : dirtyPages.keySet()) {
-        SortedMap<Long, OLogSequenceNumber> pages = dirtyPages.get(fileId);
-        for (Map.Entry<Long, OLogSequenceNumber> pageEntry : pages.entrySet()) {
-          final ODirtyPage logDirtyPage = new ODirtyPage(files.get(fileId).getName(), pageEntry.getKey(), pageEntry.getValue());
-          logDirtyPages.add(logDirtyPage);
+    if (writeAheadLog == null)
+      return Collections.emptySet();
+
+    Set<ODirtyPage> logDirtyPages = new HashSet<ODirtyPage>();
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        for (Map.Entry<Long, SortedMap<Long, OLogSequenceNumber>> fileEntry : segment.dirtyPages.entrySet()) {
+          final OFileClassic fileClassic = files.get(fileEntry.getKey());
+          if (fileClassic == null)
+            continue;
+
+          for (Map.Entry<Long, OLogSequenceNumber> pageEntry : fileEntry.getValue().entrySet()) {
+            final ODirtyPage logDirtyPage = new ODirtyPage(fileClassic.getName(), pageEntry.getKey(), pageEntry.getValue());
+            logDirtyPages.add(logDirtyPage);
+          }
         }
       }
-
-      writeAheadLog.logDirtyPages(logDirtyPages);
-      return logDirtyPages;
     }
+
+    writeAheadLog.logDirtyPages(logDirtyPages);
+    return logDirtyPages;
   }
 
   @Override
   public void forceSyncStoredChanges() throws IOException {
-    synchronized (syncObject) {
-      for (OFileClassic fileClassic : files.values())
-        fileClassic.synch();
+    for (OFileClassic fileClassic : files.values())
+      fileClassic.synch();
+  }
+
+  int getMaxSize() {
+    int maxSize = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        maxSize += segment.maxSize;
+      }
     }
+
+    return maxSize;
   }
 
-  private void flushEvictedPages() throws IOException {
-    @SuppressWarnings("unchecked")
-    Map.Entry<FileLockKey, Long>[] sortedPages = evictedPages.entrySet().toArray(new Map.Entry[evictedPages.size()]);
+  private static class CacheResult {
+    private final boolean isDirty;
+    private final long    dataPointer;
+
+    private CacheResult(boolean dirty, long dataPointer) {
+      isDirty = dirty;
+      this.dataPointer = dataPointer;
+    }
+  }
+
+  private int calculatePageCrc(byte[] pageData) {
+    int systemSize = OLongSerializer.LONG_SIZE + OIntegerSerializer.INT_SIZE;
+
+    final CRC32 crc32 = new CRC32();
+    crc32.update(pageData, systemSize, pageData.length - systemSize);
+
+    return (int) crc32.getValue();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map.Entry<FileLockKey, Long>[] sortPages(Map<FileLockKey, Long> pages) {
+    Map.Entry<FileLockKey, Long>[] sortedPages = pages.entrySet().toArray(new Map.Entry[pages.size()]);
     Arrays.sort(sortedPages, new Comparator<Map.Entry>() {
       @Override
       public int compare(Map.Entry entryOne, Map.Entry entryTwo) {
@@ -699,71 +634,401 @@ public class O2QCache implements ODiskCache {
       }
     });
 
-    for (Map.Entry<FileLockKey, Long> entry : sortedPages) {
-      long evictedDataPointer = entry.getValue();
-      FileLockKey fileLockKey = entry.getKey();
+    return sortedPages;
+  }
+
+  /**
+   * Part of the cache which contains pages with the same hash of (fileId, pageIndex). All state of segment is guarded by segment
+   * monitor, {@link #flushLock} is acquired before segment monitor by all operations which write pages to the disk, so background
+   * write back is able to write pages without holding segment monitor.
+   */
+  private final class Segment {
+    private int                                                  maxSize;
+    private int                                                  K_IN;
+    private int                                                  K_OUT;
+
+    private final int                                            writeQueueLength;
+
+    private final LRUList                                        am             = new LRUList();
+    private final LRUList                                        a1out          = new LRUList();
+    private final LRUList                                        a1in           = new LRUList();
 
-      flushData(fileLockKey.fileId, fileLockKey.pageIndex, evictedDataPointer);
-      dirtyPages.get(fileLockKey.fileId).remove(fileLockKey.pageIndex);
+    /**
+     * List of pages which were flushed out of the buffer but were not written to the disk.
+     */
+    private final Map<FileLockKey, Long>                         evictedPages   = new HashMap<FileLockKey, Long>();
 
-      directMemory.free(evictedDataPointer);
+    /**
+     * Evicted pages which are currently written by background write back, page is removed from this set if it is loaded back in
+     * cache during write.
+     */
+    private final Set<FileLockKey>                               writeBackPages = new HashSet<FileLockKey>();
+
+    /**
+     * Contains all pages in cache for given file, not only dirty onces.
+     */
+    private final Map<Long, Set<Long>>                           filePages      = new HashMap<Long, Set<Long>>();
+
+    /**
+     * Keys is a file id. Values is a sorted set of dirty pages.
+     */
+    private final Map<Long, SortedMap<Long, OLogSequenceNumber>> dirtyPages     = new HashMap<Long, SortedMap<Long, OLogSequenceNumber>>();
+
+    private final Lock                                           flushLock      = new ReentrantLock();
+
+    private Segment(int maxSize, int writeQueueLength) {
+      this.maxSize = maxSize;
+      this.writeQueueLength = writeQueueLength;
+
+      K_IN = maxSize >> 2;
+      K_OUT = maxSize >> 1;
     }
 
-    evictedPages.clear();
-  }
+    private Set<Long> getFilePages(long fileId) {
+      Set<Long> pages = filePages.get(fileId);
+      if (pages == null) {
+        pages = new HashSet<Long>();
+        filePages.put(fileId, pages);
+      }
 
-  int getMaxSize() {
-    return maxSize;
-  }
+      return pages;
+    }
 
-  private static class CacheResult {
-    private final boolean isDirty;
-    private final long    dataPointer;
+    private SortedMap<Long, OLogSequenceNumber> getDirtyPages(long fileId) {
+      SortedMap<Long, OLogSequenceNumber> pages = dirtyPages.get(fileId);
+      if (pages == null) {
+        pages = new TreeMap<Long, OLogSequenceNumber>();
+        dirtyPages.put(fileId, pages);
+      }
 
-    private CacheResult(boolean dirty, long dataPointer) {
-      isDirty = dirty;
-      this.dataPointer = dataPointer;
+      return pages;
     }
-  }
 
-  private LRUEntry get(long fileId, long pageIndex) {
-    LRUEntry lruEntry = am.get(fileId, pageIndex);
+    private void doMarkDirty(long fileId, long pageIndex, LRUEntry lruEntry) {
+      if (lruEntry.isDirty)
+        return;
+
+      getDirtyPages(fileId).put(pageIndex, lruEntry.loadedLSN);
+      lruEntry.isDirty = true;
+    }
+
+    private LRUEntry updateCache(long fileId, long pageIndex) throws IOException {
+      LRUEntry lruEntry = am.get(fileId, pageIndex);
+      if (lruEntry != null) {
+        lruEntry = am.putToMRU(fileId, pageIndex, lruEntry.dataPointer, lruEntry.isDirty, lruEntry.loadedLSN);
+
+        return lruEntry;
+      }
+
+      lruEntry = a1out.remove(fileId, pageIndex);
+      if (lruEntry != null) {
+        removeColdestPageIfNeeded();
+
+        CacheResult cacheResult = cacheFileContent(this, fileId, pageIndex);
+        lruEntry.dataPointer = cacheResult.dataPointer;
+        lruEntry.isDirty = cacheResult.isDirty;
+
+        OLogSequenceNumber lsn;
+        if (cacheResult.isDirty)
+          lsn = getDirtyPages(fileId).get(pageIndex);
+        else
+          lsn = getLogSequenceNumberFromPage(cacheResult.dataPointer);
+
+        lruEntry = am.putToMRU(fileId, pageIndex, lruEntry.dataPointer, lruEntry.isDirty, lsn);
+        return lruEntry;
+      }
+
+      lruEntry = a1in.get(fileId, pageIndex);
+      if (lruEntry != null)
+        return lruEntry;
+
+      removeColdestPageIfNeeded();
+
+      CacheResult cacheResult = cacheFileContent(this, fileId, pageIndex);
+      OLogSequenceNumber lsn;
+      if (cacheResult.isDirty)
+        lsn = getDirtyPages(fileId).get(pageIndex);
+      else
+        lsn = getLogSequenceNumberFromPage(cacheResult.dataPointer);
+
+      lruEntry = a1in.putToMRU(fileId, pageIndex, cacheResult.dataPointer, cacheResult.isDirty, lsn);
+
+      getFilePages(fileId).add(pageIndex);
 
-    if (lruEntry != null) {
       return lruEntry;
     }
 
-    lruEntry = a1in.get(fileId, pageIndex);
-    return lruEntry;
-  }
+    private void removeColdestPageIfNeeded() throws IOException {
+      if (am.size() + a1in.size() >= maxSize) {
+        if (a1in.size() > K_IN) {
+          LRUEntry removedFromAInEntry = a1in.removeLRU();
+          if (removedFromAInEntry == null) {
+            increaseCacheSize();
+          } else {
+            assert removedFromAInEntry.usageCounter == 0;
+            evictFileContent(removedFromAInEntry.fileId, removedFromAInEntry.pageIndex, removedFromAInEntry.dataPointer,
+                removedFromAInEntry.isDirty);
 
-  private LRUEntry remove(long fileId, long pageIndex) {
-    LRUEntry lruEntry = am.remove(fileId, pageIndex);
-    if (lruEntry != null) {
-      if (lruEntry.usageCounter > 1)
-        throw new IllegalStateException("Record cannot be removed because it is used!");
+            a1out.putToMRU(removedFromAInEntry.fileId, removedFromAInEntry.pageIndex, ODirectMemory.NULL_POINTER, false, null);
+          }
+          if (a1out.size() > K_OUT) {
+            LRUEntry removedEntry = a1out.removeLRU();
+            assert removedEntry.usageCounter == 0;
+            Set<Long> pageEntries = getFilePages(removedEntry.fileId);
+            pageEntries.remove(removedEntry.pageIndex);
+          }
+        } else {
+          LRUEntry removedEntry = am.removeLRU();
+          if (removedEntry == null) {
+            increaseCacheSize();
+          } else {
+            assert removedEntry.usageCounter == 0;
+            evictFileContent(removedEntry.fileId, removedEntry.pageIndex, removedEntry.dataPointer, removedEntry.isDirty);
+            Set<Long> pageEntries = getFilePages(removedEntry.fileId);
+            pageEntries.remove(removedEntry.pageIndex);
+          }
+        }
+      }
+    }
+
+    private void increaseCacheSize() {
+      String message = "All records in aIn queue in 2q cache are used!";
+      OLogManager.instance().warn(this, message);
+      if (OGlobalConfiguration.SERVER_CACHE_2Q_INCREASE_ON_DEMAND.getValueAsBoolean()) {
+        OLogManager.instance().warn(this, "Cache size will be increased.");
+        maxSize = (int) Math.ceil(maxSize * (1 + OGlobalConfiguration.SERVER_CACHE_2Q_INCREASE_STEP.getValueAsFloat()));
+        K_IN = maxSize >> 2;
+        K_OUT = maxSize >> 1;
+      } else {
+        throw new OAllLRUListEntriesAreUsedException(message);
+      }
+    }
+
+    private void evictFileContent(long fileId, long pageIndex, long dataPointer, boolean isDirty) throws IOException {
+      if (isDirty) {
+        // IF BACKGROUND WRITE BACK IS IN PROGRESS IT WILL DRAIN THE QUEUE ITSELF, SO QUEUE IS ALLOWED TO GROW FOR A WHILE
+        if (evictedPages.size() >= writeQueueLength && flushLock.tryLock()) {
+          try {
+            flushEvictedPages();
+          } finally {
+            flushLock.unlock();
+          }
+        }
+
+        evictedPages.put(new FileLockKey(fileId, pageIndex), dataPointer);
+      } else {
+        directMemory.free(dataPointer);
+      }
+    }
+
+    private void flushEvictedPages() throws IOException {
+      final Map.Entry<FileLockKey, Long>[] sortedPages = sortPages(evictedPages);
+
+      for (Map.Entry<FileLockKey, Long> entry : sortedPages) {
+        long evictedDataPointer = entry.getValue();
+        FileLockKey fileLockKey = entry.getKey();
+
+        flushData(fileLockKey.fileId, fileLockKey.pageIndex, evictedDataPointer);
+        getDirtyPages(fileLockKey.fileId).remove(fileLockKey.pageIndex);
+
+        directMemory.free(evictedDataPointer);
+      }
+
+      evictedPages.clear();
+    }
+
+    /**
+     * Writes evicted pages to the disk. Content of pages is copied under segment monitor, but disk IO is performed without it so
+     * threads which load pages from this segment are not blocked.
+     */
+    private void writeBack() throws IOException {
+      flushLock.lock();
+      try {
+        final Map.Entry<FileLockKey, Long>[] sortedPages;
+        final byte[][] contents;
+        final OLogSequenceNumber[] lsns;
+
+        synchronized (this) {
+          if (evictedPages.isEmpty())
+            return;
+
+          sortedPages = sortPages(evictedPages);
+          contents = new byte[sortedPages.length][];
+          lsns = new OLogSequenceNumber[sortedPages.length];
+
+          for (int i = 0; i < sortedPages.length; i++) {
+            final long dataPointer = sortedPages[i].getValue();
+
+            contents[i] = directMemory.get(dataPointer, pageSize);
+            if (writeAheadLog != null)
+              lsns[i] = getLogSequenceNumberFromPage(dataPointer);
+
+            writeBackPages.add(sortedPages[i].getKey());
+          }
+        }
+
+        try {
+          for (int i = 0; i < sortedPages.length; i++) {
+            final FileLockKey fileLockKey = sortedPages[i].getKey();
+            writePage(fileLockKey.fileId, fileLockKey.pageIndex, contents[i], lsns[i]);
+          }
+        } finally {
+          synchronized (this) {
+            for (Map.Entry<FileLockKey, Long> entry : sortedPages) {
+              final FileLockKey fileLockKey = entry.getKey();
+              // PAGE WAS LOADED BACK IN CACHE DURING WRITE, IT IS STILL DIRTY
+              if (!writeBackPages.remove(fileLockKey))
+                continue;
+
+              final Long dataPointer = evictedPages.remove(fileLockKey);
+              if (dataPointer != null) {
+                getDirtyPages(fileLockKey.fileId).remove(fileLockKey.pageIndex);
+                directMemory.free(dataPointer);
+              }
+            }
+          }
+        }
+      } finally {
+        flushLock.unlock();
+      }
+    }
+
+    private void flushFile(long fileId) throws IOException {
+      final SortedMap<Long, OLogSequenceNumber> fileDirtyPages = getDirtyPages(fileId);
+
+      for (Iterator<Long> iterator = fileDirtyPages.keySet().iterator(); iterator.hasNext();) {
+        Long pageIndex = iterator.next();
+        LRUEntry lruEntry = get(fileId, pageIndex);
+
+        if (lruEntry == null) {
+          final Long dataPointer = evictedPages.remove(new FileLockKey(fileId, pageIndex));
+          if (dataPointer != null) {
+            flushData(fileId, pageIndex, dataPointer);
+            iterator.remove();
+          }
+        } else {
+          if (lruEntry.usageCounter == 0) {
+            flushData(fileId, lruEntry.pageIndex, lruEntry.dataPointer);
+            iterator.remove();
+            lruEntry.isDirty = false;
+          } else {
+            throw new OBlockedPageException("Unable to perform flush file because some pages is in use.");
+          }
+        }
+      }
+    }
+
+    private void closeFile(long fileId) throws IOException {
+      final Set<Long> pageIndexes = getFilePages(fileId);
+      Long[] sortedPageIndexes = new Long[pageIndexes.size()];
+      sortedPageIndexes = pageIndexes.toArray(sortedPageIndexes);
+      Arrays.sort(sortedPageIndexes);
+
+      final SortedMap<Long, OLogSequenceNumber> fileDirtyPages = getDirtyPages(fileId);
+
+      for (Long pageIndex : sortedPageIndexes) {
+        LRUEntry lruEntry = get(fileId, pageIndex);
+        if (lruEntry != null) {
+          if (lruEntry.usageCounter == 0) {
+            lruEntry = remove(fileId, pageIndex);
+
+            flushData(fileId, pageIndex, lruEntry.dataPointer);
+            fileDirtyPages.remove(pageIndex);
+
+            directMemory.free(lruEntry.dataPointer);
+          }
+        } else {
+          Long dataPointer = evictedPages.remove(new FileLockKey(fileId, pageIndex));
+          if (dataPointer != null) {
+            flushData(fileId, pageIndex, dataPointer);
+            fileDirtyPages.remove(pageIndex);
+          }
+        }
+      }
+
+      pageIndexes.clear();
+    }
+
+    private void truncateFile(long fileId) {
+      final Set<Long> pageEntries = getFilePages(fileId);
+      for (Long pageIndex : pageEntries) {
+        LRUEntry lruEntry = get(fileId, pageIndex);
+        if (lruEntry != null) {
+          if (lruEntry.usageCounter == 0) {
+            lruEntry = remove(fileId, pageIndex);
+            if (lruEntry.dataPointer != ODirectMemory.NULL_POINTER)
+              directMemory.free(lruEntry.dataPointer);
+          }
+        } else {
+          Long dataPointer = evictedPages.remove(new FileLockKey(fileId, pageIndex));
+          if (dataPointer != null)
+            directMemory.free(dataPointer);
+        }
+      }
+
+      getDirtyPages(fileId).clear();
+      pageEntries.clear();
+    }
+
+    private void removeFile(long fileId) {
+      filePages.remove(fileId);
+      dirtyPages.remove(fileId);
+    }
+
+    private void clear() {
+      am.clear();
+      a1in.clear();
+      a1out.clear();
+      for (Set<Long> fileEntries : filePages.values())
+        fileEntries.clear();
+      for (SortedMap<Long, OLogSequenceNumber> fileDirtyPages : dirtyPages.values())
+        fileDirtyPages.clear();
+    }
+
+    private LRUEntry get(long fileId, long pageIndex) {
+      LRUEntry lruEntry = am.get(fileId, pageIndex);
+
+      if (lruEntry != null) {
+        return lruEntry;
+      }
+
+      lruEntry = a1in.get(fileId, pageIndex);
       return lruEntry;
     }
-    lruEntry = a1out.remove(fileId, pageIndex);
-    if (lruEntry != null) {
+
+    private LRUEntry remove(long fileId, long pageIndex) {
+      LRUEntry lruEntry = am.remove(fileId, pageIndex);
+      if (lruEntry != null) {
+        if (lruEntry.usageCounter > 1)
+          throw new IllegalStateException("Record cannot be removed because it is used!");
+        return lruEntry;
+      }
+      lruEntry = a1out.remove(fileId, pageIndex);
+      if (lruEntry != null) {
+        return lruEntry;
+      }
+      lruEntry = a1in.remove(fileId, pageIndex);
+      if (lruEntry != null && lruEntry.usageCounter > 1)
+        throw new IllegalStateException("Record cannot be removed because it is used!");
       return lruEntry;
     }
-    lruEntry = a1in.remove(fileId, pageIndex);
-    if (lruEntry != null && lruEntry.usageCounter > 1)
-      throw new IllegalStateException("Record cannot be removed because it is used!");
-    return lruEntry;
   }
 
-  private int calculatePageCrc(byte[] pageData) {
-    int systemSize = OLongSerializer.LONG_SIZE + OIntegerSerializer.INT_SIZE;
-
-    final CRC32 crc32 = new CRC32();
-    crc32.update(pageData, systemSize, pageData.length - systemSize);
-
-    return (int) crc32.getValue();
+  private final class WriteBackTask implements Runnable {
+    @Override
+    public void run() {
+      for (Segment segment : segments) {
+        try {
+          segment.writeBack();
+        } catch (Throwable e) {
+          OLogManager.instance().error(this, "Error during background write back of disk cache pages.", e);
+        }
+      }
+    }
   }
 
   private static final class FileLockKey implements Comparable<FileLockKey> {
+
     private final long fileId;
     private final long pageIndex;
 
@@ -366,6 +366,10 @@ public class ORecordIteratorClusters<REC extends ORecordInternal<?>> extends OId
     begin();
   }
 
+  public int[] getClusterIds() {
+    return clusterIds;
+  }
+
   @Override
   public String toString() {
     return String.format("ORecordIteratorCluster.clusters(%s).currentRecord(%s).range(%s-%s)", Arrays.toString(clusterIds),
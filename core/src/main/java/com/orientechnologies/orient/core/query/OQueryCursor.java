@@ -0,0 +1,34 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.query;
+
+import java.util.Iterator;
+
+/**
+ * Result of query which is fetched while it's iterated. Cursor holds resources of the query, so it must be closed if it's not
+ * iterated till the end.
+ *
+ * @since 17.10.13
+ * @see com.orientechnologies.orient.core.sql.query.OSQLStreamQuery
+ */
+public interface OQueryCursor<T> extends Iterator<T>, Iterable<T> {
+
+  /**
+   * Stops the query and releases its resources. Records not fetched yet are discarded. Does nothing if the cursor is already
+   * closed.
+   */
+  public void close();
+}
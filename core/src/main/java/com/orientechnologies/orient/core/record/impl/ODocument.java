@@ -1307,7 +1307,9 @@ public class ODocument extends ORecordSchemaAwareAbstract<Object> implements Ite
   @Override
   protected void setup() {
     super.setup();
-    _recordFormat = ORecordSerializerFactory.instance().getFormat(ORecordSerializerSchemaAware2CSV.NAME);
+    final ODatabaseRecord database = ODatabaseRecordThreadLocal.INSTANCE.getIfDefined();
+    _recordFormat = database != null ? database.getSerializer() : ORecordSerializerFactory.instance().getFormat(
+        ORecordSerializerSchemaAware2CSV.NAME);
   }
 
   /**
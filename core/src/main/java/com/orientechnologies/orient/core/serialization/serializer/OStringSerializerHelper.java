@@ -193,20 +193,19 @@ public abstract class OStringSerializerHelper {
 
     final int max = endIndex > -1 ? endIndex + 1 : iSource.length();
 
-    final char[] buffer = new char[max - beginIndex];
-    iSource.getChars(beginIndex, max, buffer, 0);
-    iBuffer.ensureCapacity(max);
+    // READ THE SOURCE IN PLACE: COPYING THE REST OF THE TEXT ON EVERY CALL MAKES THE SPLIT QUADRATIC ON BIG RECORDS
+    iBuffer.ensureCapacity(max - beginIndex);
 
     // JUMP FIRST CHARS
-    int i = 0;
-    for (; i < buffer.length; ++i) {
-      final char c = buffer[i];
+    int i = beginIndex;
+    for (; i < max; ++i) {
+      final char c = iSource.charAt(i);
       if (!isCharPresent(c, iJumpChars))
         break;
     }
 
-    for (; i < buffer.length; ++i) {
-      final char c = buffer[i];
+    for (; i < max; ++i) {
+      final char c = iSource.charAt(i);
 
       if (stringBeginChar == ' ') {
         // OUTSIDE A STRING
@@ -270,7 +269,7 @@ public abstract class OStringSerializerHelper {
           // OUTSIDE A PARAMS/COLLECTION/MAP
           if (isCharPresent(c, iSeparator)) {
             // SEPARATOR (OUTSIDE A STRING): PUSH
-            return beginIndex + i + 1;
+            return i + 1;
           }
         }
 
@@ -292,9 +291,9 @@ public abstract class OStringSerializerHelper {
 
       if (c == '\\' && !encodeMode) {
         // ESCAPE CHARS
-        final char nextChar = buffer[i + 1];
+        final char nextChar = iSource.charAt(i + 1);
         if (nextChar == 'u') {
-          i = OStringParser.readUnicode(buffer, i + 2, iBuffer);
+          i = OStringParser.readUnicode(iSource, i + 2, iBuffer);
           continue;
         } else if (nextChar == 'n') {
           iBuffer.append("\n");
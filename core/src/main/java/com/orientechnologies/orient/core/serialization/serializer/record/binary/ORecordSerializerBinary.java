@@ -0,0 +1,445 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.serialization.serializer.record.binary;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Date;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.OUserObject2RecordHandler;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OSerializationException;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OProperty;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.profiler.OJVMProfiler;
+import com.orientechnologies.orient.core.record.ORecord;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.serialization.OBinaryProtocol;
+import com.orientechnologies.orient.core.serialization.OMemoryStream;
+import com.orientechnologies.orient.core.serialization.serializer.record.ORecordSerializer;
+import com.orientechnologies.orient.core.serialization.serializer.record.OSerializationLongIdThreadLocal;
+import com.orientechnologies.orient.core.serialization.serializer.record.string.ORecordSerializerSchemaAware2CSV;
+
+/**
+ * Schema aware serializer which stores documents in binary form. Record starts with the header which contains name of the document
+ * class and name, type, position and length of the value of every field, so single fields can be read without parsing of the whole
+ * record:
+ * 
+ * <pre>
+ * FORMAT(byte, always 0) VERSION(byte) CLASS(short size + UTF-8) FIELDS(int) [NAME(short size + UTF-8) TYPE(byte) OFFSET(int) LENGTH(int)]* VALUES
+ * </pre>
+ * 
+ * Values of simple types, links and embedded documents are stored in binary form. Collections and maps are stored in the format of
+ * {@link ORecordSerializerSchemaAware2CSV}, because lazy link collections keep their content in this format. Records written in
+ * CSV format are still read, so existing database can be switched to this serializer.
+ * 
+ * @since 17.10.13
+ */
+public class ORecordSerializerBinary implements ORecordSerializer {
+  public static final String                            NAME               = "ORecordDocument2binaryV1";
+  public static final ORecordSerializerBinary           INSTANCE           = new ORecordSerializerBinary();
+
+  // CSV RECORD NEVER STARTS WITH ZERO BYTE, SO FORMAT OF STORED RECORD IS ALWAYS KNOWN
+  private static final byte                             FORMAT             = 0;
+  private static final byte                             VERSION            = 1;
+
+  // TYPE OF THE FIELD STORED IN CSV FORMAT
+  private static final byte                             CSV_FIELD          = -1;
+
+  private static final ORecordSerializerSchemaAware2CSV CSV                = ORecordSerializerSchemaAware2CSV.INSTANCE;
+  private static final OJVMProfiler                     PROFILER           = Orient.instance().getProfiler();
+  private static final String                           METRIC_FROM_STREAM = PROFILER
+                                                                              .getProcessMetric("serializer.record.binary.fromStream");
+  private static final String                           METRIC_TO_STREAM   = PROFILER
+                                                                              .getProcessMetric("serializer.record.binary.toStream");
+
+  /**
+   * @return <code>true</code> if record content was written by this serializer.
+   */
+  public static boolean isBinaryFormat(final byte[] iSource) {
+    return iSource != null && iSource.length > 1 && iSource[0] == FORMAT;
+  }
+
+  public ORecordInternal<?> fromStream(final byte[] iSource, final ORecordInternal<?> iRecord, final String[] iFields) {
+    if (!isBinaryFormat(iSource))
+      // RECORD WAS WRITTEN BEFORE THE DATABASE SWITCHED TO BINARY FORMAT
+      return CSV.fromStream(iSource, iRecord, iFields);
+
+    final long timer = PROFILER.startChrono();
+    try {
+      return fromStream(iSource, (ODocument) iRecord, iFields);
+    } finally {
+      PROFILER.stopChrono(METRIC_FROM_STREAM, "Deserialize record from stream", timer);
+    }
+  }
+
+  public byte[] toStream(final ORecordInternal<?> iRecord, final boolean iOnlyDelta) {
+    if (!(iRecord instanceof ODocument))
+      throw new OSerializationException("Cannot marshall a record of type " + iRecord.getClass().getSimpleName());
+
+    final long timer = PROFILER.startChrono();
+    try {
+      return toStream((ODocument) iRecord, iOnlyDelta, ODatabaseRecordThreadLocal.INSTANCE.getIfDefined());
+    } finally {
+      PROFILER.stopChrono(METRIC_TO_STREAM, "Serialize record to stream", timer);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return NAME;
+  }
+
+  private ODocument fromStream(final byte[] iSource, final ODocument record, final String[] iFields) {
+    int offset = 1;
+    final byte version = iSource[offset++];
+    if (version != VERSION)
+      throw new OSerializationException("Record " + record.getIdentity() + " was written in unsupported version " + version
+          + " of binary format");
+
+    final int classNameSize = OBinaryProtocol.bytes2short(iSource, offset);
+    offset += OBinaryProtocol.SIZE_SHORT;
+    record.setClassNameIfExists(classNameSize > 0 ? OBinaryProtocol.bytes2string(iSource, offset, classNameSize) : null);
+    offset += classNameSize;
+
+    if (iFields != null && iFields.length == 1 && iFields[0].equals("@class"))
+      // ONLY THE CLASS NAME HAS BEEN REQUESTED: RETURN NOW WITHOUT UNMARSHALL THE ENTIRE RECORD
+      return record;
+
+    final byte[][] requestedFields = iFields != null && iFields.length > 0 ? toBytes(iFields) : null;
+    int fieldsToRead = requestedFields != null ? requestedFields.length : Integer.MAX_VALUE;
+
+    final int fields = OBinaryProtocol.bytes2int(iSource, offset);
+    offset += OBinaryProtocol.SIZE_INT;
+
+    for (int i = 0; i < fields && fieldsToRead > 0; i++) {
+      final int nameSize = OBinaryProtocol.bytes2short(iSource, offset);
+      final int nameOffset = offset + OBinaryProtocol.SIZE_SHORT;
+      offset = nameOffset + nameSize;
+
+      final byte type = iSource[offset];
+      final int valueOffset = OBinaryProtocol.bytes2int(iSource, offset + OBinaryProtocol.SIZE_BYTE);
+      final int valueLength = OBinaryProtocol.bytes2int(iSource, offset + OBinaryProtocol.SIZE_BYTE + OBinaryProtocol.SIZE_INT);
+      offset += OBinaryProtocol.SIZE_BYTE + 2 * OBinaryProtocol.SIZE_INT;
+
+      if (requestedFields != null) {
+        // FIELD NAMES ARE COMPARED WITHOUT DECODING TO SKIP NOT REQUESTED FIELDS AS FAST AS POSSIBLE
+        if (!contains(requestedFields, iSource, nameOffset, nameSize))
+          continue;
+        fieldsToRead--;
+      }
+
+      final String fieldName = OBinaryProtocol.bytes2string(iSource, nameOffset, nameSize);
+      if (record.containsField(fieldName))
+        // ALREADY UNMARSHALLED: DON'T OVERWRITE IT
+        continue;
+
+      try {
+        if (type == CSV_FIELD)
+          CSV.fieldFromString(record, fieldName,
+              valueLength > 0 ? OBinaryProtocol.bytes2string(iSource, valueOffset, valueLength) : null);
+        else {
+          final OType fieldType = OType.getById(type);
+          final Object value = valueFromStream(record, fieldType, iSource, valueOffset, valueLength);
+          if (fieldType == OType.EMBEDDED)
+            // SAVE THE TYPE AS EMBEDDED
+            record.field(fieldName, value, fieldType);
+          else
+            record.field(fieldName, value);
+        }
+      } catch (Exception e) {
+        OLogManager.instance().exception("Error on unmarshalling field '%s' in record %s", e, OSerializationException.class,
+            fieldName, record.getIdentity());
+      }
+    }
+
+    return record;
+  }
+
+  private byte[] toStream(final ODocument iDocument, final boolean iOnlyDelta, final OUserObject2RecordHandler iObjHandler) {
+    final byte[] className = !iOnlyDelta && iDocument.getSchemaClass() != null ? OBinaryProtocol.string2bytes(iDocument
+        .getSchemaClass().getStreamableName()) : null;
+
+    final String[] fieldNames = iOnlyDelta && iDocument.isTrackingChanges() ? iDocument.getDirtyFields() : iDocument.fieldNames();
+
+    final byte[][] names = new byte[fieldNames.length][];
+    final byte[] types = new byte[fieldNames.length];
+    final int[] offsets = new int[fieldNames.length];
+    final int[] lengths = new int[fieldNames.length];
+
+    final OMemoryStream values = new OMemoryStream();
+    int headerSize = 2 * OBinaryProtocol.SIZE_BYTE + OBinaryProtocol.SIZE_SHORT + (className != null ? className.length : 0)
+        + OBinaryProtocol.SIZE_INT;
+
+    int fields = 0;
+    for (String fieldName : fieldNames) {
+      final Object fieldValue = iDocument.rawField(fieldName);
+      final int valueOffset = values.getPosition();
+
+      final OType type = getBinaryType(iDocument, fieldName, fieldValue);
+      if (type != null) {
+        valueToStream(values, type, fieldValue, iObjHandler);
+        types[fields] = (byte) type.getId();
+      } else {
+        final StringBuilder buffer = new StringBuilder();
+        if (CSV.fieldToString(iDocument, buffer, iObjHandler, fieldName, fieldValue, OSerializationLongIdThreadLocal.INSTANCE.get(),
+            true) == null)
+          // TRANSIENT FIELD
+          continue;
+
+        values.setAsFixed(OBinaryProtocol.string2bytes(buffer.toString()));
+        types[fields] = CSV_FIELD;
+      }
+
+      names[fields] = OBinaryProtocol.string2bytes(fieldName);
+      offsets[fields] = valueOffset;
+      lengths[fields] = values.getPosition() - valueOffset;
+      headerSize += OBinaryProtocol.SIZE_SHORT + names[fields].length + OBinaryProtocol.SIZE_BYTE + 2 * OBinaryProtocol.SIZE_INT;
+      fields++;
+    }
+
+    final byte[] stream = new byte[headerSize + values.getPosition()];
+    stream[0] = FORMAT;
+    stream[1] = VERSION;
+    int offset = 2 * OBinaryProtocol.SIZE_BYTE;
+
+    offset = writeBytes(stream, offset, className);
+
+    OBinaryProtocol.int2bytes(fields, stream, offset);
+    offset += OBinaryProtocol.SIZE_INT;
+
+    for (int i = 0; i < fields; i++) {
+      offset = writeBytes(stream, offset, names[i]);
+      stream[offset] = types[i];
+      OBinaryProtocol.int2bytes(headerSize + offsets[i], stream, offset + OBinaryProtocol.SIZE_BYTE);
+      OBinaryProtocol.int2bytes(lengths[i], stream, offset + OBinaryProtocol.SIZE_BYTE + OBinaryProtocol.SIZE_INT);
+      offset += OBinaryProtocol.SIZE_BYTE + 2 * OBinaryProtocol.SIZE_INT;
+    }
+
+    System.arraycopy(values.getInternalBuffer(), 0, stream, headerSize, values.getPosition());
+    return stream;
+  }
+
+  /**
+   * @return Type of the value if it can be stored in binary form, otherwise <code>null</code>.
+   */
+  private OType getBinaryType(final ODocument iDocument, final String iFieldName, final Object iValue) {
+    if (iValue == null)
+      return null;
+
+    final OClass schemaClass = iDocument.getSchemaClass();
+    final OProperty property = schemaClass != null ? schemaClass.getProperty(iFieldName) : null;
+
+    OType type = property != null ? property.getType() : iDocument.fieldType(iFieldName);
+    if (type == null) {
+      // SAME TYPES AS CSV SERIALIZER DETERMINES FROM THE VALUE
+      if (iValue instanceof String)
+        type = OType.STRING;
+      else if (iValue instanceof Integer)
+        type = OType.INTEGER;
+      else if (iValue instanceof Long)
+        type = OType.LONG;
+      else if (iValue instanceof Date)
+        type = OType.DATETIME;
+      else if (iValue instanceof Double)
+        type = OType.DOUBLE;
+      else if (iValue instanceof Float)
+        type = OType.FLOAT;
+      else if (iValue instanceof Short)
+        type = OType.SHORT;
+      else if (iValue instanceof Byte)
+        type = OType.BYTE;
+      else if (iValue instanceof Boolean)
+        type = OType.BOOLEAN;
+      else if (iValue instanceof BigDecimal)
+        type = OType.DECIMAL;
+      else if (iValue instanceof byte[])
+        type = OType.BINARY;
+      else if (iValue instanceof ODocument && ((ODocument) iValue).hasOwners())
+        type = OType.EMBEDDED;
+      else if (iValue instanceof OIdentifiable)
+        type = OType.LINK;
+      else
+        return null;
+    }
+
+    switch (type) {
+    case STRING:
+      return iValue instanceof String ? type : null;
+    case INTEGER:
+      return iValue instanceof Integer ? type : null;
+    case LONG:
+      return iValue instanceof Long ? type : null;
+    case DATE:
+    case DATETIME:
+      return iValue instanceof Date ? type : null;
+    case DOUBLE:
+      return iValue instanceof Double ? type : null;
+    case FLOAT:
+      return iValue instanceof Float ? type : null;
+    case SHORT:
+      return iValue instanceof Short ? type : null;
+    case BYTE:
+      return iValue instanceof Byte ? type : null;
+    case BOOLEAN:
+      return iValue instanceof Boolean ? type : null;
+    case DECIMAL:
+      return iValue instanceof BigDecimal ? type : null;
+    case BINARY:
+      return iValue instanceof byte[] ? type : null;
+    case EMBEDDED:
+      return iValue instanceof ODocument ? type : null;
+    case LINK:
+      if (!(iValue instanceof OIdentifiable))
+        return null;
+
+      // NEW AND CHANGED RECORDS ARE SAVED BY CSV SERIALIZER BEFORE THE LINK IS WRITTEN
+      final ORID rid = ((OIdentifiable) iValue).getIdentity();
+      return rid.isPersistent() && !(iValue instanceof ORecord<?> && ((ORecord<?>) iValue).isDirty()) ? type : null;
+    default:
+      return null;
+    }
+  }
+
+  private void valueToStream(final OMemoryStream iStream, final OType iType, final Object iValue,
+      final OUserObject2RecordHandler iObjHandler) {
+    switch (iType) {
+    case STRING:
+      iStream.setAsFixed(OBinaryProtocol.string2bytes((String) iValue));
+      break;
+    case INTEGER:
+      iStream.set(((Integer) iValue).intValue());
+      break;
+    case LONG:
+      iStream.set(((Long) iValue).longValue());
+      break;
+    case DATE:
+    case DATETIME:
+      iStream.set(((Date) iValue).getTime());
+      break;
+    case DOUBLE:
+      iStream.set(Double.doubleToLongBits((Double) iValue));
+      break;
+    case FLOAT:
+      iStream.set(Float.floatToIntBits((Float) iValue));
+      break;
+    case SHORT:
+      iStream.set(((Short) iValue).shortValue());
+      break;
+    case BYTE:
+      iStream.set(((Byte) iValue).byteValue());
+      break;
+    case BOOLEAN:
+      iStream.set(((Boolean) iValue).booleanValue());
+      break;
+    case DECIMAL:
+      iStream.set(((BigDecimal) iValue).scale());
+      iStream.setAsFixed(((BigDecimal) iValue).unscaledValue().toByteArray());
+      break;
+    case BINARY:
+      iStream.setAsFixed((byte[]) iValue);
+      break;
+    case EMBEDDED:
+      iStream.setAsFixed(toStream((ODocument) iValue, false, iObjHandler));
+      break;
+    case LINK:
+      iStream.setAsFixed(((OIdentifiable) iValue).getIdentity().toStream());
+      break;
+    default:
+      throw new OSerializationException("Type " + iType + " cannot be stored in binary form");
+    }
+  }
+
+  private Object valueFromStream(final ODocument iRecord, final OType iType, final byte[] iSource, final int iOffset,
+      final int iLength) {
+    switch (iType) {
+    case STRING:
+      return OBinaryProtocol.bytes2string(iSource, iOffset, iLength);
+    case INTEGER:
+      return OBinaryProtocol.bytes2int(iSource, iOffset);
+    case LONG:
+      return OBinaryProtocol.bytes2long(iSource, iOffset);
+    case DATE:
+    case DATETIME:
+      return new Date(OBinaryProtocol.bytes2long(iSource, iOffset));
+    case DOUBLE:
+      return Double.longBitsToDouble(OBinaryProtocol.bytes2long(iSource, iOffset));
+    case FLOAT:
+      return Float.intBitsToFloat(OBinaryProtocol.bytes2int(iSource, iOffset));
+    case SHORT:
+      return OBinaryProtocol.bytes2short(iSource, iOffset);
+    case BYTE:
+      return iSource[iOffset];
+    case BOOLEAN:
+      return iSource[iOffset] != 0;
+    case DECIMAL:
+      return new BigDecimal(new BigInteger(Arrays.copyOfRange(iSource, iOffset + OBinaryProtocol.SIZE_INT, iOffset + iLength)),
+          OBinaryProtocol.bytes2int(iSource, iOffset));
+    case BINARY:
+      return Arrays.copyOfRange(iSource, iOffset, iOffset + iLength);
+    case EMBEDDED:
+      return new ODocument().fromStream(Arrays.copyOfRange(iSource, iOffset, iOffset + iLength)).addOwner(iRecord);
+    case LINK:
+      return new ORecordId().fromStream(Arrays.copyOfRange(iSource, iOffset, iOffset + iLength));
+    default:
+      throw new OSerializationException("Type " + iType + " cannot be read from binary form");
+    }
+  }
+
+  private static int writeBytes(final byte[] iStream, int iOffset, final byte[] iContent) {
+    final int size = iContent != null ? iContent.length : 0;
+    OBinaryProtocol.short2bytes((short) size, iStream, iOffset);
+    iOffset += OBinaryProtocol.SIZE_SHORT;
+
+    if (size > 0) {
+      System.arraycopy(iContent, 0, iStream, iOffset, size);
+      iOffset += size;
+    }
+
+    return iOffset;
+  }
+
+  private static byte[][] toBytes(final String[] iFields) {
+    final byte[][] result = new byte[iFields.length][];
+    for (int i = 0; i < iFields.length; i++)
+      result[i] = OBinaryProtocol.string2bytes(iFields[i]);
+    return result;
+  }
+
+  private static boolean contains(final byte[][] iNames, final byte[] iSource, final int iOffset, final int iSize) {
+    for (byte[] name : iNames) {
+      if (name.length != iSize)
+        continue;
+
+      int i = 0;
+      while (i < iSize && name[i] == iSource[iOffset + i])
+        i++;
+
+      if (i == iSize)
+        return true;
+    }
+
+    return false;
+  }
+}
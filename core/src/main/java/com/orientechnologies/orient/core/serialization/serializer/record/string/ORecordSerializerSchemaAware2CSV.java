@@ -19,7 +19,6 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Collection;
 import java.util.Date;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
@@ -43,6 +42,7 @@ import com.orientechnologies.orient.core.record.ORecordInternal;
 import com.orientechnologies.orient.core.record.ORecordSchemaAware;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
+import com.orientechnologies.orient.core.serialization.serializer.record.binary.ORecordSerializerBinary;
 import com.orientechnologies.orient.core.type.tree.OMVRBTreeRIDSet;
 
 public class ORecordSerializerSchemaAware2CSV extends ORecordSerializerCSVAbstract {
@@ -95,11 +95,6 @@ public class ORecordSerializerSchemaAware2CSV extends ORecordSerializerCSVAbstra
       iOutput.append(OStringSerializerHelper.CLASS_SEPARATOR);
     }
 
-    OProperty prop;
-    OType type;
-    OClass linkedClass;
-    OType linkedType;
-    String fieldClassName;
     int i = 0;
 
     final String[] fieldNames = iOnlyDelta && record.isTrackingChanges() ? record.getDirtyFields() : record.fieldNames();
@@ -110,193 +105,17 @@ public class ORecordSerializerSchemaAware2CSV extends ORecordSerializerCSVAbstra
     // MARSHALL ALL THE FIELDS OR DELTA IF TRACKING IS ENABLED
     for (String fieldName : fieldNames) {
       Object fieldValue = record.rawField(fieldName);
+      final int fieldBegin = iOutput.length();
       if (i > 0)
         iOutput.append(OStringSerializerHelper.RECORD_SEPARATOR);
 
-      // SEARCH FOR A CONFIGURED PROPERTY
-      prop = record.getSchemaClass() != null ? record.getSchemaClass().getProperty(fieldName) : null;
-      fieldClassName = getClassName(fieldValue);
-
-      type = record.fieldType(fieldName);
-      linkedClass = null;
-      linkedType = null;
-
-      if (prop != null) {
-        // RECOGNIZED PROPERTY
-        type = prop.getType();
-        linkedClass = prop.getLinkedClass();
-        linkedType = prop.getLinkedType();
-
-      } else if (fieldValue != null) {
-        // NOT FOUND: TRY TO DETERMINE THE TYPE FROM ITS CONTENT
-        if (type == null) {
-          if (fieldValue.getClass() == byte[].class)
-            type = OType.BINARY;
-          else if (ODatabaseRecordThreadLocal.INSTANCE.isDefined() && fieldValue instanceof ORecord<?>) {
-            if (type == null)
-              // DETERMINE THE FIELD TYPE
-              if (fieldValue instanceof ODocument && ((ODocument) fieldValue).hasOwners())
-                type = OType.EMBEDDED;
-              else
-                type = OType.LINK;
-
-            linkedClass = getLinkInfo(ODatabaseRecordThreadLocal.INSTANCE.get(), fieldClassName);
-          } else if (fieldValue instanceof ORID)
-            // DETERMINE THE FIELD TYPE
-            type = OType.LINK;
-
-          else if (ODatabaseRecordThreadLocal.INSTANCE.isDefined()
-              && ODatabaseRecordThreadLocal.INSTANCE.get().getDatabaseOwner() instanceof ODatabaseObject
-              && ((ODatabaseObject) ODatabaseRecordThreadLocal.INSTANCE.get().getDatabaseOwner()).getEntityManager()
-                  .getEntityClass(fieldClassName) != null) {
-            // DETERMINE THE FIELD TYPE
-            type = OType.LINK;
-            linkedClass = getLinkInfo(ODatabaseRecordThreadLocal.INSTANCE.get(), fieldClassName);
-          } else if (fieldValue instanceof Date)
-            type = OType.DATETIME;
-          else if (fieldValue instanceof String)
-            type = OType.STRING;
-          else if (fieldValue instanceof Integer || fieldValue instanceof BigInteger)
-            type = OType.INTEGER;
-          else if (fieldValue instanceof Long)
-            type = OType.LONG;
-          else if (fieldValue instanceof Float)
-            type = OType.FLOAT;
-          else if (fieldValue instanceof Short)
-            type = OType.SHORT;
-          else if (fieldValue instanceof Byte)
-            type = OType.BYTE;
-          else if (fieldValue instanceof Double)
-            type = OType.DOUBLE;
-          else if (fieldValue instanceof BigDecimal)
-            type = OType.DECIMAL;
-        }
-
-        if (fieldValue instanceof OMultiCollectionIterator<?>) {
-          type = ((OMultiCollectionIterator<?>) fieldValue).isEmbedded() ? OType.EMBEDDEDLIST : OType.LINKLIST;
-          linkedType = ((OMultiCollectionIterator<?>) fieldValue).isEmbedded() ? OType.EMBEDDED : OType.LINK;
-        } else if (fieldValue instanceof Collection<?> || fieldValue.getClass().isArray()) {
-          final int size = OMultiValue.getSize(fieldValue);
-
-          Boolean autoConvertLinks = null;
-          if (fieldValue instanceof ORecordLazyMultiValue) {
-            autoConvertLinks = ((ORecordLazyMultiValue) fieldValue).isAutoConvertToRecord();
-            if (autoConvertLinks)
-              // DISABLE AUTO CONVERT
-              ((ORecordLazyMultiValue) fieldValue).setAutoConvertToRecord(false);
-          }
-
-          if (autoDetectCollectionType)
-            if (size > 0) {
-              final Object firstValue = OMultiValue.getFirstValue(fieldValue);
-
-              if (firstValue != null) {
-                if (firstValue instanceof ORID) {
-                  linkedClass = null;
-                  linkedType = OType.LINK;
-                  if (fieldValue instanceof Set<?>)
-                    type = OType.LINKSET;
-                  else
-                    type = OType.LINKLIST;
-                } else if (ODatabaseRecordThreadLocal.INSTANCE.isDefined()
-                    && (firstValue instanceof ODocument && !((ODocument) firstValue).isEmbedded())
-                    && (firstValue instanceof ORecord<?> || (ODatabaseRecordThreadLocal.INSTANCE.get().getDatabaseOwner() instanceof ODatabaseObject && ((ODatabaseObject) ODatabaseRecordThreadLocal.INSTANCE
-                        .get().getDatabaseOwner()).getEntityManager().getEntityClass(getClassName(firstValue)) != null))) {
-                  linkedClass = getLinkInfo(ODatabaseRecordThreadLocal.INSTANCE.get(), getClassName(firstValue));
-                  if (type == null) {
-                    // LINK: GET THE CLASS
-                    linkedType = OType.LINK;
-
-                    if (fieldValue instanceof Set<?>)
-                      type = OType.LINKSET;
-                    else
-                      type = OType.LINKLIST;
-                  } else
-                    linkedType = OType.EMBEDDED;
-                } else {
-                  // EMBEDDED COLLECTION
-                  if (firstValue instanceof ODocument
-                      && ((((ODocument) firstValue).hasOwners()) || type == OType.EMBEDDEDSET || type == OType.EMBEDDEDLIST || type == OType.EMBEDDEDMAP))
-                    linkedType = OType.EMBEDDED;
-                  else if (firstValue instanceof Enum<?>)
-                    linkedType = OType.STRING;
-                  else {
-                    linkedType = OType.getTypeByClass(firstValue.getClass());
-
-                    if (linkedType != OType.LINK) {
-                      // EMBEDDED FOR SURE SINCE IT CONTAINS JAVA TYPES
-                      if (linkedType == null) {
-                        linkedType = OType.EMBEDDED;
-                        // linkedClass = new OClass(firstValue.getClass());
-                      }
-                    }
-                  }
-
-                  if (type == null)
-                    if (fieldValue instanceof OMVRBTreeRIDSet)
-                      type = OType.LINKSET;
-                    else if (fieldValue instanceof Set<?>)
-                      type = OType.EMBEDDEDSET;
-                    else
-                      type = OType.EMBEDDEDLIST;
-                }
-              }
-            } else if (type == null)
-              type = OType.EMBEDDEDLIST;
-
-          if (fieldValue instanceof ORecordLazyMultiValue && autoConvertLinks) {
-            // REPLACE PREVIOUS SETTINGS
-            ((ORecordLazyMultiValue) fieldValue).setAutoConvertToRecord(true);
-          }
-
-        } else if (fieldValue instanceof Map<?, ?> && type == null) {
-          final int size = OMultiValue.getSize(fieldValue);
-
-          Boolean autoConvertLinks = null;
-          if (fieldValue instanceof ORecordLazyMap) {
-            autoConvertLinks = ((ORecordLazyMap) fieldValue).isAutoConvertToRecord();
-            if (autoConvertLinks)
-              // DISABLE AUTO CONVERT
-              ((ORecordLazyMap) fieldValue).setAutoConvertToRecord(false);
-          }
-
-          if (size > 0) {
-            final Object firstValue = OMultiValue.getFirstValue(fieldValue);
-
-            if (firstValue != null) {
-              if (ODatabaseRecordThreadLocal.INSTANCE.isDefined()
-                  && (firstValue instanceof ODocument && !((ODocument) firstValue).isEmbedded())
-                  && (firstValue instanceof ORecord<?> || (ODatabaseRecordThreadLocal.INSTANCE.get().getDatabaseOwner() instanceof ODatabaseObject && ((ODatabaseObject) ODatabaseRecordThreadLocal.INSTANCE
-                      .get().getDatabaseOwner()).getEntityManager().getEntityClass(getClassName(firstValue)) != null))) {
-                linkedClass = getLinkInfo(ODatabaseRecordThreadLocal.INSTANCE.get(), getClassName(firstValue));
-                // LINK: GET THE CLASS
-                linkedType = OType.LINK;
-                type = OType.LINKMAP;
-              } else {
-                type = OType.EMBEDDEDMAP;
-              }
-            }
-          } else
-            type = OType.EMBEDDEDMAP;
-
-          if (fieldValue instanceof ORecordLazyMap && autoConvertLinks) {
-            // REPLACE PREVIOUS SETTINGS
-            ((ORecordLazyMap) fieldValue).setAutoConvertToRecord(true);
-          }
-        }
-      }
-
-      if (type == OType.TRANSIENT)
-        // TRANSIENT FIELD
-        continue;
-
-      if (type == null)
-        type = OType.EMBEDDED;
-
       iOutput.append(fieldName);
       iOutput.append(FIELD_VALUE_SEPARATOR);
-      fieldToStream((ODocument) iRecord, iOutput, iObjHandler, type, linkedClass, linkedType, fieldName, fieldValue,
-          iMarshalledRecords, true);
+      if (fieldToString(record, iOutput, iObjHandler, fieldName, fieldValue, iMarshalledRecords, autoDetectCollectionType) == null) {
+        // TRANSIENT FIELD
+        iOutput.setLength(fieldBegin);
+        continue;
+      }
 
       i++;
     }
@@ -339,6 +158,197 @@ public class ORecordSerializerSchemaAware2CSV extends ORecordSerializerCSVAbstra
     return iOutput;
   }
 
+  /**
+   * Serializes value of the document field. Type of the value is taken from the schema, if the field is not defined in the schema
+   * it is determined from the value itself.
+   * 
+   * @return Type the value was serialized with or <code>null</code> if the field is transient and nothing was written.
+   */
+  public OType fieldToString(final ODocument record, final StringBuilder iOutput, final OUserObject2RecordHandler iObjHandler,
+      final String fieldName, final Object fieldValue, final Set<Long> iMarshalledRecords, final boolean autoDetectCollectionType) {
+    // SEARCH FOR A CONFIGURED PROPERTY
+    final OProperty prop = record.getSchemaClass() != null ? record.getSchemaClass().getProperty(fieldName) : null;
+    final String fieldClassName = getClassName(fieldValue);
+
+    OType type = record.fieldType(fieldName);
+    OClass linkedClass = null;
+    OType linkedType = null;
+
+    if (prop != null) {
+      // RECOGNIZED PROPERTY
+      type = prop.getType();
+      linkedClass = prop.getLinkedClass();
+      linkedType = prop.getLinkedType();
+
+    } else if (fieldValue != null) {
+      // NOT FOUND: TRY TO DETERMINE THE TYPE FROM ITS CONTENT
+      if (type == null) {
+        if (fieldValue.getClass() == byte[].class)
+          type = OType.BINARY;
+        else if (ODatabaseRecordThreadLocal.INSTANCE.isDefined() && fieldValue instanceof ORecord<?>) {
+          if (type == null)
+            // DETERMINE THE FIELD TYPE
+            if (fieldValue instanceof ODocument && ((ODocument) fieldValue).hasOwners())
+              type = OType.EMBEDDED;
+            else
+              type = OType.LINK;
+
+          linkedClass = getLinkInfo(ODatabaseRecordThreadLocal.INSTANCE.get(), fieldClassName);
+        } else if (fieldValue instanceof ORID)
+          // DETERMINE THE FIELD TYPE
+          type = OType.LINK;
+
+        else if (ODatabaseRecordThreadLocal.INSTANCE.isDefined()
+            && ODatabaseRecordThreadLocal.INSTANCE.get().getDatabaseOwner() instanceof ODatabaseObject
+            && ((ODatabaseObject) ODatabaseRecordThreadLocal.INSTANCE.get().getDatabaseOwner()).getEntityManager()
+                .getEntityClass(fieldClassName) != null) {
+          // DETERMINE THE FIELD TYPE
+          type = OType.LINK;
+          linkedClass = getLinkInfo(ODatabaseRecordThreadLocal.INSTANCE.get(), fieldClassName);
+        } else if (fieldValue instanceof Date)
+          type = OType.DATETIME;
+        else if (fieldValue instanceof String)
+          type = OType.STRING;
+        else if (fieldValue instanceof Integer || fieldValue instanceof BigInteger)
+          type = OType.INTEGER;
+        else if (fieldValue instanceof Long)
+          type = OType.LONG;
+        else if (fieldValue instanceof Float)
+          type = OType.FLOAT;
+        else if (fieldValue instanceof Short)
+          type = OType.SHORT;
+        else if (fieldValue instanceof Byte)
+          type = OType.BYTE;
+        else if (fieldValue instanceof Double)
+          type = OType.DOUBLE;
+        else if (fieldValue instanceof BigDecimal)
+          type = OType.DECIMAL;
+      }
+
+      if (fieldValue instanceof OMultiCollectionIterator<?>) {
+        type = ((OMultiCollectionIterator<?>) fieldValue).isEmbedded() ? OType.EMBEDDEDLIST : OType.LINKLIST;
+        linkedType = ((OMultiCollectionIterator<?>) fieldValue).isEmbedded() ? OType.EMBEDDED : OType.LINK;
+      } else if (fieldValue instanceof Collection<?> || fieldValue.getClass().isArray()) {
+        final int size = OMultiValue.getSize(fieldValue);
+
+        Boolean autoConvertLinks = null;
+        if (fieldValue instanceof ORecordLazyMultiValue) {
+          autoConvertLinks = ((ORecordLazyMultiValue) fieldValue).isAutoConvertToRecord();
+          if (autoConvertLinks)
+            // DISABLE AUTO CONVERT
+            ((ORecordLazyMultiValue) fieldValue).setAutoConvertToRecord(false);
+        }
+
+        if (autoDetectCollectionType)
+          if (size > 0) {
+            final Object firstValue = OMultiValue.getFirstValue(fieldValue);
+
+            if (firstValue != null) {
+              if (firstValue instanceof ORID) {
+                linkedClass = null;
+                linkedType = OType.LINK;
+                if (fieldValue instanceof Set<?>)
+                  type = OType.LINKSET;
+                else
+                  type = OType.LINKLIST;
+              } else if (ODatabaseRecordThreadLocal.INSTANCE.isDefined()
+                  && (firstValue instanceof ODocument && !((ODocument) firstValue).isEmbedded())
+                  && (firstValue instanceof ORecord<?> || (ODatabaseRecordThreadLocal.INSTANCE.get().getDatabaseOwner() instanceof ODatabaseObject && ((ODatabaseObject) ODatabaseRecordThreadLocal.INSTANCE
+                      .get().getDatabaseOwner()).getEntityManager().getEntityClass(getClassName(firstValue)) != null))) {
+                linkedClass = getLinkInfo(ODatabaseRecordThreadLocal.INSTANCE.get(), getClassName(firstValue));
+                if (type == null) {
+                  // LINK: GET THE CLASS
+                  linkedType = OType.LINK;
+
+                  if (fieldValue instanceof Set<?>)
+                    type = OType.LINKSET;
+                  else
+                    type = OType.LINKLIST;
+                } else
+                  linkedType = OType.EMBEDDED;
+              } else {
+                // EMBEDDED COLLECTION
+                if (firstValue instanceof ODocument
+                    && ((((ODocument) firstValue).hasOwners()) || type == OType.EMBEDDEDSET || type == OType.EMBEDDEDLIST || type == OType.EMBEDDEDMAP))
+                  linkedType = OType.EMBEDDED;
+                else if (firstValue instanceof Enum<?>)
+                  linkedType = OType.STRING;
+                else {
+                  linkedType = OType.getTypeByClass(firstValue.getClass());
+
+                  if (linkedType != OType.LINK) {
+                    // EMBEDDED FOR SURE SINCE IT CONTAINS JAVA TYPES
+                    if (linkedType == null) {
+                      linkedType = OType.EMBEDDED;
+                      // linkedClass = new OClass(firstValue.getClass());
+                    }
+                  }
+                }
+
+                if (type == null)
+                  if (fieldValue instanceof OMVRBTreeRIDSet)
+                    type = OType.LINKSET;
+                  else if (fieldValue instanceof Set<?>)
+                    type = OType.EMBEDDEDSET;
+                  else
+                    type = OType.EMBEDDEDLIST;
+              }
+            }
+          } else if (type == null)
+            type = OType.EMBEDDEDLIST;
+
+        if (fieldValue instanceof ORecordLazyMultiValue && autoConvertLinks) {
+          // REPLACE PREVIOUS SETTINGS
+          ((ORecordLazyMultiValue) fieldValue).setAutoConvertToRecord(true);
+        }
+
+      } else if (fieldValue instanceof Map<?, ?> && type == null) {
+        final int size = OMultiValue.getSize(fieldValue);
+
+        Boolean autoConvertLinks = null;
+        if (fieldValue instanceof ORecordLazyMap) {
+          autoConvertLinks = ((ORecordLazyMap) fieldValue).isAutoConvertToRecord();
+          if (autoConvertLinks)
+            // DISABLE AUTO CONVERT
+            ((ORecordLazyMap) fieldValue).setAutoConvertToRecord(false);
+        }
+
+        if (size > 0) {
+          final Object firstValue = OMultiValue.getFirstValue(fieldValue);
+
+          if (firstValue != null) {
+            if (ODatabaseRecordThreadLocal.INSTANCE.isDefined()
+                && (firstValue instanceof ODocument && !((ODocument) firstValue).isEmbedded())
+                && (firstValue instanceof ORecord<?> || (ODatabaseRecordThreadLocal.INSTANCE.get().getDatabaseOwner() instanceof ODatabaseObject && ((ODatabaseObject) ODatabaseRecordThreadLocal.INSTANCE
+                    .get().getDatabaseOwner()).getEntityManager().getEntityClass(getClassName(firstValue)) != null))) {
+              linkedClass = getLinkInfo(ODatabaseRecordThreadLocal.INSTANCE.get(), getClassName(firstValue));
+              // LINK: GET THE CLASS
+              linkedType = OType.LINK;
+              type = OType.LINKMAP;
+            } else {
+              type = OType.EMBEDDEDMAP;
+            }
+          }
+        } else
+          type = OType.EMBEDDEDMAP;
+
+        if (fieldValue instanceof ORecordLazyMap && autoConvertLinks) {
+          // REPLACE PREVIOUS SETTINGS
+          ((ORecordLazyMap) fieldValue).setAutoConvertToRecord(true);
+        }
+      }
+    }
+
+    if (type == OType.TRANSIENT)
+      return null;
+
+    if (type == null)
+      type = OType.EMBEDDED;
+
+    fieldToStream(record, iOutput, iObjHandler, type, linkedClass, linkedType, fieldName, fieldValue, iMarshalledRecords, true);
+    return type;
+  }
+
   private String getClassName(final Object iValue) {
     if (iValue instanceof ORecordSchemaAware<?>)
       return ((ORecordSchemaAware<?>) iValue).getClassName();
@@ -387,20 +397,22 @@ public class ORecordSerializerSchemaAware2CSV extends ORecordSerializerCSVAbstra
       // ONLY THE CLASS NAME HAS BEEN REQUESTED: RETURN NOW WITHOUT UNMARSHALL THE ENTIRE RECORD
       return iRecord;
 
-    final List<String> fields = OStringSerializerHelper.smartSplit(iContent, OStringSerializerHelper.RECORD_SEPARATOR, true);
+    final StringBuilder buffer = new StringBuilder();
+    final char[] separator = new char[] { OStringSerializerHelper.RECORD_SEPARATOR };
+
+    // WITH PARTIAL UNMARSHALLING STOP AS SOON AS ALL THE REQUESTED FIELDS ARE FOUND
+    int fieldsToFind = iFields != null && iFields.length > 0 ? iFields.length : -1;
 
-    String field;
+    String field = null;
     String fieldName = null;
     String fieldValue;
-    OType type = null;
-    OClass linkedClass;
-    OType linkedType;
-    OProperty prop;
 
-    // UNMARSHALL ALL THE FIELDS
-    for (int i = 0; i < fields.size(); ++i) {
-      field = fields.get(i).trim();
-      boolean uncertainType = false;
+    // SPLIT AND UNMARSHALL THE FIELDS ONE BY ONE
+    int nextPosition = 0;
+    while (nextPosition > -1 && fieldsToFind != 0) {
+      buffer.setLength(0);
+      nextPosition = OStringSerializerHelper.parse(iContent, buffer, nextPosition, -1, separator, false, true, true);
+      field = buffer.toString().trim();
 
       try {
         pos = field.indexOf(FIELD_VALUE_SEPARATOR);
@@ -408,11 +420,7 @@ public class ORecordSerializerSchemaAware2CSV extends ORecordSerializerCSVAbstra
           // GET THE FIELD NAME
           fieldName = field.substring(0, pos);
 
-          if (record.containsField(fieldName))
-            // ALREADY UNMARSHALLED: DON'T OVERWRITE IT
-            continue;
-
-          if (iFields != null && iFields.length > 0) {
+          if (fieldsToFind > 0) {
             // CHECK IF THE FIELS IS REQUESTED TO BEING UNMARSHALLED
             boolean found = false;
             for (String f : iFields)
@@ -424,93 +432,18 @@ public class ORecordSerializerSchemaAware2CSV extends ORecordSerializerCSVAbstra
             if (!found)
               // SKIP IT
               continue;
+
+            fieldsToFind--;
           }
 
+          if (record.containsField(fieldName))
+            // ALREADY UNMARSHALLED: DON'T OVERWRITE IT
+            continue;
+
           // GET THE FIELD VALUE
           fieldValue = field.length() > pos + 1 ? field.substring(pos + 1) : null;
 
-          boolean setFieldType = false;
-
-          // SEARCH FOR A CONFIGURED PROPERTY
-          prop = record.getSchemaClass() != null ? record.getSchemaClass().getProperty(fieldName) : null;
-          if (prop != null) {
-            // RECOGNIZED PROPERTY
-            type = prop.getType();
-            linkedClass = prop.getLinkedClass();
-            linkedType = prop.getLinkedType();
-
-          } else {
-            // SCHEMA PROPERTY NOT FOUND FOR THIS FIELD: TRY TO AUTODETERMINE THE BEST TYPE
-            type = record.fieldType(fieldName);
-            if (type != null)
-              setFieldType = true;
-            linkedClass = null;
-            linkedType = null;
-
-            // NOT FOUND: TRY TO DETERMINE THE TYPE FROM ITS CONTENT
-            if (fieldValue != null && type == null) {
-              if (fieldValue.length() > 1 && fieldValue.charAt(0) == '"' && fieldValue.charAt(fieldValue.length() - 1) == '"') {
-                type = OType.STRING;
-              } else if (fieldValue.charAt(0) == OStringSerializerHelper.LIST_BEGIN
-                  && fieldValue.charAt(fieldValue.length() - 1) == OStringSerializerHelper.LIST_END
-                  || fieldValue.charAt(0) == OStringSerializerHelper.SET_BEGIN
-                  && fieldValue.charAt(fieldValue.length() - 1) == OStringSerializerHelper.SET_END) {
-                // EMBEDDED LIST/SET
-                type = fieldValue.charAt(0) == OStringSerializerHelper.LIST_BEGIN ? OType.EMBEDDEDLIST : OType.EMBEDDEDSET;
-
-                final String value = fieldValue.substring(1, fieldValue.length() - 1);
-
-                if (!value.isEmpty()) {
-                  if (value.charAt(0) == OStringSerializerHelper.LINK) {
-                    type = fieldValue.charAt(0) == OStringSerializerHelper.LIST_BEGIN ? OType.LINKLIST : OType.LINKSET;
-                    linkedType = OType.LINK;
-
-                    // GET THE CLASS NAME IF ANY
-                    int classSeparatorPos = value.indexOf(OStringSerializerHelper.CLASS_SEPARATOR);
-                    if (classSeparatorPos > -1) {
-                      String className = value.substring(1, classSeparatorPos);
-                      if (className != null)
-                        linkedClass = ODatabaseRecordThreadLocal.INSTANCE.get().getMetadata().getSchema().getClass(className);
-                    }
-                  } else if (value.charAt(0) == OStringSerializerHelper.EMBEDDED_BEGIN) {
-                    linkedType = OType.EMBEDDED;
-                  } else if (value.charAt(0) == OStringSerializerHelper.CUSTOM_TYPE) {
-                    linkedType = OType.CUSTOM;
-                  } else if (Character.isDigit(value.charAt(0)) || value.charAt(0) == '+' || value.charAt(0) == '-') {
-                    String[] items = value.split(",");
-                    linkedType = getType(items[0]);
-                  } else if (value.charAt(0) == '\'' || value.charAt(0) == '"')
-                    linkedType = OType.STRING;
-                } else
-                  uncertainType = true;
-
-              } else if (fieldValue.charAt(0) == OStringSerializerHelper.MAP_BEGIN
-                  && fieldValue.charAt(fieldValue.length() - 1) == OStringSerializerHelper.MAP_END) {
-                type = OType.EMBEDDEDMAP;
-              } else if (fieldValue.charAt(0) == OStringSerializerHelper.LINK)
-                type = OType.LINK;
-              else if (fieldValue.charAt(0) == OStringSerializerHelper.EMBEDDED_BEGIN) {
-                // TEMPORARY PATCH
-                if (fieldValue.startsWith("(ORIDs"))
-                  type = OType.LINKSET;
-                else
-                  type = OType.EMBEDDED;
-              } else if (fieldValue.equals("true") || fieldValue.equals("false"))
-                type = OType.BOOLEAN;
-              else
-                type = getType(fieldValue);
-            }
-          }
-
-          if (setFieldType || type == OType.EMBEDDEDLIST || type == OType.EMBEDDEDSET || type == OType.EMBEDDEDMAP
-              || type == OType.EMBEDDED)
-            // SAVE THE TYPE AS EMBEDDED
-            record.field(fieldName, fieldFromStream(iRecord, type, linkedClass, linkedType, fieldName, fieldValue), type);
-          else
-            record.field(fieldName, fieldFromStream(iRecord, type, linkedClass, linkedType, fieldName, fieldValue));
-
-          if (uncertainType)
-            record.setFieldType(fieldName, null);
+          fieldFromString(record, fieldName, fieldValue);
         }
       } catch (Exception e) {
         OLogManager.instance().exception("Error on unmarshalling field '%s' in record %s with value: ", e,
@@ -521,6 +454,108 @@ public class ORecordSerializerSchemaAware2CSV extends ORecordSerializerCSVAbstra
     return iRecord;
   }
 
+  /**
+   * Deserializes value of the document field and sets it in the document. Type of the value is taken from the schema, if the field
+   * is not defined in the schema it is determined from the serialized content.
+   */
+  public void fieldFromString(final ODocument record, final String fieldName, final String fieldValue) {
+    OType type;
+    OClass linkedClass;
+    OType linkedType;
+    boolean setFieldType = false;
+    boolean uncertainType = false;
+
+    // SEARCH FOR A CONFIGURED PROPERTY
+    final OProperty prop = record.getSchemaClass() != null ? record.getSchemaClass().getProperty(fieldName) : null;
+    if (prop != null) {
+      // RECOGNIZED PROPERTY
+      type = prop.getType();
+      linkedClass = prop.getLinkedClass();
+      linkedType = prop.getLinkedType();
+
+    } else {
+      // SCHEMA PROPERTY NOT FOUND FOR THIS FIELD: TRY TO AUTODETERMINE THE BEST TYPE
+      type = record.fieldType(fieldName);
+      if (type != null)
+        setFieldType = true;
+      linkedClass = null;
+      linkedType = null;
+
+      // NOT FOUND: TRY TO DETERMINE THE TYPE FROM ITS CONTENT
+      if (fieldValue != null && type == null) {
+        if (fieldValue.length() > 1 && fieldValue.charAt(0) == '"' && fieldValue.charAt(fieldValue.length() - 1) == '"') {
+          type = OType.STRING;
+        } else if (fieldValue.charAt(0) == OStringSerializerHelper.LIST_BEGIN
+            && fieldValue.charAt(fieldValue.length() - 1) == OStringSerializerHelper.LIST_END
+            || fieldValue.charAt(0) == OStringSerializerHelper.SET_BEGIN
+            && fieldValue.charAt(fieldValue.length() - 1) == OStringSerializerHelper.SET_END) {
+          // EMBEDDED LIST/SET
+          type = fieldValue.charAt(0) == OStringSerializerHelper.LIST_BEGIN ? OType.EMBEDDEDLIST : OType.EMBEDDEDSET;
+
+          final String value = fieldValue.substring(1, fieldValue.length() - 1);
+
+          if (!value.isEmpty()) {
+            if (value.charAt(0) == OStringSerializerHelper.LINK) {
+              type = fieldValue.charAt(0) == OStringSerializerHelper.LIST_BEGIN ? OType.LINKLIST : OType.LINKSET;
+              linkedType = OType.LINK;
+
+              // GET THE CLASS NAME IF ANY
+              int classSeparatorPos = value.indexOf(OStringSerializerHelper.CLASS_SEPARATOR);
+              if (classSeparatorPos > -1) {
+                String className = value.substring(1, classSeparatorPos);
+                if (className != null)
+                  linkedClass = ODatabaseRecordThreadLocal.INSTANCE.get().getMetadata().getSchema().getClass(className);
+              }
+            } else if (value.charAt(0) == OStringSerializerHelper.EMBEDDED_BEGIN) {
+              linkedType = OType.EMBEDDED;
+            } else if (value.charAt(0) == OStringSerializerHelper.CUSTOM_TYPE) {
+              linkedType = OType.CUSTOM;
+            } else if (Character.isDigit(value.charAt(0)) || value.charAt(0) == '+' || value.charAt(0) == '-') {
+              String[] items = value.split(",");
+              linkedType = getType(items[0]);
+            } else if (value.charAt(0) == '\'' || value.charAt(0) == '"')
+              linkedType = OType.STRING;
+          } else
+            uncertainType = true;
+
+        } else if (fieldValue.charAt(0) == OStringSerializerHelper.MAP_BEGIN
+            && fieldValue.charAt(fieldValue.length() - 1) == OStringSerializerHelper.MAP_END) {
+          type = OType.EMBEDDEDMAP;
+        } else if (fieldValue.charAt(0) == OStringSerializerHelper.LINK)
+          type = OType.LINK;
+        else if (fieldValue.charAt(0) == OStringSerializerHelper.EMBEDDED_BEGIN) {
+          // TEMPORARY PATCH
+          if (fieldValue.startsWith("(ORIDs"))
+            type = OType.LINKSET;
+          else
+            type = OType.EMBEDDED;
+        } else if (fieldValue.equals("true") || fieldValue.equals("false"))
+          type = OType.BOOLEAN;
+        else
+          type = getType(fieldValue);
+      }
+    }
+
+    if (setFieldType || type == OType.EMBEDDEDLIST || type == OType.EMBEDDEDSET || type == OType.EMBEDDEDMAP
+        || type == OType.EMBEDDED)
+      // SAVE THE TYPE AS EMBEDDED
+      record.field(fieldName, fieldFromStream(record, type, linkedClass, linkedType, fieldName, fieldValue), type);
+    else
+      record.field(fieldName, fieldFromStream(record, type, linkedClass, linkedType, fieldName, fieldValue));
+
+    if (uncertainType)
+      record.setFieldType(fieldName, null);
+  }
+
+  @Override
+  public ORecordInternal<?> fromStream(final byte[] iSource, final ORecordInternal<?> iRecord, final String[] iFields) {
+    if (ORecordSerializerBinary.isBinaryFormat(iSource))
+      // RECORD WAS WRITTEN BY THE DATABASE WHICH USES BINARY FORMAT
+      return ORecordSerializerBinary.INSTANCE.fromStream(iSource, iRecord, iFields);
+
+    return super.fromStream(iSource, iRecord, iFields);
+  }
+
   @Override
   public byte[] toStream(ORecordInternal<?> iRecord, boolean iOnlyDelta) {
     final byte[] result = super.toStream(iRecord, iOnlyDelta);
@@ -48,6 +48,13 @@ public class OCommandExecutorSQLExplain extends OCommandExecutorSQLDelegate {
 
 		report.field("elapsed", (System.nanoTime() - startTime) / 1000000000f);
 
+		if (report.containsField("plan")) {
+			// RECORDS ACTUALLY FETCHED BY THE CHOSEN PLAN, TO COMPARE WITH THE ESTIMATED ONES
+			final Object actualRecords = report.field(OCommandExecutorSQLSelect.PLAN_FULL_SCAN.equals(report.field("plan")) ? "recordReads"
+					: "indexReads");
+			report.field("actualRecords", actualRecords != null ? actualRecords : 0);
+		}
+
 		if (result instanceof Collection<?>) {
 			report.field("resultType", "collection");
 			report.field("resultSize", ((Collection<?>) result).size());
@@ -25,6 +25,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import com.orientechnologies.orient.core.command.OCommandContext;
 import com.orientechnologies.orient.core.command.OCommandRequest;
 import com.orientechnologies.orient.core.command.OCommandRequestText;
 import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
@@ -164,7 +165,9 @@ public abstract class OCommandExecutorSQLResultsetAbstract extends OCommandExecu
             // NON-DOCUMENT AS RESULT, COMES FROM EXPAND? CREATE A DOCUMENT AT THE FLY
             d = new ODocument().field("value", d);
 
-          request.getResultListener().result(d);
+          if (!request.getResultListener().result(d))
+            // STOPPED BY THE LISTENER
+            break;
         }
     }
 
@@ -183,7 +186,9 @@ public abstract class OCommandExecutorSQLResultsetAbstract extends OCommandExecu
       if (recordCopy != null)
         // CALL THE LISTENER NOW
         if (request.getResultListener() != null)
-          request.getResultListener().result(recordCopy);
+          if (!request.getResultListener().result(recordCopy))
+            // STOPPED BY THE LISTENER
+            return false;
 
       if (limit > -1 && resultCount >= limit)
         // BREAK THE EXECUTION
@@ -285,7 +290,15 @@ public abstract class OCommandExecutorSQLResultsetAbstract extends OCommandExecu
   }
 
   protected boolean filter(final ORecordInternal<?> iRecord) {
-    context.setVariable("current", iRecord);
+    return filter(iRecord, context);
+  }
+
+  /**
+   * Filters the record evaluating the condition against the passed context. Used by threads of parallel scan which can not share the
+   * context of the command.
+   */
+  protected boolean filter(final ORecordInternal<?> iRecord, final OCommandContext iContext) {
+    iContext.setVariable("current", iRecord);
 
     if (iRecord instanceof ORecordSchemaAware<?>) {
       // CHECK THE TARGET CLASS
@@ -297,18 +310,22 @@ public abstract class OCommandExecutorSQLResultsetAbstract extends OCommandExecu
           if (!targetClass.isSuperClassOf(recordSchemaAware.getSchemaClass()))
             return false;
         }
-        context.updateMetric("documentAnalyzedCompatibleClass", +1);
+        iContext.updateMetric("documentAnalyzedCompatibleClass", +1);
       }
     }
 
-    return evaluateRecord(iRecord);
+    return evaluateRecord(iRecord, iContext);
   }
 
   protected boolean evaluateRecord(final ORecord<?> iRecord) {
+    return evaluateRecord(iRecord, context);
+  }
+
+  protected boolean evaluateRecord(final ORecord<?> iRecord, final OCommandContext iContext) {
     assignLetClauses(iRecord);
     if (compiledFilter == null)
       return true;
-    return (Boolean) compiledFilter.evaluate(iRecord, null, context);
+    return (Boolean) compiledFilter.evaluate(iRecord, null, iContext);
   }
 
   protected void assignLetClauses(final ORecord<?> iRecord) {
@@ -410,6 +427,16 @@ public abstract class OCommandExecutorSQLResultsetAbstract extends OCommandExecu
 
         t.clear();
         tempResult = newList;
+      } else {
+        // BROWSE THE RESULT ONLY TILL THE LIMIT: IT COULD BE READ FROM TEMPORARY FILES
+        int i = 0;
+        for (OIdentifiable o : tempResult) {
+          if (limit > -1 && i >= skip + limit)
+            break;
+          if (i++ >= skip)
+            newList.add(o);
+        }
+        tempResult = newList;
       }
     }
   }
@@ -15,8 +15,8 @@
  */
 package com.orientechnologies.orient.core.sql;
 
-import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -37,14 +37,19 @@ import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.common.util.OPair;
 import com.orientechnologies.orient.core.command.OBasicCommandContext;
 import com.orientechnologies.orient.core.command.OCommandRequest;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.exception.OCommandExecutionException;
 import com.orientechnologies.orient.core.exception.OQueryParsingException;
+import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.index.OCompositeIndexDefinition;
 import com.orientechnologies.orient.core.index.OIndex;
 import com.orientechnologies.orient.core.index.OIndexDefinition;
 import com.orientechnologies.orient.core.index.OIndexInternal;
+import com.orientechnologies.orient.core.index.OIndexManager;
+import com.orientechnologies.orient.core.index.OIndexStatistics;
+import com.orientechnologies.orient.core.iterator.ORecordIteratorClusters;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.metadata.schema.OProperty;
 import com.orientechnologies.orient.core.metadata.security.ODatabaseSecurityResources;
@@ -58,6 +63,7 @@ import com.orientechnologies.orient.core.sql.filter.OSQLFilterCondition;
 import com.orientechnologies.orient.core.sql.filter.OSQLFilterItem;
 import com.orientechnologies.orient.core.sql.filter.OSQLFilterItemField;
 import com.orientechnologies.orient.core.sql.filter.OSQLFilterItemVariable;
+import com.orientechnologies.orient.core.sql.filter.OSQLPredicate;
 import com.orientechnologies.orient.core.sql.functions.OSQLFunctionRuntime;
 import com.orientechnologies.orient.core.sql.functions.coll.OSQLFunctionDistinct;
 import com.orientechnologies.orient.core.sql.functions.misc.OSQLFunctionCount;
@@ -73,6 +79,7 @@ import com.orientechnologies.orient.core.sql.operator.OQueryOperatorMinor;
 import com.orientechnologies.orient.core.sql.operator.OQueryOperatorMinorEquals;
 import com.orientechnologies.orient.core.sql.operator.OQueryOperatorOr;
 import com.orientechnologies.orient.core.storage.OStorage;
+import com.orientechnologies.orient.core.storage.OStorageEmbedded;
 import com.orientechnologies.orient.core.type.tree.OMVRBTreeRIDSet;
 
 /**
@@ -92,6 +99,7 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
   public static final String          KEYWORD_BY                        = "BY";
   public static final String          KEYWORD_GROUP                     = "GROUP";
   private static final int            MIN_THRESHOLD_USE_INDEX_AS_TARGET = 100;
+  public static final String          PLAN_FULL_SCAN                    = "fullScan";
 
   private Map<String, String>         projectionDefinition              = null;
   private Map<String, Object>         projections                       = null;    // THIS HAS BEEN KEPT FOR COMPATIBILITY; BUT
@@ -100,11 +108,13 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
                                                                                     // PROJECTIONS IN GROUPED-RESULTS
   private List<OPair<String, String>> orderedFields;
   private List<String>                groupByFields;
-  private Map<Object, ORuntimeResult> groupedResult;
+  private OGroupByAggregator          groupedResult;
   private Object                      expandTarget;
   private int                         fetchLimit                        = -1;
   private OIdentifiable               lastRecord;
   private Iterator<OIdentifiable>     subIterator;
+  private OOrderBySorter              sorter;
+  private Set<String>                 prefetchFields;
 
   /**
    * Compile the filter conditions only the first time.
@@ -164,6 +174,9 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
         }
       }
     }
+
+    computePrefetchFieldList();
+
     if (limit == 0 || limit < -1) {
       throw new IllegalArgumentException("Limit must be > 0 or = -1 (no limit)");
     }
@@ -342,10 +355,14 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
       return;
     }
 
-    // BROWSE ALL THE RECORDS
-    while (target.hasNext())
-      if (!executeSearchRecord(target.next()))
-        break;
+    final OParallelClusterScan scan = createParallelScan();
+    if (scan != null)
+      executeParallelSearch(scan);
+    else
+      // BROWSE ALL THE RECORDS
+      while (target.hasNext())
+        if (!executeSearchRecord(target.next()))
+          break;
 
     if (request.getResultListener() != null)
       request.getResultListener().end();
@@ -363,6 +380,56 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
     return true;
   }
 
+  /**
+   * Returns the parallel scan of the target clusters, or null if the query must be executed by the current thread: the target is not
+   * a set of clusters, the clusters are too small, the condition can not be evaluated by several threads or the records could
+   * differ from the ones visible to the current transaction.
+   */
+  protected OParallelClusterScan createParallelScan() {
+    final int threads = OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.getValueAsInteger();
+    if (threads < 2 || !(target instanceof ORecordIteratorClusters<?>) || let != null)
+      return null;
+
+    if (compiledFilter != null && !OParallelClusterScan.isThreadSafe(compiledFilter.getRootCondition()))
+      return null;
+
+    final ORID[] range = getRange();
+    if (range[0] != null || range[1] != null)
+      return null;
+
+    final ODatabaseRecord database = getDatabase();
+    if (!(database.getStorage() instanceof OStorageEmbedded) || database.getTransaction().isActive())
+      return null;
+
+    final int[] clusterIds = ((ORecordIteratorClusters<?>) target).getClusterIds();
+    if (database.countClusterElements(clusterIds) < OGlobalConfiguration.QUERY_PARALLEL_SCAN_MIN_RECORDS.getValueAsLong())
+      return null;
+
+    return new OParallelClusterScan(this, database, clusterIds, threads, request.isUseCache());
+  }
+
+  protected void executeParallelSearch(final OParallelClusterScan iScan) {
+    try {
+      while (iScan.hasNext()) {
+        if (Thread.interrupted())
+          throw new OCommandExecutionException("The select execution has been interrupted");
+
+        if (!context.checkTimeout())
+          break;
+
+        final OIdentifiable record = iScan.next();
+        context.setVariable("current", record);
+        if (!handleResult(record, true))
+          // END OF EXECUTION
+          break;
+      }
+    } finally {
+      iScan.close();
+      context.updateMetric("recordReads", iScan.getRecordReads());
+      context.updateMetric("documentReads", iScan.getDocumentReads());
+    }
+  }
+
   protected boolean executeSearchRecord(final OIdentifiable id) {
     if (Thread.interrupted())
       throw new OCommandExecutionException("The select execution has been interrupted");
@@ -403,7 +470,9 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
     
     resultCount++;
 
-    addResult(lastRecord);
+    if (!addResult(lastRecord))
+      // STOPPED BY THE LISTENER
+      return false;
 
     if (orderedFields == null && fetchLimit > -1 && resultCount >= fetchLimit)
       // BREAK THE EXECUTION
@@ -412,16 +481,19 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
     return true;
   }
 
-  protected void addResult(OIdentifiable iRecord) {
+  /**
+   * @return false if the result listener asked to stop the execution
+   */
+  protected boolean addResult(OIdentifiable iRecord) {
     if (iRecord == null)
-      return;
+      return true;
 
     if (projections != null || groupByFields != null && !groupByFields.isEmpty()) {
       if (groupedResult == null) {
         // APPLY PROJECTIONS IN LINE
         iRecord = ORuntimeResult.getProjectionResult(resultCount, projections, context, iRecord);
         if (iRecord == null)
-          return;
+          return true;
       } else {
         // AGGREGATION/GROUP BY
         final ODocument doc = (ODocument) iRecord.getRecord();
@@ -450,14 +522,19 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
         }
 
         getProjectionGroup(fieldValue).applyRecord(iRecord);
-        return;
+        groupedResult.checkMemory();
+        return true;
       }
     }
 
     if (orderedFields == null && expandTarget == null) {
       // SEND THE RESULT INLINE
       if (request.getResultListener() != null)
-        request.getResultListener().result(iRecord);
+        return request.getResultListener().result(iRecord);
+
+    } else if (expandTarget == null) {
+      // ORDER BY: THE SORTER KEEPS ONLY WHAT IS NEEDED
+      getSorter().add(iRecord);
 
     } else {
 
@@ -466,43 +543,15 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
         tempResult = new ArrayList<OIdentifiable>();
       ((Collection<OIdentifiable>) tempResult).add(iRecord);
     }
+
+    return true;
   }
 
   protected ORuntimeResult getProjectionGroup(final Object fieldValue) {
-    ORuntimeResult group = null;
-
     if (groupedResult == null)
-      groupedResult = new LinkedHashMap<Object, ORuntimeResult>();
-    else {
-      if (fieldValue != null && fieldValue.getClass().isArray()) {
-        // SEQUENTIAL SCAN
-        final int arraySize = Array.getLength(fieldValue);
-        for (Entry<Object, ORuntimeResult> entry : groupedResult.entrySet()) {
-          final Object k = entry.getKey();
-
-          boolean same = false;
-
-          if (k != null && k.getClass().isArray() && Array.getLength(k) == arraySize) {
-            same = true;
-            for (int i = 0; i < arraySize; ++i) {
-              final Object o1 = Array.get(k, i);
-              final Object o2 = Array.get(fieldValue, i);
-
-              if (o1 == null && o2 != null || o1 != null && o2 == null || o1 != null && !o1.equals(o2)) {
-                same = false;
-                break;
-              }
-            }
-          }
-
-          if (same)
-            group = entry.getValue();
-        }
-      } else
-        // LOKUP FOR THE FIELD
-        group = groupedResult.get(fieldValue);
-    }
+      groupedResult = new OGroupByAggregator(OGlobalConfiguration.QUERY_GROUPBY_MEMORY.getValueAsLong());
 
+    ORuntimeResult group = groupedResult.get(fieldValue);
     if (group == null) {
       group = new ORuntimeResult(createProjectionFromDefinition(), resultCount, context);
       groupedResult.put(fieldValue, group);
@@ -633,6 +682,7 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
     });
 
     // go through all variants to choose which one can be used for index search.
+    final List<IndexCandidate> candidates = new ArrayList<IndexCandidate>();
     for (final OIndexSearchResult searchResult : indexSearchResults) {
       final List<OIndex<?>> involvedIndexes = getInvolvedIndexes(iSchemaClass, searchResult);
       Collections.sort(involvedIndexes, IndexComparator.INSTANCE);
@@ -662,48 +712,184 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
             keyParams.add(searchResult.lastValue);
         }
 
-        INDEX_OPERATION_TYPE opType = null;
+        candidates.add(new IndexCandidate(searchResult, index, keyParams));
+      }
+    }
 
-        if (context.isRecordingMetrics()) {
-          Set<String> idxNames = (Set<String>) context.getVariable("involvedIndexes");
-          if (idxNames == null) {
-            idxNames = new HashSet<String>();
-            context.setVariable("involvedIndexes", idxNames);
-          }
-          idxNames.add(index.getName());
-        }
+    if (candidates.isEmpty())
+      return false;
 
-        if (projections != null && projections.size() == 1) {
-          final Object v = projections.values().iterator().next();
-          if (v instanceof OSQLFunctionRuntime && ((OSQLFunctionRuntime) v).getFunction() instanceof OSQLFunctionCount) {
-            if (!(compiledFilter.getRootCondition().getLeft() instanceof OSQLFilterCondition || compiledFilter.getRootCondition()
-                .getRight() instanceof OSQLFilterCondition))
-              // OPTIMIZATION: JUST COUNT IT
-              opType = INDEX_OPERATION_TYPE.COUNT;
-          }
-        }
+    INDEX_OPERATION_TYPE opType = INDEX_OPERATION_TYPE.GET;
+    if (projections != null && projections.size() == 1) {
+      final Object v = projections.values().iterator().next();
+      if (v instanceof OSQLFunctionRuntime && ((OSQLFunctionRuntime) v).getFunction() instanceof OSQLFunctionCount) {
+        if (!(compiledFilter.getRootCondition().getLeft() instanceof OSQLFilterCondition || compiledFilter.getRootCondition()
+            .getRight() instanceof OSQLFilterCondition))
+          // OPTIMIZATION: JUST COUNT IT
+          opType = INDEX_OPERATION_TYPE.COUNT;
+      }
+    }
 
-        if (opType == null)
-          opType = INDEX_OPERATION_TYPE.GET;
+    if (opType == INDEX_OPERATION_TYPE.GET) {
+      final List<IndexCandidate> plan = planByCost(iSchemaClass, candidates);
+      if (plan != null) {
+        if (plan.isEmpty())
+          // A FULL SCAN IS CHEAPER THAN ANY USAGE OF THE INDEXES
+          return false;
 
-        Object result = operator.executeIndexQuery(context, index, opType, keyParams, fetchLimit);
-        if (result == null)
-          continue;
+        if (plan.size() == 2 && searchInIndexIntersection(plan.get(0), plan.get(1)))
+          return true;
+      }
+    }
 
-        if (opType == INDEX_OPERATION_TYPE.COUNT) {
-          // OPTIMIZATION: EMBED THE RESULT IN A DOCUMENT AND AVOID THE CLASSIC PATH
-          final String projName = projectionDefinition.keySet().iterator().next();
-          projectionDefinition.clear();
-          getProjectionGroup(null).applyValue(projName, result);
-        } else
-          fillSearchIndexResultSet(result);
+    // CANDIDATES ARE SORTED BY COST WHEN STATISTICS ARE AVAILABLE
+    for (final IndexCandidate candidate : candidates) {
+      addInvolvedIndex(candidate.index);
 
-        return true;
-      }
+      final Object result = candidate.searchResult.lastOperator.executeIndexQuery(context, candidate.index, opType,
+          candidate.keyParams, fetchLimit);
+      if (result == null)
+        continue;
+
+      if (opType == INDEX_OPERATION_TYPE.COUNT) {
+        // OPTIMIZATION: EMBED THE RESULT IN A DOCUMENT AND AVOID THE CLASSIC PATH
+        final String projName = projectionDefinition.keySet().iterator().next();
+        projectionDefinition.clear();
+        getProjectionGroup(null).applyValue(projName, result);
+      } else
+        fillSearchIndexResultSet(result);
+
+      return true;
     }
     return false;
   }
 
+  /**
+   * Estimates the cost of every candidate index using the index statistics and sorts the candidates by cost. Returns the cheapest
+   * plan: one candidate for an index lookup, two candidates for the intersection of their results or an empty list if the full
+   * scan of the class is cheaper. Returns null when the cost can't be estimated: in this case the first usable index is taken.
+   */
+  private List<IndexCandidate> planByCost(final OClass iSchemaClass, final List<IndexCandidate> iCandidates) {
+    if (!OGlobalConfiguration.QUERY_INDEX_STATISTICS.getValueAsBoolean())
+      return null;
+
+    final long records = iSchemaClass.count();
+    if (records < OGlobalConfiguration.QUERY_INDEX_STATISTICS_MIN_RECORDS.getValueAsLong())
+      return null;
+
+    final OIndexManager indexManager = getDatabase().getMetadata().getIndexManager();
+    for (final IndexCandidate candidate : iCandidates) {
+      if (candidate.index instanceof OIndexProxy)
+        // INDEXES OF LINKED CLASSES: THE STATISTICS DON'T REFER TO THIS CLASS
+        return null;
+
+      final OIndexStatistics statistics = indexManager.getIndexStatistics(candidate.index);
+      if (statistics == null)
+        return null;
+
+      final OQueryOperator operator = candidate.searchResult.lastOperator;
+      if (!OIndexCostModel.canBeUsed(candidate.index, operator))
+        continue;
+
+      candidate.lookups = OIndexCostModel.getLookups(operator, candidate.keyParams);
+      candidate.estimatedEntries = OIndexCostModel.estimateEntries(statistics, candidate.index, operator, candidate.keyParams);
+      candidate.cost = OIndexCostModel.getIndexCost(candidate.estimatedEntries, candidate.lookups);
+    }
+
+    Collections.sort(iCandidates);
+
+    final IndexCandidate best = iCandidates.get(0);
+    List<IndexCandidate> plan = Collections.singletonList(best);
+    double planCost = best.cost;
+    double planEntries = best.estimatedEntries;
+
+    for (int i = 1; i < iCandidates.size() && best.cost < Double.MAX_VALUE; ++i) {
+      final IndexCandidate candidate = iCandidates.get(i);
+      if (candidate.cost == Double.MAX_VALUE)
+        break;
+      if (candidate.index.getName().equals(best.index.getName()))
+        continue;
+
+      final double cost = OIndexCostModel.getIntersectionCost(best.estimatedEntries, best.lookups, candidate.estimatedEntries,
+          candidate.lookups, records);
+      if (cost < planCost) {
+        plan = Arrays.asList(best, candidate);
+        planCost = cost;
+        planEntries = OIndexCostModel.getIntersectionEntries(best.estimatedEntries, candidate.estimatedEntries, records);
+      }
+    }
+
+    final double fullScanCost = OIndexCostModel.getFullScanCost(records);
+    if (fullScanCost <= planCost) {
+      plan = Collections.emptyList();
+      planCost = fullScanCost;
+      planEntries = records;
+    }
+
+    if (context.isRecordingMetrics()) {
+      if (plan.isEmpty())
+        context.setVariable("plan", PLAN_FULL_SCAN);
+      else if (plan.size() == 1)
+        context.setVariable("plan", "index:" + best.index.getName());
+      else
+        context.setVariable("plan", "intersection:" + plan.get(0).index.getName() + "," + plan.get(1).index.getName());
+
+      context.setVariable("estimatedRecords", (long) Math.ceil(planEntries));
+      context.setVariable("planCost", (long) Math.ceil(planCost));
+      context.setVariable("fullScanCost", (long) Math.ceil(fullScanCost));
+    }
+
+    return plan;
+  }
+
+  /**
+   * Fetches only the records returned by both the indexes. The smaller result is kept in memory to look up the RIDs of the other.
+   */
+  private boolean searchInIndexIntersection(final IndexCandidate iFirst, final IndexCandidate iSecond) {
+    addInvolvedIndex(iFirst.index);
+    final Object firstResult = iFirst.searchResult.lastOperator.executeIndexQuery(context, iFirst.index,
+        INDEX_OPERATION_TYPE.GET, iFirst.keyParams, -1);
+    if (!(firstResult instanceof Collection<?>))
+      return false;
+
+    addInvolvedIndex(iSecond.index);
+    final Object secondResult = iSecond.searchResult.lastOperator.executeIndexQuery(context, iSecond.index,
+        INDEX_OPERATION_TYPE.GET, iSecond.keyParams, -1);
+    if (!(secondResult instanceof Collection<?>))
+      return false;
+
+    Collection<OIdentifiable> smaller = (Collection<OIdentifiable>) firstResult;
+    Collection<OIdentifiable> larger = (Collection<OIdentifiable>) secondResult;
+    if (smaller.size() > larger.size()) {
+      final Collection<OIdentifiable> swap = smaller;
+      smaller = larger;
+      larger = swap;
+    }
+
+    final Set<ORID> rids = new HashSet<ORID>(smaller.size());
+    for (OIdentifiable identifiable : smaller)
+      rids.add(identifiable.getIdentity());
+
+    final List<OIdentifiable> result = new ArrayList<OIdentifiable>();
+    for (OIdentifiable identifiable : larger)
+      if (rids.remove(identifiable.getIdentity()))
+        result.add(identifiable);
+
+    fillSearchIndexResultSet(result);
+    return true;
+  }
+
+  private void addInvolvedIndex(final OIndex<?> iIndex) {
+    if (context.isRecordingMetrics()) {
+      Set<String> idxNames = (Set<String>) context.getVariable("involvedIndexes");
+      if (idxNames == null) {
+        idxNames = new HashSet<String>();
+        context.setVariable("involvedIndexes", idxNames);
+      }
+      idxNames.add(iIndex.getName());
+    }
+  }
+
   private static List<OIndex<?>> getInvolvedIndexes(OClass iSchemaClass, OIndexSearchResult searchResultFields) {
     final Set<OIndex<?>> involvedIndexes = iSchemaClass.getInvolvedIndexes(searchResultFields.fields());
 
@@ -821,6 +1007,8 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
           }
         }
       } else {
+        context.updateMetric("indexReads", 1);
+
         final ORecord<?> record = ((OIdentifiable) indexResult).getRecord();
         if (filter((ORecordInternal<?>) record))
           handleResult(record, true);
@@ -940,11 +1128,51 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
     final Map<String, Object> projections = new LinkedHashMap<String, Object>(projectionDefinition.size());
     for (Entry<String, String> p : projectionDefinition.entrySet()) {
       final Object projectionValue = OSQLHelper.parseValue(this, p.getValue(), context);
+      if (prefetchFields != null)
+        OSQLPredicate.addPrefetchField(projectionValue, prefetchFields);
       projections.put(p.getKey(), projectionValue);
     }
     return projections;
   }
 
+  /**
+   * Collects the fields used by the projections and the ORDER BY and GROUP BY clauses in one set shared by the projection items, so
+   * the first access to the record unmarshalls only these fields in one pass instead of the entire record. The condition keeps own
+   * set to avoid unmarshalling of projected fields of records which are filtered out.
+   */
+  protected void computePrefetchFieldList() {
+    prefetchFields = new HashSet<String>();
+
+    if (projections != null)
+      for (Object p : projections.values())
+        OSQLPredicate.addPrefetchField(p, prefetchFields);
+
+    if (orderedFields != null)
+      for (OPair<String, String> field : orderedFields)
+        addPrefetchField(field.getKey());
+
+    if (groupByFields != null)
+      for (String field : groupByFields)
+        addPrefetchField(field);
+  }
+
+  private void addPrefetchField(final String iFieldName) {
+    if (iFieldName.startsWith("@") || projections != null && projections.containsKey(iFieldName))
+      // ATTRIBUTE OR ALIAS OF PROJECTION
+      return;
+
+    // GET THE ROOT FIELD OF "FIELD.SUBFIELD" AND "FIELD[INDEX]"
+    int pos = iFieldName.length();
+    final int pos1 = iFieldName.indexOf('.');
+    final int pos2 = iFieldName.indexOf('[');
+    if (pos1 > -1)
+      pos = pos1;
+    if (pos2 > -1 && pos2 < pos)
+      pos = pos2;
+
+    prefetchFields.add(iFieldName.substring(0, pos));
+  }
+
   protected int extractProjectionNameSubstringEndPosition(final String projection) {
     int endPos;
     final int pos1 = projection.indexOf('.');
@@ -974,17 +1202,48 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
     if (orderedFields == null)
       return;
 
-    if (tempResult instanceof OMultiCollectionIterator) {
-      final List<OIdentifiable> list = new ArrayList<OIdentifiable>();
-      for (OIdentifiable o : tempResult)
-        list.add(o);
-      tempResult = list;
+    if (sorter == null) {
+      // RECORDS HAVE BEEN COLLECTED BY EXPAND OR GROUP BY
+      final OOrderBySorter s = getSorter();
+      if (tempResult != null)
+        for (OIdentifiable o : tempResult)
+          s.add(o);
     }
 
-    ODocumentHelper.sort((List<? extends OIdentifiable>) tempResult, orderedFields);
+    tempResult = sorter.sort();
     orderedFields.clear();
   }
 
+  private OOrderBySorter getSorter() {
+    if (sorter == null)
+      sorter = new OOrderBySorter(orderedFields, skip, limit, OGlobalConfiguration.QUERY_SORT_MEMORY.getValueAsLong());
+    return sorter;
+  }
+
+  @Override
+  protected void applyLimitAndSkip() {
+    if (sorter != null)
+      // ALREADY APPLIED BY THE SORTER
+      return;
+
+    super.applyLimitAndSkip();
+  }
+
+  @Override
+  protected Object getResult() {
+    try {
+      return super.getResult();
+    } finally {
+      if (sorter != null) {
+        // REMOVE THE TEMPORARY FILES IF THE RESULT HAS NOT BEEN BROWSED TILL THE END
+        sorter.close();
+        sorter = null;
+      }
+      if (groupedResult != null)
+        groupedResult.close();
+    }
+  }
+
   /**
    * Extract the content of collections and/or links and put it as result
    */
@@ -1244,17 +1503,9 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
   }
 
   private void handleGroupBy() {
-    if (groupedResult != null && tempResult == null) {
-      tempResult = new ArrayList<OIdentifiable>();
-
-      for (Entry<Object, ORuntimeResult> g : groupedResult.entrySet()) {
-        if (g.getKey() != null || (groupedResult.size() == 1 && groupByFields == null)) {
-          final ODocument doc = g.getValue().getResult();
-          if (doc != null && !doc.isEmpty())
-            ((List<OIdentifiable>) tempResult).add(doc);
-        }
-      }
-    }
+    if (groupedResult != null && tempResult == null)
+      // THE GROUP OF NULL KEY IS RETURNED ONLY BY AGGREGATIONS WITHOUT GROUP BY
+      tempResult = groupedResult.getResult(groupByFields == null);
   }
 
   private static boolean checkIndexExistence(final OClass iSchemaClass, final OIndexSearchResult result) {
@@ -1328,14 +1579,7 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
                   else
                     target = (Iterator<? extends OIdentifiable>) idx.valuesInverseIterator();
 
-                  if (context.isRecordingMetrics()) {
-                    Set<String> idxNames = (Set<String>) context.getVariable("involvedIndexes");
-                    if (idxNames == null) {
-                      idxNames = new HashSet<String>();
-                      context.setVariable("involvedIndexes", idxNames);
-                    }
-                    idxNames.add(idx.getName());
-                  }
+                  addInvolvedIndex(idx);
 
                   orderedFields = null;
 
@@ -1352,11 +1596,43 @@ public class OCommandExecutorSQLSelect extends OCommandExecutorSQLResultsetAbstr
     return false;
   }
 
+  private static class IndexCandidate implements Comparable<IndexCandidate> {
+    private final OIndexSearchResult searchResult;
+    private final OIndex<?>          index;
+    private final List<Object>       keyParams;
+    private int                      lookups          = 1;
+    private double                   estimatedEntries = Double.MAX_VALUE;
+    private double                   cost             = Double.MAX_VALUE;
+
+    private IndexCandidate(final OIndexSearchResult iSearchResult, final OIndex<?> iIndex, final List<Object> iKeyParams) {
+      searchResult = iSearchResult;
+      index = iIndex;
+      keyParams = iKeyParams;
+    }
+
+    public int compareTo(final IndexCandidate o) {
+      return Double.compare(cost, o.cost);
+    }
+  }
+
   private static class IndexComparator implements Comparator<OIndex<?>> {
     private static final IndexComparator INSTANCE = new IndexComparator();
 
     public int compare(final OIndex<?> indexOne, final OIndex<?> indexTwo) {
-      return indexOne.getDefinition().getParamCount() - indexTwo.getDefinition().getParamCount();
+      final int result = indexOne.getDefinition().getParamCount() - indexTwo.getDefinition().getParamCount();
+      if (result != 0)
+        return result;
+
+      // HASH INDEXES ARE CHECKED FIRST: THEY ARE FASTER FOR EQUALITY LOOKUPS AND SKIPPED BY RANGE OPERATORS
+      return rangeOrder(indexOne) - rangeOrder(indexTwo);
+    }
+
+    private static int rangeOrder(final OIndex<?> index) {
+      final OIndexInternal<?> internalIndex = index.getInternal();
+      if (internalIndex == null || internalIndex.canBeUsedInRangeOperators())
+        return 1;
+
+      return 0;
     }
   }
 }
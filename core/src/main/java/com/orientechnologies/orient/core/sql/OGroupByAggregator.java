@@ -0,0 +1,413 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.functions.OSQLFunction;
+import com.orientechnologies.orient.core.sql.functions.OSQLFunctionAbstract;
+import com.orientechnologies.orient.core.sql.functions.OSQLFunctionRuntime;
+
+/**
+ * Keeps the groups of GROUP BY in a hash table. Multi-field keys are compared as lists, so each record finds its group in constant
+ * time.
+ * 
+ * When the estimated memory of the groups exceeds the budget and all the aggregate functions can merge partial results (count, sum,
+ * min, max and avg), the groups are written to temporary files partitioned by hash of the key and removed from memory. When the
+ * result is browsed the partitions are read one by one and the partial results of the same key are merged, so memory is needed only
+ * for the groups of one partition. Groups are returned in order of first occurrence inside each partition.
+ * 
+ * Temporary files are removed when the result is browsed till the end or by {@link #close()}.
+ * 
+ * @since 17.10.13
+ */
+public class OGroupByAggregator {
+  // ESTIMATED HEAP USAGE OF A GROUP, OF EACH OF ITS PROJECTIONS AND OF EACH PART OF THE KEY
+  private static final int                 GROUP_OVERHEAD      = 256;
+  private static final int                 PROJECTION_OVERHEAD = 256;
+  private static final int                 KEY_OVERHEAD        = 64;
+  private static final int                 PARTITIONS          = 16;
+
+  private static final String              KEY                 = "key";
+  private static final String              PROGRESSIVE         = "progressive";
+  private static final String              VALUES              = "values";
+  private static final String              PARTIALS            = "partials";
+
+  private final long                       memoryBudget;
+  private Map<Object, ORuntimeResult>      groups              = new LinkedHashMap<Object, ORuntimeResult>();
+  private long                             groupsMemory;
+
+  private Boolean                          mergeable;
+  private Map<String, OSQLFunction>        functions;
+  private File[]                           partitionFiles;
+  private DataOutputStream[]               partitionStreams;
+  private int[]                            partitionSizes;
+  private int                              spilledGroups;
+
+  /**
+   * @param iMemoryBudget
+   *          Estimated memory in bytes available to keep groups, when exceeded groups are written to temporary files. Not positive
+   *          value means no limit.
+   */
+  public OGroupByAggregator(final long iMemoryBudget) {
+    memoryBudget = iMemoryBudget;
+  }
+
+  /**
+   * Returns the group of the key, or null if the key has not been found yet. Arrays are used as multi-field keys.
+   */
+  public ORuntimeResult get(final Object iKey) {
+    return groups.get(normalizeKey(iKey));
+  }
+
+  public void put(final Object iKey, final ORuntimeResult iGroup) {
+    final Object key = normalizeKey(iKey);
+    groups.put(key, iGroup);
+    groupsMemory += GROUP_OVERHEAD + PROJECTION_OVERHEAD * iGroup.getProjections().size()
+        + KEY_OVERHEAD * (key instanceof Collection<?> ? ((Collection<?>) key).size() : 1);
+  }
+
+  /**
+   * Writes the groups to temporary files if their estimated memory exceeds the budget. Must be called after the record has been
+   * applied to its group.
+   */
+  public void checkMemory() {
+    if (memoryBudget <= 0 || groupsMemory <= memoryBudget || !isMergeable())
+      return;
+
+    writeGroups();
+  }
+
+  public int size() {
+    return groups.size() + spilledGroups;
+  }
+
+  /**
+   * Returns true if the groups have been written to temporary files.
+   */
+  public boolean isSpilled() {
+    return partitionFiles != null;
+  }
+
+  /**
+   * Returns the result documents of the groups. If the groups have been written to temporary files, the partitions are merged while
+   * the result is browsed, so it can be browsed only once.
+   * 
+   * @param iNullKey
+   *          Whether the group of null key is returned
+   */
+  public Iterable<OIdentifiable> getResult(final boolean iNullKey) {
+    if (!isSpilled()) {
+      final List<OIdentifiable> result = new ArrayList<OIdentifiable>(groups.size());
+      for (Entry<Object, ORuntimeResult> group : groups.entrySet())
+        if (iNullKey || group.getKey() != null)
+          addResult(result, group.getValue().getResult());
+      return result;
+    }
+
+    // THE GROUPS STILL IN MEMORY ARE MERGED WITH THE OTHERS OF THEIR PARTITION
+    writeGroups();
+    closeStreams();
+
+    return new Iterable<OIdentifiable>() {
+      public Iterator<OIdentifiable> iterator() {
+        return new OPartitionIterator(iNullKey);
+      }
+    };
+  }
+
+  /**
+   * Removes the temporary files.
+   */
+  public void close() {
+    if (partitionFiles == null)
+      return;
+
+    closeStreams();
+    for (File file : partitionFiles)
+      if (file != null && file.exists() && !file.delete())
+        OLogManager.instance().warn(this, "Cannot delete temporary file %s", file);
+  }
+
+  private static Object normalizeKey(final Object iKey) {
+    if (iKey instanceof Object[])
+      // COMPARE MULTI-FIELD KEYS BY CONTENT
+      return Arrays.asList((Object[]) iKey);
+    return iKey;
+  }
+
+  private static void addResult(final List<OIdentifiable> iResult, final ODocument iDocument) {
+    if (iDocument != null && !iDocument.isEmpty())
+      iResult.add(iDocument);
+  }
+
+  /**
+   * Checks the projections of the first group: groups can be written only if all the aggregate functions can merge partial results.
+   */
+  private boolean isMergeable() {
+    if (mergeable == null) {
+      final ORuntimeResult group = groups.values().iterator().next();
+
+      mergeable = Boolean.TRUE;
+      functions = new HashMap<String, OSQLFunction>();
+      for (Entry<String, Object> projection : group.getProjections().entrySet()) {
+        if (!(projection.getValue() instanceof OSQLFunctionRuntime) || !((OSQLFunctionRuntime) projection.getValue()).aggregateResults())
+          continue;
+
+        final OSQLFunction function = ((OSQLFunctionRuntime) projection.getValue()).getFunction();
+        if (!(function instanceof OSQLFunctionAbstract) || !((OSQLFunctionAbstract) function).canMergePartialResults()) {
+          mergeable = Boolean.FALSE;
+          OLogManager.instance().warn(this,
+              "GROUP BY exceeded the memory budget but function '%s' cannot merge partial results: groups are kept in memory",
+              function.getName());
+          break;
+        }
+        functions.put(projection.getKey(), function);
+      }
+    }
+    return mergeable;
+  }
+
+  private void writeGroups() {
+    try {
+      if (partitionFiles == null) {
+        partitionFiles = new File[PARTITIONS];
+        partitionStreams = new DataOutputStream[PARTITIONS];
+        partitionSizes = new int[PARTITIONS];
+        for (int i = 0; i < PARTITIONS; ++i) {
+          partitionFiles[i] = File.createTempFile("orientdb-group-", ".tmp");
+          partitionStreams[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partitionFiles[i]), 65536));
+        }
+      }
+
+      for (Entry<Object, ORuntimeResult> group : groups.entrySet()) {
+        final int partition = partition(group.getKey());
+        writeGroup(partitionStreams[partition], group.getKey(), group.getValue());
+        partitionSizes[partition]++;
+      }
+    } catch (IOException e) {
+      close();
+      throw new OCommandExecutionException("Error on writing groups to temporary files", e);
+    }
+
+    OLogManager.instance().debug(this, "Written %d groups to temporary files", groups.size());
+
+    spilledGroups += groups.size();
+    groups = new LinkedHashMap<Object, ORuntimeResult>();
+    groupsMemory = 0;
+  }
+
+  private void writeGroup(final DataOutputStream out, final Object iKey, final ORuntimeResult iGroup) throws IOException {
+    final ODocument value = iGroup.getValue();
+
+    final Map<String, Object> values = new LinkedHashMap<String, Object>();
+    for (String field : value.fieldNames())
+      values.put(field, value.field(field));
+
+    final Map<String, Object> partials = new HashMap<String, Object>();
+    for (String name : functions.keySet()) {
+      final OSQLFunctionAbstract function = (OSQLFunctionAbstract) ((OSQLFunctionRuntime) iGroup.getProjections().get(name))
+          .getFunction();
+      partials.put(name, function.getPartialResult());
+    }
+
+    final ODocument entry = new ODocument();
+    entry.field(KEY, iKey);
+    entry.field(PROGRESSIVE, value.getIdentity().getClusterPosition().longValue());
+    entry.field(VALUES, values);
+    entry.field(PARTIALS, partials);
+
+    final byte[] content = entry.toStream();
+    out.writeInt(content.length);
+    out.write(content);
+  }
+
+  private void closeStreams() {
+    if (partitionStreams == null)
+      return;
+
+    for (int i = 0; i < partitionStreams.length; ++i)
+      if (partitionStreams[i] != null) {
+        try {
+          partitionStreams[i].close();
+        } catch (IOException e) {
+          OLogManager.instance().error(this, "Error on closing temporary file %s", e, partitionFiles[i]);
+        }
+        partitionStreams[i] = null;
+      }
+  }
+
+  private static int partition(final Object iKey) {
+    return iKey == null ? 0 : (iKey.hashCode() & Integer.MAX_VALUE) % PARTITIONS;
+  }
+
+  /**
+   * Merges the partial results of the groups of one partition.
+   */
+  private List<OIdentifiable> readPartition(final int iPartition, final boolean iNullKey) throws IOException {
+    final Map<Object, OSpilledGroup> merged = new HashMap<Object, OSpilledGroup>();
+
+    final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(partitionFiles[iPartition]), 65536));
+    try {
+      for (int i = 0; i < partitionSizes[iPartition]; ++i) {
+        final byte[] content = new byte[in.readInt()];
+        in.readFully(content);
+        final ODocument entry = new ODocument().fromStream(content);
+
+        final Object key = entry.field(KEY);
+        OSpilledGroup group = merged.get(key);
+        if (group == null) {
+          // FIRST OCCURRENCE: GROUPS ARE WRITTEN IN ORDER OF CREATION
+          group = new OSpilledGroup(((Number) entry.field(PROGRESSIVE)).longValue());
+          merged.put(key, group);
+        }
+
+        // VALUES OF THE LAST RECORD OVERWRITE THE PREVIOUS ONES
+        group.values = entry.field(VALUES);
+
+        final Map<String, Object> partials = entry.field(PARTIALS);
+        for (Entry<String, Object> partial : partials.entrySet())
+          if (partial.getValue() != null)
+            group.addPartial(partial.getKey(), partial.getValue());
+      }
+    } finally {
+      in.close();
+    }
+
+    final List<Entry<Object, OSpilledGroup>> entries = new ArrayList<Entry<Object, OSpilledGroup>>(merged.entrySet());
+    Collections.sort(entries, new Comparator<Entry<Object, OSpilledGroup>>() {
+      public int compare(final Entry<Object, OSpilledGroup> iEntry1, final Entry<Object, OSpilledGroup> iEntry2) {
+        final long p1 = iEntry1.getValue().progressive;
+        final long p2 = iEntry2.getValue().progressive;
+        return p1 < p2 ? -1 : (p1 == p2 ? 0 : 1);
+      }
+    });
+
+    final List<OIdentifiable> result = new ArrayList<OIdentifiable>(entries.size());
+    for (Entry<Object, OSpilledGroup> entry : entries)
+      if (iNullKey || entry.getKey() != null)
+        addResult(result, entry.getValue().toDocument());
+    return result;
+  }
+
+  private final class OSpilledGroup {
+    private final long                      progressive;
+    private Map<String, Object>             values;
+    private Map<String, List<Object>>       partials;
+
+    private OSpilledGroup(final long iProgressive) {
+      progressive = iProgressive;
+    }
+
+    private void addPartial(final String iName, final Object iPartial) {
+      if (partials == null)
+        partials = new HashMap<String, List<Object>>();
+
+      List<Object> list = partials.get(iName);
+      if (list == null) {
+        list = new ArrayList<Object>();
+        partials.put(iName, list);
+      }
+      list.add(iPartial);
+    }
+
+    private ODocument toDocument() {
+      final ODocument doc = ORuntimeResult.createProjectionDocument((int) progressive);
+      for (Entry<String, Object> value : values.entrySet())
+        setField(doc, value.getKey(), functions.containsKey(value.getKey()) ? merge(value.getKey()) : value.getValue());
+
+      if (partials != null)
+        // AGGREGATES WITHOUT VALUE IN THE LAST RECORDS
+        for (String name : partials.keySet())
+          if (!values.containsKey(name))
+            setField(doc, name, merge(name));
+
+      // AVOID SAVING OF TEMP RECORD
+      doc.unsetDirty();
+      return doc;
+    }
+
+    private void setField(final ODocument iDocument, final String iName, final Object iValue) {
+      if (iValue != null)
+        iDocument.field(iName, iValue);
+    }
+
+    private Object merge(final String iName) {
+      final List<Object> list = partials != null ? partials.get(iName) : null;
+      return list != null ? functions.get(iName).mergeDistributedResult(list) : null;
+    }
+  }
+
+  private final class OPartitionIterator implements Iterator<OIdentifiable> {
+    private final boolean           nullKey;
+    private int                     partition;
+    private Iterator<OIdentifiable> current = Collections.<OIdentifiable> emptyList().iterator();
+
+    private OPartitionIterator(final boolean iNullKey) {
+      nullKey = iNullKey;
+    }
+
+    public boolean hasNext() {
+      while (!current.hasNext()) {
+        if (partition >= PARTITIONS) {
+          close();
+          return false;
+        }
+
+        try {
+          current = readPartition(partition++, nullKey).iterator();
+        } catch (IOException e) {
+          close();
+          throw new OCommandExecutionException("Error on reading groups from temporary file", e);
+        }
+      }
+      return true;
+    }
+
+    public OIdentifiable next() {
+      if (!hasNext())
+        throw new NoSuchElementException();
+      return current.next();
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException("remove()");
+    }
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.index.OIndexDefinition;
+import com.orientechnologies.orient.core.index.OIndexDefinitionMultiValue;
+import com.orientechnologies.orient.core.index.OIndexInternal;
+import com.orientechnologies.orient.core.index.OIndexStatistics;
+import com.orientechnologies.orient.core.sql.operator.OQueryOperator;
+import com.orientechnologies.orient.core.sql.operator.OQueryOperatorBetween;
+import com.orientechnologies.orient.core.sql.operator.OQueryOperatorIn;
+import com.orientechnologies.orient.core.sql.operator.OQueryOperatorMajor;
+import com.orientechnologies.orient.core.sql.operator.OQueryOperatorMajorEquals;
+import com.orientechnologies.orient.core.sql.operator.OQueryOperatorMinor;
+import com.orientechnologies.orient.core.sql.operator.OQueryOperatorMinorEquals;
+
+/**
+ * Estimates the cost of the ways a query can fetch its candidate records: a lookup in one index, the intersection of the results
+ * of two indexes or a full scan of the clusters of the target class. Costs are expressed in units of records read by a full scan:
+ * records fetched by RID are more expensive because they are read in random order.
+ *
+ * @since 17.10.13
+ */
+public class OIndexCostModel {
+  public static final double SCAN_RECORD_COST  = 1;
+  public static final double FETCH_RECORD_COST = 4;
+  public static final double INDEX_ENTRY_COST  = 0.1;
+  public static final double INDEX_LOOKUP_COST = 10;
+
+  public static double getFullScanCost(final long iRecords) {
+    return iRecords * SCAN_RECORD_COST;
+  }
+
+  public static double getIndexCost(final double iEntries, final int iLookups) {
+    return iLookups * INDEX_LOOKUP_COST + iEntries * (INDEX_ENTRY_COST + FETCH_RECORD_COST);
+  }
+
+  /**
+   * Cost of reading the entries of two indexes and fetching only the records contained in both.
+   */
+  public static double getIntersectionCost(final double iFirstEntries, final int iFirstLookups, final double iSecondEntries,
+      final int iSecondLookups, final long iRecords) {
+    return (iFirstLookups + iSecondLookups) * INDEX_LOOKUP_COST + (iFirstEntries + iSecondEntries) * INDEX_ENTRY_COST
+        + getIntersectionEntries(iFirstEntries, iSecondEntries, iRecords) * FETCH_RECORD_COST;
+  }
+
+  /**
+   * Entries contained in both the results, supposing conditions on different fields independent.
+   */
+  public static double getIntersectionEntries(final double iFirstEntries, final double iSecondEntries, final long iRecords) {
+    if (iRecords <= 0)
+      return Math.min(iFirstEntries, iSecondEntries);
+    return Math.min(Math.min(iFirstEntries, iSecondEntries), iFirstEntries * iSecondEntries / iRecords);
+  }
+
+  /**
+   * Returns the number of lookups the operator executes against the index.
+   */
+  public static int getLookups(final OQueryOperator iOperator, final List<Object> iKeyParams) {
+    if (iOperator instanceof OQueryOperatorIn) {
+      final Object inValue = iKeyParams.get(iKeyParams.size() - 1);
+      if (inValue instanceof Collection<?>)
+        return Math.max(1, ((Collection<?>) inValue).size());
+    }
+    return 1;
+  }
+
+  /**
+   * Tells if the index can execute the operator. Indexes that are not ordered can be used only for equality lookups.
+   */
+  public static boolean canBeUsed(final OIndex<?> iIndex, final OQueryOperator iOperator) {
+    final OIndexInternal<?> internalIndex = iIndex.getInternal();
+    if (internalIndex == null)
+      return true;
+
+    if (isRangeOperator(iOperator))
+      return internalIndex.canBeUsedInRangeOperators();
+    return internalIndex.canBeUsedInEqualityOperators();
+  }
+
+  /**
+   * Estimates the entries the operator reads from the index using its statistics.
+   */
+  public static double estimateEntries(final OIndexStatistics iStatistics, final OIndex<?> iIndex, final OQueryOperator iOperator,
+      final List<Object> iKeyParams) {
+    final OIndexDefinition definition = iIndex.getDefinition();
+    final int paramCount = definition.getParamCount();
+
+    try {
+      if (iOperator instanceof OQueryOperatorIn) {
+        final Object inValue = iKeyParams.get(iKeyParams.size() - 1);
+        if (!(inValue instanceof Collection<?>))
+          return iStatistics.getEntries() * OIndexStatistics.RANGE_SELECTIVITY;
+
+        if (paramCount > 1)
+          return ((Collection<?>) inValue).size() * iStatistics.estimatePrefix(iKeyParams.size(), paramCount);
+
+        double result = 0;
+        for (Object item : (Collection<?>) inValue)
+          result += iStatistics.estimateEquals(createKey(definition, item));
+        return result;
+      }
+
+      if (OIndexSearchResult.isIndexEqualityOperator(iOperator)) {
+        if (paramCount > 1)
+          return iStatistics.estimatePrefix(iKeyParams.size(), paramCount);
+        return iStatistics.estimateEquals(createKey(definition, iKeyParams.get(0)));
+      }
+
+      if (isRangeOperator(iOperator)) {
+        if (paramCount > 1)
+          return iStatistics.estimatePrefix(iKeyParams.size() - 1, paramCount) * OIndexStatistics.RANGE_SELECTIVITY;
+
+        if (iOperator instanceof OQueryOperatorBetween) {
+          final Object[] betweenKeys = (Object[]) iKeyParams.get(0);
+          return iStatistics.estimateRange(createKey(definition, betweenKeys[0]), true, createKey(definition, betweenKeys[2]), true);
+        }
+
+        final Object key = createKey(definition, iKeyParams.get(0));
+        if (iOperator instanceof OQueryOperatorMajor)
+          return iStatistics.estimateRange(key, false, null, false);
+        if (iOperator instanceof OQueryOperatorMajorEquals)
+          return iStatistics.estimateRange(key, true, null, false);
+        if (iOperator instanceof OQueryOperatorMinor)
+          return iStatistics.estimateRange(null, false, key, false);
+        return iStatistics.estimateRange(null, false, key, true);
+      }
+    } catch (RuntimeException e) {
+      // KEY NOT CONVERTIBLE: USE THE DEFAULT SELECTIVITY
+    }
+
+    return iStatistics.getEntries() * OIndexStatistics.RANGE_SELECTIVITY;
+  }
+
+  public static boolean isRangeOperator(final OQueryOperator iOperator) {
+    return iOperator instanceof OQueryOperatorMajor || iOperator instanceof OQueryOperatorMajorEquals
+        || iOperator instanceof OQueryOperatorMinor || iOperator instanceof OQueryOperatorMinorEquals
+        || iOperator instanceof OQueryOperatorBetween;
+  }
+
+  private static Object createKey(final OIndexDefinition iDefinition, final Object iValue) {
+    final Object value = OSQLHelper.getValue(iValue);
+    if (iDefinition instanceof OIndexDefinitionMultiValue)
+      return ((OIndexDefinitionMultiValue) iDefinition).createSingleValue(value);
+    return iDefinition.createValue(Collections.singletonList(value));
+  }
+}
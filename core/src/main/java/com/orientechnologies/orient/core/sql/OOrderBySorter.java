@@ -0,0 +1,429 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.common.util.OPair;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.record.impl.ODocumentComparator;
+import com.orientechnologies.orient.core.version.ORecordVersion;
+import com.orientechnologies.orient.core.version.OVersionFactory;
+
+/**
+ * Sorts results of ORDER BY. Skip and limit are applied to the sorted result.
+ *
+ * If limit is set only the first skip + limit records are kept in a bounded heap, so sort costs O(n log k) and needs memory only
+ * for k records. Otherwise records are kept in memory until their estimated size exceeds the memory budget, then they are sorted
+ * and written as a run to a temporary file. At the end the runs are merged while the result is browsed. The sort is stable: records
+ * with equal keys are returned in the order they were added.
+ *
+ * Temporary files are removed when the result is browsed till the end or by {@link #close()}.
+ *
+ * @since 17.10.13
+ */
+public class OOrderBySorter {
+  // ESTIMATED HEAP USAGE OF RECORD OBJECT AND OF EACH FIELD OF DOCUMENTS NOT SERIALIZED YET
+  private static final int               RECORD_OVERHEAD = 128;
+  private static final int               FIELD_OVERHEAD  = 64;
+  private static final byte              RID_ONLY        = 0;
+
+  private final Comparator<OIdentifiable> comparator;
+  private final int                       skip;
+  private final int                       limit;
+  private final long                      memoryBudget;
+
+  private final PriorityQueue<OSortEntry> heap;
+  private final int                       heapSize;
+  private long                            sequence;
+
+  private List<OIdentifiable>             buffer          = new ArrayList<OIdentifiable>();
+  private long                            bufferMemory;
+  private final List<File>                runs            = new ArrayList<File>();
+  private final List<ORun>                openRuns        = new ArrayList<ORun>();
+  private int                             writtenRuns;
+
+  /**
+   * @param iOrderCriteria
+   *          Pairs of field name and ordering
+   * @param iSkip
+   *          Records to skip, not positive value means no skip
+   * @param iLimit
+   *          Maximum number of records to return, not positive value means no limit
+   * @param iMemoryBudget
+   *          Estimated memory in bytes available to keep records, when exceeded records are written to temporary files. Not
+   *          positive value means no limit.
+   */
+  public OOrderBySorter(final List<OPair<String, String>> iOrderCriteria, final int iSkip, final int iLimit,
+      final long iMemoryBudget) {
+    // COPY THE CRITERIA: THE RESULT CAN BE MERGED AFTER THE EXECUTOR HAS CLEARED THEM
+    comparator = new ODocumentComparator(new ArrayList<OPair<String, String>>(iOrderCriteria));
+    skip = Math.max(iSkip, 0);
+    limit = iLimit;
+    memoryBudget = iMemoryBudget;
+
+    if (limit > 0) {
+      // TOP-K: THE HEAD OF THE HEAP IS THE WORST RECORD KEPT
+      heapSize = skip + limit;
+      heap = new PriorityQueue<OSortEntry>(Math.min(heapSize, 1024) + 1, Collections.reverseOrder(new OSortEntryComparator()));
+    } else {
+      heapSize = 0;
+      heap = null;
+    }
+  }
+
+  public void add(final OIdentifiable iRecord) {
+    if (heap != null) {
+      final OSortEntry entry = new OSortEntry(iRecord, sequence++);
+      if (heap.size() < heapSize)
+        heap.offer(entry);
+      else if (compare(entry, heap.peek()) < 0) {
+        heap.poll();
+        heap.offer(entry);
+      }
+      return;
+    }
+
+    buffer.add(iRecord);
+    bufferMemory += estimateMemory(iRecord);
+
+    if (memoryBudget > 0 && bufferMemory > memoryBudget)
+      writeRun();
+  }
+
+  /**
+   * Returns the sorted result. If runs were written to temporary files the result is merged while it's browsed, so it can be
+   * browsed only once.
+   */
+  public Iterable<OIdentifiable> sort() {
+    if (heap != null) {
+      final List<OSortEntry> entries = new ArrayList<OSortEntry>(heap);
+      heap.clear();
+      Collections.sort(entries, new OSortEntryComparator());
+
+      final List<OIdentifiable> result = new ArrayList<OIdentifiable>(Math.max(entries.size() - skip, 0));
+      for (int i = skip; i < entries.size(); ++i)
+        result.add(entries.get(i).record);
+      return result;
+    }
+
+    Collections.sort(buffer, comparator);
+
+    if (runs.isEmpty()) {
+      final List<OIdentifiable> result = buffer.size() > skip ? buffer.subList(skip, buffer.size()) : buffer.subList(0, 0);
+      buffer = null;
+      return new ArrayList<OIdentifiable>(result);
+    }
+
+    // MERGE THE RUNS, RECORDS STILL IN MEMORY ARE THE LAST RUN
+    try {
+      for (File run : runs)
+        openRuns.add(new OFileRun(run));
+    } catch (IOException e) {
+      close();
+      throw new OCommandExecutionException("Error on reading sorted records from temporary file", e);
+    }
+    openRuns.add(new OMemoryRun(buffer));
+    buffer = null;
+
+    return new Iterable<OIdentifiable>() {
+      public Iterator<OIdentifiable> iterator() {
+        return new OMergeIterator();
+      }
+    };
+  }
+
+  /**
+   * Removes the temporary files.
+   */
+  public void close() {
+    for (ORun run : openRuns)
+      run.close();
+    openRuns.clear();
+
+    for (File run : runs)
+      if (!run.delete())
+        OLogManager.instance().warn(this, "Cannot delete temporary file of sorted records: %s", run);
+    runs.clear();
+
+    buffer = null;
+    if (heap != null)
+      heap.clear();
+  }
+
+  /**
+   * Returns the number of runs written to temporary files.
+   */
+  public int getWrittenRuns() {
+    return writtenRuns;
+  }
+
+  private int compare(final OSortEntry iEntry1, final OSortEntry iEntry2) {
+    final int result = comparator.compare(iEntry1.record, iEntry2.record);
+    if (result != 0)
+      return result;
+
+    return iEntry1.sequence < iEntry2.sequence ? -1 : (iEntry1.sequence == iEntry2.sequence ? 0 : 1);
+  }
+
+  private void writeRun() {
+    Collections.sort(buffer, comparator);
+
+    File file = null;
+    try {
+      file = File.createTempFile("orientdb-sort-", ".tmp");
+      runs.add(file);
+      writtenRuns++;
+
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+      try {
+        out.writeInt(buffer.size());
+        for (OIdentifiable record : buffer)
+          writeRecord(out, record);
+      } finally {
+        out.close();
+      }
+    } catch (IOException e) {
+      close();
+      throw new OCommandExecutionException("Error on writing sorted records to temporary file " + file, e);
+    }
+
+    OLogManager.instance().debug(this, "Written %d sorted records to temporary file %s", buffer.size(), file);
+
+    buffer.clear();
+    bufferMemory = 0;
+  }
+
+  private static void writeRecord(final DataOutputStream out, final OIdentifiable iRecord) throws IOException {
+    if (!(iRecord instanceof ORecordInternal<?>)) {
+      out.writeByte(RID_ONLY);
+      iRecord.getIdentity().toStream(out);
+      return;
+    }
+
+    final ORecordInternal<?> record = (ORecordInternal<?>) iRecord;
+    out.writeByte(record.getRecordType());
+    record.getIdentity().toStream(out);
+    record.getRecordVersion().getSerializer().writeTo((DataOutput) out, record.getRecordVersion());
+
+    final byte[] content = record.toStream();
+    out.writeInt(content.length);
+    out.write(content);
+  }
+
+  private static OIdentifiable readRecord(final DataInputStream in) throws IOException {
+    final byte type = in.readByte();
+    final ORecordId rid = new ORecordId().fromStream(in);
+    if (type == RID_ONLY)
+      return rid;
+
+    final ORecordVersion version = OVersionFactory.instance().createVersion();
+    version.getSerializer().readFrom((DataInput) in, version);
+
+    final byte[] content = new byte[in.readInt()];
+    in.readFully(content);
+
+    final ORecordInternal<?> record = Orient.instance().getRecordFactoryManager().newInstance(type);
+    record.fill(rid, version, content, false);
+    return record;
+  }
+
+  private static long estimateMemory(final OIdentifiable iRecord) {
+    if (!(iRecord instanceof ORecordInternal<?>))
+      return RECORD_OVERHEAD;
+
+    final ORecordInternal<?> record = (ORecordInternal<?>) iRecord;
+    if (record.getSize() > 0)
+      return RECORD_OVERHEAD + record.getSize();
+
+    if (record instanceof ODocument)
+      return RECORD_OVERHEAD + ((ODocument) record).fields() * FIELD_OVERHEAD;
+
+    return RECORD_OVERHEAD;
+  }
+
+  private static final class OSortEntry {
+    private final OIdentifiable record;
+    private final long          sequence;
+
+    private OSortEntry(final OIdentifiable record, final long sequence) {
+      this.record = record;
+      this.sequence = sequence;
+    }
+  }
+
+  private final class OSortEntryComparator implements Comparator<OSortEntry> {
+    public int compare(final OSortEntry iEntry1, final OSortEntry iEntry2) {
+      return OOrderBySorter.this.compare(iEntry1, iEntry2);
+    }
+  }
+
+  /**
+   * Sorted sequence of records, its index in the merge is used as sequence to keep the sort stable.
+   */
+  private abstract static class ORun {
+    protected OIdentifiable head;
+    protected long          index;
+
+    protected abstract boolean advance() throws IOException;
+
+    protected void close() {
+    }
+  }
+
+  private static final class OMemoryRun extends ORun {
+    private final Iterator<OIdentifiable> iterator;
+
+    private OMemoryRun(final List<OIdentifiable> iRecords) {
+      iterator = iRecords.iterator();
+    }
+
+    @Override
+    protected boolean advance() {
+      if (!iterator.hasNext())
+        return false;
+      head = iterator.next();
+      return true;
+    }
+  }
+
+  private static final class OFileRun extends ORun {
+    private final DataInputStream in;
+    private int                   remaining;
+
+    private OFileRun(final File iFile) throws IOException {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(iFile), 65536));
+      remaining = in.readInt();
+    }
+
+    @Override
+    protected boolean advance() throws IOException {
+      if (remaining == 0)
+        return false;
+      remaining--;
+      head = readRecord(in);
+      return true;
+    }
+
+    @Override
+    protected void close() {
+      try {
+        in.close();
+      } catch (IOException e) {
+        OLogManager.instance().debug(this, "Error on closing temporary file of sorted records", e);
+      }
+    }
+  }
+
+  private final class OMergeIterator implements Iterator<OIdentifiable> {
+    private final PriorityQueue<ORun> queue;
+    private int                       toSkip    = skip;
+    private int                       remaining = limit > 0 ? limit : Integer.MAX_VALUE;
+    private OIdentifiable             next;
+
+    private OMergeIterator() {
+      queue = new PriorityQueue<ORun>(openRuns.size(), new Comparator<ORun>() {
+        public int compare(final ORun iRun1, final ORun iRun2) {
+          final int result = comparator.compare(iRun1.head, iRun2.head);
+          if (result != 0)
+            return result;
+          return iRun1.index < iRun2.index ? -1 : (iRun1.index == iRun2.index ? 0 : 1);
+        }
+      });
+
+      try {
+        long index = 0;
+        for (ORun run : openRuns) {
+          run.index = index++;
+          if (run.advance())
+            queue.offer(run);
+        }
+      } catch (IOException e) {
+        close();
+        throw new OCommandExecutionException("Error on reading sorted records from temporary file", e);
+      }
+
+      fetchNext();
+    }
+
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    public OIdentifiable next() {
+      if (next == null)
+        throw new NoSuchElementException();
+
+      final OIdentifiable result = next;
+      fetchNext();
+      return result;
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+
+    private void fetchNext() {
+      next = null;
+      try {
+        while (remaining > 0 && !queue.isEmpty()) {
+          final ORun run = queue.poll();
+          final OIdentifiable record = run.head;
+
+          if (run.advance())
+            queue.offer(run);
+
+          if (toSkip > 0) {
+            toSkip--;
+            continue;
+          }
+
+          remaining--;
+          next = record;
+          return;
+        }
+      } catch (IOException e) {
+        close();
+        throw new OCommandExecutionException("Error on reading sorted records from temporary file", e);
+      }
+
+      // END OF RESULT
+      close();
+    }
+  }
+}
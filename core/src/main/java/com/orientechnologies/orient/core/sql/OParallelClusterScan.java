@@ -0,0 +1,341 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.command.OBasicCommandContext;
+import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.exception.ODatabaseException;
+import com.orientechnologies.orient.core.id.OClusterPosition;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.filter.OSQLFilterCondition;
+import com.orientechnologies.orient.core.sql.filter.OSQLPredicate;
+import com.orientechnologies.orient.core.sql.functions.OSQLFunctionRuntime;
+import com.orientechnologies.orient.core.sql.query.OSQLQuery;
+import com.orientechnologies.orient.core.storage.OPhysicalPosition;
+import com.orientechnologies.orient.core.storage.OStorage;
+
+/**
+ * Scans clusters in parallel for queries which can not use indexes. Clusters, and ranges of positions of big clusters, are split in
+ * partitions which are filtered by pool threads, each one with own database instance opened on the same storage as the user of
+ * the query. Records which match the condition are returned in the order of partitions, so the result is the same as of the
+ * sequential scan: LIMIT, projections and aggregations are applied by the calling thread as usual.
+ * 
+ * Every partition buffers a limited number of matching records, so threads which are ahead of the calling thread wait instead of
+ * keeping the entire result in memory.
+ * 
+ * @since 17.10.13
+ */
+public class OParallelClusterScan implements Iterator<OIdentifiable> {
+  private static final int                          MIN_PARTITION_SIZE = 10000;
+  private static final int                          PARTITION_BUFFER   = 1000;
+  private static final long                         OFFER_TIMEOUT      = 100;
+
+  private static final Object                       END                = new Object();
+
+  private static final ExecutorService              EXECUTOR           = Executors.newCachedThreadPool(new ThreadFactory() {
+                                                                         private final AtomicInteger counter = new AtomicInteger();
+
+                                                                         @Override
+                                                                         public Thread newThread(Runnable r) {
+                                                                           final Thread thread = new Thread(r,
+                                                                               "OrientDB Parallel Scan " + counter.incrementAndGet());
+                                                                           thread.setDaemon(true);
+                                                                           return thread;
+                                                                         }
+                                                                       });
+
+  private final OCommandExecutorSQLResultsetAbstract executor;
+  private final ODatabaseRecord                      database;
+  private final OCommandContext                      context;
+  private final boolean                              useCache;
+  private final List<OPartition>                     partitions         = new ArrayList<OPartition>();
+  private final AtomicInteger                        nextPartition      = new AtomicInteger();
+  private final List<Future<?>>                      workers            = new ArrayList<Future<?>>();
+  private final AtomicLong                           recordReads        = new AtomicLong();
+  private final AtomicLong                           documentReads      = new AtomicLong();
+  private volatile boolean                           closed;
+
+  private int                                        currentPartition;
+  private OIdentifiable                              nextRecord;
+
+  private static final class OPartition {
+    private final int                   clusterId;
+    private final OClusterPosition      begin;
+    private final OClusterPosition      end;
+    private final BlockingQueue<Object> records = new ArrayBlockingQueue<Object>(PARTITION_BUFFER);
+
+    private OPartition(final int iClusterId, final OClusterPosition iBegin, final OClusterPosition iEnd) {
+      clusterId = iClusterId;
+      begin = iBegin;
+      end = iEnd;
+    }
+  }
+
+  /**
+   * Splits the clusters in partitions and starts the threads which scan them.
+   * 
+   * @param iExecutor
+   *          Executor of the query which filters the records
+   * @param iDatabase
+   *          Database of the query
+   * @param iClusterIds
+   *          Clusters to scan
+   * @param iThreads
+   *          Maximum number of threads
+   * @param iUseCache
+   *          Whether records are loaded through the cache
+   */
+  public OParallelClusterScan(final OCommandExecutorSQLResultsetAbstract iExecutor, final ODatabaseRecord iDatabase,
+      final int[] iClusterIds, final int iThreads, final boolean iUseCache) {
+    executor = iExecutor;
+    database = iDatabase;
+    useCache = iUseCache;
+
+    // EVERY THREAD EVALUATES THE CONDITION WITH OWN COPY OF THE CONTEXT
+    context = iExecutor.getContext();
+
+    final long partitionSize = Math.max(MIN_PARTITION_SIZE, iDatabase.countClusterElements(iClusterIds) / (iThreads * 4L));
+    for (int clusterId : iClusterIds)
+      split(clusterId, partitionSize);
+
+    final int threads = Math.min(iThreads, partitions.size());
+    for (int i = 0; i < threads; ++i)
+      workers.add(EXECUTOR.submit(new Runnable() {
+        public void run() {
+          scan();
+        }
+      }));
+  }
+
+  /**
+   * Checks whether the condition can be evaluated by several threads at the same time. Functions keep parameters of the current
+   * invocation and sub-queries are executed on the first evaluation, so conditions which contain them are evaluated by single
+   * thread.
+   */
+  public static boolean isThreadSafe(final Object iOperand) {
+    if (iOperand instanceof OSQLFilterCondition)
+      return isThreadSafe(((OSQLFilterCondition) iOperand).getLeft()) && isThreadSafe(((OSQLFilterCondition) iOperand).getRight());
+
+    if (iOperand instanceof Collection<?>) {
+      for (Object o : (Collection<?>) iOperand)
+        if (!isThreadSafe(o))
+          return false;
+      return true;
+    }
+
+    return !(iOperand instanceof OSQLFunctionRuntime || iOperand instanceof OSQLQuery<?> || iOperand instanceof OSQLPredicate);
+  }
+
+  public boolean hasNext() {
+    if (nextRecord != null)
+      return true;
+
+    while (currentPartition < partitions.size()) {
+      final Object item;
+      try {
+        item = partitions.get(currentPartition).records.take();
+      } catch (InterruptedException e) {
+        close();
+        throw new OCommandExecutionException("The select execution has been interrupted");
+      }
+
+      if (item == END)
+        currentPartition++;
+      else if (item instanceof Throwable) {
+        close();
+        throw new OCommandExecutionException("Error on parallel scan of cluster " + partitions.get(currentPartition).clusterId,
+            (Throwable) item);
+      } else {
+        nextRecord = (OIdentifiable) item;
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  public OIdentifiable next() {
+    if (!hasNext())
+      throw new NoSuchElementException();
+
+    final OIdentifiable record = nextRecord;
+    nextRecord = null;
+    return record;
+  }
+
+  public void remove() {
+    throw new UnsupportedOperationException("remove()");
+  }
+
+  /**
+   * Stops the threads which are still scanning and waits for them. Must be called also if the result has not been browsed till the
+   * end.
+   */
+  public void close() {
+    closed = true;
+
+    for (Future<?> worker : workers)
+      try {
+        worker.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        OLogManager.instance().error(this, "Error on parallel scan", e.getCause());
+      }
+    workers.clear();
+  }
+
+  public long getRecordReads() {
+    return recordReads.get();
+  }
+
+  public long getDocumentReads() {
+    return documentReads.get();
+  }
+
+  private void split(final int iClusterId, final long iPartitionSize) {
+    final OClusterPosition[] range = database.getStorage().getClusterDataRange(iClusterId);
+    if (!range[0].isValid() || !range[1].isValid())
+      // EMPTY CLUSTER
+      return;
+
+    if (!(OClusterPositionFactory.INSTANCE instanceof OClusterPositionFactory.OClusterPositionFactoryLong)) {
+      // POSITIONS CAN NOT BE SPLIT IN RANGES: SCAN THE ENTIRE CLUSTER
+      partitions.add(new OPartition(iClusterId, range[0], range[1]));
+      return;
+    }
+
+    final long first = range[0].longValue();
+    final long last = range[1].longValue();
+
+    for (long begin = first; begin <= last; begin += iPartitionSize) {
+      final long end = last - begin < iPartitionSize ? last : begin + iPartitionSize - 1;
+      partitions.add(new OPartition(iClusterId, OClusterPositionFactory.INSTANCE.valueOf(begin), OClusterPositionFactory.INSTANCE
+          .valueOf(end)));
+    }
+  }
+
+  private void scan() {
+    final ODatabaseDocumentTx db;
+    try {
+      // THE WORKER HAS THE SAME USER AND PERMISSIONS OF THE DATABASE OF THE QUERY
+      db = new ODatabaseDocumentTx(database.getURL()).open(database);
+    } catch (Throwable t) {
+      // PASS THE ERROR TO THE PARTITIONS NOT SCANNED YET: IF ALL THE WORKERS FAIL THE CALLING THREAD WOULD WAIT FOREVER
+      int partitionIndex;
+      while (!closed && (partitionIndex = nextPartition.getAndIncrement()) < partitions.size())
+        push(partitions.get(partitionIndex), t);
+
+      ODatabaseRecordThreadLocal.INSTANCE.remove();
+      return;
+    }
+
+    try {
+      // RECORDS ARE PASSED TO THE CALLING THREAD, DON'T KEEP THEM IN THE CACHE
+      db.getLevel1Cache().setEnable(false);
+
+      final OCommandContext threadContext = new OBasicCommandContext();
+      for (Entry<String, Object> variable : context.getVariables().entrySet())
+        threadContext.setVariable(variable.getKey(), variable.getValue());
+
+      int partitionIndex;
+      while (!closed && (partitionIndex = nextPartition.getAndIncrement()) < partitions.size()) {
+        final OPartition partition = partitions.get(partitionIndex);
+        try {
+          scan(db, partition, threadContext);
+          push(partition, END);
+        } catch (Throwable t) {
+          push(partition, t);
+        }
+      }
+    } finally {
+      db.close();
+      ODatabaseRecordThreadLocal.INSTANCE.remove();
+    }
+  }
+
+  private void scan(final ODatabaseDocumentTx iDatabase, final OPartition iPartition, final OCommandContext iContext) {
+    final OStorage storage = iDatabase.getStorage();
+
+    OPhysicalPosition[] positions = storage.ceilingPhysicalPositions(iPartition.clusterId, new OPhysicalPosition(iPartition.begin));
+    while (positions != null && positions.length > 0) {
+      for (OPhysicalPosition position : positions) {
+        if (closed || position.clusterPosition.compareTo(iPartition.end) > 0)
+          return;
+
+        if (position.recordVersion.isTombstone())
+          continue;
+
+        ORecordInternal<?> record;
+        try {
+          record = iDatabase.load(new ORecordId(iPartition.clusterId, position.clusterPosition), null, !useCache);
+        } catch (ODatabaseException e) {
+          OLogManager.instance().error(this, "Error on fetching record during browsing. The record has been skipped", e);
+          continue;
+        }
+
+        if (record == null)
+          continue;
+
+        recordReads.incrementAndGet();
+        if (record.getRecordType() != ODocument.RECORD_TYPE)
+          continue;
+
+        documentReads.incrementAndGet();
+        if (executor.filter(record, iContext))
+          push(iPartition, record);
+      }
+
+      positions = storage.higherPhysicalPositions(iPartition.clusterId, positions[positions.length - 1]);
+    }
+  }
+
+  private void push(final OPartition iPartition, final Object iItem) {
+    try {
+      while (!closed && !iPartition.records.offer(iItem, OFFER_TIMEOUT, TimeUnit.MILLISECONDS))
+        ;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      closed = true;
+    }
+  }
+}
@@ -63,6 +63,17 @@ public class ORuntimeResult {
     return getResult(value, projections);
   }
 
+  /**
+   * Returns the document with the values applied so far, without the final results of the functions.
+   */
+  public ODocument getValue() {
+    return value;
+  }
+
+  public Map<String, Object> getProjections() {
+    return projections;
+  }
+
   public static ODocument createProjectionDocument(final int iProgressive) {
     final ODocument doc = new ODocument().setOrdered(true);
     // ASSIGN A TEMPORARY RID TO ALLOW PAGINATION IF ANY
@@ -48,13 +48,22 @@ public class OSQLFilterItemField extends OSQLFilterItemAbstract {
 
     final ODocument doc = (ODocument) iRecord.getRecord();
 
-    if (preLoadedFieldsArray == null && preLoadedFields != null && preLoadedFields.size() > 0 && preLoadedFields.size() < 5) {
-      // TRANSFORM THE SET IN ARRAY ONLY THE FIRST TIME AND IF FIELDS ARE MORE THAN ONE, OTHERWISE GO WITH THE DEFAULT BEHAVIOR
-      preLoadedFieldsArray = new String[preLoadedFields.size()];
-      preLoadedFields.toArray(preLoadedFieldsArray);
+    if (name.startsWith("@"))
+      // RECORD ATTRIBUTE: NO FIELDS TO UNMARSHALL
+      return transformValue(iRecord, iContext, ODocumentHelper.getFieldValue(doc, name));
+
+    if (preLoadedFieldsArray == null) {
+      // TRANSFORM THE SET IN ARRAY ONLY THE FIRST TIME, WITHOUT THE SET UNMARSHALL ONLY THE FIELD OF THIS ITEM
+      final String[] fields;
+      if (preLoadedFields != null && preLoadedFields.size() > 0) {
+        fields = new String[preLoadedFields.size()];
+        preLoadedFields.toArray(fields);
+      } else
+        fields = new String[] { name };
+      preLoadedFieldsArray = fields;
     }
 
-    // UNMARSHALL THE SINGLE FIELD
+    // UNMARSHALL ONLY THE REQUESTED FIELDS
     if (doc.deserializeFields(preLoadedFieldsArray))
       // FIELD FOUND
       return transformValue(iRecord, iContext,  ODocumentHelper.getFieldValue(doc, name));
@@ -36,6 +36,7 @@ import com.orientechnologies.orient.core.sql.OCommandExecutorSQLSelect;
 import com.orientechnologies.orient.core.sql.OCommandSQLParsingException;
 import com.orientechnologies.orient.core.sql.OSQLEngine;
 import com.orientechnologies.orient.core.sql.OSQLHelper;
+import com.orientechnologies.orient.core.sql.functions.OSQLFunctionRuntime;
 import com.orientechnologies.orient.core.sql.operator.OQueryOperator;
 import com.orientechnologies.orient.core.sql.operator.OQueryOperatorNot;
 import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
@@ -401,18 +402,32 @@ public class OSQLPredicate extends OBaseParser implements OCommandPredicate {
   protected Set<String> computePrefetchFieldList(final OSQLFilterCondition iCondition, final Set<String> iFields) {
     Object left = iCondition.getLeft();
     Object right = iCondition.getRight();
-    if (left instanceof OSQLFilterItemField) {
-      ((OSQLFilterItemField) left).setPreLoadedFields(iFields);
-      iFields.add(((OSQLFilterItemField) left).getRoot());
-    } else if (left instanceof OSQLFilterCondition)
+    if (left instanceof OSQLFilterCondition)
       computePrefetchFieldList((OSQLFilterCondition) left, iFields);
+    else
+      addPrefetchField(left, iFields);
 
-    if (right instanceof OSQLFilterItemField) {
-      ((OSQLFilterItemField) right).setPreLoadedFields(iFields);
-      iFields.add(((OSQLFilterItemField) right).getRoot());
-    } else if (right instanceof OSQLFilterCondition)
+    if (right instanceof OSQLFilterCondition)
       computePrefetchFieldList((OSQLFilterCondition) right, iFields);
+    else
+      addPrefetchField(right, iFields);
 
     return iFields;
   }
+
+  /**
+   * Registers the field, or the fields passed as parameters to the function, to be unmarshalled together with the other fields of
+   * the set on the first access to the record.
+   */
+  public static void addPrefetchField(final Object iItem, final Set<String> iFields) {
+    if (iItem instanceof OSQLFilterItemField) {
+      final OSQLFilterItemField field = (OSQLFilterItemField) iItem;
+      field.setPreLoadedFields(iFields);
+      if (!field.getRoot().startsWith("@"))
+        iFields.add(field.getRoot());
+    } else if (iItem instanceof OSQLFunctionRuntime) {
+      for (Object parameter : ((OSQLFunctionRuntime) iItem).getConfiguredParameters())
+        addPrefetchField(parameter, iFields);
+    }
+  }
 }
@@ -82,6 +82,21 @@ public abstract class OSQLFunctionAbstract implements OSQLFunction {
     throw new IllegalStateException("By default SQL function execution result can not be merged");
   }
 
+  /**
+   * Tells if the partial results of aggregations executed by different instances, returned by {@link #getPartialResult()}, can be
+   * merged by {@link #mergeDistributedResult(List)}. Used to write groups of GROUP BY to disk.
+   */
+  public boolean canMergePartialResults() {
+    return false;
+  }
+
+  /**
+   * Returns the state of the aggregation to merge with the states of other instances.
+   */
+  public Object getPartialResult() {
+    return getResult();
+  }
+
   protected boolean returnDistributedResult() {
     return ODatabaseRecordThreadLocal.INSTANCE.get().getStorage() instanceof OAutoshardedStorage;
   }
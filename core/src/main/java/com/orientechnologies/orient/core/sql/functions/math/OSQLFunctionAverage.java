@@ -77,10 +77,7 @@ public class OSQLFunctionAverage extends OSQLFunctionMathAbstract {
   @Override
   public Object getResult() {
     if (returnDistributedResult()) {
-      final Map<String, Object> doc = new HashMap<String, Object>();
-      doc.put("sum", sum);
-      doc.put("total", total);
-      return doc;
+      return getPartialResult();
     } else {
       if (sum instanceof Integer)
         return sum.intValue() / total;
@@ -96,6 +93,14 @@ public class OSQLFunctionAverage extends OSQLFunctionMathAbstract {
     return null;
   }
 
+  @Override
+  public Object getPartialResult() {
+    final Map<String, Object> doc = new HashMap<String, Object>();
+    doc.put("sum", sum);
+    doc.put("total", total);
+    return doc;
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public Object mergeDistributedResult(List<Object> resultsToMerge) {
@@ -103,12 +108,16 @@ public class OSQLFunctionAverage extends OSQLFunctionMathAbstract {
     int total = 0;
     for (Object iParameter : resultsToMerge) {
       final Map<String, Object> item = (Map<String, Object>) iParameter;
+      if (item.get("sum") == null)
+        // NO VALUES
+        continue;
+
       if (sum == null)
         sum = (Number) item.get("sum");
       else
         sum = OType.increment(sum, (Number) item.get("sum"));
 
-      total += (Integer) item.get("total");
+      total += ((Number) item.get("total")).intValue();
     }
 
     if (sum instanceof Integer)
@@ -72,4 +72,9 @@ public abstract class OSQLFunctionMathAbstract extends OSQLFunctionConfigurableA
 	public boolean shouldMergeDistributedResult() {
 		return true;
 	}
+
+	@Override
+	public boolean canMergePartialResults() {
+		return aggregateResults();
+	}
 }
@@ -156,7 +156,24 @@ public class OQueryOperatorEquals extends OQueryOperatorEqualityNotNulls {
 
       final Object keyTwo = compositeIndexDefinition.createSingleValue(keyParams);
 
-      if (INDEX_OPERATION_TYPE.COUNT.equals(iOperationType)) {
+      if (!internalIndex.canBeUsedInRangeOperators()) {
+        // UNORDERED INDEX CAN BE QUERIED ONLY BY FULL KEY
+        if (keyParams.size() < compositeIndexDefinition.getParamCount())
+          return null;
+
+        final Object indexResult;
+        if (iOperationType == INDEX_OPERATION_TYPE.GET)
+          indexResult = index.get(keyOne);
+        else
+          indexResult = index.count(keyOne);
+
+        if (indexResult instanceof Collection || indexResult instanceof Long)
+          result = indexResult;
+        else if (indexResult == null)
+          result = Collections.emptyList();
+        else
+          result = Collections.singletonList((OIdentifiable) indexResult);
+      } else if (INDEX_OPERATION_TYPE.COUNT.equals(iOperationType)) {
         result = (long) index.getValuesBetween(keyOne, true, keyTwo, true).size();
       } else if (fetchLimit > -1)
         result = index.getValuesBetween(keyOne, true, keyTwo, true, fetchLimit);
@@ -66,7 +66,7 @@ public class OQueryOperatorMajorEquals extends OQueryOperatorEqualityNotNulls {
     final OIndexDefinition indexDefinition = index.getDefinition();
 
     final OIndexInternal<?> internalIndex = index.getInternal();
-    if (!internalIndex.canBeUsedInEqualityOperators())
+    if (!internalIndex.canBeUsedInRangeOperators())
       return null;
 
     final Object result;
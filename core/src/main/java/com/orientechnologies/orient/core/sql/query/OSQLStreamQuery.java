@@ -0,0 +1,167 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql.query;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.orientechnologies.orient.core.command.OCommandResultListener;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.record.ODatabaseRecord;
+import com.orientechnologies.orient.core.exception.OQueryParsingException;
+import com.orientechnologies.orient.core.query.OQueryCursor;
+
+/**
+ * SQL query which result is returned as {@link OQueryCursor}. Against remote databases the server sends records in chunks while the
+ * query is executed and produces next chunk only when the client starts to consume the previous one, so memory used by both sides
+ * is bounded by the chunk size regardless of result size. Records received by the cursor are not put in the level-1 cache.
+ * Against local databases or servers which do not support cursors the result is collected before the cursor is returned.
+ *
+ * Usage:
+ *
+ * <pre>
+ * final OQueryCursor&lt;ODocument&gt; cursor = db.command(new OSQLStreamQuery&lt;ODocument&gt;(&quot;select from Account&quot;)).execute();
+ * try {
+ *   for (ODocument doc : cursor)
+ *     ...
+ * } finally {
+ *   cursor.close();
+ * }
+ * </pre>
+ *
+ * NOTE: remote cursor keeps its network channel locked until it's iterated till the end or closed, so it must be used and closed
+ * by the thread which executed the query.
+ *
+ * @param <T>
+ * @since 17.10.13
+ */
+@SuppressWarnings({ "unchecked", "serial" })
+public class OSQLStreamQuery<T extends Object> extends OSQLAsynchQuery<T> implements OCommandResultListener {
+  private final List<T> result    = new ArrayList<T>();
+  private int           chunkSize = OGlobalConfiguration.CLIENT_QUERY_CHUNK_SIZE.getValueAsInteger();
+
+  public OSQLStreamQuery() {
+    resultListener = this;
+  }
+
+  public OSQLStreamQuery(final String iText) {
+    super(iText);
+    resultListener = this;
+  }
+
+  public OSQLStreamQuery(final String iText, final int iChunkSize) {
+    this(iText);
+    chunkSize = iChunkSize;
+  }
+
+  /**
+   * Executes the query.
+   *
+   * @return {@link OQueryCursor} on the query result.
+   */
+  @Override
+  public <RET> RET execute(final Object... iArgs) {
+    final ODatabaseRecord database = ODatabaseRecordThreadLocal.INSTANCE.get();
+    if (database == null)
+      throw new OQueryParsingException("No database configured");
+
+    result.clear();
+    setParameters(iArgs);
+
+    final Object cursor = database.getStorage().command(this);
+    if (cursor instanceof OQueryCursor<?>)
+      return (RET) cursor;
+
+    // THE RESULT HAS BEEN ALREADY COLLECTED BY THIS LISTENER
+    final List<T> collected = new ArrayList<T>(result);
+    result.clear();
+    return (RET) new OCollectedCursor<T>(collected);
+  }
+
+  /**
+   * Executes the query and fetches the whole result.
+   */
+  @Override
+  public List<T> run(final Object... iArgs) {
+    final OQueryCursor<T> cursor = execute(iArgs);
+    try {
+      final List<T> list = new ArrayList<T>();
+      while (cursor.hasNext())
+        list.add(cursor.next());
+      return list;
+    } finally {
+      cursor.close();
+    }
+  }
+
+  @Override
+  public void reset() {
+    result.clear();
+  }
+
+  public boolean result(final Object iRecord) {
+    result.add((T) iRecord);
+    return true;
+  }
+
+  public void end() {
+  }
+
+  /**
+   * Returns the maximum number of records the server sends at once.
+   */
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  public OSQLStreamQuery<T> setChunkSize(final int iChunkSize) {
+    chunkSize = iChunkSize;
+    return this;
+  }
+
+  private static final class OCollectedCursor<T> implements OQueryCursor<T> {
+    private Iterator<T> iterator;
+
+    private OCollectedCursor(final List<T> iResult) {
+      iterator = iResult.iterator();
+    }
+
+    public boolean hasNext() {
+      return iterator != null && iterator.hasNext();
+    }
+
+    public T next() {
+      if (iterator == null)
+        throw new NoSuchElementException();
+      return iterator.next();
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+
+    public Iterator<T> iterator() {
+      return this;
+    }
+
+    public void close() {
+      iterator = null;
+    }
+  }
+}
@@ -20,6 +20,7 @@ import java.io.IOException;
 import com.orientechnologies.common.concur.lock.OLockManager.LOCK;
 import com.orientechnologies.common.exception.OException;
 import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.common.profiler.OProfilerChrono;
 import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.command.OCommandExecutor;
 import com.orientechnologies.orient.core.command.OCommandManager;
@@ -32,6 +33,7 @@ import com.orientechnologies.orient.core.id.OClusterPosition;
 import com.orientechnologies.orient.core.id.OClusterPositionFactory;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.profiler.OJVMProfiler;
 import com.orientechnologies.orient.core.record.ORecordInternal;
 
 /**
@@ -42,19 +44,23 @@ import com.orientechnologies.orient.core.record.ORecordInternal;
  */
 public abstract class OStorageEmbedded extends OStorageAbstract {
   protected final ORecordLockManager lockManager;
-  protected final String             PROFILER_CREATE_RECORD;
-  protected final String             PROFILER_READ_RECORD;
-  protected final String             PROFILER_UPDATE_RECORD;
-  protected final String             PROFILER_DELETE_RECORD;
+  protected final OProfilerChrono    PROFILER_CREATE_RECORD;
+  protected final OProfilerChrono    PROFILER_READ_RECORD;
+  protected final OProfilerChrono    PROFILER_UPDATE_RECORD;
+  protected final OProfilerChrono    PROFILER_DELETE_RECORD;
 
   public OStorageEmbedded(final String iName, final String iFilePath, final String iMode) {
     super(iName, iFilePath, iMode);
     lockManager = new ORecordLockManager(OGlobalConfiguration.STORAGE_RECORD_LOCK_TIMEOUT.getValueAsInteger());
 
-    PROFILER_CREATE_RECORD = "db." + name + ".createRecord";
-    PROFILER_READ_RECORD = "db." + name + ".readRecord";
-    PROFILER_UPDATE_RECORD = "db." + name + ".updateRecord";
-    PROFILER_DELETE_RECORD = "db." + name + ".deleteRecord";
+    final OJVMProfiler profiler = Orient.instance().getProfiler();
+    PROFILER_CREATE_RECORD = profiler.registerChrono("db." + name + ".createRecord", "Create a record in database",
+        "db.*.createRecord");
+    PROFILER_READ_RECORD = profiler.registerChrono("db." + name + ".readRecord", "Read a record from database", "db.*.readRecord");
+    PROFILER_UPDATE_RECORD = profiler.registerChrono("db." + name + ".updateRecord", "Update a record in database",
+        "db.*.updateRecord");
+    PROFILER_DELETE_RECORD = profiler.registerChrono("db." + name + ".deleteRecord", "Delete a record from database",
+        "db.*.deleteRecord");
   }
 
   public abstract OCluster getClusterByName(final String iClusterName);
@@ -15,6 +15,10 @@
  */
 package com.orientechnologies.orient.core.storage;
 
+import java.util.List;
+
+import com.orientechnologies.orient.core.id.ORecordId;
+
 /**
  * Tagged interface for proxy storage implementation
  * 
@@ -22,4 +26,10 @@ package com.orientechnologies.orient.core.storage;
  * 
  */
 public interface OStorageProxy extends OStorage {
+  /**
+   * Loads many records by one request to the server.
+   * 
+   * @return Buffers in the same order of requested ids, null for records that were not found
+   */
+  public List<ORawBuffer> readRecords(List<ORecordId> iRids, String iFetchPlan, boolean iIgnoreCache);
 }
\ No newline at end of file
@@ -138,7 +138,9 @@ public class OStorageLocal extends OStorageLocalAbstract {
     if (directMemory != null)
       diskCache = new O2QCache(OGlobalConfiguration.DISK_CACHE_SIZE.getValueAsLong() * 1024 * 1024,
           OGlobalConfiguration.DISK_CACHE_WRITE_QUEUE_LENGTH.getValueAsInteger(), directMemory, null,
-          OGlobalConfiguration.DISK_CACHE_PAGE_SIZE.getValueAsInteger() * 1024, this, false);
+          OGlobalConfiguration.DISK_CACHE_PAGE_SIZE.getValueAsInteger() * 1024, this, false,
+          OGlobalConfiguration.DISK_CACHE_CONCURRENCY_LEVEL.getValueAsInteger(),
+          OGlobalConfiguration.DISK_CACHE_WRITE_BACK_INTERVAL.getValueAsLong());
     else
       diskCache = null;
   }
@@ -1759,8 +1761,7 @@ public class OStorageLocal extends OStorageLocalAbstract {
       OLogManager.instance().error(this, "Error on creating record in cluster: " + cluster, ioe);
       return null;
     } finally {
-      Orient.instance().getProfiler()
-          .stopChrono(PROFILER_CREATE_RECORD, "Create a record in local database", timer, "db.*.createRecord");
+      PROFILER_CREATE_RECORD.stop(timer);
     }
   }
 
@@ -1835,8 +1836,7 @@ public class OStorageLocal extends OStorageLocalAbstract {
       if (iAtomicLock)
         lock.releaseSharedLock();
 
-      Orient.instance().getProfiler()
-          .stopChrono(PROFILER_READ_RECORD, "Read a record from local database", timer, "db.*.readRecord");
+      PROFILER_READ_RECORD.stop(timer);
     }
   }
 
@@ -1918,8 +1918,7 @@ public class OStorageLocal extends OStorageLocalAbstract {
       OLogManager.instance().error(this, "Error on updating record " + rid + " (cluster: " + iClusterSegment + ")", e);
 
     } finally {
-      Orient.instance().getProfiler()
-          .stopChrono(PROFILER_UPDATE_RECORD, "Update a record to local database", timer, "db.*.updateRecord");
+      PROFILER_UPDATE_RECORD.stop(timer);
     }
 
     return null;
@@ -1968,8 +1967,7 @@ public class OStorageLocal extends OStorageLocalAbstract {
     } catch (IOException e) {
       OLogManager.instance().error(this, "Error on deleting record " + iRid + "( cluster: " + iClusterSegment + ")", e);
     } finally {
-      Orient.instance().getProfiler()
-          .stopChrono(PROFILER_DELETE_RECORD, "Delete a record from local database", timer, "db.*.deleteRecord");
+      PROFILER_DELETE_RECORD.stop(timer);
     }
 
     return null;
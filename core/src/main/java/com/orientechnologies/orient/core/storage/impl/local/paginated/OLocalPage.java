@@ -427,6 +427,26 @@ public class OLocalPage {
     }
   }
 
+  /**
+   * Reverts given changes in reverse order like {@link #revertChanges(java.util.List)} does, but writes old values through the
+   * page setters, so reverting itself is tracked according to the page track mode and can be logged as compensation of the
+   * reverted changes.
+   */
+  public void undoChanges(List<OFullPageDiff<?>> changes) throws IOException {
+    ListIterator<OFullPageDiff<?>> listIterator = changes.listIterator(changes.size());
+
+    while (listIterator.hasPrevious()) {
+      OFullPageDiff<?> diff = listIterator.previous();
+
+      if (diff instanceof OIntFullPageDiff)
+        setIntValue(diff.getPageOffset(), ((OIntFullPageDiff) diff).getOldValue());
+      else if (diff instanceof OLongFullPageDiff)
+        setLongValue(diff.getPageOffset(), ((OLongFullPageDiff) diff).getOldValue());
+      else
+        setBinaryValue(diff.getPageOffset(), ((OBinaryFullPageDiff) diff).getOldValue());
+    }
+  }
+
   private void incrementEntriesCount() throws IOException {
     setIntValue(ENTRIES_COUNT_OFFSET, getRecordsCount() + 1);
   }
@@ -102,7 +102,7 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
 
   private ODiskCache                                diskCache;
 
-  private String                                    name;
+  private volatile String                           name;
   private OLocalPaginatedStorage                    storageLocal;
   private volatile int                              id;
   private long                                      fileId;
@@ -125,6 +125,8 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
 
   private ThreadLocal<OLogSequenceNumber>           lastLsn                      = new ThreadLocal<OLogSequenceNumber>();
 
+  private final ThreadLocal<OStorageTransaction>    storageTransaction           = new ThreadLocal<OStorageTransaction>();
+
   public OLocalPaginatedCluster() {
     super(OGlobalConfiguration.ENVIRONMENT_CONCURRENT.getValueAsBoolean());
     for (int i = 0; i < freePageLists.length; i++)
@@ -315,10 +317,7 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
             + OLongSerializer.LONG_SIZE;
 
         if (entryContentLength < OLocalPage.MAX_RECORD_SIZE) {
-          if (writeAheadLog != null) {
-            OLogSequenceNumber lsn = writeAheadLog.log(new OAtomicUnitStartRecord(false, id));
-            lastLsn.set(lsn);
-          }
+          startAtomicUnit(false);
 
           byte[] entryContent = new byte[entryContentLength];
 
@@ -336,7 +335,7 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
           entryPosition++;
 
           OLongSerializer.INSTANCE.serializeNative(-1L, entryContent, entryPosition);
-          OLocalPage.TrackMode trackMode = writeAheadLog == null ? OLocalPage.TrackMode.NONE : OLocalPage.TrackMode.FORWARD;
+          OLocalPage.TrackMode trackMode = getTrackMode(false);
 
           final AddEntryResult addEntryResult = addEntry(recordVersion, entryContent, trackMode);
 
@@ -345,19 +344,13 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
 
           logClusterState();
 
-          if (writeAheadLog != null) {
-            writeAheadLog.log(new OAtomicUnitEndRecord(lastLsn.get()));
-            lastLsn.set(null);
-          }
+          endAtomicUnit();
 
           return createPhysicalPosition(recordType, addEntryResult.pagePointer, addEntryResult.recordVersion);
         } else {
-          if (writeAheadLog != null) {
-            OLogSequenceNumber lsn = writeAheadLog.log(new OAtomicUnitStartRecord(true, id));
-            lastLsn.set(lsn);
-          }
+          startAtomicUnit(true);
 
-          OLocalPage.TrackMode trackMode = writeAheadLog == null ? OLocalPage.TrackMode.NONE : OLocalPage.TrackMode.BOTH;
+          OLocalPage.TrackMode trackMode = getTrackMode(true);
           int entrySize = grownContentSize + OIntegerSerializer.INT_SIZE + OByteSerializer.BYTE_SIZE;
 
           int fullEntryPosition = 0;
@@ -435,10 +428,7 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
 
           logClusterState();
 
-          if (writeAheadLog != null) {
-            writeAheadLog.log(new OAtomicUnitEndRecord(lastLsn.get()));
-            lastLsn.set(null);
-          }
+          endAtomicUnit();
 
           return createPhysicalPosition(recordType, firstPagePointer, version);
         }
@@ -585,13 +575,7 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
 
         boolean isRecordSpreadAcrossSeveralPages = isRecordSpreadAcrossSeveralPages(pageIndex, recordPosition);
 
-        final OLocalPage.TrackMode trackMode;
-        if (writeAheadLog == null)
-          trackMode = OLocalPage.TrackMode.NONE;
-        else if (isRecordSpreadAcrossSeveralPages)
-          trackMode = OLocalPage.TrackMode.BOTH;
-        else
-          trackMode = OLocalPage.TrackMode.FORWARD;
+        final OLocalPage.TrackMode trackMode = getTrackMode(isRecordSpreadAcrossSeveralPages);
 
         long nextPagePointer = -1;
         int removedContentSize = 0;
@@ -608,10 +592,8 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
                 return false;
               else
                 throw new OStorageException("Content of record " + new ORecordId(id, clusterPosition) + " was broken.");
-            } else if (removedContentSize == 0 && writeAheadLog != null) {
-              OLogSequenceNumber lsn = writeAheadLog.log(new OAtomicUnitStartRecord(isRecordSpreadAcrossSeveralPages, id));
-              lastLsn.set(lsn);
-            }
+            } else if (removedContentSize == 0)
+              startAtomicUnit(isRecordSpreadAcrossSeveralPages);
 
             byte[] content = localPage.getBinaryValue(recordPageOffset, localPage.getRecordSize(recordPosition));
 
@@ -639,10 +621,7 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
 
         logClusterState();
 
-        if (writeAheadLog != null) {
-          writeAheadLog.log(new OAtomicUnitEndRecord(lastLsn.get()));
-          lastLsn.set(null);
-        }
+        endAtomicUnit();
 
         return true;
       } finally {
@@ -685,18 +664,9 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
           isRecordSpreadAcrossSeveralPages = true;
         }
 
-        final OLocalPage.TrackMode trackMode;
-        if (writeAheadLog == null)
-          trackMode = OLocalPage.TrackMode.NONE;
-        else if (isRecordSpreadAcrossSeveralPages)
-          trackMode = OLocalPage.TrackMode.BOTH;
-        else
-          trackMode = OLocalPage.TrackMode.FORWARD;
+        final OLocalPage.TrackMode trackMode = getTrackMode(isRecordSpreadAcrossSeveralPages);
 
-        if (writeAheadLog != null) {
-          OLogSequenceNumber lsn = writeAheadLog.log(new OAtomicUnitStartRecord(isRecordSpreadAcrossSeveralPages, id));
-          lastLsn.set(lsn);
-        }
+        startAtomicUnit(isRecordSpreadAcrossSeveralPages);
 
         int entryPosition = 0;
         recordEntry[entryPosition] = recordType;
@@ -833,10 +803,7 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
 
         logClusterState();
 
-        if (writeAheadLog != null) {
-          writeAheadLog.log(new OAtomicUnitEndRecord(lastLsn.get()));
-          lastLsn.set(null);
-        }
+        endAtomicUnit();
 
       } finally {
         releaseExclusiveLock();
@@ -913,7 +880,7 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
     long pagePointer = diskCache.load(fileId, pageIndex);
     try {
       final OLocalPage page = new OLocalPage(pagePointer, false, OLocalPage.TrackMode.NONE);
-      List<OPageDiff<?>> pageDiffs = page.getPageChanges();
+      List<OPageDiff<?>> pageDiffs = updatePageRecord.getChanges();
 
       List<OFullPageDiff<?>> fullPageDiffs = new ArrayList<OFullPageDiff<?>>(pageDiffs.size());
       for (OPageDiff<?> pageDiff : pageDiffs) {
@@ -936,7 +903,11 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
     }
   }
 
-  private void restorePageData(OUpdatePageRecord updatePageRecord) throws IOException {
+  /**
+   * Applies page changes without acquiring of cluster lock, caller should guarantee that the same page is not restored by
+   * several threads at once.
+   */
+  void restorePageData(OUpdatePageRecord updatePageRecord) throws IOException {
     long pageIndex = updatePageRecord.getPageIndex();
     long pagePointer = diskCache.load(fileId, pageIndex);
     try {
@@ -1121,19 +1092,148 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
   }
 
   private void logPageChanges(OLocalPage localPage, long pageIndex) throws IOException {
-    if (writeAheadLog != null) {
-      List<OPageDiff<?>> pageChanges = localPage.getPageChanges();
-      if (pageChanges.isEmpty())
-        return;
+    final OStorageTransaction transaction = storageTransaction.get();
+    if (writeAheadLog == null && transaction == null)
+      return;
 
-      OLogSequenceNumber lsn = lastLsn.get();
+    List<OPageDiff<?>> pageChanges = localPage.getPageChanges();
+    if (pageChanges.isEmpty())
+      return;
+
+    OLogSequenceNumber lsn = lastLsn.get();
+    final OUpdatePageRecord updatePageRecord = new OUpdatePageRecord(pageIndex, id, lsn, pageChanges);
+
+    if (writeAheadLog != null) {
       assert lsn != null;
 
-      lsn = writeAheadLog.log(new OUpdatePageRecord(pageIndex, id, lsn, pageChanges));
+      lsn = writeAheadLog.log(updatePageRecord);
 
       localPage.setLsn(lsn);
       lastLsn.set(lsn);
     }
+
+    // KEEP CHANGES TO UNDO THEM IF TRANSACTION COMMIT FAILS
+    if (transaction != null)
+      transaction.addPageChanges(updatePageRecord);
+  }
+
+  /**
+   * Starts atomic unit of cluster operation. If cluster is locked by storage transaction of current thread, operation joins
+   * transaction atomic unit instead.
+   */
+  private void startAtomicUnit(boolean rollbackSupported) throws IOException {
+    final OStorageTransaction transaction = storageTransaction.get();
+    if (transaction != null)
+      lastLsn.set(transaction.getLastLSN());
+    else if (writeAheadLog != null) {
+      OLogSequenceNumber lsn = writeAheadLog.log(new OAtomicUnitStartRecord(rollbackSupported, id));
+      lastLsn.set(lsn);
+    }
+  }
+
+  private void endAtomicUnit() throws IOException {
+    final OStorageTransaction transaction = storageTransaction.get();
+    if (transaction != null)
+      transaction.setLastLSN(lastLsn.get());
+    else if (writeAheadLog != null)
+      writeAheadLog.log(new OAtomicUnitEndRecord(lastLsn.get()));
+
+    lastLsn.set(null);
+  }
+
+  /**
+   * Changes done inside of storage transaction are always tracked with old values, because they are undone if commit fails.
+   */
+  private OLocalPage.TrackMode getTrackMode(boolean rollbackSupported) {
+    if (storageTransaction.get() != null)
+      return OLocalPage.TrackMode.BOTH;
+
+    if (writeAheadLog == null)
+      return OLocalPage.TrackMode.NONE;
+
+    return rollbackSupported ? OLocalPage.TrackMode.BOTH : OLocalPage.TrackMode.FORWARD;
+  }
+
+  /**
+   * Locks cluster till the end of storage transaction and remembers cluster state to restore it if transaction is rolled back.
+   */
+  void lockForTransaction(OStorageTransaction transaction) {
+    externalModificationLock.requestModificationLock();
+    acquireExclusiveLock();
+
+    storageTransaction.set(transaction);
+    transaction.addLockedCluster(this, new OClusterTxSnapshot(size, recordsSize, freePageLists.clone()));
+  }
+
+  /**
+   * Same as {@link #lockForTransaction(OStorageTransaction)}, but waits for the cluster lock at most the passed timeout.
+   * 
+   * @return <code>false</code> if cluster was not locked
+   */
+  boolean tryLockForTransaction(OStorageTransaction transaction, long timeout) {
+    externalModificationLock.requestModificationLock();
+    if (!tryAcquireExclusiveLock(timeout)) {
+      externalModificationLock.releaseModificationLock();
+      return false;
+    }
+
+    storageTransaction.set(transaction);
+    transaction.addLockedCluster(this, new OClusterTxSnapshot(size, recordsSize, freePageLists.clone()));
+    return true;
+  }
+
+  void unlockAfterTransaction() {
+    storageTransaction.remove();
+
+    releaseExclusiveLock();
+    externalModificationLock.releaseModificationLock();
+  }
+
+  /**
+   * Undoes changes of cluster pages done by storage transaction and logs reverted values as continuation of transaction atomic
+   * unit. Cluster stays locked till {@link #unlockAfterTransaction()} is called.
+   */
+  void rollbackTransaction(OStorageTransaction transaction, OClusterTxSnapshot snapshot) throws IOException {
+    // REVERTED VALUES ARE LOGGED, BUT NOT KEPT FOR UNDO
+    storageTransaction.remove();
+
+    lastLsn.set(transaction.getLastLSN());
+    try {
+      final List<OUpdatePageRecord> pageRecords = transaction.getPageChanges();
+      for (int i = pageRecords.size() - 1; i >= 0; i--) {
+        final OUpdatePageRecord pageRecord = pageRecords.get(i);
+        if (pageRecord.getClusterId() != id)
+          continue;
+
+        final List<OFullPageDiff<?>> fullPageDiffs = new ArrayList<OFullPageDiff<?>>(pageRecord.getChanges().size());
+        for (OPageDiff<?> pageDiff : pageRecord.getChanges())
+          fullPageDiffs.add((OFullPageDiff<?>) pageDiff);
+
+        final long pageIndex = pageRecord.getPageIndex();
+        final long pagePointer = diskCache.load(fileId, pageIndex);
+        try {
+          final OLocalPage localPage = new OLocalPage(pagePointer, false, writeAheadLog == null ? OLocalPage.TrackMode.NONE
+              : OLocalPage.TrackMode.FORWARD);
+          localPage.undoChanges(fullPageDiffs);
+
+          logPageChanges(localPage, pageIndex);
+
+          diskCache.markDirty(fileId, pageIndex);
+        } finally {
+          diskCache.release(fileId, pageIndex);
+        }
+      }
+
+      size = snapshot.size;
+      recordsSize = snapshot.recordsSize;
+      System.arraycopy(snapshot.freePageLists, 0, freePageLists, 0, freePageLists.length);
+
+      logClusterState();
+
+      transaction.setLastLSN(lastLsn.get());
+    } finally {
+      lastLsn.set(null);
+    }
   }
 
   private int calculateFreePageIndex(OLocalPage localPage) {
@@ -1389,12 +1489,8 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
 
   @Override
   public String getName() {
-    acquireSharedLock();
-    try {
-      return name;
-    } finally {
-      releaseSharedLock();
-    }
+    // NOT LOCKED: NAME IS READ ALSO BY COMMITS WHICH WAIT FOR THIS CLUSTER
+    return name;
   }
 
   @Override
@@ -1714,6 +1810,14 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
   }
 
   public void restoreAtomicOperation(List<OWALRecord> records) throws IOException {
+    restoreAtomicOperation(records, null);
+  }
+
+  /**
+   * Restores atomic operation from WAL. If page restore executor is passed page changes are applied by executor threads, cluster
+   * state is restored in current thread.
+   */
+  void restoreAtomicOperation(List<OWALRecord> records, OPageRestoreExecutor pageRestoreExecutor) throws IOException {
     for (int i = 0; i < records.size(); i++) {
       OWALRecord record = records.get(i);
       if (checkFirstAtomicUnitRecord(i, record))
@@ -1724,6 +1828,8 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
 
       if (record instanceof OClusterStateRecord)
         restoreClusterState((OClusterStateRecord) record);
+      else if (record instanceof OUpdatePageRecord && pageRestoreExecutor != null)
+        pageRestoreExecutor.submit(this, (OUpdatePageRecord) record);
       else if (record instanceof OAbstractPageWALRecord)
         restorePage((OAbstractPageWALRecord) record);
       else {
@@ -1770,13 +1876,12 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
   }
 
   public void revertAtomicOperation(List<OWALRecord> records) throws IOException {
-    for (int i = records.size(); i >= 0; i--) {
+    for (int i = records.size() - 1; i >= 0; i--) {
       OWALRecord record = records.get(i);
       if (checkFirstAtomicUnitRecord(i, record))
         continue;
 
-      if (checkLastAtomicUnitRecord(i, record, records.size()))
-        continue;
+      // OPERATION IS NOT FINISHED, SO THERE IS NO END RECORD
 
       if (record instanceof OClusterStateRecord) {
         // we store cluster state only if data flush (and WAL flush) were successful so just ignore it..
@@ -1789,7 +1894,21 @@ public class OLocalPaginatedCluster extends OSharedResourceAdaptive implements O
       }
 
     }
-    // To change body of created methods use File | Settings | File Templates.
+  }
+
+  /**
+   * State of cluster which is kept in memory only, remembered before the first change done by storage transaction.
+   */
+  static final class OClusterTxSnapshot {
+    private final long   size;
+    private final long   recordsSize;
+    private final long[] freePageLists;
+
+    private OClusterTxSnapshot(long size, long recordsSize, long[] freePageLists) {
+      this.size = size;
+      this.recordsSize = recordsSize;
+      this.freePageLists = freePageLists;
+    }
   }
 
   private static final class AddEntryResult {
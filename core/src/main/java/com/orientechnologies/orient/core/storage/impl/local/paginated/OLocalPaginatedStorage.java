@@ -21,20 +21,27 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import com.orientechnologies.common.concur.OTimeoutException;
 import com.orientechnologies.common.concur.lock.OLockManager;
 import com.orientechnologies.common.concur.lock.OModificationLock;
 import com.orientechnologies.common.directmemory.ODirectMemory;
@@ -44,6 +51,8 @@ import com.orientechnologies.common.io.OFileUtils;
 import com.orientechnologies.common.io.OIOUtils;
 import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.common.parser.OSystemVariableResolver;
+import com.orientechnologies.common.profiler.OProfiler.METRIC_TYPE;
+import com.orientechnologies.common.profiler.OProfiler.OProfilerHookValue;
 import com.orientechnologies.common.util.OArrays;
 import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.command.OCommandOutputListener;
@@ -61,11 +70,14 @@ import com.orientechnologies.orient.core.exception.OStorageException;
 import com.orientechnologies.orient.core.id.OClusterPosition;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.index.hashindex.local.OLocalHashTable;
 import com.orientechnologies.orient.core.index.hashindex.local.cache.O2QCache;
 import com.orientechnologies.orient.core.index.hashindex.local.cache.ODiskCache;
 import com.orientechnologies.orient.core.index.hashindex.local.cache.OPageDataVerificationError;
 import com.orientechnologies.orient.core.memory.OMemoryWatchDog;
 import com.orientechnologies.orient.core.metadata.OMetadata;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.storage.OCluster;
 import com.orientechnologies.orient.core.storage.OPhysicalPosition;
 import com.orientechnologies.orient.core.storage.ORawBuffer;
@@ -90,9 +102,15 @@ import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OFuzzy
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OFuzzyCheckpointStartRecord;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OLogSequenceNumber;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OOperationUnitRecord;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OWALDurabilityMode;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OWALRecord;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OWriteAheadLog;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OFullPageDiff;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OPageDiff;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OUpdateFilePageRecord;
 import com.orientechnologies.orient.core.tx.OTransaction;
+import com.orientechnologies.orient.core.tx.OTransactionAbstract;
+import com.orientechnologies.orient.core.tx.OTxListener;
 import com.orientechnologies.orient.core.version.ORecordVersion;
 import com.orientechnologies.orient.core.version.OVersionFactory;
 
@@ -113,7 +131,7 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
   private int                                       defaultClusterId        = -1;
 
   private static String[]                           ALL_FILE_EXTENSIONS     = { ".ocf", ".pls", ".pcl", ".oda", ".odh", ".otx",
-      ".ocs", ".oef", ".oem", ".oet", ".wal", ".wmr"                       };
+      ".ocs", ".oef", ".oem", ".oet", ".obf", ".imc", ".tsc", ".wal", ".wmr" };
 
   private OModificationLock                         modificationLock        = new OModificationLock();
 
@@ -141,6 +159,14 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
 
   private Map<OLogSequenceNumber, List<OWALRecord>> operationUnits          = new HashMap<OLogSequenceNumber, List<OWALRecord>>();
 
+  private final ThreadLocal<OStorageTransaction>    storageTransaction      = new ThreadLocal<OStorageTransaction>();
+
+  private final Set<OLocalHashTable<?, ?>>          hashTables              = Collections
+                                                                                .newSetFromMap(new ConcurrentHashMap<OLocalHashTable<?, ?>, Boolean>());
+  private final Map<String, Long>                   restoredFiles           = new HashMap<String, Long>();
+
+  private final AtomicBoolean                       backupInProgress        = new AtomicBoolean();
+
   public OLocalPaginatedStorage(final String name, final String filePath, final String mode) throws IOException {
     super(name, filePath, mode);
 
@@ -186,7 +212,9 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
 
     diskCache = new O2QCache(OGlobalConfiguration.DISK_CACHE_SIZE.getValueAsLong() * ONE_KB * ONE_KB,
         OGlobalConfiguration.DISK_CACHE_WRITE_QUEUE_LENGTH.getValueAsInteger(), directMemory, writeAheadLog,
-        OGlobalConfiguration.DISK_CACHE_PAGE_SIZE.getValueAsInteger() * ONE_KB, this, false);
+        OGlobalConfiguration.DISK_CACHE_PAGE_SIZE.getValueAsInteger() * ONE_KB, this, false,
+        OGlobalConfiguration.DISK_CACHE_CONCURRENCY_LEVEL.getValueAsInteger(),
+        OGlobalConfiguration.DISK_CACHE_WRITE_BACK_INTERVAL.getValueAsLong());
   }
 
   public void open(final String iUserName, final String iUserPassword, final Map<String, Object> iProperties) {
@@ -288,6 +316,7 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
     if (lastCheckPoint == null) {
       OLogManager.instance().info(this, "Checkpoints are absent will restore from beginning.");
       restoreFromBegging();
+      return;
     }
 
     OWALRecord checkPointRecord = writeAheadLog.read(lastCheckPoint);
@@ -336,7 +365,7 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
 
         if (checkPointRecord != null) {
           OLogManager.instance().warn(this, "Will restore from previous checkpoint.");
-
+          restoreFromCheckPoint((OAbstractCheckPointStartRecord) checkPointRecord);
         } else {
           OLogManager.instance().warn(this, "Will restore from beginning.");
           restoreFromBegging();
@@ -358,6 +387,8 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
       OWALRecord walRecord = writeAheadLog.read(lsn);
       if (walRecord instanceof OCheckpointEndRecord)
         return true;
+
+      lsn = writeAheadLog.next(lsn);
     }
 
     return false;
@@ -370,6 +401,8 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
       OWALRecord walRecord = writeAheadLog.read(lsn);
       if (walRecord instanceof OFuzzyCheckpointEndRecord)
         return true;
+
+      lsn = writeAheadLog.next(lsn);
     }
 
     return false;
@@ -432,58 +465,96 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
   }
 
   private void restoreFrom(OLogSequenceNumber lsn) throws IOException {
-    while (lsn != null) {
-      OWALRecord walRecord = writeAheadLog.read(lsn);
-      if (walRecord instanceof OAtomicUnitStartRecord) {
+    final long timer = Orient.instance().getProfiler().startChrono();
+    final String profilerPrefix = "db." + name + ".restore";
+    final AtomicLong processedRecords = new AtomicLong();
+
+    Orient.instance().getProfiler()
+        .registerHookValue(profilerPrefix + ".processedRecords", "Amount of WAL records processed by running data restore",
+            METRIC_TYPE.COUNTER, new OProfilerHookValue() {
+              public Object getValue() {
+                return processedRecords.get();
+              }
+            });
+
+    final int restoreThreads = OGlobalConfiguration.WAL_RESTORE_THREADS.getValueAsInteger();
+    final OPageRestoreExecutor pageRestoreExecutor = restoreThreads > 1 ? new OPageRestoreExecutor(name, restoreThreads) : null;
+    try {
+      while (lsn != null) {
+        OWALRecord walRecord = writeAheadLog.read(lsn);
+        restoreRecord(walRecord, pageRestoreExecutor);
+
+        processedRecords.incrementAndGet();
+        lsn = writeAheadLog.next(lsn);
+      }
+    } finally {
+      // ALL PAGE CHANGES SHOULD BE APPLIED BEFORE UNFINISHED OPERATIONS ARE ROLLED BACK
+      if (pageRestoreExecutor != null)
+        pageRestoreExecutor.shutdown();
+
+      Orient.instance().getProfiler().unregisterHookValue(profilerPrefix + ".processedRecords");
+      Orient.instance().getProfiler()
+          .updateCounter(profilerPrefix + ".records", "Amount of WAL records processed during data restore", processedRecords.get(),
+              "db.*.restore.records");
+      Orient.instance().getProfiler().stopChrono(profilerPrefix, "Restore of storage data from WAL", timer, "db.*.restore");
+    }
+
+    try {
+      rollbackAllUnfinishedWALOperations();
+    } finally {
+      closeRestoredFiles();
+    }
+  }
+
+  private void restoreRecord(OWALRecord walRecord, OPageRestoreExecutor pageRestoreExecutor) throws IOException {
+    if (walRecord instanceof OAtomicUnitStartRecord) {
+      List<OWALRecord> operationList = new ArrayList<OWALRecord>();
+      operationUnits.put(walRecord.getLsn(), operationList);
+      operationList.add(walRecord);
+    } else if (walRecord instanceof OOperationUnitRecord) {
+      OOperationUnitRecord operationUnitRecord = (OOperationUnitRecord) walRecord;
+      OLogSequenceNumber prevLsn = operationUnitRecord.getPrevLsn();
+
+      if (prevLsn == null) {
+        assert false : "Record with LSN " + walRecord.getLsn() + " has no previous record link.";
+        OLogManager.instance().error(this, "Record with LSN %s has no previous record link.", walRecord.getLsn());
+
         List<OWALRecord> operationList = new ArrayList<OWALRecord>();
         operationUnits.put(walRecord.getLsn(), operationList);
         operationList.add(walRecord);
-      } else if (walRecord instanceof OOperationUnitRecord) {
-        OOperationUnitRecord operationUnitRecord = (OOperationUnitRecord) walRecord;
-        OLogSequenceNumber prevLsn = operationUnitRecord.getPrevLsn();
-
-        if (prevLsn == null) {
-          assert false : "Record with LSN " + walRecord.getLsn() + " has no previous record link.";
-          OLogManager.instance().error(this, "Record with LSN %s has no previous record link.", walRecord.getLsn());
-
-          List<OWALRecord> operationList = new ArrayList<OWALRecord>();
-          operationUnits.put(walRecord.getLsn(), operationList);
-          operationList.add(walRecord);
+      } else {
+        List<OWALRecord> operationList = operationUnits.remove(prevLsn);
+        if (operationList == null) {
+          OLogManager.instance().error(this, "Record with LSN %s has no previous record link. And will be skipped.",
+              walRecord.getLsn());
+          return;
         } else {
-          List<OWALRecord> operationList = operationUnits.remove(prevLsn);
-          if (operationList == null) {
-            OLogManager.instance().error(this, "Record with LSN %s has no previous record link. And will be skipped.",
-                walRecord.getLsn());
-            continue;
-          } else {
-            operationList.add(walRecord);
-
-            if (!(operationUnitRecord instanceof OAtomicUnitEndRecord))
-              operationUnits.put(walRecord.getLsn(), operationList);
-          }
+          operationList.add(walRecord);
+
+          if (!(operationUnitRecord instanceof OAtomicUnitEndRecord))
+            operationUnits.put(walRecord.getLsn(), operationList);
+        }
 
-          if (operationUnitRecord instanceof OAtomicUnitEndRecord) {
-            OClusterAwareWALRecord clusterAwareRecord = (OClusterAwareWALRecord) operationList.get(0);
-            int clusterId = clusterAwareRecord.getClusterId();
+        if (operationUnitRecord instanceof OAtomicUnitEndRecord) {
+          for (Map.Entry<Integer, List<OWALRecord>> clusterOperation : splitByClusters(operationList).entrySet()) {
+            final int clusterId = clusterOperation.getKey();
 
             OLocalPaginatedCluster paginatedCluster = getClusterById(clusterId);
             if (paginatedCluster == null) {
               OLogManager.instance().error(this,
                   "Cluster with %d is absent and operation which consist of following WAL records %s will be skipped", clusterId,
-                  operationList);
+                  clusterOperation.getValue());
               assert false;
             } else {
-              paginatedCluster.restoreAtomicOperation(operationList);
+              paginatedCluster.restoreAtomicOperation(clusterOperation.getValue(), pageRestoreExecutor);
             }
           }
-        }
-      } else
-        OLogManager.instance().warn(this, "Record %s will be skipped during data restore.", walRecord);
 
-      lsn = writeAheadLog.next(lsn);
-    }
-
-    rollbackAllUnfinishedWALOperations();
+          restoreFilePages(operationList);
+        }
+      }
+    } else
+      OLogManager.instance().warn(this, "Record %s will be skipped during data restore.", walRecord);
   }
 
   private void rollbackAllUnfinishedWALOperations() throws IOException {
@@ -492,24 +563,142 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
         continue;
 
       OWALRecord firstWalRecord = operationUnit.get(0);
-      OClusterAwareWALRecord clusterAwareWALRecord = (OClusterAwareWALRecord) firstWalRecord;
-      int clusterId = clusterAwareWALRecord.getClusterId();
-
-      OLocalPaginatedCluster paginatedCluster = getClusterById(clusterId);
-      if (paginatedCluster == null) {
-        OLogManager.instance().error(this,
-            "Cluster with %d is absent and operation which consist of following WAL records %s will be skipped", clusterId,
-            operationUnit);
-        assert false;
-      } else {
-        if (firstWalRecord instanceof OAtomicUnitStartRecord) {
-          OAtomicUnitStartRecord atomicUnitStartRecord = (OAtomicUnitStartRecord) firstWalRecord;
-          if (atomicUnitStartRecord.isRollbackSupported())
-            paginatedCluster.revertAtomicOperation(operationUnit);
-        }
+      if (!(firstWalRecord instanceof OAtomicUnitStartRecord) || !((OAtomicUnitStartRecord) firstWalRecord).isRollbackSupported())
+        continue;
+
+      for (Map.Entry<Integer, List<OWALRecord>> clusterOperation : splitByClusters(operationUnit).entrySet()) {
+        final int clusterId = clusterOperation.getKey();
+
+        OLocalPaginatedCluster paginatedCluster = getClusterById(clusterId);
+        if (paginatedCluster == null) {
+          OLogManager.instance().error(this,
+              "Cluster with %d is absent and operation which consist of following WAL records %s will be skipped", clusterId,
+              clusterOperation.getValue());
+          assert false;
+        } else
+          paginatedCluster.revertAtomicOperation(clusterOperation.getValue());
+      }
+
+      revertFilePages(operationUnit);
+    }
+  }
+
+  /**
+   * Applies changes of pages of files which do not belong to clusters, like files of hash indexes. Such files are not opened by
+   * storage itself, so they are opened during restore and closed when restore is finished.
+   */
+  private void restoreFilePages(List<OWALRecord> operationUnit) throws IOException {
+    for (OWALRecord walRecord : operationUnit) {
+      if (!(walRecord instanceof OUpdateFilePageRecord))
+        continue;
+
+      final OUpdateFilePageRecord pageRecord = (OUpdateFilePageRecord) walRecord;
+      final long fileId = openRestoredFile(pageRecord.getFileName());
+      if (fileId < 0)
+        continue;
+
+      final long pageIndex = pageRecord.getPageIndex();
+      final long pagePointer = diskCache.load(fileId, pageIndex);
+      try {
+        final OLocalPage page = new OLocalPage(pagePointer, false, OLocalPage.TrackMode.NONE);
+        page.restoreChanges(pageRecord.getChanges());
+        page.setLsn(pageRecord.getLsn());
+
+        diskCache.markDirty(fileId, pageIndex);
+      } finally {
+        diskCache.release(fileId, pageIndex);
+      }
+    }
+  }
+
+  private void revertFilePages(List<OWALRecord> operationUnit) throws IOException {
+    for (int i = operationUnit.size() - 1; i >= 0; i--) {
+      final OWALRecord walRecord = operationUnit.get(i);
+      if (!(walRecord instanceof OUpdateFilePageRecord))
+        continue;
+
+      final OUpdateFilePageRecord pageRecord = (OUpdateFilePageRecord) walRecord;
+      final long fileId = openRestoredFile(pageRecord.getFileName());
+      if (fileId < 0)
+        continue;
+
+      final List<OFullPageDiff<?>> fullPageDiffs = new ArrayList<OFullPageDiff<?>>();
+      for (OPageDiff<?> pageDiff : pageRecord.getChanges())
+        fullPageDiffs.add((OFullPageDiff<?>) pageDiff);
+
+      final long pageIndex = pageRecord.getPageIndex();
+      final long pagePointer = diskCache.load(fileId, pageIndex);
+      try {
+        final OLocalPage page = new OLocalPage(pagePointer, false, OLocalPage.TrackMode.NONE);
+        page.revertChanges(fullPageDiffs);
+        page.setLsn(pageRecord.getPrevLsn());
+
+        diskCache.markDirty(fileId, pageIndex);
+      } finally {
+        diskCache.release(fileId, pageIndex);
+      }
+    }
+  }
+
+  /**
+   * @return Id of file in disk cache or <code>-1</code> if file was deleted after its changes were logged.
+   */
+  private long openRestoredFile(String fileName) throws IOException {
+    final Long fileId = restoredFiles.get(fileName);
+    if (fileId != null)
+      return fileId;
+
+    final long newFileId;
+    if (new File(variableParser.resolveVariables(storagePath + File.separator + fileName)).exists())
+      newFileId = diskCache.openFile(fileName);
+    else {
+      OLogManager.instance().warn(this, "File %s is absent, its changes will be skipped during data restore.", fileName);
+      newFileId = -1;
+    }
 
+    restoredFiles.put(fileName, newFileId);
+    return newFileId;
+  }
+
+  private void closeRestoredFiles() throws IOException {
+    for (long fileId : restoredFiles.values())
+      if (fileId >= 0)
+        diskCache.closeFile(fileId);
+
+    restoredFiles.clear();
+  }
+
+  /**
+   * Splits records of atomic unit by clusters they belong to. Transaction is logged as single atomic unit which may change
+   * several clusters, every part starts with the start record of unit and ends with the end record of unit if it is present.
+   */
+  private Map<Integer, List<OWALRecord>> splitByClusters(List<OWALRecord> operationUnit) {
+    final OWALRecord startRecord = operationUnit.get(0);
+    final OWALRecord lastRecord = operationUnit.get(operationUnit.size() - 1);
+    final OWALRecord endRecord = lastRecord instanceof OAtomicUnitEndRecord ? lastRecord : null;
+
+    final Map<Integer, List<OWALRecord>> clusterOperations = new LinkedHashMap<Integer, List<OWALRecord>>();
+    for (int i = 1; i < operationUnit.size(); i++) {
+      final OWALRecord walRecord = operationUnit.get(i);
+      if (walRecord == endRecord || walRecord instanceof OUpdateFilePageRecord)
+        continue;
+
+      final int clusterId = ((OClusterAwareWALRecord) walRecord).getClusterId();
+      List<OWALRecord> clusterOperation = clusterOperations.get(clusterId);
+      if (clusterOperation == null) {
+        clusterOperation = new ArrayList<OWALRecord>();
+        clusterOperation.add(startRecord);
+        clusterOperations.put(clusterId, clusterOperation);
       }
+
+      clusterOperation.add(walRecord);
     }
+
+    if (endRecord != null)
+      for (List<OWALRecord> clusterOperation : clusterOperations.values())
+        clusterOperation.add(endRecord);
+
+    return clusterOperations;
   }
 
   public void create(final Map<String, Object> iProperties) {
@@ -585,6 +774,7 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
       status = STATUS.CLOSING;
 
       makeFullCheckpoint();
+      hashTables.clear();
       fuzzyCheckpointExecutor.shutdown();
       final int fuzzyCheckpointDelay = OGlobalConfiguration.WAL_FUZZY_CHECKPOINT_INTERVAL.getValueAsInteger();
       fuzzyCheckpointExecutor.awaitTermination(fuzzyCheckpointDelay * 10, TimeUnit.SECONDS);
@@ -939,6 +1129,7 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
     checkOpeness();
 
     final OLocalPaginatedCluster cluster = getClusterById(rid.clusterId);
+    joinStorageTransaction(cluster);
     cluster.getExternalModificationLock().requestModificationLock();
     try {
       modificationLock.requestModificationLock();
@@ -955,6 +1146,8 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
             ppos = cluster.createRecord(content, recordVersion, recordType);
             rid.clusterPosition = ppos.clusterPosition;
 
+            commitWALChanges();
+
             if (callback != null)
               callback.call(rid, ppos.clusterPosition);
 
@@ -1064,6 +1257,7 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
     checkOpeness();
 
     final OLocalPaginatedCluster cluster = getClusterById(rid.clusterId);
+    joinStorageTransaction(cluster);
 
     cluster.getExternalModificationLock().requestModificationLock();
     try {
@@ -1075,44 +1269,14 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
           lockManager.acquireLock(Thread.currentThread(), rid, OLockManager.LOCK.EXCLUSIVE);
           try {
             // UPDATE IT
-            final OPhysicalPosition ppos = cluster.getPhysicalPosition(new OPhysicalPosition(rid.clusterPosition));
-            if (!checkForRecordValidity(ppos)) {
-              final ORecordVersion recordVersion = OVersionFactory.instance().createUntrackedVersion();
-              if (callback != null)
-                callback.call(rid, recordVersion);
-
-              return new OStorageOperationResult<ORecordVersion>(recordVersion);
-            }
-
-            // VERSION CONTROL CHECK
-            switch (version.getCounter()) {
-            // DOCUMENT UPDATE, NO VERSION CONTROL
-            case -1:
-              ppos.recordVersion.increment();
-              break;
-
-            // DOCUMENT UPDATE, NO VERSION CONTROL, NO VERSION UPDATE
-            case -2:
-              ppos.recordVersion.setCounter(-2);
-              break;
-
-            default:
-              // MVCC CONTROL AND RECORD UPDATE OR WRONG VERSION VALUE
-              // MVCC TRANSACTION: CHECK IF VERSION IS THE SAME
-              if (!version.equals(ppos.recordVersion))
-                if (OFastConcurrentModificationException.enabled())
-                  throw OFastConcurrentModificationException.instance();
-                else
-                  throw new OConcurrentModificationException(rid, ppos.recordVersion, version, ORecordOperation.UPDATED);
-              ppos.recordVersion.increment();
-            }
+            final ORecordVersion recordVersion = doUpdateRecord(cluster, rid, content, version, recordType);
 
-            cluster.updateRecord(rid.clusterPosition, content, ppos.recordVersion, recordType);
+            commitWALChanges();
 
             if (callback != null)
-              callback.call(rid, ppos.recordVersion);
+              callback.call(rid, recordVersion);
 
-            return new OStorageOperationResult<ORecordVersion>(ppos.recordVersion);
+            return new OStorageOperationResult<ORecordVersion>(recordVersion);
 
           } finally {
             lockManager.releaseLock(Thread.currentThread(), rid, OLockManager.LOCK.EXCLUSIVE);
@@ -1142,6 +1306,7 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
     checkOpeness();
 
     final OLocalPaginatedCluster cluster = getClusterById(rid.clusterId);
+    joinStorageTransaction(cluster);
 
     cluster.getExternalModificationLock().requestModificationLock();
     try {
@@ -1151,20 +1316,11 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
         try {
           lockManager.acquireLock(Thread.currentThread(), rid, OLockManager.LOCK.EXCLUSIVE);
           try {
-            final OPhysicalPosition ppos = cluster.getPhysicalPosition(new OPhysicalPosition(rid.clusterPosition));
-
-            if (ppos == null)
+            if (!doDeleteRecord(cluster, rid, version))
               // ALREADY DELETED
               return new OStorageOperationResult<Boolean>(false);
 
-            // MVCC TRANSACTION: CHECK IF VERSION IS THE SAME
-            if (version.getCounter() > -1 && !ppos.recordVersion.equals(version))
-              if (OFastConcurrentModificationException.enabled())
-                throw OFastConcurrentModificationException.instance();
-              else
-                throw new OConcurrentModificationException(rid, ppos.recordVersion, version, ORecordOperation.DELETED);
-
-            cluster.deleteRecord(ppos.clusterPosition);
+            commitWALChanges();
 
             return new OStorageOperationResult<Boolean>(true);
           } finally {
@@ -1185,6 +1341,59 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
     return new OStorageOperationResult<Boolean>(false);
   }
 
+  private ORecordVersion doUpdateRecord(final OLocalPaginatedCluster cluster, final ORecordId rid, final byte[] content,
+      final ORecordVersion version, final byte recordType) throws IOException {
+    final OPhysicalPosition ppos = cluster.getPhysicalPosition(new OPhysicalPosition(rid.clusterPosition));
+    if (!checkForRecordValidity(ppos))
+      return OVersionFactory.instance().createUntrackedVersion();
+
+    // VERSION CONTROL CHECK
+    switch (version.getCounter()) {
+    // DOCUMENT UPDATE, NO VERSION CONTROL
+    case -1:
+      ppos.recordVersion.increment();
+      break;
+
+    // DOCUMENT UPDATE, NO VERSION CONTROL, NO VERSION UPDATE
+    case -2:
+      ppos.recordVersion.setCounter(-2);
+      break;
+
+    default:
+      // MVCC CONTROL AND RECORD UPDATE OR WRONG VERSION VALUE
+      // MVCC TRANSACTION: CHECK IF VERSION IS THE SAME
+      if (!version.equals(ppos.recordVersion))
+        if (OFastConcurrentModificationException.enabled())
+          throw OFastConcurrentModificationException.instance();
+        else
+          throw new OConcurrentModificationException(rid, ppos.recordVersion, version, ORecordOperation.UPDATED);
+      ppos.recordVersion.increment();
+    }
+
+    cluster.updateRecord(rid.clusterPosition, content, ppos.recordVersion, recordType);
+
+    return ppos.recordVersion;
+  }
+
+  private boolean doDeleteRecord(final OLocalPaginatedCluster cluster, final ORecordId rid, final ORecordVersion version)
+      throws IOException {
+    final OPhysicalPosition ppos = cluster.getPhysicalPosition(new OPhysicalPosition(rid.clusterPosition));
+
+    if (ppos == null)
+      return false;
+
+    // MVCC TRANSACTION: CHECK IF VERSION IS THE SAME
+    if (version.getCounter() > -1 && !ppos.recordVersion.equals(version))
+      if (OFastConcurrentModificationException.enabled())
+        throw OFastConcurrentModificationException.instance();
+      else
+        throw new OConcurrentModificationException(rid, ppos.recordVersion, version, ORecordOperation.DELETED);
+
+    cluster.deleteRecord(ppos.clusterPosition);
+
+    return true;
+  }
+
   public boolean updateReplica(final int dataSegmentId, final ORecordId rid, final byte[] content,
       final ORecordVersion recordVersion, final byte recordType) throws IOException {
     throw new OStorageException("Support of hash based clusters is required.");
@@ -1300,12 +1509,202 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
     return null;
   }
 
-  public void commit(final OTransaction tx) {
-    throw new UnsupportedOperationException("commit");
+  /**
+   * Commits transaction as single WAL atomic unit. Storage is locked in shared mode only, clusters touched by transaction are
+   * locked exclusively till the end of commit. If commit fails all page changes done by transaction are undone and logged as part
+   * of the same atomic unit, so restore from WAL brings storage to the state it had before commit.
+   */
+  public void commit(final OTransaction clientTx) {
+    checkOpeness();
+
+    final long timer = Orient.instance().getProfiler().startChrono();
+
+    modificationLock.requestModificationLock();
+    try {
+      lock.acquireSharedLock();
+      try {
+        final OStorageTransaction transaction = new OStorageTransaction(clientTx);
+        storageTransaction.set(transaction);
+        try {
+          if (writeAheadLog != null)
+            transaction.setLastLSN(writeAheadLog.log(new OAtomicUnitStartRecord(true, -1)));
+
+          final List<ORecordOperation> tmpEntries = new ArrayList<ORecordOperation>();
+
+          while (clientTx.getCurrentRecordEntries().iterator().hasNext()) {
+            for (ORecordOperation txEntry : clientTx.getCurrentRecordEntries())
+              tmpEntries.add(txEntry);
+
+            clientTx.clearRecordEntries();
+
+            lockClusters(transaction, tmpEntries);
+
+            for (ORecordOperation txEntry : tmpEntries)
+              // COMMIT ALL THE SINGLE ENTRIES ONE BY ONE
+              commitEntry(clientTx, txEntry);
+
+            tmpEntries.clear();
+          }
+
+          storageTransaction.set(null);
+
+          if (writeAheadLog != null)
+            writeAheadLog.log(new OAtomicUnitEndRecord(transaction.getLastLSN()));
+        } catch (RuntimeException e) {
+          rollbackStorageTransaction(transaction);
+          throw e;
+        } catch (IOException e) {
+          rollbackStorageTransaction(transaction);
+          throw new OStorageException("Error during transaction commit in storage '" + name + "'", e);
+        } finally {
+          storageTransaction.set(null);
+          transaction.unlockClusters();
+        }
+
+        commitWALChanges();
+
+        OTransactionAbstract.updateCacheFromEntries(this, clientTx, clientTx.getAllRecordEntries(), true);
+      } catch (IOException e) {
+        throw new OStorageException("Error during transaction commit in storage '" + name + "'", e);
+      } finally {
+        lock.releaseSharedLock();
+      }
+    } finally {
+      modificationLock.releaseModificationLock();
+
+      Orient.instance().getProfiler().stopChrono("db." + name + ".commit", "Commit a transaction", timer, "db.*.commit");
+    }
   }
 
+  /**
+   * Nothing to do, changes of failed commit are undone by commit itself.
+   */
   public void rollback(final OTransaction iTx) {
-    throw new UnsupportedOperationException("rollback");
+  }
+
+  /**
+   * Locks clusters involved in transaction in ascending order of their ids to avoid deadlocks between concurrent commits.
+   * Clusters of records which are added to transaction during the commit itself are locked together with the next batch of entries.
+   */
+  private void lockClusters(final OStorageTransaction transaction, final List<ORecordOperation> entries) {
+    final Set<Integer> clusterIds = new TreeSet<Integer>();
+    for (ORecordOperation txEntry : entries)
+      if (txEntry.type != ORecordOperation.LOADED)
+        clusterIds.add(getClusterById(getTxEntryClusterId(txEntry)).getId());
+
+    for (int clusterId : clusterIds)
+      lockCluster(transaction, getClusterById(clusterId));
+  }
+
+  /**
+   * Locks cluster till the end of commit. If transaction already locked a cluster with greater id, the cluster could be locked by
+   * a concurrent commit which waits for it, so the lock is waited at most {@link OGlobalConfiguration#TX_CLUSTER_LOCK_TIMEOUT} and
+   * the commit fails when it expires.
+   */
+  private void lockCluster(final OStorageTransaction transaction, final OLocalPaginatedCluster cluster) {
+    if (transaction.isClusterLocked(cluster.getId()))
+      return;
+
+    if (transaction.isLockOrderKept(cluster.getId()))
+      cluster.lockForTransaction(transaction);
+    else if (!cluster.tryLockForTransaction(transaction, OGlobalConfiguration.TX_CLUSTER_LOCK_TIMEOUT.getValueAsLong()))
+      throw new OTimeoutException("Timeout on locking cluster '" + cluster.getName() + "' for commit of transaction "
+          + transaction.getClientTx().getId() + " in storage '" + name + "'. The cluster is locked by a concurrent commit");
+  }
+
+  /**
+   * Records saved or deleted directly while transaction is committed by the current thread, for instance new records linked by
+   * records of transaction, become part of transaction.
+   */
+  private void joinStorageTransaction(final OLocalPaginatedCluster cluster) {
+    final OStorageTransaction transaction = storageTransaction.get();
+    if (transaction != null)
+      lockCluster(transaction, cluster);
+  }
+
+  private static int getTxEntryClusterId(final ORecordOperation txEntry) {
+    final ORecordInternal<?> record = txEntry.getRecord();
+    final ORecordId rid = (ORecordId) record.getIdentity();
+
+    if (rid.clusterId == ORID.CLUSTER_ID_INVALID && record instanceof ODocument && ((ODocument) record).getSchemaClass() != null)
+      // USE THE DEFAULT CLUSTER ID DEFINED IN SCHEMA CLASS
+      return ((ODocument) record).getSchemaClass().getDefaultClusterId();
+
+    return rid.clusterId;
+  }
+
+  private void commitEntry(final OTransaction clientTx, final ORecordOperation txEntry) throws IOException {
+    final ORecordInternal<?> record = txEntry.getRecord();
+
+    if (txEntry.type != ORecordOperation.DELETED && !record.isDirty())
+      return;
+
+    final ORecordId rid = (ORecordId) record.getIdentity();
+    rid.clusterId = getTxEntryClusterId(txEntry);
+
+    final OLocalPaginatedCluster cluster = getClusterById(rid.clusterId);
+
+    if (record instanceof OTxListener)
+      ((OTxListener) record).onEvent(txEntry, OTxListener.EVENT.BEFORE_COMMIT);
+
+    switch (txEntry.type) {
+    case ORecordOperation.LOADED:
+      break;
+
+    case ORecordOperation.CREATED: {
+      // CHECK 2 TIMES TO ASSURE THAT IT'S A CREATE OR AN UPDATE BASED ON RECURSIVE TO-STREAM METHOD
+      final byte[] stream = record.toStream();
+
+      if (rid.isNew()) {
+        final ORID oldRid = rid.copy();
+
+        record.onBeforeIdentityChanged(rid);
+        rid.clusterId = cluster.getId();
+
+        final OPhysicalPosition ppos = cluster.createRecord(stream, OVersionFactory.instance().createVersion(),
+            record.getRecordType());
+        rid.clusterPosition = ppos.clusterPosition;
+        record.getRecordVersion().copyFrom(ppos.recordVersion);
+
+        record.onAfterIdentityChanged(record);
+        clientTx.updateIndexIdentityAfterCommit(oldRid, rid);
+      } else
+        record.getRecordVersion().copyFrom(doUpdateRecord(cluster, rid, stream, record.getRecordVersion(), record.getRecordType()));
+      break;
+    }
+
+    case ORecordOperation.UPDATED: {
+      final byte[] stream = record.toStream();
+
+      record.getRecordVersion().copyFrom(doUpdateRecord(cluster, rid, stream, record.getRecordVersion(), record.getRecordType()));
+      break;
+    }
+
+    case ORecordOperation.DELETED:
+      doDeleteRecord(cluster, rid, record.getRecordVersion());
+      break;
+    }
+
+    record.unsetDirty();
+
+    if (record instanceof OTxListener)
+      ((OTxListener) record).onEvent(txEntry, OTxListener.EVENT.AFTER_COMMIT);
+  }
+
+  private void rollbackStorageTransaction(final OStorageTransaction transaction) {
+    storageTransaction.set(null);
+
+    try {
+      for (Map.Entry<OLocalPaginatedCluster, OLocalPaginatedCluster.OClusterTxSnapshot> entry : transaction.getSnapshots()
+          .entrySet())
+        entry.getKey().rollbackTransaction(transaction, entry.getValue());
+
+      if (writeAheadLog != null)
+        writeAheadLog.log(new OAtomicUnitEndRecord(transaction.getLastLSN()));
+    } catch (IOException e) {
+      OLogManager.instance().error(this,
+          "Error on rollback of transaction " + transaction.getClientTx().getId() + " in storage '" + name + "'", e);
+    }
   }
 
   @Override
@@ -1390,6 +1789,15 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
     return writeAheadLog;
   }
 
+  private void commitWALChanges() throws IOException {
+    // CHANGES DONE INSIDE OF TRANSACTION ARE FLUSHED ONCE AT THE END OF COMMIT
+    if (storageTransaction.get() != null)
+      return;
+
+    if (writeAheadLog != null && writeAheadLog.getDurabilityMode() != OWALDurabilityMode.ASYNC)
+      writeAheadLog.commit(writeAheadLog.end());
+  }
+
   private void checkClusterSegmentIndexRange(final int iClusterId) {
     if (iClusterId > clusters.length - 1)
       throw new IllegalArgumentException("Cluster segment #" + iClusterId + " does not exist in database '" + name + "'");
@@ -1581,6 +1989,9 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
         if (cluster != null)
           cluster.synch();
 
+      for (OLocalHashTable<?, ?> hashTable : hashTables)
+        hashTable.flush();
+
       writeAheadLog.logFullCheckpointEnd();
       writeAheadLog.flush();
     } catch (IOException ioe) {
@@ -1590,6 +2001,203 @@ public class OLocalPaginatedStorage extends OStorageLocalAbstract {
     }
   }
 
+  /**
+   * Executes a hot backup of the storage in passed directory, the storage remains writable during the backup. Pages are copied
+   * after a fuzzy checkpoint, the WAL segments written since the oldest page dirty at the checkpoint are copied at the end with
+   * modifications briefly suspended, so the pages are made consistent by the WAL replay executed at the first open of the restored
+   * storage. If the directory of a previous backup is passed, only pages changed after the end of that backup are copied.
+   * 
+   * @param iBackupDirectory
+   *          empty directory which will contain the backup
+   * @param iPreviousBackupDirectory
+   *          directory of the previous (full or incremental) backup, or <code>null</code> for a full backup
+   * @return LSN of the last WAL record contained in the backup
+   * @see OLocalPaginatedStorageBackup#restore(String, String...)
+   */
+  public OLogSequenceNumber backup(final String iBackupDirectory, final String iPreviousBackupDirectory) {
+    return backup(iBackupDirectory, iPreviousBackupDirectory, null);
+  }
+
+  /**
+   * Executes a hot backup of the storage.
+   * 
+   * @param iBeforeWALCopy
+   *          executed after the pages are copied and before modifications are suspended to copy the WAL: the database flushes here
+   *          the changes it keeps in memory
+   * @see #backup(String, String)
+   */
+  public OLogSequenceNumber backup(final String iBackupDirectory, final String iPreviousBackupDirectory,
+      final Callable<Void> iBeforeWALCopy) {
+    checkOpeness();
+
+    if (writeAheadLog == null)
+      throw new OStorageException("Cannot backup storage '" + name + "' because write ahead log is switched off");
+
+    if (!backupInProgress.compareAndSet(false, true))
+      throw new OStorageException("Backup of storage '" + name + "' is already in progress");
+
+    final long timer = Orient.instance().getProfiler().startChrono();
+    try {
+      final File backupDirectory = new File(iBackupDirectory);
+      final String[] existing = backupDirectory.list();
+      if (existing != null && existing.length > 0)
+        throw new OStorageException("Cannot backup storage '" + name + "' because directory '" + iBackupDirectory
+            + "' is not empty");
+      backupDirectory.mkdirs();
+
+      final Properties manifest = new Properties();
+      OLogSequenceNumber since = null;
+      if (iPreviousBackupDirectory != null) {
+        final Properties previous = OLocalPaginatedStorageBackup.readManifest(new File(iPreviousBackupDirectory));
+        if (!name.equals(previous.getProperty(OLocalPaginatedStorageBackup.MANIFEST_STORAGE)))
+          throw new OStorageException("Directory '" + iPreviousBackupDirectory + "' contains the backup of another storage");
+
+        since = OLocalPaginatedStorageBackup.parseLsn(previous.getProperty(OLocalPaginatedStorageBackup.MANIFEST_END_LSN));
+        manifest.setProperty(OLocalPaginatedStorageBackup.MANIFEST_PREVIOUS_LSN, OLocalPaginatedStorageBackup.toString(since));
+      }
+
+      final OLogSequenceNumber checkpoint;
+      final OLogSequenceNumber replayFrom;
+      lock.acquireExclusiveLock();
+      try {
+        makeFuzzyCheckpoint();
+        checkpoint = writeAheadLog.getLastCheckpoint();
+        replayFrom = getFuzzyCheckpointRestoreLSN(checkpoint);
+
+        // WAL RECORDS NEEDED TO RESTORE THE COPIED PAGES MUST SURVIVE UNTIL THEY ARE COPIED
+        writeAheadLog.preventCutTill(replayFrom);
+      } finally {
+        lock.releaseExclusiveLock();
+      }
+
+      try {
+        final int pageSize = OGlobalConfiguration.DISK_CACHE_PAGE_SIZE.getValueAsInteger() * ONE_KB;
+        final long[] copied = new long[2];
+        final Set<String> copiedFiles = new HashSet<String>();
+
+        // PAGES ARE COPIED WHILE THE STORAGE IS WRITABLE
+        for (File file : new File(storagePath).listFiles())
+          if (file.isFile() && OLocalPaginatedStorageBackup.isPageFile(file.getName())) {
+            backupFile(file, backupDirectory, pageSize, since, copied);
+            copiedFiles.add(file.getName());
+          }
+
+        if (iBeforeWALCopy != null)
+          try {
+            iBeforeWALCopy.call();
+          } catch (RuntimeException e) {
+            throw e;
+          } catch (Exception e) {
+            throw new OStorageException("Error on backup of storage '" + name + "'", e);
+          }
+
+        // COMPLETE WAL SEGMENTS ARE NOT CHANGED ANYMORE: COPY THEM WHILE THE STORAGE IS WRITABLE
+        final int activeSegment = writeAheadLog.activeSegment();
+        for (File file : writeAheadLog.getWalLocation().listFiles())
+          if (isWALSegmentToBackup(file, replayFrom) && OWriteAheadLog.getSegmentOrder(file.getName()) < activeSegment) {
+            copied[0] += OLocalPaginatedStorageBackup.copyFile(file, new File(backupDirectory, file.getName()));
+            copiedFiles.add(file.getName());
+          }
+
+        final OLogSequenceNumber end;
+        modificationLock.prohibitModifications(false);
+        try {
+          lock.acquireExclusiveLock();
+          try {
+            for (OLocalPaginatedCluster cluster : clusters)
+              if (cluster != null)
+                cluster.flushClusterState();
+
+            for (OLocalHashTable<?, ?> hashTable : hashTables)
+              hashTable.flush();
+
+            if (configuration != null)
+              configuration.synch();
+
+            writeAheadLog.flush();
+            end = writeAheadLog.end();
+
+            for (File file : new File(storagePath).listFiles())
+              if (file.isFile() && !copiedFiles.contains(file.getName())
+                  && !OLocalPaginatedStorageBackup.isWALFile(name, file.getName()))
+                backupFile(file, backupDirectory, pageSize, since, copied);
+
+            // ONLY THE SEGMENTS FILLED SINCE THEN ARE COPIED WHILE MODIFICATIONS ARE PAUSED
+            for (File file : writeAheadLog.getWalLocation().listFiles())
+              if (isWALSegmentToBackup(file, replayFrom) && !copiedFiles.contains(file.getName()))
+                copied[0] += OLocalPaginatedStorageBackup.copyFile(file, new File(backupDirectory, file.getName()));
+
+            OWriteAheadLog.writeMasterRecordFile(new File(backupDirectory, name + OLocalPaginatedStorageBackup.MASTER_RECORD_EXTENSION),
+                checkpoint);
+          } finally {
+            lock.releaseExclusiveLock();
+          }
+        } finally {
+          modificationLock.allowModifications();
+        }
+
+        manifest.setProperty(OLocalPaginatedStorageBackup.MANIFEST_STORAGE, name);
+        manifest.setProperty(OLocalPaginatedStorageBackup.MANIFEST_TYPE, since == null ? OLocalPaginatedStorageBackup.TYPE_FULL
+            : OLocalPaginatedStorageBackup.TYPE_INCREMENTAL);
+        manifest.setProperty(OLocalPaginatedStorageBackup.MANIFEST_PAGE_SIZE, String.valueOf(pageSize));
+        manifest.setProperty(OLocalPaginatedStorageBackup.MANIFEST_START_LSN, OLocalPaginatedStorageBackup.toString(checkpoint));
+        manifest.setProperty(OLocalPaginatedStorageBackup.MANIFEST_END_LSN, OLocalPaginatedStorageBackup.toString(end));
+        manifest.setProperty(OLocalPaginatedStorageBackup.MANIFEST_FILES, String.valueOf(copied[0]));
+        manifest.setProperty(OLocalPaginatedStorageBackup.MANIFEST_PAGES, String.valueOf(copied[1]));
+        OLocalPaginatedStorageBackup.writeManifest(backupDirectory, manifest);
+
+        OLogManager.instance().info(this, "%s backup of storage '%s' completed in '%s': %d bytes of whole files, %d changed pages",
+            since == null ? "Full" : "Incremental", name, iBackupDirectory, copied[0], copied[1]);
+        return end;
+      } finally {
+        writeAheadLog.preventCutTill(null);
+      }
+    } catch (IOException e) {
+      throw new OStorageException("Error on backup of storage '" + name + "' in directory '" + iBackupDirectory + "'", e);
+    } finally {
+      backupInProgress.set(false);
+      Orient.instance().getProfiler().stopChrono("db." + name + ".backup", "Backup a local database", timer, "db.*.backup");
+    }
+  }
+
+  private boolean isWALSegmentToBackup(final File iFile, final OLogSequenceNumber iReplayFrom) {
+    return iFile.getName().startsWith(name + ".") && OWriteAheadLog.validateName(iFile.getName())
+        && OWriteAheadLog.getSegmentOrder(iFile.getName()) >= iReplayFrom.getSegment();
+  }
+
+  private void backupFile(final File iFile, final File iBackupDirectory, final int iPageSize, final OLogSequenceNumber iSince,
+      final long[] iCopied) throws IOException {
+    if (iSince != null && OLocalPaginatedStorageBackup.isPageFile(iFile.getName()))
+      iCopied[1] += OLocalPaginatedStorageBackup.copyChangedPages(iFile, new File(iBackupDirectory, iFile.getName()
+          + OLocalPaginatedStorageBackup.PAGES_EXTENSION), iPageSize, iSince);
+    else
+      iCopied[0] += OLocalPaginatedStorageBackup.copyFile(iFile, new File(iBackupDirectory, iFile.getName()));
+  }
+
+  /**
+   * Returns the LSN from which the WAL is replayed when the storage is restored from the passed fuzzy checkpoint.
+   */
+  private OLogSequenceNumber getFuzzyCheckpointRestoreLSN(final OLogSequenceNumber iCheckpoint) throws IOException {
+    final OLogSequenceNumber dirtyPagesLSN = writeAheadLog.next(iCheckpoint);
+    OLogSequenceNumber result = iCheckpoint;
+    for (ODirtyPage dirtyPage : ((ODirtyPagesRecord) writeAheadLog.read(dirtyPagesLSN)).getDirtyPages())
+      if (dirtyPage.getLsn() != null && dirtyPage.getLsn().compareTo(result) < 0)
+        result = dirtyPage.getLsn();
+    return result;
+  }
+
+  /**
+   * Registers hash table which logs its changes in WAL. Files of registered hash tables are flushed during full checkpoint
+   * together with clusters, otherwise their changes logged before checkpoint would be lost after crash.
+   */
+  public void registerHashTable(OLocalHashTable<?, ?> hashTable) {
+    hashTables.add(hashTable);
+  }
+
+  public void unregisterHashTable(OLocalHashTable<?, ?> hashTable) {
+    hashTables.remove(hashTable);
+  }
+
   public void scheduleFullCheckpoint() {
     checkpointExecutor.execute(new Runnable() {
       @Override
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.storage.impl.local.paginated;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.common.serialization.types.OIntegerSerializer;
+import com.orientechnologies.common.serialization.types.OLongSerializer;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.exception.OStorageException;
+import com.orientechnologies.orient.core.index.hashindex.local.OAbstractLocalHashIndex;
+import com.orientechnologies.orient.core.storage.fs.OAbstractFile;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OLogSequenceNumber;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OWriteAheadLog;
+
+/**
+ * Reads and writes the files of the hot backup of {@link OLocalPaginatedStorage}. A backup directory contains the copy of the
+ * storage files, the WAL segments needed to make the copied pages consistent, a WAL master record which points to the checkpoint
+ * made when the backup started and a manifest with the LSNs covered by the backup.
+ * <p>
+ * Pages of clusters and hash index buckets carry the LSN of their last change, so they are copied while the storage is writable
+ * and incremental backups store only the pages changed after the end of the previous backup (files with {@link #PAGES_EXTENSION}
+ * extension). The copied pages are made consistent by the WAL replay executed when the restored storage is opened.
+ * 
+ * @since 17.10.13
+ */
+public class OLocalPaginatedStorageBackup {
+  public static final String  MANIFEST_FILE           = "backup.manifest";
+  public static final String  PAGES_EXTENSION         = ".pages";
+  public static final String  MASTER_RECORD_EXTENSION = ".wmr";
+
+  public static final String  TYPE_FULL               = "full";
+  public static final String  TYPE_INCREMENTAL        = "incremental";
+
+  public static final String  MANIFEST_STORAGE        = "storage";
+  public static final String  MANIFEST_TYPE           = "type";
+  public static final String  MANIFEST_PAGE_SIZE      = "pageSize";
+  public static final String  MANIFEST_START_LSN      = "startLsn";
+  public static final String  MANIFEST_END_LSN        = "endLsn";
+  public static final String  MANIFEST_PREVIOUS_LSN   = "previousEndLsn";
+  public static final String  MANIFEST_FILES          = "files";
+  public static final String  MANIFEST_PAGES          = "pages";
+
+  // LAYOUT OF THE PAGE HEADER: MAGIC NUMBER, CRC32, WAL SEGMENT AND WAL POSITION OF THE LAST CHANGE
+  private static final int    LSN_SEGMENT_OFFSET      = OLongSerializer.LONG_SIZE + OIntegerSerializer.INT_SIZE;
+  private static final int    LSN_POSITION_OFFSET     = LSN_SEGMENT_OFFSET + OIntegerSerializer.INT_SIZE;
+
+  private static final int    BUFFER_SIZE             = 1024 * 1024;
+
+  /**
+   * Tells if the pages of the file keep the LSN of their last change.
+   */
+  public static boolean isPageFile(final String iFileName) {
+    return iFileName.endsWith(OLocalPaginatedCluster.DEF_EXTENSION)
+        || iFileName.endsWith(OAbstractLocalHashIndex.BUCKET_FILE_EXTENSION);
+  }
+
+  public static boolean isWALFile(final String iStorageName, final String iFileName) {
+    if (!iFileName.startsWith(iStorageName + "."))
+      return false;
+    return iFileName.equals(iStorageName + MASTER_RECORD_EXTENSION) || OWriteAheadLog.validateName(iFileName);
+  }
+
+  public static File getWALLocation(final File iStorageDirectory) {
+    final String walPath = OGlobalConfiguration.WAL_LOCATION.getValueAsString();
+    return walPath != null ? new File(walPath) : iStorageDirectory;
+  }
+
+  /**
+   * Copies the file content up to its current size.
+   * 
+   * @return bytes copied
+   */
+  public static long copyFile(final File iSource, final File iTarget) throws IOException {
+    final FileInputStream in = new FileInputStream(iSource);
+    try {
+      final FileOutputStream out = new FileOutputStream(iTarget);
+      try {
+        final FileChannel source = in.getChannel();
+        final FileChannel target = out.getChannel();
+
+        final long size = source.size();
+        long position = 0;
+        while (position < size)
+          position += source.transferTo(position, size - position, target);
+
+        return size;
+      } finally {
+        out.close();
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Stores the file header and the pages changed after passed LSN. The file is read sequentially in large chunks.
+   * 
+   * @return pages copied
+   */
+  public static long copyChangedPages(final File iSource, final File iTarget, final int iPageSize, final OLogSequenceNumber iSince)
+      throws IOException {
+    final FileInputStream in = new FileInputStream(iSource);
+    try {
+      final FileChannel source = in.getChannel();
+      final long size = source.size();
+
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(iTarget), BUFFER_SIZE));
+      try {
+        out.writeLong(size);
+
+        // THE HEADER IS ALWAYS COPIED: IT KEEPS THE FLAG WHICH FORCES THE WAL REPLAY ON OPEN
+        final ByteBuffer header = ByteBuffer.allocate((int) Math.min(size, OAbstractFile.HEADER_SIZE));
+        read(source, header, 0);
+        out.write(header.array(), 0, header.position());
+
+        final ByteBuffer buffer = ByteBuffer.allocate(Math.max(1, BUFFER_SIZE / iPageSize) * iPageSize);
+        final byte[] data = buffer.array();
+
+        long pages = 0;
+        long pageIndex = 0;
+        long position = OAbstractFile.HEADER_SIZE;
+        while (position < size) {
+          buffer.clear();
+          buffer.limit((int) Math.min(buffer.capacity(), size - position));
+          read(source, buffer, position);
+
+          final int read = buffer.position();
+          if (read == 0)
+            break;
+
+          // AN INCOMPLETE PAGE AT THE END OF THE FILE IS SKIPPED: THE PAGE IS RESTORED FROM WAL
+          for (int offset = 0; offset + iPageSize <= read; offset += iPageSize, pageIndex++)
+            if (getPageLsn(data, offset).compareTo(iSince) > 0) {
+              out.writeLong(pageIndex);
+              out.write(data, offset, iPageSize);
+              pages++;
+            }
+
+          position += read;
+        }
+
+        return pages;
+      } finally {
+        out.close();
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Writes the pages stored by {@link #copyChangedPages(File, File, int, OLogSequenceNumber)} in the target file.
+   */
+  public static void applyChangedPages(final File iPages, final File iTarget, final int iPageSize) throws IOException {
+    final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(iPages), BUFFER_SIZE));
+    try {
+      final RandomAccessFile file = new RandomAccessFile(iTarget, "rw");
+      try {
+        final long size = in.readLong();
+        file.setLength(size);
+
+        final byte[] header = new byte[(int) Math.min(size, OAbstractFile.HEADER_SIZE)];
+        in.readFully(header);
+        file.seek(0);
+        file.write(header);
+
+        final byte[] page = new byte[iPageSize];
+        while (true) {
+          final long pageIndex;
+          try {
+            pageIndex = in.readLong();
+          } catch (EOFException e) {
+            break;
+          }
+
+          in.readFully(page);
+          file.seek(OAbstractFile.HEADER_SIZE + pageIndex * iPageSize);
+          file.write(page);
+        }
+      } finally {
+        file.close();
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Restores the storage in passed directory applying a full backup and the incremental backups which follow it, in order. The WAL
+   * of each backup is replayed opening the storage before the next backup is applied. The storage must not be opened while it is
+   * restored.
+   */
+  public static void restore(final String iStoragePath, final String... iBackupDirectories) throws IOException {
+    if (iBackupDirectories.length == 0)
+      throw new IllegalArgumentException("No backup to restore");
+
+    final File storageDirectory = new File(iStoragePath);
+    final File walDirectory = getWALLocation(storageDirectory);
+    final String storageName = storageDirectory.getName();
+
+    final String[] files = storageDirectory.list();
+    if (files != null && files.length > 0)
+      throw new OStorageException("Cannot restore backup in '" + iStoragePath + "' because the directory is not empty");
+
+    // CHECK THE WHOLE CHAIN BEFORE WRITING ANYTHING
+    final Properties[] manifests = new Properties[iBackupDirectories.length];
+    OLogSequenceNumber lastEnd = null;
+    for (int i = 0; i < iBackupDirectories.length; ++i) {
+      manifests[i] = readManifest(new File(iBackupDirectories[i]));
+      final boolean incremental = TYPE_INCREMENTAL.equals(manifests[i].getProperty(MANIFEST_TYPE));
+
+      if (i == 0 && incremental)
+        throw new OStorageException("Backup in '" + iBackupDirectories[i]
+            + "' is incremental: restore has to start from a full backup");
+      if (i > 0 && (!incremental || !lastEnd.equals(parseLsn(manifests[i].getProperty(MANIFEST_PREVIOUS_LSN)))))
+        throw new OStorageException("Backup in '" + iBackupDirectories[i] + "' does not follow the backup in '"
+            + iBackupDirectories[i - 1] + "'");
+
+      lastEnd = parseLsn(manifests[i].getProperty(MANIFEST_END_LSN));
+    }
+
+    storageDirectory.mkdirs();
+    walDirectory.mkdirs();
+
+    for (int i = 0; i < iBackupDirectories.length; ++i) {
+      final long begin = System.currentTimeMillis();
+
+      applyBackup(new File(iBackupDirectories[i]), manifests[i], storageDirectory, walDirectory, storageName);
+
+      // REPLAY THE WAL OF THE BACKUP
+      final OLocalPaginatedStorage storage = new OLocalPaginatedStorage(storageName, storageDirectory.getAbsolutePath(), "rw");
+      storage.open(null, null, null);
+      storage.close(true);
+
+      OLogManager.instance().info(OLocalPaginatedStorageBackup.class, "Restored backup '%s' in storage '%s' in %dms",
+          iBackupDirectories[i], iStoragePath, System.currentTimeMillis() - begin);
+    }
+  }
+
+  private static void applyBackup(final File iBackupDirectory, final Properties iManifest, final File iStorageDirectory,
+      final File iWALDirectory, final String iStorageName) throws IOException {
+    final String sourceName = iManifest.getProperty(MANIFEST_STORAGE);
+    final int pageSize = Integer.parseInt(iManifest.getProperty(MANIFEST_PAGE_SIZE));
+
+    // THE WAL OF THE PREVIOUS BACKUP WAS ALREADY REPLAYED
+    final File[] walFiles = iWALDirectory.listFiles();
+    if (walFiles != null)
+      for (File file : walFiles)
+        if (isWALFile(iStorageName, file.getName()) && !file.delete())
+          throw new OStorageException("Cannot delete WAL file " + file);
+
+    final Set<String> restored = new HashSet<String>();
+    for (File file : iBackupDirectory.listFiles()) {
+      final String name = file.getName();
+      if (name.equals(MANIFEST_FILE))
+        continue;
+
+      if (isWALFile(sourceName, name))
+        copyFile(file, new File(iWALDirectory, iStorageName + name.substring(sourceName.length())));
+      else if (name.endsWith(PAGES_EXTENSION)) {
+        final String targetName = name.substring(0, name.length() - PAGES_EXTENSION.length());
+        applyChangedPages(file, new File(iStorageDirectory, targetName), pageSize);
+        restored.add(targetName);
+      } else {
+        copyFile(file, new File(iStorageDirectory, name));
+        restored.add(name);
+      }
+    }
+
+    // FILES DROPPED AFTER THE PREVIOUS BACKUP
+    for (File file : iStorageDirectory.listFiles())
+      if (file.isFile() && !restored.contains(file.getName()) && !isWALFile(iStorageName, file.getName()) && !file.delete())
+        throw new OStorageException("Cannot delete file " + file);
+  }
+
+  public static Properties readManifest(final File iBackupDirectory) throws IOException {
+    final File file = new File(iBackupDirectory, MANIFEST_FILE);
+    if (!file.exists())
+      throw new OStorageException("Directory '" + iBackupDirectory + "' does not contain a backup");
+
+    final Properties manifest = new Properties();
+    final InputStream in = new FileInputStream(file);
+    try {
+      manifest.load(in);
+    } finally {
+      in.close();
+    }
+    return manifest;
+  }
+
+  public static void writeManifest(final File iBackupDirectory, final Properties iManifest) throws IOException {
+    final OutputStream out = new FileOutputStream(new File(iBackupDirectory, MANIFEST_FILE));
+    try {
+      iManifest.store(out, "OrientDB backup");
+    } finally {
+      out.close();
+    }
+  }
+
+  public static String toString(final OLogSequenceNumber iLsn) {
+    return iLsn.getSegment() + ":" + iLsn.getPosition();
+  }
+
+  public static OLogSequenceNumber parseLsn(final String iValue) {
+    if (iValue == null)
+      return null;
+
+    final int separator = iValue.indexOf(':');
+    return new OLogSequenceNumber(Integer.parseInt(iValue.substring(0, separator)), Long.parseLong(iValue.substring(separator + 1)));
+  }
+
+  private static OLogSequenceNumber getPageLsn(final byte[] iPage, final int iOffset) {
+    return new OLogSequenceNumber(OIntegerSerializer.INSTANCE.deserializeNative(iPage, iOffset + LSN_SEGMENT_OFFSET),
+        OLongSerializer.INSTANCE.deserializeNative(iPage, iOffset + LSN_POSITION_OFFSET));
+  }
+
+  private static void read(final FileChannel iChannel, final ByteBuffer iBuffer, final long iPosition) throws IOException {
+    while (iBuffer.hasRemaining()) {
+      if (iChannel.read(iBuffer, iPosition + iBuffer.position()) < 0)
+        break;
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.orientechnologies.orient.core.storage.impl.local.paginated;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.exception.OStorageException;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OUpdatePageRecord;
+
+/**
+ * Applies page changes read from WAL during data restore in several threads. Changes are partitioned by cluster id and page
+ * index, so changes of the same page are always applied by the same thread in the order in which they were submitted.
+ * 
+ * Queue of each thread is bounded, so WAL reader is slowed down if page changes can not be applied fast enough.
+ * 
+ * @since 17.10.13
+ */
+final class OPageRestoreExecutor {
+  private static final int  QUEUE_CAPACITY = 1024;
+
+  private final Worker[]    workers;
+  private volatile Throwable error;
+
+  OPageRestoreExecutor(String storageName, int threads) {
+    workers = new Worker[threads];
+
+    for (int i = 0; i < threads; i++) {
+      workers[i] = new Worker();
+      workers[i].setDaemon(true);
+      workers[i].setName("WAL Restore Task " + storageName + " #" + i);
+      workers[i].start();
+    }
+  }
+
+  void submit(OLocalPaginatedCluster cluster, OUpdatePageRecord record) throws IOException {
+    checkError();
+
+    final Worker worker = workers[partition(record.getClusterId(), record.getPageIndex())];
+    try {
+      worker.queue.put(new RestoreTask(cluster, record));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OStorageException("Thread was interrupted during data restore", e);
+    }
+  }
+
+  /**
+   * Waits till all submitted page changes are applied and stops restore threads.
+   */
+  void shutdown() throws IOException {
+    try {
+      for (Worker worker : workers)
+        worker.queue.put(RestoreTask.STOP);
+
+      for (Worker worker : workers)
+        worker.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OStorageException("Thread was interrupted during data restore", e);
+    }
+
+    checkError();
+  }
+
+  private int partition(int clusterId, long pageIndex) {
+    long hash = pageIndex * 31 + clusterId;
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+
+    return (int) ((hash & Long.MAX_VALUE) % workers.length);
+  }
+
+  private void checkError() throws IOException {
+    final Throwable e = error;
+    if (e == null)
+      return;
+
+    if (e instanceof IOException)
+      throw (IOException) e;
+
+    throw new OStorageException("Error during restore of page changes from WAL", e);
+  }
+
+  private static final class RestoreTask {
+    private static final RestoreTask      STOP = new RestoreTask(null, null);
+
+    private final OLocalPaginatedCluster cluster;
+    private final OUpdatePageRecord      record;
+
+    private RestoreTask(OLocalPaginatedCluster cluster, OUpdatePageRecord record) {
+      this.cluster = cluster;
+      this.record = record;
+    }
+  }
+
+  private final class Worker extends Thread {
+    private final BlockingQueue<RestoreTask> queue = new ArrayBlockingQueue<RestoreTask>(QUEUE_CAPACITY);
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          final RestoreTask task = queue.take();
+          if (task == RestoreTask.STOP)
+            return;
+
+          // AFTER FIRST ERROR QUEUE IS ONLY DRAINED TO NOT BLOCK WAL READER
+          if (error == null)
+            task.cluster.restorePageData(task.record);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (Throwable e) {
+        OLogManager.instance().error(this, "Error during restore of page changes from WAL", e);
+        error = e;
+
+        drain();
+      }
+    }
+
+    private void drain() {
+      try {
+        while (queue.take() != RestoreTask.STOP)
+          ;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
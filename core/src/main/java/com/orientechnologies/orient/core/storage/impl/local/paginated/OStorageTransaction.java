@@ -0,0 +1,101 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.storage.impl.local.paginated;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OLogSequenceNumber;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OUpdatePageRecord;
+import com.orientechnologies.orient.core.tx.OTransaction;
+
+/**
+ * Storage side of transaction committed by {@link OLocalPaginatedStorage}. All changes done during commit are logged in WAL as
+ * single atomic unit, the chain of unit records is continued by every cluster operation through {@link #getLastLSN()}. Page
+ * changes are kept in memory till the end of commit, if commit fails they are undone in reverse order.
+ *
+ * Clusters touched by transaction stay exclusively locked till the end of commit, so transactions which work with different
+ * clusters are committed in parallel.
+ *
+ * @since 17.10.13
+ */
+public class OStorageTransaction {
+  private final OTransaction                                                          clientTx;
+  private final Map<Integer, OLocalPaginatedCluster>                                  lockedClusters     = new LinkedHashMap<Integer, OLocalPaginatedCluster>();
+  private final Map<OLocalPaginatedCluster, OLocalPaginatedCluster.OClusterTxSnapshot> snapshots          = new LinkedHashMap<OLocalPaginatedCluster, OLocalPaginatedCluster.OClusterTxSnapshot>();
+  private final List<OUpdatePageRecord>                                               pageChanges        = new ArrayList<OUpdatePageRecord>();
+  private OLogSequenceNumber                                                          lastLSN;
+  private int                                                                         maxLockedClusterId = -1;
+
+  public OStorageTransaction(final OTransaction clientTx) {
+    this.clientTx = clientTx;
+  }
+
+  public OTransaction getClientTx() {
+    return clientTx;
+  }
+
+  public OLogSequenceNumber getLastLSN() {
+    return lastLSN;
+  }
+
+  public void setLastLSN(final OLogSequenceNumber lastLSN) {
+    this.lastLSN = lastLSN;
+  }
+
+  public boolean isClusterLocked(final int clusterId) {
+    return lockedClusters.containsKey(clusterId);
+  }
+
+  /**
+   * Tells if cluster can be locked keeping the ascending order of ids of clusters locked by transaction.
+   */
+  boolean isLockOrderKept(final int clusterId) {
+    return clusterId > maxLockedClusterId;
+  }
+
+  /**
+   * Registers cluster which was locked for transaction together with the state it had before the first change.
+   */
+  void addLockedCluster(final OLocalPaginatedCluster cluster, final OLocalPaginatedCluster.OClusterTxSnapshot snapshot) {
+    lockedClusters.put(cluster.getId(), cluster);
+    snapshots.put(cluster, snapshot);
+    maxLockedClusterId = Math.max(maxLockedClusterId, cluster.getId());
+  }
+
+  Map<OLocalPaginatedCluster, OLocalPaginatedCluster.OClusterTxSnapshot> getSnapshots() {
+    return Collections.unmodifiableMap(snapshots);
+  }
+
+  void addPageChanges(final OUpdatePageRecord pageRecord) {
+    pageChanges.add(pageRecord);
+  }
+
+  List<OUpdatePageRecord> getPageChanges() {
+    return Collections.unmodifiableList(pageChanges);
+  }
+
+  void unlockClusters() {
+    for (OLocalPaginatedCluster cluster : lockedClusters.values())
+      cluster.unlockAfterTransaction();
+
+    lockedClusters.clear();
+    maxLockedClusterId = -1;
+  }
+}
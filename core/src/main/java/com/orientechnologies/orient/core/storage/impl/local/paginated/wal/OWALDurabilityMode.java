@@ -0,0 +1,39 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.orientechnologies.orient.core.storage.impl.local.paginated.wal;
+
+/**
+ * Defines when {@link OWriteAheadLog#commit(OLogSequenceNumber, OWALDurabilityMode)} returns control to the caller.
+ * 
+ * @since 17.10.13
+ */
+public enum OWALDurabilityMode {
+  /**
+   * Records are kept in WAL cache and written to the disk by background flush task, commit returns immediately.
+   */
+  ASYNC,
+
+  /**
+   * Commit returns as soon as records are written to the file, but file content is not forced to the device.
+   */
+  FLUSH,
+
+  /**
+   * Commit returns when records are written to the file and forced to the device. Concurrent commits share single fsync call.
+   */
+  FSYNC
+}
@@ -19,6 +19,7 @@ package com.orientechnologies.orient.core.storage.impl.local.paginated.wal;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OUpdateFilePageRecord;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OUpdatePageRecord;
 
 /**
@@ -35,7 +36,9 @@ public class OWALRecordsFactory {
     int contentSize = walRecord.serializedSize() + 1;
     byte[] content = new byte[contentSize];
 
-    if (walRecord instanceof OUpdatePageRecord)
+    if (walRecord instanceof OUpdateFilePageRecord)
+      content[0] = 10;
+    else if (walRecord instanceof OUpdatePageRecord)
       content[0] = 0;
     else if (walRecord instanceof OFuzzyCheckpointStartRecord)
       content[0] = 1;
@@ -98,6 +101,9 @@ public class OWALRecordsFactory {
     case 9:
       walRecord = new OAtomicUnitEndRecord();
       break;
+    case 10:
+      walRecord = new OUpdateFilePageRecord();
+      break;
     default:
       if (idToTypeMap.containsKey(content[0]))
         try {
@@ -31,9 +31,12 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.zip.CRC32;
 
 import com.orientechnologies.common.directmemory.ODirectMemory;
@@ -51,6 +54,7 @@ import com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPagi
  */
 public class OWriteAheadLog {
   private static final long            ONE_KB               = 1024L;
+  private static final int             READ_AHEAD_PAGES     = 16;
 
   private OLogSequenceNumber           lastCheckpoint;
 
@@ -77,9 +81,17 @@ public class OWriteAheadLog {
   private OLogSequenceNumber           secondMasterRecord;
 
   private volatile OLogSequenceNumber  flushedLsn;
+  private volatile OLogSequenceNumber  writtenLsn;
+  private volatile OLogSequenceNumber  endLsn;
+
+  private final OWALDurabilityMode     durabilityMode;
+  private final Lock                   groupCommitLock      = new ReentrantLock();
+
   private final OLocalPaginatedStorage paginatedStorage;
 
-  private boolean                      closed;
+  private volatile boolean             closed;
+
+  private OLogSequenceNumber           preventCutTill;
 
   private static String calculateWalPath(OLocalPaginatedStorage storage) {
     String walPath = OGlobalConfiguration.WAL_LOCATION.getValueAsString();
@@ -97,10 +109,17 @@ public class OWriteAheadLog {
 
   public OWriteAheadLog(int maxPagesCacheSize, int commitDelay, long maxSegmentSize, long maxLogSize, OLocalPaginatedStorage storage)
       throws IOException {
+    this(maxPagesCacheSize, commitDelay, maxSegmentSize, maxLogSize, OWALDurabilityMode.valueOf(OGlobalConfiguration.WAL_DURABILITY_MODE
+        .getValueAsString().toUpperCase()), storage);
+  }
+
+  public OWriteAheadLog(int maxPagesCacheSize, int commitDelay, long maxSegmentSize, long maxLogSize,
+      OWALDurabilityMode durabilityMode, OLocalPaginatedStorage storage) throws IOException {
     this.maxPagesCacheSize = maxPagesCacheSize;
     this.commitDelay = commitDelay;
     this.maxSegmentSize = maxSegmentSize;
     this.maxLogSize = maxLogSize;
+    this.durabilityMode = durabilityMode;
     this.paginatedStorage = storage;
 
     try {
@@ -138,6 +157,9 @@ public class OWriteAheadLog {
         flushedLsn = readFlushedLSN();
       }
 
+      writtenLsn = flushedLsn;
+      endLsn = flushedLsn;
+
       masterRecordFile = new File(walLocation, paginatedStorage.getName() + ".wmr");
       masterRecordLSNHolder = new RandomAccessFile(masterRecordFile, "rws");
 
@@ -187,6 +209,14 @@ public class OWriteAheadLog {
     }
   }
 
+  public OLogSequenceNumber end() {
+    synchronized (syncObject) {
+      checkForClose();
+
+      return endLsn;
+    }
+  }
+
   public void flush() {
     synchronized (syncObject) {
       checkForClose();
@@ -196,6 +226,65 @@ public class OWriteAheadLog {
     }
   }
 
+  public OWALDurabilityMode getDurabilityMode() {
+    return durabilityMode;
+  }
+
+  public void commit(OLogSequenceNumber lsn) throws IOException {
+    commit(lsn, durabilityMode);
+  }
+
+  /**
+   * Waits till all records up to passed in LSN are written to the disk according to passed in durability mode.
+   * 
+   * Only one committer at a time flushes WAL cache, the others wait on group commit lock and usually find that their records
+   * were already written by previous flush, so concurrent commits are served by single write and single fsync. Appenders are not
+   * blocked during flush.
+   * 
+   * @param lsn
+   *          LSN of last record which should be durable.
+   * @param mode
+   *          Durability mode, {@link OWALDurabilityMode#ASYNC} means that method returns immediately.
+   */
+  public void commit(OLogSequenceNumber lsn, OWALDurabilityMode mode) throws IOException {
+    if (lsn == null || mode == OWALDurabilityMode.ASYNC)
+      return;
+
+    final OLogSequenceNumber end = endLsn;
+    if (end == null || lsn.compareTo(end) > 0)
+      throw new IllegalArgumentException("Record with LSN " + lsn + " was not logged in WAL " + walLocation);
+
+    if (isDurable(lsn, mode))
+      return;
+
+    groupCommitLock.lock();
+    try {
+      // RECORDS COULD BE ALREADY FLUSHED BY OTHER COMMITTER WHILE WE WAITED FOR THE LOCK
+      if (isDurable(lsn, mode))
+        return;
+
+      final LogSegment last;
+      synchronized (syncObject) {
+        checkForClose();
+
+        last = logSegments.get(logSegments.size() - 1);
+      }
+
+      // PREVIOUS SEGMENTS ARE FLUSHED DURING ROLL OVER SO FLUSH OF LAST SEGMENT COVERS ALL LOGGED RECORDS
+      last.commit(mode == OWALDurabilityMode.FSYNC);
+
+      if (!isDurable(lsn, mode))
+        throw new OStorageException("WAL records till LSN " + lsn + " can not be written to " + walLocation);
+    } finally {
+      groupCommitLock.unlock();
+    }
+  }
+
+  private boolean isDurable(OLogSequenceNumber lsn, OWALDurabilityMode mode) {
+    final OLogSequenceNumber durableLsn = mode == OWALDurabilityMode.FSYNC ? flushedLsn : writtenLsn;
+    return durableLsn != null && durableLsn.compareTo(lsn) >= 0;
+  }
+
   private void fixMasterRecords() throws IOException {
     if (firstMasterRecord != null) {
       int index = firstMasterRecord.getSegment() - logSegments.get(0).getOrder();
@@ -267,7 +356,11 @@ public class OWriteAheadLog {
   }
 
   private void writeMasterRecord(int index, OLogSequenceNumber masterRecord) throws IOException {
-    masterRecordLSNHolder.seek(index * (2 * OIntegerSerializer.INT_SIZE + OLongSerializer.LONG_SIZE));
+    writeMasterRecord(masterRecordLSNHolder, index, masterRecord);
+  }
+
+  private static void writeMasterRecord(RandomAccessFile holder, int index, OLogSequenceNumber masterRecord) throws IOException {
+    holder.seek(index * (2 * OIntegerSerializer.INT_SIZE + OLongSerializer.LONG_SIZE));
     CRC32 crc32 = new CRC32();
 
     byte[] serializedLSN = new byte[OIntegerSerializer.INT_SIZE + OLongSerializer.LONG_SIZE];
@@ -275,9 +368,33 @@ public class OWriteAheadLog {
     OLongSerializer.INSTANCE.serialize(masterRecord.getPosition(), serializedLSN, OIntegerSerializer.INT_SIZE);
     crc32.update(serializedLSN);
 
-    masterRecordLSNHolder.writeInt((int) crc32.getValue());
-    masterRecordLSNHolder.writeInt(masterRecord.getSegment());
-    masterRecordLSNHolder.writeLong(masterRecord.getPosition());
+    holder.writeInt((int) crc32.getValue());
+    holder.writeInt(masterRecord.getSegment());
+    holder.writeLong(masterRecord.getPosition());
+  }
+
+  /**
+   * Writes master record file which points to the passed checkpoint, so WAL copied together with it is restored starting from this
+   * checkpoint.
+   */
+  public static void writeMasterRecordFile(File file, OLogSequenceNumber checkpoint) throws IOException {
+    final RandomAccessFile holder = new RandomAccessFile(file, "rws");
+    try {
+      holder.setLength(0);
+      writeMasterRecord(holder, 0, checkpoint);
+      writeMasterRecord(holder, 1, checkpoint);
+    } finally {
+      holder.close();
+    }
+  }
+
+  /**
+   * Returns the number of the log segment stored in the file with passed name.
+   */
+  public static int getSegmentOrder(String name) {
+    final int walOrderStartIndex = name.indexOf('.');
+    final int walOrderEndIndex = name.indexOf('.', walOrderStartIndex + 1);
+    return Integer.parseInt(name.substring(walOrderStartIndex + 1, walOrderEndIndex));
   }
 
   private String getSegmentName(int order) {
@@ -332,7 +449,7 @@ public class OWriteAheadLog {
       final long sizeDiff = last.filledUpTo() - lastSize;
       logSize += sizeDiff;
 
-      if (logSize >= maxLogSize) {
+      if (logSize >= maxLogSize && (preventCutTill == null || logSegments.get(0).getOrder() < preventCutTill.getSegment())) {
         LogSegment first = logSegments.get(0);
         first.stopFlush(false);
 
@@ -358,16 +475,39 @@ public class OWriteAheadLog {
         logSegments.add(last);
       }
 
+      endLsn = lsn;
       return lsn;
     }
   }
 
+  /**
+   * Prevents removal of the log segments which contain records starting from passed LSN, even if log size exceeds maximum allowed
+   * size. Used by backup to keep the records needed to restore the copied pages. Pass <code>null</code> to allow the removal again.
+   */
+  public void preventCutTill(OLogSequenceNumber lsn) {
+    synchronized (syncObject) {
+      preventCutTill = lsn;
+    }
+  }
+
   public long size() {
     synchronized (syncObject) {
       return logSize;
     }
   }
 
+  /**
+   * Returns the order of the segment new records are appended to. Segments with a lower order are complete and are not changed
+   * anymore.
+   */
+  public int activeSegment() {
+    synchronized (syncObject) {
+      checkForClose();
+
+      return logSegments.get(logSegments.size() - 1).getOrder();
+    }
+  }
+
   public void close() throws IOException {
     close(true);
   }
@@ -548,6 +688,10 @@ public class OWriteAheadLog {
 
     private long                                  nextPositionToFlush;
 
+    private byte[]                                readAheadBuffer;
+    private long                                  readAheadFirstPage = -1;
+    private int                                   readAheadPages;
+
     private final ScheduledExecutorService        commitExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
                                                                    @Override
                                                                    public Thread newThread(Runnable r) {
@@ -569,7 +713,7 @@ public class OWriteAheadLog {
 
     public void startFlush() {
       if (commitDelay > 0)
-        commitExecutor.scheduleAtFixedRate(new FlushTask(), commitDelay, commitDelay, TimeUnit.MILLISECONDS);
+        commitExecutor.scheduleAtFixedRate(new FlushTask(true), commitDelay, commitDelay, TimeUnit.MILLISECONDS);
     }
 
     public void stopFlush(boolean flush) {
@@ -771,9 +915,7 @@ public class OWriteAheadLog {
 
       while (pageIndex < pageCount) {
         synchronized (rndFile) {
-          byte[] pageContent = new byte[OWALPage.PAGE_SIZE];
-          rndFile.seek(pageIndex * OWALPage.PAGE_SIZE);
-          rndFile.readFully(pageContent);
+          byte[] pageContent = readPage(pageIndex);
 
           long pointer = directMemory.allocate(pageContent);
           try {
@@ -804,6 +946,36 @@ public class OWriteAheadLog {
       return record;
     }
 
+    /**
+     * Reads page from the file. Pages which precede the last flushed page are not changed any more, so they are read by chunks
+     * of {@link #READ_AHEAD_PAGES} pages and are served from memory on subsequent calls, which speeds up sequential WAL scan.
+     */
+    private byte[] readPage(long pageIndex) throws IOException {
+      if (pageIndex >= readAheadFirstPage && pageIndex < readAheadFirstPage + readAheadPages) {
+        final int offset = (int) (pageIndex - readAheadFirstPage) * OWALPage.PAGE_SIZE;
+        return Arrays.copyOfRange(readAheadBuffer, offset, offset + OWALPage.PAGE_SIZE);
+      }
+
+      final long immutablePages = nextPositionToFlush / OWALPage.PAGE_SIZE;
+      if (pageIndex < immutablePages) {
+        readAheadPages = (int) Math.min(READ_AHEAD_PAGES, immutablePages - pageIndex);
+        if (readAheadBuffer == null)
+          readAheadBuffer = new byte[READ_AHEAD_PAGES * OWALPage.PAGE_SIZE];
+
+        rndFile.seek(pageIndex * OWALPage.PAGE_SIZE);
+        rndFile.readFully(readAheadBuffer, 0, readAheadPages * OWALPage.PAGE_SIZE);
+        readAheadFirstPage = pageIndex;
+
+        return Arrays.copyOf(readAheadBuffer, OWALPage.PAGE_SIZE);
+      }
+
+      byte[] pageContent = new byte[OWALPage.PAGE_SIZE];
+      rndFile.seek(pageIndex * OWALPage.PAGE_SIZE);
+      rndFile.readFully(pageContent);
+
+      return pageContent;
+    }
+
     public OLogSequenceNumber getNextLSN(OLogSequenceNumber lsn) throws IOException {
       final byte[] record = readRecord(lsn);
       if (record == null)
@@ -976,7 +1148,7 @@ public class OWriteAheadLog {
     public void flush() {
       if (!commitExecutor.isShutdown()) {
         try {
-          commitExecutor.submit(new FlushTask()).get();
+          commitExecutor.submit(new FlushTask(true)).get();
         } catch (InterruptedException e) {
           Thread.interrupted();
           throw new OStorageException("Thread was interrupted during flush", e);
@@ -984,14 +1156,29 @@ public class OWriteAheadLog {
           throw new OStorageException("Error during WAL segment " + getPath() + " flush.");
         }
       } else {
-        new FlushTask().run();
+        new FlushTask(true).run();
       }
 
     }
 
+    public void commit(boolean fsync) {
+      try {
+        commitExecutor.submit(new FlushTask(fsync)).get();
+      } catch (RejectedExecutionException e) {
+        // SEGMENT WAS FLUSHED AND STOPPED DURING ROLL OVER, NOTHING TO WRITE
+      } catch (InterruptedException e) {
+        Thread.interrupted();
+        throw new OStorageException("Thread was interrupted during commit", e);
+      } catch (ExecutionException e) {
+        throw new OStorageException("Error during WAL segment " + getPath() + " commit.");
+      }
+    }
+
     private final class FlushTask implements Runnable {
+      private final boolean fsync;
 
-      private FlushTask() {
+      private FlushTask(boolean fsync) {
+        this.fsync = fsync;
       }
 
       @Override
@@ -1052,14 +1239,20 @@ public class OWriteAheadLog {
             filePointer += OWALPage.PAGE_SIZE;
           }
 
-          rndFile.getFD().sync();
+          if (fsync)
+            rndFile.getFD().sync();
         }
 
         long oldPositionToFlush = nextPositionToFlush;
         nextPositionToFlush = filePointer - OWALPage.PAGE_SIZE;
 
+        OLogSequenceNumber lastWrittenLsn = writtenLsn;
         if (lastRecordOffset >= 0)
-          flushedLsn = new OLogSequenceNumber(order, oldPositionToFlush + lastPageIndex * OWALPage.PAGE_SIZE + lastRecordOffset);
+          lastWrittenLsn = new OLogSequenceNumber(order, oldPositionToFlush + lastPageIndex * OWALPage.PAGE_SIZE + lastRecordOffset);
+
+        writtenLsn = lastWrittenLsn;
+        if (fsync)
+          flushedLsn = lastWrittenLsn;
 
         for (int i = 0; i < flushedPages - 1; i++) {
           OWALPage page = pagesCache.poll();
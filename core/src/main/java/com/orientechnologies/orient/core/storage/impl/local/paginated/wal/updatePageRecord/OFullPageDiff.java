@@ -31,6 +31,10 @@ public abstract class OFullPageDiff<T> extends OPageDiff<T> {
     this.oldValue = oldValue;
   }
 
+  public T getOldValue() {
+    return oldValue;
+  }
+
   public abstract void revertPageData(long pagePointer);
 
   @Override
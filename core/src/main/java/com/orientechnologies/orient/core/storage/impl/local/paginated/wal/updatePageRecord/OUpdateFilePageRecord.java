@@ -0,0 +1,97 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord;
+
+import java.util.List;
+
+import com.orientechnologies.common.serialization.types.OStringSerializer;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OLogSequenceNumber;
+
+/**
+ * Changes of page of file which does not belong to any cluster, for example file of hash index. File is identified by its name
+ * because file ids are assigned by disk cache only when file is opened and are not preserved between storage restarts.
+ * 
+ * @since 17.10.13
+ */
+public class OUpdateFilePageRecord extends OUpdatePageRecord {
+  private String fileName;
+
+  public OUpdateFilePageRecord() {
+  }
+
+  public OUpdateFilePageRecord(long pageIndex, String fileName, OLogSequenceNumber prevUnitRecord, List<OPageDiff<?>> diffs) {
+    super(pageIndex, -1, prevUnitRecord, diffs);
+    this.fileName = fileName;
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+
+  @Override
+  public int serializedSize() {
+    return super.serializedSize() + OStringSerializer.INSTANCE.getObjectSize(fileName);
+  }
+
+  @Override
+  public int toStream(byte[] content, int offset) {
+    offset = super.toStream(content, offset);
+
+    OStringSerializer.INSTANCE.serializeNative(fileName, content, offset);
+    offset += OStringSerializer.INSTANCE.getObjectSize(fileName);
+
+    return offset;
+  }
+
+  @Override
+  public int fromStream(byte[] content, int offset) {
+    offset = super.fromStream(content, offset);
+
+    fileName = OStringSerializer.INSTANCE.deserializeNative(content, offset);
+    offset += OStringSerializer.INSTANCE.getObjectSize(fileName);
+
+    return offset;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o)
+      return true;
+    if (o == null || getClass() != o.getClass())
+      return false;
+    if (!super.equals(o))
+      return false;
+
+    OUpdateFilePageRecord that = (OUpdateFilePageRecord) o;
+
+    if (!fileName.equals(that.fileName))
+      return false;
+
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = super.hashCode();
+    result = 31 * result + fileName.hashCode();
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "OUpdateFilePageRecord{" + "fileName='" + fileName + '\'' + "} " + super.toString();
+  }
+}
@@ -340,8 +340,7 @@ public class OStorageMemory extends OStorageEmbedded {
 
     } finally {
       lock.releaseSharedLock();
-      Orient.instance().getProfiler()
-          .stopChrono(PROFILER_CREATE_RECORD, "Create a record in memory database", timer, "db.*.data.updateHole");
+      PROFILER_CREATE_RECORD.stop(timer);
     }
   }
 
@@ -386,8 +385,7 @@ public class OStorageMemory extends OStorageEmbedded {
     } finally {
       lock.releaseSharedLock();
 
-      Orient.instance().getProfiler()
-          .stopChrono(PROFILER_READ_RECORD, "Read a record from memory database", timer, "db.*.readRecord");
+      PROFILER_READ_RECORD.stop(timer);
     }
   }
 
@@ -465,8 +463,7 @@ public class OStorageMemory extends OStorageEmbedded {
     } finally {
       lock.releaseSharedLock();
 
-      Orient.instance().getProfiler()
-          .stopChrono(PROFILER_UPDATE_RECORD, "Update a record to memory database", timer, "db.*.updateRecord");
+      PROFILER_UPDATE_RECORD.stop(timer);
     }
   }
 
@@ -614,8 +611,7 @@ public class OStorageMemory extends OStorageEmbedded {
     } finally {
       lock.releaseSharedLock();
 
-      Orient.instance().getProfiler()
-          .stopChrono(PROFILER_DELETE_RECORD, "Delete a record from memory database", timer, "db.*.deleteRecord");
+      PROFILER_DELETE_RECORD.stop(timer);
     }
   }
 
@@ -66,4 +66,23 @@ public class OTransactionIndexChanges {
       changesCrossKey = new OTransactionIndexChangesPerKey(null);
     return changesCrossKey;
   }
+
+  /**
+   * Tells whether all changes are bound to particular keys, so at commit time only these keys may be locked instead of the whole
+   * index. It is not the case if index was cleared, if there are changes for all keys or if keys can not be compared by equality
+   * (arrays).
+   */
+  public boolean isBoundToKeys() {
+    if (cleared)
+      return false;
+
+    if (changesCrossKey != null && !changesCrossKey.entries.isEmpty())
+      return false;
+
+    for (Object key : changesPerKey.keySet())
+      if (key.getClass().isArray())
+        return false;
+
+    return true;
+  }
 }
@@ -19,7 +19,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -29,18 +31,21 @@ import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.ODatabaseComplex.OPERATION_MODE;
 import com.orientechnologies.orient.core.db.record.ODatabaseRecordTx;
 import com.orientechnologies.orient.core.db.record.ORecordOperation;
+import com.orientechnologies.orient.core.exception.ODatabaseException;
 import com.orientechnologies.orient.core.hook.ORecordHook.TYPE;
 import com.orientechnologies.orient.core.id.OClusterPositionFactory;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.index.OIndex;
-import com.orientechnologies.orient.core.index.OIndexMVRBTreeAbstract;
+import com.orientechnologies.orient.core.index.OIndexInternal;
+import com.orientechnologies.orient.core.index.OIndexTxLockManager;
 import com.orientechnologies.orient.core.record.ORecord;
 import com.orientechnologies.orient.core.record.ORecordInternal;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.storage.ORecordCallback;
 import com.orientechnologies.orient.core.storage.OStorageEmbedded;
 import com.orientechnologies.orient.core.storage.OStorageProxy;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPaginatedStorage;
 import com.orientechnologies.orient.core.version.ORecordVersion;
 
 public class OTransactionOptimistic extends OTransactionRealAbstract {
@@ -69,20 +74,33 @@ public class OTransactionOptimistic extends OTransactionRealAbstract {
         Collections.sort(involvedIndexes);
 
       // LOCK INVOLVED INDEXES
-      List<OIndexMVRBTreeAbstract<?>> lockedIndexes = null;
+      List<OIndexInternal<?>> lockedIndexes = null;
+      final List<OIndexInternal<?>> exclusivelyLockedIndexes = new ArrayList<OIndexInternal<?>>();
+      final Map<OIndexInternal<?>, List<Object>> lockedKeys = new LinkedHashMap<OIndexInternal<?>, List<Object>>();
       try {
         if (involvedIndexes != null)
           for (String indexName : involvedIndexes) {
-            final OIndexMVRBTreeAbstract<?> index = (OIndexMVRBTreeAbstract<?>) database.getMetadata().getIndexManager()
+            final OIndexInternal<?> index = (OIndexInternal<?>) database.getMetadata().getIndexManager()
                 .getIndexInternal(indexName);
             if (lockedIndexes == null)
-              lockedIndexes = new ArrayList<OIndexMVRBTreeAbstract<?>>();
+              lockedIndexes = new ArrayList<OIndexInternal<?>>();
 
             index.acquireModificationLock();
             lockedIndexes.add(index);
+
+            // LOCK ONLY KEYS CHANGED BY TRANSACTION (THEY ARE SORTED), THE WHOLE INDEX IS LOCKED IF CHANGES ARE NOT BOUND TO KEYS
+            final OTransactionIndexChanges indexChanges = indexEntries.get(indexName);
+            if (indexChanges.isBoundToKeys()) {
+              final List<Object> keys = OIndexTxLockManager.copyKeys(indexChanges.changesPerKey.keySet());
+              index.acquireKeyLocks(keys);
+              lockedKeys.put(index, keys);
+            } else {
+              index.acquireTxExclusiveLock();
+              exclusivelyLockedIndexes.add(index);
+            }
           }
 
-        // SEARCH FOR INDEX BASED ON DOCUMENT TOUCHED
+        // SEARCH FOR INDEX BASED ON DOCUMENT TOUCHED, THEY ARE NOT CHANGED BY TRANSACTION SO ONLY FREEZE IS PREVENTED
         final Collection<? extends OIndex<?>> indexes = database.getMetadata().getIndexManager().getIndexes();
         List<? extends OIndex<?>> indexesToLock = null;
         if (indexes != null) {
@@ -96,7 +114,7 @@ public class OTransactionOptimistic extends OTransactionRealAbstract {
 
         if (indexesToLock != null && !indexesToLock.isEmpty()) {
           if (lockedIndexes == null)
-            lockedIndexes = new ArrayList<OIndexMVRBTreeAbstract<?>>();
+            lockedIndexes = new ArrayList<OIndexInternal<?>>();
 
           for (OIndex<?> index : indexesToLock) {
             for (Entry<ORID, ORecordOperation> entry : recordEntries.entrySet()) {
@@ -106,16 +124,14 @@ public class OTransactionOptimistic extends OTransactionRealAbstract {
                 if (!lockedIndexes.contains(index.getInternal()) && doc.getSchemaClass() != null && index.getDefinition() != null
                     && doc.getSchemaClass().isSubClassOf(index.getDefinition().getClassName())) {
                   index.getInternal().acquireModificationLock();
-                  lockedIndexes.add((OIndexMVRBTreeAbstract<?>) index.getInternal());
+                  lockedIndexes.add(index.getInternal());
                 }
               }
             }
           }
-
-          for (OIndexMVRBTreeAbstract<?> index : lockedIndexes)
-            index.acquireExclusiveLock();
         }
 
+        // PAGINATED STORAGE LOCKS ONLY CLUSTERS INVOLVED IN TRANSACTION, SO THE WHOLE STORAGE IS NOT LOCKED EXCLUSIVELY
         database.getStorage().callInLock(new Callable<Void>() {
 
           public Void call() throws Exception {
@@ -133,17 +149,31 @@ public class OTransactionOptimistic extends OTransactionRealAbstract {
             return null;
           }
 
-        }, true);
+        }, !(database.getStorage() instanceof OLocalPaginatedStorage));
       } finally {
-        // RELEASE INDEX LOCKS IF ANY
-        if (lockedIndexes != null) {
-          for (OIndexMVRBTreeAbstract<?> index : lockedIndexes)
-            index.releaseExclusiveLock();
+        // RELEASE INDEX LOCKS IF ANY, A FAILED RELEASE MUST NOT LEAK THE REMAINING LOCKS
+        for (Entry<OIndexInternal<?>, List<Object>> lockedKeysEntry : lockedKeys.entrySet())
+          try {
+            lockedKeysEntry.getKey().releaseKeyLocks(lockedKeysEntry.getValue());
+          } catch (RuntimeException e) {
+            OLogManager.instance().error(this, "Error on releasing key locks of index %s", e,
+                lockedKeysEntry.getKey().getName());
+          }
 
-          for (OIndexMVRBTreeAbstract<?> index : lockedIndexes)
-            index.releaseModificationLock();
+        for (OIndexInternal<?> index : exclusivelyLockedIndexes)
+          try {
+            index.releaseTxExclusiveLock();
+          } catch (RuntimeException e) {
+            OLogManager.instance().error(this, "Error on releasing lock of index %s", e, index.getName());
+          }
 
-        }
+        if (lockedIndexes != null)
+          for (OIndexInternal<?> index : lockedIndexes)
+            try {
+              index.releaseModificationLock();
+            } catch (RuntimeException e) {
+              OLogManager.instance().error(this, "Error on releasing modification lock of index %s", e, index.getName());
+            }
       }
     }
   }
@@ -328,6 +358,13 @@ public class OTransactionOptimistic extends OTransactionRealAbstract {
         database.callbackHooks(TYPE.DELETE_FAILED, iRecord);
         break;
       }
+
+      if (status == OTransaction.TXSTATUS.COMMITTING && database.getStorage() instanceof OLocalPaginatedStorage) {
+        // RECORD SAVED DURING COMMIT, FOR INSTANCE LINKED BY A RECORD OF TRANSACTION: THE WHOLE COMMIT FAILS AND IS ROLLED BACK
+        if (t instanceof RuntimeException)
+          throw (RuntimeException) t;
+        throw new ODatabaseException("Error on saving record " + iRecord.getIdentity() + " during commit", t);
+      }
     }
   }
 
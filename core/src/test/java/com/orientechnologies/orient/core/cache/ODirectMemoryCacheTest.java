@@ -0,0 +1,216 @@
+package com.orientechnologies.orient.core.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.common.directmemory.ODirectMemory;
+import com.orientechnologies.common.directmemory.ODirectMemoryFactory;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ORecordBytes;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+@Test
+public class ODirectMemoryCacheTest {
+  private ODirectMemory      directMemory;
+  private ODirectMemoryCache sut;
+
+  @BeforeMethod
+  public void setUp() {
+    directMemory = ODirectMemoryFactory.INSTANCE.directMemory();
+
+    // RECORDS ARE NOT LOADED FROM A DATABASE LEFT BY PREVIOUS TESTS
+    ODatabaseRecordThreadLocal.INSTANCE.remove();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    if (sut != null)
+      sut.shutdown();
+
+    sut = null;
+  }
+
+  public void doesNothingWhileDisabled() {
+    if (directMemory == null)
+      return;
+
+    // Given cache created
+    // And not enabled
+    sut = new ODirectMemoryCache(null, 100, 4, 1024 * 1024, directMemory);
+
+    // When any operation called on it
+    ORecordBytes record = newRecord(1, 10);
+    sut.put(record);
+
+    // Then it has no effect on cache's state
+    assertNull(sut.get(record.getIdentity()));
+    assertNull(sut.remove(record.getIdentity()));
+    assertEquals(sut.size(), 0);
+  }
+
+  public void returnsCopiesOfStoredRecords() {
+    if (directMemory == null)
+      return;
+
+    // Given an enabled cache
+    sut = enabledCache(1000, 16, 1024 * 1024);
+
+    // When records put into
+    for (int i = 0; i < 500; i++)
+      sut.put(newRecord(i, 10));
+
+    // Then new instances with the same identity, version and content are returned
+    assertEquals(sut.size(), 500);
+    assertEquals(sut.keys().size(), 500);
+    for (int i = 0; i < 500; i++) {
+      final ORecordBytes expected = newRecord(i, 10);
+      final ORecordInternal<?> record = sut.get(expected.getIdentity());
+
+      assertTrue(record instanceof ORecordBytes);
+      assertNotSame(record, expected);
+      assertEquals(record.getIdentity(), expected.getIdentity());
+      assertEquals(record.getRecordVersion(), expected.getRecordVersion());
+      assertEquals(record.toStream(), expected.toStream());
+      assertFalse(record.isDirty());
+    }
+  }
+
+  public void deserializesDocumentFields() {
+    if (directMemory == null)
+      return;
+
+    // Given an enabled cache
+    sut = enabledCache(-1, 1, 1024 * 1024);
+
+    // When document is put into
+    final ODocument document = new ODocument(new ORecordId(1, OClusterPositionFactory.INSTANCE.valueOf(1)));
+    document.field("name", "Jay");
+    document.field("age", 42);
+    document.toStream();
+    document.unsetDirty();
+    sut.put(document);
+
+    // Then its fields are available in returned copy
+    final ODocument cached = (ODocument) sut.get(document.getIdentity());
+    assertEquals(cached.field("name"), "Jay");
+    assertEquals(cached.field("age"), 42);
+  }
+
+  public void replacesAndRemovesRecords() {
+    if (directMemory == null)
+      return;
+
+    // Given an enabled cache with record in it
+    sut = enabledCache(-1, 4, 1024 * 1024);
+    sut.put(newRecord(1, 10));
+    final long usedMemory = sut.getUsedMemory();
+
+    // When record is replaced by bigger one
+    final ORecordInternal<?> previous = sut.put(newRecord(1, 20));
+
+    // Then previous record is returned and memory usage grows
+    assertEquals(previous.toStream().length, 10);
+    assertEquals(sut.size(), 1);
+    assertEquals(sut.getUsedMemory(), usedMemory + 10);
+
+    // And removal releases the whole memory
+    assertEquals(sut.remove(previous.getIdentity()).toStream().length, 20);
+    assertEquals(sut.size(), 0);
+    assertEquals(sut.getUsedMemory(), 0);
+  }
+
+  public void usesNoMoreMemoryThanSpecifiedLimit() {
+    if (directMemory == null)
+      return;
+
+    // Given an enabled cache limited by memory
+    final long maxMemory = 64 * 1024;
+    sut = enabledCache(-1, 4, maxMemory);
+
+    // When stored records need more memory than cache limit allows
+    for (int i = 0; i < 10000; i++)
+      sut.put(newRecord(i, 100));
+
+    // Then memory limit is met and excessive records are evicted
+    assertTrue(sut.getUsedMemory() <= maxMemory, "Cache doesn't meet memory limit");
+    assertTrue(sut.size() > 0);
+    assertEquals(sut.getEvictions(), 10000 - sut.size());
+  }
+
+  public void storesNoMoreElementsThanSpecifiedLimit() {
+    if (directMemory == null)
+      return;
+
+    // Given an enabled cache limited by amount of records
+    sut = enabledCache(512, 8, 1024 * 1024);
+
+    // When stored more distinct elements than cache limit allows
+    for (int i = 0; i < 10 * sut.limit(); i++)
+      sut.put(newRecord(i, 10));
+
+    // Then size of cache should not exceed it's limit
+    assertTrue(sut.size() <= sut.limit(), "Cache doesn't meet limit requirements");
+    assertEquals(sut.getEvictions(), 10 * sut.limit() - sut.size());
+  }
+
+  public void doesNotCacheRecordsBiggerThanSegment() {
+    if (directMemory == null)
+      return;
+
+    // Given an enabled cache
+    sut = enabledCache(-1, 1, 1024);
+
+    // When record bigger than cache is put
+    sut.put(newRecord(1, 2048));
+
+    // Then it is not cached
+    assertNull(sut.get(newRecord(1, 0).getIdentity()));
+    assertEquals(sut.getUsedMemory(), 0);
+  }
+
+  public void countsHitsAndMisses() {
+    if (directMemory == null)
+      return;
+
+    // Given an enabled cache with records in it
+    sut = enabledCache(100, 4, 1024 * 1024);
+    sut.put(newRecord(1, 10));
+
+    // When present and absent records are requested
+    sut.get(newRecord(1, 0).getIdentity());
+    sut.get(newRecord(1, 0).getIdentity());
+    sut.get(newRecord(2, 0).getIdentity());
+
+    // Then hits and misses are counted
+    assertEquals(sut.getHits(), 2);
+    assertEquals(sut.getMisses(), 1);
+  }
+
+  private ODirectMemoryCache enabledCache(int limit, int concurrencyLevel, long maxMemory) {
+    ODirectMemoryCache cache = new ODirectMemoryCache(null, limit, concurrencyLevel, maxMemory, directMemory);
+    cache.startup();
+    return cache;
+  }
+
+  private ORecordBytes newRecord(int position, int size) {
+    final byte[] content = new byte[size];
+    for (int i = 0; i < size; i++)
+      content[i] = (byte) (position + i);
+
+    final ORecordBytes record = new ORecordBytes(content);
+    record.setIdentity(new ORecordId(1, OClusterPositionFactory.INSTANCE.valueOf(position)));
+    record.getRecordVersion().setCounter(position);
+    record.unsetDirty();
+    return record;
+  }
+}
@@ -0,0 +1,161 @@
+package com.orientechnologies.orient.core.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+@Test
+public class OSegmentedCacheTest {
+
+  public void doesNothingWhileDisabled() {
+    // Given cache created
+    // And not enabled
+    OSegmentedCache sut = new OSegmentedCache(null, 100, 4);
+
+    // When any operation called on it
+    ODocument record = newRecord(1);
+    sut.put(record);
+
+    // Then it has no effect on cache's state
+    assertNull(sut.get(record.getIdentity()));
+    assertNull(sut.remove(record.getIdentity()));
+    assertEquals(sut.size(), 0);
+  }
+
+  public void storesRecordsUsingTheirIdentity() {
+    // Given an enabled segmented cache
+    OSegmentedCache sut = enabledCache(1000, 16);
+
+    // When records put into
+    for (int i = 0; i < 500; i++)
+      sut.put(newRecord(i));
+
+    // Then they can be retrieved later by their ids
+    assertEquals(sut.size(), 500);
+    for (int i = 0; i < 500; i++)
+      assertEquals(sut.get(new ORecordId(1, OClusterPositionFactory.INSTANCE.valueOf(i))).getIdentity(), new ORecordId(1,
+          OClusterPositionFactory.INSTANCE.valueOf(i)));
+
+    assertEquals(sut.keys().size(), 500);
+  }
+
+  public void storesNoMoreElementsThanSpecifiedLimit() {
+    // Given an enabled segmented cache
+    OSegmentedCache sut = enabledCache(512, 8);
+
+    // When stored more distinct elements than cache limit allows
+    for (int i = 0; i < 10 * sut.limit(); i++)
+      sut.put(newRecord(i));
+
+    // Then size of cache should not exceed it's limit
+    assertTrue(sut.size() <= sut.limit(), "Cache doesn't meet limit requirements");
+    assertEquals(sut.getEvictions(), 10 * sut.limit() - sut.size());
+  }
+
+  public void unlimitedIfLimitIsNotPositive() {
+    // Given an enabled cache without limit
+    OSegmentedCache sut = enabledCache(-1, 16);
+
+    // When many records put into
+    for (int i = 0; i < 10000; i++)
+      sut.put(newRecord(i));
+
+    // Then all of them are kept
+    assertEquals(sut.size(), 10000);
+    assertEquals(sut.getSegmentsCount(), 16);
+  }
+
+  public void segmentsCountIsLimitedByCacheSize() {
+    assertEquals(new OSegmentedCache(null, 5, 16).getSegmentsCount(), 1);
+    assertEquals(new OSegmentedCache(null, 256, 16).getSegmentsCount(), 4);
+    assertEquals(new OSegmentedCache(null, 100000, 10).getSegmentsCount(), 16);
+  }
+
+  public void referencedRecordsGetSecondChance() {
+    // Given full single segment cache
+    OSegmentedCache sut = enabledCache(3, 1);
+    sut.put(newRecord(1));
+    sut.put(newRecord(2));
+    sut.put(newRecord(3));
+
+    // When eldest record is accessed and new record is added
+    assertNotNull(sut.get(newRecord(1).getIdentity()));
+    sut.put(newRecord(4));
+
+    // Then eldest not accessed record is evicted
+    assertNotNull(sut.get(newRecord(1).getIdentity()));
+    assertNull(sut.get(newRecord(2).getIdentity()));
+    assertNotNull(sut.get(newRecord(3).getIdentity()));
+    assertNotNull(sut.get(newRecord(4).getIdentity()));
+  }
+
+  public void countsHitsAndMisses() {
+    // Given an enabled cache with records in it
+    OSegmentedCache sut = enabledCache(100, 4);
+    sut.put(newRecord(1));
+
+    // When present and absent records are requested
+    sut.get(newRecord(1).getIdentity());
+    sut.get(newRecord(1).getIdentity());
+    sut.get(newRecord(2).getIdentity());
+
+    // Then hits and misses are counted
+    assertEquals(sut.getHits(), 2);
+    assertEquals(sut.getMisses(), 1);
+  }
+
+  public void lockedRecordIsNotAccessibleByOtherThreads() throws Exception {
+    // Given an enabled cache
+    final OSegmentedCache sut = enabledCache(1000, 16);
+    final ODocument record = newRecord(1);
+
+    // When record is locked by current thread
+    sut.lock(record.getIdentity());
+
+    final CountDownLatch putIsDone = new CountDownLatch(1);
+    final Thread thread = new Thread() {
+      @Override
+      public void run() {
+        sut.put(record);
+        putIsDone.countDown();
+      }
+    };
+
+    try {
+      // Then owner thread still can access it
+      assertNull(sut.get(record.getIdentity()));
+
+      // And other threads wait for unlock
+      thread.start();
+      assertFalse(putIsDone.await(200, TimeUnit.MILLISECONDS));
+    } finally {
+      sut.unlock(record.getIdentity());
+    }
+
+    assertTrue(putIsDone.await(10, TimeUnit.SECONDS));
+    thread.join();
+
+    assertEquals(sut.get(record.getIdentity()), record);
+  }
+
+  private OSegmentedCache enabledCache(int limit, int concurrencyLevel) {
+    OSegmentedCache cache = new OSegmentedCache(null, limit, concurrencyLevel);
+    cache.enable();
+    return cache;
+  }
+
+  private ODocument newRecord(int position) {
+    return new ODocument(new ORecordId(1, OClusterPositionFactory.INSTANCE.valueOf(position)));
+  }
+}
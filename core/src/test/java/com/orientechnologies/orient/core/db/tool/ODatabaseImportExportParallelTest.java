@@ -0,0 +1,204 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.db.tool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.zip.GZIPInputStream;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.command.OCommandOutputListener;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.OCommandSQL;
+import com.orientechnologies.orient.core.storage.OStorage;
+
+/**
+ * @since 17.10.13
+ */
+@Test
+public class ODatabaseImportExportParallelTest {
+  private static final int                    RECORDS  = 3000;
+  private static final OCommandOutputListener LISTENER = new OCommandOutputListener() {
+                                                         @Override
+                                                         public void onMessage(String iText) {
+                                                         }
+                                                       };
+
+  private File                                buildDir;
+  private ODatabaseDocumentTx                 sourceDb;
+  private Object                              distributedVersion;
+
+  @BeforeClass
+  public void createDatabase() {
+    // OTHER TESTS OF THE SUITE CAN LEAVE THE DISTRIBUTED VERSION ENABLED
+    distributedVersion = OGlobalConfiguration.DB_USE_DISTRIBUTED_VERSION.getValue();
+    OGlobalConfiguration.DB_USE_DISTRIBUTED_VERSION.setValue(false);
+
+    buildDir = new File(System.getProperty("buildDirectory", "."), "importExportParallelTest");
+    deleteRecursively(buildDir);
+    buildDir.mkdirs();
+
+    sourceDb = new ODatabaseDocumentTx("local:" + buildDir.getAbsolutePath() + "/source");
+    sourceDb.create();
+
+    final OClass person = sourceDb.getMetadata().getSchema().createClass("Person");
+    person.addClusterId(sourceDb.addCluster("person2", OStorage.CLUSTER_TYPE.PHYSICAL));
+    person.createProperty("id", OType.INTEGER).createIndex(OClass.INDEX_TYPE.UNIQUE);
+    person.createProperty("name", OType.STRING).createIndex(OClass.INDEX_TYPE.NOTUNIQUE);
+    person.createProperty("tags", OType.EMBEDDEDLIST, OType.STRING).createIndex(OClass.INDEX_TYPE.NOTUNIQUE);
+    sourceDb.getMetadata().getSchema().createClass("City").createProperty("name", OType.STRING)
+        .createIndex(OClass.INDEX_TYPE.UNIQUE);
+
+    for (int i = 0; i < RECORDS; i++) {
+      final ODocument doc = new ODocument("Person").field("id", i).field("name", "name" + (i % 100))
+          .field("tags", Arrays.asList("tag" + (i % 7), "tag" + (i % 11)));
+      doc.save(i % 2 == 0 ? "person" : "person2");
+
+      // HOLES TO KEEP ON IMPORT
+      if (i % 10 == 0)
+        doc.delete();
+    }
+
+    for (int i = 0; i < 100; i++)
+      new ODocument("City").field("name", "city" + i).save();
+
+    sourceDb.close();
+    sourceDb.open("admin", "admin");
+  }
+
+  @AfterClass
+  public void dropDatabase() {
+    ODatabaseRecordThreadLocal.INSTANCE.set(sourceDb);
+    sourceDb.drop();
+    deleteRecursively(buildDir);
+    OGlobalConfiguration.DB_USE_DISTRIBUTED_VERSION.setValue(distributedVersion);
+  }
+
+  public void parallelExportWritesSameContent() throws IOException {
+    final File sequential = export("sequential", 1);
+    final File parallel = export("parallel", 4);
+
+    Assert.assertEquals(uncompress(parallel), uncompress(sequential));
+  }
+
+  public void parallelExportHasPermissionsOfExportedDatabase() throws IOException {
+    sourceDb.getMetadata().getSchema().createClass("Secret", sourceDb.getMetadata().getSchema().getClass("ORestricted"));
+    for (int i = 0; i < 100; i++)
+      new ODocument("Secret").field("text", "hidden" + i).save();
+
+    final ODatabaseDocumentTx readerDb = new ODatabaseDocumentTx(sourceDb.getURL()).open("reader", "reader");
+    try {
+      final File sequential = new File(buildDir, "sequentialReader.json.gz");
+      new ODatabaseExport(readerDb, sequential.getAbsolutePath(), LISTENER).setOptions("-parallel=1").exportDatabase();
+      final File parallel = new File(buildDir, "parallelReader.json.gz");
+      new ODatabaseExport(readerDb, parallel.getAbsolutePath(), LISTENER).setOptions("-parallel=4").exportDatabase();
+
+      // RECORDS NOT ALLOWED TO THE USER ARE NOT EXPORTED BY THE WORKERS TOO
+      final String parallelContent = uncompress(parallel);
+      Assert.assertFalse(parallelContent.contains("hidden"));
+      Assert.assertEquals(count(parallelContent, "\"@rid\""), count(uncompress(sequential), "\"@rid\""));
+    } finally {
+      readerDb.close();
+
+      ODatabaseRecordThreadLocal.INSTANCE.set(sourceDb);
+      sourceDb.command(new OCommandSQL("delete from Secret")).execute();
+      sourceDb.getMetadata().getSchema().dropClass("Secret");
+    }
+  }
+
+  public void parallelImportKeepsRecordsAndIndexes() throws IOException {
+    final File exported = export("toImport", 4);
+
+    final ODatabaseDocumentTx importedDb = new ODatabaseDocumentTx("local:" + buildDir.getAbsolutePath() + "/imported");
+    importedDb.create();
+    try {
+      new ODatabaseImport(importedDb, exported.getAbsolutePath(), LISTENER).setOptions("-parallel=4").importDatabase();
+
+      Assert.assertEquals(importedDb.countClass("Person"), sourceDb.countClass("Person"));
+
+      final OIndex<?> idIndex = importedDb.getMetadata().getIndexManager().getIndex("Person.id");
+      Assert.assertEquals(idIndex.getSize(), RECORDS - RECORDS / 10);
+      Assert.assertEquals(idIndex.getInternal().getClusters().size(), 2);
+
+      final OIndex<?> tagsIndex = importedDb.getMetadata().getIndexManager().getIndex("Person.tags");
+      Assert.assertFalse(((Collection<?>) tagsIndex.get("tag3")).isEmpty());
+      Assert.assertEquals(importedDb.getMetadata().getIndexManager().getIndex("City.name").getSize(), 100);
+    } finally {
+      importedDb.close();
+    }
+
+    ODatabaseRecordThreadLocal.INSTANCE.set(sourceDb);
+    sourceDb.close();
+    try {
+      final ODatabaseCompare compare = new ODatabaseCompare(sourceDb.getURL(), importedDb.getURL(), "admin", "admin", LISTENER);
+      Assert.assertTrue(compare.compare());
+    } finally {
+      sourceDb.open("admin", "admin");
+      importedDb.open("admin", "admin");
+      importedDb.drop();
+    }
+  }
+
+  private File export(final String iName, final int iParallel) throws IOException {
+    ODatabaseRecordThreadLocal.INSTANCE.set(sourceDb);
+    final File file = new File(buildDir, iName + ".json.gz");
+    new ODatabaseExport(sourceDb, file.getAbsolutePath(), LISTENER).setOptions("-parallel=" + iParallel).exportDatabase();
+    return file;
+  }
+
+  private static void deleteRecursively(final File iFile) {
+    if (iFile.isDirectory())
+      for (File child : iFile.listFiles())
+        deleteRecursively(child);
+    iFile.delete();
+  }
+
+  private static int count(final String iContent, final String iText) {
+    int count = 0;
+    for (int i = iContent.indexOf(iText); i > -1; i = iContent.indexOf(iText, i + 1))
+      count++;
+    return count;
+  }
+
+  private static String uncompress(final File iFile) throws IOException {
+    final InputStream in = new GZIPInputStream(new FileInputStream(iFile));
+    try {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) > -1)
+        out.write(buffer, 0, read);
+      return out.toString();
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,205 @@
+package com.orientechnologies.orient.core.index;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+@Test
+public class OIndexTxKeyLockingTest {
+  private ODatabaseDocumentTx db;
+  private String              url;
+  private ExecutorService     executor;
+
+  @BeforeMethod
+  public void beforeMethod() {
+    String buildDirectory = System.getProperty("buildDirectory", ".");
+    url = "plocal:" + new File(buildDirectory + "/indexTxKeyLockingTest").getAbsolutePath();
+
+    db = new ODatabaseDocumentTx(url);
+    if (db.exists()) {
+      db.open("admin", "admin");
+      db.drop();
+      db = new ODatabaseDocumentTx(url);
+    }
+
+    db.create();
+    final OClass orderClass = db.getMetadata().getSchema().createClass("Order");
+    orderClass.createProperty("number", OType.INTEGER).createIndex(OClass.INDEX_TYPE.UNIQUE);
+    db.getMetadata().getIndexManager().createIndex("orderTags", OClass.INDEX_TYPE.NOTUNIQUE.toString(),
+        new OSimpleKeyIndexDefinition(OType.STRING), null, null);
+    db.getMetadata().getIndexManager().createIndex("orderParents", OClass.INDEX_TYPE.NOTUNIQUE.toString(),
+        new OSimpleKeyIndexDefinition(OType.LINK), null, null);
+
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @AfterMethod
+  public void afterMethod() {
+    executor.shutdownNow();
+
+    if (db.isClosed())
+      db.open("admin", "admin");
+
+    db.drop();
+  }
+
+  public void testCommitOfOtherKeyDoesNotWait() throws Exception {
+    final OIndexMVRBTreeAbstract<?> index = getIndexInternal("Order.number");
+    final List<Integer> lockedKeys = Collections.singletonList(1);
+
+    index.acquireKeyLocks(lockedKeys);
+    final Future<Void> sameKey;
+    try {
+      executor.submit(new OrderWriter(2)).get(10, TimeUnit.SECONDS);
+
+      sameKey = executor.submit(new OrderWriter(1));
+      assertWaits(sameKey);
+    } finally {
+      index.releaseKeyLocks(lockedKeys);
+    }
+
+    sameKey.get(10, TimeUnit.SECONDS);
+
+    Assert.assertEquals(index.getSize(), 2);
+  }
+
+  public void testCommitWhichClearsIndexWaitsForKeyLocks() throws Exception {
+    final OIndexMVRBTreeAbstract<?> index = getIndexInternal("orderTags");
+    final List<String> lockedKeys = Collections.singletonList("urgent");
+
+    db.getMetadata().getIndexManager().getIndex("orderTags").put("urgent", new ODocument("Order").field("number", 1).save());
+
+    index.acquireKeyLocks(lockedKeys);
+    final Future<Void> clear;
+    try {
+      clear = executor.submit(new Callable<Void>() {
+        public Void call() throws Exception {
+          final ODatabaseDocumentTx writerDb = new ODatabaseDocumentTx(url).open("admin", "admin");
+          try {
+            writerDb.begin();
+            writerDb.getMetadata().getIndexManager().getIndex("orderTags").clear();
+            writerDb.commit();
+          } finally {
+            writerDb.close();
+          }
+          return null;
+        }
+      });
+
+      assertWaits(clear);
+    } finally {
+      index.releaseKeyLocks(lockedKeys);
+    }
+
+    clear.get(10, TimeUnit.SECONDS);
+    Assert.assertEquals(index.getSize(), 0);
+  }
+
+  public void testConcurrentCommitsOfDifferentKeys() throws Exception {
+    final int threads = 4;
+    final int transactions = 50;
+
+    final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+    for (int i = 0; i < threads; i++) {
+      final int thread = i;
+      futures.add(executor.submit(new Callable<Void>() {
+        public Void call() throws Exception {
+          for (int n = 0; n < transactions; n++)
+            new OrderWriter(thread * transactions + n).call();
+          return null;
+        }
+      }));
+    }
+
+    for (Future<Void> future : futures)
+      future.get();
+
+    Assert.assertEquals(db.countClass("Order"), threads * transactions);
+    Assert.assertEquals(getIndexInternal("Order.number").getSize(), threads * transactions);
+    Assert.assertEquals(getIndexInternal("orderTags").getSize(), threads * transactions);
+  }
+
+  public void testKeyLinkedToRecordCreatedInTransaction() throws Exception {
+    for (int i = 0; i < 2; i++) {
+      final int number = i;
+      // THE KEY IS THE TEMPORARY IDENTITY OF THE NEW RECORD, IT CHANGES DURING COMMIT
+      executor.submit(new Callable<Void>() {
+        public Void call() throws Exception {
+          final ODatabaseDocumentTx writerDb = new ODatabaseDocumentTx(url).open("admin", "admin");
+          try {
+            writerDb.begin();
+            final ODocument order = new ODocument("Order").field("number", number).save();
+            writerDb.getMetadata().getIndexManager().getIndex("orderParents").put(order.getIdentity(), order);
+            writerDb.commit();
+          } finally {
+            writerDb.close();
+          }
+          return null;
+        }
+      }).get(10, TimeUnit.SECONDS);
+    }
+
+    final OIndexMVRBTreeAbstract<?> index = getIndexInternal("orderParents");
+    Assert.assertEquals(index.getSize(), 2);
+
+    // NO LOCK IS LEFT ON THE INDEX
+    final Future<Void> lock = executor.submit(new Callable<Void>() {
+      public Void call() throws Exception {
+        index.acquireTxExclusiveLock();
+        index.releaseTxExclusiveLock();
+        return null;
+      }
+    });
+    lock.get(10, TimeUnit.SECONDS);
+  }
+
+  private OIndexMVRBTreeAbstract<?> getIndexInternal(final String name) {
+    return (OIndexMVRBTreeAbstract<?>) db.getMetadata().getIndexManager().getIndexInternal(name);
+  }
+
+  private static void assertWaits(final Future<Void> future) throws Exception {
+    try {
+      future.get(500, TimeUnit.MILLISECONDS);
+      Assert.fail("Commit was not blocked by key lock");
+    } catch (TimeoutException e) {
+    }
+  }
+
+  private final class OrderWriter implements Callable<Void> {
+    private final int number;
+
+    private OrderWriter(final int number) {
+      this.number = number;
+    }
+
+    public Void call() throws Exception {
+      final ODatabaseDocumentTx writerDb = new ODatabaseDocumentTx(url).open("admin", "admin");
+      try {
+        writerDb.begin();
+        final ODocument order = new ODocument("Order").field("number", number).save();
+        writerDb.getMetadata().getIndexManager().getIndex("orderTags").put("tag" + number, order);
+        writerDb.commit();
+      } finally {
+        writerDb.close();
+      }
+      return null;
+    }
+  }
+}
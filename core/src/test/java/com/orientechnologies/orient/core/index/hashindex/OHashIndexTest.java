@@ -39,7 +39,7 @@ public class OHashIndexTest {
       db.close();
   }
 
-  @Test(enabled = false)
+  @Test
   public void testCreateAutomaticHashIndex() throws Exception {
     final OClass oClass = db.getMetadata().getSchema().createClass("testClass");
     oClass.createProperty("name", OType.STRING);
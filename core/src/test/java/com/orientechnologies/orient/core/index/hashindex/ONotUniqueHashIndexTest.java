@@ -0,0 +1,164 @@
+package com.orientechnologies.orient.core.index.hashindex;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.OCommandSQL;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+@Test
+public class ONotUniqueHashIndexTest {
+  private ODatabaseDocumentTx db;
+
+  @BeforeMethod
+  public void setUp() {
+    db = new ODatabaseDocumentTx("local:target/notUniqueHashIndexTest");
+    if (db.exists()) {
+      db.open("admin", "admin");
+      db.drop();
+      db = new ODatabaseDocumentTx("local:target/notUniqueHashIndexTest");
+    }
+
+    db.create();
+
+    final OClass person = db.getMetadata().getSchema().createClass("Person");
+    person.createProperty("name", OType.STRING);
+    person.createProperty("age", OType.INTEGER);
+    person.createIndex("Person.name", OClass.INDEX_TYPE.NOTUNIQUE_HASH, "name");
+    person.createIndex("Person.age", OClass.INDEX_TYPE.NOTUNIQUE, "age");
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    if (db.isClosed())
+      db.open("admin", "admin");
+
+    db.drop();
+  }
+
+  public void testDuplicateKeys() {
+    for (int i = 0; i < 100; i++)
+      new ODocument("Person").field("name", "name" + (i % 10)).field("age", i).save();
+
+    final OIndex<?> index = db.getMetadata().getIndexManager().getIndex("Person.name");
+    Assert.assertEquals(((Collection<?>) index.get("name3")).size(), 10);
+    Assert.assertEquals(((Collection<?>) index.get("absent")).size(), 0);
+    Assert.assertEquals(index.getSize(), 100);
+    Assert.assertEquals(index.getKeySize(), 10);
+
+    for (ODocument document : db.browseClass("Person"))
+      if (document.<Integer> field("age") % 2 == 0)
+        document.field("name", "even").save();
+
+    Assert.assertEquals(((Collection<?>) index.get("name3")).size(), 10);
+    Assert.assertEquals(((Collection<?>) index.get("name4")).size(), 0);
+    Assert.assertEquals(((Collection<?>) index.get("even")).size(), 50);
+
+    for (ODocument document : db.browseClass("Person"))
+      if (document.field("name").equals("even"))
+        document.delete();
+
+    Assert.assertEquals(((Collection<?>) index.get("even")).size(), 0);
+    Assert.assertEquals(index.getSize(), 50);
+  }
+
+  public void testKeyWithManyRecords() {
+    // FAR MORE RECORDS THAN CAN BE PLACED IN A SINGLE BUCKET
+    for (int i = 0; i < 10000; i++)
+      new ODocument("Person").field("name", i % 1000 == 0 ? "other" + i : "same").field("age", i).save();
+
+    final OIndex<?> index = db.getMetadata().getIndexManager().getIndex("Person.name");
+    Assert.assertEquals(((Collection<?>) index.get("same")).size(), 9990);
+    Assert.assertEquals(((Collection<?>) index.get("other3000")).size(), 1);
+    Assert.assertTrue(index.contains("same"));
+    Assert.assertFalse(index.contains("absent"));
+    Assert.assertEquals(index.getSize(), 10000);
+    Assert.assertEquals(index.getKeySize(), 11);
+
+    final ORID rid = ((Collection<OIdentifiable>) index.get("same")).iterator().next().getIdentity();
+    Assert.assertTrue(index.remove("same", rid));
+    Assert.assertFalse(index.getInternal().remove("same", rid));
+    Assert.assertFalse(((Collection<?>) index.get("same")).contains(rid));
+    Assert.assertEquals(index.getSize(), 9999);
+
+    Assert.assertTrue(index.remove("same"));
+    Assert.assertEquals(((Collection<?>) index.get("same")).size(), 0);
+    Assert.assertEquals(index.getSize(), 10);
+  }
+
+  public void testTransactionCommitAndRollback() {
+    final ODocument first = new ODocument("Person").field("name", "john").field("age", 1);
+    first.save();
+
+    db.begin();
+    new ODocument("Person").field("name", "john").field("age", 2).save();
+    new ODocument("Person").field("name", "jack").field("age", 3).save();
+    db.rollback();
+
+    final OIndex<?> index = db.getMetadata().getIndexManager().getIndex("Person.name");
+    Assert.assertEquals(((Collection<?>) index.get("john")).size(), 1);
+    Assert.assertEquals(((Collection<?>) index.get("jack")).size(), 0);
+
+    db.begin();
+    new ODocument("Person").field("name", "john").field("age", 2).save();
+    first.delete();
+    new ODocument("Person").field("name", "jack").field("age", 3).save();
+    db.commit();
+
+    final Collection<?> johns = (Collection<?>) index.get("john");
+    Assert.assertEquals(johns.size(), 1);
+    Assert.assertFalse(johns.contains(first.getIdentity()));
+    Assert.assertEquals(((Collection<?>) index.get("jack")).size(), 1);
+  }
+
+  public void testQueryUsesHashIndexForEquality() {
+    for (int i = 0; i < 20; i++)
+      new ODocument("Person").field("name", "name" + (i % 4)).field("age", i).save();
+
+    final ODocument explain = db.command(new OCommandSQL("explain select from Person where name = 'name1'")).execute();
+    Assert.assertTrue(explain.<Collection<String>> field("involvedIndexes").contains("Person.name"));
+
+    final List<ODocument> result = db.query(new OSQLSynchQuery<ODocument>("select from Person where name = 'name1'"));
+    Assert.assertEquals(result.size(), 5);
+    for (ODocument document : result)
+      Assert.assertEquals(document.field("name"), "name1");
+
+    final List<ODocument> inResult = db.query(new OSQLSynchQuery<ODocument>(
+        "select from Person where name in ['name1', 'name2']"));
+    Assert.assertEquals(inResult.size(), 10);
+
+    final List<ODocument> rangeResult = db.query(new OSQLSynchQuery<ODocument>("select from Person where name > 'name1'"));
+    Assert.assertEquals(rangeResult.size(), 10);
+  }
+
+  public void testEntriesArePersisted() {
+    for (int i = 0; i < 1000; i++)
+      new ODocument("Person").field("name", "name" + (i % 100)).field("age", i).save();
+
+    final OIndex<?> index = db.getMetadata().getIndexManager().getIndex("Person.name");
+    final ORID rid = ((Collection<OIdentifiable>) index.get("name42")).iterator().next().getIdentity();
+    index.remove("name42", rid);
+
+    db.close();
+    db.open("admin", "admin");
+
+    final OIndex<?> reopened = db.getMetadata().getIndexManager().getIndex("Person.name");
+    Assert.assertEquals(reopened.getSize(), 999);
+    Assert.assertEquals(reopened.getKeySize(), 100);
+    Assert.assertEquals(((Collection<?>) reopened.get("name42")).size(), 9);
+    Assert.assertFalse(((Collection<?>) reopened.get("name42")).contains(rid));
+    Assert.assertEquals(((Collection<?>) reopened.get("name7")).size(), 10);
+  }
+}
@@ -0,0 +1,156 @@
+package com.orientechnologies.orient.core.index.hashindex.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.common.serialization.types.OIntegerSerializer;
+import com.orientechnologies.common.serialization.types.OStringSerializer;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.storage.impl.local.OStorageLocalAbstract;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPaginatedStorage;
+
+/**
+ * Checks that changes of {@link OLocalHashTable} which were logged in WAL but not flushed to the index files are restored when
+ * storage is opened after crash.
+ *
+ * @since 17.10.13
+ */
+@Test
+public class LocalHashTableWALTest {
+  private static final int    KEYS_COUNT = 20000;
+
+  private File                buildDir;
+  private ODatabaseDocumentTx baseDocumentTx;
+  private ODatabaseDocumentTx testDocumentTx;
+
+  @BeforeMethod
+  public void beforeMethod() {
+    String buildDirectory = System.getProperty("buildDirectory", ".");
+    buildDir = new File(buildDirectory + "/localHashTableWALTest");
+    buildDir.mkdirs();
+
+    baseDocumentTx = new ODatabaseDocumentTx("plocal:" + buildDir.getAbsolutePath() + "/baseLocalHashTableWALTest");
+    if (baseDocumentTx.exists()) {
+      baseDocumentTx.open("admin", "admin");
+      baseDocumentTx.drop();
+      baseDocumentTx = new ODatabaseDocumentTx(baseDocumentTx.getURL());
+    }
+
+    baseDocumentTx.create();
+    // INDEXES CREATED WITH DATABASE ARE SAVED ON CLOSE, THEY SHOULD BE ON DISK BEFORE STORAGE FILES ARE COPIED
+    baseDocumentTx.close();
+    baseDocumentTx.open("admin", "admin");
+
+    testDocumentTx = new ODatabaseDocumentTx("plocal:" + buildDir.getAbsolutePath() + "/testLocalHashTableWALTest");
+    if (testDocumentTx.exists()) {
+      testDocumentTx.open("admin", "admin");
+      testDocumentTx.drop();
+      testDocumentTx = new ODatabaseDocumentTx(testDocumentTx.getURL());
+    }
+  }
+
+  @AfterMethod
+  public void afterMethod() {
+    if (testDocumentTx.isClosed())
+      testDocumentTx.open("admin", "admin");
+    testDocumentTx.drop();
+
+    if (baseDocumentTx.isClosed())
+      baseDocumentTx.open("admin", "admin");
+    baseDocumentTx.drop();
+
+    ODatabaseRecordThreadLocal.INSTANCE.remove();
+  }
+
+  public void testRestoreNotFlushedChanges() throws Exception {
+    final OLocalHashTable<Integer, String> baseHashTable = createHashTable();
+    baseHashTable.create("walHashTable", OIntegerSerializer.INSTANCE, OStringSerializer.INSTANCE,
+        (OStorageLocalAbstract) baseDocumentTx.getStorage());
+
+    for (int i = 0; i < KEYS_COUNT; i++)
+      baseHashTable.put(i, "value" + i);
+
+    for (int i = 0; i < KEYS_COUNT; i += 3)
+      baseHashTable.remove(i);
+
+    for (int i = 0; i < KEYS_COUNT; i += 5)
+      baseHashTable.put(i, "updated" + i);
+
+    ((OLocalPaginatedStorage) baseDocumentTx.getStorage()).getWALInstance().flush();
+    copyDataFromBaseWithoutClose();
+
+    baseHashTable.close();
+    baseDocumentTx.close();
+
+    testDocumentTx.open("admin", "admin");
+
+    final OLocalHashTable<Integer, String> testHashTable = createHashTable();
+    testHashTable.load("walHashTable", (OStorageLocalAbstract) testDocumentTx.getStorage());
+    try {
+      int size = 0;
+      for (int i = 0; i < KEYS_COUNT; i++) {
+        final String value = testHashTable.get(i);
+        if (i % 5 == 0)
+          Assert.assertEquals(value, "updated" + i);
+        else if (i % 3 == 0)
+          Assert.assertNull(value);
+        else
+          Assert.assertEquals(value, "value" + i);
+
+        if (value != null)
+          size++;
+      }
+
+      Assert.assertEquals(testHashTable.size(), size);
+    } finally {
+      testHashTable.delete();
+    }
+
+    baseDocumentTx.open("admin", "admin");
+    final OLocalHashTable<Integer, String> reopenedHashTable = createHashTable();
+    reopenedHashTable.load("walHashTable", (OStorageLocalAbstract) baseDocumentTx.getStorage());
+    reopenedHashTable.delete();
+  }
+
+  private static OLocalHashTable<Integer, String> createHashTable() {
+    final OMurmurHash3HashFunction<Integer> murmurHash3HashFunction = new OMurmurHash3HashFunction<Integer>();
+    murmurHash3HashFunction.setValueSerializer(OIntegerSerializer.INSTANCE);
+
+    return new OLocalHashTable<Integer, String>(OAbstractLocalHashIndex.METADATA_CONFIGURATION_FILE_EXTENSION,
+        OAbstractLocalHashIndex.TREE_STATE_FILE_EXTENSION, OAbstractLocalHashIndex.BUCKET_FILE_EXTENSION, murmurHash3HashFunction);
+  }
+
+  private void copyDataFromBaseWithoutClose() throws Exception {
+    final Path baseStoragePath = Paths.get(baseDocumentTx.getURL().substring("plocal:".length()));
+    final Path copyTo = Paths.get(testDocumentTx.getURL().substring("plocal:".length()));
+
+    Files.createDirectories(copyTo);
+
+    Files.walkFileTree(baseStoragePath, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Path fileToCopy = copyTo.resolve(baseStoragePath.relativize(file));
+        if (fileToCopy.endsWith("baseLocalHashTableWALTest.wmr"))
+          fileToCopy = fileToCopy.getParent().resolve("testLocalHashTableWALTest.wmr");
+        else if (fileToCopy.endsWith("baseLocalHashTableWALTest.0.wal"))
+          fileToCopy = fileToCopy.getParent().resolve("testLocalHashTableWALTest.0.wal");
+
+        Files.copy(file, fileToCopy);
+
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+}
@@ -795,6 +795,52 @@ public class O2QCacheTest {
     Assert.assertEquals(dirtyPagesRecord.getDirtyPages(), dirtyPages);
   }
 
+  public void testSegmentsCountIsLimitedByCacheSize() throws Exception {
+    closeBufferAndDeleteFile();
+
+    buffer = new O2QCache(4 * (8 + systemOffset), 15000, directMemory, null, 8 + systemOffset, storageLocal, true, 16, 0);
+    Assert.assertEquals(buffer.getSegmentsCount(), 1);
+    Assert.assertEquals(buffer.getMaxSize(), 4);
+    buffer.close();
+
+    buffer = new O2QCache(1024 * (8 + systemOffset), 15000, directMemory, null, 8 + systemOffset, storageLocal, true, 5, 0);
+    Assert.assertEquals(buffer.getSegmentsCount(), 8);
+    Assert.assertEquals(buffer.getMaxSize(), 1024);
+    buffer.close();
+
+    buffer = new O2QCache(1024 * (8 + systemOffset), 15000, directMemory, null, 8 + systemOffset, storageLocal, true, 64, 0);
+    Assert.assertEquals(buffer.getSegmentsCount(), 16);
+    Assert.assertEquals(buffer.getMaxSize(), 1024);
+  }
+
+  public void testSegmentedCacheWithBackgroundWriteBack() throws Exception {
+    closeBufferAndDeleteFile();
+
+    buffer = new O2QCache(256 * (8 + systemOffset), 8, directMemory, null, 8 + systemOffset, storageLocal, false, 4, 5);
+    Assert.assertEquals(buffer.getSegmentsCount(), 4);
+
+    long fileId = buffer.openFile(fileName);
+    for (int i = 0; i < 2048; i++) {
+      long pointer = buffer.load(fileId, i);
+      buffer.markDirty(fileId, i);
+      directMemory.set(pointer + systemOffset, new byte[] { (byte) i, 1, 2, seed, 4, 5, 6, (byte) (i >> 8) }, 0, 8);
+      buffer.release(fileId, i);
+    }
+
+    Thread.sleep(50);
+
+    for (int i = 0; i < 2048; i++) {
+      long pointer = buffer.load(fileId, i);
+      Assert.assertEquals(directMemory.get(pointer + systemOffset, 8), new byte[] { (byte) i, 1, 2, seed, 4, 5, 6, (byte) (i >> 8) });
+      buffer.release(fileId, i);
+    }
+
+    buffer.flushBuffer();
+
+    for (int i = 0; i < 2048; i++)
+      assertFile(i, new byte[] { (byte) i, 1, 2, seed, 4, 5, 6, (byte) (i >> 8) }, new OLogSequenceNumber(0, 0));
+  }
+
   private void updateFilePage(long pageIndex, long offset, byte[] value) throws IOException {
     String path = storageLocal.getConfiguration().getDirectory() + "/o2QCacheTest.tst";
 
@@ -0,0 +1,143 @@
+package com.orientechnologies.orient.core.serialization.serializer.record.binary;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.ODatabase;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.serialization.serializer.record.string.ORecordSerializerSchemaAware2CSV;
+
+/**
+ * @since 17.10.13
+ */
+@Test
+public class ORecordSerializerBinaryTest {
+  private ODatabaseDocumentTx db;
+
+  @BeforeMethod
+  public void beforeMethod() {
+    db = new ODatabaseDocumentTx("memory:recordSerializerBinaryTest");
+    db.create();
+    db.set(ODatabase.ATTRIBUTES.RECORDSERIALIZER, ORecordSerializerBinary.NAME);
+
+    final OClass person = db.getMetadata().getSchema().createClass("Person");
+    person.createProperty("name", OType.STRING);
+    person.createProperty("age", OType.INTEGER);
+    person.createProperty("birthday", OType.DATE);
+  }
+
+  @AfterMethod
+  public void afterMethod() {
+    db.drop();
+    ODatabaseRecordThreadLocal.INSTANCE.remove();
+  }
+
+  public void testRoundTrip() {
+    final ODocument friend = new ODocument("Person").field("name", "Bob");
+    friend.save();
+
+    final Date now = new Date();
+    final Map<String, Object> map = new HashMap<String, Object>();
+    map.put("key", "value");
+
+    final ODocument doc = new ODocument("Person");
+    doc.field("name", "Alice");
+    doc.field("age", 32);
+    doc.field("birthday", now);
+    doc.field("long", 5000000000L);
+    doc.field("short", (short) 7);
+    doc.field("byte", (byte) 3);
+    doc.field("float", 1.5f);
+    doc.field("double", 2.25d);
+    doc.field("boolean", true);
+    doc.field("decimal", new BigDecimal("12345.6789"));
+    doc.field("binary", new byte[] { 1, 2, 3 });
+    doc.field("address", new ODocument().field("city", "Rome"), OType.EMBEDDED);
+    doc.field("friend", friend);
+    doc.field("list", Arrays.asList(1, 2, 3));
+    doc.field("map", map);
+    doc.field("empty", (Object) null);
+    doc.save();
+
+    final byte[] stream = doc.toStream();
+    Assert.assertTrue(ORecordSerializerBinary.isBinaryFormat(stream));
+
+    db.getLevel1Cache().clear();
+    final ODocument loaded = db.load(doc.getIdentity());
+
+    Assert.assertEquals(loaded.getClassName(), "Person");
+    Assert.assertEquals(loaded.field("name"), "Alice");
+    Assert.assertEquals(loaded.field("age"), 32);
+    Assert.assertEquals(((Date) loaded.field("birthday")).getTime(), now.getTime());
+    Assert.assertEquals(loaded.field("long"), 5000000000L);
+    Assert.assertEquals(loaded.field("short"), (short) 7);
+    Assert.assertEquals(loaded.field("byte"), (byte) 3);
+    Assert.assertEquals(loaded.field("float"), 1.5f);
+    Assert.assertEquals(loaded.field("double"), 2.25d);
+    Assert.assertEquals(loaded.field("boolean"), true);
+    Assert.assertEquals(loaded.field("decimal"), new BigDecimal("12345.6789"));
+    Assert.assertEquals((byte[]) loaded.field("binary"), new byte[] { 1, 2, 3 });
+    Assert.assertEquals(((ODocument) loaded.field("address")).field("city"), "Rome");
+    Assert.assertEquals(loaded.fieldType("address"), OType.EMBEDDED);
+    Assert.assertEquals(((OIdentifiable) loaded.field("friend")).getIdentity(), friend.getIdentity());
+    Assert.assertEquals(((List<?>) loaded.field("list")).size(), 3);
+    Assert.assertEquals(((Map<?, ?>) loaded.field("map")).get("key"), "value");
+    Assert.assertTrue(loaded.containsField("empty"));
+    Assert.assertNull(loaded.field("empty"));
+  }
+
+  public void testPartialRead() {
+    final ODocument doc = new ODocument("Person").field("name", "Alice").field("age", 32).field("city", "Rome");
+    final byte[] stream = doc.toStream();
+
+    final ODocument partial = new ODocument();
+    ORecordSerializerBinary.INSTANCE.fromStream(stream, partial, new String[] { "age" });
+
+    Assert.assertEquals(partial.getClassName(), "Person");
+    Assert.assertEquals(partial.fieldNames().length, 1);
+    Assert.assertEquals(partial.field("age"), 32);
+  }
+
+  public void testMixedFormats() {
+    final ODocument doc = new ODocument("Person").field("name", "Alice").field("age", 32);
+
+    final byte[] csv = ORecordSerializerSchemaAware2CSV.INSTANCE.toStream(doc, false);
+    Assert.assertFalse(ORecordSerializerBinary.isBinaryFormat(csv));
+    final ODocument fromCsv = (ODocument) ORecordSerializerBinary.INSTANCE.fromStream(csv, new ODocument(), null);
+    Assert.assertEquals(fromCsv.field("name"), "Alice");
+    Assert.assertEquals(fromCsv.field("age"), 32);
+
+    final byte[] binary = ORecordSerializerBinary.INSTANCE.toStream(doc, false);
+    final ODocument fromBinary = (ODocument) ORecordSerializerSchemaAware2CSV.INSTANCE.fromStream(binary, new ODocument(), null);
+    Assert.assertEquals(fromBinary.field("name"), "Alice");
+    Assert.assertEquals(fromBinary.field("age"), 32);
+  }
+
+  public void testSerializerIsSelectedPerDatabase() {
+    Assert.assertEquals(db.get(ODatabase.ATTRIBUTES.RECORDSERIALIZER), ORecordSerializerBinary.NAME);
+    Assert.assertSame(db.getSerializer(), ORecordSerializerBinary.INSTANCE);
+
+    db.set(ODatabase.ATTRIBUTES.RECORDSERIALIZER, ORecordSerializerSchemaAware2CSV.NAME);
+    Assert.assertFalse(ORecordSerializerBinary.isBinaryFormat(new ODocument().field("name", "Alice").toStream()));
+
+    try {
+      db.set(ODatabase.ATTRIBUTES.RECORDSERIALIZER, "unknown");
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+    }
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.command.OBasicCommandContext;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+/**
+ * Checks that groups written to temporary files are merged with the same result as groups kept in memory.
+ * 
+ * @since 17.10.13
+ */
+@Test
+public class OGroupByAggregatorTest {
+  private static final int    RECORDS = 6000;
+  private static final int    GROUPS  = 1000;
+
+  private ODatabaseDocumentTx db;
+  private Object              memory;
+
+  @BeforeClass
+  public void createDatabase() {
+    db = new ODatabaseDocumentTx("memory:groupByAggregatorTest");
+    db.create();
+    db.getMetadata().getSchema().createClass("Event");
+
+    for (int i = 0; i < RECORDS; i++) {
+      final ODocument doc = new ODocument("Event").field("user", i % GROUPS).field("kind", i % 3).field("name", "event" + i);
+      if (i % 7 != 0)
+        // SOME GROUPS HAVE NULL VALUES TOO
+        doc.field("amount", i);
+      doc.save();
+    }
+  }
+
+  @AfterClass
+  public void dropDatabase() {
+    db.drop();
+  }
+
+  @BeforeMethod
+  public void setUp() {
+    ODatabaseRecordThreadLocal.INSTANCE.set(db);
+    memory = OGlobalConfiguration.QUERY_GROUPBY_MEMORY.getValue();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    OGlobalConfiguration.QUERY_GROUPBY_MEMORY.setValue(memory);
+  }
+
+  public void groupsAreWrittenToTemporaryFilesAndMerged() {
+    final OCommandExecutorSQLSelect executor = new OCommandExecutorSQLSelect();
+    executor.parse(new OSQLSynchQuery<ODocument>(
+        "select user, count(*) as total, sum(amount) as sum, min(amount) as min, max(name) as max, avg(amount) as avg"
+            + " from Event group by user"));
+
+    final int filesBefore = countTemporaryFiles();
+
+    final OGroupByAggregator aggregator = new OGroupByAggregator(16 * 1024);
+    final OBasicCommandContext context = new OBasicCommandContext();
+    int progressive = 0;
+    final List<ODocument> events = db.query(new OSQLSynchQuery<ODocument>("select from Event"));
+    for (ODocument event : events) {
+      final Object key = event.field("user");
+      ORuntimeResult group = aggregator.get(key);
+      if (group == null) {
+        group = new ORuntimeResult(executor.createProjectionFromDefinition(), progressive++, context);
+        aggregator.put(key, group);
+      }
+      group.applyRecord(event);
+      aggregator.checkMemory();
+    }
+
+    assertTrue(aggregator.isSpilled());
+    assertTrue(countTemporaryFiles() > filesBefore);
+    assertEquals(aggregator.size() >= GROUPS, true);
+
+    final Map<Integer, ODocument> groups = new HashMap<Integer, ODocument>();
+    for (OIdentifiable result : aggregator.getResult(false)) {
+      final ODocument doc = (ODocument) result;
+      assertNull(groups.put((Integer) doc.field("user"), doc));
+    }
+    assertEquals(groups.size(), GROUPS);
+    assertEquals(countTemporaryFiles(), filesBefore);
+
+    for (int user = 0; user < GROUPS; user++) {
+      final ODocument doc = groups.get(user);
+
+      long count = 0;
+      long sum = 0;
+      int values = 0;
+      Integer min = null;
+      String max = null;
+      for (int i = user; i < RECORDS; i += GROUPS) {
+        count++;
+        if (max == null || ("event" + i).compareTo(max) > 0)
+          max = "event" + i;
+        if (i % 7 != 0) {
+          sum += i;
+          values++;
+          if (min == null || i < min)
+            min = i;
+        }
+      }
+
+      assertEquals(((Number) doc.field("total")).longValue(), count);
+      assertEquals(doc.field("max"), max);
+      if (values == 0) {
+        assertFalse(doc.containsField("sum"));
+        assertFalse(doc.containsField("min"));
+        assertFalse(doc.containsField("avg"));
+      } else {
+        assertEquals(((Number) doc.field("sum")).longValue(), sum);
+        assertEquals(doc.field("min"), min);
+        assertEquals(((Number) doc.field("avg")).longValue(), sum / values);
+      }
+    }
+  }
+
+  public void spilledQueryReturnsSameGroups() {
+    assertSameGroups("select user, count(*) as total, sum(amount) as sum, avg(amount) as avg from Event group by user", "user");
+    assertSameGroups("select user, kind, count(*) as total, max(amount) as max from Event group by user, kind", "user", "kind");
+    assertSameGroups("select user, list(name) as names from Event group by user", "user");
+  }
+
+  public void spilledQueryIsSortedAndLimited() {
+    final String query = "select user, sum(amount) as sum from Event group by user order by sum desc, user limit 10";
+    final List<ODocument> expected = db.query(new OSQLSynchQuery<ODocument>(query));
+
+    OGlobalConfiguration.QUERY_GROUPBY_MEMORY.setValue(16 * 1024);
+    final List<ODocument> result = db.query(new OSQLSynchQuery<ODocument>(query));
+
+    assertEquals(result.size(), 10);
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(result.get(i).field("user"), expected.get(i).field("user"));
+      assertEquals(result.get(i).field("sum"), expected.get(i).field("sum"));
+    }
+
+    final List<ODocument> limited = db.query(new OSQLSynchQuery<ODocument>("select user, count(*) from Event group by user limit 5"));
+    assertEquals(limited.size(), 5);
+  }
+
+  private void assertSameGroups(final String iQuery, final String... iKeys) {
+    final List<ODocument> expected = db.query(new OSQLSynchQuery<ODocument>(iQuery));
+
+    OGlobalConfiguration.QUERY_GROUPBY_MEMORY.setValue(16 * 1024);
+    final List<ODocument> result = db.query(new OSQLSynchQuery<ODocument>(iQuery));
+    OGlobalConfiguration.QUERY_GROUPBY_MEMORY.setValue(memory);
+
+    assertEquals(result.size(), expected.size(), iQuery);
+
+    final Map<String, ODocument> groups = new HashMap<String, ODocument>();
+    for (ODocument doc : result)
+      groups.put(key(doc, iKeys), doc);
+
+    for (ODocument doc : expected) {
+      final ODocument group = groups.get(key(doc, iKeys));
+      for (String field : doc.fieldNames()) {
+        final Object value = doc.field(field);
+        if (value instanceof Collection<?>)
+          assertEquals(((Collection<?>) group.field(field)).size(), ((Collection<?>) value).size(), iQuery);
+        else
+          assertEquals(group.field(field), value, iQuery);
+      }
+    }
+  }
+
+  private static String key(final ODocument iDocument, final String... iKeys) {
+    final StringBuilder key = new StringBuilder();
+    for (String k : iKeys)
+      key.append(iDocument.field(k)).append(',');
+    return key.toString();
+  }
+
+  private static int countTemporaryFiles() {
+    final String[] files = new File(System.getProperty("java.io.tmpdir")).list();
+    int count = 0;
+    if (files != null)
+      for (String file : files)
+        if (file.startsWith("orientdb-group-"))
+          count++;
+    return count;
+  }
+}
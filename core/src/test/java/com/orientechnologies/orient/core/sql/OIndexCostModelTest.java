@@ -0,0 +1,256 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.index.OIndexManagerShared;
+import com.orientechnologies.orient.core.index.OIndexStatistics;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+/**
+ * Checks the index statistics and the plans chosen by the cost model.
+ *
+ * @since 17.10.13
+ */
+@Test
+public class OIndexCostModelTest {
+  private static final int    RECORDS = 5000;
+  private static final int    ROME    = 4500;
+
+  private ODatabaseDocumentTx db;
+  private Object              minRecords;
+
+  @BeforeClass
+  public void createDatabase() {
+    db = new ODatabaseDocumentTx("memory:indexCostModelTest");
+    db.create();
+
+    final OClass person = db.getMetadata().getSchema().createClass("Person");
+    person.createProperty("id", OType.INTEGER).createIndex(OClass.INDEX_TYPE.UNIQUE);
+    person.createProperty("age", OType.INTEGER).createIndex(OClass.INDEX_TYPE.NOTUNIQUE);
+    person.createProperty("grp", OType.INTEGER).createIndex(OClass.INDEX_TYPE.NOTUNIQUE);
+    person.createProperty("city", OType.STRING).createIndex(OClass.INDEX_TYPE.NOTUNIQUE);
+
+    // MOST OF THE PEOPLE LIVE IN THE SAME CITY
+    for (int i = 0; i < RECORDS; i++)
+      new ODocument("Person").field("id", i).field("age", i % 50).field("grp", i % 40)
+          .field("city", i < ROME ? "Rome" : "city" + i).save();
+
+    for (OIndex<?> index : person.getIndexes())
+      db.getMetadata().getIndexManager().analyzeIndex(index);
+  }
+
+  @AfterClass
+  public void dropDatabase() {
+    db.drop();
+  }
+
+  @BeforeMethod
+  public void setUp() {
+    ODatabaseRecordThreadLocal.INSTANCE.set(db);
+    minRecords = OGlobalConfiguration.QUERY_INDEX_STATISTICS_MIN_RECORDS.getValue();
+    OGlobalConfiguration.QUERY_INDEX_STATISTICS_MIN_RECORDS.setValue(1000);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    OGlobalConfiguration.QUERY_INDEX_STATISTICS_MIN_RECORDS.setValue(minRecords);
+    OGlobalConfiguration.QUERY_INDEX_STATISTICS.setValue(true);
+  }
+
+  public void histogramCapturesSkewedKeys() {
+    final OIndex<?> index = db.getMetadata().getIndexManager().getIndex("Person.city");
+    final OIndexStatistics statistics = OIndexStatistics.analyze(index);
+
+    assertEquals(statistics.getEntries(), RECORDS);
+    assertEquals(statistics.getKeys(), RECORDS - ROME + 1);
+    assertTrue(statistics.hasHistogram());
+    assertTrue(statistics.getHistogramBuckets() <= OIndexStatistics.HISTOGRAM_BUCKETS + 1);
+
+    assertEquals(statistics.estimateEquals("Rome"), (double) ROME);
+    assertEquals(statistics.estimateEquals("city4700"), 1d);
+    assertEquals(statistics.estimateEquals("Aaa"), 0d);
+
+    final OIndex<?> ageIndex = db.getMetadata().getIndexManager().getIndex("Person.age");
+    final OIndexStatistics ageStatistics = OIndexStatistics.analyze(ageIndex);
+    final double range = ageStatistics.estimateRange(10, true, 19, true);
+    assertTrue(range >= 800 && range <= 1200, "Estimated " + range);
+    assertEquals(ageStatistics.estimateRange(null, false, null, false), (double) RECORDS);
+  }
+
+  public void statisticsArePersisted() {
+    String buildDirectory = System.getProperty("buildDirectory");
+    if (buildDirectory == null || buildDirectory.isEmpty())
+      buildDirectory = ".";
+    final String url = "local:" + buildDirectory + "/indexStatisticsTest";
+
+    final Object keepOpen = OGlobalConfiguration.STORAGE_KEEP_OPEN.getValue();
+    OGlobalConfiguration.STORAGE_KEEP_OPEN.setValue(false);
+
+    ODatabaseDocumentTx localDb = new ODatabaseDocumentTx(url);
+    if (localDb.exists())
+      localDb.open("admin", "admin").drop();
+    localDb = new ODatabaseDocumentTx(url).create();
+    try {
+      localDb.getMetadata().getSchema().createClass("Item").createProperty("value", OType.INTEGER)
+          .createIndex(OClass.INDEX_TYPE.NOTUNIQUE);
+      for (int i = 0; i < 2000; i++)
+        new ODocument("Item").field("value", i % 100).save();
+
+      OIndex<?> index = localDb.getMetadata().getIndexManager().getIndex("Item.value");
+      final OIndexStatistics statistics = localDb.getMetadata().getIndexManager().analyzeIndex(index);
+      assertNotNull(statistics);
+      assertTrue(statistics.hasHistogram());
+
+      final Map<String, ODocument> stored = localDb.getMetadata().getIndexManager().getConfiguration()
+          .field(OIndexManagerShared.CONFIG_STATISTICS);
+      assertNotNull(stored.get("item.value"));
+
+      localDb.close();
+      localDb = new ODatabaseDocumentTx(url).open("admin", "admin");
+
+      // LOADED WITH THE INDEX CONFIGURATION, NOT ANALYZED AGAIN
+      index = localDb.getMetadata().getIndexManager().getIndex("Item.value");
+      final OIndexStatistics loaded = localDb.getMetadata().getIndexManager().getIndexStatistics(index);
+      assertEquals(loaded.getAnalyzed(), statistics.getAnalyzed());
+      assertEquals(loaded.getEntries(), statistics.getEntries());
+      assertEquals(loaded.getHistogramBuckets(), statistics.getHistogramBuckets());
+      assertEquals(loaded.estimateEquals(7), statistics.estimateEquals(7));
+      assertEquals(loaded.estimateRange(10, true, 30, false),
+          statistics.estimateRange(10, true, 30, false));
+    } finally {
+      localDb.drop();
+      OGlobalConfiguration.STORAGE_KEEP_OPEN.setValue(keepOpen);
+      ODatabaseRecordThreadLocal.INSTANCE.set(db);
+    }
+  }
+
+  public void statisticsAreCollectedInBackground() throws InterruptedException {
+    final Object checkInterval = OGlobalConfiguration.QUERY_INDEX_STATISTICS_CHECK_INTERVAL.getValue();
+    OGlobalConfiguration.QUERY_INDEX_STATISTICS_CHECK_INTERVAL.setValue(0);
+    try {
+      db.getMetadata().getSchema().createClass("Event").createProperty("day", OType.INTEGER)
+          .createIndex(OClass.INDEX_TYPE.NOTUNIQUE);
+      for (int i = 0; i < 500; i++)
+        new ODocument("Event").field("day", i % 30).save();
+
+      final OIndex<?> index = db.getMetadata().getIndexManager().getIndex("Event.day");
+      // NOT ANALYZED BY THE CALLING THREAD
+      assertNull(db.getMetadata().getIndexManager().getIndexStatistics(index));
+      assertEquals(waitForStatistics(index, 500).getKeys(), 30);
+
+      for (int i = 0; i < 50; i++)
+        new ODocument("Event").field("day", i % 30).save();
+      // LESS THAN 10% OF CHANGES: NOT ANALYZED AGAIN
+      final OIndexStatistics statistics = db.getMetadata().getIndexManager().getIndexStatistics(index);
+      Thread.sleep(500);
+      assertEquals(db.getMetadata().getIndexManager().getIndexStatistics(index).getAnalyzed(), statistics.getAnalyzed());
+
+      for (int i = 0; i < 500; i++)
+        new ODocument("Event").field("day", i % 30).save();
+      waitForStatistics(index, 1050);
+    } finally {
+      OGlobalConfiguration.QUERY_INDEX_STATISTICS_CHECK_INTERVAL.setValue(checkInterval);
+    }
+  }
+
+  public void selectiveConditionUsesIndex() {
+    final ODocument explain = explain("select from Person where id = 10");
+    assertEquals(explain.field("plan"), "index:Person.id");
+    assertEquals(((Number) explain.field("estimatedRecords")).longValue(), 1l);
+    assertEquals(((Number) explain.field("actualRecords")).longValue(), 1l);
+
+    assertEquals(explain("select from Person where age between 3 and 5").field("plan"), "index:Person.age");
+    assertSameResult("select from Person where age between 3 and 5");
+  }
+
+  public void unselectiveConditionScansClass() {
+    final ODocument explain = explain("select from Person where city = 'Rome'");
+    assertEquals(explain.field("plan"), OCommandExecutorSQLSelect.PLAN_FULL_SCAN);
+    assertEquals(((Number) explain.field("actualRecords")).longValue(), (long) RECORDS);
+    assertSameResult("select from Person where city = 'Rome'");
+
+    assertEquals(explain("select from Person where age > 5").field("plan"), OCommandExecutorSQLSelect.PLAN_FULL_SCAN);
+    assertSameResult("select from Person where age > 5");
+
+    assertEquals(explain("select from Person where city = 'city4700'").field("plan"), "index:Person.city");
+  }
+
+  public void twoConditionsUseIntersection() {
+    final ODocument explain = explain("select from Person where age = 3 and grp = 13");
+    final String plan = explain.field("plan");
+    assertTrue(plan.startsWith("intersection:"), plan);
+    assertTrue(plan.contains("Person.age") && plan.contains("Person.grp"), plan);
+    assertEquals(((Number) explain.field("actualRecords")).longValue(), 25l);
+
+    assertSameResult("select from Person where age = 3 and grp = 13");
+    assertSameResult("select from Person where age = 3 and grp = 14");
+  }
+
+  private OIndexStatistics waitForStatistics(final OIndex<?> iIndex, final long iEntries) throws InterruptedException {
+    final long timeout = System.currentTimeMillis() + 10000;
+    while (true) {
+      final OIndexStatistics statistics = db.getMetadata().getIndexManager().getIndexStatistics(iIndex);
+      if (statistics != null && statistics.getEntries() == iEntries)
+        return statistics;
+      if (System.currentTimeMillis() > timeout)
+        throw new AssertionError("Index not analyzed in background: " + statistics);
+      Thread.sleep(50);
+    }
+  }
+
+  private ODocument explain(final String iQuery) {
+    return db.command(new OCommandSQL("explain " + iQuery)).execute();
+  }
+
+  private void assertSameResult(final String iQuery) {
+    final Set<Object> expected = rids(iQuery, false);
+    final Set<Object> actual = rids(iQuery, true);
+    assertEquals(actual, expected);
+  }
+
+  private Set<Object> rids(final String iQuery, final boolean iStatistics) {
+    OGlobalConfiguration.QUERY_INDEX_STATISTICS.setValue(iStatistics);
+    final List<OIdentifiable> result = db.query(new OSQLSynchQuery<OIdentifiable>(iQuery));
+    final Set<Object> rids = new HashSet<Object>();
+    for (OIdentifiable identifiable : result)
+      rids.add(identifiable.getIdentity());
+    return rids;
+  }
+}
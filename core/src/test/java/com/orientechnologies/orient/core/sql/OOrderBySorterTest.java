@@ -0,0 +1,162 @@
+package com.orientechnologies.orient.core.sql;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.common.util.OPair;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+@Test
+public class OOrderBySorterTest {
+  private ODatabaseDocumentTx db;
+
+  @BeforeMethod
+  public void setUp() {
+    db = new ODatabaseDocumentTx("memory:orderBySorterTest");
+    db.create();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    db.drop();
+  }
+
+  public void keepsTopRecordsWhenLimitIsSet() {
+    final OOrderBySorter sorter = new OOrderBySorter(orderBy("value", "DESC"), 2, 5, 0);
+    final List<ODocument> documents = shuffledDocuments(1000);
+    for (ODocument document : documents)
+      sorter.add(document);
+
+    final List<Integer> values = values(sorter.sort(), "value");
+
+    assertEquals(values.size(), 5);
+    for (int i = 0; i < 5; i++)
+      assertEquals(values.get(i).intValue(), 997 - i);
+    assertEquals(sorter.getWrittenRuns(), 0);
+  }
+
+  public void keepsOrderOfEqualRecords() {
+    final OOrderBySorter topK = new OOrderBySorter(orderBy("group", "ASC"), 0, 10, 0);
+    final OOrderBySorter external = new OOrderBySorter(orderBy("group", "ASC"), 0, -1, 1024);
+    for (int i = 0; i < 100; i++) {
+      final ODocument document = new ODocument().field("group", i % 2).field("value", i);
+      topK.add(document);
+      external.add(document);
+    }
+
+    final List<Integer> topValues = values(topK.sort(), "value");
+    for (int i = 0; i < 10; i++)
+      assertEquals(topValues.get(i).intValue(), i * 2);
+
+    final List<Integer> allValues = values(external.sort(), "value");
+    assertTrue(external.getWrittenRuns() > 1);
+    for (int i = 0; i < 50; i++) {
+      assertEquals(allValues.get(i).intValue(), i * 2);
+      assertEquals(allValues.get(50 + i).intValue(), i * 2 + 1);
+    }
+  }
+
+  public void mergesRunsWrittenToTemporaryFiles() {
+    final OOrderBySorter sorter = new OOrderBySorter(orderBy("value", "ASC"), 10, -1, 4 * 1024);
+    final List<ODocument> documents = shuffledDocuments(2000);
+    for (ODocument document : documents)
+      sorter.add(document);
+
+    final List<Integer> values = values(sorter.sort(), "value");
+
+    assertTrue(sorter.getWrittenRuns() > 1);
+    assertEquals(values.size(), 1990);
+    for (int i = 0; i < values.size(); i++)
+      assertEquals(values.get(i).intValue(), i + 10);
+  }
+
+  public void removesTemporaryFilesOnClose() {
+    final int filesBefore = countTemporaryFiles();
+
+    final OOrderBySorter sorter = new OOrderBySorter(orderBy("value", "ASC"), 0, -1, 1024);
+    for (ODocument document : shuffledDocuments(500))
+      sorter.add(document);
+    sorter.sort().iterator().next();
+
+    assertTrue(countTemporaryFiles() > filesBefore);
+    sorter.close();
+    assertEquals(countTemporaryFiles(), filesBefore);
+  }
+
+  public void sortsQueryResultBiggerThanMemoryBudget() {
+    for (int i = 0; i < 1000; i++)
+      new ODocument("Item").field("value", (i * 7919) % 1000).field("name", "item" + i).save();
+
+    final Object memory = OGlobalConfiguration.QUERY_SORT_MEMORY.getValue();
+    OGlobalConfiguration.QUERY_SORT_MEMORY.setValue(8 * 1024);
+    try {
+      final List<ODocument> all = db.query(new OSQLSynchQuery<ODocument>("select from Item order by value desc"));
+      assertEquals(all.size(), 1000);
+      for (int i = 0; i < 1000; i++) {
+        assertEquals(all.get(i).field("value"), 999 - i);
+        assertEquals(all.get(i).getIdentity().isPersistent(), true);
+      }
+
+      final List<ODocument> projected = db.query(new OSQLSynchQuery<ODocument>(
+          "select name, value from Item order by value asc skip 990"));
+      assertEquals(projected.size(), 10);
+      for (int i = 0; i < 10; i++)
+        assertEquals(projected.get(i).field("value"), 990 + i);
+
+      final List<ODocument> top = db.query(new OSQLSynchQuery<ODocument>("select from Item order by value limit 3"));
+      assertEquals(values(new ArrayList<OIdentifiable>(top), "value"), listOf(0, 1, 2));
+    } finally {
+      OGlobalConfiguration.QUERY_SORT_MEMORY.setValue(memory);
+    }
+  }
+
+  private static List<OPair<String, String>> orderBy(final String field, final String ordering) {
+    final List<OPair<String, String>> orderBy = new ArrayList<OPair<String, String>>();
+    orderBy.add(new OPair<String, String>(field, ordering));
+    return orderBy;
+  }
+
+  private static List<ODocument> shuffledDocuments(final int count) {
+    final List<ODocument> documents = new ArrayList<ODocument>();
+    for (int i = 0; i < count; i++)
+      documents.add(new ODocument().field("value", i).field("name", "document" + i));
+    Collections.shuffle(documents, new Random(42));
+    return documents;
+  }
+
+  private static List<Integer> values(final Iterable<OIdentifiable> result, final String field) {
+    final List<Integer> values = new ArrayList<Integer>();
+    for (OIdentifiable record : result)
+      values.add(((ODocument) record.getRecord()).<Integer> field(field));
+    return values;
+  }
+
+  private static List<Integer> listOf(final Integer... values) {
+    final List<Integer> list = new ArrayList<Integer>();
+    Collections.addAll(list, values);
+    return list;
+  }
+
+  private static int countTemporaryFiles() {
+    final String[] files = new File(System.getProperty("java.io.tmpdir")).list();
+    int count = 0;
+    for (String file : files)
+      if (file.startsWith("orientdb-sort-"))
+        count++;
+    return count;
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.List;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.exception.OSecurityAccessException;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+import com.orientechnologies.orient.core.storage.OStorage;
+
+/**
+ * Checks that the parallel scan of clusters returns the same result of the sequential one.
+ * 
+ * @since 17.10.13
+ */
+@Test
+public class OParallelClusterScanTest {
+  private static final int    RECORDS = 25000;
+
+  private ODatabaseDocumentTx db;
+  private Object              threads;
+  private Object              minRecords;
+
+  @BeforeClass
+  public void createDatabase() {
+    db = new ODatabaseDocumentTx("memory:parallelClusterScanTest");
+    db.create();
+
+    final OClass item = db.getMetadata().getSchema().createClass("Item");
+    item.addClusterId(db.addCluster("item2", OStorage.CLUSTER_TYPE.PHYSICAL));
+
+    // BIG CLUSTER SPLIT IN RANGES AND SMALL ONE SCANNED ENTIRELY
+    for (int i = 0; i < RECORDS; i++) {
+      final ODocument doc = new ODocument("Item").field("value", i).field("name", "item" + i).field("bucket", i % 10);
+      if (i % 10 == 0)
+        doc.save("item2");
+      else
+        doc.save();
+    }
+
+    // DELETED RECORDS ARE SKIPPED
+    final List<ODocument> deleted = db.query(new OSQLSynchQuery<ODocument>("select from Item where value between 100 and 199"));
+    for (ODocument doc : deleted)
+      doc.delete();
+  }
+
+  @AfterClass
+  public void dropDatabase() {
+    db.drop();
+  }
+
+  @BeforeMethod
+  public void setUp() {
+    ODatabaseRecordThreadLocal.INSTANCE.set(db);
+    threads = OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.getValue();
+    minRecords = OGlobalConfiguration.QUERY_PARALLEL_SCAN_MIN_RECORDS.getValue();
+    OGlobalConfiguration.QUERY_PARALLEL_SCAN_MIN_RECORDS.setValue(1000);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.setValue(threads);
+    OGlobalConfiguration.QUERY_PARALLEL_SCAN_MIN_RECORDS.setValue(minRecords);
+  }
+
+  public void scanIsParallelOnlyForThreadSafeConditions() {
+    OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.setValue(4);
+
+    assertNotNull(createScan("select from Item where value > 10 and name like '%5'"));
+    assertNotNull(createScan("select from cluster:item2"));
+    assertNull(createScan("select from Item where value in (select value from Item where value < 10)"));
+    assertNull(createScan("select from Item where name.length() > 0 and ifnull(name, 'x') like '%5'"));
+    assertNull(createScan("select from Item let $a = name where $a like '%5'"));
+    assertNull(createScan("select from Item where @rid > #9:1000"));
+
+    OGlobalConfiguration.QUERY_PARALLEL_SCAN_MIN_RECORDS.setValue(RECORDS * 2);
+    assertNull(createScan("select from Item where value > 10"));
+
+    OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.setValue(1);
+    OGlobalConfiguration.QUERY_PARALLEL_SCAN_MIN_RECORDS.setValue(1000);
+    assertNull(createScan("select from Item where value > 10"));
+  }
+
+  public void parallelResultIsSameAsSequential() {
+    assertSameResult("select from Item where value >= 50 and name like '%5'");
+    assertSameResult("select from Item");
+    assertSameResult("select name from Item where value < 5000 and value > 2000");
+    assertSameResult("select from cluster:item2 where value > 1000");
+  }
+
+  public void limitStopsParallelScan() {
+    assertSameResult("select from Item where name like '%7' limit 20");
+    assertSameResult("select from Item where name like '%7' skip 100 limit 5");
+  }
+
+  public void aggregationsUseParallelResult() {
+    assertSameResult("select count(*) as total, sum(value) as sum, max(name) as max from Item where value > 1000");
+    assertSameResult("select bucket, count(*) as total, sum(value) as sum from Item where value < 9000 group by bucket");
+    assertSameResult("select from Item where value < 12000 order by name desc");
+  }
+
+  public void parallelScanHasPermissionsOfQueryDatabase() {
+    db.getMetadata().getSchema().createClass("Secret", db.getMetadata().getSchema().getClass("ORestricted"));
+    for (int i = 0; i < 2000; i++)
+      new ODocument("Secret").field("value", i).save();
+
+    OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.setValue(4);
+    assertEquals(db.query(new OSQLSynchQuery<ODocument>("select from Secret")).size(), 2000);
+
+    final ODatabaseDocumentTx readerDb = new ODatabaseDocumentTx(db.getURL()).open("reader", "reader");
+    try {
+      // RECORDS NOT ALLOWED TO THE USER ARE NOT RETURNED BY THE WORKERS TOO
+      assertEquals(readerDb.query(new OSQLSynchQuery<ODocument>("select from Secret")).size(), 0);
+    } finally {
+      readerDb.close();
+      ODatabaseRecordThreadLocal.INSTANCE.set(db);
+    }
+  }
+
+  public void failedOpenOfWorkersIsReported() {
+    db.getMetadata().getSecurity().createUser("removed", "removed", "reader");
+    final ODatabaseDocumentTx removedDb = new ODatabaseDocumentTx(db.getURL()).open("removed", "removed");
+    try {
+      ODatabaseRecordThreadLocal.INSTANCE.set(db);
+      db.getMetadata().getSecurity().dropUser("removed");
+
+      // WORKERS CAN NOT OPEN THE DATABASE WITH THE USER ANYMORE
+      OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.setValue(4);
+      ODatabaseRecordThreadLocal.INSTANCE.set(removedDb);
+      try {
+        removedDb.query(new OSQLSynchQuery<ODocument>("select from Item where value > 10"));
+        fail("Error of the workers was not reported");
+      } catch (OCommandExecutionException e) {
+        assertTrue(e.getCause() instanceof OSecurityAccessException, String.valueOf(e.getCause()));
+      }
+    } finally {
+      removedDb.close();
+      ODatabaseRecordThreadLocal.INSTANCE.set(db);
+    }
+  }
+
+  private OParallelClusterScan createScan(final String iQuery) {
+    final OCommandExecutorSQLSelect executor = new OCommandExecutorSQLSelect();
+    executor.parse(new OSQLSynchQuery<ODocument>(iQuery));
+    executor.assignTarget(null);
+
+    final OParallelClusterScan scan = executor.createParallelScan();
+    if (scan != null)
+      scan.close();
+    return scan;
+  }
+
+  private void assertSameResult(final String iQuery) {
+    OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.setValue(1);
+    final List<ODocument> expected = db.query(new OSQLSynchQuery<ODocument>(iQuery));
+
+    OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.setValue(4);
+    final List<ODocument> result = db.query(new OSQLSynchQuery<ODocument>(iQuery));
+
+    assertEquals(result.size(), expected.size(), iQuery);
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(result.get(i).getIdentity(), expected.get(i).getIdentity(), iQuery);
+      for (String field : expected.get(i).fieldNames())
+        assertEquals(result.get(i).field(field), expected.get(i).field(field), iQuery);
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.sql;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.command.OBasicCommandContext;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.exception.OSerializationException;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.filter.OSQLPredicate;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+/**
+ * Checks that queries unmarshall only the fields used by the condition and the projections. Records contain a field which can not be
+ * unmarshalled, so any attempt to unmarshall the entire record fails.
+ * 
+ * @since 17.10.13
+ */
+@Test
+public class OSQLPartialUnmarshallingTest {
+  private static final String RECORD = "Wide@f0:0,f1:1,f2:\"two\",broken:12.5.6,f3:3,f4:[1,2,3],f5:{\"a\":5}";
+
+  private ODatabaseDocumentTx db;
+
+  @BeforeMethod
+  public void setUp() {
+    db = new ODatabaseDocumentTx("memory:partialUnmarshallingTest");
+    db.create();
+    db.getMetadata().getSchema().createClass("Wide");
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    db.drop();
+  }
+
+  @Test(expectedExceptions = OSerializationException.class)
+  public void recordIsBroken() {
+    createRecord().fieldNames();
+  }
+
+  public void conditionUnmarshallsOnlyUsedFields() {
+    final ODocument record = createRecord();
+
+    final OSQLPredicate predicate = new OSQLPredicate("f0 = 0 and f1 = 1 and f3 = 3 and f4 contains 2 and f5.a = 5");
+    assertEquals(predicate.evaluate(record, null, new OBasicCommandContext()), Boolean.TRUE);
+  }
+
+  public void projectionsUnmarshallOnlyUsedFields() {
+    final OCommandExecutorSQLSelect executor = new OCommandExecutorSQLSelect();
+    executor.parse(new OSQLSynchQuery<ODocument>("select f2, f3.asString() as three, f4.size() as size from Wide where f1 = 1"));
+
+    final ODocument result = ORuntimeResult.getProjectionResult(0, executor.getProjections(), new OBasicCommandContext(),
+        createRecord());
+
+    assertEquals(result.field("f2"), "two");
+    assertEquals(result.field("three"), "3");
+    assertEquals(result.field("size"), 3);
+  }
+
+  public void queryReturnsProjectedFields() {
+    for (int i = 0; i < 50; i++) {
+      final ODocument doc = new ODocument("Wide");
+      for (int f = 0; f < 40; f++)
+        doc.field("f" + f, i * 100 + f);
+      doc.save();
+    }
+
+    final List<ODocument> result = db.query(new OSQLSynchQuery<ODocument>(
+        "select f1, f39, max(f20, f21) as m from Wide where f30 >= 2030 and f31 < 4031 order by f1 desc"));
+
+    assertEquals(result.size(), 20);
+    for (int i = 0; i < result.size(); i++) {
+      final ODocument doc = result.get(i);
+      final int base = (39 - i) * 100;
+      assertEquals(doc.field("f1"), base + 1);
+      assertEquals(doc.field("f39"), base + 39);
+      assertEquals(doc.field("m"), base + 21);
+      assertTrue(!doc.containsField("f2"));
+    }
+  }
+
+  private static ODocument createRecord() {
+    return new ODocument(RECORD.getBytes());
+  }
+}
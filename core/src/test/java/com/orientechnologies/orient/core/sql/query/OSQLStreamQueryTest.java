@@ -0,0 +1,83 @@
+package com.orientechnologies.orient.core.sql.query;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.command.OCommandResultListener;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.query.OQueryCursor;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+@Test
+public class OSQLStreamQueryTest {
+  private ODatabaseDocumentTx db;
+
+  @BeforeMethod
+  public void setUp() {
+    db = new ODatabaseDocumentTx("memory:streamQueryTest");
+    db.create();
+
+    for (int i = 0; i < 100; i++)
+      new ODocument("Item").field("i", i).save();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    db.drop();
+  }
+
+  public void iteratesWholeResult() {
+    final OQueryCursor<ODocument> cursor = db.command(new OSQLStreamQuery<ODocument>("select from Item where i < 10")).execute();
+
+    int sum = 0;
+    int count = 0;
+    for (ODocument doc : cursor) {
+      sum += (Integer) doc.field("i");
+      count++;
+    }
+
+    assertEquals(count, 10);
+    assertEquals(sum, 45);
+    assertFalse(cursor.hasNext());
+  }
+
+  public void closedCursorHasNoMoreRecords() {
+    final OQueryCursor<ODocument> cursor = db.command(new OSQLStreamQuery<ODocument>("select from Item")).execute();
+    cursor.next();
+    cursor.close();
+
+    assertFalse(cursor.hasNext());
+  }
+
+  public void runCollectsResult() {
+    assertEquals(new OSQLStreamQuery<ODocument>("select from Item limit 7").run().size(), 7);
+    assertEquals(new OSQLStreamQuery<ODocument>("select from Item where i < 0").run().size(), 0);
+  }
+
+  public void listenerStopsExecution() {
+    assertEquals(executeUntilStopped("select from Item", 5), 5);
+    assertEquals(executeUntilStopped("select from Item order by i desc", 5), 5);
+  }
+
+  private int executeUntilStopped(final String iText, final int iMaxRecords) {
+    final List<Object> received = new ArrayList<Object>();
+    db.command(new OSQLAsynchQuery<ODocument>(iText, new OCommandResultListener() {
+      public boolean result(final Object iRecord) {
+        received.add(iRecord);
+        return received.size() < iMaxRecords;
+      }
+
+      public void end() {
+      }
+    })).execute();
+
+    return received.size();
+  }
+}
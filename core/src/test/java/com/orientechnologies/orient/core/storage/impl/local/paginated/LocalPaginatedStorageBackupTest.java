@@ -0,0 +1,227 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.core.storage.impl.local.paginated;
+
+import java.io.File;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.command.OCommandOutputListener;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.tool.ODatabaseCompare;
+import com.orientechnologies.orient.core.exception.OStorageException;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * @since 17.10.13
+ */
+@Test
+public class LocalPaginatedStorageBackupTest {
+  private File                buildDir;
+  private ODatabaseDocumentTx baseDocumentTx;
+  private ODatabaseDocumentTx restoredDocumentTx;
+
+  private ExecutorService     executorService = Executors.newSingleThreadExecutor();
+  private int                 walMaxSegmentSize;
+
+  @BeforeMethod
+  public void beforeMethod() {
+    String buildDirectory = System.getProperty("buildDirectory", ".");
+    buildDir = new File(buildDirectory, "localPaginatedStorageBackup");
+    deleteRecursively(buildDir);
+    buildDir.mkdirs();
+
+    // SMALL SEGMENTS, SO THE BACKUP COPIES BOTH COMPLETE AND ACTIVE SEGMENTS
+    walMaxSegmentSize = OGlobalConfiguration.WAL_MAX_SEGMENT_SIZE.getValueAsInteger();
+    OGlobalConfiguration.WAL_MAX_SEGMENT_SIZE.setValue(1);
+
+    baseDocumentTx = new ODatabaseDocumentTx("plocal:" + buildDir.getAbsolutePath() + "/baseLocalPaginatedStorageBackup");
+    baseDocumentTx.create();
+
+    final OClass itemClass = baseDocumentTx.getMetadata().getSchema().createClass("Item");
+    itemClass.createProperty("value", OType.INTEGER).createIndex(OClass.INDEX_TYPE.NOTUNIQUE);
+
+    for (int i = 0; i < 2000; i++)
+      new ODocument("Item").field("value", i).field("text", "item " + i).save();
+  }
+
+  @AfterMethod
+  public void afterMethod() {
+    if (restoredDocumentTx != null && !restoredDocumentTx.isClosed())
+      restoredDocumentTx.drop();
+
+    if (!baseDocumentTx.isClosed())
+      baseDocumentTx.close();
+
+    baseDocumentTx.open("admin", "admin");
+    baseDocumentTx.drop();
+
+    deleteRecursively(buildDir);
+
+    OGlobalConfiguration.WAL_MAX_SEGMENT_SIZE.setValue(walMaxSegmentSize);
+  }
+
+  public void testFullBackupWhileWriting() throws Exception {
+    final AtomicBoolean stop = new AtomicBoolean();
+    final Future<Integer> writer = executorService.submit(new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        final ODatabaseDocumentTx db = new ODatabaseDocumentTx(baseDocumentTx.getURL()).open("admin", "admin");
+        try {
+          int written = 0;
+          while (!stop.get()) {
+            new ODocument("Item").field("value", 2000 + written).field("text", "item " + (2000 + written)).save();
+            written++;
+          }
+          return written;
+        } finally {
+          db.close();
+        }
+      }
+    });
+
+    Thread.sleep(200);
+
+    final String backupDirectory = new File(buildDir, "full").getAbsolutePath();
+    baseDocumentTx.backup(backupDirectory, null);
+
+    stop.set(true);
+    final int written = writer.get();
+
+    ODatabaseRecordThreadLocal.INSTANCE.set(baseDocumentTx);
+    baseDocumentTx.close();
+
+    final String restoredPath = new File(buildDir, "restoredLocalPaginatedStorageBackup").getAbsolutePath();
+    OLocalPaginatedStorageBackup.restore(restoredPath, backupDirectory);
+
+    restoredDocumentTx = new ODatabaseDocumentTx("plocal:" + restoredPath).open("admin", "admin");
+    final long restored = restoredDocumentTx.countClass("Item");
+    Assert.assertTrue(restored >= 2000 && restored <= 2000 + written, "Restored " + restored + " of " + (2000 + written));
+
+    // EVERY RESTORED RECORD IS COMPLETE
+    for (ODocument document : restoredDocumentTx.browseClass("Item")) {
+      final int value = (Integer) document.field("value");
+      Assert.assertEquals(document.field("text"), "item " + value);
+    }
+
+    final Properties manifest = OLocalPaginatedStorageBackup.readManifest(new File(backupDirectory));
+    Assert.assertEquals(manifest.getProperty(OLocalPaginatedStorageBackup.MANIFEST_TYPE), OLocalPaginatedStorageBackup.TYPE_FULL);
+    Assert.assertTrue(countOf(new File(backupDirectory), ".wal") > 1, "Backup does not span several WAL segments");
+  }
+
+  public void testIncrementalBackups() throws Exception {
+    final String fullDirectory = new File(buildDir, "full").getAbsolutePath();
+    baseDocumentTx.backup(fullDirectory, null);
+
+    for (int i = 0; i < 300; i++)
+      new ODocument("Item").field("value", 5000 + i).field("text", "new item " + i).save();
+
+    int updated = 0;
+    for (ODocument document : baseDocumentTx.browseClass("Item")) {
+      if (updated++ % 10 == 0)
+        document.field("text", "updated").save();
+    }
+
+    final String firstIncrement = new File(buildDir, "increment1").getAbsolutePath();
+    baseDocumentTx.backup(firstIncrement, fullDirectory);
+
+    int deleted = 0;
+    for (ODocument document : baseDocumentTx.browseClass("Item")) {
+      if (deleted++ % 7 == 0)
+        document.delete();
+    }
+    new ODocument("Item").field("value", 9999).field("text", "last").save();
+
+    // CHANGED PAGES WRITTEN TO DISK ARE COPIED, THE OTHERS ARE RESTORED FROM WAL
+    baseDocumentTx.getStorage().synch();
+
+    final String secondIncrement = new File(buildDir, "increment2").getAbsolutePath();
+    baseDocumentTx.backup(secondIncrement, firstIncrement);
+
+    baseDocumentTx.close();
+
+    final Properties full = OLocalPaginatedStorageBackup.readManifest(new File(fullDirectory));
+    final Properties increment = OLocalPaginatedStorageBackup.readManifest(new File(secondIncrement));
+    Assert.assertEquals(increment.getProperty(OLocalPaginatedStorageBackup.MANIFEST_TYPE),
+        OLocalPaginatedStorageBackup.TYPE_INCREMENTAL);
+    Assert.assertEquals(increment.getProperty(OLocalPaginatedStorageBackup.MANIFEST_PREVIOUS_LSN),
+        OLocalPaginatedStorageBackup.readManifest(new File(firstIncrement)).getProperty(OLocalPaginatedStorageBackup.MANIFEST_END_LSN));
+    Assert.assertTrue(Long.parseLong(increment.getProperty(OLocalPaginatedStorageBackup.MANIFEST_PAGES)) > 0);
+    Assert.assertTrue(OLocalPaginatedStorageBackup.parseLsn(increment.getProperty(OLocalPaginatedStorageBackup.MANIFEST_END_LSN))
+        .compareTo(OLocalPaginatedStorageBackup.parseLsn(full.getProperty(OLocalPaginatedStorageBackup.MANIFEST_END_LSN))) > 0);
+
+    // ONLY CHANGED PAGES ARE STORED
+    Assert.assertTrue(sizeOf(new File(secondIncrement), OLocalPaginatedStorageBackup.PAGES_EXTENSION) < sizeOf(
+        new File(fullDirectory), OLocalPaginatedCluster.DEF_EXTENSION));
+
+    final String restoredPath = new File(buildDir, "restoredLocalPaginatedStorageBackup").getAbsolutePath();
+    try {
+      OLocalPaginatedStorageBackup.restore(restoredPath, fullDirectory, secondIncrement);
+      Assert.fail("Increments must be restored in order");
+    } catch (OStorageException e) {
+      Assert.assertFalse(new File(restoredPath).exists());
+    }
+
+    OLocalPaginatedStorageBackup.restore(restoredPath, fullDirectory, firstIncrement, secondIncrement);
+
+    final ODatabaseCompare databaseCompare = new ODatabaseCompare(baseDocumentTx.getURL(), "plocal:" + restoredPath, "admin",
+        "admin", new OCommandOutputListener() {
+          @Override
+          public void onMessage(String text) {
+            System.out.println(text);
+          }
+        });
+    Assert.assertTrue(databaseCompare.compare());
+
+    restoredDocumentTx = new ODatabaseDocumentTx("plocal:" + restoredPath).open("admin", "admin");
+  }
+
+  private static long sizeOf(final File directory, final String extension) {
+    long size = 0;
+    for (File file : directory.listFiles())
+      if (file.getName().endsWith(extension))
+        size += file.length();
+    return size;
+  }
+
+  private static int countOf(final File directory, final String extension) {
+    int count = 0;
+    for (File file : directory.listFiles())
+      if (file.getName().endsWith(extension))
+        count++;
+    return count;
+  }
+
+  private static void deleteRecursively(final File file) {
+    if (file.isDirectory())
+      for (File child : file.listFiles())
+        deleteRecursively(child);
+    file.delete();
+  }
+}
@@ -0,0 +1,262 @@
+package com.orientechnologies.orient.core.storage.impl.local.paginated;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.common.concur.ONeedRetryException;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.exception.OConcurrentModificationException;
+import com.orientechnologies.orient.core.hook.ODocumentHookAbstract;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+@Test
+public class LocalPaginatedStorageTransactionTest {
+  private ODatabaseDocumentTx db;
+  private String              url;
+
+  @BeforeMethod
+  public void beforeMethod() {
+    String buildDirectory = System.getProperty("buildDirectory", ".");
+    url = "plocal:" + new File(buildDirectory + "/localPaginatedStorageTransactionTest").getAbsolutePath();
+
+    db = new ODatabaseDocumentTx(url);
+    if (db.exists()) {
+      db.open("admin", "admin");
+      db.drop();
+      db = new ODatabaseDocumentTx(url);
+    }
+
+    db.create();
+    db.getMetadata().getSchema().createClass("Account");
+    db.getMetadata().getSchema().createClass("Transfer");
+  }
+
+  @AfterMethod
+  public void afterMethod() {
+    if (db.isClosed())
+      db.open("admin", "admin");
+
+    db.drop();
+  }
+
+  public void testCommitSeveralClusters() {
+    db.begin();
+    final ODocument account = new ODocument("Account").field("balance", 100);
+    account.save();
+    for (int i = 0; i < 10; i++)
+      new ODocument("Transfer").field("amount", i).field("account", account).save();
+    db.commit();
+
+    Assert.assertTrue(account.getIdentity().isPersistent());
+    Assert.assertEquals(db.countClass("Account"), 1);
+    Assert.assertEquals(db.countClass("Transfer"), 10);
+
+    db.begin();
+    account.field("balance", 55);
+    account.save();
+    for (ODocument transfer : db.browseClass("Transfer"))
+      if (transfer.<Integer> field("amount") % 2 == 0)
+        transfer.delete();
+    db.commit();
+
+    final ORID accountRid = account.getIdentity();
+    db.close();
+    db.open("admin", "admin");
+
+    Assert.assertEquals(db.<ODocument> load(accountRid).field("balance"), 55);
+    Assert.assertEquals(db.countClass("Transfer"), 5);
+  }
+
+  public void testRollbackOnConcurrentModification() {
+    final ODocument account = new ODocument("Account").field("balance", 100);
+    account.save();
+
+    final ODocument staleCopy = db.load(account.getIdentity(), null, true);
+    account.field("balance", 90);
+    account.save();
+
+    final long transfersSize = db.getClusterRecordSizeByName("transfer");
+
+    db.begin();
+    for (int i = 0; i < 100; i++)
+      new ODocument("Transfer").field("amount", i).field("description", "transfer " + i).save();
+    staleCopy.field("balance", 0);
+    staleCopy.save();
+
+    try {
+      db.commit();
+      Assert.fail();
+    } catch (OConcurrentModificationException e) {
+      db.rollback();
+    }
+
+    Assert.assertEquals(db.countClass("Transfer"), 0);
+    Assert.assertEquals(db.getClusterRecordSizeByName("transfer"), transfersSize);
+    Assert.assertEquals(db.<ODocument> load(account.getIdentity(), null, true).field("balance"), 90);
+
+    // SPACE RELEASED BY ROLLBACK IS REUSED
+    db.begin();
+    for (int i = 0; i < 10; i++)
+      new ODocument("Transfer").field("amount", i).save();
+    db.commit();
+
+    db.close();
+    db.open("admin", "admin");
+
+    Assert.assertEquals(db.countClass("Transfer"), 10);
+    int sum = 0;
+    for (ODocument transfer : db.browseClass("Transfer"))
+      sum += transfer.<Integer> field("amount");
+    Assert.assertEquals(sum, 45);
+  }
+
+  public void testConcurrentCommits() throws Exception {
+    final int threads = 4;
+    final int transactions = 50;
+
+    for (int i = 0; i < threads; i++)
+      db.getMetadata().getSchema().createClass("Writer" + i);
+    db.close();
+
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+    for (int i = 0; i < threads; i++) {
+      final String className = "Writer" + i;
+      futures.add(executor.submit(new Callable<Void>() {
+        public Void call() throws Exception {
+          final ODatabaseDocumentTx writerDb = new ODatabaseDocumentTx(url).open("admin", "admin");
+          try {
+            for (int n = 0; n < transactions; n++) {
+              writerDb.begin();
+              new ODocument(className).field("n", n).save();
+              new ODocument("Transfer").field("amount", n).save();
+              writerDb.commit();
+            }
+          } finally {
+            writerDb.close();
+          }
+          return null;
+        }
+      }));
+    }
+
+    for (Future<Void> future : futures)
+      future.get();
+    executor.shutdown();
+
+    db.open("admin", "admin");
+    for (int i = 0; i < threads; i++)
+      Assert.assertEquals(db.countClass("Writer" + i), transactions);
+    Assert.assertEquals(db.countClass("Transfer"), threads * transactions);
+  }
+
+  public void testConcurrentCommitsOfLinkedRecords() throws Exception {
+    final int transactions = 100;
+    db.close();
+
+    final Object lockTimeout = OGlobalConfiguration.TX_CLUSTER_LOCK_TIMEOUT.getValue();
+    OGlobalConfiguration.TX_CLUSTER_LOCK_TIMEOUT.setValue(100);
+    try {
+      // NEW LINKED RECORDS ARE SAVED DURING COMMIT: WRITERS LOCK THE SAME CLUSTERS IN OPPOSITE ORDERS
+      final CountDownLatch firstClustersLocked = new CountDownLatch(2);
+      final ExecutorService executor = Executors.newFixedThreadPool(2);
+      final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      futures.add(executor.submit(new LinkedRecordsWriter("Account", "Transfer", transactions, firstClustersLocked)));
+      futures.add(executor.submit(new LinkedRecordsWriter("Transfer", "Account", transactions, firstClustersLocked)));
+
+      for (Future<Void> future : futures)
+        future.get(30, TimeUnit.SECONDS);
+      executor.shutdown();
+    } finally {
+      OGlobalConfiguration.TX_CLUSTER_LOCK_TIMEOUT.setValue(lockTimeout);
+    }
+
+    db.open("admin", "admin");
+    Assert.assertEquals(db.countClass("Account"), 2 * transactions);
+    Assert.assertEquals(db.countClass("Transfer"), 2 * transactions);
+
+    int links = 0;
+    for (ODocument account : db.browseClass("Account")) {
+      final ODocument transfer = account.field("link");
+      if (transfer != null) {
+        Assert.assertEquals(transfer.getClassName(), "Transfer");
+        Assert.assertEquals(transfer.field("n"), account.field("n"));
+        links++;
+      }
+    }
+    Assert.assertEquals(links, transactions);
+  }
+
+  private class LinkedRecordsWriter implements Callable<Void> {
+    private final String         className;
+    private final String         linkedClassName;
+    private final int            transactions;
+    private final CountDownLatch firstClustersLocked;
+
+    private LinkedRecordsWriter(final String className, final String linkedClassName, final int transactions,
+        final CountDownLatch firstClustersLocked) {
+      this.className = className;
+      this.linkedClassName = linkedClassName;
+      this.transactions = transactions;
+      this.firstClustersLocked = firstClustersLocked;
+    }
+
+    public Void call() throws Exception {
+      final ODatabaseDocumentTx writerDb = new ODatabaseDocumentTx(url).open("admin", "admin");
+      writerDb.registerHook(new ODocumentHookAbstract() {
+        private boolean waited;
+
+        @Override
+        public RESULT onRecordBeforeCreate(final ODocument iDocument) {
+          if (!waited && linkedClassName.equals(iDocument.getClassName())) {
+            // CLUSTER OF THE FIRST RECORD IS LOCKED: LET THE OTHER WRITER LOCK ITS ONE BEFORE TO GO ON
+            waited = true;
+            firstClustersLocked.countDown();
+            try {
+              firstClustersLocked.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+          return RESULT.RECORD_NOT_CHANGED;
+        }
+      });
+
+      // CLASSES ARE PASSED TO DOCUMENTS, LOOKUP BY NAME WAITS FOR THE COMMIT OF THE OTHER WRITER
+      final OClass schemaClass = writerDb.getMetadata().getSchema().getClass(className);
+      final OClass linkedSchemaClass = writerDb.getMetadata().getSchema().getClass(linkedClassName);
+
+      try {
+        for (int n = 0; n < transactions; n++)
+          while (true)
+            try {
+              writerDb.begin();
+              new ODocument(schemaClass).field("n", n).field("link", new ODocument(linkedSchemaClass).field("n", n)).save();
+              writerDb.commit();
+              break;
+            } catch (ONeedRetryException e) {
+              // CLUSTER LOCKED BY THE OTHER WRITER
+              writerDb.rollback();
+            }
+      } finally {
+        writerDb.close();
+      }
+      return null;
+    }
+  }
+}
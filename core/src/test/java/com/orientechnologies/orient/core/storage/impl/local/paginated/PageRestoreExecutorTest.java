@@ -0,0 +1,94 @@
+package com.orientechnologies.orient.core.storage.impl.local.paginated;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OLogSequenceNumber;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OPageDiff;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.updatePageRecord.OUpdatePageRecord;
+
+/**
+ * @since 17.10.13
+ */
+@Test
+public class PageRestoreExecutorTest {
+  public void testChangesOfSamePageAreAppliedInSubmitOrder() throws Exception {
+    final Map<Long, List<OLogSequenceNumber>> appliedChanges = new ConcurrentHashMap<Long, List<OLogSequenceNumber>>();
+
+    final OLocalPaginatedCluster cluster = mock(OLocalPaginatedCluster.class);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        final OUpdatePageRecord record = (OUpdatePageRecord) invocation.getArguments()[0];
+
+        List<OLogSequenceNumber> pageChanges = appliedChanges.get(record.getPageIndex());
+        if (pageChanges == null) {
+          pageChanges = Collections.synchronizedList(new ArrayList<OLogSequenceNumber>());
+          appliedChanges.put(record.getPageIndex(), pageChanges);
+        }
+
+        pageChanges.add(record.getLsn());
+        return null;
+      }
+    }).when(cluster).restorePageData(any(OUpdatePageRecord.class));
+
+    final OPageRestoreExecutor executor = new OPageRestoreExecutor("pageRestoreExecutorTest", 4);
+
+    final int pages = 64;
+    final int changesPerPage = 100;
+    for (int i = 0; i < changesPerPage; i++)
+      for (int pageIndex = 0; pageIndex < pages; pageIndex++) {
+        final OUpdatePageRecord record = new OUpdatePageRecord(pageIndex, 1, new OLogSequenceNumber(0, 0),
+            new ArrayList<OPageDiff<?>>());
+        record.setLsn(new OLogSequenceNumber(0, i * pages + pageIndex));
+
+        executor.submit(cluster, record);
+      }
+
+    executor.shutdown();
+
+    Assert.assertEquals(appliedChanges.size(), pages);
+    for (Map.Entry<Long, List<OLogSequenceNumber>> entry : appliedChanges.entrySet()) {
+      final List<OLogSequenceNumber> pageChanges = entry.getValue();
+      Assert.assertEquals(pageChanges.size(), changesPerPage);
+
+      for (int i = 0; i < changesPerPage; i++)
+        Assert.assertEquals(pageChanges.get(i), new OLogSequenceNumber(0, i * pages + entry.getKey()));
+    }
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void testErrorIsRethrownOnShutdown() throws Exception {
+    final OLocalPaginatedCluster cluster = mock(OLocalPaginatedCluster.class);
+    doThrow(new IOException("Page can not be restored")).when(cluster).restorePageData(any(OUpdatePageRecord.class));
+
+    final OPageRestoreExecutor executor = new OPageRestoreExecutor("pageRestoreExecutorTest", 2);
+    for (int pageIndex = 0; pageIndex < 10; pageIndex++) {
+      final OUpdatePageRecord record = new OUpdatePageRecord(pageIndex, 1, new OLogSequenceNumber(0, 0),
+          new ArrayList<OPageDiff<?>>());
+      record.setLsn(new OLogSequenceNumber(0, pageIndex));
+
+      try {
+        executor.submit(cluster, record);
+      } catch (IOException e) {
+        // ERROR OF PREVIOUS CHANGE CAN BE REPORTED EARLIER
+      }
+    }
+
+    executor.shutdown();
+  }
+}
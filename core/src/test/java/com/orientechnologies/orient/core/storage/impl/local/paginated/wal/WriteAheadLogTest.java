@@ -12,6 +12,11 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.testng.Assert;
 import org.testng.annotations.AfterClass;
@@ -53,11 +58,15 @@ public class WriteAheadLogTest {
   }
 
   private OWriteAheadLog createWAL() throws IOException {
+    return createWAL(2, OWALPage.PAGE_SIZE * 4);
+  }
+
+  private OWriteAheadLog createWAL(int maxPagesCacheSize, long maxSegmentSize) throws IOException {
     OLocalPaginatedStorage paginatedStorage = mock(OLocalPaginatedStorage.class);
     when(paginatedStorage.getName()).thenReturn("WriteAheadLogTest");
     when(paginatedStorage.getStoragePath()).thenReturn(testDir.getAbsolutePath());
 
-    return new OWriteAheadLog(2, -1, OWALPage.PAGE_SIZE * 4, 100L * 1024L * 1024L * 1024L, paginatedStorage);
+    return new OWriteAheadLog(maxPagesCacheSize, -1, maxSegmentSize, 100L * 1024L * 1024L * 1024L, paginatedStorage);
   }
 
   @AfterMethod
@@ -1250,6 +1259,97 @@ public class WriteAheadLogTest {
     Assert.assertNull(writeAheadLog.read(writtenRecords.get(1).getLsn()));
   }
 
+  public void testCommitInFlushModeDoesNotUpdateFlushedLSN() throws Exception {
+    OWALRecord walRecord = new TestRecord(ONE_KB, false);
+    writeAheadLog.log(walRecord);
+
+    writeAheadLog.commit(walRecord.getLsn(), OWALDurabilityMode.ASYNC);
+    Assert.assertNull(writeAheadLog.getFlushedLSN());
+
+    writeAheadLog.commit(walRecord.getLsn(), OWALDurabilityMode.FLUSH);
+    Assert.assertNull(writeAheadLog.getFlushedLSN());
+
+    writeAheadLog.commit(walRecord.getLsn(), OWALDurabilityMode.FSYNC);
+    Assert.assertEquals(writeAheadLog.getFlushedLSN(), walRecord.getLsn());
+  }
+
+  public void testCommittedInFlushModeRecordsAreWrittenToFile() throws Exception {
+    List<OWALRecord> writtenRecords = new ArrayList<OWALRecord>();
+
+    for (int i = 0; i < 10; i++) {
+      OWALRecord walRecord = new TestRecord(ONE_KB, false);
+      writeAheadLog.log(walRecord);
+      writtenRecords.add(walRecord);
+    }
+
+    writeAheadLog.commit(writeAheadLog.end(), OWALDurabilityMode.FLUSH);
+    writeAheadLog.close(false);
+
+    writeAheadLog = createWAL();
+
+    Assert.assertEquals(writeAheadLog.getFlushedLSN(), writtenRecords.get(writtenRecords.size() - 1).getLsn());
+    assertLogContent(writeAheadLog, writtenRecords);
+  }
+
+  public void testConcurrentCommitsInFSyncMode() throws Exception {
+    final int threads = 8;
+    final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    final CountDownLatch latch = new CountDownLatch(1);
+
+    final List<Future<List<OWALRecord>>> futures = new ArrayList<Future<List<OWALRecord>>>();
+    for (int n = 0; n < threads; n++)
+      futures.add(executorService.submit(new Callable<List<OWALRecord>>() {
+        @Override
+        public List<OWALRecord> call() throws Exception {
+          latch.await();
+
+          final List<OWALRecord> committedRecords = new ArrayList<OWALRecord>();
+          for (int i = 0; i < 100; i++) {
+            OWALRecord walRecord = new TestRecord(ONE_KB, false);
+            writeAheadLog.log(walRecord);
+            writeAheadLog.commit(walRecord.getLsn(), OWALDurabilityMode.FSYNC);
+
+            Assert.assertTrue(writeAheadLog.getFlushedLSN().compareTo(walRecord.getLsn()) >= 0);
+            committedRecords.add(walRecord);
+          }
+
+          return committedRecords;
+        }
+      }));
+
+    latch.countDown();
+
+    final List<OWALRecord> committedRecords = new ArrayList<OWALRecord>();
+    for (Future<List<OWALRecord>> future : futures)
+      committedRecords.addAll(future.get());
+
+    executorService.shutdown();
+
+    writeAheadLog.close(false);
+    writeAheadLog = createWAL();
+
+    for (OWALRecord walRecord : committedRecords)
+      Assert.assertEquals(writeAheadLog.read(walRecord.getLsn()), walRecord);
+  }
+
+  public void testReadRecordsWhileLogIsAppended() throws Exception {
+    writeAheadLog.delete();
+    writeAheadLog = createWAL(1000, 100L * OWALPage.PAGE_SIZE);
+
+    final List<OWALRecord> writtenRecords = new ArrayList<OWALRecord>();
+    final Random random = new Random();
+
+    for (int n = 0; n < 5; n++) {
+      for (int i = 0; i < 20; i++) {
+        OWALRecord walRecord = new TestRecord(random.nextInt(2 * OWALPage.PAGE_SIZE) + ONE_KB, false);
+        writeAheadLog.log(walRecord);
+        writtenRecords.add(walRecord);
+      }
+
+      assertLogContent(writeAheadLog, writtenRecords);
+    }
+  }
+
   private void assertLogContent(OWriteAheadLog writeAheadLog, List<? extends OWALRecord> writtenRecords) throws Exception {
     Iterator<? extends OWALRecord> iterator = writtenRecords.iterator();
 
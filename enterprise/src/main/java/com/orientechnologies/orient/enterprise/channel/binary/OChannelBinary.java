@@ -454,30 +454,7 @@ public abstract class OChannelBinary extends OChannel {
   protected int handleStatus(final byte iResult, final int iClientTxId) throws IOException {
     if (iResult == OChannelBinaryProtocol.RESPONSE_STATUS_OK || iResult == OChannelBinaryProtocol.PUSH_DATA) {
     } else if (iResult == OChannelBinaryProtocol.RESPONSE_STATUS_ERROR) {
-      StringBuilder buffer = new StringBuilder();
-
-      final List<OPair<String, String>> exceptions = new ArrayList<OPair<String, String>>();
-
-      // EXCEPTION
-      while (readByte() == 1) {
-        final String excClassName = readString();
-        final String excMessage = readString();
-        exceptions.add(new OPair<String, String>(excClassName, excMessage));
-      }
-
-      Exception previous = null;
-      for (int i = exceptions.size() - 1; i > -1; --i) {
-        previous = createException(exceptions.get(i).getKey(), exceptions.get(i).getValue(), previous);
-      }
-
-      if (previous != null) {
-        if (previous instanceof RuntimeException)
-          throw (RuntimeException) previous;
-        else
-          throw new ODatabaseException("Generic error, see the underlying cause", previous);
-      } else
-        throw new ONetworkProtocolException("Network response error: " + buffer.toString());
-
+      readAndThrowException();
     } else {
       // PROTOCOL ERROR
       // close();
@@ -486,6 +463,35 @@ public abstract class OChannelBinary extends OChannel {
     return iClientTxId;
   }
 
+  /**
+   * Reads the chain of exceptions sent by the server and throws it.
+   */
+  public void readAndThrowException() throws IOException {
+    StringBuilder buffer = new StringBuilder();
+
+    final List<OPair<String, String>> exceptions = new ArrayList<OPair<String, String>>();
+
+    // EXCEPTION
+    while (readByte() == 1) {
+      final String excClassName = readString();
+      final String excMessage = readString();
+      exceptions.add(new OPair<String, String>(excClassName, excMessage));
+    }
+
+    Exception previous = null;
+    for (int i = exceptions.size() - 1; i > -1; --i) {
+      previous = createException(exceptions.get(i).getKey(), exceptions.get(i).getValue(), previous);
+    }
+
+    if (previous != null) {
+      if (previous instanceof RuntimeException)
+        throw (RuntimeException) previous;
+      else
+        throw new ODatabaseException("Generic error, see the underlying cause", previous);
+    } else
+      throw new ONetworkProtocolException("Network response error: " + buffer.toString());
+  }
+
   @SuppressWarnings("unchecked")
   private static RuntimeException createException(final String iClassName, final String iMessage, final Exception iPrevious) {
     RuntimeException rootException = null;
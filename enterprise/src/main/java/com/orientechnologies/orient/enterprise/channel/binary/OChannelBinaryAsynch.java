@@ -18,6 +18,7 @@ package com.orientechnologies.orient.enterprise.channel.binary;
 import java.io.IOException;
 import java.net.Socket;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -27,7 +28,9 @@ import com.orientechnologies.orient.core.config.OContextConfiguration;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 
 /**
- * Implementation that supports multiple client requests.
+ * Implementation that supports multiple client requests. Responses are matched to the requesters by session id and, if requests
+ * were sent with request id (see {@link OChannelBinaryProtocol#REQUEST_ID_FLAG}), also by request id. So many requests of the same
+ * session can be sent before their responses are read.
  * 
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  * 
@@ -39,7 +42,9 @@ public class OChannelBinaryAsynch extends OChannelBinary {
   private boolean             channelRead   = false;
   private byte                currentStatus;
   private int                 currentSessionId;
+  private int                 currentRequestId;
   private final int           maxUnreadResponses;
+  private final AtomicInteger requestIdSerial = new AtomicInteger();
 
   public OChannelBinaryAsynch(final Socket iSocket, final OContextConfiguration iConfig) throws IOException {
     super(iSocket, iConfig);
@@ -60,6 +65,27 @@ public class OChannelBinaryAsynch extends OChannelBinary {
   }
 
   public void beginResponse(final int iRequesterId, final long iTimeout) throws IOException {
+    beginResponse(iRequesterId, OChannelBinaryProtocol.NO_REQUEST_ID, iTimeout);
+  }
+
+  /**
+   * @return new id to be sent with the request, it is unique for this channel and not negative.
+   */
+  public int nextRequestId() {
+    return requestIdSerial.getAndIncrement() & Integer.MAX_VALUE;
+  }
+
+  /**
+   * Waits for the response to the given request of session.
+   * 
+   * @param iRequesterId
+   *          session id
+   * @param iRequestId
+   *          request id which was sent with the request or {@link OChannelBinaryProtocol#NO_REQUEST_ID}
+   * @param iTimeout
+   *          timeout in ms, not positive value means no timeout
+   */
+  public void beginResponse(final int iRequesterId, final int iRequestId, final long iTimeout) throws IOException {
     try {
       int unreadResponse = 0;
       final long startClock = iTimeout > 0 ? System.currentTimeMillis() : 0;
@@ -78,9 +104,15 @@ public class OChannelBinaryAsynch extends OChannelBinary {
             currentStatus = readByte();
             currentSessionId = readInt();
 
+            if ((currentStatus & OChannelBinaryProtocol.REQUEST_ID_FLAG) != 0) {
+              currentStatus &= ~OChannelBinaryProtocol.REQUEST_ID_FLAG;
+              currentRequestId = readInt();
+            } else
+              currentRequestId = OChannelBinaryProtocol.NO_REQUEST_ID;
+
             if (debug)
-              OLogManager.instance().debug(this, "%s - Read response: %d-%d", socket.getLocalAddress(), (int) currentStatus,
-                  currentSessionId);
+              OLogManager.instance().debug(this, "%s - Read response: %d-%d-%d", socket.getLocalAddress(), (int) currentStatus,
+                  currentSessionId, currentRequestId);
 
           } catch (IOException e) {
             // UNLOCK THE RESOURCE AND PROPAGATES THE EXCEPTION
@@ -91,14 +123,14 @@ public class OChannelBinaryAsynch extends OChannelBinary {
           }
         }
 
-        if (currentSessionId == iRequesterId)
+        if (currentSessionId == iRequesterId && currentRequestId == iRequestId)
           // IT'S FOR ME
           break;
 
         try {
           if (debug)
-            OLogManager.instance().debug(this, "%s - Session %d skip response, it is for %d", socket.getLocalAddress(),
-                iRequesterId, currentSessionId);
+            OLogManager.instance().debug(this, "%s - Session %d request %d skip response, it is for %d-%d",
+                socket.getLocalAddress(), iRequesterId, iRequestId, currentSessionId, currentRequestId);
 
           if (iTimeout > 0 && (System.currentTimeMillis() - startClock) > iTimeout) {
             // CLOSE THE SOCKET TO CHANNEL TO AVOID FURTHER DIRTY DATA 
@@ -66,6 +66,7 @@ public class OChannelBinaryProtocol {
   public static final byte  REQUEST_COUNT                          = 40; // DEPRECATED: USE REQUEST_DATACLUSTER_COUNT
   public static final byte  REQUEST_COMMAND                        = 41;
   public static final byte  REQUEST_POSITIONS_CEILING              = 42; // since 1.3.0
+  public static final byte  REQUEST_RECORD_LOAD_BATCH              = 43; // since protocol 17
 
   public static final byte  REQUEST_TX_COMMIT                      = 60;
 
@@ -99,7 +100,25 @@ public class OChannelBinaryProtocol {
   // CONSTANTS
   public static final short RECORD_NULL                            = -2;
   public static final short RECORD_RID                             = -3;
-  public static final int   CURRENT_PROTOCOL_VERSION               = 15; // SENT AS SHORT AS FIRST PACKET AFTER SOCKET CONNECTION
+  public static final int   CURRENT_PROTOCOL_VERSION               = 18; // SENT AS SHORT AS FIRST PACKET AFTER SOCKET CONNECTION
+
+  // PIPELINING, SINCE PROTOCOL 16: IF FLAG IS SET IN REQUEST TYPE, REQUEST ID FOLLOWS SESSION ID. SERVER SETS THE SAME FLAG IN
+  // RESPONSE STATUS AND SENDS BACK THE REQUEST ID AFTER SESSION ID, SO RESPONSES CAN BE MATCHED TO REQUESTS OF THE SAME SESSION
+  public static final int   PROTOCOL_VERSION_REQUEST_ID            = 16;
+  public static final byte  REQUEST_ID_FLAG                        = (byte) 0x80;
+  public static final int   NO_REQUEST_ID                          = -1;
+
+  // RECORD LOAD BATCH, SINCE PROTOCOL 17: EACH REQUESTED RECORD IS ANSWERED BY 1 (FOUND) OR 0 (NOT FOUND). IF AN ERROR OCCURS IN THE
+  // MIDDLE OF THE STREAM THE ERROR MARKER IS SENT FOLLOWED BY THE EXCEPTIONS, AS IN ERROR RESPONSE, AND THE RESPONSE ENDS
+  public static final int   PROTOCOL_VERSION_RECORD_LOAD_BATCH     = 17;
+  public static final byte  RECORD_LOAD_BATCH_ERROR                = -1;
+
+  // QUERY CURSOR, SINCE PROTOCOL 18: COMMAND IN MODE 'c' IS FOLLOWED BY THE CHUNK SIZE. SERVER SENDS RESULTS AS IN ASYNCH MODE, AFTER
+  // EACH CHUNK IT SENDS THE CHUNK END MARKER AND WAITS FOR THE CLIENT TO SEND 1 (NEXT CHUNK) OR 0 (STOP). IF AN ERROR OCCURS IN THE
+  // MIDDLE OF THE STREAM THE ERROR MARKER IS SENT FOLLOWED BY THE EXCEPTIONS, AS IN ERROR RESPONSE, AND THE RESPONSE ENDS
+  public static final int   PROTOCOL_VERSION_QUERY_CURSOR          = 18;
+  public static final byte  QUERY_CURSOR_CHUNK_END                 = 3;
+  public static final byte  QUERY_CURSOR_ERROR                     = -1;
 
   public static OIdentifiable readIdentifiable(final OChannelBinaryClient network) throws IOException {
     final int classId = network.readShort();
@@ -15,6 +15,7 @@
  */
 package com.orientechnologies.orient.enterprise.channel.text;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.net.Socket;
 
@@ -22,6 +23,7 @@ import com.orientechnologies.orient.core.config.OContextConfiguration;
 import com.orientechnologies.orient.enterprise.channel.OChannel;
 
 public class OChannelText extends OChannel {
+  private byte[] lineBuffer = new byte[256];
 
   public OChannelText(final Socket iSocket, final OContextConfiguration iConfig) throws IOException {
     super(iSocket, iConfig);
@@ -37,6 +39,7 @@ public class OChannelText extends OChannel {
    *          Length of expected content to read
    * @return total of bytes read
    * @throws IOException
+   *           if the stream ends before the expected content is read
    */
   public int read(final byte[] iBuffer, final int iStartingPosition, final int iContentLength) throws IOException {
     int pos;
@@ -45,13 +48,47 @@ public class OChannelText extends OChannel {
 
     for (int required = iContentLength; required > 0; required -= read) {
       read = inStream.read(iBuffer, pos, required);
+      if (read == -1)
+        throw new EOFException("Connection closed after " + (pos - iStartingPosition) + " bytes of " + iContentLength);
       pos += read;
     }
 
-    updateMetricReceivedBytes(read);
+    updateMetricReceivedBytes(pos - iStartingPosition);
     return pos - iStartingPosition;
   }
 
+  /**
+   * Reads a line terminated by LF or CR+LF from the buffered input stream. Bytes are decoded as ISO-8859-1 once the whole line is
+   * read.
+   * 
+   * @return the line without the terminator or null if the stream ended before any byte was read
+   * @throws IOException
+   */
+  public String readLine() throws IOException {
+    int length = 0;
+    int in;
+    while ((in = inStream.read()) != '\n') {
+      if (in == -1) {
+        if (length == 0)
+          return null;
+        break;
+      }
+
+      if (length == lineBuffer.length) {
+        final byte[] newBuffer = new byte[length * 2];
+        System.arraycopy(lineBuffer, 0, newBuffer, 0, length);
+        lineBuffer = newBuffer;
+      }
+      lineBuffer[length++] = (byte) in;
+    }
+
+    updateMetricReceivedBytes(in == '\n' ? length + 1 : length);
+
+    if (length > 0 && lineBuffer[length - 1] == '\r')
+      length--;
+    return new String(lineBuffer, 0, length, "ISO-8859-1");
+  }
+
   public byte read() throws IOException {
     updateMetricReceivedBytes(1);
     return (byte) inStream.read();
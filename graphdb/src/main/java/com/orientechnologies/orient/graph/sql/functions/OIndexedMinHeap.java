@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.graph.sql.functions;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of integer ids ordered by a double priority. The position of every id inside the heap is tracked, so the
+ * priority of an id already queued can be decreased in O(log n) instead of queueing it twice.
+ * 
+ * @since 17.10.13
+ */
+public class OIndexedMinHeap {
+  private int[]    heap;
+  private int[]    positions;
+  private double[] priorities;
+  private int      size;
+
+  public OIndexedMinHeap() {
+    this(64);
+  }
+
+  public OIndexedMinHeap(final int iCapacity) {
+    final int capacity = Math.max(16, iCapacity);
+    heap = new int[capacity];
+    positions = new int[capacity];
+    priorities = new double[capacity];
+    Arrays.fill(positions, -1);
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean contains(final int iId) {
+    return iId < positions.length && positions[iId] > -1;
+  }
+
+  public double getPriority(final int iId) {
+    return priorities[iId];
+  }
+
+  /**
+   * Queues the id or changes its priority if it is already queued.
+   */
+  public void put(final int iId, final double iPriority) {
+    if (iId >= positions.length)
+      growIds(iId + 1);
+
+    final int position = positions[iId];
+    if (position < 0) {
+      if (size == heap.length)
+        heap = Arrays.copyOf(heap, size << 1);
+      priorities[iId] = iPriority;
+      heap[size] = iId;
+      positions[iId] = size;
+      siftUp(size++);
+    } else {
+      final double old = priorities[iId];
+      priorities[iId] = iPriority;
+      if (iPriority < old)
+        siftUp(position);
+      else
+        siftDown(position);
+    }
+  }
+
+  /**
+   * Removes and returns the id with the lowest priority, -1 if the heap is empty.
+   */
+  public int poll() {
+    if (size == 0)
+      return -1;
+
+    final int first = heap[0];
+    positions[first] = -1;
+    if (--size > 0) {
+      heap[0] = heap[size];
+      positions[heap[0]] = 0;
+      siftDown(0);
+    }
+    return first;
+  }
+
+  private void siftUp(int iPosition) {
+    final int id = heap[iPosition];
+    final double priority = priorities[id];
+    while (iPosition > 0) {
+      final int parent = (iPosition - 1) >>> 1;
+      if (priorities[heap[parent]] <= priority)
+        break;
+      heap[iPosition] = heap[parent];
+      positions[heap[iPosition]] = iPosition;
+      iPosition = parent;
+    }
+    heap[iPosition] = id;
+    positions[id] = iPosition;
+  }
+
+  private void siftDown(int iPosition) {
+    final int id = heap[iPosition];
+    final double priority = priorities[id];
+    while (true) {
+      int child = (iPosition << 1) + 1;
+      if (child >= size)
+        break;
+      if (child + 1 < size && priorities[heap[child + 1]] < priorities[heap[child]])
+        child++;
+      if (priorities[heap[child]] >= priority)
+        break;
+      heap[iPosition] = heap[child];
+      positions[heap[iPosition]] = iPosition;
+      iPosition = child;
+    }
+    heap[iPosition] = id;
+    positions[id] = iPosition;
+  }
+
+  private void growIds(final int iMinimum) {
+    int capacity = positions.length << 1;
+    while (capacity < iMinimum)
+      capacity <<= 1;
+    final int old = positions.length;
+    positions = Arrays.copyOf(positions, capacity);
+    Arrays.fill(positions, old, capacity, -1);
+    priorities = Arrays.copyOf(priorities, capacity);
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.graph.sql.functions;
+
+import java.util.Arrays;
+
+import com.orientechnologies.orient.core.id.ORID;
+
+/**
+ * Vertices reached by a path search. Every vertex gets a sequential id used as index of the primitive arrays that keep the state
+ * of the search, so besides its RID no object is allocated per visited vertex. RIDs are resolved to ids by an open addressing hash
+ * table with linear probing.
+ * 
+ * @since 17.10.13
+ */
+public class OPathNodes {
+  public static final int  NOT_FOUND        = -1;
+
+  public static final byte VISITED_FORWARD  = 1;
+  public static final byte VISITED_BACKWARD = 2;
+  public static final byte SETTLED          = 4;
+
+  private ORID[]           rids;
+  private int[]            predecessors;
+  private int[]            depths;
+  private double[]         distances;
+  private double[]         heuristics;
+  private byte[]           flags;
+  private int              size;
+
+  private int[]            table;
+  private int              mask;
+
+  public OPathNodes() {
+    this(64);
+  }
+
+  public OPathNodes(final int iCapacity) {
+    final int capacity = Math.max(16, iCapacity);
+    rids = new ORID[capacity];
+    predecessors = new int[capacity];
+    depths = new int[capacity];
+    distances = new double[capacity];
+    heuristics = new double[capacity];
+    flags = new byte[capacity];
+
+    int tableSize = 16;
+    while (tableSize < capacity * 2)
+      tableSize <<= 1;
+    table = new int[tableSize];
+    Arrays.fill(table, NOT_FOUND);
+    mask = tableSize - 1;
+  }
+
+  /**
+   * Returns the id of the vertex or NOT_FOUND if it was never reached.
+   */
+  public int get(final ORID iRid) {
+    int slot = hash(iRid) & mask;
+    int node;
+    while ((node = table[slot]) != NOT_FOUND) {
+      if (rids[node].equals(iRid))
+        return node;
+      slot = (slot + 1) & mask;
+    }
+    return NOT_FOUND;
+  }
+
+  /**
+   * Registers a vertex not reached yet. Its distance is infinite and it has no predecessor.
+   */
+  public int add(final ORID iRid) {
+    if (size == rids.length)
+      grow();
+    if (size * 2 >= table.length)
+      rehash(table.length << 1);
+
+    final int node = size++;
+    rids[node] = iRid.copy();
+    predecessors[node] = NOT_FOUND;
+    distances[node] = Double.MAX_VALUE;
+    insert(node);
+    return node;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public ORID getRid(final int iNode) {
+    return rids[iNode];
+  }
+
+  public int getPredecessor(final int iNode) {
+    return predecessors[iNode];
+  }
+
+  public void setPredecessor(final int iNode, final int iPredecessor) {
+    predecessors[iNode] = iPredecessor;
+  }
+
+  public int getDepth(final int iNode) {
+    return depths[iNode];
+  }
+
+  public void setDepth(final int iNode, final int iDepth) {
+    depths[iNode] = iDepth;
+  }
+
+  public double getDistance(final int iNode) {
+    return distances[iNode];
+  }
+
+  public void setDistance(final int iNode, final double iDistance) {
+    distances[iNode] = iDistance;
+  }
+
+  public double getHeuristic(final int iNode) {
+    return heuristics[iNode];
+  }
+
+  public void setHeuristic(final int iNode, final double iHeuristic) {
+    heuristics[iNode] = iHeuristic;
+  }
+
+  public boolean is(final int iNode, final byte iFlag) {
+    return (flags[iNode] & iFlag) != 0;
+  }
+
+  public void set(final int iNode, final byte iFlag) {
+    flags[iNode] |= iFlag;
+  }
+
+  private void grow() {
+    final int capacity = rids.length << 1;
+    rids = Arrays.copyOf(rids, capacity);
+    predecessors = Arrays.copyOf(predecessors, capacity);
+    depths = Arrays.copyOf(depths, capacity);
+    distances = Arrays.copyOf(distances, capacity);
+    heuristics = Arrays.copyOf(heuristics, capacity);
+    flags = Arrays.copyOf(flags, capacity);
+  }
+
+  private void rehash(final int iTableSize) {
+    table = new int[iTableSize];
+    Arrays.fill(table, NOT_FOUND);
+    mask = iTableSize - 1;
+    for (int node = 0; node < size; node++)
+      insert(node);
+  }
+
+  private void insert(final int iNode) {
+    int slot = hash(rids[iNode]) & mask;
+    while (table[slot] != NOT_FOUND)
+      slot = (slot + 1) & mask;
+    table[slot] = iNode;
+  }
+
+  private static int hash(final ORID iRid) {
+    // SPREAD THE BITS: RIDS OF THE SAME CLUSTER HAVE CONSECUTIVE HASH CODES
+    final int h = iRid.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
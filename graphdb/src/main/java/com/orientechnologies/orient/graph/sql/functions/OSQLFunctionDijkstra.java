@@ -15,7 +15,7 @@
  */
 package com.orientechnologies.orient.graph.sql.functions;
 
-import java.util.Iterator;
+import java.util.LinkedList;
 
 import com.orientechnologies.common.collection.OMultiValue;
 import com.orientechnologies.orient.core.command.OCommandContext;
@@ -27,17 +27,16 @@ import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.impls.orient.OrientBaseGraph;
-import com.tinkerpop.blueprints.impls.orient.OrientVertex;
 
 /**
- * Dijkstra's algorithm describes how to find the cheapest path from one node to another node in a directed weighted graph.
+ * Dijkstra's algorithm describes how to find the cheapest path from one node to another node in a directed weighted graph. Edges
+ * without the weight field cost 0. Subclasses can override {@link #getHeuristicCost} to turn the search into A*.
  * 
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  * 
  */
-public class OSQLFunctionDijkstra extends OSQLFunctionPathFinder<Float> {
+public class OSQLFunctionDijkstra extends OSQLFunctionPathFinder {
   public static final String NAME = "dijkstra";
-  private static final Float MIN  = new Float(0f);
 
   private String             paramWeightFieldName;
 
@@ -47,6 +46,7 @@ public class OSQLFunctionDijkstra extends OSQLFunctionPathFinder<Float> {
 
   public Object execute(OIdentifiable iCurrentRecord, Object iCurrentResult, final Object[] iParameters, OCommandContext iContext) {
     final OrientBaseGraph graph = OGraphCommandExecutorSQLFactory.getGraph();
+    db = graph;
 
     final ORecordInternal<?> record = (ORecordInternal<?>) (iCurrentRecord != null ? iCurrentRecord.getRecord() : null);
 
@@ -66,9 +66,9 @@ public class OSQLFunctionDijkstra extends OSQLFunctionPathFinder<Float> {
     }
     paramDestinationVertex = graph.getVertex((OIdentifiable) OSQLHelper.getValue(dest, record, iContext));
 
-    paramWeightFieldName = (String) OSQLHelper.getValue(iParameters[2], record, iContext);
-    if (iParameters.length > 3)
-      paramDirection = Direction.valueOf(iParameters[3].toString().toUpperCase());
+    // PARAMETERS ARE ALREADY RESOLVED: THE NAME MUST NOT BE RESOLVED AGAIN AS A FIELD OF THE CURRENT RECORD
+    paramWeightFieldName = iParameters[2].toString();
+    paramDirection = iParameters.length > 3 ? Direction.valueOf(iParameters[3].toString().toUpperCase()) : Direction.OUT;
 
     return super.execute(iParameters, iContext);
   }
@@ -78,37 +78,15 @@ public class OSQLFunctionDijkstra extends OSQLFunctionPathFinder<Float> {
   }
 
   @Override
-  protected Float getShortestDistance(final Vertex destination) {
-    if (destination == null)
-      return Float.MAX_VALUE;
-
-    final Float d = distance.get(destination);
-    return d == null ? Float.MAX_VALUE : d;
-  }
-
-  @Override
-  protected Float getMinimumDistance() {
-    return MIN;
-  }
-
-  protected Float getDistance(final Vertex node, final Vertex target) {
-    final Iterator<Edge> edges = ((OrientVertex) node).getEdges(target, paramDirection).iterator();
-    if (edges.hasNext()) {
-      final Edge e = edges.next();
-      if (e != null) {
-        final Object fieldValue = e.getProperty(paramWeightFieldName);
-        if (fieldValue != null)
-          if (fieldValue instanceof Float)
-            return (Float) fieldValue;
-          else if (fieldValue instanceof Number)
-            return ((Number) fieldValue).floatValue();
-      }
-    }
-    return MIN;
+  protected LinkedList<Vertex> findPath() {
+    return findCheapestPath();
   }
 
   @Override
-  protected Float sumDistances(final Float iDistance1, final Float iDistance2) {
-    return iDistance1.floatValue() + iDistance2.floatValue();
+  protected double getDistance(final Edge iEdge) {
+    final Object fieldValue = iEdge.getProperty(paramWeightFieldName);
+    if (fieldValue instanceof Number)
+      return ((Number) fieldValue).doubleValue();
+    return 0;
   }
 }
@@ -15,85 +15,63 @@
  */
 package com.orientechnologies.orient.graph.sql.functions;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.sql.functions.math.OSQLFunctionMathAbstract;
 import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.impls.orient.OrientBaseGraph;
+import com.tinkerpop.blueprints.impls.orient.OrientEdge;
 
 /**
- * Abstract class to find paths between nodes.
+ * Abstract class to find paths between nodes. Two searches are available: a weighted search (Dijkstra, or A* when
+ * {@link #getHeuristicCost(ORID, ORID)} is overridden) driven by a binary heap, and a bidirectional breadth-first search for
+ * unweighted paths. The state of the search is kept in primitive arrays indexed by vertex id (see {@link OPathNodes}) and vertices
+ * are loaded only when expanded.
+ * <p>
+ * The search gives up and returns no path when more vertices than allowed by {@link OGlobalConfiguration#GRAPH_PATH_MAX_VISITED}
+ * are visited, or, for the unweighted search only, when the path would be longer than the maximum depth.
  * 
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  * 
  */
-public abstract class OSQLFunctionPathFinder<T extends Comparable<T>> extends OSQLFunctionMathAbstract {
-  protected OrientBaseGraph     db;
-  protected Set<Vertex>         settledNodes;
-  protected Set<Vertex>         unSettledNodes;
-  protected Map<Vertex, Vertex> predecessors;
-  protected Map<Vertex, T>      distance;
+public abstract class OSQLFunctionPathFinder extends OSQLFunctionMathAbstract {
+  protected OrientBaseGraph    db;
+  protected LinkedList<Vertex> path;
 
-  protected Vertex              paramSourceVertex;
-  protected Vertex              paramDestinationVertex;
-  protected Direction           paramDirection = Direction.OUT;
+  protected Vertex             paramSourceVertex;
+  protected Vertex             paramDestinationVertex;
+  protected Direction          paramDirection = Direction.OUT;
+  protected int                paramMaxDepth;
 
   public OSQLFunctionPathFinder(final String iName, final int iMinParams, final int iMaxParams) {
     super(iName, iMinParams, iMaxParams);
   }
 
-  protected abstract T getDistance(Vertex node, Vertex target);
-
-  protected abstract T getShortestDistance(Vertex destination);
-
-  protected abstract T getMinimumDistance();
-
-  protected abstract T sumDistances(T iDistance1, T iDistance2);
+  /**
+   * Searches the path between the source and the destination vertex.
+   * 
+   * @return the path including both the source and the destination vertex, NULL if no path exists within the limits
+   */
+  protected abstract LinkedList<Vertex> findPath();
 
   public Object execute(final Object[] iParameters, final OCommandContext iContext) {
-    settledNodes = new HashSet<Vertex>();
-    unSettledNodes = new HashSet<Vertex>();
-    distance = new HashMap<Vertex, T>();
-    predecessors = new HashMap<Vertex, Vertex>();
-    distance.put(paramSourceVertex, getMinimumDistance());
-    unSettledNodes.add(paramSourceVertex);
-
-    while (continueTraversing()) {
-      final Vertex node = getMinimum(unSettledNodes);
-      settledNodes.add(node);
-      unSettledNodes.remove(node);
-      findMinimalDistances(node);
-    }
-
-    return getPath();
+    path = null;
+    if (paramSourceVertex != null && paramDestinationVertex != null)
+      path = findPath();
+    return path;
   }
 
   /*
    * This method returns the path from the source to the selected target and NULL if no path exists
    */
   public LinkedList<Vertex> getPath() {
-    final LinkedList<Vertex> path = new LinkedList<Vertex>();
-    Vertex step = paramDestinationVertex;
-    // Check if a path exists
-    if (predecessors.get(step) == null)
-      return null;
-
-    path.add(step);
-    while (predecessors.get(step) != null) {
-      step = predecessors.get(step);
-      path.add(step);
-    }
-    // Put it into the correct order
-    Collections.reverse(path);
     return path;
   }
 
@@ -106,44 +84,261 @@ public abstract class OSQLFunctionPathFinder<T extends Comparable<T>> extends OS
     return getPath();
   }
 
-  protected void findMinimalDistances(final Vertex node) {
-    final List<Vertex> adjacentNodes = getNeighbors(node);
-    for (Vertex target : adjacentNodes) {
-      final T d = sumDistances(getShortestDistance(node), getDistance(node, target));
+  /**
+   * Returns the cost to cross the edge. Costs must not be negative.
+   */
+  protected double getDistance(final Edge iEdge) {
+    return 1;
+  }
+
+  /**
+   * Returns an estimate of the cost of the cheapest path between the vertex and the destination, used to drive the weighted search
+   * toward the destination (A*). The heuristic must be consistent: for every edge from vertex u to vertex v the estimate of u must
+   * not exceed the cost of the edge plus the estimate of v, and the estimate of the destination must be 0. Since settled vertices
+   * are never expanded again, a heuristic that is only admissible (never exceeding the real cost) can return a path that is not the
+   * cheapest. The default implementation returns 0, that makes the search a plain Dijkstra.
+   */
+  protected double getHeuristicCost(final ORID iVertex, final ORID iDestination) {
+    return 0;
+  }
+
+  /**
+   * Finds the cheapest path expanding the vertices in order of distance from the source plus heuristic cost. The maximum depth is
+   * not applied: each vertex keeps only its cheapest path from the source, so a limit on the number of edges could miss a more
+   * expensive path within the limit.
+   */
+  protected LinkedList<Vertex> findCheapestPath() {
+    final ORID sourceRid = getIdentity(paramSourceVertex);
+    final ORID destinationRid = getIdentity(paramDestinationVertex);
+    if (sourceRid.equals(destinationRid))
+      return null;
 
-      if (getShortestDistance(target).compareTo(d) > 0) {
-        distance.put(target, d);
-        predecessors.put(target, node);
-        unSettledNodes.add(target);
+    final int maxVisited = getMaxVisited();
+
+    final OPathNodes nodes = new OPathNodes();
+    final OIndexedMinHeap queue = new OIndexedMinHeap();
+
+    final int source = nodes.add(sourceRid);
+    nodes.setDistance(source, 0);
+    nodes.setHeuristic(source, getHeuristicCost(sourceRid, destinationRid));
+    queue.put(source, nodes.getHeuristic(source));
+
+    int visited = 0;
+    while (!queue.isEmpty()) {
+      final int node = queue.poll();
+      nodes.set(node, OPathNodes.SETTLED);
+
+      final ORID nodeRid = nodes.getRid(node);
+      if (nodeRid.equals(destinationRid))
+        return buildPath(nodes, node, OPathNodes.NOT_FOUND);
+
+      if (maxVisited > 0 && ++visited > maxVisited)
+        return null;
+
+      final Vertex vertex = node == source ? paramSourceVertex : db.getVertex(nodeRid);
+      if (vertex == null)
+        continue;
+
+      for (Edge edge : vertex.getEdges(paramDirection)) {
+        final ORID targetRid = getConnectedVertex(edge, nodeRid);
+        if (targetRid == null)
+          continue;
+
+        int target = nodes.get(targetRid);
+        if (target != OPathNodes.NOT_FOUND && nodes.is(target, OPathNodes.SETTLED))
+          continue;
+
+        final double distance = nodes.getDistance(node) + getDistance(edge);
+        if (target == OPathNodes.NOT_FOUND) {
+          target = nodes.add(targetRid);
+          nodes.setHeuristic(target, getHeuristicCost(targetRid, destinationRid));
+        } else if (distance >= nodes.getDistance(target))
+          continue;
+
+        nodes.setDistance(target, distance);
+        nodes.setPredecessor(target, node);
+        queue.put(target, distance + nodes.getHeuristic(target));
       }
     }
 
+    return null;
   }
 
-  protected List<Vertex> getNeighbors(final Vertex node) {
-    final List<Vertex> neighbors = new ArrayList<Vertex>();
-    if (node != null) {
-      for (Vertex v : node.getVertices(paramDirection))
-        if (v != null && !isSettled(v))
-          neighbors.add(v);
+  /**
+   * Finds the path with the fewest edges running two breadth-first searches, one from the source and one backward from the
+   * destination, and always expanding the smaller frontier. The searches stop at the level where they meet.
+   */
+  protected LinkedList<Vertex> findShortestPath() {
+    final ORID sourceRid = getIdentity(paramSourceVertex);
+    final ORID destinationRid = getIdentity(paramDestinationVertex);
+    if (sourceRid.equals(destinationRid))
+      return null;
+
+    final int maxDepth = getMaxDepth();
+    final int maxVisited = getMaxVisited();
+
+    // FOR THE VERTICES REACHED BY THE BACKWARD SEARCH THE PREDECESSOR IS THE NEXT VERTEX TOWARD THE DESTINATION
+    final OPathNodes nodes = new OPathNodes();
+    final int source = nodes.add(sourceRid);
+    nodes.set(source, OPathNodes.VISITED_FORWARD);
+    final int destination = nodes.add(destinationRid);
+    nodes.set(destination, OPathNodes.VISITED_BACKWARD);
+
+    OFrontier forward = new OFrontier(source);
+    OFrontier backward = new OFrontier(destination);
+    int forwardDepth = 0;
+    int backwardDepth = 0;
+    int visited = 2;
+
+    while (!forward.isEmpty() && !backward.isEmpty()) {
+      if (maxDepth > 0 && forwardDepth + backwardDepth >= maxDepth)
+        return null;
+
+      final boolean expandForward = forward.size() <= backward.size();
+      final OFrontier frontier = expandForward ? forward : backward;
+      final Direction direction = expandForward ? paramDirection : paramDirection.opposite();
+      final byte side = expandForward ? OPathNodes.VISITED_FORWARD : OPathNodes.VISITED_BACKWARD;
+      final byte otherSide = expandForward ? OPathNodes.VISITED_BACKWARD : OPathNodes.VISITED_FORWARD;
+      final int depth = expandForward ? forwardDepth : backwardDepth;
+
+      final OFrontier next = new OFrontier();
+      int bestFrom = OPathNodes.NOT_FOUND;
+      int bestTo = OPathNodes.NOT_FOUND;
+      int bestLength = Integer.MAX_VALUE;
+
+      for (int i = 0; i < frontier.size(); ++i) {
+        final int node = frontier.get(i);
+        final Vertex vertex = node == source ? paramSourceVertex : node == destination ? paramDestinationVertex : db.getVertex(nodes
+            .getRid(node));
+        if (vertex == null)
+          continue;
+
+        for (Vertex neighbor : vertex.getVertices(direction)) {
+          if (neighbor == null)
+            continue;
+
+          final ORID neighborRid = getIdentity(neighbor);
+          int target = nodes.get(neighborRid);
+          if (target != OPathNodes.NOT_FOUND) {
+            if (nodes.is(target, otherSide)) {
+              // THE SEARCHES MET: KEEP THE SHORTEST CONNECTION OF THIS LEVEL
+              final int length = depth + 1 + nodes.getDepth(target);
+              if (length < bestLength) {
+                bestLength = length;
+                bestFrom = node;
+                bestTo = target;
+              }
+            }
+            continue;
+          }
+
+          target = nodes.add(neighborRid);
+          nodes.set(target, side);
+          nodes.setPredecessor(target, node);
+          nodes.setDepth(target, depth + 1);
+          next.add(target);
+
+          if (maxVisited > 0 && ++visited > maxVisited)
+            return null;
+        }
+      }
+
+      if (bestFrom != OPathNodes.NOT_FOUND)
+        return expandForward ? buildPath(nodes, bestFrom, bestTo) : buildPath(nodes, bestTo, bestFrom);
+
+      if (expandForward) {
+        forward = next;
+        forwardDepth++;
+      } else {
+        backward = next;
+        backwardDepth++;
+      }
     }
-    return neighbors;
+
+    return null;
   }
 
-  protected Vertex getMinimum(final Set<Vertex> vertexes) {
-    Vertex minimum = null;
-    for (Vertex vertex : vertexes) {
-      if (minimum == null || getShortestDistance(vertex).compareTo(getShortestDistance(minimum)) < 0)
-        minimum = vertex;
-    }
-    return minimum;
+  /**
+   * Builds the path walking the predecessors from the last vertex reached from the source back to the source, then from the first
+   * vertex reached from the destination to the destination.
+   */
+  protected LinkedList<Vertex> buildPath(final OPathNodes iNodes, final int iForwardEnd, final int iBackwardStart) {
+    final LinkedList<Vertex> result = new LinkedList<Vertex>();
+    for (int node = iForwardEnd; node != OPathNodes.NOT_FOUND; node = iNodes.getPredecessor(node))
+      result.addFirst(loadVertex(iNodes.getRid(node)));
+    for (int node = iBackwardStart; node != OPathNodes.NOT_FOUND; node = iNodes.getPredecessor(node))
+      result.addLast(loadVertex(iNodes.getRid(node)));
+    return result;
+  }
+
+  /**
+   * Returns the vertex at the other end of the edge crossed in the direction of the search.
+   */
+  protected ORID getConnectedVertex(final Edge iEdge, final ORID iFrom) {
+    final OrientEdge edge = (OrientEdge) iEdge;
+    final OIdentifiable out = edge.getOutVertex();
+    final OIdentifiable in = edge.getInVertex();
+
+    if (paramDirection == Direction.OUT)
+      return in != null ? in.getIdentity() : null;
+    if (paramDirection == Direction.IN)
+      return out != null ? out.getIdentity() : null;
+
+    if (out != null && !out.getIdentity().equals(iFrom))
+      return out.getIdentity();
+    return in != null ? in.getIdentity() : null;
+  }
+
+  protected int getMaxDepth() {
+    return paramMaxDepth > 0 ? paramMaxDepth : OGlobalConfiguration.GRAPH_PATH_MAX_DEPTH.getValueAsInteger();
+  }
+
+  protected int getMaxVisited() {
+    return OGlobalConfiguration.GRAPH_PATH_MAX_VISITED.getValueAsInteger();
+  }
+
+  protected static ORID getIdentity(final Vertex iVertex) {
+    return ((OIdentifiable) iVertex).getIdentity();
   }
 
-  protected boolean isSettled(final Vertex vertex) {
-    return settledNodes.contains(vertex.getId());
+  private Vertex loadVertex(final ORID iRid) {
+    if (iRid.equals(getIdentity(paramSourceVertex)))
+      return paramSourceVertex;
+    if (iRid.equals(getIdentity(paramDestinationVertex)))
+      return paramDestinationVertex;
+    return db.getVertex(iRid);
   }
 
-  protected boolean continueTraversing() {
-    return unSettledNodes.size() > 0;
+  /**
+   * Vertex ids of one level of the breadth-first search.
+   */
+  private static class OFrontier {
+    private int[] items = new int[16];
+    private int   size;
+
+    private OFrontier() {
+    }
+
+    private OFrontier(final int iFirst) {
+      add(iFirst);
+    }
+
+    private void add(final int iItem) {
+      if (size == items.length)
+        items = Arrays.copyOf(items, size << 1);
+      items[size++] = iItem;
+    }
+
+    private int get(final int iIndex) {
+      return items[iIndex];
+    }
+
+    private int size() {
+      return size;
+    }
+
+    private boolean isEmpty() {
+      return size == 0;
+    }
   }
 }
@@ -15,6 +15,8 @@
  */
 package com.orientechnologies.orient.graph.sql.functions;
 
+import java.util.LinkedList;
+
 import com.orientechnologies.common.collection.OMultiValue;
 import com.orientechnologies.orient.core.command.OCommandContext;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
@@ -26,23 +28,23 @@ import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.impls.orient.OrientBaseGraph;
 
 /**
- * Shortest path algorithm to find the shortest path from one node to another node in a directed graph.
+ * Shortest path algorithm to find the shortest path from one node to another node in a directed graph. The path is searched at
+ * the same time from the source and, backward, from the destination.
  * 
  * @author Luca Garulli (l.garulli--at--orientechnologies.com)
  * 
  */
-public class OSQLFunctionShortestPath extends OSQLFunctionPathFinder<Integer> {
-  public static final String   NAME     = "shortestPath";
-  private static final Integer MIN      = new Integer(0);
-  private static final Integer DISTANCE = new Integer(1);
+public class OSQLFunctionShortestPath extends OSQLFunctionPathFinder {
+  public static final String NAME = "shortestPath";
 
   public OSQLFunctionShortestPath() {
-    super(NAME, 2, 3);
+    super(NAME, 2, 4);
   }
 
   public Object execute(final OIdentifiable iCurrentRecord, Object iCurrentResult, final Object[] iParameters,
       final OCommandContext iContext) {
     final OrientBaseGraph graph = OGraphCommandExecutorSQLFactory.getGraph();
+    db = graph;
 
     final ORecordInternal<?> record = (ORecordInternal<?>) (iCurrentRecord != null ? iCurrentRecord.getRecord() : null);
 
@@ -62,36 +64,18 @@ public class OSQLFunctionShortestPath extends OSQLFunctionPathFinder<Integer> {
     }
     paramDestinationVertex = graph.getVertex((OIdentifiable) OSQLHelper.getValue(dest, record, iContext));
 
-    if (iParameters.length > 2)
-      paramDirection = Direction.valueOf(iParameters[2].toString().toUpperCase());
+    paramDirection = iParameters.length > 2 ? Direction.valueOf(iParameters[2].toString().toUpperCase()) : Direction.OUT;
+    paramMaxDepth = iParameters.length > 3 ? Integer.parseInt(iParameters[3].toString()) : 0;
 
     return super.execute(iParameters, iContext);
   }
 
   public String getSyntax() {
-    return "Syntax error: shortestPath(<sourceVertex>, <destinationVertex>, [<direction>])";
-  }
-
-  @Override
-  protected Integer getShortestDistance(final Vertex destination) {
-    if (destination == null)
-      return Integer.MAX_VALUE;
-
-    final Integer d = distance.get(destination);
-    return d == null ? Integer.MAX_VALUE : d;
-  }
-
-  @Override
-  protected Integer getMinimumDistance() {
-    return MIN;
-  }
-
-  protected Integer getDistance(final Vertex node, final Vertex target) {
-    return DISTANCE;
+    return "Syntax error: shortestPath(<sourceVertex>, <destinationVertex>, [<direction>], [<maxDepth>])";
   }
 
   @Override
-  protected Integer sumDistances(final Integer iDistance1, final Integer iDistance2) {
-    return iDistance1.intValue() + iDistance2.intValue();
+  protected LinkedList<Vertex> findPath() {
+    return findShortestPath();
   }
 }
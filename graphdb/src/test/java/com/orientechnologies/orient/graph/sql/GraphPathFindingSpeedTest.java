@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.graph.sql;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.graph.OGraphDatabase;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+import com.tinkerpop.blueprints.impls.orient.OrientGraphNoTx;
+import com.tinkerpop.blueprints.impls.orient.OrientVertex;
+
+/**
+ * Measures shortestPath() and dijkstra() on a random graph. By default the graph has 1,000,000 vertices with 3 outgoing edges each
+ * with a random weight. Arguments: [vertices] [edges per vertex] [searches] [database URL].
+ * 
+ * @since 17.10.13
+ */
+public class GraphPathFindingSpeedTest {
+  private static final String DBURL    = "local:target/databases/pathfinding";
+
+  private int                 vertices = 1000000;
+  private int                 edges    = 3;
+  private int                 searches = 20;
+  private String              dbURL    = DBURL;
+
+  public static void main(final String[] args) throws Exception {
+    new GraphPathFindingSpeedTest(args).testPathFinding();
+  }
+
+  public GraphPathFindingSpeedTest() {
+  }
+
+  public GraphPathFindingSpeedTest(final String[] args) {
+    if (args.length > 0)
+      vertices = Integer.parseInt(args[0]);
+    if (args.length > 1)
+      edges = Integer.parseInt(args[1]);
+    if (args.length > 2)
+      searches = Integer.parseInt(args[2]);
+    if (args.length > 3)
+      dbURL = args[3];
+  }
+
+  // @Test
+  public void testPathFinding() {
+    OGlobalConfiguration.STORAGE_KEEP_OPEN.setValue(false);
+
+    final OGraphDatabase database = new OGraphDatabase(dbURL);
+    if (database.exists())
+      database.open("admin", "admin").drop();
+
+    final OrientGraphNoTx graph = new OrientGraphNoTx(dbURL);
+    try {
+      final List<ORID> rids = createGraph(graph);
+      final Random random = new Random(17);
+
+      long shortestPathTime = 0;
+      long dijkstraTime = 0;
+      long shortestPathLength = 0;
+      long dijkstraLength = 0;
+      for (int i = 0; i < searches; ++i) {
+        final ORID source = rids.get(random.nextInt(rids.size()));
+        final ORID destination = rids.get(random.nextInt(rids.size()));
+
+        long start = System.currentTimeMillis();
+        shortestPathLength += pathLength(graph, "shortestPath(" + source + ", " + destination + ")", source);
+        shortestPathTime += System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        dijkstraLength += pathLength(graph, "dijkstra(" + source + ", " + destination + ", 'weight')", source);
+        dijkstraTime += System.currentTimeMillis() - start;
+      }
+
+      System.out.println("shortestPath(): " + searches + " searches in " + shortestPathTime + "ms, average path length "
+          + (float) shortestPathLength / searches);
+      System.out.println("dijkstra(): " + searches + " searches in " + dijkstraTime + "ms, average path length "
+          + (float) dijkstraLength / searches);
+    } finally {
+      graph.drop();
+    }
+  }
+
+  private List<ORID> createGraph(final OrientGraphNoTx graph) {
+    System.out.println("Creating a graph with " + vertices + " vertices and " + vertices * edges + " edges in " + dbURL + "...");
+    final long start = System.currentTimeMillis();
+    graph.getRawGraph().declareIntent(new OIntentMassiveInsert());
+
+    final List<ORID> rids = new ArrayList<ORID>(vertices);
+    for (int i = 0; i < vertices; ++i)
+      rids.add(graph.addVertex(null, "num", i).getIdentity());
+
+    final Random random = new Random(7);
+    for (int i = 0; i < vertices; ++i) {
+      final OrientVertex from = graph.getVertex(rids.get(i));
+      for (int e = 0; e < edges; ++e) {
+        final int to = random.nextInt(vertices);
+        if (to != i)
+          from.addEdge("E", graph.getVertex(rids.get(to)), null, null, "weight", 1 + random.nextInt(100));
+      }
+    }
+
+    graph.getRawGraph().declareIntent(null);
+    System.out.println("Created in " + (System.currentTimeMillis() - start) + "ms");
+    return rids;
+  }
+
+  private int pathLength(final OrientGraphNoTx graph, final String iFunction, final ORID iSource) {
+    final Iterable<ODocument> result = graph.command(
+        new OSQLSynchQuery<ODocument>("select " + iFunction + " as path from " + iSource)).execute();
+    final Collection<?> path = result.iterator().next().field("path");
+    return path != null ? path.size() : 0;
+  }
+}
@@ -16,10 +16,13 @@
 package com.orientechnologies.orient.graph.sql;
 
 import java.util.Collection;
+import java.util.Iterator;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import com.tinkerpop.blueprints.impls.orient.OrientGraph;
@@ -27,8 +30,13 @@ import com.tinkerpop.blueprints.impls.orient.OrientVertex;
 
 @Test
 public class SQLGraphFunctions {
-  private OrientGraph graph;
-  private String      url;
+  private OrientGraph  graph;
+  private String       url;
+  private OrientVertex v1;
+  private OrientVertex v5;
+  private OrientVertex v6;
+  private OrientVertex v7;
+  private OrientVertex v9;
 
   public SQLGraphFunctions() {
     this("memory:testgraph");
@@ -38,19 +46,27 @@ public class SQLGraphFunctions {
     url = iURL;
     graph = new OrientGraph(iURL);
 
-    OrientVertex v1 = graph.addVertex(null, "name", "A");
+    v1 = graph.addVertex(null, "name", "A");
     OrientVertex v2 = graph.addVertex(null, "name", "B");
     OrientVertex v3 = graph.addVertex(null, "name", "C");
     OrientVertex v4 = graph.addVertex(null, "name", "D");
-    OrientVertex v5 = graph.addVertex(null, "name", "E");
-    OrientVertex v6 = graph.addVertex(null, "name", "F");
+    v5 = graph.addVertex(null, "name", "E");
+    v6 = graph.addVertex(null, "name", "F");
 
-    v1.addEdge(null, v2, null, null, "weight", 10);
-    v2.addEdge(null, v3, null, null, "weight", 20);
-    v3.addEdge(null, v4, null, null, "weight", 30);
-    v4.addEdge(null, v5, null, null, "weight", 40);
-    v5.addEdge(null, v6, null, null, "weight", 50);
-    v5.addEdge(null, v1, null, null, "weight", 100);
+    v1.addEdge("E", v2, null, null, "weight", 10);
+    v2.addEdge("E", v3, null, null, "weight", 20);
+    v3.addEdge("E", v4, null, null, "weight", 30);
+    v4.addEdge("E", v5, null, null, "weight", 40);
+    v5.addEdge("E", v6, null, null, "weight", 50);
+    v5.addEdge("E", v1, null, null, "weight", 100);
+
+    // THE DIRECT EDGE IS THE SHORTEST PATH BUT NOT THE CHEAPEST ONE
+    v7 = graph.addVertex(null, "name", "G");
+    OrientVertex v8 = graph.addVertex(null, "name", "H");
+    v9 = graph.addVertex(null, "name", "I");
+    v7.addEdge("E", v8, null, null, "weight", 1);
+    v8.addEdge("E", v9, null, null, "weight", 1);
+    v7.addEdge("E", v9, null, null, "weight", 5);
 
     graph.commit();
   }
@@ -65,4 +81,50 @@ public class SQLGraphFunctions {
           + ((Collection<ODocument>) d.field("$target")).iterator().next().field("name") + " is: " + d.field("path"));
     }
   }
+
+  public void checkShortestPath() {
+    Assert.assertEquals(path("shortestPath(" + v1.getIdentity() + ", " + v6.getIdentity() + ")"), "ABCDEF");
+    Assert.assertEquals(path("shortestPath(" + v7.getIdentity() + ", " + v9.getIdentity() + ")"), "GI");
+    Assert.assertEquals(path("shortestPath(" + v6.getIdentity() + ", " + v1.getIdentity() + ", 'both')"), "FEA");
+    Assert.assertNull(path("shortestPath(" + v6.getIdentity() + ", " + v1.getIdentity() + ")"));
+    Assert.assertNull(path("shortestPath(" + v1.getIdentity() + ", " + v9.getIdentity() + ", 'both')"));
+  }
+
+  public void checkDijkstraPath() {
+    Assert.assertEquals(path("dijkstra(" + v7.getIdentity() + ", " + v9.getIdentity() + ", 'weight')"), "GHI");
+    Assert.assertEquals(path("dijkstra(" + v1.getIdentity() + ", " + v6.getIdentity() + ", 'weight')"), "ABCDEF");
+    Assert.assertEquals(path("dijkstra(" + v9.getIdentity() + ", " + v7.getIdentity() + ", 'weight', 'in')"), "IHG");
+    Assert.assertNull(path("dijkstra(" + v9.getIdentity() + ", " + v7.getIdentity() + ", 'weight')"));
+  }
+
+  public void checkPathMaxDepth() {
+    Assert.assertEquals(path("shortestPath(" + v1.getIdentity() + ", " + v6.getIdentity() + ", 'out', 5)"), "ABCDEF");
+    Assert.assertNull(path("shortestPath(" + v1.getIdentity() + ", " + v6.getIdentity() + ", 'out', 4)"));
+
+    // THE DEPTH LIMIT DOES NOT APPLY TO THE WEIGHTED SEARCH
+    final Object maxDepth = OGlobalConfiguration.GRAPH_PATH_MAX_DEPTH.getValue();
+    OGlobalConfiguration.GRAPH_PATH_MAX_DEPTH.setValue(3);
+    try {
+      Assert.assertEquals(path("dijkstra(" + v1.getIdentity() + ", " + v6.getIdentity() + ", 'weight')"), "ABCDEF");
+      Assert.assertNull(path("shortestPath(" + v1.getIdentity() + ", " + v6.getIdentity() + ")"));
+    } finally {
+      OGlobalConfiguration.GRAPH_PATH_MAX_DEPTH.setValue(maxDepth);
+    }
+  }
+
+  private String path(final String iFunction) {
+    final Iterable<ODocument> result = graph.command(
+        new OSQLSynchQuery<ODocument>("select " + iFunction + " as path from " + v1.getIdentity())).execute();
+    final Iterator<ODocument> iterator = result.iterator();
+    Assert.assertTrue(iterator.hasNext());
+
+    final Collection<OIdentifiable> path = iterator.next().field("path");
+    if (path == null)
+      return null;
+
+    final StringBuilder names = new StringBuilder();
+    for (OIdentifiable vertex : path)
+      names.append(((ODocument) vertex.getRecord()).field("name"));
+    return names.toString();
+  }
 }
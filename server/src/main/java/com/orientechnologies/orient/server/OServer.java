@@ -55,6 +55,7 @@ import com.orientechnologies.orient.core.metadata.security.ORole;
 import com.orientechnologies.orient.core.metadata.security.OUser;
 import com.orientechnologies.orient.core.security.OSecurityManager;
 import com.orientechnologies.orient.core.storage.OStorage;
+import com.orientechnologies.orient.core.storage.OStorageProxy;
 import com.orientechnologies.orient.core.storage.impl.memory.OStorageMemory;
 import com.orientechnologies.orient.server.config.OServerConfiguration;
 import com.orientechnologies.orient.server.config.OServerConfigurationLoaderXml;
@@ -320,6 +321,10 @@ public class OServer {
     scanDatabaseDirectory(rootDirectory, new File(rootDirectory), storages);
 
     for (OStorage storage : Orient.instance().getStorages()) {
+      if (storage instanceof OStorageProxy)
+        // CLIENT STORAGE OF A DATABASE HOSTED ELSEWHERE
+        continue;
+
       final String storageUrl = storage.getURL();
       if (storage.exists() && !storages.containsValue(storageUrl))
         storages.put(OIOUtils.getDatabaseNameFromPath(storage.getName()), storageUrl);
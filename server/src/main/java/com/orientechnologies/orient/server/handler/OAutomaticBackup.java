@@ -4,6 +4,7 @@ import java.io.File;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -21,6 +22,7 @@ import com.orientechnologies.orient.core.db.ODatabase;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.db.tool.ODatabaseExport;
 import com.orientechnologies.orient.core.exception.OConfigurationException;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPaginatedStorage;
 import com.orientechnologies.orient.server.OServer;
 import com.orientechnologies.orient.server.OServerMain;
 import com.orientechnologies.orient.server.config.OServerParameterConfiguration;
@@ -30,12 +32,18 @@ public class OAutomaticBackup extends OServerHandlerAbstract {
     DBNAME, DATE
   }
 
-  private Date        firstTime        = null;
-  private long        delay            = -1;
-  private String      targetDirectory  = "backup";
-  private String      targetFileName;
-  private Set<String> includeDatabases = new HashSet<String>();
-  private Set<String> excludeDatabases = new HashSet<String>();
+  public enum MODE {
+    EXPORT, FULL, INCREMENTAL
+  }
+
+  private Date                      firstTime        = null;
+  private long                      delay            = -1;
+  private String                    targetDirectory  = "backup";
+  private String                    targetFileName;
+  private Set<String>               includeDatabases = new HashSet<String>();
+  private Set<String>               excludeDatabases = new HashSet<String>();
+  private MODE                      mode             = MODE.EXPORT;
+  private final Map<String, String> lastBackups      = new HashMap<String, String>();
 
   @Override
   public void config(final OServer iServer, final OServerParameterConfiguration[] iParams) {
@@ -62,6 +70,8 @@ public class OAutomaticBackup extends OServerHandlerAbstract {
           excludeDatabases.add(db);
       else if (param.name.equalsIgnoreCase("target.fileName"))
         targetFileName = param.value;
+      else if (param.name.equalsIgnoreCase("mode"))
+        mode = MODE.valueOf(param.value.toUpperCase());
     }
 
     if (delay <= 0)
@@ -77,8 +87,9 @@ public class OAutomaticBackup extends OServerHandlerAbstract {
       // CREATE BACKUP FOLDER(S) IF ANY
       filePath.mkdirs();
 
-    OLogManager.instance().info(this, "Automatic backup plugin installed and active: delay=%dms, firstTime=%s, targetDirectory=%s",
-        delay, firstTime, targetDirectory);
+    OLogManager.instance().info(this,
+        "Automatic backup plugin installed and active: delay=%dms, firstTime=%s, targetDirectory=%s, mode=%s", delay, firstTime,
+        targetDirectory, mode);
 
     final TimerTask timerTask = new TimerTask() {
       @Override
@@ -126,12 +137,18 @@ public class OAutomaticBackup extends OServerHandlerAbstract {
 
               final long begin = System.currentTimeMillis();
 
-              new ODatabaseExport(db, exportFilePath, new OCommandOutputListener() {
-                @Override
-                public void onMessage(final String iText) {
+              if (mode != MODE.EXPORT && db.getStorage() instanceof OLocalPaginatedStorage) {
+                // BINARY BACKUP IN A DIRECTORY: INCREMENTAL BACKUPS STORE ONLY THE PAGES CHANGED AFTER THE PREVIOUS ONE
+                final String previousBackup = mode == MODE.INCREMENTAL ? lastBackups.get(dbName.getKey()) : null;
+                db.backup(exportFilePath, previousBackup);
+                lastBackups.put(dbName.getKey(), exportFilePath);
+              } else
+                new ODatabaseExport(db, exportFilePath, new OCommandOutputListener() {
+                  @Override
+                  public void onMessage(final String iText) {
 
-                }
-              }).exportDatabase();
+                  }
+                }).exportDatabase();
 
               OLogManager.instance().info(
                   this,
@@ -24,6 +24,7 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -35,7 +36,10 @@ import com.orientechnologies.orient.core.serialization.serializer.OStringSeriali
 import com.orientechnologies.orient.server.OServer;
 import com.orientechnologies.orient.server.config.OServerCommandConfiguration;
 import com.orientechnologies.orient.server.config.OServerParameterConfiguration;
+import com.orientechnologies.orient.server.network.protocol.ONetworkDispatcher;
 import com.orientechnologies.orient.server.network.protocol.ONetworkProtocol;
+import com.orientechnologies.orient.server.network.protocol.binary.OBinaryNetworkProtocolAbstract;
+import com.orientechnologies.orient.server.network.protocol.http.ONetworkProtocolHttpAbstract;
 import com.orientechnologies.orient.server.network.protocol.http.command.OServerCommand;
 
 public class OServerNetworkListener extends Thread {
@@ -49,18 +53,47 @@ public class OServerNetworkListener extends Thread {
   private OContextConfiguration             configuration;
   private OServer                           server;
   private ONetworkProtocol                  protocol;
+  private ONetworkDispatcher                dispatcher;
 
   public OServerNetworkListener(final OServer iServer, final String iHostName, final String iHostPortRange,
       final String iProtocolName, final Class<? extends ONetworkProtocol> iProtocol,
       final OServerParameterConfiguration[] iParameters, final OServerCommandConfiguration[] iCommands) {
     super(Orient.getThreadGroup(), "OrientDB " + iProtocol.getSimpleName() + " listen at " + iHostName + ":" + iHostPortRange);
     server = iServer;
-
-    listen(iHostName, iHostPortRange, iProtocolName);
     protocolType = iProtocol;
 
     readParameters(iServer.getContextConfiguration(), iParameters);
 
+    final String dispatchedProtocol;
+    final boolean nio;
+    if (OBinaryNetworkProtocolAbstract.class.isAssignableFrom(iProtocol)) {
+      dispatchedProtocol = "binary";
+      nio = configuration.getValueAsBoolean(OGlobalConfiguration.NETWORK_BINARY_NIO_ENABLED);
+    } else if (ONetworkProtocolHttpAbstract.class.isAssignableFrom(iProtocol)) {
+      dispatchedProtocol = "http";
+      nio = configuration.getValueAsBoolean(OGlobalConfiguration.NETWORK_HTTP_NIO_ENABLED);
+    } else {
+      dispatchedProtocol = null;
+      nio = false;
+    }
+
+    listen(iHostName, iHostPortRange, iProtocolName, nio);
+
+    if (nio)
+      try {
+        final boolean binary = "binary".equals(dispatchedProtocol);
+        dispatcher = new ONetworkDispatcher(dispatchedProtocol, iHostName + ":" + serverSocket.getLocalPort(),
+            configuration.getValueAsInteger(binary ? OGlobalConfiguration.NETWORK_BINARY_NIO_WORKERS
+                : OGlobalConfiguration.NETWORK_HTTP_NIO_WORKERS),
+            configuration.getValueAsInteger(binary ? OGlobalConfiguration.NETWORK_BINARY_NIO_QUEUE_SIZE
+                : OGlobalConfiguration.NETWORK_HTTP_NIO_QUEUE_SIZE),
+            // IDLE BINARY CONNECTIONS ARE KEPT OPEN AS BY THE THREAD PER CONNECTION MODEL
+            binary ? 0 : configuration.getValueAsInteger(OGlobalConfiguration.NETWORK_SOCKET_TIMEOUT));
+      } catch (IOException e) {
+        OLogManager.instance().error(this, "Unable to create dispatcher of %s connections", e, dispatchedProtocol);
+        System.exit(1);
+      }
+
     if (iCommands != null) {
       for (int i = 0; i < iCommands.length; ++i) {
         if (iCommands[i].stateful)
@@ -78,6 +111,9 @@ public class OServerNetworkListener extends Thread {
   public void shutdown() {
     this.active = false;
 
+    if (dispatcher != null)
+      dispatcher.shutdown();
+
     if (protocol != null) {
       protocol.sendShutdown();
       protocol = null;
@@ -95,14 +131,26 @@ public class OServerNetworkListener extends Thread {
    * 
    * @param iHostPortRange
    * @param iHostName
+   * @param iNIO
+   *          if true socket is created by {@link ServerSocketChannel}, so accepted sockets can be used with selector
    */
-  private void listen(final String iHostName, final String iHostPortRange, final String iProtocolName) {
+  private void listen(final String iHostName, final String iHostPortRange, final String iProtocolName, final boolean iNIO) {
     final int[] ports = getPorts(iHostPortRange);
 
     for (int port : ports) {
       inboundAddr = new InetSocketAddress(iHostName, port);
       try {
-        serverSocket = new java.net.ServerSocket(port, 0, InetAddress.getByName(iHostName));
+        if (iNIO) {
+          final ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+          try {
+            serverSocketChannel.socket().bind(new InetSocketAddress(InetAddress.getByName(iHostName), port), 0);
+          } catch (IOException e) {
+            serverSocketChannel.close();
+            throw e;
+          }
+          serverSocket = serverSocketChannel.socket();
+        } else
+          serverSocket = new java.net.ServerSocket(port, 0, InetAddress.getByName(iHostName));
 
         if (serverSocket.isBound()) {
           OLogManager.instance().info(
@@ -147,10 +195,17 @@ public class OServerNetworkListener extends Thread {
           // CREATE A NEW PROTOCOL INSTANCE
           protocol = protocolType.newInstance();
 
+          if (dispatcher != null)
+            protocol.setDispatcher(dispatcher);
+
           // CONFIGURE THE PROTOCOL FOR THE INCOMING CONNECTION
           protocol.config(server, socket, configuration, statelessCommands, statefulCommands);
 
         } catch (Throwable e) {
+          if (serverSocket.isClosed())
+            // THE CHANNEL OF A NIO LISTENER IS CLOSED ALSO BY THE INTERRUPTION OF THE SERVER THREADS ON SHUTDOWN
+            break;
+
           if (active)
             OLogManager.instance().error(this, "Error on client connection", e);
         } finally {
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.network.protocol;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.common.profiler.OProfiler.METRIC_TYPE;
+import com.orientechnologies.common.profiler.OProfiler.OProfilerHookValue;
+import com.orientechnologies.orient.core.Orient;
+
+/**
+ * Serves network connections without keeping a thread per connection. Idle connections are watched by single selector thread, as
+ * soon as data of the next request arrives connection is removed from selector and passed to bounded pool of worker threads. Worker
+ * reads and executes requests with the usual blocking {@link ONetworkProtocol#execute()} while there are buffered data, then
+ * connection is returned to the selector. So requests of single connection are still executed one by one and wire format of the
+ * protocol is not changed. Used by binary and HTTP listeners.
+ *
+ * If all workers are busy and queue of ready connections is full selector thread waits for a free worker, so clients are slowed
+ * down instead of server is running out of memory.
+ *
+ * Connections which wait for the next request longer than idle timeout are closed by selector thread, as connections served by own
+ * thread are closed on socket timeout.
+ *
+ * @since 17.10.13
+ */
+public class ONetworkDispatcher extends Thread {
+  private final Selector                selector;
+  private final ThreadPoolExecutor      workers;
+  private final Queue<ONetworkProtocol> pendingRegistrations = new ConcurrentLinkedQueue<ONetworkProtocol>();
+  private final String                  protocolName;
+  private final String                  profilerPrefix;
+  private final long                    idleTimeout;
+  private final long                    idleCheckInterval;
+  private long                          lastIdleCheck;
+  private volatile boolean              active               = true;
+
+  /**
+   * @param iProtocolName
+   *          Name of the served protocol, as "binary" or "http". Used in names of threads and metrics
+   * @param iIdleTimeout
+   *          Time in ms after which connection which does not send the next request is closed, 0 means connections are never closed
+   */
+  public ONetworkDispatcher(final String iProtocolName, final String iName, final int iWorkers, final int iQueueSize,
+      final int iIdleTimeout) throws IOException {
+    super(Orient.getThreadGroup(), "OrientDB " + iProtocolName + " dispatcher " + iName);
+    protocolName = iProtocolName;
+    idleTimeout = iIdleTimeout;
+    // IDLE CONNECTIONS ARE CLOSED AT MOST 10% LATER THAN THE TIMEOUT
+    idleCheckInterval = Math.max(iIdleTimeout / 10, 1);
+    setDaemon(true);
+
+    selector = Selector.open();
+
+    final ThreadGroup threadGroup = Orient.getThreadGroup();
+    final String threadNamePrefix = "OrientDB " + iProtocolName + " worker " + iName + " #";
+    workers = new ThreadPoolExecutor(iWorkers, iWorkers, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(iQueueSize),
+        new ThreadFactory() {
+          private final AtomicInteger counter = new AtomicInteger();
+
+          public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(threadGroup, r, threadNamePrefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        }, new RejectedExecutionHandler() {
+          public void rejectedExecution(final Runnable r, final ThreadPoolExecutor executor) {
+            if (executor.isShutdown())
+              throw new RejectedExecutionException("Dispatcher " + getName() + " is shut down");
+
+            try {
+              // WAIT FOR A FREE WORKER
+              executor.getQueue().put(r);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              throw new RejectedExecutionException("Dispatcher " + getName() + " was interrupted", e);
+            }
+          }
+        });
+
+    profilerPrefix = "server.network." + iProtocolName + "." + iName + ".";
+    Orient.instance().getProfiler()
+        .registerHookValue(profilerPrefix + "queuedConnections", "Number of connections which wait for a free worker thread",
+            METRIC_TYPE.SIZE, new OProfilerHookValue() {
+              public Object getValue() {
+                return workers.getQueue().size();
+              }
+            }, "server.network." + iProtocolName + ".*.queuedConnections");
+    Orient.instance().getProfiler()
+        .registerHookValue(profilerPrefix + "activeWorkers", "Number of worker threads which execute requests", METRIC_TYPE.SIZE,
+            new OProfilerHookValue() {
+              public Object getValue() {
+                return workers.getActiveCount();
+              }
+            }, "server.network." + iProtocolName + ".*.activeWorkers");
+
+    start();
+  }
+
+  /**
+   * Starts to watch connection for incoming requests. Can be called by any thread.
+   */
+  public void register(final ONetworkProtocol iProtocol) {
+    if (!active) {
+      iProtocol.sendShutdown();
+      return;
+    }
+
+    pendingRegistrations.add(iProtocol);
+    selector.wakeup();
+  }
+
+  public void shutdown() {
+    active = false;
+    selector.wakeup();
+
+    workers.shutdown();
+
+    Orient.instance().getProfiler().unregisterHookValue(profilerPrefix + "queuedConnections");
+    Orient.instance().getProfiler().unregisterHookValue(profilerPrefix + "activeWorkers");
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (active) {
+        try {
+          selector.select(idleTimeout > 0 ? idleCheckInterval : 0);
+
+          registerPendingConnections();
+
+          while (active && !selector.selectedKeys().isEmpty())
+            dispatchReadyConnections();
+
+          if (idleTimeout > 0)
+            closeIdleConnections();
+
+        } catch (Throwable t) {
+          if (active)
+            OLogManager.instance().error(this, "Error on dispatching of %s connections", t, protocolName);
+        }
+      }
+    } finally {
+      closeConnections();
+    }
+  }
+
+  private void registerPendingConnections() {
+    ONetworkProtocol protocol;
+    while ((protocol = pendingRegistrations.poll()) != null) {
+      final SocketChannel socketChannel = protocol.getSocketChannel();
+      try {
+        socketChannel.configureBlocking(false);
+        socketChannel.register(selector, SelectionKey.OP_READ, protocol);
+      } catch (IOException e) {
+        OLogManager.instance().debug(this, "Cannot register %s connection %s", e, protocolName, socketChannel);
+        protocol.sendShutdown();
+      }
+    }
+  }
+
+  private void dispatchReadyConnections() throws IOException {
+    final Set<SelectionKey> selectedKeys = selector.selectedKeys();
+    final List<ONetworkProtocol> readyConnections = new ArrayList<ONetworkProtocol>(selectedKeys.size());
+
+    for (SelectionKey key : selectedKeys) {
+      key.cancel();
+      readyConnections.add((ONetworkProtocol) key.attachment());
+    }
+    selectedKeys.clear();
+
+    // DEREGISTER CANCELLED KEYS, OTHERWISE CHANNELS CAN NOT BE SWITCHED TO BLOCKING MODE
+    selector.selectNow();
+
+    for (final ONetworkProtocol protocol : readyConnections) {
+      try {
+        protocol.getSocketChannel().configureBlocking(true);
+      } catch (IOException e) {
+        OLogManager.instance().debug(this, "Cannot dispatch %s connection %s", e, protocolName,
+            protocol.getSocketChannel());
+        protocol.sendShutdown();
+        continue;
+      }
+
+      try {
+        workers.execute(new Runnable() {
+          public void run() {
+            if (protocol.executeReceivedRequests())
+              register(protocol);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        protocol.sendShutdown();
+      }
+    }
+  }
+
+  private void closeIdleConnections() {
+    final long now = System.currentTimeMillis();
+    if (now - lastIdleCheck < idleCheckInterval)
+      return;
+    lastIdleCheck = now;
+
+    for (SelectionKey key : selector.keys()) {
+      final ONetworkProtocol protocol = (ONetworkProtocol) key.attachment();
+      if (key.isValid() && now - protocol.getLastActivity() > idleTimeout) {
+        key.cancel();
+        OLogManager.instance().debug(this, "Closing %s connection %s idle for more than %dms", protocolName,
+            protocol.getSocketChannel(), idleTimeout);
+        protocol.sendShutdown();
+      }
+    }
+  }
+
+  private void closeConnections() {
+    try {
+      for (SelectionKey key : new ArrayList<SelectionKey>(selector.keys()))
+        ((ONetworkProtocol) key.attachment()).sendShutdown();
+
+      ONetworkProtocol protocol;
+      while ((protocol = pendingRegistrations.poll()) != null)
+        protocol.sendShutdown();
+
+      selector.close();
+    } catch (Exception e) {
+      OLogManager.instance().debug(this, "Error on closing of %s dispatcher", e, protocolName);
+    }
+  }
+}
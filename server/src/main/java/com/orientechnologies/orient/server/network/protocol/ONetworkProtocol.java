@@ -17,15 +17,24 @@ package com.orientechnologies.orient.server.network.protocol;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.common.thread.OSoftThread;
 import com.orientechnologies.orient.core.config.OContextConfiguration;
 import com.orientechnologies.orient.enterprise.channel.OChannel;
 import com.orientechnologies.orient.server.OServer;
 
 public abstract class ONetworkProtocol extends OSoftThread {
-  protected OServer server;
+  protected OServer           server;
+
+  private ONetworkDispatcher  dispatcher;
+  private volatile Thread     worker;
+  private volatile boolean    shutdownRequested;
+  private volatile long       lastActivity;
+  private final AtomicBoolean closed = new AtomicBoolean(false);
 
   public ONetworkProtocol(ThreadGroup group, String name) {
     super(group, name);
@@ -48,4 +57,103 @@ public abstract class ONetworkProtocol extends OSoftThread {
   public OServer getServer() {
     return server;
   }
+
+  /**
+   * Makes connection to be served by dispatcher worker threads instead of own thread. Should be called before
+   * {@link #config(OServer, Socket, OContextConfiguration, List, List)}, socket of connection should have channel.
+   */
+  public void setDispatcher(final ONetworkDispatcher iDispatcher) {
+    dispatcher = iDispatcher;
+  }
+
+  /**
+   * Starts own thread of connection or, if connection is served by dispatcher, registers it to wait for requests.
+   */
+  protected void startRequestProcessing() {
+    if (dispatcher == null) {
+      start();
+      return;
+    }
+
+    startup();
+    lastActivity = System.currentTimeMillis();
+    dispatcher.register(this);
+  }
+
+  /**
+   * Executes requests which are already received by dispatched connection. Method returns when there is no buffered data left, so
+   * next request has to be awaited by dispatcher.
+   * 
+   * @return true if connection is still open and should be registered in dispatcher again.
+   */
+  boolean executeReceivedRequests() {
+    worker = Thread.currentThread();
+    try {
+      do {
+        beforeExecution();
+        try {
+          execute();
+        } finally {
+          // RELEASE THE THREAD LOCALS OF THE CONNECTION, THE WORKER SERVES OTHER CONNECTIONS AS WELL
+          afterExecution();
+        }
+      } while (!shutdownRequested && getChannel().inStream.available() > 0);
+    } catch (Throwable t) {
+      OLogManager.instance().debug(this, "Error on execution of request of %s connection", t, getType());
+      shutdownRequested = true;
+    } finally {
+      worker = null;
+      // DO NOT LEAK INTERRUPTION TO THE REQUESTS OF OTHER CONNECTIONS
+      Thread.interrupted();
+    }
+
+    if (shutdownRequested) {
+      close();
+      return false;
+    }
+
+    lastActivity = System.currentTimeMillis();
+    return true;
+  }
+
+  /**
+   * @return Time when dispatched connection started to wait for the next request.
+   */
+  long getLastActivity() {
+    return lastActivity;
+  }
+
+  SocketChannel getSocketChannel() {
+    return getChannel().socket.getChannel();
+  }
+
+  @Override
+  public void sendShutdown() {
+    if (dispatcher == null) {
+      super.sendShutdown();
+      return;
+    }
+
+    shutdownRequested = true;
+    if (worker == null)
+      // CONNECTION IS IDLE, OTHERWISE IT IS CLOSED BY WORKER AFTER THE CURRENT REQUEST
+      close();
+  }
+
+  @Override
+  public void interrupt() {
+    if (dispatcher == null) {
+      super.interrupt();
+      return;
+    }
+
+    final Thread currentWorker = worker;
+    if (currentWorker != null)
+      currentWorker.interrupt();
+  }
+
+  private void close() {
+    if (closed.compareAndSet(false, true))
+      shutdown();
+  }
 }
@@ -24,6 +24,7 @@ import java.util.logging.Level;
 import com.orientechnologies.common.concur.lock.OLockException;
 import com.orientechnologies.common.exception.OException;
 import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.common.profiler.OProfilerChrono;
 import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.config.OContextConfiguration;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
@@ -62,9 +63,13 @@ import com.orientechnologies.orient.server.network.protocol.ONetworkProtocol;
  * 
  */
 public abstract class OBinaryNetworkProtocolAbstract extends ONetworkProtocol {
+  private static final OProfilerChrono REQUESTS_CHRONO = Orient.instance().getProfiler()
+      .registerChrono("server.network.requests", "Total received requests", "server.network.requests");
+
   protected OChannelBinaryServer channel;
   protected int                  requestType;
   protected int                  clientTxId;
+  protected int                  requestId;
   private final Level            logClientExceptions;
   private final boolean          logClientFullStackTrace;
 
@@ -110,6 +115,7 @@ public abstract class OBinaryNetworkProtocolAbstract extends ONetworkProtocol {
     requestType = -1;
 
     clientTxId = 0;
+    requestId = OChannelBinaryProtocol.NO_REQUEST_ID;
 
     final long timer = Orient.instance().getProfiler().startChrono();
 
@@ -117,6 +123,12 @@ public abstract class OBinaryNetworkProtocolAbstract extends ONetworkProtocol {
       requestType = channel.readByte();
       clientTxId = channel.readInt();
 
+      if ((requestType & OChannelBinaryProtocol.REQUEST_ID_FLAG) != 0) {
+        // PIPELINED REQUEST: RESPONSE WILL CARRY THE SAME REQUEST ID
+        requestType &= ~OChannelBinaryProtocol.REQUEST_ID_FLAG;
+        requestId = channel.readInt();
+      }
+
       onBeforeRequest();
 
       try {
@@ -139,7 +151,7 @@ public abstract class OBinaryNetworkProtocolAbstract extends ONetworkProtocol {
     } catch (Throwable t) {
       sendError(clientTxId, t);
     } finally {
-      Orient.instance().getProfiler().stopChrono("server.network.requests", "Total received requests", timer);
+      REQUESTS_CHRONO.stop(timer);
 
       OSerializationThreadLocal.INSTANCE.get().clear();
     }
@@ -156,34 +168,52 @@ public abstract class OBinaryNetworkProtocolAbstract extends ONetworkProtocol {
   }
 
   protected void sendOk(final int iClientTxId) throws IOException {
-    channel.writeByte(OChannelBinaryProtocol.RESPONSE_STATUS_OK);
-    channel.writeInt(iClientTxId);
+    sendResponseHeader(OChannelBinaryProtocol.RESPONSE_STATUS_OK, iClientTxId);
   }
 
-  protected void sendError(final int iClientTxId, final Throwable t) throws IOException {
-    channel.acquireExclusiveLock();
-
-    try {
-      channel.writeByte(OChannelBinaryProtocol.RESPONSE_STATUS_ERROR);
+  /**
+   * Writes status and session id of response, request id is written too if client sent it with request.
+   */
+  protected void sendResponseHeader(final byte iStatus, final int iClientTxId) throws IOException {
+    if (requestId == OChannelBinaryProtocol.NO_REQUEST_ID) {
+      channel.writeByte(iStatus);
       channel.writeInt(iClientTxId);
+    } else {
+      channel.writeByte((byte) (iStatus | OChannelBinaryProtocol.REQUEST_ID_FLAG));
+      channel.writeInt(iClientTxId);
+      channel.writeInt(requestId);
+    }
+  }
 
-      Throwable current;
-      if (t instanceof OLockException && t.getCause() instanceof ODatabaseException)
-        // BYPASS THE DB POOL EXCEPTION TO PROPAGATE THE RIGHT SECURITY ONE
-        current = t.getCause();
-      else
-        current = t;
-
-      while (current != null) {
-        // MORE DETAILS ARE COMING AS EXCEPTION
-        channel.writeByte((byte) 1);
+  /**
+   * Writes the chain of exception causes, client rebuilds and throws it.
+   */
+  protected void writeException(final Throwable t) throws IOException {
+    Throwable current;
+    if (t instanceof OLockException && t.getCause() instanceof ODatabaseException)
+      // BYPASS THE DB POOL EXCEPTION TO PROPAGATE THE RIGHT SECURITY ONE
+      current = t.getCause();
+    else
+      current = t;
+
+    while (current != null) {
+      // MORE DETAILS ARE COMING AS EXCEPTION
+      channel.writeByte((byte) 1);
+
+      channel.writeString(current.getClass().getName());
+      channel.writeString(current != null ? current.getMessage() : null);
+
+      current = current.getCause();
+    }
+    channel.writeByte((byte) 0);
+  }
 
-        channel.writeString(current.getClass().getName());
-        channel.writeString(current != null ? current.getMessage() : null);
+  protected void sendError(final int iClientTxId, final Throwable t) throws IOException {
+    channel.acquireExclusiveLock();
 
-        current = current.getCause();
-      }
-      channel.writeByte((byte) 0);
+    try {
+      sendResponseHeader(OChannelBinaryProtocol.RESPONSE_STATUS_ERROR, iClientTxId);
+      writeException(t);
 
       channel.flush();
 
@@ -17,6 +17,7 @@ package com.orientechnologies.orient.server.network.protocol.binary;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -108,7 +109,7 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
     channel.writeShort((short) OChannelBinaryProtocol.CURRENT_PROTOCOL_VERSION);
 
     channel.flush();
-    start();
+    startRequestProcessing();
 
     setName("OrientDB <- BinaryClient (" + iSocket.getRemoteSocketAddress() + ")");
   }
@@ -268,6 +269,10 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
       readRecord();
       break;
 
+    case OChannelBinaryProtocol.REQUEST_RECORD_LOAD_BATCH:
+      readRecords();
+      break;
+
     case OChannelBinaryProtocol.REQUEST_RECORD_CREATE:
       createRecord();
       break;
@@ -1107,10 +1112,13 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
   protected void command() throws IOException {
     setDataCommandInfo("Execute remote command");
 
-    final boolean asynch = channel.readByte() == 'a';
+    final byte mode = channel.readByte();
+    final boolean asynch = mode == 'a';
+    final boolean cursor = mode == 'c';
 
     final OCommandRequestText command = (OCommandRequestText) OStreamSerializerAnyStreamable.INSTANCE.fromStream(channel
         .readBytes());
+    final int chunkSize = cursor ? channel.readInt() : 0;
 
     connection.data.commandDetail = command.getText();
 
@@ -1118,19 +1126,35 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
     // connection.database.getLevel1Cache().setEnable(true);
     beginResponse();
     try {
-      if (asynch) {
+      if (cursor) {
+        // CURSOR: SEND THE RESULT IN CHUNKS, EACH ONE ON CLIENT'S REQUEST
+        final CursorResultListener listener = new CursorResultListener(clientTxId, chunkSize,
+            OFetchHelper.buildFetchPlan(command.getFetchPlan()));
+        command.setResultListener(listener);
+        applyServerTimeout(command);
+
+        try {
+          ((OCommandRequestInternal) connection.database.command(command)).execute();
+        } catch (RuntimeException e) {
+          if (!listener.isStarted())
+            throw e;
+
+          // THE RESPONSE IS ALREADY STARTED: SEND THE ERROR AS PART OF THE STREAM
+          channel.writeByte(OChannelBinaryProtocol.QUERY_CURSOR_ERROR);
+          writeException(e);
+          return;
+        }
+
+        listener.endResult();
+
+      } else if (asynch) {
         // ASYNCHRONOUS
         final AtomicBoolean empty = new AtomicBoolean(true);
         final Set<ODocument> recordsToSend = new HashSet<ODocument>();
 
         final Map<String, Integer> fetchPlan = command != null ? OFetchHelper.buildFetchPlan(command.getFetchPlan()) : null;
         command.setResultListener(new AsyncResultListener(empty, clientTxId, fetchPlan, recordsToSend));
-
-        final long serverTimeout = OGlobalConfiguration.COMMAND_TIMEOUT.getValueAsLong();
-
-        if (serverTimeout > 0 && command.getTimeoutTime() > serverTimeout)
-          // FORCE THE SERVER'S TIMEOUT
-          command.setTimeout(serverTimeout, command.getTimeoutStrategy());
+        applyServerTimeout(command);
 
         ((OCommandRequestInternal) connection.database.command(command)).execute();
 
@@ -1182,6 +1206,14 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
     }
   }
 
+  private void applyServerTimeout(final OCommandRequestText command) {
+    final long serverTimeout = OGlobalConfiguration.COMMAND_TIMEOUT.getValueAsLong();
+
+    if (serverTimeout > 0 && command.getTimeoutTime() > serverTimeout)
+      // FORCE THE SERVER'S TIMEOUT
+      command.setTimeout(serverTimeout, command.getTimeoutStrategy());
+  }
+
   /**
    * Use DATACLUSTER_COUNT
    * 
@@ -1346,10 +1378,7 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
       beginResponse();
       try {
         sendOk(clientTxId);
-        channel.writeByte((byte) 1);
-        channel.writeBytes(connection.database.getStorage().getConfiguration().toStream());
-        channel.writeVersion(OVersionFactory.instance().createVersion());
-        channel.writeByte(ORecordBytes.RECORD_TYPE);
+        writeConfigurationRecord();
         channel.writeByte((byte) 0); // NO MORE RECORDS
       } finally {
         endResponse();
@@ -1400,6 +1429,87 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
     }
   }
 
+  /**
+   * Writes the storage configuration as the content of the record #0:0.
+   */
+  private void writeConfigurationRecord() throws IOException {
+    channel.writeByte((byte) 1); // HAS RECORD
+    channel.writeBytes(connection.database.getStorage().getConfiguration().toStream());
+    channel.writeVersion(OVersionFactory.instance().createVersion());
+    channel.writeByte(ORecordBytes.RECORD_TYPE);
+  }
+
+  /**
+   * Loads many records requested at once. Records are written as soon as they are loaded, in the same order of requested ids,
+   * followed by the records collected by fetch plan.
+   */
+  protected void readRecords() throws IOException {
+    setDataCommandInfo("Load records");
+
+    final int count = channel.readInt();
+    final List<ORecordId> rids = new ArrayList<ORecordId>(count);
+    for (int i = 0; i < count; ++i)
+      rids.add(channel.readRID());
+    final String fetchPlanString = channel.readString();
+    final boolean ignoreCache = channel.readByte() == 1;
+
+    OFetchHelper.checkFetchPlanValid(fetchPlanString);
+    final Map<String, Integer> fetchPlan = fetchPlanString.length() > 0 ? OFetchHelper.buildFetchPlan(fetchPlanString) : null;
+    final Set<ODocument> recordsToSend = new HashSet<ODocument>();
+
+    beginResponse();
+    try {
+      sendOk(clientTxId);
+
+      try {
+        for (ORecordId rid : rids) {
+          if (rid.clusterId == 0 && rid.clusterPosition.longValue() == 0) {
+            // @COMPATIBILITY 0.9.25
+            // SEND THE DB CONFIGURATION INSTEAD SINCE IT WAS ON RECORD 0:0
+            writeConfigurationRecord();
+            continue;
+          }
+
+          final ORecordInternal<?> record = connection.database.load(rid, fetchPlanString, ignoreCache, false);
+
+          if (record != null) {
+            channel.writeByte((byte) 1); // HAS RECORD
+            channel.writeBytes(record.toStream());
+            channel.writeVersion(record.getRecordVersion());
+            channel.writeByte(record.getRecordType());
+
+            if (fetchPlan != null && record instanceof ODocument) {
+              final ODocument doc = (ODocument) record;
+              OFetchHelper.fetch(doc, doc, fetchPlan, new ORemoteFetchListener(recordsToSend), new ORemoteFetchContext());
+            }
+          } else
+            channel.writeByte((byte) 0); // NOT FOUND
+        }
+      } catch (IOException e) {
+        throw e;
+      } catch (Exception e) {
+        // RESPONSE IS ALREADY STARTED: SEND THE ERROR IN PLACE OF THE NEXT RECORD
+        OLogManager.instance().debug(this, "Error on loading records", e);
+        channel.writeByte(OChannelBinaryProtocol.RECORD_LOAD_BATCH_ERROR);
+        writeException(e);
+        return;
+      }
+
+      // SEND RECORDS TO LOAD IN CLIENT CACHE
+      for (ODocument d : recordsToSend) {
+        if (d.getIdentity().isValid()) {
+          channel.writeByte((byte) 2); // CLIENT CACHE
+          // RECORD. IT ISN'T PART OF THE RESULT SET
+          writeIdentifiable(d);
+        }
+      }
+      channel.writeByte((byte) 0); // NO MORE RECORDS
+
+    } finally {
+      endResponse();
+    }
+  }
+
   protected void endResponse() throws IOException {
     channel.flush();
     channel.releaseExclusiveLock();
@@ -1463,11 +1573,6 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
     OClientConnectionManager.instance().disconnect(connection);
   }
 
-  protected void sendOk(final int iClientTxId) throws IOException {
-    channel.writeByte(OChannelBinaryProtocol.RESPONSE_STATUS_OK);
-    channel.writeInt(iClientTxId);
-  }
-
   private void listDatabases() throws IOException {
     checkServerAccess("server.dblist");
     final ODocument result = new ODocument();
@@ -1674,4 +1779,93 @@ public class ONetworkProtocolBinary extends OBinaryNetworkProtocolAbstract {
     }
 
   }
+
+  /**
+   * Sends results of cursor command. After each chunk of records it flushes the channel and blocks until the client asks for the
+   * next chunk, so the command is executed only as fast as the client consumes its result. If the client disconnects or does not
+   * answer within {@link OGlobalConfiguration#NETWORK_BINARY_CURSOR_TIMEOUT} the command is stopped and the connection is closed.
+   */
+  public class CursorResultListener implements OCommandResultListener {
+    private final int                  txId;
+    private final int                  chunkSize;
+    private final Map<String, Integer> fetchPlan;
+    private final Set<ODocument>       recordsToSend = new HashSet<ODocument>();
+    private boolean                    started;
+    private int                        chunkRecords;
+    private IOException                ioException;
+
+    public CursorResultListener(final int txId, final int chunkSize, final Map<String, Integer> fetchPlan) {
+      this.txId = txId;
+      this.chunkSize = chunkSize > 0 ? chunkSize : 1;
+      this.fetchPlan = fetchPlan;
+    }
+
+    @Override
+    public boolean result(final Object iRecord) {
+      try {
+        start();
+
+        channel.writeByte((byte) 1); // ONE MORE RECORD
+        writeIdentifiable((ORecordInternal<?>) ((OIdentifiable) iRecord).getRecord());
+
+        if (fetchPlan != null && iRecord instanceof ODocument) {
+          final ODocument doc = (ODocument) iRecord;
+          OFetchHelper.fetch(doc, iRecord, fetchPlan, new ORemoteFetchListener(recordsToSend), new ORemoteFetchContext());
+        }
+
+        if (++chunkRecords < chunkSize)
+          return true;
+
+        chunkRecords = 0;
+        sendRecordsToCache();
+        channel.writeByte(OChannelBinaryProtocol.QUERY_CURSOR_CHUNK_END);
+        channel.flush();
+
+        // WAIT FOR THE CLIENT: 1 = NEXT CHUNK, 0 = STOP
+        final int soTimeout = channel.socket.getSoTimeout();
+        channel.socket.setSoTimeout(OGlobalConfiguration.NETWORK_BINARY_CURSOR_TIMEOUT.getValueAsInteger());
+        try {
+          return channel.readByte() == 1;
+        } finally {
+          channel.socket.setSoTimeout(soTimeout);
+        }
+
+      } catch (IOException e) {
+        ioException = e;
+        return false;
+      }
+    }
+
+    @Override
+    public void end() {
+    }
+
+    public boolean isStarted() {
+      return started;
+    }
+
+    public void endResult() throws IOException {
+      if (ioException != null)
+        throw ioException;
+
+      start();
+      sendRecordsToCache();
+      channel.writeByte((byte) 0); // NO MORE RECORDS
+    }
+
+    private void start() throws IOException {
+      if (!started) {
+        started = true;
+        sendOk(txId);
+      }
+    }
+
+    private void sendRecordsToCache() throws IOException {
+      for (ODocument doc : recordsToSend) {
+        channel.writeByte((byte) 2); // CLIENT CACHE RECORD. IT ISN'T PART OF THE RESULT SET
+        writeIdentifiable(doc);
+      }
+      recordsToSend.clear();
+    }
+  }
 }
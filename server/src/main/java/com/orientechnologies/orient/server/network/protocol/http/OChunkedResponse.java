@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.network.protocol.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.orientechnologies.orient.core.serialization.OBinaryProtocol;
+
+/**
+ * Writes the body of an HTTP response with the chunked transfer encoding, so the content can be sent while it is produced without
+ * knowing its length in advance. Content is collected in a fixed buffer that is sent as one chunk when full. Closing the stream sends
+ * the last chunk and the end of the body, but leaves the connection open.
+ * 
+ * @since 17.10.13
+ */
+public class OChunkedResponse extends OutputStream {
+  public static final int    DEFAULT_CHUNK_SIZE = 32 * 1024;
+
+  private static final byte[] LAST_CHUNK        = { (byte) '0', (byte) '\r', (byte) '\n', (byte) '\r', (byte) '\n' };
+
+  private final OutputStream out;
+  private final byte[]       buffer;
+  private int                bufferSize;
+  private boolean            closed;
+
+  public OChunkedResponse(final OutputStream iOutput) {
+    this(iOutput, DEFAULT_CHUNK_SIZE);
+  }
+
+  public OChunkedResponse(final OutputStream iOutput, final int iChunkSize) {
+    out = iOutput;
+    buffer = new byte[iChunkSize];
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    if (bufferSize == buffer.length)
+      writeChunk();
+    buffer[bufferSize++] = (byte) b;
+  }
+
+  @Override
+  public void write(final byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      if (bufferSize == buffer.length)
+        writeChunk();
+
+      final int toCopy = Math.min(len, buffer.length - bufferSize);
+      System.arraycopy(b, off, buffer, bufferSize, toCopy);
+      bufferSize += toCopy;
+      off += toCopy;
+      len -= toCopy;
+    }
+  }
+
+  /**
+   * Sends the content collected so far as a chunk.
+   */
+  @Override
+  public void flush() throws IOException {
+    writeChunk();
+    out.flush();
+  }
+
+  /**
+   * Sends the remaining content and the last, empty, chunk. The underlying stream is not closed.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed)
+      return;
+    closed = true;
+
+    writeChunk();
+    out.write(LAST_CHUNK);
+    out.flush();
+  }
+
+  private void writeChunk() throws IOException {
+    if (bufferSize == 0)
+      return;
+
+    out.write(OBinaryProtocol.string2bytes(Integer.toHexString(bufferSize)));
+    out.write(OHttpUtils.EOL);
+    out.write(buffer, 0, bufferSize);
+    out.write(OHttpUtils.EOL);
+    bufferSize = 0;
+  }
+}
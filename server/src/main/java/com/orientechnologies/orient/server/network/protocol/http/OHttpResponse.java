@@ -16,10 +16,13 @@
 package com.orientechnologies.orient.server.network.protocol.http;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FilterWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
@@ -29,6 +32,7 @@ import java.util.zip.GZIPOutputStream;
 
 import com.orientechnologies.common.collection.OMultiValue;
 import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.record.ORecord;
 import com.orientechnologies.orient.core.record.impl.ODocument;
@@ -36,7 +40,8 @@ import com.orientechnologies.orient.core.serialization.OBinaryProtocol;
 import com.orientechnologies.orient.core.serialization.serializer.OJSONWriter;
 
 /**
- * Maintains information about current HTTP response.
+ * Maintains information about current HTTP response. Records are streamed to HTTP/1.1 clients with the chunked transfer encoding,
+ * compressed on the fly when the client accepts gzip, so the response is never held in memory.
  * 
  * @author Luca Garulli
  * 
@@ -44,6 +49,7 @@ import com.orientechnologies.orient.core.serialization.serializer.OJSONWriter;
 public class OHttpResponse {
   public static final String JSON_FORMAT   = "type,indent:-1,rid,version,attribSameRow,class";
   public static final char[] URL_SEPARATOR = { '/' };
+  public static final String HTTP_1_1      = "HTTP/1.1";
 
   private final OutputStream out;
   public final String        httpVersion;
@@ -99,13 +105,11 @@ public class OHttpResponse {
     if (iHeaders != null)
       writeLine(iHeaders);
 
-    final String sessId = sessionId != null ? sessionId : "-";
-
-    writeLine("Set-Cookie: " + OHttpUtils.OSESSIONID + "=" + sessId + "; Path=/; HttpOnly");
+    writeSessionCookie();
 
     byte[] binaryContent = null;
     if (!empty) {
-      if (contentEncoding != null && contentEncoding.equals(OHttpUtils.CONTENT_ACCEPT_GZIP_ENCODED))
+      if (isGzipEncoded())
         binaryContent = compress(content);
       else
         binaryContent = OBinaryProtocol.string2bytes(content);
@@ -120,6 +124,52 @@ public class OHttpResponse {
     out.flush();
   }
 
+  /**
+   * Sends the content as a sequence of chunks while it is written to the returned writer. Closing the writer completes the response.
+   * If the writer is not closed because of an error the response is left incomplete, so the client can tell it was truncated.
+   */
+  public Writer sendChunked(final int iCode, final String iReason, final String iContentType, final String iHeaders)
+      throws IOException {
+    sendStarted = true;
+
+    final String contentType = callbackFunction != null ? OHttpUtils.CONTENT_JAVASCRIPT : iContentType;
+
+    writeStatus(iCode, iReason);
+    writeHeaders(contentType, true);
+
+    if (iHeaders != null)
+      writeLine(iHeaders);
+
+    writeSessionCookie();
+    writeLine(OHttpUtils.HEADER_TRANSFER_ENCODING + OHttpUtils.TRANSFER_ENCODING_CHUNKED);
+    writeLine(null);
+
+    final OChunkedResponse chunked = new OChunkedResponse(out);
+    final OutputStream body = isGzipEncoded() ? new GZIPOutputStream(chunked, OChunkedResponse.DEFAULT_CHUNK_SIZE) : chunked;
+    final Writer writer = new OutputStreamWriter(body, "UTF-8");
+
+    if (callbackFunction == null)
+      return writer;
+
+    // WRAP THE CONTENT IN THE JSONP CALLBACK
+    writer.write(callbackFunction);
+    writer.write('(');
+    return new FilterWriter(writer) {
+      @Override
+      public void close() throws IOException {
+        out.write(')');
+        super.close();
+      }
+    };
+  }
+
+  /**
+   * Tells if the response can be sent with the chunked transfer encoding.
+   */
+  public boolean isStreamingSupported() {
+    return HTTP_1_1.equalsIgnoreCase(httpVersion) && OGlobalConfiguration.NETWORK_HTTP_STREAMING.getValueAsBoolean();
+  }
+
   public void writeStatus(final int iStatus, final String iReason) throws IOException {
     writeLine(httpVersion + " " + iStatus + " " + iReason);
   }
@@ -148,6 +198,11 @@ public class OHttpResponse {
         writeLine(h);
   }
 
+  public void writeSessionCookie() throws IOException {
+    final String sessId = sessionId != null ? sessionId : "-";
+    writeLine("Set-Cookie: " + OHttpUtils.OSESSIONID + "=" + sessId + "; Path=/; HttpOnly");
+  }
+
   public void writeLine(final String iContent) throws IOException {
     writeContent(iContent);
     out.write(OHttpUtils.EOL);
@@ -222,23 +277,40 @@ public class OHttpResponse {
     if (iFormat == null)
       iFormat = JSON_FORMAT;
 
+    final String format = iFetchPlan != null ? iFormat + ",fetchPlan:" + iFetchPlan : iFormat;
+
+    if (isStreamingSupported()) {
+      if (sendStarted)
+        // AVOID TO SEND RESPONSE TWICE
+        return;
+
+      final Writer writer = sendChunked(OHttpUtils.STATUS_OK_CODE, "OK", OHttpUtils.CONTENT_JSON, null);
+      writeRecords(writer, iRecords, iFormat, format);
+      // CLOSE ONLY ON SUCCESS: AN ERROR LEAVES THE BODY WITHOUT THE LAST CHUNK
+      writer.close();
+      return;
+    }
+
     final StringWriter buffer = new StringWriter();
-    final OJSONWriter json = new OJSONWriter(buffer, iFormat);
-    json.beginObject();
+    writeRecords(buffer, iRecords, iFormat, format);
 
-    final String format = iFetchPlan != null ? iFormat + ",fetchPlan:" + iFetchPlan : iFormat;
+    send(OHttpUtils.STATUS_OK_CODE, "OK", OHttpUtils.CONTENT_JSON, buffer.toString(), null);
+  }
+
+  protected void writeRecords(final Writer iWriter, final Iterator<OIdentifiable> iRecords, final String iJsonFormat,
+      final String iRecordFormat) throws IOException {
+    final OJSONWriter json = new OJSONWriter(iWriter, iJsonFormat);
+    json.beginObject();
 
     // WRITE RECORDS
     json.beginCollection(-1, true, "result");
-    formatMultiValue(iRecords, buffer, format);
+    formatMultiValue(iRecords, iWriter, iRecordFormat);
     json.endCollection(-1, true);
 
     json.endObject();
-
-    send(OHttpUtils.STATUS_OK_CODE, "OK", OHttpUtils.CONTENT_JSON, buffer.toString(), null);
   }
 
-  public void formatMultiValue(final Iterator<?> iIterator, final StringWriter buffer, final String format) throws IOException {
+  public void formatMultiValue(final Iterator<?> iIterator, final Writer buffer, final String format) throws IOException {
     if (iIterator != null) {
       int counter = 0;
       String objectJson;
@@ -349,6 +421,10 @@ public class OHttpResponse {
     this.contentType = contentType;
   }
 
+  protected boolean isGzipEncoded() {
+    return contentEncoding != null && contentEncoding.equals(OHttpUtils.CONTENT_ACCEPT_GZIP_ENCODED);
+  }
+
   public String getContentEncoding() {
     return contentEncoding;
   }
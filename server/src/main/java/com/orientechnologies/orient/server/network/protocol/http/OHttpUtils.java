@@ -44,6 +44,9 @@ public class OHttpUtils {
 	public static final String	HEADER_X_FORWARDED_FOR							= "X-Forwarded-For: ";
 	public static final String	HEADER_AUTHENTICATION								= "OAuthentication: ";
 	public static final String  HEADER_CONTENT_ENCODING                             = "Accept-Encoding: ";
+	public static final String	HEADER_TRANSFER_ENCODING						= "Transfer-Encoding: ";
+
+	public static final String	TRANSFER_ENCODING_CHUNKED						= "chunked";
 
 	public static final String	AUTHORIZATION_BASIC									= "Basic";
 	public static final String	OSESSIONID													= "OSESSIONID";
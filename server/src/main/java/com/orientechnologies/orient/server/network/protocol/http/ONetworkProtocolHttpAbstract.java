@@ -17,6 +17,7 @@ package com.orientechnologies.orient.server.network.protocol.http;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.net.Socket;
 import java.net.SocketException;
@@ -63,7 +64,7 @@ public abstract class ONetworkProtocolHttpAbstract extends ONetworkProtocol {
   protected OHttpRequest                      request;
   protected OHttpResponse                     response;
 
-  private final StringBuilder                 requestContent    = new StringBuilder();
+  private OContextConfiguration               configuration;
   private String                              responseCharSet;
   private String[]                            additionalResponseHeaders;
   private String                              listeningAddress  = "?";
@@ -93,13 +94,13 @@ public abstract class ONetworkProtocolHttpAbstract extends ONetworkProtocol {
     channel = new OChannelTextServer(iSocket, iConfiguration);
     channel.connected();
 
-    request = new OHttpRequest(this, channel.inStream, connection.data, iConfiguration);
+    configuration = iConfiguration;
 
     connection.data.caller = channel.toString();
 
     listeningAddress = getListeningAddress();
 
-    start();
+    startRequestProcessing();
   }
 
   public void service() throws ONetworkProtocolException, IOException {
@@ -242,6 +243,13 @@ public abstract class ONetworkProtocolHttpAbstract extends ONetworkProtocol {
       OLogManager.instance().error(this, "Internal server error:\n%s", errorMessage);
     }
 
+    if (response != null && response.sendStarted) {
+      // THE RESPONSE IS ALREADY PARTIALLY SENT: CLOSE THE CONNECTION TO LET THE CLIENT KNOW IT'S INCOMPLETE
+      OLogManager.instance().warn(this, "Error after the response was started, closing the connection: %s", errorMessage);
+      sendShutdown();
+      return;
+    }
+
     try {
       sendTextContent(errorCode, errorReason, responseHeaders, OHttpUtils.CONTENT_TEXT_PLAIN, errorMessage);
     } catch (IOException e1) {
@@ -294,119 +302,87 @@ public abstract class ONetworkProtocolHttpAbstract extends ONetworkProtocol {
   protected void readAllContent(final OHttpRequest iRequest) throws IOException {
     iRequest.content = null;
 
-    int in;
-    char currChar;
     int contentLength = -1;
-    boolean endOfHeaders = false;
-
-    final StringBuilder request = new StringBuilder();
-
-    while (!channel.socket.isInputShutdown()) {
-      in = channel.read();
-      if (in == -1)
-        break;
-
-      currChar = (char) in;
 
-      if (currChar == '\r') {
-        if (request.length() > 0 && !endOfHeaders) {
-          final String line = request.toString();
-          if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_AUTHORIZATION)) {
-            // STORE AUTHORIZATION INFORMATION INTO THE REQUEST
-            final String auth = line.substring(OHttpUtils.HEADER_AUTHORIZATION.length());
-            if (!OStringSerializerHelper.startsWithIgnoreCase(auth, OHttpUtils.AUTHORIZATION_BASIC))
-              throw new IllegalArgumentException("Only HTTP Basic authorization is supported");
+    String line;
+    while ((line = channel.readLine()) != null && line.length() > 0) {
+      if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_AUTHORIZATION)) {
+        // STORE AUTHORIZATION INFORMATION INTO THE REQUEST
+        final String auth = line.substring(OHttpUtils.HEADER_AUTHORIZATION.length());
+        if (!OStringSerializerHelper.startsWithIgnoreCase(auth, OHttpUtils.AUTHORIZATION_BASIC))
+          throw new IllegalArgumentException("Only HTTP Basic authorization is supported");
 
-            iRequest.authorization = auth.substring(OHttpUtils.AUTHORIZATION_BASIC.length() + 1);
+        iRequest.authorization = auth.substring(OHttpUtils.AUTHORIZATION_BASIC.length() + 1);
 
-            iRequest.authorization = new String(OBase64Utils.decode(iRequest.authorization));
+        iRequest.authorization = new String(OBase64Utils.decode(iRequest.authorization));
 
-          } else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_COOKIE)) {
-            final String sessionPair = line.substring(OHttpUtils.HEADER_COOKIE.length());
+      } else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_COOKIE)) {
+        final String sessionPair = line.substring(OHttpUtils.HEADER_COOKIE.length());
 
-            final String[] sessionItems = sessionPair.split(";");
-            for (String sessionItem : sessionItems) {
-              final String[] sessionPairItems = sessionItem.trim().split("=");
-              if (sessionPairItems.length == 2 && OHttpUtils.OSESSIONID.equals(sessionPairItems[0])) {
-                iRequest.sessionId = sessionPairItems[1];
-                break;
-              }
-            }
-
-          } else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_CONTENT_LENGTH)) {
-            contentLength = Integer.parseInt(line.substring(OHttpUtils.HEADER_CONTENT_LENGTH.length()));
-            if (contentLength > requestMaxContentLength)
-              OLogManager.instance().warn(
-                  this,
-                  "->" + channel.socket.getInetAddress().getHostAddress() + ": Error on content size " + contentLength
-                      + ": the maximum allowed is " + requestMaxContentLength);
-
-          } else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_CONTENT_TYPE)) {
-            iRequest.contentType = line.substring(OHttpUtils.HEADER_CONTENT_TYPE.length());
-            if (OStringSerializerHelper.startsWithIgnoreCase(iRequest.contentType, OHttpUtils.CONTENT_TYPE_MULTIPART)) {
-              iRequest.isMultipart = true;
-              iRequest.boundary = new String(line.substring(OHttpUtils.HEADER_CONTENT_TYPE.length()
-                  + OHttpUtils.CONTENT_TYPE_MULTIPART.length() + 2 + OHttpUtils.BOUNDARY.length() + 1));
-            }
-          } else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_IF_MATCH))
-            iRequest.ifMatch = line.substring(OHttpUtils.HEADER_IF_MATCH.length());
-
-          else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_X_FORWARDED_FOR))
-            connection.data.caller = line.substring(OHttpUtils.HEADER_X_FORWARDED_FOR.length());
-
-          else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_AUTHENTICATION))
-            iRequest.authentication = line.substring(OHttpUtils.HEADER_AUTHENTICATION.length());
-          else if (OStringSerializerHelper.startsWithIgnoreCase(line, "Expect: 100-continue"))
-            // SUPPORT THE CONTINUE TO AUTHORIZE THE CLIENT TO SEND THE CONTENT WITHOUT WAITING THE DELAY
-            sendTextContent(100, null, null, null, null);
-          else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_CONTENT_ENCODING))
-            iRequest.contentEncoding = line.substring(OHttpUtils.HEADER_CONTENT_ENCODING.length());
+        final String[] sessionItems = sessionPair.split(";");
+        for (String sessionItem : sessionItems) {
+          final String[] sessionPairItems = sessionItem.trim().split("=");
+          if (sessionPairItems.length == 2 && OHttpUtils.OSESSIONID.equals(sessionPairItems[0])) {
+            iRequest.sessionId = sessionPairItems[1];
+            break;
+          }
         }
 
-        // CONSUME /r or /n
-        in = channel.read();
-        if (in == -1)
-          break;
+      } else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_CONTENT_LENGTH)) {
+        contentLength = Integer.parseInt(line.substring(OHttpUtils.HEADER_CONTENT_LENGTH.length()));
+        if (contentLength > requestMaxContentLength)
+          OLogManager.instance().warn(
+              this,
+              "->" + channel.socket.getInetAddress().getHostAddress() + ": Error on content size " + contentLength
+                  + ": the maximum allowed is " + requestMaxContentLength);
+
+      } else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_CONTENT_TYPE)) {
+        iRequest.contentType = line.substring(OHttpUtils.HEADER_CONTENT_TYPE.length());
+        if (OStringSerializerHelper.startsWithIgnoreCase(iRequest.contentType, OHttpUtils.CONTENT_TYPE_MULTIPART)) {
+          iRequest.isMultipart = true;
+          iRequest.boundary = new String(line.substring(OHttpUtils.HEADER_CONTENT_TYPE.length()
+              + OHttpUtils.CONTENT_TYPE_MULTIPART.length() + 2 + OHttpUtils.BOUNDARY.length() + 1));
+        }
+      } else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_IF_MATCH))
+        iRequest.ifMatch = line.substring(OHttpUtils.HEADER_IF_MATCH.length());
+
+      else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_X_FORWARDED_FOR))
+        connection.data.caller = line.substring(OHttpUtils.HEADER_X_FORWARDED_FOR.length());
+
+      else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_AUTHENTICATION))
+        iRequest.authentication = line.substring(OHttpUtils.HEADER_AUTHENTICATION.length());
+      else if (OStringSerializerHelper.startsWithIgnoreCase(line, "Expect: 100-continue"))
+        // SUPPORT THE CONTINUE TO AUTHORIZE THE CLIENT TO SEND THE CONTENT WITHOUT WAITING THE DELAY
+        sendTextContent(100, null, null, null, null);
+      else if (OStringSerializerHelper.startsWithIgnoreCase(line, OHttpUtils.HEADER_CONTENT_ENCODING))
+        iRequest.contentEncoding = line.substring(OHttpUtils.HEADER_CONTENT_ENCODING.length());
+    }
 
-        currChar = (char) in;
+    if (line == null)
+      throw new EOFException("Connection closed before the end of HTTP headers");
 
-        if (!endOfHeaders && request.length() == 0) {
-          if (contentLength <= 0)
-            return;
+    // BLANK LINE: END OF HEADERS
+    if (contentLength <= 0)
+      return;
 
-          // FIRST BLANK LINE: END OF HEADERS
-          endOfHeaders = true;
-        }
+    if (iRequest.isMultipart) {
+      final int firstByte = channel.inStream.read();
+      if (firstByte == -1)
+        throw new EOFException("Connection closed before the HTTP content");
 
-        request.setLength(0);
-      } else if (endOfHeaders && request.length() == 0 && currChar != '\r' && currChar != '\n') {
-        // END OF HEADERS
-        if (iRequest.isMultipart) {
-          iRequest.content = "";
-          iRequest.multipartStream = new OHttpMultipartBaseInputStream(channel.inStream, currChar, contentLength);
-          return;
-        } else {
-          byte[] buffer = new byte[contentLength];
-          buffer[0] = (byte) currChar;
-
-          channel.read(buffer, 1, contentLength - 1);
-
-          if (iRequest.contentEncoding != null && iRequest.contentEncoding.equals(OHttpUtils.CONTENT_ACCEPT_GZIP_ENCODED)) {
-            iRequest.content = this.deCompress(buffer);
-          } else {
-            iRequest.content = new String(buffer);
-          }
-          return;
-        }
-      } else
-        request.append(currChar);
+      iRequest.content = "";
+      iRequest.multipartStream = new OHttpMultipartBaseInputStream(channel.inStream, firstByte, contentLength);
+      return;
     }
 
-    if (OLogManager.instance().isDebugEnabled())
-      OLogManager.instance().debug(this, "Error on parsing HTTP content from client %s:\n%s",
-          channel.socket.getInetAddress().getHostAddress(), request);
+    final byte[] buffer = new byte[contentLength];
+    channel.read(buffer, 0, contentLength);
 
-    return;
+    if (iRequest.contentEncoding != null && iRequest.contentEncoding.equals(OHttpUtils.CONTENT_ACCEPT_GZIP_ENCODED)) {
+      iRequest.content = this.deCompress(buffer);
+    } else {
+      iRequest.content = new String(buffer);
+    }
   }
 
   @Override
@@ -419,72 +395,59 @@ public abstract class ONetworkProtocolHttpAbstract extends ONetworkProtocol {
     connection.data.commandInfo = "Listening";
     connection.data.commandDetail = null;
 
+    // EVERY REQUEST OF THE KEEP-ALIVE CONNECTION STARTS WITH A CLEAN STATE
+    request = new OHttpRequest(this, channel.inStream, connection.data, configuration);
+    response = null;
+
     try {
       channel.socket.setSoTimeout(socketTimeout);
       connection.data.lastCommandReceived = -1;
 
-      char c = (char) channel.read();
+      String requestLine;
+      do {
+        requestLine = channel.readLine();
+        // SKIP THE LINE TERMINATORS SOME CLIENTS SEND AFTER THE CONTENT OF THE PREVIOUS REQUEST
+      } while (requestLine != null && requestLine.length() == 0 && channel.inStream.available() > 0);
 
-      if (channel.inStream.available() == 0) {
+      if (requestLine == null) {
         connectionClosed();
         return;
       }
 
-      channel.socket.setSoTimeout(socketTimeout);
-      connection.data.lastCommandReceived = Orient.instance().getProfiler().startChrono();
-
-      requestContent.setLength(0);
-      request.isMultipart = false;
-
-      if (c != '\n')
-        // AVOID INITIAL /N
-        requestContent.append(c);
-
-      while (!channel.socket.isInputShutdown()) {
-        c = (char) channel.read();
-
-        if (c == '\r') {
-          final String[] words = requestContent.toString().split(" ");
-          if (words.length < 3) {
-            OLogManager.instance().warn(this,
-                "->" + channel.socket.getInetAddress().getHostAddress() + ": Error on invalid content:\n" + requestContent);
-            while (channel.inStream.available() > 0) {
-              channel.read();
-            }
-            break;
-          }
-
-          // CONSUME THE NEXT \n
-          channel.read();
+      if (requestLine.length() == 0)
+        // NOTHING ELSE RECEIVED: WAIT FOR THE NEXT REQUEST
+        return;
 
-          request.httpMethod = words[0].toUpperCase();
-          request.url = words[1].trim();
+      connection.data.lastCommandReceived = Orient.instance().getProfiler().startChrono();
 
-          final int parametersPos = request.url.indexOf('?');
-          if (parametersPos > -1) {
-            request.parameters = OHttpUtils.getParameters(request.url.substring(parametersPos));
-            request.url = request.url.substring(0, parametersPos);
-          }
+      final String[] words = requestLine.split(" ");
+      if (words.length < 3) {
+        OLogManager.instance().warn(this,
+            "->" + channel.socket.getInetAddress().getHostAddress() + ": Error on invalid content:\n" + requestLine);
+        channel.inStream.skip(channel.inStream.available());
+        return;
+      }
 
-          request.httpVersion = words[2];
-          readAllContent(request);
+      request.httpMethod = words[0].toUpperCase();
+      request.url = words[1].trim();
 
-          if (request.content != null && request.contentType.equals(OHttpUtils.CONTENT_TYPE_URLENCODED))
-            request.content = URLDecoder.decode(request.content, "UTF-8").trim();
+      final int parametersPos = request.url.indexOf('?');
+      if (parametersPos > -1) {
+        request.parameters = OHttpUtils.getParameters(request.url.substring(parametersPos));
+        request.url = request.url.substring(0, parametersPos);
+      }
 
-          if (OLogManager.instance().isDebugEnabled())
-            OLogManager.instance().debug(this, "[ONetworkProtocolHttpAbstract.execute] Requested: %s %s", request.httpMethod,
-                request.url);
+      request.httpVersion = words[2];
+      readAllContent(request);
 
-          service();
-          return;
-        }
-        requestContent.append(c);
-      }
+      if (request.content != null && OHttpUtils.CONTENT_TYPE_URLENCODED.equals(request.contentType))
+        request.content = URLDecoder.decode(request.content, "UTF-8").trim();
 
       if (OLogManager.instance().isDebugEnabled())
-        OLogManager.instance().debug(this,
-            "Parsing request from client " + channel.socket.getInetAddress().getHostAddress() + ":\n" + requestContent);
+        OLogManager.instance().debug(this, "[ONetworkProtocolHttpAbstract.execute] Requested: %s %s", request.httpMethod,
+            request.url);
+
+      service();
 
     } catch (SocketException e) {
       connectionError();
@@ -492,17 +455,21 @@ public abstract class ONetworkProtocolHttpAbstract extends ONetworkProtocol {
     } catch (SocketTimeoutException e) {
       timeout();
 
+    } catch (EOFException e) {
+      connectionClosed();
+
     } catch (Throwable t) {
-      if (request.httpMethod != null && request.url != null) {
-        try {
+      try {
+        if (request.httpMethod != null && request.url != null)
           sendTextContent(505, "Error on executing of " + request.httpMethod + " for the resource: " + request.url, null,
               "text/plain", t.toString());
-        } catch (IOException e) {
-        }
-      } else
-        sendTextContent(505, "Error on executing request", null, "text/plain", t.toString());
+        else
+          sendTextContent(505, "Error on executing request", null, "text/plain", t.toString());
+      } catch (IOException e) {
+      }
 
-      readAllContent(request);
+      // THE REST OF THE REQUEST CAN'T BE TOLD APART FROM THE NEXT ONE: CLOSE THE CONNECTION
+      connectionError();
     } finally {
       if (connection.data.lastCommandReceived > -1)
         Orient
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.client.remote;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.exception.OStorageException;
+import com.orientechnologies.orient.core.query.OQueryCursor;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.OSQLEngine;
+import com.orientechnologies.orient.core.sql.functions.OSQLFunctionAbstract;
+import com.orientechnologies.orient.core.sql.query.OSQLStreamQuery;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+import com.orientechnologies.orient.server.OClientConnectionManager;
+import com.orientechnologies.orient.server.OServer;
+import com.orientechnologies.orient.server.OServerMain;
+import com.orientechnologies.orient.server.network.protocol.binary.ONetworkProtocolBinary;
+
+/**
+ * Checks query cursor against a server which sends the result in chunks.
+ * 
+ * @since 17.10.13
+ */
+@Test
+public class ORemoteQueryCursorTest {
+  private static final int     RECORDS    = 1000;
+  private static final int     CHUNK_SIZE = 10;
+  private static final String  QUERY      = "select from Item where cursorTestVisit(@rid) = true";
+
+  // RECORDS EXAMINED BY THE QUERY ON THE SERVER SIDE
+  private final AtomicInteger  visited    = new AtomicInteger();
+
+  private OServer              server;
+  private String               url;
+  private ODatabaseDocumentTx  db;
+
+  @BeforeClass
+  public void startServer() throws Exception {
+    String buildDirectory = System.getProperty("buildDirectory");
+    if (buildDirectory == null)
+      buildDirectory = ".";
+
+    server = OServerMain.create();
+    server.startup("<orient-server><network><protocols>"
+        + "<protocol name=\"binary\" implementation=\"" + ONetworkProtocolBinary.class.getName() + "\"/></protocols><listeners>"
+        + "<listener protocol=\"binary\" ip-address=\"127.0.0.1\" port-range=\"2425-2430\"/></listeners></network>"
+        + "<users><user name=\"root\" password=\"root\" resources=\"*\"/></users><properties>"
+        + "<entry name=\"server.database.path\" value=\"" + buildDirectory + "/remoteQueryCursorTest\"/>"
+        + "</properties></orient-server>");
+    server.activate();
+
+    OSQLEngine.getInstance().registerFunction("cursorTestVisit", new OSQLFunctionAbstract("cursorTestVisit", 1, 1) {
+      public Object execute(OIdentifiable iCurrentRecord, Object iCurrentResult, Object[] iFuncParams, OCommandContext iContext) {
+        visited.incrementAndGet();
+        return true;
+      }
+
+      public String getSyntax() {
+        return "cursorTestVisit(<record>)";
+      }
+    });
+
+    url = "remote:127.0.0.1:" + server.getListenerByProtocol(ONetworkProtocolBinary.class).getInboundAddr().getPort()
+        + "/remoteQueryCursorTest";
+    new OServerAdmin(url).connect("root", "root").createDatabase("document", "memory").close();
+
+    final ODatabaseDocumentTx database = new ODatabaseDocumentTx(url).open("admin", "admin");
+    for (int i = 0; i < RECORDS; i++)
+      new ODocument("Item").field("i", i).save();
+    database.close();
+  }
+
+  @AfterClass
+  public void stopServer() throws Exception {
+    OSQLEngine.getInstance().unregisterFunction("cursorTestVisit");
+    new OServerAdmin(url).connect("root", "root").dropDatabase().close();
+    server.shutdown();
+  }
+
+  @BeforeMethod
+  public void setUp() {
+    visited.set(0);
+    db = new ODatabaseDocumentTx(url).open("admin", "admin");
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    if (!db.isClosed())
+      db.close();
+  }
+
+  public void testRecordsAreFetchedChunkByChunk() throws Exception {
+    final OQueryCursor<ODocument> cursor = db.command(new OSQLStreamQuery<ODocument>(QUERY, CHUNK_SIZE)).execute();
+    Assert.assertTrue(cursor instanceof ORemoteQueryCursor);
+
+    cursor.next();
+    Thread.sleep(500);
+    // THE CURRENT CHUNK AND THE ONE PREPARED IN ADVANCE
+    Assert.assertTrue(visited.get() <= 2 * CHUNK_SIZE, visited.get() + " records visited");
+
+    int count = 1;
+    long sum = 0;
+    while (cursor.hasNext()) {
+      sum += cursor.next().<Integer> field("i");
+      count++;
+    }
+
+    Assert.assertEquals(count, RECORDS);
+    Assert.assertTrue(sum > 0);
+    Assert.assertEquals(visited.get(), RECORDS);
+    assertChannelIsUsable();
+  }
+
+  public void testEarlyClose() throws Exception {
+    final OQueryCursor<ODocument> cursor = db.command(new OSQLStreamQuery<ODocument>(QUERY, CHUNK_SIZE)).execute();
+    for (int i = 0; i < 5; i++)
+      cursor.next();
+
+    cursor.close();
+    Assert.assertFalse(cursor.hasNext());
+
+    final int visitedOnClose = visited.get();
+    Assert.assertTrue(visitedOnClose <= 3 * CHUNK_SIZE, visitedOnClose + " records visited");
+    Thread.sleep(500);
+    Assert.assertEquals(visited.get(), visitedOnClose);
+
+    assertChannelIsUsable();
+  }
+
+  public void testClientDisconnectReleasesQuery() throws Exception {
+    final int connections = OClientConnectionManager.instance().getConnections().size();
+
+    final ORemoteQueryCursor<ODocument> cursor = (ORemoteQueryCursor<ODocument>) db.command(
+        new OSQLStreamQuery<ODocument>(QUERY, CHUNK_SIZE)).execute();
+    cursor.next();
+
+    cursor.abort();
+
+    assertConnectionIsClosed(connections);
+    assertQueryIsReleased();
+  }
+
+  public void testAbandonedCursorIsReleasedOnTimeout() throws Exception {
+    final int cursorTimeout = OGlobalConfiguration.NETWORK_BINARY_CURSOR_TIMEOUT.getValueAsInteger();
+    OGlobalConfiguration.NETWORK_BINARY_CURSOR_TIMEOUT.setValue(1000);
+    try {
+      final int connections = OClientConnectionManager.instance().getConnections().size();
+
+      final OQueryCursor<ODocument> cursor = db.command(new OSQLStreamQuery<ODocument>(QUERY, CHUNK_SIZE)).execute();
+      cursor.next();
+
+      // THE CLIENT NEITHER READS NOR CLOSES THE CURSOR
+      assertConnectionIsClosed(connections);
+      assertQueryIsReleased();
+
+      try {
+        cursor.close();
+        Assert.fail("Cursor on closed connection was closed without error");
+      } catch (OStorageException e) {
+      }
+    } finally {
+      OGlobalConfiguration.NETWORK_BINARY_CURSOR_TIMEOUT.setValue(cursorTimeout);
+    }
+  }
+
+  private void assertChannelIsUsable() {
+    final List<ODocument> result = db.query(new OSQLSynchQuery<ODocument>("select count(*) from Item"));
+    Assert.assertEquals(((Number) result.get(0).field("count")).intValue(), RECORDS);
+  }
+
+  private void assertConnectionIsClosed(final int iConnections) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + 10000;
+    while (OClientConnectionManager.instance().getConnections().size() >= iConnections
+        && System.currentTimeMillis() < deadline)
+      Thread.sleep(50);
+
+    Assert.assertTrue(OClientConnectionManager.instance().getConnections().size() < iConnections,
+        "Connection of the cursor was not closed by the server");
+  }
+
+  private void assertQueryIsReleased() throws InterruptedException {
+    final int visitedOnRelease = visited.get();
+    Assert.assertTrue(visitedOnRelease < RECORDS, visitedOnRelease + " records visited");
+    Thread.sleep(500);
+    Assert.assertEquals(visited.get(), visitedOnRelease);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.client.remote;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.id.OClusterPositionFactory;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.storage.ORawBuffer;
+import com.orientechnologies.orient.core.storage.OStorageProxy;
+import com.orientechnologies.orient.server.OServer;
+import com.orientechnologies.orient.server.OServerMain;
+import com.orientechnologies.orient.server.network.protocol.binary.ONetworkProtocolBinary;
+
+/**
+ * Checks the load of several records with a single request.
+ *
+ * @since 17.10.13
+ */
+@Test
+public class OStorageRemoteReadRecordsTest {
+  private OServer             server;
+  private String              url;
+  private ODatabaseDocumentTx db;
+
+  @BeforeClass
+  public void startServer() throws Exception {
+    String buildDirectory = System.getProperty("buildDirectory");
+    if (buildDirectory == null)
+      buildDirectory = ".";
+
+    server = OServerMain.create();
+    server.startup("<orient-server><network><protocols>"
+        + "<protocol name=\"binary\" implementation=\"" + ONetworkProtocolBinary.class.getName() + "\"/></protocols><listeners>"
+        + "<listener protocol=\"binary\" ip-address=\"127.0.0.1\" port-range=\"2431-2435\"/></listeners></network>"
+        + "<users><user name=\"root\" password=\"root\" resources=\"*\"/></users><properties>"
+        + "<entry name=\"server.database.path\" value=\"" + buildDirectory + "/remoteReadRecordsTest\"/>"
+        + "</properties></orient-server>");
+    server.activate();
+
+    url = "remote:127.0.0.1:" + server.getListenerByProtocol(ONetworkProtocolBinary.class).getInboundAddr().getPort()
+        + "/remoteReadRecordsTest";
+    new OServerAdmin(url).connect("root", "root").createDatabase("document", "plocal").close();
+
+    db = new ODatabaseDocumentTx(url).open("admin", "admin");
+  }
+
+  @AfterClass
+  public void stopServer() throws Exception {
+    db.close();
+
+    new OServerAdmin(url).connect("root", "root").dropDatabase().close();
+    server.shutdown();
+  }
+
+  public void testReadRecords() {
+    final ODocument first = new ODocument("Item").field("i", 1).save();
+    final ODocument second = new ODocument("Item").field("i", 2).save();
+    final ORecordId missing = new ORecordId(second.getIdentity().getClusterId(), OClusterPositionFactory.INSTANCE.valueOf(1000));
+
+    final List<ORawBuffer> buffers = readRecords((ORecordId) second.getIdentity(), missing, (ORecordId) first.getIdentity());
+
+    Assert.assertEquals(buffers.size(), 3);
+    Assert.assertEquals(new ODocument().fromStream(buffers.get(0).buffer).field("i"), 2);
+    Assert.assertNull(buffers.get(1));
+    Assert.assertEquals(new ODocument().fromStream(buffers.get(2).buffer).field("i"), 1);
+  }
+
+  public void testReadConfigurationRecord() {
+    final ODocument doc = new ODocument("Item").field("i", 3).save();
+    final ORecordId configuration = new ORecordId(0, OClusterPositionFactory.INSTANCE.valueOf(0));
+
+    // #0:0 IS THE STORAGE CONFIGURATION, AS SENT FOR A SINGLE RECORD
+    final ORawBuffer expected = db.getStorage().readRecord(configuration, "", false, null, false).getResult();
+    final List<ORawBuffer> buffers = readRecords(configuration, (ORecordId) doc.getIdentity());
+
+    Assert.assertEquals(buffers.size(), 2);
+    Assert.assertEquals(buffers.get(0).buffer, expected.buffer);
+    Assert.assertEquals(buffers.get(0).recordType, expected.recordType);
+    Assert.assertEquals(new ODocument().fromStream(buffers.get(1).buffer).field("i"), 3);
+  }
+
+  private List<ORawBuffer> readRecords(final ORecordId... iRids) {
+    return ((OStorageProxy) db.getStorage()).readRecords(Arrays.asList(iRids), "", false);
+  }
+}
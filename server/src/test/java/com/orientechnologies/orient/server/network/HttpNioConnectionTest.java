@@ -0,0 +1,207 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.network;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.serialization.OBase64Utils;
+import com.orientechnologies.orient.server.OServer;
+import com.orientechnologies.orient.server.OServerMain;
+import com.orientechnologies.orient.server.network.protocol.http.ONetworkProtocolHttpDb;
+
+/**
+ * Checks HTTP connections served by the NIO dispatcher.
+ * 
+ * @since 17.10.13
+ */
+@Test
+public class HttpNioConnectionTest {
+  private static final int IDLE_TIMEOUT = 1000;
+
+  private OServer          server;
+  private int              port;
+
+  @BeforeClass
+  public void startServer() throws Exception {
+    String buildDirectory = System.getProperty("buildDirectory");
+    if (buildDirectory == null)
+      buildDirectory = ".";
+
+    server = OServerMain.create();
+    server.startup("<orient-server><network><protocols>"
+        + "<protocol name=\"http\" implementation=\"" + ONetworkProtocolHttpDb.class.getName() + "\"/></protocols><listeners>"
+        + "<listener protocol=\"http\" ip-address=\"127.0.0.1\" port-range=\"2491-2499\"><parameters>"
+        + "<parameter name=\"network.http.nio.enabled\" value=\"true\"/>"
+        + "<parameter name=\"network.http.nio.workers\" value=\"2\"/>"
+        + "<parameter name=\"network.socketTimeout\" value=\"" + IDLE_TIMEOUT + "\"/>"
+        + "</parameters></listener></listeners></network>"
+        + "<users><user name=\"root\" password=\"root\" resources=\"*\"/></users><properties>"
+        + "<entry name=\"server.database.path\" value=\"" + buildDirectory + "/httpNioConnectionTest\"/>"
+        + "</properties></orient-server>");
+    server.activate();
+
+    port = server.getListenerByProtocol(ONetworkProtocolHttpDb.class).getInboundAddr().getPort();
+  }
+
+  @AfterClass
+  public void stopServer() {
+    server.shutdown();
+  }
+
+  public void testKeepAlive() throws Exception {
+    final Socket socket = connect();
+    try {
+      final InputStream in = new BufferedInputStream(socket.getInputStream());
+      for (int i = 0; i < 10; i++) {
+        socket.getOutputStream().write(request().getBytes());
+        assertListDatabasesResponse(in);
+      }
+    } finally {
+      socket.close();
+    }
+  }
+
+  public void testPipelinedRequests() throws Exception {
+    final Socket socket = connect();
+    try {
+      final StringBuilder requests = new StringBuilder();
+      for (int i = 0; i < 10; i++)
+        requests.append(request());
+      socket.getOutputStream().write(requests.toString().getBytes());
+
+      final InputStream in = new BufferedInputStream(socket.getInputStream());
+      for (int i = 0; i < 10; i++)
+        assertListDatabasesResponse(in);
+    } finally {
+      socket.close();
+    }
+  }
+
+  public void testRequestSplitAcrossPackets() throws Exception {
+    final Socket socket = connect();
+    try {
+      final byte[] request = request().getBytes();
+      final int[] splits = { 0, 3, 20, request.length - 2, request.length };
+
+      final OutputStream out = socket.getOutputStream();
+      for (int i = 1; i < splits.length; i++) {
+        out.write(request, splits[i - 1], splits[i] - splits[i - 1]);
+        out.flush();
+        Thread.sleep(IDLE_TIMEOUT / 10);
+      }
+
+      assertListDatabasesResponse(new BufferedInputStream(socket.getInputStream()));
+    } finally {
+      socket.close();
+    }
+  }
+
+  public void testIdleConnectionIsClosed() throws Exception {
+    final Socket socket = connect();
+    try {
+      final InputStream in = new BufferedInputStream(socket.getInputStream());
+      socket.getOutputStream().write(request().getBytes());
+      assertListDatabasesResponse(in);
+
+      // THE SERVER CLOSES THE CONNECTION SHORTLY AFTER THE IDLE TIMEOUT
+      socket.setSoTimeout(IDLE_TIMEOUT * 5);
+      final long start = System.currentTimeMillis();
+      try {
+        Assert.assertEquals(in.read(), -1);
+      } catch (SocketTimeoutException e) {
+        Assert.fail("Idle connection was not closed");
+      } catch (IOException e) {
+        // CONNECTION RESET
+      }
+      Assert.assertTrue(System.currentTimeMillis() - start >= IDLE_TIMEOUT / 2);
+    } finally {
+      socket.close();
+    }
+  }
+
+  private Socket connect() throws IOException {
+    final Socket socket = new Socket("127.0.0.1", port);
+    socket.setTcpNoDelay(true);
+    socket.setSoTimeout(IDLE_TIMEOUT * 5);
+    return socket;
+  }
+
+  private static String request() {
+    return "GET /listDatabases HTTP/1.1\r\nHost: localhost\r\nAuthorization: Basic "
+        + OBase64Utils.encodeBytes("root:root".getBytes()) + "\r\n\r\n";
+  }
+
+  private static void assertListDatabasesResponse(final InputStream in) throws IOException {
+    final String status = readLine(in);
+    Assert.assertTrue(status.startsWith("HTTP/1.1 200"), status);
+
+    int contentLength = -1;
+    boolean chunked = false;
+    String header;
+    while ((header = readLine(in)).length() > 0) {
+      final String lowerCaseHeader = header.toLowerCase();
+      if (lowerCaseHeader.startsWith("content-length:"))
+        contentLength = Integer.parseInt(header.substring("content-length:".length()).trim());
+      else if (lowerCaseHeader.startsWith("transfer-encoding:") && lowerCaseHeader.contains("chunked"))
+        chunked = true;
+    }
+
+    final ByteArrayOutputStream content = new ByteArrayOutputStream();
+    final DataInputStream dataIn = new DataInputStream(in);
+    if (chunked) {
+      int chunkSize;
+      while ((chunkSize = Integer.parseInt(readLine(in).trim(), 16)) > 0) {
+        final byte[] chunk = new byte[chunkSize];
+        dataIn.readFully(chunk);
+        content.write(chunk);
+        readLine(in);
+      }
+      readLine(in);
+    } else {
+      Assert.assertTrue(contentLength >= 0, "Response has no length");
+      final byte[] body = new byte[contentLength];
+      dataIn.readFully(body);
+      content.write(body);
+    }
+
+    Assert.assertTrue(content.toString("UTF-8").contains("databases"), content.toString("UTF-8"));
+  }
+
+  private static String readLine(final InputStream in) throws IOException {
+    final StringBuilder line = new StringBuilder();
+    int c;
+    while ((c = in.read()) != '\n') {
+      if (c == -1)
+        throw new EOFException("Connection closed");
+      if (c != '\r')
+        line.append((char) c);
+    }
+    return line.toString();
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.server.network.protocol.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * Checks the chunked transfer encoding of HTTP responses against the buffered response.
+ *
+ * @since 17.10.13
+ */
+@Test
+public class OChunkedResponseTest {
+  private static final int    RECORDS = 2000;
+
+  private List<OIdentifiable> records;
+
+  @BeforeClass
+  public void createRecords() {
+    records = new ArrayList<OIdentifiable>();
+    for (int i = 0; i < RECORDS; i++)
+      records.add(new ODocument().field("id", i).field("name", "caffè € record " + i).field("text", "line\n\"quoted\""));
+  }
+
+  public void testChunkFraming() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final OChunkedResponse chunked = new OChunkedResponse(out, 8);
+
+    chunked.write("abc".getBytes());
+    chunked.write('d');
+    chunked.write("efghijklmnopqrs".getBytes());
+    chunked.write("xxtuvxx".getBytes(), 2, 3);
+    chunked.close();
+
+    Assert.assertEquals(out.toString("US-ASCII"), "8\r\nabcdefgh\r\n8\r\nijklmnop\r\n6\r\nqrstuv\r\n0\r\n\r\n");
+  }
+
+  public void testContentLargerThanChunk() throws IOException {
+    final byte[] content = new byte[100];
+    for (int i = 0; i < content.length; i++)
+      content[i] = (byte) i;
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final OChunkedResponse chunked = new OChunkedResponse(out, 16);
+    chunked.write(content);
+    chunked.close();
+
+    final List<Integer> sizes = new ArrayList<Integer>();
+    Assert.assertEquals(decodeChunks(new ByteArrayInputStream(out.toByteArray()), sizes), content);
+    Assert.assertEquals(sizes, Arrays.asList(16, 16, 16, 16, 16, 16, 4));
+  }
+
+  public void testLastChunk() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final OChunkedResponse chunked = new OChunkedResponse(out, 8);
+
+    // FLUSHING AN EMPTY BUFFER MUST NOT SEND AN EMPTY CHUNK, THAT WOULD END THE BODY
+    chunked.flush();
+    Assert.assertEquals(out.size(), 0);
+
+    chunked.write("12345678".getBytes());
+    chunked.flush();
+    Assert.assertEquals(out.toString("US-ASCII"), "8\r\n12345678\r\n");
+
+    chunked.close();
+    chunked.close();
+    Assert.assertEquals(out.toString("US-ASCII"), "8\r\n12345678\r\n0\r\n\r\n");
+  }
+
+  public void testStreamedRecordsMatchBufferedResponse() throws IOException {
+    final byte[] buffered = sendRecords("HTTP/1.0", null, null, records.iterator());
+    final byte[] streamed = sendRecords(OHttpResponse.HTTP_1_1, null, null, records.iterator());
+
+    Assert.assertTrue(buffered.length > 2 * OChunkedResponse.DEFAULT_CHUNK_SIZE, buffered.length + " bytes");
+    Assert.assertEquals(streamed, buffered);
+  }
+
+  public void testGzipStreamedRecords() throws IOException {
+    final byte[] plain = sendRecords("HTTP/1.0", null, null, records.iterator());
+    final byte[] buffered = sendRecords("HTTP/1.0", OHttpUtils.CONTENT_ACCEPT_GZIP_ENCODED, null, records.iterator());
+    final byte[] streamed = sendRecords(OHttpResponse.HTTP_1_1, OHttpUtils.CONTENT_ACCEPT_GZIP_ENCODED, null, records.iterator());
+
+    Assert.assertEquals(gunzip(buffered), plain);
+    Assert.assertEquals(gunzip(streamed), plain);
+  }
+
+  public void testJsonpStreamedRecords() throws IOException {
+    final byte[] buffered = sendRecords("HTTP/1.0", null, "callback", records.iterator());
+    final byte[] streamed = sendRecords(OHttpResponse.HTTP_1_1, null, "callback", records.iterator());
+
+    final String content = new String(streamed, "UTF-8");
+    Assert.assertTrue(content.startsWith("callback({"), content.substring(0, 20));
+    Assert.assertTrue(content.endsWith("})"), content.substring(content.length() - 20));
+    Assert.assertEquals(streamed, buffered);
+  }
+
+  public void testErrorAfterHeadersLeavesBodyIncomplete() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final OHttpResponse response = new OHttpResponse(out, OHttpResponse.HTTP_1_1, null, "utf-8", "test", null, null);
+
+    final Iterator<OIdentifiable> source = records.iterator();
+    final Iterator<OIdentifiable> failing = new Iterator<OIdentifiable>() {
+      private int read = 0;
+
+      public boolean hasNext() {
+        return true;
+      }
+
+      public OIdentifiable next() {
+        if (read++ == RECORDS / 2)
+          throw new IllegalStateException("Broken result");
+        return source.next();
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+
+    try {
+      response.writeRecords(failing, null, null);
+      Assert.fail("Error was not propagated");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals(e.getMessage(), "Broken result");
+    }
+
+    Assert.assertTrue(response.sendStarted);
+
+    final byte[] sent = out.toByteArray();
+    final String head = readHead(new ByteArrayInputStream(sent));
+    Assert.assertTrue(head.startsWith("HTTP/1.1 200 OK\r\n"), head);
+
+    // THE CHUNKS ALREADY SENT ARE VALID, BUT THE LAST ONE IS MISSING
+    Assert.assertTrue(sent.length > head.length() + OChunkedResponse.DEFAULT_CHUNK_SIZE, sent.length + " bytes");
+    Assert.assertFalse(new String(sent, "US-ASCII").endsWith("\r\n0\r\n\r\n"));
+  }
+
+  private byte[] sendRecords(final String iHttpVersion, final String iContentEncoding, final String iCallback,
+      final Iterator<OIdentifiable> iRecords) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final OHttpResponse response = new OHttpResponse(out, iHttpVersion, null, "utf-8", "test", null, iCallback);
+    response.setContentEncoding(iContentEncoding);
+    response.writeRecords(iRecords, null, null);
+
+    final InputStream in = new ByteArrayInputStream(out.toByteArray());
+    final String head = readHead(in);
+    Assert.assertTrue(head.startsWith(iHttpVersion + " 200 OK\r\n"), head);
+
+    final byte[] body;
+    if (head.contains(OHttpUtils.HEADER_TRANSFER_ENCODING + OHttpUtils.TRANSFER_ENCODING_CHUNKED)) {
+      Assert.assertFalse(head.contains(OHttpUtils.HEADER_CONTENT_LENGTH), head);
+      body = decodeChunks(in, new ArrayList<Integer>());
+    } else {
+      final int start = head.indexOf(OHttpUtils.HEADER_CONTENT_LENGTH) + OHttpUtils.HEADER_CONTENT_LENGTH.length();
+      body = new byte[Integer.parseInt(head.substring(start, head.indexOf('\r', start)).trim())];
+      Assert.assertEquals(in.read(body), body.length);
+    }
+
+    Assert.assertEquals(in.read(), -1, "Content after the end of the response");
+    return body;
+  }
+
+  private static String readHead(final InputStream in) throws IOException {
+    final StringBuilder head = new StringBuilder();
+    while (!head.toString().endsWith("\r\n\r\n")) {
+      final int c = in.read();
+      Assert.assertTrue(c > -1, "Headers are not terminated");
+      head.append((char) c);
+    }
+    return head.toString();
+  }
+
+  private static String readLine(final InputStream in) throws IOException {
+    final StringBuilder line = new StringBuilder();
+    int c;
+    while ((c = in.read()) != '\n') {
+      Assert.assertTrue(c > -1, "Chunk is truncated");
+      line.append((char) c);
+    }
+    Assert.assertTrue(line.length() > 0 && line.charAt(line.length() - 1) == '\r', "Line is not terminated by CRLF");
+    return line.substring(0, line.length() - 1);
+  }
+
+  private static byte[] decodeChunks(final InputStream in, final List<Integer> iSizes) throws IOException {
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    for (;;) {
+      final int size = Integer.parseInt(readLine(in), 16);
+      if (size == 0) {
+        Assert.assertEquals(readLine(in), "");
+        return body.toByteArray();
+      }
+
+      iSizes.add(size);
+      final byte[] chunk = new byte[size];
+      int read = 0;
+      while (read < size) {
+        final int n = in.read(chunk, read, size - read);
+        Assert.assertTrue(n > -1, "Chunk is truncated");
+        read += n;
+      }
+      body.write(chunk);
+      Assert.assertEquals(readLine(in), "");
+    }
+  }
+
+  private static byte[] gunzip(final byte[] iContent) throws IOException {
+    final GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(iContent));
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[4096];
+    int n;
+    while ((n = in.read(buffer)) > -1)
+      out.write(buffer, 0, n);
+    return out.toByteArray();
+  }
+}
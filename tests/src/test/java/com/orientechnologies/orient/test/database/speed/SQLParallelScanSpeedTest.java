@@ -0,0 +1,89 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.test.database.speed;
+
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+
+/**
+ * Measures SELECT without indexes over a class of plocal database when amount of threads which scan the clusters grows from 1 to
+ * amount of available processors.
+ * 
+ * @since 17.10.13
+ */
+@Test
+public class SQLParallelScanSpeedTest {
+  private static final int    RECORDS   = 300000;
+  private static final int    ROUNDS    = 3;
+  private static final String FILTER    = "select from Account where name like '%7' and balance > 1000";
+  private static final String AGGREGATE = "select count(*), sum(balance) from Account where balance > 1000";
+
+  public void testParallelScan() {
+    final String buildDirectory = System.getProperty("buildDirectory", ".");
+    final String url = "plocal:" + buildDirectory + "/SQLParallelScanSpeedTest";
+
+    ODatabaseDocumentTx db = new ODatabaseDocumentTx(url);
+    if (db.exists()) {
+      db.open("admin", "admin");
+      db.drop();
+      db = new ODatabaseDocumentTx(url);
+    }
+
+    db.create();
+    db.getMetadata().getSchema().createClass("Account");
+    for (int i = 0; i < RECORDS; i++)
+      new ODocument("Account").field("id", i).field("name", "account " + i).field("balance", (i * 7919) % 100000).save();
+
+    // BIG CLASSES DON'T FIT IN THE CACHE OF THE DATABASE: MEASURE READS FROM THE STORAGE
+    db.getLevel1Cache().clear();
+    db.getLevel1Cache().setEnable(false);
+
+    final Object threads = OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.getValue();
+    try {
+      final int maxThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+      for (int t = 1; t <= maxThreads; t <<= 1) {
+        OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.setValue(t);
+        measure(db, t, FILTER);
+        measure(db, t, AGGREGATE);
+      }
+    } finally {
+      OGlobalConfiguration.QUERY_PARALLEL_SCAN_THREADS.setValue(threads);
+      db.drop();
+    }
+  }
+
+  private void measure(final ODatabaseDocumentTx db, final int threads, final String query) {
+    // WARM UP
+    db.query(new OSQLSynchQuery<ODocument>(query));
+
+    int found = 0;
+    final long start = System.nanoTime();
+    for (int i = 0; i < ROUNDS; i++) {
+      final List<ODocument> result = db.query(new OSQLSynchQuery<ODocument>(query));
+      found = result.size();
+    }
+    final long end = System.nanoTime();
+
+    System.out.println("Threads " + threads + " '" + query + "' : " + (ROUNDS * (long) RECORDS * 1000000000L / (end - start))
+        + " records/s, " + found + " found");
+  }
+}
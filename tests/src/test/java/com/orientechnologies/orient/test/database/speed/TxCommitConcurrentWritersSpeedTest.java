@@ -0,0 +1,125 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.test.database.speed;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * Compares commit throughput of {@link com.orientechnologies.orient.core.storage.impl.local.OStorageLocal} and
+ * {@link com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPaginatedStorage} when amount of concurrent writers
+ * grows from 1 to amount of available processors. Every writer commits small transactions into its own class.
+ *
+ * @since 17.10.13
+ */
+@Test
+public class TxCommitConcurrentWritersSpeedTest {
+  private static final int TX_PER_WRITER  = 2000;
+  private static final int RECORDS_PER_TX = 5;
+
+  public void testLocalStorage() throws Exception {
+    measureCommitThroughput("local");
+  }
+
+  public void testPaginatedStorage() throws Exception {
+    measureCommitThroughput("plocal");
+  }
+
+  private void measureCommitThroughput(String engine) throws Exception {
+    final String buildDirectory = System.getProperty("buildDirectory", ".");
+    final int maxWriters = Runtime.getRuntime().availableProcessors();
+
+    System.out.println("Storage " + engine + " :");
+
+    for (int writers = 1; writers <= maxWriters; writers <<= 1) {
+      final String url = engine + ":" + buildDirectory + "/TxCommitConcurrentWritersSpeedTest" + engine;
+
+      ODatabaseDocumentTx db = new ODatabaseDocumentTx(url);
+      if (db.exists()) {
+        db.open("admin", "admin");
+        db.drop();
+        db = new ODatabaseDocumentTx(url);
+      }
+
+      db.create();
+      for (int i = 0; i < writers; i++)
+        db.getMetadata().getSchema().createClass("Writer" + i);
+      db.close();
+
+      final ExecutorService executorService = Executors.newFixedThreadPool(writers);
+      final CountDownLatch latch = new CountDownLatch(1);
+
+      final List<Future<Void>> futures = new ArrayList<Future<Void>>(writers);
+      for (int i = 0; i < writers; i++)
+        futures.add(executorService.submit(new Writer(url, "Writer" + i, latch)));
+
+      final long start = System.nanoTime();
+      latch.countDown();
+      for (Future<Void> future : futures)
+        future.get();
+      final long end = System.nanoTime();
+
+      executorService.shutdown();
+
+      final long commits = (long) writers * TX_PER_WRITER;
+      System.out.println("Writers " + writers + " : " + (commits * 1000000000L / (end - start)) + " commits/s");
+
+      db.open("admin", "admin");
+      db.drop();
+    }
+  }
+
+  private static final class Writer implements Callable<Void> {
+    private final String         url;
+    private final String         className;
+    private final CountDownLatch latch;
+
+    private Writer(String url, String className, CountDownLatch latch) {
+      this.url = url;
+      this.className = className;
+      this.latch = latch;
+    }
+
+    @Override
+    public Void call() throws Exception {
+      final ODatabaseDocumentTx db = new ODatabaseDocumentTx(url).open("admin", "admin");
+      try {
+        latch.await();
+
+        for (int i = 0; i < TX_PER_WRITER; i++) {
+          db.begin();
+          for (int n = 0; n < RECORDS_PER_TX; n++)
+            new ODocument(className).field("tx", i).field("n", n).field("name", "record " + n).save();
+          db.commit();
+        }
+      } finally {
+        db.close();
+      }
+
+      return null;
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.test.internal.index;
+
+import java.util.Collection;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.common.util.MersenneTwisterFast;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * Compares insertion and lookup speed of automatic {@link OClass.INDEX_TYPE#NOTUNIQUE} index which is based on MVRB-Tree and
+ * {@link OClass.INDEX_TYPE#NOTUNIQUE_HASH} index which is based on extendible hashing.
+ * 
+ * @since 17.10.13
+ */
+@Test
+public class NotUniqueHashIndexSpeedTest {
+  private static final int RECORDS = 500000;
+  private static final int KEYS    = 50000;
+  private static final int LOOKUPS = 1000000;
+
+  public void testTreeIndex() {
+    measure(OClass.INDEX_TYPE.NOTUNIQUE);
+  }
+
+  public void testHashIndex() {
+    measure(OClass.INDEX_TYPE.NOTUNIQUE_HASH);
+  }
+
+  private void measure(OClass.INDEX_TYPE indexType) {
+    final String buildDirectory = System.getProperty("buildDirectory", ".");
+    final String url = "local:" + buildDirectory + "/NotUniqueHashIndexSpeedTest" + indexType;
+
+    ODatabaseDocumentTx db = new ODatabaseDocumentTx(url);
+    if (db.exists()) {
+      db.open("admin", "admin");
+      db.drop();
+      db = new ODatabaseDocumentTx(url);
+    }
+
+    db.create();
+    try {
+      final OClass person = db.getMetadata().getSchema().createClass("Person");
+      person.createProperty("name", OType.STRING);
+      person.createIndex("Person.name", indexType, "name");
+
+      final MersenneTwisterFast random = new MersenneTwisterFast(42);
+
+      db.declareIntent(new OIntentMassiveInsert());
+      long start = System.nanoTime();
+      for (int i = 0; i < RECORDS; i++)
+        new ODocument("Person").field("name", "name" + random.nextInt(KEYS)).save();
+      long end = System.nanoTime();
+      db.declareIntent(null);
+
+      System.out.println("Index " + indexType + " : " + (RECORDS * 1000000000L / (end - start)) + " inserts/s");
+
+      final OIndex<?> index = db.getMetadata().getIndexManager().getIndex("Person.name");
+
+      long found = 0;
+      start = System.nanoTime();
+      for (int i = 0; i < LOOKUPS; i++)
+        found += ((Collection<?>) index.get("name" + random.nextInt(KEYS))).size();
+      end = System.nanoTime();
+
+      System.out.println("Index " + indexType + " : " + (LOOKUPS * 1000000000L / (end - start)) + " lookups/s, " + found
+          + " records found");
+    } finally {
+      db.drop();
+    }
+  }
+}
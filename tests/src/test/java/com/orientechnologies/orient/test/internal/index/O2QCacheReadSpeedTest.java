@@ -0,0 +1,122 @@
+package com.orientechnologies.orient.test.internal.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.orientechnologies.common.directmemory.ODirectMemory;
+import com.orientechnologies.common.directmemory.ODirectMemoryFactory;
+import com.orientechnologies.common.util.MersenneTwisterFast;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.index.hashindex.local.cache.O2QCache;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.OLocalPaginatedStorage;
+
+/**
+ * Measures read throughput of {@link O2QCache} when amount of reader threads grows from 1 to amount of available processors.
+ * All pages fit in cache so test measures lock contention, not disk IO.
+ *
+ * @since 16.10.13
+ */
+@Test
+public class O2QCacheReadSpeedTest {
+  private static final int       PAGE_SIZE        = 4 * 1024;
+  private static final int       PAGE_COUNT       = 16 * 1024;
+  private static final int       READS_PER_THREAD = 2000000;
+
+  private OLocalPaginatedStorage storageLocal;
+  private ODirectMemory          directMemory;
+
+  @BeforeClass
+  public void beforeClass() {
+    OGlobalConfiguration.FILE_LOCK.setValue(Boolean.FALSE);
+    directMemory = ODirectMemoryFactory.INSTANCE.directMemory();
+
+    String buildDirectory = System.getProperty("buildDirectory", ".");
+    storageLocal = (OLocalPaginatedStorage) Orient.instance().loadStorage("plocal:" + buildDirectory + "/O2QCacheReadSpeedTest");
+  }
+
+  @AfterClass
+  public void afterClass() {
+    storageLocal.delete();
+  }
+
+  public void testSingleSegmentReadScalability() throws Exception {
+    measureReadScalability(1);
+  }
+
+  public void testSegmentedReadScalability() throws Exception {
+    measureReadScalability(OGlobalConfiguration.DISK_CACHE_CONCURRENCY_LEVEL.getValueAsInteger());
+  }
+
+  private void measureReadScalability(int concurrencyLevel) throws Exception {
+    final O2QCache cache = new O2QCache(2L * PAGE_COUNT * PAGE_SIZE, 15000, directMemory, null, PAGE_SIZE, storageLocal, false,
+        concurrencyLevel, 0);
+
+    final long fileId = cache.openFile("o2QCacheReadSpeedTest.tst");
+    for (int i = 0; i < PAGE_COUNT; i++) {
+      cache.load(fileId, i);
+      cache.release(fileId, i);
+    }
+
+    System.out.println("Concurrency level " + concurrencyLevel + " :");
+
+    final int maxThreads = Runtime.getRuntime().availableProcessors();
+    for (int threads = 1; threads <= maxThreads; threads <<= 1) {
+      final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+      final CountDownLatch latch = new CountDownLatch(1);
+
+      final List<Future<Void>> futures = new ArrayList<Future<Void>>(threads);
+      for (int n = 0; n < threads; n++)
+        futures.add(executorService.submit(new Reader(cache, fileId, latch)));
+
+      final long start = System.nanoTime();
+      latch.countDown();
+      for (Future<Void> future : futures)
+        future.get();
+      final long end = System.nanoTime();
+
+      executorService.shutdown();
+
+      final long reads = (long) threads * READS_PER_THREAD;
+      System.out.println("Threads " + threads + " : " + (reads * 1000000000L / (end - start)) + " reads/s");
+    }
+
+    cache.deleteFile(fileId);
+    cache.close();
+  }
+
+  private static final class Reader implements Callable<Void> {
+    private final O2QCache            cache;
+    private final long                fileId;
+    private final CountDownLatch      latch;
+    private final MersenneTwisterFast random = new MersenneTwisterFast();
+
+    private Reader(O2QCache cache, long fileId, CountDownLatch latch) {
+      this.cache = cache;
+      this.fileId = fileId;
+      this.latch = latch;
+    }
+
+    @Override
+    public Void call() throws Exception {
+      latch.await();
+
+      for (int i = 0; i < READS_PER_THREAD; i++) {
+        final long pageIndex = random.nextInt(PAGE_COUNT);
+        cache.load(fileId, pageIndex);
+        cache.release(fileId, pageIndex);
+      }
+
+      return null;
+    }
+  }
+}
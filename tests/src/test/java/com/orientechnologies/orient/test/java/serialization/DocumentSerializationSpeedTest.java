@@ -0,0 +1,89 @@
+/*
+ * Copyright 2010-2012 Luca Garulli (l.garulli--at--orientechnologies.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.orientechnologies.orient.test.java.serialization;
+
+import java.util.Date;
+
+import org.testng.annotations.Test;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.serialization.serializer.record.ORecordSerializer;
+import com.orientechnologies.orient.core.serialization.serializer.record.binary.ORecordSerializerBinary;
+import com.orientechnologies.orient.core.serialization.serializer.record.string.ORecordSerializerSchemaAware2CSV;
+
+/**
+ * Compares speed of {@link ORecordSerializerSchemaAware2CSV} and {@link ORecordSerializerBinary} on serialization, full
+ * deserialization and reading of the single field of the document.
+ * 
+ * @since 17.10.13
+ */
+@Test
+public class DocumentSerializationSpeedTest {
+  private static final int CYCLES = 500000;
+  private static final int FIELDS = 20;
+
+  public void testCSV() {
+    measure(ORecordSerializerSchemaAware2CSV.INSTANCE);
+  }
+
+  public void testBinary() {
+    measure(ORecordSerializerBinary.INSTANCE);
+  }
+
+  private void measure(final ORecordSerializer serializer) {
+    final ODatabaseDocumentTx db = new ODatabaseDocumentTx("memory:DocumentSerializationSpeedTest");
+    db.create();
+    try {
+      final OClass account = db.getMetadata().getSchema().createClass("Account");
+      account.createProperty("name", OType.STRING);
+      account.createProperty("balance", OType.DOUBLE);
+
+      final ODocument doc = new ODocument("Account");
+      doc.field("name", "Luca");
+      doc.field("balance", 12345.67d);
+      doc.field("created", new Date());
+      for (int i = 0; i < FIELDS; i++)
+        doc.field("field" + i, i % 2 == 0 ? (Object) ("value" + i) : (Object) (i * 1000L));
+      doc.field("last", 42);
+
+      byte[] stream = null;
+      long start = System.nanoTime();
+      for (int i = 0; i < CYCLES; i++)
+        stream = serializer.toStream(doc, false);
+      long end = System.nanoTime();
+      System.out.println(serializer + " : " + stream.length + " bytes, " + (CYCLES * 1000000000L / (end - start))
+          + " serializations/s");
+
+      start = System.nanoTime();
+      for (int i = 0; i < CYCLES; i++)
+        serializer.fromStream(stream, new ODocument(), null);
+      end = System.nanoTime();
+      System.out.println(serializer + " : " + (CYCLES * 1000000000L / (end - start)) + " deserializations/s");
+
+      final String[] fields = new String[] { "last" };
+      start = System.nanoTime();
+      for (int i = 0; i < CYCLES; i++)
+        serializer.fromStream(stream, new ODocument(), fields);
+      end = System.nanoTime();
+      System.out.println(serializer + " : " + (CYCLES * 1000000000L / (end - start)) + " single field reads/s");
+    } finally {
+      db.drop();
+    }
+  }
+}